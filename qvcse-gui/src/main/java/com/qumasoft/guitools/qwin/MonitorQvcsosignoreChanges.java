@@ -66,7 +66,7 @@ public class MonitorQvcsosignoreChanges implements Runnable {
                         System.out.println("Resetting .qvcsosignore for: " + branchRootWorkfileDirectory);
                         boolean foundFlag = QvcsosClientIgnoreManager.getInstance().resetIgnoreData(branchRootWorkfileDirectory);
                         if (foundFlag) {
-                            QWinFrame.getQWinFrame().refreshCurrentBranch();
+                            QWinFrame.getQWinFrame().refreshCurrentBranch(true);
                         }
                     }
                 }
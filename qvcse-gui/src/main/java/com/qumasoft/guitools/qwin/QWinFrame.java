@@ -53,6 +53,9 @@ import com.qumasoft.qvcslib.QVCSException;
 import com.qumasoft.qvcslib.QVCSRuntimeException;
 import com.qumasoft.qvcslib.RemotePropertiesBaseClass;
 import com.qumasoft.qvcslib.RemotePropertiesManager;
+import com.qumasoft.qvcslib.RevisionHistoryFilter;
+import com.qumasoft.qvcslib.RevisionHistoryPage;
+import com.qumasoft.qvcslib.RevisionHistoryPageFetcher;
 import com.qumasoft.qvcslib.ServerProperties;
 import com.qumasoft.qvcslib.SynchronizationManager;
 import com.qumasoft.qvcslib.TagInfoData;
@@ -70,6 +73,7 @@ import com.qumasoft.qvcslib.WorkfileDirectoryManager;
 import com.qumasoft.qvcslib.requestdata.ClientRequestGetAllLogfileInfoData;
 import com.qumasoft.qvcslib.requestdata.ClientRequestGetBriefCommitInfoListData;
 import com.qumasoft.qvcslib.requestdata.ClientRequestGetCommitListForMoveableTagData;
+import com.qumasoft.qvcslib.requestdata.ClientRequestGetRevisionHistoryPageData;
 import com.qumasoft.qvcslib.requestdata.ClientRequestGetTagsData;
 import com.qumasoft.qvcslib.requestdata.ClientRequestGetTagsInfoData;
 import com.qumasoft.qvcslib.requestdata.ClientRequestGetUserCommitCommentsData;
@@ -110,6 +114,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TimerTask;
 import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
 import javax.swing.AbstractAction;
 import javax.swing.ImageIcon;
 import javax.swing.JFrame;
@@ -957,9 +962,10 @@ public final class QWinFrame extends JFrame implements PasswordChangeListenerInt
                         dirManager = DirectoryManagerFactory.getInstance().getDirectoryManager(QWinFrame.getQWinFrame().getQvcsClientHomeDirectory(), server, directoryCoordinate,
                                 workfileBase, null, false, true);
                     } else if (currentNode instanceof DirectoryTreeNode directoryTreeNode) {
+                        // These get registered with the server all at once, below.
                         DirectoryCoordinate directoryCoordinate = new DirectoryCoordinate(getProjectName(), getBranchName(), directoryTreeNode.getAppendedPath());
                         dirManager = DirectoryManagerFactory.getInstance().getDirectoryManager(QWinFrame.getQWinFrame().getQvcsClientHomeDirectory(), server, directoryCoordinate,
-                                workfileBase + File.separator + directoryTreeNode.getAppendedPath(), null, false, true);
+                                workfileBase + File.separator + directoryTreeNode.getAppendedPath(), null, false, false);
                     } else if (currentNode instanceof CemeteryTreeNode) {
                         // Build the cemetery...
                         cemeteryManager = buildTheCemetery(server, workfileBase);
@@ -969,6 +975,7 @@ public final class QWinFrame extends JFrame implements PasswordChangeListenerInt
                         directoryManagerList.add(dirManager);
                     }
                 }
+                DirectoryManagerFactory.getInstance().startDirectoryManagers(directoryManagerList);
 
                 if (selectedNode instanceof CemeteryTreeNode) {
                     directoryManagers = new DirectoryManagerInterface[1];
@@ -1073,7 +1080,7 @@ public final class QWinFrame extends JFrame implements PasswordChangeListenerInt
                     }
                 }
             }
-            refreshCurrentBranch();
+            refreshCurrentBranch(true);
         }
     }
 
@@ -1674,7 +1681,7 @@ public final class QWinFrame extends JFrame implements PasswordChangeListenerInt
 
     private void viewMenuRefreshActionPerformed(java.awt.event.ActionEvent evt)//GEN-FIRST:event_viewMenuRefreshActionPerformed
     {//GEN-HEADEREND:event_viewMenuRefreshActionPerformed
-        refreshCurrentBranch();
+        refreshCurrentBranch(true);
     }//GEN-LAST:event_viewMenuRefreshActionPerformed
 
     private void compareButtonActionPerformed(java.awt.event.ActionEvent evt)//GEN-FIRST:event_compareButtonActionPerformed
@@ -1811,6 +1818,30 @@ public final class QWinFrame extends JFrame implements PasswordChangeListenerInt
         return allRevisionLogfileInfo;
     }
 
+    /**
+     * Ask the server for a page of a file's revision history. This does not wait for the server's answer.
+     * @param mergedInfo the file.
+     * @param allBranchesFlag true for the revisions on all branches; false for the revisions visible on the current branch.
+     * @param startAfterFileRevisionId the page starts after this file revision; null for the first page.
+     * @param revisionHistoryFilter the revision filters for the server to apply.
+     * @return a future that completes with the page.
+     */
+    public CompletableFuture<RevisionHistoryPage> fetchRevisionHistoryPage(MergedInfoInterface mergedInfo, boolean allBranchesFlag, Integer startAfterFileRevisionId,
+            RevisionHistoryFilter revisionHistoryFilter) {
+        TransportProxyInterface transportProxy = TransportProxyFactory.getInstance().getTransportProxy(activeServerProperties);
+        ClientRequestGetRevisionHistoryPageData request = new ClientRequestGetRevisionHistoryPageData();
+
+        request.setProjectName(getProjectName());
+        request.setBranchName(getBranchName());
+        request.setAppendedPath(mergedInfo.getArchiveDirManager().getAppendedPath());
+        request.setShortWorkfileName(mergedInfo.getShortWorkfileName());
+        request.setFileID(mergedInfo.getFileID());
+        request.setAllBranchesFlag(allBranchesFlag);
+        request.setStartAfterFileRevisionId(startAfterFileRevisionId);
+        request.setRevisionHistoryFilter(revisionHistoryFilter);
+        return RevisionHistoryPageFetcher.fetchPage(transportProxy, request);
+    }
+
     @Override
     public void exitTheApp() {
         exitForm(null);
@@ -2151,10 +2182,6 @@ public final class QWinFrame extends JFrame implements PasswordChangeListenerInt
         this.fileTable = fileTable;
     }
 
-    public LogfileInfo getAllLogfileInfo() {
-        return this.allRevisionLogfileInfo;
-    }
-
     /**
      * Get the file list JTable.
      * @return the file list JTable.
@@ -2276,10 +2303,18 @@ public final class QWinFrame extends JFrame implements PasswordChangeListenerInt
     private javax.swing.JMenuItem viewMenuRefresh;
     // End of variables declaration//GEN-END:variables
 
+    /**
+     * Refresh the current branch, looking only at the workfiles that have changed since the last refresh.
+     */
+    public void refreshCurrentBranch() {
+        refreshCurrentBranch(false);
+    }
+
     /**
      * Refresh the current branch.
+     * @param fullRefreshFlag if true, re-read every workfile directory; if false, only look at the workfiles that have changed since the last refresh.
      */
-    public synchronized void refreshCurrentBranch() {
+    public synchronized void refreshCurrentBranch(boolean fullRefreshFlag) {
         // Cancel pending refresh
         if (refreshTask != null) {
             refreshTask.cancel();
@@ -2305,11 +2340,15 @@ public final class QWinFrame extends JFrame implements PasswordChangeListenerInt
                                 directoryManagers = currentDirectoryManagers;
                             }
                             for (DirectoryManagerInterface directoryManager : directoryManagers) {
-                                if (directoryManager.getWorkfileDirectoryManager() != null) {
-                                    directoryManager.getWorkfileDirectoryManager().refresh();
-                                }
                                 try {
-                                    directoryManager.mergeManagers();
+                                    if (fullRefreshFlag) {
+                                        if (directoryManager.getWorkfileDirectoryManager() != null) {
+                                            directoryManager.getWorkfileDirectoryManager().refresh();
+                                        }
+                                        directoryManager.mergeManagers();
+                                    } else {
+                                        directoryManager.mergeChangedWorkfiles();
+                                    }
                                 } catch (QVCSException e) {
                                     warnProblem("Exception on merging on refresh: " + e.getClass().toString() + " " + e.getLocalizedMessage());
                                 }
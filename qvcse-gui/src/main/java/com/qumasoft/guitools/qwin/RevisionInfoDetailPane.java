@@ -15,10 +15,15 @@
 package com.qumasoft.guitools.qwin;
 
 import java.awt.Component;
+import java.awt.Rectangle;
+import java.awt.event.AdjustmentEvent;
 import javax.swing.ImageIcon;
 import javax.swing.JLabel;
 import javax.swing.JList;
 import javax.swing.ListCellRenderer;
+import javax.swing.SwingUtilities;
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
 
 /**
  * Revision and label information detail pane.
@@ -29,12 +34,43 @@ public final class RevisionInfoDetailPane extends javax.swing.JPanel {
 
     private static final ImageIcon SEPARATOR_ICON = new ImageIcon(ClassLoader.getSystemResource("images/revInfoSeparator.png"), "separator");
 
+    private final ListDataListener pageArrivedListener = new ListDataListener() {
+        @Override
+        public void intervalAdded(ListDataEvent e) {
+            // Let the list lay out the new rows first.
+            SwingUtilities.invokeLater(() -> fetchMoreIfNearEnd());
+        }
+
+        @Override
+        public void intervalRemoved(ListDataEvent e) {
+        }
+
+        @Override
+        public void contentsChanged(ListDataEvent e) {
+        }
+    };
+
     /**
      * Creates new form RevAndLabelInfoDetailPane.
      */
     public RevisionInfoDetailPane() {
         initComponents();
         getList().setCellRenderer(new RevisionInfoCellRenderer());
+        scrollPane.getVerticalScrollBar().addAdjustmentListener((AdjustmentEvent e) -> fetchMoreIfNearEnd());
+    }
+
+    /**
+     * The revision history arrives a page at a time. When the user scrolls to within a screenful of the end of what we have, or a page arrives that
+     * does not fill the pane, ask for the next page.
+     */
+    private void fetchMoreIfNearEnd() {
+        if (getList().getModel() instanceof RevisionInfoModel revisionInfoModel) {
+            Rectangle viewRect = scrollPane.getViewport().getViewRect();
+            int remaining = getList().getPreferredSize().height - (viewRect.y + viewRect.height);
+            if (remaining <= viewRect.height) {
+                revisionInfoModel.fetchNextPage();
+            }
+        }
     }
 
     JList getList() {
@@ -43,6 +79,9 @@ public final class RevisionInfoDetailPane extends javax.swing.JPanel {
 
     void setModel(javax.swing.ListModel model) {
         getList().setModel(model);
+        if (model instanceof RevisionInfoModel) {
+            model.addListDataListener(pageArrivedListener);
+        }
     }
 
     void setFontSize(int fontSize) {
@@ -1,4 +1,4 @@
-/*   Copyright 2004-2022 Jim Voris
+/*   Copyright 2004-2023 Jim Voris
  *
  *   Licensed under the Apache License, Version 2.0 (the "License");
  *   you may not use this file except in compliance with the License.
@@ -18,23 +18,31 @@ import com.qumasoft.guitools.qwin.filefilter.FileFilterInterface;
 import com.qumasoft.guitools.qwin.revisionfilter.FilteredRevisionInfo;
 import com.qumasoft.guitools.qwin.revisionfilter.RevisionFilterFactory;
 import com.qumasoft.guitools.qwin.revisionfilter.RevisionFilterInterface;
-import com.qumasoft.qvcslib.LogfileInfo;
 import com.qumasoft.qvcslib.MergedInfoInterface;
 import com.qumasoft.qvcslib.RevisionHeader;
-import com.qumasoft.qvcslib.RevisionInformation;
+import com.qumasoft.qvcslib.RevisionHistoryFilter;
+import com.qumasoft.qvcslib.RevisionHistoryPage;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import javax.swing.SwingUtilities;
+import javax.swing.event.ListDataEvent;
 import javax.swing.event.ListDataListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
- * Revision and label information model.
+ * Revision and label information model. The revision history is fetched from the server a page at a time, newest revision first; the detail pane asks
+ * for the next page (see {@link #fetchNextPage()}) as the user scrolls toward the end of what we have so far. The revision filters in the file filter
+ * collection are sent to the server with each page request, so revisions that do not pass them are never sent to us.
  * @author Jim Voris
  */
 public class RevisionInfoModel implements javax.swing.ListModel {
+    // Create our logger object
+    private static final Logger LOGGER = LoggerFactory.getLogger(RevisionInfoModel.class);
 
     private static final String PARSER_TAG = "-";
     private static final String SEPARATOR_TAG = "Separator------------------------------------------------";
@@ -43,52 +51,105 @@ public class RevisionInfoModel implements javax.swing.ListModel {
     private final Map<ListDataListener, ListDataListener> listeners = Collections.synchronizedMap(new HashMap<>());
     private static final int DEFAULT_WORD_WRAP_COLUMN = 80;
 
+    // What we page through. These are null for an empty model.
+    private final MergedInfoInterface mergedInfo;
+    private final RevisionHistoryFilter revisionHistoryFilter;
+    private final List<RevisionFilterInterface> clientRevisionFilterCollection;
+    private final boolean allBranchesFlag;
+
+    // The paging state. Only touched on the Swing thread.
+    private Integer nextFileRevisionId = null;
+    private boolean moreRevisionsFlag = false;
+    private boolean fetchInProgressFlag = false;
+
     /**
-     * Creates a new instance of RevisionInfoModel.
+     * Creates a new, empty, instance of RevisionInfoModel.
      */
     public RevisionInfoModel() {
+        this.mergedInfo = null;
+        this.revisionHistoryFilter = null;
+        this.clientRevisionFilterCollection = null;
+        this.allBranchesFlag = false;
+    }
+
+    /**
+     * Create a new instance, using the given mergedInfo. This starts fetching the first page of revision history; call it on the Swing thread.
+     * @param info the file from which we get the revision and label information.
+     * @param allBranches true to show the revisions on all branches; false for the revisions visible on the current branch.
+     */
+    public RevisionInfoModel(MergedInfoInterface info, boolean allBranches) {
+        this.mergedInfo = info;
+        this.allBranchesFlag = allBranches;
+        this.revisionHistoryFilter = new RevisionHistoryFilter();
+        this.clientRevisionFilterCollection = new ArrayList<>();
+        FilteredFileTableModel filteredFileTableModel = (FilteredFileTableModel) QWinFrame.getQWinFrame().getRightFilePane().getModel();
+        for (RevisionFilterInterface revisionFilter : createRevisionInfoFilterCollection(filteredFileTableModel.getFilterCollection())) {
+            // Only the 'AND' filters apply to revisions. Have the server apply the ones it can.
+            if (revisionFilter.getIsANDFilter() && !revisionFilter.addToRevisionHistoryFilter(revisionHistoryFilter)) {
+                clientRevisionFilterCollection.add(revisionFilter);
+            }
+        }
+        if (info.getArchiveInfo() != null) {
+            moreRevisionsFlag = true;
+            fetchNextPage();
+        }
     }
 
     /**
-     * Create a new instance, using the given mergedInfo.
-     * @param mergedInfo the file from which we get the revision and label information.
+     * Ask the server for the next page of revision history, unless we already have all of it, or a request is already outstanding. Call this on the
+     * Swing thread.
      */
-    public RevisionInfoModel(MergedInfoInterface mergedInfo) {
-        if (mergedInfo.getArchiveInfo() != null) {
-            addRevisionInformation(mergedInfo);
+    void fetchNextPage() {
+        if (mergedInfo == null || !moreRevisionsFlag || fetchInProgressFlag) {
+            return;
         }
+        fetchInProgressFlag = true;
+        QWinFrame.getQWinFrame().fetchRevisionHistoryPage(mergedInfo, allBranchesFlag, nextFileRevisionId, revisionHistoryFilter)
+                .whenComplete((RevisionHistoryPage page, Throwable throwable) -> SwingUtilities.invokeLater(() -> addPage(page, throwable)));
     }
 
-    public RevisionInfoModel(MergedInfoInterface mergedInfo, LogfileInfo logfileInfo) {
-        if (logfileInfo != null) {
-            addRevisionInformation(mergedInfo, logfileInfo);
+    private void addPage(RevisionHistoryPage page, Throwable throwable) {
+        fetchInProgressFlag = false;
+        if (throwable != null) {
+            LOGGER.warn("Failed to fetch revision history for: [{}]: [{}]", mergedInfo.getShortWorkfileName(), throwable.getLocalizedMessage());
+            moreRevisionsFlag = false;
+            return;
+        }
+        int firstIndex = revAndLabelList.size();
+        for (RevisionHeader revHeader : page.getRevisionHeaderList()) {
+            FilteredRevisionInfo fri = new FilteredRevisionInfo(mergedInfo, revHeader, revHeader.getRevisionIndex());
+            if (passesRevisionFilterCollection(clientRevisionFilterCollection, fri)) {
+                addRevision(revHeader);
+            }
+        }
+        nextFileRevisionId = page.getNextFileRevisionId();
+        moreRevisionsFlag = page.hasMore();
+        int lastIndex = revAndLabelList.size() - 1;
+        if (lastIndex >= firstIndex) {
+            fireIntervalAdded(firstIndex, lastIndex);
+        } else {
+            // Nothing on this page passed the client side filters, so there is nothing new to scroll to.
+            fetchNextPage();
         }
     }
 
-    private void addRevisionInformation(MergedInfoInterface mergedInfo) {
-        LogfileInfo logfileInfo = mergedInfo.getLogfileInfo();
-        addRevisionInformation(mergedInfo, logfileInfo);
+    private void addRevision(RevisionHeader revHeader) {
+        String revisionCreator = revHeader.getCreator();
+        revAndLabelList.add(PARSER_TAG + revHeader.getRevisionString() + " commit id: " + revHeader.getCommitId() + " check in time: "
+                + revHeader.getCheckInDate().toString() + " by " + revisionCreator + "\n");
+        revAndLabelList.add(PARSER_TAG + "Workfile edit date: " + revHeader.getEditDate().toString());
+        addWordWrappedDescription(revHeader.getRevisionDescription());
+        revAndLabelList.add(SEPARATOR_TAG);
     }
 
-    private void addRevisionInformation(MergedInfoInterface mergedInfo, LogfileInfo logfileInfo) {
-        FilteredFileTableModel filteredFileTableModel = (FilteredFileTableModel) QWinFrame.getQWinFrame().getRightFilePane().getModel();
-        FilterCollection fileFilterCollection = filteredFileTableModel.getFilterCollection();
-        List<RevisionFilterInterface> revisionInfoFilterCollection = createRevisionInfoFilterCollection(fileFilterCollection);
-
-        int revisionCount = logfileInfo.getLogFileHeaderInfo().getRevisionCount();
-        RevisionInformation revisionInformation = logfileInfo.getRevisionInformation();
-
-        for (int i = 0; i < revisionCount; i++) {
-            RevisionHeader revHeader = revisionInformation.getRevisionHeader(i);
-            FilteredRevisionInfo fri = new FilteredRevisionInfo(mergedInfo, revHeader, i);
-            if (passesRevisionFilterCollection(revisionInfoFilterCollection, fri)) {
-                String revisionCreator = revHeader.getCreator();
-                revAndLabelList.add(PARSER_TAG + revHeader.getRevisionString() + " commit id: " + revHeader.getCommitId() + " check in time: "
-                        + revHeader.getCheckInDate().toString() + " by " + revisionCreator + "\n");
-                revAndLabelList.add(PARSER_TAG + "Workfile edit date: " + revHeader.getEditDate().toString());
-                addWordWrappedDescription(revHeader.getRevisionDescription());
-                revAndLabelList.add(SEPARATOR_TAG);
-            }
+    private void fireIntervalAdded(int firstIndex, int lastIndex) {
+        ListDataEvent event = new ListDataEvent(this, ListDataEvent.INTERVAL_ADDED, firstIndex, lastIndex);
+        List<ListDataListener> listenerList;
+        synchronized (listeners) {
+            listenerList = new ArrayList<>(listeners.values());
+        }
+        for (ListDataListener listener : listenerList) {
+            listener.intervalAdded(event);
         }
     }
 
@@ -34,7 +34,6 @@ import com.qumasoft.guitools.qwin.operation.OperationVisualMerge;
 import com.qumasoft.qvcslib.CommitInfo;
 import com.qumasoft.qvcslib.CommitInfoListWrapper;
 import com.qumasoft.qvcslib.DirectoryManagerInterface;
-import com.qumasoft.qvcslib.LogfileInfo;
 import com.qumasoft.qvcslib.MergedInfoInterface;
 import com.qumasoft.qvcslib.QVCSConstants;
 import com.qumasoft.qvcslib.RemotePropertiesBaseClass;
@@ -267,12 +266,11 @@ public final class RightFilePane extends javax.swing.JPanel implements javax.swi
 
                     if (QWinFrame.getQWinFrame().getRightDetailPane().isRevisionInfoSelected()) {
                         // Update the revision info detail pane.
-                        QWinFrame.getQWinFrame().getRevisionInfoPane().setModel(new RevisionInfoModel(mergedInfo));
+                        QWinFrame.getQWinFrame().getRevisionInfoPane().setModel(new RevisionInfoModel(mergedInfo, false));
                         QWinFrame.getQWinFrame().getAllRevisionInfoPane().setModel(new RevisionInfoModel());
                     } else if (QWinFrame.getQWinFrame().getRightDetailPane().isAllRevisionInfoSelected()) {
                         // Update the revision info detail pane.
-                        LogfileInfo allRevisionLogfileInfo = QWinFrame.getQWinFrame().fetchAllRevisions(mergedInfo);
-                        QWinFrame.getQWinFrame().getAllRevisionInfoPane().setModel(new RevisionInfoModel(mergedInfo, allRevisionLogfileInfo));
+                        QWinFrame.getQWinFrame().getAllRevisionInfoPane().setModel(new RevisionInfoModel(mergedInfo, true));
                         QWinFrame.getQWinFrame().getRevisionInfoPane().setModel(new RevisionInfoModel());
                     }
                 } else {
@@ -246,7 +246,8 @@ public class CompareRevisionsDialog extends AbstractQWinCommandDialog implements
         revisionsToCompareList.addListSelectionListener(this);
 
         if (QWinFrame.getQWinFrame().getRightDetailPane().isAllRevisionInfoSelected()) {
-            revisionsToCompareList.setModel(new RevisionsListModel(QWinFrame.getQWinFrame().getAllLogfileInfo()));
+            // The all revisions pane only fetches the history a page at a time, so fetch all of it for the compare.
+            revisionsToCompareList.setModel(new RevisionsListModel(QWinFrame.getQWinFrame().fetchAllRevisions(mergedInfo)));
         } else {
             revisionsToCompareList.setModel(new RevisionsListModel(mergedInfo.getLogfileInfo()));
         }
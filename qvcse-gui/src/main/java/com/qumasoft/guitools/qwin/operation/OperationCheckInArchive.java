@@ -21,6 +21,7 @@ import com.qumasoft.guitools.qwin.dialog.CheckInDialog;
 import com.qumasoft.guitools.qwin.dialog.ProgressDialog;
 import com.qumasoft.qvcslib.ArchiveDirManagerInterface;
 import com.qumasoft.qvcslib.ArchiveDirManagerProxy;
+import com.qumasoft.qvcslib.BulkCheckIn;
 import com.qumasoft.qvcslib.ClientTransactionManager;
 import com.qumasoft.qvcslib.MergedInfoInterface;
 import com.qumasoft.qvcslib.QVCSException;
@@ -99,6 +100,7 @@ public class OperationCheckInArchive extends OperationBaseClass {
         Runnable worker = () -> {
             TransportProxyInterface transportProxy = null;
             int transactionID = 0;
+            BulkCheckIn bulkCheckIn = null;
 
             try {
                 int size = mergedInfoArray.size();
@@ -114,6 +116,15 @@ public class OperationCheckInArchive extends OperationBaseClass {
                         ArchiveDirManagerProxy archiveDirManagerProxy = (ArchiveDirManagerProxy) archiveDirManager;
                         transportProxy = archiveDirManagerProxy.getTransportProxy();
                         transactionID = ClientTransactionManager.getInstance().sendBeginTransaction(transportProxy);
+
+                        // Send a multi-file check in as one request, so the server can add all the revisions under one commit.
+                        if (size > 1) {
+                            String commitMessage = checkIn.getChangesDescription();
+                            if (commitMessage.length() == 0) {
+                                commitMessage = "No Comment";
+                            }
+                            bulkCheckIn = new BulkCheckIn(transportProxy, getProjectName(), getBranchName(), commitMessage);
+                        }
                     }
 
                     // Don't bother unless we have an archive file.
@@ -167,12 +178,18 @@ public class OperationCheckInArchive extends OperationBaseClass {
 
                     // The checkInFilename will be null if we are not able to read it.
                     if (checkInFilename != null) {
-                        if (mergedInfo.checkInRevision(commandArgs, checkInFilename, false)) {
+                        if (bulkCheckIn != null && bulkCheckIn.add(mergedInfo, commandArgs, checkInFilename)) {
+                            logMessage("Added: [" + fullWorkfileName + "] to bulk check in.");
+                        } else if (mergedInfo.checkInRevision(commandArgs, checkInFilename, false)) {
                             // This is where I would log the success to the status pane.
                             logMessage("Sent request to check in: [" + fullWorkfileName + "] to server.");
                         }
                     }
                 }
+                if (bulkCheckIn != null && bulkCheckIn.size() > 0) {
+                    bulkCheckIn.send();
+                    logMessage("Sent request to check in: [" + bulkCheckIn.size() + "] files to server.");
+                }
             } catch (QVCSException e) {
                 warnProblem("Caught exception in operationCheckIn: " + e.getClass().toString() + ": " + e.getLocalizedMessage());
                 warnProblem(Utility.expandStackTraceToString(e));
@@ -23,6 +23,7 @@ import com.qumasoft.guitools.qwin.dialog.ProgressDialog;
 import com.qumasoft.qvcslib.ArchiveDirManagerInterface;
 import com.qumasoft.qvcslib.ArchiveDirManagerProxy;
 import com.qumasoft.qvcslib.ClientTransactionManager;
+import com.qumasoft.qvcslib.LogFileProxy;
 import com.qumasoft.qvcslib.MergedInfoInterface;
 import com.qumasoft.qvcslib.QVCSConstants;
 import com.qumasoft.qvcslib.QVCSException;
@@ -32,9 +33,12 @@ import com.qumasoft.qvcslib.Utility;
 import com.qumasoft.qvcslib.WorkFile;
 import com.qumasoft.qvcslib.commandargs.GetRevisionCommandArgs;
 import java.io.File;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import javax.swing.JTable;
 
 /**
@@ -96,6 +100,9 @@ public class OperationGet extends OperationBaseClass {
         Runnable worker = () -> {
             TransportProxyInterface transportProxy = null;
 
+            // The requests for the selected files are pipelined on the connection; these complete as the receive thread writes each workfile.
+            List<CompletableFuture<Object>> pendingGets = new ArrayList<>();
+
             try {
                 int size = mergedInfoArray.size();
                 for (int i = 0; i < size; i++) {
@@ -154,7 +161,11 @@ public class OperationGet extends OperationBaseClass {
                     currentCommandArgs.setTimestampBehavior(commandArgs.getTimestampBehavior());
 
                     if (mergedInfo.getIsRemote()) {
-                        if (mergedInfo.getRevision(currentCommandArgs, fullWorkfileName)) {
+                        if (mergedInfo.getArchiveInfo() instanceof LogFileProxy logFileProxy) {
+                            pendingGets.add(logFileProxy.getRevisionAsync(currentCommandArgs, fullWorkfileName));
+                            logMessage("Sent request to get revision [" + commandArgs.getRevisionString() + "] for ["
+                                    + fullWorkfileName + "] from server.");
+                        } else if (mergedInfo.getRevision(currentCommandArgs, fullWorkfileName)) {
                             // Log the success.
                             logMessage("Sent request to get revision [" + commandArgs.getRevisionString() + "] for ["
                                     + fullWorkfileName + "] from server.");
@@ -167,6 +178,7 @@ public class OperationGet extends OperationBaseClass {
                 warnProblem("operationGet caught exception: " + e.getClass().toString() + " " + e.getLocalizedMessage());
                 warnProblem(Utility.expandStackTraceToString(e));
             } finally {
+                waitForPendingGets(pendingGets);
                 progressMonitor.close();
                 ClientTransactionManager.getInstance().sendEndTransaction(transportProxy, getTransactionID());
                 setWorkCompleted();
@@ -177,6 +189,20 @@ public class OperationGet extends OperationBaseClass {
         new Thread(worker).start();
     }
 
+    private void waitForPendingGets(List<CompletableFuture<Object>> pendingGets) {
+        for (CompletableFuture<Object> pendingGet : pendingGets) {
+            try {
+                pendingGet.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                warnProblem("operationGet interrupted waiting for revisions from the server.");
+                break;
+            } catch (ExecutionException e) {
+                warnProblem("operationGet failed to get revision: " + e.getCause().getLocalizedMessage());
+            }
+        }
+    }
+
     private int getTransactionID() {
         if (transactionID == -1) {
             transactionID = ClientTransactionManager.getInstance().createTransactionIdentifier(getServerName());
@@ -14,6 +14,8 @@
  */
 package com.qumasoft.guitools.qwin.revisionfilter;
 
+import com.qumasoft.qvcslib.RevisionHistoryFilter;
+
 /**
  * Abstract revision filter.
  * @author Jim Voris
@@ -40,4 +42,10 @@ public abstract class AbstractRevisionFilter implements RevisionFilterInterface
         return !isANDFilter;
     }
 
+    @Override
+    public boolean addToRevisionHistoryFilter(RevisionHistoryFilter revisionHistoryFilter) {
+        // By default, the client applies the filter.
+        return false;
+    }
+
 }
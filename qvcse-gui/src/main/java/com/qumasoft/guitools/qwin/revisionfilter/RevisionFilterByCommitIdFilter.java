@@ -16,6 +16,7 @@ package com.qumasoft.guitools.qwin.revisionfilter;
 
 import com.qumasoft.qvcslib.QVCSConstants;
 import com.qumasoft.qvcslib.RevisionHeader;
+import com.qumasoft.qvcslib.RevisionHistoryFilter;
 import java.util.Objects;
 
 /**
@@ -46,6 +47,12 @@ public class RevisionFilterByCommitIdFilter extends AbstractRevisionFilter {
         return retVal;
     }
 
+    @Override
+    public boolean addToRevisionHistoryFilter(RevisionHistoryFilter revisionHistoryFilter) {
+        revisionHistoryFilter.addCommitId(filterCommitId);
+        return true;
+    }
+
     @Override
     public String getFilterType() {
         return QVCSConstants.BY_COMMIT_ID_FILTER;
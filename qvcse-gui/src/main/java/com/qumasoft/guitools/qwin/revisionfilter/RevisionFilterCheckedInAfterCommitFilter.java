@@ -17,6 +17,7 @@ package com.qumasoft.guitools.qwin.revisionfilter;
 import static com.qumasoft.guitools.qwin.QWinUtility.warnProblem;
 import com.qumasoft.qvcslib.QVCSConstants;
 import com.qumasoft.qvcslib.RevisionHeader;
+import com.qumasoft.qvcslib.RevisionHistoryFilter;
 import com.qumasoft.qvcslib.Utility;
 import java.util.Objects;
 
@@ -53,6 +54,15 @@ public class RevisionFilterCheckedInAfterCommitFilter extends AbstractRevisionFi
         return retVal;
     }
 
+    @Override
+    public boolean addToRevisionHistoryFilter(RevisionHistoryFilter revisionHistoryFilter) {
+        if (filterCommitId == null) {
+            return false;
+        }
+        revisionHistoryFilter.addCommitIdGreaterThan(filterCommitId);
+        return true;
+    }
+
     @Override
     public String getFilterType() {
         return QVCSConstants.CHECKED_IN_AFTER_COMMIT_ID_FILTER;
@@ -17,6 +17,7 @@ package com.qumasoft.guitools.qwin.revisionfilter;
 import static com.qumasoft.guitools.qwin.QWinUtility.warnProblem;
 import com.qumasoft.qvcslib.QVCSConstants;
 import com.qumasoft.qvcslib.RevisionHeader;
+import com.qumasoft.qvcslib.RevisionHistoryFilter;
 import com.qumasoft.qvcslib.Utility;
 import java.util.Objects;
 
@@ -52,6 +53,15 @@ public class RevisionFilterCheckedInBeforeCommitFilter extends AbstractRevisionF
         return retVal;
     }
 
+    @Override
+    public boolean addToRevisionHistoryFilter(RevisionHistoryFilter revisionHistoryFilter) {
+        if (filterCommitId == null) {
+            return false;
+        }
+        revisionHistoryFilter.addCommitIdLessThan(filterCommitId);
+        return true;
+    }
+
     @Override
     public String getFilterType() {
         return QVCSConstants.CHECKED_IN_BEFORE_COMMIT_ID_FILTER;
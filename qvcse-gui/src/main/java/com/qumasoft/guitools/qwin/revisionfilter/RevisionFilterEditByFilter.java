@@ -18,6 +18,7 @@ import com.qumasoft.qvcslib.LogfileInfo;
 import com.qumasoft.qvcslib.MergedInfoInterface;
 import com.qumasoft.qvcslib.QVCSConstants;
 import com.qumasoft.qvcslib.RevisionHeader;
+import com.qumasoft.qvcslib.RevisionHistoryFilter;
 import java.util.Objects;
 
 /**
@@ -51,6 +52,12 @@ public class RevisionFilterEditByFilter extends AbstractRevisionFilter {
         return retVal;
     }
 
+    @Override
+    public boolean addToRevisionHistoryFilter(RevisionHistoryFilter revisionHistoryFilter) {
+        revisionHistoryFilter.addCreator(filterEditBy);
+        return true;
+    }
+
     @Override
     public String getFilterType() {
         return QVCSConstants.EDIT_BY_FILTER;
@@ -17,6 +17,7 @@ package com.qumasoft.guitools.qwin.revisionfilter;
 import com.qumasoft.qvcslib.MergedInfoInterface;
 import com.qumasoft.qvcslib.QVCSConstants;
 import com.qumasoft.qvcslib.RevisionHeader;
+import com.qumasoft.qvcslib.RevisionHistoryFilter;
 import java.util.Objects;
 
 /**
@@ -49,6 +50,12 @@ public class RevisionFilterExcludeEditByFilter extends AbstractRevisionFilter {
         return retVal;
     }
 
+    @Override
+    public boolean addToRevisionHistoryFilter(RevisionHistoryFilter revisionHistoryFilter) {
+        revisionHistoryFilter.addExcludedCreator(getFilterData());
+        return true;
+    }
+
     @Override
     public String getFilterType() {
         return QVCSConstants.EXCLUDE_EDIT_BY_FILTER;
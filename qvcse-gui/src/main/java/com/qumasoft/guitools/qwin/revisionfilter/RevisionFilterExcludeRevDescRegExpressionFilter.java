@@ -16,6 +16,7 @@ package com.qumasoft.guitools.qwin.revisionfilter;
 
 import com.qumasoft.qvcslib.QVCSConstants;
 import com.qumasoft.qvcslib.RevisionHeader;
+import com.qumasoft.qvcslib.RevisionHistoryFilter;
 import java.util.Objects;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -57,6 +58,15 @@ public class RevisionFilterExcludeRevDescRegExpressionFilter extends AbstractRev
         return retVal;
     }
 
+    @Override
+    public boolean addToRevisionHistoryFilter(RevisionHistoryFilter revisionHistoryFilter) {
+        if (regularExpressionPattern == null) {
+            return false;
+        }
+        revisionHistoryFilter.addExcludedDescriptionExpression(regularExpressionPattern.pattern());
+        return true;
+    }
+
     @Override
     public String getFilterType() {
         return QVCSConstants.EXCLUDE_REG_EXP_REV_DESC_FILTER;
@@ -14,6 +14,8 @@
  */
 package com.qumasoft.guitools.qwin.revisionfilter;
 
+import com.qumasoft.qvcslib.RevisionHistoryFilter;
+
 /**
  * Revision filter interface. Define those methods that a revision filter must implement.
  * @author Jim Voris
@@ -27,6 +29,13 @@ public interface RevisionFilterInterface {
      */
     boolean passesFilter(FilteredRevisionInfo filteredRevisionInfo);
 
+    /**
+     * Add this filter's condition to the filter that the server applies when it builds a page of revision history.
+     * @param revisionHistoryFilter the server side revision filter.
+     * @return true if the server will apply this filter; false if the client must still apply it.
+     */
+    boolean addToRevisionHistoryFilter(RevisionHistoryFilter revisionHistoryFilter);
+
     /**
      * Get the filter type.
      * @return the filter type.
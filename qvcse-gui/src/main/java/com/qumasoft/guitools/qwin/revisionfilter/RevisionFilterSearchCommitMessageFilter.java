@@ -17,6 +17,7 @@ package com.qumasoft.guitools.qwin.revisionfilter;
 
 import com.qumasoft.guitools.qwin.QWinFrame;
 import com.qumasoft.qvcslib.QVCSConstants;
+import com.qumasoft.qvcslib.RevisionHistoryFilter;
 
 /**
  *
@@ -38,6 +39,16 @@ public class RevisionFilterSearchCommitMessageFilter extends AbstractRevisionFil
         return flag;
     }
 
+    @Override
+    public boolean addToRevisionHistoryFilter(RevisionHistoryFilter revisionHistoryFilter) {
+        String searchString = getFilterData();
+        if (searchString == null) {
+            return false;
+        }
+        revisionHistoryFilter.addDescriptionSearchString(searchString);
+        return true;
+    }
+
     @Override
     public String getFilterType() {
         return QVCSConstants.SEARCH_COMMIT_MESSAGES_FILTER;
@@ -154,6 +154,18 @@ public interface ClientAPI {
      */
     List<RevisionInfo> getRevisionInfoList() throws ClientAPIException;
 
+    /**
+     * Get the newest {@link RevisionInfo} objects for the file specified by
+     * the clientAPIContext, newest first. The server sends the revision
+     * history a page at a time, so only the revisions asked for are sent.
+     *
+     * @param maximumRevisionCount the maximum number of revisions to return.
+     * @return the List of (at most maximumRevisionCount) {@link RevisionInfo}
+     * objects for the file specified by the clientAPIContext.
+     * @throws ClientAPIException if there are any problems.
+     */
+    List<RevisionInfo> getRevisionInfoList(int maximumRevisionCount) throws ClientAPIException;
+
     /**
      * Get the most recent activity for the project/branch/directory specified by
      * the clientAPIContext. You must be logged in. This method is useful for
@@ -21,8 +21,10 @@ import com.qumasoft.qvcslib.ClientTransactionManager;
 import com.qumasoft.qvcslib.DirectoryManagerFactory;
 import com.qumasoft.qvcslib.EndTransactionListenerInterface;
 import com.qumasoft.qvcslib.LogFileProxy;
-import com.qumasoft.qvcslib.LogfileInfo;
 import com.qumasoft.qvcslib.QVCSConstants;
+import com.qumasoft.qvcslib.RevisionHeader;
+import com.qumasoft.qvcslib.RevisionHistoryPage;
+import com.qumasoft.qvcslib.RevisionHistoryPageFetcher;
 import com.qumasoft.qvcslib.ServerManager;
 import com.qumasoft.qvcslib.ServerProperties;
 import com.qumasoft.qvcslib.SynchronizationManager;
@@ -33,6 +35,7 @@ import com.qumasoft.qvcslib.TransportProxyType;
 import com.qumasoft.qvcslib.Utility;
 import com.qumasoft.qvcslib.WorkfileDigestManager;
 import com.qumasoft.qvcslib.requestdata.ClientRequestGetMostRecentActivityData;
+import com.qumasoft.qvcslib.requestdata.ClientRequestGetRevisionHistoryPageData;
 import com.qumasoft.qvcslib.requestdata.ClientRequestListClientProjectsData;
 import com.qumasoft.qvcslib.response.ServerResponseGetMostRecentActivity;
 import com.qumasoft.qvcslib.response.ServerResponseInterface;
@@ -50,6 +53,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import javax.swing.event.ChangeEvent;
@@ -212,7 +216,20 @@ class ClientAPIImpl implements ClientAPI, ChangeListener, EndTransactionListener
 
         LOGGER.info("============================================ getRevisionInfoList");
 
-        List<RevisionInfo> revisionInfoList = populateRevisionInfoList();
+        List<RevisionInfo> revisionInfoList = populateRevisionInfoList(Integer.MAX_VALUE);
+
+        // End the operation.
+        endOperation();
+        return revisionInfoList;
+    }
+
+    @Override
+    public List<RevisionInfo> getRevisionInfoList(int maximumRevisionCount) throws ClientAPIException {
+        validateAPIContextIsLoggedIn();
+
+        LOGGER.info("============================================ getRevisionInfoList: [{}]", maximumRevisionCount);
+
+        List<RevisionInfo> revisionInfoList = populateRevisionInfoList(maximumRevisionCount);
 
         // End the operation.
         endOperation();
@@ -508,7 +525,7 @@ class ClientAPIImpl implements ClientAPI, ChangeListener, EndTransactionListener
         return projectList;
     }
 
-    private List<RevisionInfo> populateRevisionInfoList() throws ClientAPIException {
+    private List<RevisionInfo> populateRevisionInfoList(int maximumRevisionCount) throws ClientAPIException {
 
         // Populate the file info list (which will populate the project list, and the branch list as well, and the directory info list).
         populateFileInfoList();
@@ -523,16 +540,33 @@ class ClientAPIImpl implements ClientAPI, ChangeListener, EndTransactionListener
             throw new ClientAPIException("Requested file [" + clientAPIContextImpl.getFileName() + "] not found in directory: [" + clientAPIContextImpl.getAppendedPath() + "]");
         }
 
-        // Wait for revision detail from the server.
+        // Wait for revision detail from the server, a page at a time.
         LOGGER.info("Client API waiting for revision detail from server...");
-        LogfileInfo logFileInfo = logFileProxy.getLogfileInfo();
-
-        // And populate the list with the revision info.
-        List<RevisionInfo> revisionInfoList = new ArrayList<>(logFileProxy.getRevisionCount());
-        for (int i = 0; i < logFileProxy.getRevisionCount(); i++) {
-            RevisionInfoImpl revisionInfoImpl = new RevisionInfoImpl(logFileInfo, logFileInfo.getRevisionInformation().getRevisionHeader(i));
-            revisionInfoList.add(revisionInfoImpl);
-        }
+        List<RevisionInfo> revisionInfoList = new ArrayList<>();
+        Integer startAfterFileRevisionId = null;
+        do {
+            ClientRequestGetRevisionHistoryPageData request = new ClientRequestGetRevisionHistoryPageData();
+            request.setProjectName(clientAPIContextImpl.getProjectName());
+            request.setBranchName(clientAPIContextImpl.getBranchName());
+            request.setAppendedPath(clientAPIContextImpl.getAppendedPath());
+            request.setShortWorkfileName(logFileProxy.getShortWorkfileName());
+            request.setFileID(logFileProxy.getFileID());
+            request.setStartAfterFileRevisionId(startAfterFileRevisionId);
+            request.setPageSize(Math.min(ClientRequestGetRevisionHistoryPageData.DEFAULT_PAGE_SIZE, maximumRevisionCount - revisionInfoList.size()));
+            RevisionHistoryPage revisionHistoryPage;
+            try {
+                revisionHistoryPage = RevisionHistoryPageFetcher.fetchPage(clientAPIContextImpl.getTransportProxy(), request).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ClientAPIException("Interrupted waiting for revision detail for: [" + clientAPIContextImpl.getFileName() + "]");
+            } catch (ExecutionException e) {
+                throw new ClientAPIException("Failed to get revision detail for: [" + clientAPIContextImpl.getFileName() + "]: " + e.getCause().getMessage());
+            }
+            for (RevisionHeader revisionHeader : revisionHistoryPage.getRevisionHeaderList()) {
+                revisionInfoList.add(new RevisionInfoImpl(revisionHeader));
+            }
+            startAfterFileRevisionId = revisionHistoryPage.getNextFileRevisionId();
+        } while (startAfterFileRevisionId != null && revisionInfoList.size() < maximumRevisionCount);
 
         return revisionInfoList;
     }
@@ -14,7 +14,6 @@
  */
 package com.qumasoft.clientapi;
 
-import com.qumasoft.qvcslib.LogfileInfo;
 import com.qumasoft.qvcslib.RevisionHeader;
 import java.util.Date;
 
@@ -26,7 +25,7 @@ class RevisionInfoImpl implements RevisionInfo {
 
     private final RevisionHeader revisionHeader;
 
-    RevisionInfoImpl(LogfileInfo info, RevisionHeader revHeader) {
+    RevisionInfoImpl(RevisionHeader revHeader) {
         this.revisionHeader = revHeader;
     }
 
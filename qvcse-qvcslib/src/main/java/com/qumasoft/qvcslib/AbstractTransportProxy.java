@@ -14,6 +14,7 @@
  */
 package com.qumasoft.qvcslib;
 
+import com.qumasoft.qvcslib.requestdata.ClientRequestClientData;
 import com.qumasoft.qvcslib.response.ServerResponseProjectControl;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -21,9 +22,13 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.net.Socket;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -34,6 +39,9 @@ import org.slf4j.LoggerFactory;
 public abstract class AbstractTransportProxy implements TransportProxyInterface {
     // Create our logger object
     private static final Logger LOGGER = LoggerFactory.getLogger(AbstractTransportProxy.class);
+
+    /** The default number of pipelined requests that may be outstanding on a connection. */
+    public static final int DEFAULT_MAXIMUM_IN_FLIGHT_REQUEST_COUNT = Integer.getInteger("qvcsos.client.maximumInFlightRequestCount", 16);
     private final ServerProperties serverProperties;
     private final Object readLock;
     private final Map<String, ArchiveDirManagerInterface> listeners = Collections.synchronizedMap(new TreeMap<>());
@@ -41,8 +49,6 @@ public abstract class AbstractTransportProxy implements TransportProxyInterface
     private String username = null; // The name the user is logged in as.
     private ObjectOutputStream objectRequestStream = null;
     private ObjectInputStream objectResponseStream = null;
-    private final Compressor decompressor;
-    private final Compressor compressor;
     private TransportProxyListenerInterface proxyListener = null;
     private boolean isOpenFlag = false;
     private final Object requestStreamSyncObject = new Object();
@@ -51,6 +57,13 @@ public abstract class AbstractTransportProxy implements TransportProxyInterface
     private HeartbeatThread heartbeatThread = null;
     private Socket socket = null;
     private String proxyKeyValue;
+    private volatile int wireProtocolVersion = WireProtocolCodec.JAVA_SERIALIZATION_PROTOCOL_VERSION;
+
+    // The pipelined requests that are waiting for a response, keyed by sync token.
+    private final Map<Integer, CompletableFuture<Object>> inFlightRequestMap = new ConcurrentHashMap<>();
+    private final Object inFlightWindowSyncObject = new Object();
+    private int maximumInFlightRequestCount = Math.max(1, DEFAULT_MAXIMUM_IN_FLIGHT_REQUEST_COUNT);
+    private int inFlightRequestCount = 0;
 
     /**
      * Construct the common parts of a transport.
@@ -64,8 +77,6 @@ public abstract class AbstractTransportProxy implements TransportProxyInterface
         serverProperties = serverPropertiesArg;
         proxyListener = proxyListenerArg;
 
-        compressor = new ZlibCompressor();
-        decompressor = new ZlibCompressor();
         visualCompareInterface = visualCompareInterfaceArg;
         this.proxyKeyValue = keyValue;
     }
@@ -209,9 +220,13 @@ public abstract class AbstractTransportProxy implements TransportProxyInterface
                 try {
                     retVal = objectResponseStream.readObject();
                     if (retVal instanceof byte[]) {
-                        // We'll need to de-compress this.
-                        byte[] compressedInput = (byte[]) retVal;
-                        retVal = decompress(compressedInput);
+                        byte[] inputBuffer = (byte[]) retVal;
+                        if (WireProtocolCodec.isFrame(inputBuffer)) {
+                            retVal = WireProtocolCodec.decode(inputBuffer);
+                        } else {
+                            // We'll need to de-compress this.
+                            retVal = decompress(inputBuffer);
+                        }
                     }
                 } catch (java.io.EOFException e) {
                     // Server has shut down...
@@ -243,7 +258,12 @@ public abstract class AbstractTransportProxy implements TransportProxyInterface
         synchronized (requestStreamSyncObject) {
             if (objectRequestStream != null) {
                 try {
-                    Object retVal = compress(object);
+                    Object retVal;
+                    if (wireProtocolVersion >= WireProtocolCodec.BINARY_PROTOCOL_VERSION) {
+                        retVal = WireProtocolCodec.encode((java.io.Serializable) object);
+                    } else {
+                        retVal = compress(object);
+                    }
                     objectRequestStream.writeObject(retVal);
                     objectRequestStream.flush();
 
@@ -260,6 +280,100 @@ public abstract class AbstractTransportProxy implements TransportProxyInterface
         }
     }
 
+    @Override
+    public CompletableFuture<Object> writeAsync(ClientRequestClientData request) {
+        Integer token = request.getSyncToken();
+        try {
+            acquireInFlightSlot();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            SynchronizationManager.getSynchronizationManager().failOnToken(token, e);
+            return CompletableFuture.failedFuture(e);
+        }
+        CompletableFuture<Object> future;
+        try {
+            future = SynchronizationManager.getSynchronizationManager().registerFuture(token);
+        } catch (RuntimeException e) {
+            releaseInFlightSlot();
+            throw e;
+        }
+        inFlightRequestMap.put(token, future);
+        future.whenComplete((response, throwable) -> {
+            inFlightRequestMap.remove(token);
+            releaseInFlightSlot();
+        });
+        if (getIsOpen()) {
+            write(request);
+        }
+        if (!getIsOpen()) {
+            // The write failed, or we were never connected. Either way, there won't be a response.
+            SynchronizationManager.getSynchronizationManager().failOnToken(token, new QVCSRuntimeException("Connection to server is closed."));
+        }
+        return future;
+    }
+
+    @Override
+    public void setMaximumInFlightRequestCount(int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("The in-flight request window must be at least 1.");
+        }
+        synchronized (inFlightWindowSyncObject) {
+            maximumInFlightRequestCount = count;
+            inFlightWindowSyncObject.notifyAll();
+        }
+    }
+
+    @Override
+    public int getMaximumInFlightRequestCount() {
+        synchronized (inFlightWindowSyncObject) {
+            return maximumInFlightRequestCount;
+        }
+    }
+
+    @Override
+    public int getInFlightRequestCount() {
+        synchronized (inFlightWindowSyncObject) {
+            return inFlightRequestCount;
+        }
+    }
+
+    private void acquireInFlightSlot() throws InterruptedException {
+        synchronized (inFlightWindowSyncObject) {
+            while (inFlightRequestCount >= maximumInFlightRequestCount) {
+                inFlightWindowSyncObject.wait();
+            }
+            inFlightRequestCount++;
+        }
+    }
+
+    private void releaseInFlightSlot() {
+        synchronized (inFlightWindowSyncObject) {
+            inFlightRequestCount--;
+            inFlightWindowSyncObject.notifyAll();
+        }
+    }
+
+    /**
+     * Fail any pipelined requests that are still waiting for a response.
+     */
+    private void failInFlightRequests() {
+        List<Integer> tokens = new ArrayList<>(inFlightRequestMap.keySet());
+        for (Integer token : tokens) {
+            SynchronizationManager.getSynchronizationManager().failOnToken(token, new QVCSRuntimeException("Connection to server closed before response for token: ["
+                    + token + "]"));
+        }
+    }
+
+    @Override
+    public void setWireProtocolVersion(int protocolVersion) {
+        wireProtocolVersion = protocolVersion;
+    }
+
+    @Override
+    public int getWireProtocolVersion() {
+        return wireProtocolVersion;
+    }
+
     @Override
     public abstract boolean open(int port);
 
@@ -269,6 +383,7 @@ public abstract class AbstractTransportProxy implements TransportProxyInterface
     @Override
     public void close() {
         setIsOpen(false);
+        wireProtocolVersion = WireProtocolCodec.JAVA_SERIALIZATION_PROTOCOL_VERSION;
         try {
             closeObjectRequestStream();
             closeObjectResponseStream();
@@ -284,6 +399,7 @@ public abstract class AbstractTransportProxy implements TransportProxyInterface
             socket = null;
             setObjectRequestStream(null);
             setObjectResponseStream(null);
+            failInFlightRequests();
         }
     }
 
@@ -296,10 +412,11 @@ public abstract class AbstractTransportProxy implements TransportProxyInterface
                 objectOutputStream.flush();
                 inputBuffer = byteOutputStream.toByteArray();
             }
-            if (compressor.compress(inputBuffer)) {
-                retVal = compressor.getCompressedBuffer();
+            byte[] compressedBuffer = CompressionEngine.getInstance().compress(inputBuffer, CompressionEngine.getContentName(object));
+            if (compressedBuffer != null) {
+                retVal = compressedBuffer;
                 LOGGER.debug("* * * * * * * * * Compressed * * * * * * * * * * * *" + object.getClass().toString() + " from " + inputBuffer.length + " to "
-                        + compressor.getCompressedBuffer().length);
+                        + compressedBuffer.length);
             }
         } catch (java.lang.OutOfMemoryError e) {
             // If they are trying to create an archive for a really big file,
@@ -313,7 +430,7 @@ public abstract class AbstractTransportProxy implements TransportProxyInterface
 
     private Object decompress(byte[] compressedInput) {
         Object retVal = null;
-        byte[] expandedBuffer = decompressor.expand(compressedInput);
+        byte[] expandedBuffer = CompressionEngine.getInstance().expand(compressedInput);
         ByteArrayInputStream byteInputStream;
         ObjectInputStream objectInputStream;
         try {
@@ -17,13 +17,19 @@ package com.qumasoft.qvcslib;
 import com.qumasoft.qvcslib.commandargs.CreateArchiveCommandArgs;
 import com.qumasoft.qvcslib.requestdata.ClientRequestAddDirectoryData;
 import com.qumasoft.qvcslib.requestdata.ClientRequestCreateArchiveData;
+import com.qumasoft.qvcslib.requestdata.ClientRequestRegisterClientListenerBulkData;
 import com.qumasoft.qvcslib.requestdata.ClientRequestRegisterClientListenerData;
 import com.qumasoft.qvcslib.requestdata.ClientRequestRenameData;
 import com.qumasoft.qvcslib.response.ServerResponseMessage;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import javax.swing.event.ChangeListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -53,6 +59,7 @@ public final class ArchiveDirManagerProxy extends ArchiveDirManagerBase {
      */
     private TransportProxyInterface transportProxy = null;
     private boolean initCompleteFlag = false;
+    private boolean startedFlag = false;
     private final Object initSyncObject = new Object();
     private Date mostRecentCheckInDate = new Date(0L);
 
@@ -95,6 +102,8 @@ public final class ArchiveDirManagerProxy extends ArchiveDirManagerBase {
      */
     @Override
     public void startDirectoryManager() {
+        startedFlag = true;
+
         // So we can be informed when things happen to the transport.
         transportProxy.addReadListener(this);
 
@@ -106,6 +115,68 @@ public final class ArchiveDirManagerProxy extends ArchiveDirManagerBase {
         SynchronizationManager.getSynchronizationManager().waitOnToken(transportProxy, clientListener);
     }
 
+    /**
+     * Start a collection of directory managers using one registration request for each server/project/branch instead of one for each directory. The server
+     * sends the archive information for each directory as it goes, and we wait just once for the whole collection. Directory managers that have already been
+     * started are skipped. The project root and the cemetery are started on their own, since registering for those does more than fetch their archive
+     * information. The archive information for each group is cached locally, and the cached directory stamps are sent with the request, so the server only
+     * sends the archive information for the directories that have changed since we last saw them.
+     *
+     * @param directoryManagers the directory managers to start.
+     */
+    public static void startDirectoryManagers(Collection<ArchiveDirManagerProxy> directoryManagers) {
+        Map<String, List<ArchiveDirManagerProxy>> directoryManagerGroupMap = new LinkedHashMap<>();
+        for (ArchiveDirManagerProxy directoryManager : directoryManagers) {
+            if (directoryManager.startedFlag) {
+                continue;
+            }
+            String appendedPath = directoryManager.getAppendedPath();
+            if ((appendedPath.length() == 0) || (0 == appendedPath.compareTo(QVCSConstants.QVCSOS_CEMETERY_FAKE_APPENDED_PATH))) {
+                directoryManager.startDirectoryManager();
+            } else {
+                String groupKey = directoryManager.serverProperties.getServerName() + ":" + directoryManager.getProjectName() + ":" + directoryManager.getBranchName();
+                directoryManagerGroupMap.computeIfAbsent(groupKey, key -> new ArrayList<>()).add(directoryManager);
+            }
+        }
+        for (List<ArchiveDirManagerProxy> directoryManagerGroup : directoryManagerGroupMap.values()) {
+            ArchiveDirManagerProxy firstDirectoryManager = directoryManagerGroup.get(0);
+            if (directoryManagerGroup.size() == 1) {
+                firstDirectoryManager.startDirectoryManager();
+            } else {
+                ClientRequestRegisterClientListenerBulkData clientListeners = new ClientRequestRegisterClientListenerBulkData();
+                clientListeners.setProjectName(firstDirectoryManager.getProjectName());
+                clientListeners.setBranchName(firstDirectoryManager.getBranchName());
+                ArchiveInfoCacheStore cacheStore = firstDirectoryManager.getArchiveInfoCacheStore();
+                for (ArchiveDirManagerProxy directoryManager : directoryManagerGroup) {
+                    directoryManager.startedFlag = true;
+                    directoryManager.transportProxy.addReadListener(directoryManager);
+                    Long cachedStamp = null;
+                    if (cacheStore != null) {
+                        ArchiveInfoCacheStore.CachedDirectory cachedDirectory = cacheStore.get(directoryManager.getAppendedPath());
+                        if (cachedDirectory != null) {
+                            cachedStamp = cachedDirectory.getDirectoryStamp();
+                        }
+                    }
+                    clientListeners.addAppendedPath(directoryManager.getAppendedPath(), cachedStamp);
+                }
+                LOGGER.info("Registering as a listener for [{}] directories under: [{}]; [{}] are cached.", directoryManagerGroup.size(), clientListeners.getAppendedPath(),
+                        clientListeners.getCachedStampCount());
+                SynchronizationManager.getSynchronizationManager().waitOnToken(firstDirectoryManager.transportProxy, clientListeners);
+                if (cacheStore != null) {
+                    cacheStore.save();
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the store where we cache the archive information for this directory's server/project/branch.
+     * @return the archive info cache store, or null if the cache is disabled.
+     */
+    public ArchiveInfoCacheStore getArchiveInfoCacheStore() {
+        return ArchiveInfoCacheStore.getStore(serverProperties.getServerName(), getProjectName(), getBranchName());
+    }
+
     /**
      * Get the transport proxy we use to communicate with the server.
      * @return the transport proxy we use to communicate with the server.
@@ -0,0 +1,451 @@
+/*   Copyright 2004-2023 Jim Voris
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.qumasoft.qvcslib;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Archive info cache store. This keeps a local copy of the skinny archive information for each directory of one server/project/branch, so that a client
+ * that reconnects does not need to fetch the archive information again for directories that have not changed.
+ *
+ * <p>Each cached directory is stamped with the directory stamp that the server computed for it (see {@link #computeDirectoryStamp(Collection)}). When the
+ * client registers for a directory, it sends the stamp it has cached; if the server computes the same stamp, it tells the client that the directory is
+ * unchanged instead of sending the archive information, and the client uses what it has cached.</p>
+ *
+ * <p>The store is kept on disk as an append-only log of binary records, one for each cached directory, keyed by the directory's appended path. Saving the
+ * store appends records for just the directories that have changed since the last save. When the log holds too many stale records, it is compacted by
+ * rewriting it with only the live entries. The log is memory mapped and replayed into a concurrent map when the store is opened.</p>
+ *
+ * @author Jim Voris
+ */
+public final class ArchiveInfoCacheStore {
+    // Create our logger object
+    private static final Logger LOGGER = LoggerFactory.getLogger(ArchiveInfoCacheStore.class);
+
+    /** Identifies an archive info cache log file: "QAIC". */
+    static final int LOG_MAGIC = 0x51414943;
+    static final int LOG_VERSION = 1;
+    static final int HEADER_SIZE = 8;
+    static final byte PUT_RECORD = 1;
+    /** Is the archive info cache in use. */
+    static final boolean CACHE_ENABLED = Boolean.parseBoolean(System.getProperty("qvcsos.client.archiveInfoCacheEnabled", "true"));
+    /** Don't bother compacting a log that has fewer records than this. */
+    static final int COMPACTION_MINIMUM_RECORDS = Integer.getInteger("qvcsos.client.archiveInfoCacheCompactionMinimum", 1000);
+    /** Compact when the log has this many times more records than there are live entries. */
+    static final int COMPACTION_RATIO = Integer.getInteger("qvcsos.client.archiveInfoCacheCompactionRatio", 2);
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final int BYTE_MASK = 0xff;
+    private static final int MIX_SHIFT = 33;
+    private static final long MIX_MULTIPLIER_1 = 0xff51afd7ed558ccdL;
+    private static final long MIX_MULTIPLIER_2 = 0xc4ceb9fe1a85ec53L;
+
+    private static final Map<String, ArchiveInfoCacheStore> STORE_MAP = new ConcurrentHashMap<>();
+
+    private final File logFile;
+    private final Map<String, CachedDirectory> directoryMap = new ConcurrentHashMap<>();
+    private final Set<String> changedPathSet = ConcurrentHashMap.newKeySet();
+    private int logRecordCount;
+
+    /**
+     * The cached archive information for one directory.
+     */
+    public static final class CachedDirectory {
+        private final long directoryStamp;
+        private final List<SkinnyLogfileInfo> skinnyList;
+
+        CachedDirectory(long stamp, List<SkinnyLogfileInfo> list) {
+            this.directoryStamp = stamp;
+            this.skinnyList = Collections.unmodifiableList(list);
+        }
+
+        /**
+         * Get the directory stamp the server sent with this archive information.
+         * @return the directory stamp.
+         */
+        public long getDirectoryStamp() {
+            return directoryStamp;
+        }
+
+        /**
+         * Get the skinny archive information for the directory.
+         * @return the skinny archive information for the directory.
+         */
+        public List<SkinnyLogfileInfo> getSkinnyList() {
+            return skinnyList;
+        }
+    }
+
+    private ArchiveInfoCacheStore(File file) {
+        this.logFile = file;
+    }
+
+    /**
+     * Get the archive info cache store for the given server/project/branch. The store is opened the first time it is asked for. If the cache is disabled,
+     * this returns null.
+     *
+     * @param serverName the server name.
+     * @param projectName the project name.
+     * @param branchName the branch name.
+     * @return the archive info cache store, or null if the cache is disabled.
+     */
+    public static ArchiveInfoCacheStore getStore(String serverName, String projectName, String branchName) {
+        if (!CACHE_ENABLED) {
+            return null;
+        }
+        String storeKey = serverName + ":" + projectName + ":" + branchName;
+        return STORE_MAP.computeIfAbsent(storeKey, key -> {
+            String storeName = System.getProperty("user.dir")
+                    + File.separator
+                    + QVCSConstants.QVCS_META_DATA_DIRECTORY
+                    + File.separator
+                    + QVCSConstants.QVCS_ARCHIVE_INFO_CACHE_STORE_NAME
+                    + System.getProperty("user.name")
+                    + "."
+                    + Long.toHexString(hashString(key))
+                    + ".log";
+            return open(new File(storeName));
+        });
+    }
+
+    /**
+     * Open the archive info cache store kept in the given log file.
+     *
+     * @param logFile the archive info cache log file.
+     * @return the archive info cache store.
+     */
+    static ArchiveInfoCacheStore open(File logFile) {
+        ArchiveInfoCacheStore store = new ArchiveInfoCacheStore(logFile);
+        if (logFile.exists()) {
+            store.replayLog();
+        }
+        return store;
+    }
+
+    /**
+     * Compute the stamp that identifies the current state of a directory's archive information. Two lists of skinny info that describe the same files at
+     * the same revisions have the same stamp, whatever order the files are in.
+     *
+     * @param skinnyList the skinny archive information for the directory.
+     * @return the directory stamp.
+     */
+    public static long computeDirectoryStamp(Collection<SkinnyLogfileInfo> skinnyList) {
+        long stamp = skinnyList.size();
+        ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(byteStream)) {
+            for (SkinnyLogfileInfo skinnyInfo : skinnyList) {
+                byteStream.reset();
+                WireProtocolCodec.writeSkinnyLogfileInfo(out, skinnyInfo);
+                out.flush();
+                stamp += mix(hashBytes(byteStream.toByteArray()));
+            }
+        } catch (IOException e) {
+            // We are writing to memory, so this should not happen.
+            throw new QVCSRuntimeException(e.getLocalizedMessage());
+        }
+        return mix(stamp);
+    }
+
+    /**
+     * Get the cached archive information for a directory.
+     * @param appendedPath the appended path of the directory.
+     * @return the cached archive information, or null if the directory is not cached.
+     */
+    public CachedDirectory get(String appendedPath) {
+        return directoryMap.get(appendedPath);
+    }
+
+    /**
+     * Cache the archive information for a directory.
+     * @param appendedPath the appended path of the directory.
+     * @param directoryStamp the directory stamp the server sent with the archive information.
+     * @param skinnyList the skinny archive information for the directory.
+     */
+    public void put(String appendedPath, long directoryStamp, List<SkinnyLogfileInfo> skinnyList) {
+        CachedDirectory existing = directoryMap.get(appendedPath);
+        if (existing == null || existing.getDirectoryStamp() != directoryStamp) {
+            directoryMap.put(appendedPath, new CachedDirectory(directoryStamp, new ArrayList<>(skinnyList)));
+            changedPathSet.add(appendedPath);
+        }
+    }
+
+    /**
+     * Get the number of cached directories.
+     * @return the number of cached directories.
+     */
+    int size() {
+        return directoryMap.size();
+    }
+
+    /**
+     * Get the number of records in the log file, live or not.
+     * @return the number of records in the log file.
+     */
+    int getLogRecordCount() {
+        return logRecordCount;
+    }
+
+    /**
+     * Save the store. Only the directories that changed since the last save are appended to the log. If the log has grown too far beyond the number of
+     * cached directories, it is compacted instead.
+     */
+    public synchronized void save() {
+        if (changedPathSet.isEmpty()) {
+            return;
+        }
+        try {
+            if (needsCompaction()) {
+                compact();
+                return;
+            }
+            int recordCount = 0;
+            ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+            try (FileChannel channel = openLogForAppend()) {
+                Iterator<String> it = changedPathSet.iterator();
+                while (it.hasNext()) {
+                    String appendedPath = it.next();
+                    it.remove();
+                    CachedDirectory cachedDirectory = directoryMap.get(appendedPath);
+                    if (cachedDirectory != null) {
+                        buffer = writeRecord(channel, buffer, appendedPath, cachedDirectory);
+                        recordCount++;
+                    }
+                }
+                flushBuffer(channel, buffer);
+            }
+            logRecordCount += recordCount;
+            LOGGER.debug("Appended [{}] records to archive info cache log: [{}]", recordCount, logFile.getName());
+        } catch (IOException e) {
+            LOGGER.warn("Failed to save archive info cache log: [{}] [{}]", logFile.getAbsolutePath(), e.getLocalizedMessage());
+        }
+    }
+
+    private boolean needsCompaction() {
+        return logRecordCount + changedPathSet.size() >= COMPACTION_MINIMUM_RECORDS && logRecordCount + changedPathSet.size() > COMPACTION_RATIO * directoryMap.size();
+    }
+
+    /**
+     * Rewrite the log with just the live entries, then swap it in place of the old one.
+     * @throws IOException if we cannot write the new log.
+     */
+    private void compact() throws IOException {
+        if (!logFile.getParentFile().exists()) {
+            logFile.getParentFile().mkdirs();
+        }
+        File compactFile = new File(logFile.getAbsolutePath() + ".compact");
+        int recordCount = 0;
+        changedPathSet.clear();
+        try (FileChannel channel = FileChannel.open(compactFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+            buffer.putInt(LOG_MAGIC).putInt(LOG_VERSION);
+            for (Map.Entry<String, CachedDirectory> entry : directoryMap.entrySet()) {
+                buffer = writeRecord(channel, buffer, entry.getKey(), entry.getValue());
+                recordCount++;
+            }
+            flushBuffer(channel, buffer);
+            channel.force(false);
+        }
+        Files.move(compactFile.toPath(), logFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        LOGGER.info("Compacted archive info cache log: [{}] from [{}] records to [{}] records.", logFile.getName(), logRecordCount, recordCount);
+        logRecordCount = recordCount;
+    }
+
+    private FileChannel openLogForAppend() throws IOException {
+        if (!logFile.exists() && !logFile.getParentFile().exists()) {
+            logFile.getParentFile().mkdirs();
+        }
+        FileChannel channel = FileChannel.open(logFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        if (channel.size() == 0L) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(LOG_MAGIC).putInt(LOG_VERSION);
+            flushBuffer(channel, header);
+        }
+        return channel;
+    }
+
+    /**
+     * Add a record to the buffer, writing the buffer out to the channel first if the record will not fit.
+     * @param channel the log's channel.
+     * @param buffer the buffer to add the record to.
+     * @param appendedPath the appended path of the directory.
+     * @param cachedDirectory what we cache for the directory.
+     * @return the buffer, which is a new, larger one if the record would not fit in the one passed in.
+     * @throws IOException if we cannot write to the channel.
+     */
+    private static ByteBuffer writeRecord(FileChannel channel, ByteBuffer buffer, String appendedPath, CachedDirectory cachedDirectory) throws IOException {
+        ByteArrayOutputStream recordStream = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(recordStream)) {
+            out.writeByte(PUT_RECORD);
+            WireProtocolCodec.writeString(out, appendedPath);
+            out.writeLong(cachedDirectory.getDirectoryStamp());
+            out.writeInt(cachedDirectory.getSkinnyList().size());
+            for (SkinnyLogfileInfo skinnyInfo : cachedDirectory.getSkinnyList()) {
+                WireProtocolCodec.writeSkinnyLogfileInfo(out, skinnyInfo);
+            }
+        }
+        byte[] record = recordStream.toByteArray();
+        ByteBuffer recordBuffer = buffer;
+        if (recordBuffer.remaining() < Integer.BYTES + record.length) {
+            flushBuffer(channel, recordBuffer);
+            if (recordBuffer.capacity() < Integer.BYTES + record.length) {
+                recordBuffer = ByteBuffer.allocate(Integer.BYTES + record.length);
+            }
+        }
+        recordBuffer.putInt(record.length);
+        recordBuffer.put(record);
+        return recordBuffer;
+    }
+
+    private static void flushBuffer(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Read the log into memory. If the last record is incomplete (we were stopped part way through a save), the log is cut back to the last complete record.
+     */
+    private void replayLog() {
+        long validLength = 0L;
+        long fileLength = logFile.length();
+        if (fileLength > Integer.MAX_VALUE) {
+            LOGGER.warn("Archive info cache log: [{}] is too large to load. Starting over.", logFile.getAbsolutePath());
+        } else {
+            try (FileChannel channel = FileChannel.open(logFile.toPath(), StandardOpenOption.READ)) {
+                MappedByteBuffer mappedLog = channel.map(FileChannel.MapMode.READ_ONLY, 0L, fileLength);
+                if (fileLength >= HEADER_SIZE && mappedLog.getInt() == LOG_MAGIC && mappedLog.getInt() == LOG_VERSION) {
+                    validLength = HEADER_SIZE;
+                    while (mappedLog.remaining() >= Integer.BYTES) {
+                        int recordLength = mappedLog.getInt();
+                        if (recordLength < Byte.BYTES || recordLength > mappedLog.remaining()) {
+                            break;
+                        }
+                        byte[] record = new byte[recordLength];
+                        mappedLog.get(record);
+                        if (!replayRecord(record)) {
+                            break;
+                        }
+                        validLength = mappedLog.position();
+                        logRecordCount++;
+                    }
+                } else {
+                    LOGGER.warn("Archive info cache log: [{}] has an unexpected header. Starting over.", logFile.getAbsolutePath());
+                }
+            } catch (IOException | RuntimeException e) {
+                LOGGER.warn("Failed to read archive info cache log: [{}] [{}]", logFile.getAbsolutePath(), e.getLocalizedMessage());
+            }
+        }
+        if (validLength < fileLength) {
+            truncateLog(validLength);
+        }
+        LOGGER.info("Loaded archive info for [{}] directories from [{}] log records.", directoryMap.size(), logRecordCount);
+    }
+
+    private boolean replayRecord(byte[] record) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(record))) {
+            if (in.readByte() != PUT_RECORD) {
+                return false;
+            }
+            String appendedPath = WireProtocolCodec.readString(in);
+            long directoryStamp = in.readLong();
+            int count = in.readInt();
+            List<SkinnyLogfileInfo> skinnyList = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                skinnyList.add(WireProtocolCodec.readSkinnyLogfileInfo(in));
+            }
+            directoryMap.put(appendedPath, new CachedDirectory(directoryStamp, skinnyList));
+            return true;
+        } catch (IOException | RuntimeException e) {
+            return false;
+        }
+    }
+
+    private void truncateLog(long validLength) {
+        try {
+            if (validLength == 0L) {
+                Files.deleteIfExists(logFile.toPath());
+                directoryMap.clear();
+                logRecordCount = 0;
+            } else {
+                LOGGER.warn("Truncating archive info cache log: [{}] to [{}] bytes.", logFile.getAbsolutePath(), validLength);
+                try (FileChannel channel = FileChannel.open(logFile.toPath(), StandardOpenOption.WRITE)) {
+                    channel.truncate(validLength);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Failed to truncate archive info cache log: [{}] [{}]", logFile.getAbsolutePath(), e.getLocalizedMessage());
+        }
+    }
+
+    private static long hashString(String key) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            hash ^= c & BYTE_MASK;
+            hash *= FNV_PRIME;
+            hash ^= c >>> Byte.SIZE;
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    private static long hashBytes(byte[] bytes) {
+        long hash = FNV_OFFSET_BASIS;
+        for (byte b : bytes) {
+            hash ^= b & BYTE_MASK;
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * Spread the bits of a hash, so that adding the hashes of the files in a directory does not let them cancel each other out. This is the 64 bit
+     * finalizer from MurmurHash3.
+     * @param value the hash.
+     * @return the mixed hash.
+     */
+    private static long mix(long value) {
+        long h = value;
+        h ^= h >>> MIX_SHIFT;
+        h *= MIX_MULTIPLIER_1;
+        h ^= h >>> MIX_SHIFT;
+        h *= MIX_MULTIPLIER_2;
+        h ^= h >>> MIX_SHIFT;
+        return h;
+    }
+}
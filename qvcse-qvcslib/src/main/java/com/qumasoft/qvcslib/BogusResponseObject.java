@@ -35,6 +35,15 @@ public class BogusResponseObject implements ServerResponseFactoryInterface {
     public void createServerResponse(java.io.Serializable responseObject) {
     }
 
+    @Override
+    public java.io.Serializable prepareServerResponse(java.io.Serializable responseObject) {
+        return responseObject;
+    }
+
+    @Override
+    public void sendPreparedServerResponse(java.io.Serializable preparedResponse) {
+    }
+
     @Override
     public String getServerName() {
         return QVCSConstants.QVCS_SERVER_SERVER_NAME;
@@ -64,4 +73,9 @@ public class BogusResponseObject implements ServerResponseFactoryInterface {
     public boolean getConnectionAliveFlag() {
         return false;
     }
+
+    @Override
+    public boolean isOutboundQueueFull() {
+        return false;
+    }
 }
@@ -0,0 +1,93 @@
+/*   Copyright 2004-2023 Jim Voris
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.qumasoft.qvcslib;
+
+import com.qumasoft.qvcslib.commandargs.CheckInCommandArgs;
+import com.qumasoft.qvcslib.requestdata.ClientRequestBulkData;
+import com.qumasoft.qvcslib.requestdata.ClientRequestCheckInData;
+import java.io.IOException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Collect the check-ins of several files on one project/branch, and send them to the server as a single bulk request, so they are all added in one server
+ * transaction under one commit. The server answers with the response to each contained check-in, which the client handles just as it would have handled
+ * the response to a single check-in.
+ *
+ * @author Jim Voris
+ */
+public final class BulkCheckIn {
+    // Create our logger object
+    private static final Logger LOGGER = LoggerFactory.getLogger(BulkCheckIn.class);
+    private final TransportProxyInterface transportProxy;
+    private final ClientRequestBulkData bulkData;
+
+    /**
+     * Create a bulk check-in.
+     * @param proxy the transport proxy to the server.
+     * @param projectName the project name.
+     * @param branchName the branch name.
+     * @param commitMessage the commit message for the commit that holds the whole batch.
+     */
+    public BulkCheckIn(TransportProxyInterface proxy, String projectName, String branchName, String commitMessage) {
+        this.transportProxy = proxy;
+        this.bulkData = new ClientRequestBulkData();
+        this.bulkData.setProjectName(projectName);
+        this.bulkData.setBranchName(branchName);
+        this.bulkData.setCommitMessage(commitMessage);
+    }
+
+    /**
+     * Add a file to the batch. Only files whose archive is on the server can be batched; for anything else, the caller should check the file in on its
+     * own.
+     * @param mergedInfo the file to check in.
+     * @param commandArgs the check in command arguments.
+     * @param checkInFilename the name of the file to check in.
+     * @return true if the file was added to the batch; false otherwise.
+     */
+    public boolean add(MergedInfoInterface mergedInfo, CheckInCommandArgs commandArgs, String checkInFilename) {
+        boolean retVal = false;
+        if (mergedInfo.getArchiveInfo() instanceof LogFileProxy logFileProxy) {
+            try {
+                ClientRequestCheckInData checkInRequest = logFileProxy.buildCheckInRequest(commandArgs, checkInFilename);
+                if (checkInRequest != null) {
+                    bulkData.addRequest(checkInRequest);
+                    retVal = true;
+                }
+            } catch (IOException e) {
+                LOGGER.warn(e.getLocalizedMessage(), e);
+            }
+        }
+        return retVal;
+    }
+
+    /**
+     * Get the number of files in the batch.
+     * @return the number of files in the batch.
+     */
+    public int size() {
+        return bulkData.getRequestList().size();
+    }
+
+    /**
+     * Send the batch to the server, and wait for the response. An empty batch is not sent.
+     */
+    public void send() {
+        if (size() > 0) {
+            LOGGER.info("Sending bulk check in of [{}] files.", size());
+            SynchronizationManager.getSynchronizationManager().waitOnToken(transportProxy, bulkData);
+        }
+    }
+}
@@ -16,13 +16,15 @@
 package com.qumasoft.qvcslib;
 
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.RandomAccessFile;
 import java.io.UnsupportedEncodingException;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 import org.apache.commons.jrcs.diff.AddDelta;
@@ -243,6 +245,80 @@ public class CompareFilesWithApacheDiff implements QVCSOperation {
         return returnValue;
     }
 
+    /**
+     * Compare two buffers in memory, and return the edit script that transforms the first buffer into the second. This produces exactly the same edit
+     * script as {@link #execute()} would write for two files with the same contents, without touching the file system.
+     *
+     * <p>This is what the server uses to compute the reverse delta for every check-in, so rather than wrapping each line in an object for the apache diff,
+     * it interns the lines and finds the same differences with a {@link MyersLineDiff}.</p>
+     *
+     * @param bufferA the contents of the first 'file'.
+     * @param bufferB the contents of the second 'file'.
+     * @return the edit script.
+     * @throws QVCSOperationException if the comparison fails.
+     */
+    public byte[] computeEditScript(byte[] bufferA, byte[] bufferB) throws QVCSOperationException {
+        setCompareAttempted(true);
+        try {
+            MyersLineDiff.Interner interner = new MyersLineDiff.Interner();
+            MyersLineDiff.Lines linesA = buildInternedLines(bufferA, interner);
+            setFile1LineCount(linesA.getCount());
+            MyersLineDiff.Lines linesB = buildInternedLines(bufferB, interner);
+            setFile2LineCount(linesB.getCount());
+
+            int[] deltas = MyersLineDiff.diff(linesA, linesB);
+            if (deltas == null) {
+                LOGGER.info("Files with [{}] and [{}] lines are too different for the line diff; using the apache diff.", linesA.getCount(), linesB.getCount());
+                return computeEditScriptWithApacheDiff(bufferA, bufferB);
+            }
+            int deltaCount = deltas.length / MyersLineDiff.DELTA_SIZE;
+            comparisonResultFlag = deltaCount == 0;
+
+            ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream(CompareFilesEditHeader.getEditHeaderSize()
+                    + (deltaCount * CompareFilesEditInformation.getSize()));
+            try (DataOutputStream outStream = new DataOutputStream(byteArrayOutputStream)) {
+                writeEditScriptHeader(bufferA.length, outStream);
+                for (int index = 0; index < deltas.length; index += MyersLineDiff.DELTA_SIZE) {
+                    formatEditScript(linesA, deltas[index + MyersLineDiff.ORIGINAL_ANCHOR], deltas[index + MyersLineDiff.ORIGINAL_SIZE], linesB,
+                            deltas[index + MyersLineDiff.REVISED_ANCHOR], deltas[index + MyersLineDiff.REVISED_SIZE], outStream);
+                }
+            }
+            return byteArrayOutputStream.toByteArray();
+        } catch (IOException e) {
+            throw new QVCSOperationException("Compare failed: " + e.getLocalizedMessage());
+        }
+    }
+
+    /**
+     * Compute the edit script the way {@link #computeEditScript(byte[], byte[])} used to, with the apache diff.
+     *
+     * @param bufferA the contents of the first 'file'.
+     * @param bufferB the contents of the second 'file'.
+     * @return the edit script.
+     * @throws QVCSOperationException if the comparison fails.
+     */
+    byte[] computeEditScriptWithApacheDiff(byte[] bufferA, byte[] bufferB) throws QVCSOperationException {
+        setCompareAttempted(true);
+        try {
+            CompareLineInfo[] fileA = buildLinesFromBuffer(bufferA);
+            setFile1LineCount(fileA.length);
+            CompareLineInfo[] fileB = buildLinesFromBuffer(bufferB);
+            setFile2LineCount(fileB.length);
+
+            Revision apacheRevision = Diff.diff(fileA, fileB);
+            comparisonResultFlag = apacheRevision.size() == 0;
+
+            ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream(CompareFilesEditHeader.getEditHeaderSize()
+                    + (apacheRevision.size() * CompareFilesEditInformation.getSize()));
+            try (DataOutputStream outStream = new DataOutputStream(byteArrayOutputStream)) {
+                writeEditScript(apacheRevision, fileA, bufferA.length, outStream);
+            }
+            return byteArrayOutputStream.toByteArray();
+        } catch (DifferentiationFailedException | IOException e) {
+            throw new QVCSOperationException("Compare failed: " + e.getLocalizedMessage());
+        }
+    }
+
     private boolean canReadWriteNecessaryFiles() {
         boolean returnValue = true;
         try {
@@ -276,72 +352,87 @@ public class CompareFilesWithApacheDiff implements QVCSOperation {
     }
 
     private CompareLineInfo[] buildLinesFromFile(File inFile) throws IOException {
+        return buildLinesFromBuffer(Files.readAllBytes(inFile.toPath()));
+    }
+
+    private CompareLineInfo[] buildLinesFromBuffer(byte[] buffer) throws UnsupportedEncodingException {
         List<CompareLineInfo> lineInfoList = new ArrayList<>();
-        try (RandomAccessFile randomAccessFile = new RandomAccessFile(inFile, "r")) {
-            long fileLength = randomAccessFile.length();
-            int startOfLineSeekPosition = 0;
-            int currentSeekPosition = 0;
-            byte character;
-            while (currentSeekPosition < fileLength) {
-                character = randomAccessFile.readByte();
-                currentSeekPosition = (int) randomAccessFile.getFilePointer();
-                if (character == '\n') {
-                    int endOfLine = (int) randomAccessFile.getFilePointer();
-                    byte[] buffer = new byte[endOfLine - startOfLineSeekPosition];
-                    randomAccessFile.seek(startOfLineSeekPosition);
-                    randomAccessFile.readFully(buffer);
-                    CompareLineInfo lineInfo = new CompareLineInfo(startOfLineSeekPosition, createCompareLine(buffer));
-                    lineInfoList.add(lineInfo);
-                    startOfLineSeekPosition = endOfLine;
-                }
+        int startOfLineSeekPosition = 0;
+        for (int currentSeekPosition = 0; currentSeekPosition < buffer.length; currentSeekPosition++) {
+            if (buffer[currentSeekPosition] == '\n') {
+                int endOfLine = currentSeekPosition + 1;
+                byte[] line = Arrays.copyOfRange(buffer, startOfLineSeekPosition, endOfLine);
+                lineInfoList.add(new CompareLineInfo(startOfLineSeekPosition, createCompareLine(line)));
+                startOfLineSeekPosition = endOfLine;
             }
-            // Add the final line which can happen if it doesn't end in a newline.
-            if ((fileLength - startOfLineSeekPosition) > 0L) {
-                byte[] buffer = new byte[(int) fileLength - startOfLineSeekPosition];
-                randomAccessFile.seek(startOfLineSeekPosition);
-                randomAccessFile.readFully(buffer);
-                CompareLineInfo lineInfo = new CompareLineInfo(startOfLineSeekPosition, createCompareLine(buffer));
-                lineInfoList.add(lineInfo);
+        }
+        // Add the final line which can happen if it doesn't end in a newline.
+        if (buffer.length - startOfLineSeekPosition > 0) {
+            byte[] line = Arrays.copyOfRange(buffer, startOfLineSeekPosition, buffer.length);
+            lineInfoList.add(new CompareLineInfo(startOfLineSeekPosition, createCompareLine(line)));
+        }
+        return lineInfoList.toArray(new CompareLineInfo[lineInfoList.size()]);
+    }
+
+    private MyersLineDiff.Lines buildInternedLines(byte[] buffer, MyersLineDiff.Interner interner) throws UnsupportedEncodingException {
+        boolean alteredFlag = getIgnoreCaseFlag() || getIgnoreEOLChangesFlag() || getIgnoreAllWhiteSpace() || getIgnoreLeadingWhiteSpace();
+        MyersLineDiff.Lines lines;
+        if (alteredFlag) {
+            lines = MyersLineDiff.Lines.forAlteredBuffer(buffer);
+        } else {
+            lines = MyersLineDiff.Lines.forBuffer(buffer);
+        }
+        int startOfLineSeekPosition = 0;
+        for (int currentSeekPosition = 0; currentSeekPosition < buffer.length; currentSeekPosition++) {
+            if (buffer[currentSeekPosition] == '\n') {
+                int endOfLine = currentSeekPosition + 1;
+                addLine(lines, buffer, startOfLineSeekPosition, endOfLine, alteredFlag);
+                startOfLineSeekPosition = endOfLine;
             }
         }
-        CompareLineInfo[] lineInfoArray = new CompareLineInfo[lineInfoList.size()];
-        int i = 0;
-        for (CompareLineInfo lineInfo : lineInfoList) {
-            lineInfoArray[i++] = lineInfo;
+        // Add the final line which can happen if it doesn't end in a newline.
+        if (buffer.length - startOfLineSeekPosition > 0) {
+            addLine(lines, buffer, startOfLineSeekPosition, buffer.length, alteredFlag);
+        }
+        lines.intern(interner);
+        return lines;
+    }
+
+    private void addLine(MyersLineDiff.Lines lines, byte[] buffer, int startOfLine, int endOfLine, boolean alteredFlag) throws UnsupportedEncodingException {
+        if (alteredFlag) {
+            lines.addAlteredLine(startOfLine, createCompareLine(Arrays.copyOfRange(buffer, startOfLine, endOfLine)));
+        } else {
+            lines.addLine(startOfLine, endOfLine - startOfLine);
         }
-        return lineInfoArray;
     }
 
     protected void writeEditScript(Revision apacheRevision, CompareLineInfo[] fileA, CompareLineInfo[] fileB) throws QVCSOperationException {
-        DataOutputStream outStream = null;
-        try {
-            outStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(outFile)));
-
-            // Write the header
-            CompareFilesEditHeader editHeader = new CompareFilesEditHeader();
-            editHeader.setBaseFileSize(inFileA.length());
-            Date now = new Date();
-            editHeader.setTimeOfTarget(now.getTime());
-            editHeader.write(outStream);
-
-            int count = apacheRevision.size();
-            for (int index = 0; index < count; index++) {
-                Delta delta = apacheRevision.getDelta(index);
-                formatEditScript(delta, outStream, fileA);
-            }
+        try (DataOutputStream outStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(outFile)))) {
+            writeEditScript(apacheRevision, fileA, inFileA.length(), outStream);
         } catch (IOException e) {
             throw new QVCSOperationException("IO Exception in writeEditScript() " + e.getLocalizedMessage());
-        } finally {
-            if (outStream != null) {
-                try {
-                    outStream.close();
-                } catch (IOException e) {
-                    LOGGER.warn(e.getLocalizedMessage(), e);
-                }
-            }
         }
     }
 
+    private void writeEditScript(Revision apacheRevision, CompareLineInfo[] fileA, long baseFileSize, DataOutputStream outStream) throws QVCSOperationException,
+            IOException {
+        writeEditScriptHeader(baseFileSize, outStream);
+
+        int count = apacheRevision.size();
+        for (int index = 0; index < count; index++) {
+            Delta delta = apacheRevision.getDelta(index);
+            formatEditScript(delta, outStream, fileA);
+        }
+    }
+
+    private void writeEditScriptHeader(long baseFileSize, DataOutputStream outStream) throws IOException {
+        CompareFilesEditHeader editHeader = new CompareFilesEditHeader();
+        editHeader.setBaseFileSize(baseFileSize);
+        Date now = new Date();
+        editHeader.setTimeOfTarget(now.getTime());
+        editHeader.write(outStream);
+    }
+
     private void formatEditScript(Delta delta, DataOutputStream outStream, CompareLineInfo[] fileA) throws QVCSOperationException {
         try {
             short editType;
@@ -397,6 +488,57 @@ public class CompareFilesWithApacheDiff implements QVCSOperation {
         }
     }
 
+    /**
+     * Write one edit for a delta found by the {@link MyersLineDiff}. This describes the edit exactly the way the other formatEditScript() does for the same
+     * apache delta.
+     *
+     * @param linesA the lines of the first 'file'.
+     * @param originalAnchor the first line of the first 'file' in the delta.
+     * @param originalSize the number of lines of the first 'file' in the delta.
+     * @param linesB the lines of the second 'file'.
+     * @param revisedAnchor the first line of the second 'file' in the delta.
+     * @param revisedSize the number of lines of the second 'file' in the delta.
+     * @param outStream where to write the edit.
+     * @throws IOException on a write problem.
+     */
+    private void formatEditScript(MyersLineDiff.Lines linesA, int originalAnchor, int originalSize, MyersLineDiff.Lines linesB, int revisedAnchor,
+            int revisedSize, DataOutputStream outStream) throws IOException {
+        int seekPosition;
+        short editType;
+        int deletedByteCount = 0;
+        int insertedByteCount = 0;
+        if (originalSize > 0) {
+            seekPosition = linesA.getSeekPosition(originalAnchor);
+            deletedByteCount = linesA.getByteCount(originalAnchor, originalSize);
+            if (revisedSize > 0) {
+                editType = CompareFilesEditInformation.QVCS_EDIT_REPLACE;
+            } else {
+                editType = CompareFilesEditInformation.QVCS_EDIT_DELETE;
+            }
+        } else if (originalAnchor == 0) {
+            // The apache diff cannot get here with an empty first 'file'; it would fail. Inserting into an empty file starts at its beginning.
+            seekPosition = 0;
+            if (linesA.getCount() > 0) {
+                seekPosition = linesA.getSeekPosition(0);
+            }
+            editType = CompareFilesEditInformation.QVCS_EDIT_INSERT;
+        } else {
+            seekPosition = linesA.getSeekPosition(originalAnchor - 1) + linesA.getCompareLength(originalAnchor - 1);
+            editType = CompareFilesEditInformation.QVCS_EDIT_INSERT;
+        }
+        if (revisedSize > 0) {
+            insertedByteCount = linesB.getByteCount(revisedAnchor, revisedSize);
+            if (linesB.getCompareByteCount(revisedAnchor, revisedSize) != insertedByteCount) {
+                throw new QVCSRuntimeException("Error in compare with apache.");
+            }
+        }
+        CompareFilesEditInformation editInfo = new CompareFilesEditInformation(editType, seekPosition, deletedByteCount, insertedByteCount);
+        editInfo.write(outStream);
+        if (revisedSize > 0) {
+            linesB.writeCompareBytes(revisedAnchor, revisedSize, outStream);
+        }
+    }
+
     private int computeDeletedByteCount(Delta delta) throws UnsupportedEncodingException {
         // This should be the byte count of the original chunk.
         @SuppressWarnings("unchecked")
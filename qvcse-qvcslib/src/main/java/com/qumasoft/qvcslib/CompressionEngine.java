@@ -0,0 +1,414 @@
+/*   Copyright 2004-2023 Jim Voris
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.qumasoft.qvcslib;
+
+import com.qumasoft.qvcslib.response.ServerResponseGetRevision;
+import com.qumasoft.qvcslib.response.ServerResponseGetRevisionForCompare;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The compression engine. This decides whether a buffer is worth compressing, hands out pooled {@link Deflater} and {@link Inflater} instances to the
+ * deflate based compressors, and keeps the numbers we need to tune it: how many buffers we skipped, how well the rest compressed, and how much CPU it cost.
+ *
+ * <p>A buffer is not compressed when it is smaller than the minimum size, or when it looks like it is already compressed, either from its file extension
+ * (jar, zip, png, ...), or from the magic number at the start of the buffer. Compressing those costs CPU and saves nothing.</p>
+ *
+ * @author Jim Voris
+ */
+public final class CompressionEngine {
+    // Create our logger object
+    private static final Logger LOGGER = LoggerFactory.getLogger(CompressionEngine.class);
+
+    /** Buffers smaller than this are not worth compressing. */
+    public static final int DEFAULT_MINIMUM_COMPRESSION_SIZE = 256;
+
+    private static final int MAXIMUM_POOLED_PER_KIND = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+    private static final int NANOS_PER_MILLI = 1_000_000;
+    private static final int PERCENT = 100;
+
+    private static final Set<String> COMPRESSED_FILE_EXTENSIONS = Set.of(
+            "7z", "bz2", "class", "docx", "ear", "gif", "gz", "ico", "jar", "jpeg", "jpg", "mp3", "mp4", "pdf", "png", "pptx", "rar", "tgz", "war",
+            "webp", "xlsx", "xz", "z", "zip");
+
+    /** The first bytes of the compressed formats we recognize: zip (and so jar and the office formats), gzip, png, jpeg, gif, 7z, and bzip2. */
+    private static final byte[][] COMPRESSED_MAGIC_NUMBERS = {
+        {'P', 'K', 3, 4}, {0x1f, (byte) 0x8b}, {(byte) 0x89, 'P', 'N', 'G'}, {(byte) 0xff, (byte) 0xd8, (byte) 0xff}, {'G', 'I', 'F', '8'},
+        {'7', 'z', (byte) 0xbc, (byte) 0xaf}, {'B', 'Z', 'h'},
+    };
+    private static final int MAGIC_NUMBER_LENGTH = 4;
+
+    private static final CompressionEngine COMPRESSION_ENGINE = new CompressionEngine();
+
+    private volatile int minimumCompressionSize = DEFAULT_MINIMUM_COMPRESSION_SIZE;
+    private volatile int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+    private volatile int defaultAlgorithm = RevisionCompressionHeader.COMPRESS_ALGORITHM_2;
+
+    private final ConcurrentLinkedQueue<Deflater> zlibDeflaterPool = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Deflater> rawDeflaterPool = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Inflater> zlibInflaterPool = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Inflater> rawInflaterPool = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger zlibDeflaterPoolSize = new AtomicInteger(0);
+    private final AtomicInteger rawDeflaterPoolSize = new AtomicInteger(0);
+    private final AtomicInteger zlibInflaterPoolSize = new AtomicInteger(0);
+    private final AtomicInteger rawInflaterPoolSize = new AtomicInteger(0);
+
+    private final LongAdder skippedTooSmallCount = new LongAdder();
+    private final LongAdder skippedAlreadyCompressedCount = new LongAdder();
+    private final LongAdder notWorthwhileCount = new LongAdder();
+    private final LongAdder compressedCount = new LongAdder();
+    private final LongAdder compressedInputBytes = new LongAdder();
+    private final LongAdder compressedOutputBytes = new LongAdder();
+    private final LongAdder compressNanos = new LongAdder();
+    private final LongAdder expandedCount = new LongAdder();
+    private final LongAdder expandNanos = new LongAdder();
+
+    /**
+     * Private constructor -- this is a singleton.
+     */
+    private CompressionEngine() {
+    }
+
+    /**
+     * Get the compression engine singleton.
+     * @return the compression engine singleton.
+     */
+    public static CompressionEngine getInstance() {
+        return COMPRESSION_ENGINE;
+    }
+
+    /**
+     * Get the name of the file whose content is carried by the given message, so the compression policy can look at its extension.
+     * @param message a message that is about to be compressed.
+     * @return the short workfile name for messages that carry a file revision; null otherwise.
+     */
+    public static String getContentName(Object message) {
+        String contentName = null;
+        if (message instanceof ServerResponseGetRevision) {
+            contentName = ((ServerResponseGetRevision) message).getShortWorkfileName();
+        } else if (message instanceof ServerResponseGetRevisionForCompare) {
+            contentName = ((ServerResponseGetRevisionForCompare) message).getShortWorkfileName();
+        }
+        return contentName;
+    }
+
+    /**
+     * Compress a buffer using the default algorithm, if it is worth compressing.
+     * @param inputBuffer the buffer to compress.
+     * @param contentName the name of the file the buffer came from, if known. May be null.
+     * @return the compressed buffer, including its {@link RevisionCompressionHeader}; or null if the buffer should be sent/stored as is.
+     */
+    public byte[] compress(byte[] inputBuffer, String contentName) {
+        return compress(inputBuffer, contentName, defaultAlgorithm);
+    }
+
+    /**
+     * Compress a buffer using the given algorithm, if it is worth compressing.
+     * @param inputBuffer the buffer to compress.
+     * @param contentName the name of the file the buffer came from, if known. May be null.
+     * @param algorithm the compression algorithm to use. This is one of the RevisionCompressionHeader.COMPRESS_ALGORITHM_* values.
+     * @return the compressed buffer, including its {@link RevisionCompressionHeader}; or null if the buffer should be sent/stored as is.
+     */
+    public byte[] compress(byte[] inputBuffer, String contentName, int algorithm) {
+        byte[] retVal = null;
+        if (inputBuffer.length < minimumCompressionSize) {
+            skippedTooSmallCount.increment();
+        } else if (isAlreadyCompressed(contentName, inputBuffer)) {
+            skippedAlreadyCompressedCount.increment();
+            LOGGER.trace("Skipping compression of already compressed content: [{}]", contentName);
+        } else {
+            Compressor compressor = CompressionFactory.getCompressor(algorithm);
+            if (compressor.compress(inputBuffer)) {
+                retVal = compressor.getCompressedBuffer();
+            }
+        }
+        return retVal;
+    }
+
+    /**
+     * Expand a compressed buffer, using whichever algorithm its {@link RevisionCompressionHeader} says it was compressed with.
+     * @param compressedBuffer the compressed buffer, including the RevisionCompressionHeader at its start.
+     * @return the expanded buffer.
+     */
+    public byte[] expand(byte[] compressedBuffer) {
+        RevisionCompressionHeader compressionHeader = RevisionCompressionHeader.fromBuffer(compressedBuffer);
+        return CompressionFactory.getCompressor(compressionHeader).expand(compressionHeader, compressedBuffer);
+    }
+
+    /**
+     * Decide whether a buffer looks like it is already compressed.
+     * @param contentName the name of the file the buffer came from. May be null.
+     * @param buffer the buffer.
+     * @return true if compressing the buffer is unlikely to save anything.
+     */
+    public boolean isAlreadyCompressed(String contentName, byte[] buffer) {
+        if (contentName != null) {
+            int dotIndex = contentName.lastIndexOf('.');
+            if (dotIndex >= 0 && COMPRESSED_FILE_EXTENSIONS.contains(contentName.substring(dotIndex + 1).toLowerCase(Locale.ROOT))) {
+                return true;
+            }
+        }
+        return hasCompressedMagicNumber(buffer);
+    }
+
+    private static boolean hasCompressedMagicNumber(byte[] buffer) {
+        boolean retVal = false;
+        if (buffer.length >= MAGIC_NUMBER_LENGTH) {
+            for (byte[] magicNumber : COMPRESSED_MAGIC_NUMBERS) {
+                if (Arrays.equals(buffer, 0, magicNumber.length, magicNumber, 0, magicNumber.length)) {
+                    retVal = true;
+                    break;
+                }
+            }
+        }
+        return retVal;
+    }
+
+    /**
+     * Borrow a deflater from the pool. It must be handed back with {@link #returnDeflater(Deflater, boolean)}.
+     * @param level the compression level.
+     * @param nowrap true for a raw deflate stream; false for a zlib stream.
+     * @return a deflater that is ready for new input.
+     */
+    Deflater borrowDeflater(int level, boolean nowrap) {
+        Deflater deflater = getDeflaterPool(nowrap).poll();
+        if (deflater == null) {
+            deflater = new Deflater(level, nowrap);
+        } else {
+            getDeflaterPoolSize(nowrap).decrementAndGet();
+            deflater.setLevel(level);
+        }
+        return deflater;
+    }
+
+    /**
+     * Hand a deflater back to the pool. If the pool is full, the deflater's native memory is released instead.
+     * @param deflater the deflater.
+     * @param nowrap the same nowrap value the deflater was borrowed with.
+     */
+    void returnDeflater(Deflater deflater, boolean nowrap) {
+        AtomicInteger poolSize = getDeflaterPoolSize(nowrap);
+        if (poolSize.incrementAndGet() <= MAXIMUM_POOLED_PER_KIND) {
+            deflater.reset();
+            getDeflaterPool(nowrap).offer(deflater);
+        } else {
+            poolSize.decrementAndGet();
+            deflater.end();
+        }
+    }
+
+    /**
+     * Borrow an inflater from the pool. It must be handed back with {@link #returnInflater(Inflater, boolean)}.
+     * @param nowrap true for a raw deflate stream; false for a zlib stream.
+     * @return an inflater that is ready for new input.
+     */
+    Inflater borrowInflater(boolean nowrap) {
+        Inflater inflater = getInflaterPool(nowrap).poll();
+        if (inflater == null) {
+            inflater = new Inflater(nowrap);
+        } else {
+            getInflaterPoolSize(nowrap).decrementAndGet();
+        }
+        return inflater;
+    }
+
+    /**
+     * Hand an inflater back to the pool. If the pool is full, the inflater's native memory is released instead.
+     * @param inflater the inflater.
+     * @param nowrap the same nowrap value the inflater was borrowed with.
+     */
+    void returnInflater(Inflater inflater, boolean nowrap) {
+        AtomicInteger poolSize = getInflaterPoolSize(nowrap);
+        if (poolSize.incrementAndGet() <= MAXIMUM_POOLED_PER_KIND) {
+            inflater.reset();
+            getInflaterPool(nowrap).offer(inflater);
+        } else {
+            poolSize.decrementAndGet();
+            inflater.end();
+        }
+    }
+
+    private ConcurrentLinkedQueue<Deflater> getDeflaterPool(boolean nowrap) {
+        if (nowrap) {
+            return rawDeflaterPool;
+        }
+        return zlibDeflaterPool;
+    }
+
+    private AtomicInteger getDeflaterPoolSize(boolean nowrap) {
+        if (nowrap) {
+            return rawDeflaterPoolSize;
+        }
+        return zlibDeflaterPoolSize;
+    }
+
+    private ConcurrentLinkedQueue<Inflater> getInflaterPool(boolean nowrap) {
+        if (nowrap) {
+            return rawInflaterPool;
+        }
+        return zlibInflaterPool;
+    }
+
+    private AtomicInteger getInflaterPoolSize(boolean nowrap) {
+        if (nowrap) {
+            return rawInflaterPoolSize;
+        }
+        return zlibInflaterPoolSize;
+    }
+
+    /**
+     * Record a compression attempt.
+     * @param inputSize the size of the uncompressed buffer.
+     * @param outputSize the size of the compressed buffer, including its header; or -1 if compression did not save anything.
+     * @param elapsedNanos the time spent compressing.
+     */
+    void recordCompression(int inputSize, int outputSize, long elapsedNanos) {
+        compressNanos.add(elapsedNanos);
+        if (outputSize < 0) {
+            notWorthwhileCount.increment();
+        } else {
+            compressedCount.increment();
+            compressedInputBytes.add(inputSize);
+            compressedOutputBytes.add(outputSize);
+        }
+    }
+
+    /**
+     * Record an expansion.
+     * @param elapsedNanos the time spent expanding.
+     */
+    void recordExpansion(long elapsedNanos) {
+        expandedCount.increment();
+        expandNanos.add(elapsedNanos);
+    }
+
+    /**
+     * Get the minimum size of a buffer that we will try to compress.
+     * @return the minimum compression size.
+     */
+    public int getMinimumCompressionSize() {
+        return minimumCompressionSize;
+    }
+
+    /**
+     * Set the minimum size of a buffer that we will try to compress.
+     * @param size the minimum compression size.
+     */
+    public void setMinimumCompressionSize(int size) {
+        this.minimumCompressionSize = size;
+    }
+
+    /**
+     * Get the deflate compression level.
+     * @return the deflate compression level.
+     */
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    /**
+     * Set the deflate compression level. Lower levels trade compression ratio for CPU.
+     * @param level a level from {@link Deflater#BEST_SPEED} to {@link Deflater#BEST_COMPRESSION}, or {@link Deflater#DEFAULT_COMPRESSION}.
+     */
+    public void setCompressionLevel(int level) {
+        if ((level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION) && level != Deflater.DEFAULT_COMPRESSION) {
+            throw new IllegalArgumentException("Invalid compression level: " + level);
+        }
+        this.compressionLevel = level;
+    }
+
+    /**
+     * Get the algorithm used by {@link #compress(byte[], String)}.
+     * @return the default compression algorithm.
+     */
+    public int getDefaultAlgorithm() {
+        return defaultAlgorithm;
+    }
+
+    /**
+     * Set the algorithm used by {@link #compress(byte[], String)}. Anything that a legacy peer has to read must stay on COMPRESS_ALGORITHM_2.
+     * @param algorithm a registered compression algorithm.
+     */
+    public void setDefaultAlgorithm(int algorithm) {
+        if (!CompressionFactory.isRegistered(algorithm)) {
+            throw new IllegalArgumentException("Unknown compression algorithm: " + algorithm);
+        }
+        this.defaultAlgorithm = algorithm;
+    }
+
+    /**
+     * Get the number of buffers we compressed.
+     * @return the number of buffers we compressed.
+     */
+    public long getCompressedCount() {
+        return compressedCount.sum();
+    }
+
+    /**
+     * Get the number of buffers we did not try to compress because they were too small.
+     * @return the number of buffers that were too small to compress.
+     */
+    public long getSkippedTooSmallCount() {
+        return skippedTooSmallCount.sum();
+    }
+
+    /**
+     * Get the number of buffers we did not try to compress because they looked like they were already compressed.
+     * @return the number of already compressed buffers.
+     */
+    public long getSkippedAlreadyCompressedCount() {
+        return skippedAlreadyCompressedCount.sum();
+    }
+
+    /**
+     * Get the number of buffers that we tried to compress, but where compression did not save anything.
+     * @return the number of buffers that were not worth compressing.
+     */
+    public long getNotWorthwhileCount() {
+        return notWorthwhileCount.sum();
+    }
+
+    /**
+     * Get the compression ratio for the buffers we compressed, as compressed size over input size.
+     * @return the compression ratio; 1.0 if we have not compressed anything.
+     */
+    public double getCompressionRatio() {
+        long inputBytes = compressedInputBytes.sum();
+        double compressionRatio = 1.0;
+        if (inputBytes != 0L) {
+            compressionRatio = (double) compressedOutputBytes.sum() / inputBytes;
+        }
+        return compressionRatio;
+    }
+
+    /**
+     * Get a one line summary of the compression statistics.
+     * @return a one line summary of the compression statistics.
+     */
+    public String getStatistics() {
+        return String.format("Compressed: [%d] ratio: [%d%%] not worthwhile: [%d] skipped too small: [%d] skipped already compressed: [%d] "
+                + "compress time: [%d ms] expanded: [%d] expand time: [%d ms]",
+                getCompressedCount(), Math.round(getCompressionRatio() * PERCENT), getNotWorthwhileCount(), getSkippedTooSmallCount(),
+                getSkippedAlreadyCompressedCount(), compressNanos.sum() / NANOS_PER_MILLI, expandedCount.sum(), expandNanos.sum() / NANOS_PER_MILLI);
+    }
+}
@@ -1,4 +1,4 @@
-/*   Copyright 2004-2014 Jim Voris
+/*   Copyright 2004-2023 Jim Voris
  *
  *   Licensed under the Apache License, Version 2.0 (the "License");
  *   you may not use this file except in compliance with the License.
@@ -14,12 +14,25 @@
  */
 package com.qumasoft.qvcslib;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
 /**
- * Compression factory. Build the compressor that we need.
+ * Compression factory. Build the compressor that we need. Each compression algorithm is identified by the compression type that is recorded in the
+ * {@link RevisionCompressionHeader} of every compressed buffer, so a new codec is added by registering its compressor under a new algorithm id.
  * @author Jim Voris
  */
 public final class CompressionFactory {
 
+    private static final Map<Integer, Supplier<Compressor>> COMPRESSOR_MAP = new ConcurrentHashMap<>();
+
+    static {
+        COMPRESSOR_MAP.put(RevisionCompressionHeader.COMPRESS_ALGORITHM_1, DefaultCompressor::new);
+        COMPRESSOR_MAP.put(RevisionCompressionHeader.COMPRESS_ALGORITHM_2, ZlibCompressor::new);
+        COMPRESSOR_MAP.put(RevisionCompressionHeader.COMPRESS_ALGORITHM_3, RawDeflateCompressor::new);
+    }
+
     private CompressionFactory() {
     }
 
@@ -29,20 +42,39 @@ public final class CompressionFactory {
      * @return the compressor to use for the given compression header.
      */
     public static Compressor getCompressor(RevisionCompressionHeader compressionHeader) {
-        Compressor compressor;
-
-        switch (compressionHeader.getCompressionType()) {
-            case RevisionCompressionHeader.COMPRESS_ALGORITHM_1:
-                compressor = new DefaultCompressor();
-                break;
-            case RevisionCompressionHeader.COMPRESS_ALGORITHM_2:
-                compressor = new ZlibCompressor();
-                break;
-
-            default:
-                compressor = new DefaultCompressor();
-                break;
+        return getCompressor(compressionHeader.getCompressionType());
+    }
+
+    /**
+     * Get the compressor for a given compression algorithm.
+     * @param algorithm the compression algorithm.
+     * @return the compressor for the given algorithm. Unknown algorithms get the default compressor, as they always have.
+     */
+    public static Compressor getCompressor(int algorithm) {
+        Supplier<Compressor> supplier = COMPRESSOR_MAP.get(algorithm);
+        if (supplier == null) {
+            return new DefaultCompressor();
         }
-        return compressor;
+        return supplier.get();
+    }
+
+    /**
+     * Register a compressor for a new compression algorithm.
+     * @param algorithm the algorithm id that will be recorded in the compression header. It must not already be in use.
+     * @param compressorSupplier creates a compressor for the algorithm.
+     */
+    public static void registerCompressor(int algorithm, Supplier<Compressor> compressorSupplier) {
+        if (COMPRESSOR_MAP.putIfAbsent(algorithm, compressorSupplier) != null) {
+            throw new IllegalArgumentException("Compression algorithm already registered: " + algorithm);
+        }
+    }
+
+    /**
+     * Is there a compressor registered for the given algorithm.
+     * @param algorithm the compression algorithm.
+     * @return true if the algorithm is registered.
+     */
+    public static boolean isRegistered(int algorithm) {
+        return COMPRESSOR_MAP.containsKey(algorithm);
     }
 }
@@ -0,0 +1,335 @@
+/*   Copyright 2004-2023 Jim Voris
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.qumasoft.qvcslib;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decide when client connections have gone quiet for too long. Each connection registers once, and then just records when it was last heard from; that is a
+ * single volatile write, so it costs nothing on the I/O path. The registrations are kept on a hashed timing wheel: a ring of buckets, one for each tick, where
+ * each registration sits in the bucket for the tick at which it would expire if it were not heard from again. A supervisor thread sweeps one bucket per tick.
+ * A registration that has been heard from since it was put in the bucket is moved to the bucket for its new deadline; the rest have expired, and are handed
+ * their expiry action together, as a batch, once the sweep is done.
+ *
+ * <p>This replaces a timer task per connection on the shared {@link TimerManager} timer, which had to be cancelled and rescheduled on every write, and which
+ * could be held up by whatever else was running on that timer.</p>
+ *
+ * <p>Each registration also keeps the heartbeat round trip times that its client reports, so we can tell how healthy the connection is.</p>
+ *
+ * @author Jim Voris
+ */
+public final class ConnectionLivenessSupervisor {
+    // Create our logger object
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConnectionLivenessSupervisor.class);
+
+    /** How often the supervisor sweeps the wheel. */
+    static final long TICK_MILLIS = Long.getLong("qvcsos.server.livenessTickMillis", 1000L);
+    /** The number of buckets on the wheel. A deadline further away than one turn of the wheel just goes around again. */
+    static final int WHEEL_SIZE = Integer.getInteger("qvcsos.server.livenessWheelSize", 512);
+    /** The weight given to the newest round trip time in the smoothed round trip time. */
+    private static final double ROUND_TRIP_SMOOTHING = 0.125;
+
+    private final long tickNanos;
+    private final LongSupplier nanoClock;
+    private final long startNanos;
+    private final List<ArrayDeque<Registration>> wheel;
+    private final Queue<Registration> pendingQueue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger registrationCount = new AtomicInteger(0);
+    private final LongAdder expiredCount = new LongAdder();
+
+    // Only the sweeping thread touches this.
+    private long currentTick = 0L;
+
+    /**
+     * Holder for the server's supervisor, so the supervisor thread is only started if something registers.
+     */
+    private static final class SupervisorHolder {
+        private static final ConnectionLivenessSupervisor SUPERVISOR = createStartedSupervisor();
+    }
+
+    /**
+     * Create a supervisor. Nothing sweeps it until {@link #sweep()} is called.
+     * @param tickMillis how often the wheel is swept, in milliseconds.
+     * @param wheelSize the number of buckets on the wheel.
+     * @param clock the clock, in nanoseconds.
+     */
+    ConnectionLivenessSupervisor(long tickMillis, int wheelSize, LongSupplier clock) {
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1L, tickMillis));
+        this.nanoClock = clock;
+        this.startNanos = clock.getAsLong();
+        this.wheel = new ArrayList<>(wheelSize);
+        for (int i = 0; i < wheelSize; i++) {
+            wheel.add(new ArrayDeque<>());
+        }
+    }
+
+    /**
+     * Get the supervisor for the server's client connections. Its supervisor thread is started the first time this is called.
+     * @return the connection liveness supervisor.
+     */
+    public static ConnectionLivenessSupervisor getInstance() {
+        return SupervisorHolder.SUPERVISOR;
+    }
+
+    private static ConnectionLivenessSupervisor createStartedSupervisor() {
+        ConnectionLivenessSupervisor supervisor = new ConnectionLivenessSupervisor(TICK_MILLIS, WHEEL_SIZE, System::nanoTime);
+        Thread supervisorThread = new Thread(supervisor::runSweeps, "ConnectionLivenessSupervisor");
+        supervisorThread.setDaemon(true);
+        supervisorThread.start();
+        return supervisor;
+    }
+
+    /**
+     * Start supervising a connection. It counts as heard from now.
+     * @param name the name of the connection, for logging.
+     * @param timeoutMillis how long the connection may go without being heard from before it expires, in milliseconds.
+     * @param expiryAction what to do when the connection expires. This runs on the supervisor thread, so it must be quick.
+     * @return the registration, which the connection uses to say it has been heard from.
+     */
+    public Registration register(String name, long timeoutMillis, Runnable expiryAction) {
+        Registration registration = new Registration(name, TimeUnit.MILLISECONDS.toNanos(timeoutMillis), expiryAction);
+        registrationCount.incrementAndGet();
+        pendingQueue.add(registration);
+        return registration;
+    }
+
+    /**
+     * Get the number of connections being supervised.
+     * @return the number of connections being supervised.
+     */
+    public int getRegistrationCount() {
+        return registrationCount.get();
+    }
+
+    /**
+     * Get the number of connections that have expired.
+     * @return the number of connections that have expired.
+     */
+    public long getExpiredCount() {
+        return expiredCount.sum();
+    }
+
+    @SuppressWarnings("SleepWhileInLoop")
+    private void runSweeps() {
+        long tickMillis = TimeUnit.NANOSECONDS.toMillis(tickNanos);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Thread.sleep(tickMillis);
+                sweep();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                LOGGER.warn("Connection liveness sweep failed: [{}]", e.getLocalizedMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Sweep the buckets for every tick up to now. If the sweeps have fallen behind, this catches up. Only one thread may sweep.
+     */
+    void sweep() {
+        long now = nanoClock.getAsLong();
+        long nowTick = (now - startNanos) / tickNanos;
+        Registration pending;
+        while ((pending = pendingQueue.poll()) != null) {
+            schedule(pending, pending.lastSeenNanos + pending.timeoutNanos);
+        }
+        List<Registration> expiredList = new ArrayList<>();
+        while (currentTick <= nowTick) {
+            ArrayDeque<Registration> bucket = wheel.get((int) (currentTick % wheel.size()));
+            int bucketSize = bucket.size();
+            for (int i = 0; i < bucketSize; i++) {
+                Registration registration = bucket.poll();
+                if (registration.cancelledFlag) {
+                    continue;
+                }
+                if (registration.deadlineTick > currentTick) {
+                    // Its deadline is on a later turn of the wheel.
+                    bucket.add(registration);
+                    continue;
+                }
+                long deadline = registration.lastSeenNanos + registration.timeoutNanos;
+                if (registration.busyCount.get() > 0) {
+                    // Something is being written to the connection right now; give it a full timeout from now.
+                    schedule(registration, now + registration.timeoutNanos);
+                } else if (deadline - now > 0L) {
+                    schedule(registration, deadline);
+                } else {
+                    expiredList.add(registration);
+                }
+            }
+            currentTick++;
+        }
+        if (!expiredList.isEmpty()) {
+            expire(expiredList);
+        }
+    }
+
+    private void schedule(Registration registration, long deadlineNanos) {
+        long deadlineTick = Math.max(currentTick + 1L, (deadlineNanos - startNanos + tickNanos - 1L) / tickNanos);
+        registration.deadlineTick = deadlineTick;
+        wheel.get((int) (deadlineTick % wheel.size())).add(registration);
+    }
+
+    private void expire(List<Registration> expiredList) {
+        LOGGER.info("[{}] client connections have not been heard from in time.", expiredList.size());
+        for (Registration registration : expiredList) {
+            if (registration.cancel()) {
+                expiredCount.increment();
+                LOGGER.warn("Client connection expired: [{}] {}", registration.name, registration.getHeartBeatStatistics());
+                try {
+                    registration.expiryAction.run();
+                } catch (RuntimeException e) {
+                    LOGGER.warn("Expiry action failed for: [{}] [{}]", registration.name, e.getLocalizedMessage(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * One supervised connection.
+     */
+    public final class Registration {
+        private final String name;
+        private final long timeoutNanos;
+        private final Runnable expiryAction;
+        private final AtomicInteger busyCount = new AtomicInteger(0);
+        private volatile long lastSeenNanos;
+        private volatile boolean cancelledFlag = false;
+
+        // Only the sweeping thread touches this.
+        private long deadlineTick;
+
+        // The heartbeat statistics. Guarded by this.
+        private long heartBeatCount = 0L;
+        private long lastHeartBeatNanos = 0L;
+        private long longestHeartBeatIntervalNanos = 0L;
+        private long lastRoundTripMillis = -1L;
+        private long minimumRoundTripMillis = Long.MAX_VALUE;
+        private long maximumRoundTripMillis = -1L;
+        private double smoothedRoundTripMillis = -1.0;
+
+        private Registration(String connectionName, long timeout, Runnable action) {
+            this.name = connectionName;
+            this.timeoutNanos = timeout;
+            this.expiryAction = action;
+            this.lastSeenNanos = nanoClock.getAsLong();
+        }
+
+        /**
+         * Note that we have heard from the connection.
+         */
+        public void touch() {
+            lastSeenNanos = nanoClock.getAsLong();
+        }
+
+        /**
+         * Note that the client sent a heartbeat, along with the round trip time it measured for its previous heartbeat.
+         * @param roundTripMillis the round trip time of the client's previous heartbeat, in milliseconds; negative if the client did not report one.
+         */
+        public void recordHeartBeat(long roundTripMillis) {
+            long now = nanoClock.getAsLong();
+            lastSeenNanos = now;
+            synchronized (this) {
+                if (heartBeatCount > 0L) {
+                    longestHeartBeatIntervalNanos = Math.max(longestHeartBeatIntervalNanos, now - lastHeartBeatNanos);
+                }
+                heartBeatCount++;
+                lastHeartBeatNanos = now;
+                if (roundTripMillis >= 0L) {
+                    lastRoundTripMillis = roundTripMillis;
+                    minimumRoundTripMillis = Math.min(minimumRoundTripMillis, roundTripMillis);
+                    maximumRoundTripMillis = Math.max(maximumRoundTripMillis, roundTripMillis);
+                    if (smoothedRoundTripMillis < 0.0) {
+                        smoothedRoundTripMillis = roundTripMillis;
+                    } else {
+                        smoothedRoundTripMillis += ROUND_TRIP_SMOOTHING * (roundTripMillis - smoothedRoundTripMillis);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Note that we have started writing to the connection. The connection will not expire until the write is done. Each call must be matched by a call to
+         * {@link #resume()}.
+         */
+        public void suspend() {
+            busyCount.incrementAndGet();
+        }
+
+        /**
+         * Note that we have finished writing to the connection. It counts as heard from now.
+         */
+        public void resume() {
+            touch();
+            busyCount.decrementAndGet();
+        }
+
+        /**
+         * Stop supervising the connection. Its expiry action will not be run.
+         * @return true if the registration was cancelled by this call; false if it had already been cancelled, or had expired.
+         */
+        public boolean cancel() {
+            synchronized (this) {
+                if (cancelledFlag) {
+                    return false;
+                }
+                cancelledFlag = true;
+            }
+            registrationCount.decrementAndGet();
+            return true;
+        }
+
+        /**
+         * Has the registration been cancelled, or expired.
+         * @return true if the connection is no longer being supervised.
+         */
+        public boolean isCancelled() {
+            return cancelledFlag;
+        }
+
+        /**
+         * Get the smoothed heartbeat round trip time reported by the client.
+         * @return the smoothed heartbeat round trip time, in milliseconds; negative if the client has not reported one.
+         */
+        public synchronized long getSmoothedRoundTripMillis() {
+            return Math.round(smoothedRoundTripMillis);
+        }
+
+        /**
+         * Get a one line summary of the connection's heartbeats.
+         * @return a one line summary of the connection's heartbeats.
+         */
+        public synchronized String getHeartBeatStatistics() {
+            if (lastRoundTripMillis < 0L) {
+                return String.format("Heartbeats: [%d] longest interval: [%d ms] round trip: [not reported]", heartBeatCount,
+                        TimeUnit.NANOSECONDS.toMillis(longestHeartBeatIntervalNanos));
+            }
+            return String.format("Heartbeats: [%d] longest interval: [%d ms] round trip last: [%d ms] smoothed: [%d ms] min: [%d ms] max: [%d ms]", heartBeatCount,
+                    TimeUnit.NANOSECONDS.toMillis(longestHeartBeatIntervalNanos), lastRoundTripMillis, Math.round(smoothedRoundTripMillis), minimumRoundTripMillis,
+                    maximumRoundTripMillis);
+        }
+    }
+}
@@ -1,4 +1,4 @@
-/*   Copyright 2004-2022 Jim Voris
+/*   Copyright 2004-2023 Jim Voris
  *
  *   Licensed under the Apache License, Version 2.0 (the "License");
  *   you may not use this file except in compliance with the License.
@@ -21,7 +21,9 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
 import javax.swing.event.ChangeListener;
 import org.slf4j.Logger;
@@ -76,6 +78,10 @@ public class DirectoryManager implements DirectoryManagerInterface {
      * @param workfileDirManager the workfile directory manager.
      */
     public void setWorkfileDirectoryManager(WorkfileDirectoryManagerInterface workfileDirManager) {
+        if (workfileDirectoryManager instanceof WorkfileDirectoryManager && workfileDirManager != null
+                && !workfileDirectoryManager.getWorkfileDirectory().equals(workfileDirManager.getWorkfileDirectory())) {
+            ((WorkfileDirectoryManager) workfileDirectoryManager).stopTracking();
+        }
         this.workfileDirectoryManager = workfileDirManager;
     }
 
@@ -118,6 +124,7 @@ public class DirectoryManager implements DirectoryManagerInterface {
         // Do this in a while loop so we'll repeat the merge if we catch a
         // concurrent modification exception.  This latter can happen if we
         // get an update from the server while the merge is in progress.
+        List<WorkfileInfoInterface> digestWorkfileList = new ArrayList<>();
         boolean continueWhileLoop = true;
         while (continueWhileLoop) {
             boolean concurrentExceptionThrown = false;
@@ -125,6 +132,7 @@ public class DirectoryManager implements DirectoryManagerInterface {
                 // Make sure to start fresh.
                 mergedMap.clear();
                 mergedFileIdMap.clear();
+                digestWorkfileList.clear();
 
                 // Add the workfiles first.
                 if (!cemeteryFlag) {
@@ -166,6 +174,9 @@ public class DirectoryManager implements DirectoryManagerInterface {
                     } else {
                         mergedInfo.setArchiveInfo(archiveInfo);
                         mergedFileIdMap.put(archiveInfo.getFileID(), mergedInfo);
+                        if (mergedInfo.getWorkfileInfo() != null) {
+                            digestWorkfileList.add(mergedInfo.getWorkfileInfo());
+                        }
                     }
                 }
                 setHasChanged(true);
@@ -182,6 +193,52 @@ public class DirectoryManager implements DirectoryManagerInterface {
                 }
             }
         }
+
+        // Get the digests for the workfiles that have archives up to date now, in parallel, rather than one at a time as their status is displayed.
+        WorkfileDigestManager.getInstance().refreshWorkfileDigests(digestWorkfileList);
+    }
+
+    /**
+     * Update the merged entries for just the workfiles that changed on disk since the last refresh.
+     * @throws QVCSException if the archive directory manager or the workfile directory manager is null.
+     */
+    @Override
+    public synchronized void mergeChangedWorkfiles() throws QVCSException {
+        if (archiveDirManager == null || workfileDirectoryManager == null
+                || 0 == archiveDirManager.getAppendedPath().compareTo(QVCSConstants.QVCSOS_CEMETERY_FAKE_APPENDED_PATH)) {
+            mergeManagers();
+            return;
+        }
+        Set<String> changedNames = workfileDirectoryManager.refreshChangedWorkfiles();
+        if (changedNames.isEmpty()) {
+            return;
+        }
+        LOGGER.trace("DirectoryManager.mergeChangedWorkfiles for project::branch/appendedPath [{}]::[{}]/[{}] changed workfiles: [{}]", getProjectName(), getBranchName(),
+                getAppendedPath(), changedNames.size());
+        List<WorkfileInfoInterface> digestWorkfileList = new ArrayList<>();
+        for (String shortWorkfileName : changedNames) {
+            WorkfileInfoInterface workfileInfo = workfileDirectoryManager.lookupWorkfileInfo(shortWorkfileName);
+            ArchiveInfoInterface archiveInfo = archiveDirManager.getArchiveInfo(shortWorkfileName);
+            String mergedMapKey = getMergedMapKey(shortWorkfileName);
+            MergedInfoInterface mergedInfo = mergedMap.get(mergedMapKey);
+            if (workfileInfo == null && archiveInfo == null) {
+                mergedMap.remove(mergedMapKey);
+            } else if (mergedInfo != null) {
+                mergedInfo.setWorkfileInfo(workfileInfo);
+            } else if (workfileInfo != null) {
+                mergedInfo = new MergedInfo(workfileInfo, getArchiveDirManager(), getProjectName(), getUserName());
+                if (archiveInfo != null) {
+                    mergedInfo.setArchiveInfo(archiveInfo);
+                    mergedFileIdMap.put(archiveInfo.getFileID(), mergedInfo);
+                }
+                mergedMap.put(mergedMapKey, mergedInfo);
+            }
+            if (workfileInfo != null && archiveInfo != null) {
+                digestWorkfileList.add(workfileInfo);
+            }
+        }
+        WorkfileDigestManager.getInstance().refreshWorkfileDigests(digestWorkfileList);
+        setHasChanged(true);
     }
 
     @Override
@@ -14,9 +14,11 @@
  */
 package com.qumasoft.qvcslib;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 import javax.swing.event.ChangeListener;
@@ -140,6 +142,22 @@ public final class DirectoryManagerFactory {
         return directoryManager;
     }
 
+    /**
+     * Start the archive managers of a collection of directory managers that were built with a false startFlag. The remote archive managers are started with
+     * a single registration request instead of one per directory; see {@link ArchiveDirManagerProxy#startDirectoryManagers(Collection)}.
+     * @param directoryManagers the directory managers to start. Any that have already been started are left alone.
+     */
+    public void startDirectoryManagers(Collection<DirectoryManagerInterface> directoryManagers) {
+        List<ArchiveDirManagerProxy> archiveDirManagerProxyList = new ArrayList<>();
+        for (DirectoryManagerInterface directoryManager : directoryManagers) {
+            ArchiveDirManagerInterface archiveDirManager = directoryManager.getArchiveDirManager();
+            if (archiveDirManager instanceof ArchiveDirManagerProxy archiveDirManagerProxy) {
+                archiveDirManagerProxyList.add(archiveDirManagerProxy);
+            }
+        }
+        ArchiveDirManagerProxy.startDirectoryManagers(archiveDirManagerProxyList);
+    }
+
     /**
      * Lookup an existing directory manager given these parameters.
      * @param serverName the server name.
@@ -156,7 +174,7 @@ public final class DirectoryManagerFactory {
 
     /**
      * Remove the directory manager associated with the given parameters. The goal of this method is to remove any references to the directory manager so that it can get
-     * garbage collected.
+     * garbage collected. This includes the reference that the workspace change tracker holds on its workfile directory manager.
      * @param serverName the server name.
      * @param projectName the project name.
      * @param branchName the branch name.
@@ -166,7 +184,7 @@ public final class DirectoryManagerFactory {
         String serverProjectBranchKey = getServerProjectBranchKey(serverName, projectName, branchName);
         String keyValue = getServerProjectBranchAppendedPathKey(serverName, projectName, branchName, appendedPath);
         LOGGER.trace("DirectoryManagerFactory.removeDirectoryManager: removing directory manager for: [{}]", keyValue);
-        directoryManagerMap.remove(keyValue);
+        stopTracking(directoryManagerMap.remove(keyValue));
         if ((appendedPath.length() == 0) && (0 == branchName.compareTo(QVCSConstants.QVCS_TRUNK_BRANCH))) {
             serverPasswordsMap.remove(serverName);
             serverUsersMap.remove(serverName);
@@ -290,12 +308,24 @@ public final class DirectoryManagerFactory {
                     directoryManager = it.next();
                     String keyValue = getServerProjectBranchAppendedPathKey(serverName, projectName, directoryManager.getBranchName(), directoryManager.getAppendedPath());
                     directoryManagerMap.remove(keyValue);
+                    stopTracking(directoryManager);
                     ArchiveDirManagerFactory.getInstance().removeDirectoryManager(serverName, projectName, directoryManager.getBranchName(), directoryManager.getAppendedPath());
                 }
             }
         }
     }
 
+    /**
+     * Stop tracking workfile changes for a directory manager we are letting go of, so the workspace change tracker lets go of it too, and stops watching
+     * its directory once nothing else is interested.
+     * @param directoryManager the directory manager. May be null.
+     */
+    private void stopTracking(DirectoryManagerInterface directoryManager) {
+        if (directoryManager != null && directoryManager.getWorkfileDirectoryManager() instanceof WorkfileDirectoryManager workfileDirectoryManager) {
+            workfileDirectoryManager.stopTracking();
+        }
+    }
+
     private String getServerProjectBranchKey(String serverName, String projectName, String branchName) {
         String keyValue = serverName + ":" + projectName + ":" + branchName;
         return keyValue;
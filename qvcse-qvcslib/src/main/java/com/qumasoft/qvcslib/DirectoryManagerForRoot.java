@@ -1,4 +1,4 @@
-/*   Copyright 2004-2019 Jim Voris
+/*   Copyright 2004-2023 Jim Voris
  *
  *   Licensed under the Apache License, Version 2.0 (the "License");
  *   you may not use this file except in compliance with the License.
@@ -142,6 +142,13 @@ public class DirectoryManagerForRoot implements DirectoryManagerInterface {
     public void mergeManagers() throws QVCSException {
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void mergeChangedWorkfiles() throws QVCSException {
+    }
+
     /**
      * {@inheritDoc}
      */
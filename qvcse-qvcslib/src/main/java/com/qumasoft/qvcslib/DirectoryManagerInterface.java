@@ -1,4 +1,4 @@
-/*   Copyright 2004-2019 Jim Voris
+/*   Copyright 2004-2023 Jim Voris
  *
  *   Licensed under the Apache License, Version 2.0 (the "License");
  *   you may not use this file except in compliance with the License.
@@ -43,6 +43,13 @@ public interface DirectoryManagerInterface {
      */
     void mergeManagers() throws QVCSException;
 
+    /**
+     * Update the merged collection for just the workfiles that have changed on disk since the last refresh, instead of re-reading the workfile directory and merging
+     * everything again.
+     * @throws QVCSException for any QVCS problems.
+     */
+    void mergeChangedWorkfiles() throws QVCSException;
+
     /**
      * Get the user name.
      * @return the user name.
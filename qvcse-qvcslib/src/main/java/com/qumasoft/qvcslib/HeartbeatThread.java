@@ -15,6 +15,7 @@
 package com.qumasoft.qvcslib;
 
 import com.qumasoft.qvcslib.requestdata.ClientRequestHeartBeatData;
+import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -29,6 +30,7 @@ public class HeartbeatThread extends java.lang.Thread {
 
     private final TransportProxyInterface localProxy;
     private boolean continueFlag = true;
+    private long roundTripTime = ClientRequestHeartBeatData.ROUND_TRIP_TIME_NOT_MEASURED;
 
     /**
      * Create a heartbeat thread for the given connection.
@@ -62,8 +64,12 @@ public class HeartbeatThread extends java.lang.Thread {
                 try {
                     sleep(QVCSConstants.HEART_BEAT_SLEEP_TIME);
                     if (localProxy.getIsOpen()) {
+                        // Tell the server how long the previous heartbeat took to come back.
+                        heartBeat.setRoundTripTime(roundTripTime);
+                        long startTime = System.nanoTime();
                         SynchronizationManager.getSynchronizationManager().waitOnToken(localProxy, heartBeat);
-                        LOGGER.trace("Sent heartbeat to server for heartbeat thread [" + this.getName() + "]");
+                        roundTripTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+                        LOGGER.trace("Sent heartbeat to server for heartbeat thread [" + this.getName() + "]; round trip: [" + roundTripTime + "] ms");
                     } else {
                         LOGGER.warn("Local proxy is closed for heartbeat thread [" + this.getName() + "]");
                         continueFlag = false;
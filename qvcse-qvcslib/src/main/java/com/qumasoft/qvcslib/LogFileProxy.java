@@ -29,6 +29,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.util.Date;
+import java.util.concurrent.CompletableFuture;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -244,8 +245,35 @@ public class LogFileProxy implements ArchiveInfoInterface {
     @Override
     public boolean checkInRevision(CheckInCommandArgs commandArgs, String checkInFilename, boolean ignoreLocksToEnableBranchCheckInFlag) {
         boolean retVal = false;
-        FileInputStream fileInputStream = null;
+        try {
+            ClientRequestCheckInData clientRequest = buildCheckInRequest(commandArgs, checkInFilename);
+            if (clientRequest != null) {
+                int transactionID = ClientTransactionManager.getInstance().sendBeginTransaction(transportProxy);
+                SynchronizationManager.getSynchronizationManager().waitOnToken(transportProxy, clientRequest);
+                ClientTransactionManager.getInstance().sendEndTransaction(transportProxy, transactionID);
+                retVal = true;
+            }
+        } catch (IOException e) {
+            LOGGER.warn(e.getLocalizedMessage(), e);
+        }
+        return retVal;
+    }
 
+    /**
+     * Build the request to check in a revision, without sending it. The check in file is read into the request, and saved in the client workfile cache
+     * so that the response can find it.
+     *
+     * @param commandArgs the command arguments.
+     * @param checkInFilename the check in file name.
+     * @return the check in request; or null if we cannot read the check in file.
+     * @throws IOException if we have trouble reading the check in file.
+     */
+    ClientRequestCheckInData buildCheckInRequest(CheckInCommandArgs commandArgs, String checkInFilename) throws IOException {
+        File checkInFile = new File(checkInFilename);
+        if (!checkInFile.canRead()) {
+            LOGGER.warn("Cannot read [" + checkInFilename + "]. Checkin failed.");
+            return null;
+        }
         ClientRequestCheckInData clientRequest = new ClientRequestCheckInData();
 
         clientRequest.setProjectName(archiveDirManagerProxy.getProjectName());
@@ -254,41 +282,20 @@ public class LogFileProxy implements ArchiveInfoInterface {
         clientRequest.setFileID(getFileID());
 
         clientRequest.setCommandArgs(commandArgs);
-        try {
-            File checkInFile = new File(checkInFilename);
-
-            if (checkInFile.canRead()) {
-                // Need to read the resulting file into a buffer that we can send to the server.
-                fileInputStream = new FileInputStream(checkInFile);
-                byte[] buffer = new byte[(int) checkInFile.length()];
-                Utility.readDataFromStream(buffer, fileInputStream);
-                clientRequest.setBuffer(buffer);
 
-                // Save the workfile buffer.
-                int cacheIndex = ClientWorkfileCache.getInstance().addBuffer(archiveDirManagerProxy.getProjectName(),
-                        archiveDirManagerProxy.getBranchName(), archiveDirManagerProxy.getAppendedPath(),
-                        getShortWorkfileName(), buffer);
-                clientRequest.setIndex(cacheIndex);
-
-                int transactionID = ClientTransactionManager.getInstance().sendBeginTransaction(transportProxy);
-                SynchronizationManager.getSynchronizationManager().waitOnToken(transportProxy, clientRequest);
-                ClientTransactionManager.getInstance().sendEndTransaction(transportProxy, transactionID);
-            retVal = true;
-            } else {
-                LOGGER.warn("Cannot read [" + checkInFilename + "]. Checkin failed.");
-            }
-        } catch (IOException e) {
-            LOGGER.warn(e.getLocalizedMessage(), e);
-        } finally {
-            if (fileInputStream != null) {
-                try {
-                    fileInputStream.close();
-                } catch (IOException e) {
-                    LOGGER.warn(e.getLocalizedMessage(), e);
-                }
-            }
+        // Need to read the resulting file into a buffer that we can send to the server.
+        try (FileInputStream fileInputStream = new FileInputStream(checkInFile)) {
+            byte[] buffer = new byte[(int) checkInFile.length()];
+            Utility.readDataFromStream(buffer, fileInputStream);
+            clientRequest.setBuffer(buffer);
+
+            // Save the workfile buffer.
+            int cacheIndex = ClientWorkfileCache.getInstance().addBuffer(archiveDirManagerProxy.getProjectName(),
+                    archiveDirManagerProxy.getBranchName(), archiveDirManagerProxy.getAppendedPath(),
+                    getShortWorkfileName(), buffer);
+            clientRequest.setIndex(cacheIndex);
         }
-        return retVal;
+        return clientRequest;
     }
 
     /**
@@ -315,6 +322,25 @@ public class LogFileProxy implements ArchiveInfoInterface {
      */
     @Override
     public boolean getRevision(GetRevisionCommandArgs commandLineArgs, String fetchToFileName) {
+        ClientRequestGetRevisionData clientRequest = buildGetRevisionRequest(commandLineArgs, fetchToFileName);
+        SynchronizationManager.getSynchronizationManager().waitOnToken(transportProxy, clientRequest);
+        return true;
+    }
+
+    /**
+     * Ask the server for a revision without waiting for it, so a caller fetching many files can keep several requests in flight on the connection. The
+     * workfile is written by the transport's receive thread, just as it is for {@link #getRevision}.
+     *
+     * @param commandLineArgs the command arguments.
+     * @param fetchToFileName the name of the file to write the revision to.
+     * @return a future that completes once the server's response has been handled. It completes exceptionally if the connection goes away.
+     */
+    public CompletableFuture<Object> getRevisionAsync(GetRevisionCommandArgs commandLineArgs, String fetchToFileName) {
+        ClientRequestGetRevisionData clientRequest = buildGetRevisionRequest(commandLineArgs, fetchToFileName);
+        return transportProxy.writeAsync(clientRequest);
+    }
+
+    private ClientRequestGetRevisionData buildGetRevisionRequest(GetRevisionCommandArgs commandLineArgs, String fetchToFileName) {
         ClientRequestGetRevisionData clientRequest = new ClientRequestGetRevisionData();
 
         clientRequest.setProjectName(archiveDirManagerProxy.getProjectName());
@@ -324,9 +350,7 @@ public class LogFileProxy implements ArchiveInfoInterface {
 
         clientRequest.setCommandArgs(commandLineArgs);
         commandLineArgs.setOutputFileName(fetchToFileName);
-
-        SynchronizationManager.getSynchronizationManager().waitOnToken(transportProxy, clientRequest);
-        return true;
+        return clientRequest;
     }
 
     /**
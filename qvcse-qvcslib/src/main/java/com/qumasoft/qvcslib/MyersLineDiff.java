@@ -0,0 +1,451 @@
+/*   Copyright 2004-2023 Jim Voris
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.qumasoft.qvcslib;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A line diff that finds exactly the same differences as the apache Myers diff does, without the objects. Each distinct line is interned once, so the
+ * lines become int ids and comparing two lines is comparing two ints. The furthest reaching point on each diagonal, for each edit distance, is kept in a
+ * single int array that each thread reuses from one diff to the next; the path is found by walking those back from the end, instead of by following a chain
+ * of path node objects.
+ *
+ * <p>The apache diff settles ties between equally short edit scripts by the order in which it explores the diagonals. We explore them in the same order, so
+ * we pick the same edit script. That is also why only the common prefix is skipped before the search starts: the search would consume it first anyway.
+ * Dropping the common suffix as well would change which of the equally short edit scripts gets picked.</p>
+ *
+ * @author Jim Voris
+ */
+final class MyersLineDiff {
+    /**
+     * The most path storage (in ints) we will use for one diff. Files that are more different than that are left to the apache diff. The server runs one diff
+     * per core, so this is kept small: 4 MB is enough for an edit script of about 1400 lines.
+     */
+    static final int MAXIMUM_PATH_STORAGE = Integer.getInteger("qvcsos.diff.maximumPathStorage", 1024 * 1024);
+    /** The most path storage (in ints) that a thread keeps for its next diff. */
+    private static final int RETAINED_PATH_STORAGE = 1024 * 1024;
+    private static final int INITIAL_PATH_STORAGE = 1024;
+    /** Where each delta's original anchor is in its ints. */
+    static final int ORIGINAL_ANCHOR = 0;
+    /** Where each delta's original line count is in its ints. */
+    static final int ORIGINAL_SIZE = 1;
+    /** Where each delta's revised anchor is in its ints. */
+    static final int REVISED_ANCHOR = 2;
+    /** Where each delta's revised line count is in its ints. */
+    static final int REVISED_SIZE = 3;
+    /** The number of ints used to describe each delta. */
+    static final int DELTA_SIZE = 4;
+    private static final int INITIAL_DELTA_COUNT = 4;
+
+    private static final ThreadLocal<MyersLineDiff> THREAD_INSTANCE = ThreadLocal.withInitial(MyersLineDiff::new);
+
+    private int[] pathStorage = new int[INITIAL_PATH_STORAGE];
+
+    private MyersLineDiff() {
+    }
+
+    /**
+     * Find the differences between two sets of lines. The lines must have been interned by the same {@link Interner}.
+     *
+     * @param original the original lines.
+     * @param revised the revised lines.
+     * @return the deltas, {@link #DELTA_SIZE} ints each: the original anchor, the original line count, the revised anchor, and the revised line count, in
+     * file order; or null if the lines are too different to diff within {@link #MAXIMUM_PATH_STORAGE}.
+     */
+    static int[] diff(Lines original, Lines revised) {
+        MyersLineDiff myersLineDiff = THREAD_INSTANCE.get();
+        try {
+            return myersLineDiff.findDeltas(original.ids, original.count, revised.ids, revised.count);
+        } finally {
+            if (myersLineDiff.pathStorage.length > RETAINED_PATH_STORAGE) {
+                myersLineDiff.pathStorage = new int[INITIAL_PATH_STORAGE];
+            }
+        }
+    }
+
+    /**
+     * Where the furthest reaching points for edit distance d start in the path storage. There are d + 1 of them, one for each diagonal k = -d, -d + 2, ... d.
+     * @param d the edit distance.
+     * @return the offset of the first of them.
+     */
+    private static long storageOffset(int d) {
+        return ((long) d * (d + 1)) / 2L;
+    }
+
+    private int furthest(int d, int k) {
+        return pathStorage[(int) storageOffset(d) + ((k + d) >> 1)];
+    }
+
+    /**
+     * Decide whether diagonal k at edit distance d is reached by a step down from diagonal k + 1 (an inserted line), rather than a step across from diagonal
+     * k - 1 (a deleted line). This is the same test the apache diff makes, so ties go the same way.
+     * @param d the edit distance.
+     * @param k the diagonal.
+     * @return true for a step down; false for a step across.
+     */
+    private boolean stepsDown(int d, int k) {
+        return (k == -d) || (k != d && furthest(d - 1, k - 1) < furthest(d - 1, k + 1));
+    }
+
+    private int[] findDeltas(int[] a, int n, int[] b, int m) {
+        // Skip the common prefix. This is the snake at edit distance 0.
+        int prefix = 0;
+        int shorter = Math.min(n, m);
+        while (prefix < shorter && a[prefix] == b[prefix]) {
+            prefix++;
+        }
+        pathStorage[0] = prefix;
+        if (prefix >= n && prefix >= m) {
+            return new int[0];
+        }
+        for (int d = 1;; d++) {
+            long nextOffset = storageOffset(d + 1);
+            if (nextOffset > MAXIMUM_PATH_STORAGE) {
+                return null;
+            }
+            if (nextOffset > pathStorage.length) {
+                pathStorage = Arrays.copyOf(pathStorage, (int) Math.min(MAXIMUM_PATH_STORAGE, Math.max(nextOffset, 2L * pathStorage.length)));
+            }
+            // This is stepsDown() and furthest(), unrolled: diagonal k at distance d is at (k + d) / 2 from offset, and k + 1 at distance d - 1 is
+            // at the same distance from previousOffset, with k - 1 just before it.
+            int offset = (int) storageOffset(d);
+            int previousOffset = offset - d;
+            for (int k = -d, index = 0; k <= d; k += 2, index++) {
+                int i;
+                if ((k == -d) || (k != d && pathStorage[previousOffset + index - 1] < pathStorage[previousOffset + index])) {
+                    i = pathStorage[previousOffset + index];
+                } else {
+                    i = pathStorage[previousOffset + index - 1] + 1;
+                }
+                int j = i - k;
+                while (i < n && j < m && a[i] == b[j]) {
+                    i++;
+                    j++;
+                }
+                pathStorage[offset + index] = i;
+                if (i >= n && j >= m) {
+                    return buildDeltas(d, k);
+                }
+            }
+        }
+    }
+
+    /**
+     * Walk the path back from its end. Each run of inserted and deleted lines between two runs of matching lines is one delta; it starts where the earlier
+     * run of matching lines ends (or at the start of the files), and ends where the later run of matching lines starts (or at the end of the files).
+     * @param endD the edit distance at which the path reached the end.
+     * @param endK the diagonal on which the path reached the end.
+     * @return the deltas, in file order.
+     */
+    private int[] buildDeltas(int endD, int endK) {
+        int[] deltas = new int[DELTA_SIZE * INITIAL_DELTA_COUNT];
+        int deltaCount = 0;
+        boolean deltaOpen = false;
+        int deltaEndI = 0;
+        int deltaEndJ = 0;
+        int k = endK;
+        for (int d = endD; d > 0; d--) {
+            int snakeEndI = furthest(d, k);
+            int previousK;
+            int snakeStartI;
+            if (stepsDown(d, k)) {
+                previousK = k + 1;
+                snakeStartI = furthest(d - 1, previousK);
+            } else {
+                previousK = k - 1;
+                snakeStartI = furthest(d - 1, previousK) + 1;
+            }
+            boolean matchingLines = snakeEndI > snakeStartI;
+            if (matchingLines && deltaOpen) {
+                deltas = addDelta(deltas, deltaCount++, snakeEndI, snakeEndI - k, deltaEndI, deltaEndJ);
+            }
+            if (matchingLines || !deltaOpen) {
+                deltaOpen = true;
+                deltaEndI = snakeStartI;
+                deltaEndJ = snakeStartI - k;
+            }
+            k = previousK;
+        }
+        if (deltaOpen) {
+            int prefix = furthest(0, 0);
+            deltas = addDelta(deltas, deltaCount++, prefix, prefix, deltaEndI, deltaEndJ);
+        }
+
+        // We found them from last to first.
+        int[] result = new int[deltaCount * DELTA_SIZE];
+        for (int index = 0; index < deltaCount; index++) {
+            System.arraycopy(deltas, (deltaCount - 1 - index) * DELTA_SIZE, result, index * DELTA_SIZE, DELTA_SIZE);
+        }
+        return result;
+    }
+
+    private static int[] addDelta(int[] deltas, int deltaIndex, int startI, int startJ, int endI, int endJ) {
+        int[] growingDeltas = deltas;
+        int base = deltaIndex * DELTA_SIZE;
+        if (base + DELTA_SIZE > growingDeltas.length) {
+            growingDeltas = Arrays.copyOf(growingDeltas, 2 * growingDeltas.length);
+        }
+        growingDeltas[base + ORIGINAL_ANCHOR] = startI;
+        growingDeltas[base + ORIGINAL_SIZE] = endI - startI;
+        growingDeltas[base + REVISED_ANCHOR] = startJ;
+        growingDeltas[base + REVISED_SIZE] = endJ - startJ;
+        return growingDeltas;
+    }
+
+    /**
+     * The lines of one file: where each line starts in the file, the bytes we compare for each line, and each line's interned id. When the compare bytes are
+     * the file's own bytes, the lines just point into the file's buffer.
+     */
+    static final class Lines {
+        private static final int MINIMUM_CAPACITY = 16;
+        // A guess at the average line length, to size the line arrays.
+        private static final int EXPECTED_LINE_LENGTH = 32;
+
+        private byte[] compareData;
+        private int compareDataLength;
+        private int[] seekPositions;
+        private int[] compareStarts;
+        private int[] compareLengths;
+        private int[] ids;
+        private int count;
+
+        private Lines(byte[] data, int dataLength, int expectedLineCount) {
+            this.compareData = data;
+            this.compareDataLength = dataLength;
+            int capacity = Math.max(MINIMUM_CAPACITY, expectedLineCount);
+            this.seekPositions = new int[capacity];
+            this.compareStarts = new int[capacity];
+            this.compareLengths = new int[capacity];
+        }
+
+        /**
+         * Create the lines for a file whose lines are compared as they are.
+         * @param buffer the file's contents.
+         * @return the (empty) lines; add them with {@link #addLine(int, int)}.
+         */
+        static Lines forBuffer(byte[] buffer) {
+            return new Lines(buffer, buffer.length, buffer.length / EXPECTED_LINE_LENGTH);
+        }
+
+        /**
+         * Create the lines for a file whose lines are altered before they are compared.
+         * @param buffer the file's contents.
+         * @return the (empty) lines; add them with {@link #addAlteredLine(int, byte[])}.
+         */
+        static Lines forAlteredBuffer(byte[] buffer) {
+            return new Lines(new byte[Math.max(MINIMUM_CAPACITY, buffer.length)], 0, buffer.length / EXPECTED_LINE_LENGTH);
+        }
+
+        /**
+         * Add a line that is compared as it is in the file.
+         * @param seekPosition where the line starts in the file.
+         * @param length the length of the line.
+         */
+        void addLine(int seekPosition, int length) {
+            ensureLineCapacity();
+            seekPositions[count] = seekPosition;
+            compareStarts[count] = seekPosition;
+            compareLengths[count] = length;
+            count++;
+        }
+
+        /**
+         * Add a line that has been altered for comparing.
+         * @param seekPosition where the line starts in the file.
+         * @param compareLine the bytes to compare.
+         */
+        void addAlteredLine(int seekPosition, byte[] compareLine) {
+            ensureLineCapacity();
+            if (compareDataLength + compareLine.length > compareData.length) {
+                compareData = Arrays.copyOf(compareData, Math.max(compareDataLength + compareLine.length, 2 * compareData.length));
+            }
+            System.arraycopy(compareLine, 0, compareData, compareDataLength, compareLine.length);
+            seekPositions[count] = seekPosition;
+            compareStarts[count] = compareDataLength;
+            compareLengths[count] = compareLine.length;
+            compareDataLength += compareLine.length;
+            count++;
+        }
+
+        private void ensureLineCapacity() {
+            if (count == seekPositions.length) {
+                int capacity = 2 * count;
+                seekPositions = Arrays.copyOf(seekPositions, capacity);
+                compareStarts = Arrays.copyOf(compareStarts, capacity);
+                compareLengths = Arrays.copyOf(compareLengths, capacity);
+            }
+        }
+
+        /**
+         * Give each line its interned id.
+         * @param interner the interner shared by the files that are compared.
+         */
+        void intern(Interner interner) {
+            ids = new int[count];
+            for (int index = 0; index < count; index++) {
+                ids[index] = interner.intern(compareData, compareStarts[index], compareLengths[index]);
+            }
+        }
+
+        int getCount() {
+            return count;
+        }
+
+        int getSeekPosition(int index) {
+            return seekPositions[index];
+        }
+
+        int getCompareLength(int index) {
+            return compareLengths[index];
+        }
+
+        /**
+         * Get the number of bytes a run of lines covers, measured from the start of the first line to the end of the last line's compare bytes.
+         * @param first the first line.
+         * @param lineCount the number of lines.
+         * @return the byte count.
+         */
+        int getByteCount(int first, int lineCount) {
+            int last = first + lineCount - 1;
+            return seekPositions[last] + compareLengths[last] - seekPositions[first];
+        }
+
+        /**
+         * Get the number of compare bytes in a run of lines.
+         * @param first the first line.
+         * @param lineCount the number of lines.
+         * @return the sum of the lines' compare lengths.
+         */
+        int getCompareByteCount(int first, int lineCount) {
+            int byteCount = 0;
+            for (int index = first; index < first + lineCount; index++) {
+                byteCount += compareLengths[index];
+            }
+            return byteCount;
+        }
+
+        /**
+         * Write the compare bytes of a run of lines.
+         * @param first the first line.
+         * @param lineCount the number of lines.
+         * @param outStream where to write them.
+         * @throws IOException on a write problem.
+         */
+        void writeCompareBytes(int first, int lineCount, DataOutputStream outStream) throws IOException {
+            for (int index = first; index < first + lineCount; index++) {
+                outStream.write(compareData, compareStarts[index], compareLengths[index]);
+            }
+        }
+    }
+
+    /**
+     * Give each distinct line an int id. Lines are hashed into an open addressing table; lines whose hashes match are compared byte for byte, so two lines
+     * only get the same id if they are the same.
+     */
+    static final class Interner {
+        private static final int FNV_OFFSET_BASIS = 0x811c9dc5;
+        private static final int FNV_PRIME = 0x01000193;
+        private static final int BYTE_MASK = 0xff;
+        private static final int HALF_AN_INT = 16;
+        private static final int INITIAL_TABLE_SIZE = 1024;
+
+        private int[] table;
+        private int[] hashes;
+        private byte[][] lineData;
+        private int[] lineStarts;
+        private int[] lineLengths;
+        private int count;
+
+        Interner() {
+            table = new int[INITIAL_TABLE_SIZE];
+            hashes = new int[table.length / 2];
+            lineData = new byte[hashes.length][];
+            lineStarts = new int[hashes.length];
+            lineLengths = new int[hashes.length];
+        }
+
+        /**
+         * Get the id for a line.
+         * @param data the bytes that hold the line.
+         * @param start where the line starts.
+         * @param length the length of the line.
+         * @return the line's id.
+         */
+        int intern(byte[] data, int start, int length) {
+            int hash = hash(data, start, length);
+            int mask = table.length - 1;
+            for (int slot = hash & mask;; slot = (slot + 1) & mask) {
+                int entry = table[slot];
+                if (entry == 0) {
+                    return add(slot, hash, data, start, length);
+                }
+                int id = entry - 1;
+                if (hashes[id] == hash && Arrays.equals(lineData[id], lineStarts[id], lineStarts[id] + lineLengths[id], data, start, start + length)) {
+                    return id;
+                }
+            }
+        }
+
+        /**
+         * Get the number of distinct lines.
+         * @return the number of distinct lines.
+         */
+        int getCount() {
+            return count;
+        }
+
+        private int add(int slot, int hash, byte[] data, int start, int length) {
+            int id = count++;
+            table[slot] = id + 1;
+            hashes[id] = hash;
+            lineData[id] = data;
+            lineStarts[id] = start;
+            lineLengths[id] = length;
+            // Keep the table no more than half full.
+            if (count == hashes.length) {
+                grow();
+            }
+            return id;
+        }
+
+        private void grow() {
+            int capacity = 2 * hashes.length;
+            hashes = Arrays.copyOf(hashes, capacity);
+            lineData = Arrays.copyOf(lineData, capacity);
+            lineStarts = Arrays.copyOf(lineStarts, capacity);
+            lineLengths = Arrays.copyOf(lineLengths, capacity);
+            table = new int[2 * capacity];
+            int mask = table.length - 1;
+            for (int id = 0; id < count; id++) {
+                int slot = hashes[id] & mask;
+                while (table[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = id + 1;
+            }
+        }
+
+        static int hash(byte[] data, int start, int length) {
+            int hash = FNV_OFFSET_BASIS;
+            for (int index = start; index < start + length; index++) {
+                hash = (hash ^ (data[index] & BYTE_MASK)) * FNV_PRIME;
+            }
+            // Spread the high bits into the low bits, which are the ones that pick the slot.
+            return hash ^ (hash >>> HALF_AN_INT);
+        }
+    }
+}
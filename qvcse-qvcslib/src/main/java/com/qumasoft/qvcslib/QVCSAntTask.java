@@ -28,11 +28,13 @@ import com.qumasoft.qvcslib.response.ServerResponseMessage;
 import com.qumasoft.qvcslib.response.ServerResponseProjectControl;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicReference;
 import javax.swing.event.ChangeListener;
@@ -319,7 +321,7 @@ public final class QVCSAntTask extends org.apache.tools.ant.Task implements Chan
             // segments that exist for this project.  We'll then have to use those to figure out the
             // set of directory managers that we need to build in order to satisfy the users request.
             log("Getting directory list from server...");
-            createDirectoryManager("");
+            createDirectoryManager("", true);
 
             log("Getting file list from server...");
             createDirectoryManagerCollection();
@@ -454,20 +456,21 @@ public final class QVCSAntTask extends org.apache.tools.ant.Task implements Chan
 
     /**
      * Create the collection of directory managers that this execute request will use. The collection is the set of directories that are part of the directory tree corresponding to
-     * the user-provided appended path.
+     * the user-provided appended path. The directory managers are all registered with the server in one request once they have been built.
      */
     private void createDirectoryManagerCollection() {
+        List<DirectoryManagerInterface> createdDirectoryManagerList = new ArrayList<>();
         for (String localAppendedPath : prospectiveAppendedPathSet) {
             log("createDirectoryManagerCollection appended path: [" + localAppendedPath + "]", Project.MSG_VERBOSE);
             if (appendedPath.length() > 0) {
                 if (localAppendedPath.startsWith(appendedPath)) {
                     if (recurseFlag) {
-                        createDirectoryManager(localAppendedPath);
+                        addDirectoryManager(createdDirectoryManagerList, createDirectoryManager(localAppendedPath, false));
                     } else {
                         // We are not recursing directories, so we only need the
                         // one directory.
                         if (0 == localAppendedPath.compareTo(appendedPath)) {
-                            createDirectoryManager(localAppendedPath);
+                            addDirectoryManager(createdDirectoryManagerList, createDirectoryManager(localAppendedPath, false));
                             break;
                         }
                     }
@@ -477,16 +480,34 @@ public final class QVCSAntTask extends org.apache.tools.ant.Task implements Chan
                 // root directory.... don't create it again.
                 if (localAppendedPath.length() > 0) {
                     if (recurseFlag) {
-                        createDirectoryManager(localAppendedPath);
+                        addDirectoryManager(createdDirectoryManagerList, createDirectoryManager(localAppendedPath, false));
                     } else {
                         break;
                     }
                 }
             }
         }
+        DirectoryManagerFactory.getInstance().startDirectoryManagers(createdDirectoryManagerList);
+        for (DirectoryManagerInterface directoryManager : createdDirectoryManagerList) {
+            String msg = "Received server response for appended path: [" + directoryManager.getAppendedPath() + "]";
+            log(msg, Project.MSG_VERBOSE);
+            LOGGER.info(msg);
+        }
     }
 
-    private void createDirectoryManager(String path) {
+    private static void addDirectoryManager(List<DirectoryManagerInterface> directoryManagerList, DirectoryManagerInterface directoryManager) {
+        if (directoryManager != null) {
+            directoryManagerList.add(directoryManager);
+        }
+    }
+
+    /**
+     * Create the directory manager for the given appended path, if we don't already have one.
+     * @param path the appended path.
+     * @param startFlag true to register the directory manager with the server now; false if the caller will start it later.
+     * @return the directory manager we created, or null if we already had one.
+     */
+    private DirectoryManagerInterface createDirectoryManager(String path, boolean startFlag) {
         String workfileDirectoryName;
 
         if (path.length() == 0) {
@@ -496,21 +517,26 @@ public final class QVCSAntTask extends org.apache.tools.ant.Task implements Chan
             log("path: [" + path + "] workfileDirectoryName: [" + workfileDirectoryName + "]", Project.MSG_VERBOSE);
         }
 
+        DirectoryManagerInterface createdDirectoryManager = null;
         DirectoryManagerInterface directoryManager = DirectoryManagerFactory.getInstance().lookupDirectoryManager(serverName, projectName, branchName, path);
         if (directoryManager == null) {
             // Create the directory manager.
             DirectoryCoordinate directoryCoordinate = new DirectoryCoordinate(projectName, branchName, path);
-            directoryManager = DirectoryManagerFactory.getInstance().getDirectoryManager(userDirectory, serverName, directoryCoordinate, workfileDirectoryName, this, true, true);
+            createdDirectoryManager = DirectoryManagerFactory.getInstance().getDirectoryManager(userDirectory, serverName, directoryCoordinate, workfileDirectoryName, this, true,
+                    startFlag);
             appendedPathSet.add(path);
 
-            String msg = "Received server response for appended path: [" + directoryManager.getAppendedPath() + "]";
-            log(msg, Project.MSG_VERBOSE);
-            LOGGER.info(msg);
+            if (startFlag) {
+                String msg = "Received server response for appended path: [" + createdDirectoryManager.getAppendedPath() + "]";
+                log(msg, Project.MSG_VERBOSE);
+                LOGGER.info(msg);
+            }
         } else {
             String msg = "Found existing directory manager for: [" + path + "]";
             LOGGER.info(msg);
             log(msg);
         }
+        return createdDirectoryManager;
     }
 
     /**
@@ -541,7 +567,7 @@ public final class QVCSAntTask extends org.apache.tools.ant.Task implements Chan
                 LOGGER.info(msg);
 
                 // Make sure the directory manager exists.
-                createDirectoryManager(localAppendedPath);
+                createDirectoryManager(localAppendedPath, true);
                 log(msg, Project.MSG_VERBOSE);
                 LOGGER.info(msg);
 
@@ -599,7 +625,7 @@ public final class QVCSAntTask extends org.apache.tools.ant.Task implements Chan
                                 break;
                             case OPERATION_MOVE:
                                 // Make sure the move-to directory manager exists.
-                                createDirectoryManager(this.moveToAppendedPath);
+                                createDirectoryManager(this.moveToAppendedPath, true);
                                 // Do not move after already moved.
                                 if (0 != this.moveToAppendedPath.compareTo(localAppendedPath)) {
                                     requestMoveOperation(mergedInfo);
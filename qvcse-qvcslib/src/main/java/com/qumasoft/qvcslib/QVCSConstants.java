@@ -81,6 +81,8 @@ public final class QVCSConstants {
     public static final String QVCS_VIEW_UTILITY_STORE_NAME = "qvcs.viewUtilityStore.";
     /** File group store name. */
     public static final String QVCS_FILEGROUP_STORE_NAME = "qvcs.fileGroupStore.";
+    /** Archive info cache store name. */
+    public static final String QVCS_ARCHIVE_INFO_CACHE_STORE_NAME = "qvcs.archiveInfoCache.";
     /** Activity journal name. */
     public static final String QVCS_ACTIVITY_JOURNAL_NAME = "qvcs.server.journal";
     /** Default project name. */
@@ -0,0 +1,39 @@
+/*   Copyright 2004-2023 Jim Voris
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.qumasoft.qvcslib;
+
+/**
+ * Raw deflate compressor. This is the zlib compressor without the zlib wrapper, so it skips the Adler-32 checksum on both ends. The compression header
+ * already records the expanded size, and the transport and database have their own integrity checks. Only peers that know about
+ * {@link RevisionCompressionHeader#COMPRESS_ALGORITHM_3} can expand what it produces.
+ * @author Jim Voris
+ */
+public class RawDeflateCompressor extends ZlibCompressor {
+
+    /**
+     * Default constructor. Use the compression engine's compression level.
+     */
+    public RawDeflateCompressor() {
+        super(RevisionCompressionHeader.COMPRESS_ALGORITHM_3, true, CompressionEngine.getInstance().getCompressionLevel());
+    }
+
+    /**
+     * Constructor for a raw deflate compressor that uses a specific compression level.
+     * @param level the deflate compression level.
+     */
+    public RawDeflateCompressor(int level) {
+        super(RevisionCompressionHeader.COMPRESS_ALGORITHM_3, true, level);
+    }
+}
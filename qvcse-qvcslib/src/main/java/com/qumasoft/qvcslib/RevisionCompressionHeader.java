@@ -18,6 +18,7 @@ import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 
 /**
  * Revision compression header. An optional compression header that is present for those revisions that have been compressed.
@@ -33,6 +34,8 @@ public class RevisionCompressionHeader implements java.io.Serializable {
     public static final int COMPRESS_ALGORITHM_1 = 1;
     /** The second compression algorithm that QVCS supports -- the JDK included zlib compression. */
     public static final int COMPRESS_ALGORITHM_2 = 2;
+    /** The third compression algorithm that QVCS supports -- a raw deflate stream, without the zlib wrapper and its checksum. */
+    public static final int COMPRESS_ALGORITHM_3 = 3;
     private static final int COMPRESSION_HEADER_SIZE = 12;
 
     /**
@@ -41,6 +44,37 @@ public class RevisionCompressionHeader implements java.io.Serializable {
     public RevisionCompressionHeader() {
     }
 
+    /**
+     * Read the compression header from the start of a compressed buffer.
+     * @param compressedBuffer the compressed buffer.
+     * @return the compression header.
+     */
+    public static RevisionCompressionHeader fromBuffer(byte[] compressedBuffer) {
+        RevisionCompressionHeader compressionHeader = new RevisionCompressionHeader();
+        compressionHeader.inputSize = readInt(compressedBuffer, 0);
+        compressionHeader.compressedSize = readInt(compressedBuffer, Integer.BYTES);
+        compressionHeader.compressionType = readInt(compressedBuffer, 2 * Integer.BYTES);
+        return compressionHeader;
+    }
+
+    /**
+     * Write this compression header to the start of a buffer.
+     * @param buffer the buffer. It must have room for the header.
+     */
+    public void writeTo(byte[] buffer) {
+        writeInt(buffer, 0, inputSize);
+        writeInt(buffer, Integer.BYTES, compressedSize);
+        writeInt(buffer, 2 * Integer.BYTES, compressionType);
+    }
+
+    private static int readInt(byte[] buffer, int offset) {
+        return ByteBuffer.wrap(buffer).getInt(offset);
+    }
+
+    private static void writeInt(byte[] buffer, int offset, int value) {
+        ByteBuffer.wrap(buffer).putInt(offset, value);
+    }
+
     /**
      * A copy constructor.
      * @param revisionCompressionHeaderToCopy compression header to copy.
@@ -117,7 +151,7 @@ public class RevisionCompressionHeader implements java.io.Serializable {
     }
 
     /**
-     * Get the type of compression. We only support the one type at this time.
+     * Get the type of compression. This is one of the COMPRESS_ALGORITHM_* values.
      * @return the type of compression.
      */
     public int getCompressionType() {
@@ -129,7 +163,7 @@ public class RevisionCompressionHeader implements java.io.Serializable {
      * @param type the compression type.
      */
     public void setCompressionType(int type) {
-        QumaAssert.isTrue((type == COMPRESS_ALGORITHM_1) || (type == COMPRESS_ALGORITHM_2));
+        QumaAssert.isTrue(CompressionFactory.isRegistered(type));
         compressionType = type;
     }
 
@@ -0,0 +1,228 @@
+/*   Copyright 2004-2023 Jim Voris
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.qumasoft.qvcslib;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * The revision filters that the server applies when it builds a page of revision history. Every condition must pass for a revision to be included (these
+ * are the 'AND' revision filters of the client's file filter collection). The commit id conditions can be checked before the server reads any commit
+ * detail; the creator and commit message conditions need the commit's metadata.
+ *
+ * @author Jim Voris
+ */
+public final class RevisionHistoryFilter implements java.io.Serializable {
+    private static final long serialVersionUID = 4471850973284613942L;
+
+    private Integer commitIdGreaterThan = null;
+    private Integer commitIdLessThan = null;
+    private final ArrayList<Integer> commitIdList = new ArrayList<>();
+    private final ArrayList<String> creatorList = new ArrayList<>();
+    private final ArrayList<String> excludedCreatorList = new ArrayList<>();
+    private final ArrayList<String> descriptionExpressionList = new ArrayList<>();
+    private final ArrayList<String> excludedDescriptionExpressionList = new ArrayList<>();
+    private final ArrayList<String> descriptionSearchStringList = new ArrayList<>();
+
+    // Compiled on first use, on whichever side of the wire that happens.
+    private transient List<Pattern> descriptionPatternList;
+    private transient List<Pattern> excludedDescriptionPatternList;
+
+    /**
+     * Creates a new instance of RevisionHistoryFilter that passes every revision.
+     */
+    public RevisionHistoryFilter() {
+    }
+
+    /**
+     * Only include revisions whose commit id is greater than the given commit id.
+     * @param commitId the commit id.
+     */
+    public void addCommitIdGreaterThan(int commitId) {
+        if (commitIdGreaterThan == null || commitId > commitIdGreaterThan) {
+            commitIdGreaterThan = commitId;
+        }
+    }
+
+    /**
+     * Only include revisions whose commit id is less than the given commit id.
+     * @param commitId the commit id.
+     */
+    public void addCommitIdLessThan(int commitId) {
+        if (commitIdLessThan == null || commitId < commitIdLessThan) {
+            commitIdLessThan = commitId;
+        }
+    }
+
+    /**
+     * Only include revisions created by the given commit.
+     * @param commitId the commit id.
+     */
+    public void addCommitId(int commitId) {
+        commitIdList.add(commitId);
+    }
+
+    /**
+     * Only include revisions created by the given user.
+     * @param creator the user name.
+     */
+    public void addCreator(String creator) {
+        creatorList.add(creator);
+    }
+
+    /**
+     * Exclude revisions created by the given user.
+     * @param creator the user name.
+     */
+    public void addExcludedCreator(String creator) {
+        excludedCreatorList.add(creator);
+    }
+
+    /**
+     * Only include revisions whose commit message matches the given regular expression.
+     * @param regularExpression the regular expression. It must be valid.
+     */
+    public void addDescriptionExpression(String regularExpression) {
+        Pattern.compile(regularExpression);
+        descriptionExpressionList.add(regularExpression);
+        descriptionPatternList = null;
+    }
+
+    /**
+     * Exclude revisions whose commit message matches the given regular expression.
+     * @param regularExpression the regular expression. It must be valid.
+     */
+    public void addExcludedDescriptionExpression(String regularExpression) {
+        Pattern.compile(regularExpression);
+        excludedDescriptionExpressionList.add(regularExpression);
+        excludedDescriptionPatternList = null;
+    }
+
+    /**
+     * Only include revisions whose commit message contains the given string.
+     * @param searchString the string to search for.
+     */
+    public void addDescriptionSearchString(String searchString) {
+        descriptionSearchStringList.add(searchString);
+    }
+
+    /**
+     * Does this filter pass every revision?
+     * @return true if there are no conditions.
+     */
+    public boolean isEmpty() {
+        return !hasCommitIdConditions() && !requiresCommitDetail();
+    }
+
+    /**
+     * Do we need the creator or commit message of a revision to decide whether it passes?
+     * @return true if there are creator or commit message conditions.
+     */
+    public boolean requiresCommitDetail() {
+        return !creatorList.isEmpty() || !excludedCreatorList.isEmpty() || !descriptionExpressionList.isEmpty() || !excludedDescriptionExpressionList.isEmpty()
+                || !descriptionSearchStringList.isEmpty();
+    }
+
+    private boolean hasCommitIdConditions() {
+        return commitIdGreaterThan != null || commitIdLessThan != null || !commitIdList.isEmpty();
+    }
+
+    /**
+     * Does a revision created by the given commit pass the commit id conditions?
+     * @param commitId the revision's commit id.
+     * @return true if the revision passes the commit id conditions.
+     */
+    public boolean passesCommitId(int commitId) {
+        if (commitIdGreaterThan != null && commitId <= commitIdGreaterThan) {
+            return false;
+        }
+        if (commitIdLessThan != null && commitId >= commitIdLessThan) {
+            return false;
+        }
+        for (Integer filterCommitId : commitIdList) {
+            if (commitId != filterCommitId) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Does a revision with the given creator and commit message pass the creator and commit message conditions?
+     * @param creator the user who created the revision.
+     * @param description the revision's commit message.
+     * @return true if the revision passes the creator and commit message conditions.
+     */
+    public boolean passesCommitDetail(String creator, String description) {
+        for (String filterCreator : creatorList) {
+            if (!filterCreator.equals(creator)) {
+                return false;
+            }
+        }
+        for (String filterCreator : excludedCreatorList) {
+            if (filterCreator.equals(creator)) {
+                return false;
+            }
+        }
+        for (Pattern pattern : getDescriptionPatternList()) {
+            if (!pattern.matcher(description).matches()) {
+                return false;
+            }
+        }
+        for (Pattern pattern : getExcludedDescriptionPatternList()) {
+            if (pattern.matcher(description).matches()) {
+                return false;
+            }
+        }
+        for (String searchString : descriptionSearchStringList) {
+            if (!description.contains(searchString)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Does the given revision pass all of the conditions?
+     * @param revisionHeader the revision header.
+     * @return true if the revision passes.
+     */
+    public boolean passes(RevisionHeader revisionHeader) {
+        return passesCommitId(revisionHeader.getCommitId()) && passesCommitDetail(revisionHeader.getCreator(), revisionHeader.getRevisionDescription());
+    }
+
+    private List<Pattern> getDescriptionPatternList() {
+        if (descriptionPatternList == null) {
+            descriptionPatternList = compile(descriptionExpressionList);
+        }
+        return descriptionPatternList;
+    }
+
+    private List<Pattern> getExcludedDescriptionPatternList() {
+        if (excludedDescriptionPatternList == null) {
+            excludedDescriptionPatternList = compile(excludedDescriptionExpressionList);
+        }
+        return excludedDescriptionPatternList;
+    }
+
+    private static List<Pattern> compile(List<String> expressionList) {
+        List<Pattern> patternList = new ArrayList<>(expressionList.size());
+        for (String expression : expressionList) {
+            patternList.add(Pattern.compile(expression));
+        }
+        return patternList;
+    }
+}
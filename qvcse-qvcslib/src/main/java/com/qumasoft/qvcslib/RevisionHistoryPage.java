@@ -0,0 +1,114 @@
+/*   Copyright 2004-2023 Jim Voris
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.qumasoft.qvcslib;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of a file's revision history, newest revision first. To get the next page, ask for the revisions that follow
+ * {@link #getNextFileRevisionId()}. A revision header's index (its position in the file's full history) is transient, so we send the indexes alongside
+ * the headers and put them back when the page is read.
+ *
+ * @author Jim Voris
+ */
+public final class RevisionHistoryPage implements java.io.Serializable {
+    private static final long serialVersionUID = -2902215584871358410L;
+
+    private final ArrayList<RevisionHeader> revisionHeaderList = new ArrayList<>();
+    private int[] revisionIndexes = new int[0];
+    private int revisionCount;
+    private Integer nextFileRevisionId;
+
+    /**
+     * Creates a new, empty, instance of RevisionHistoryPage.
+     */
+    public RevisionHistoryPage() {
+    }
+
+    /**
+     * Add a revision to the page. Revisions are added newest first.
+     * @param revisionHeader the revision header. Its revision index must already be set.
+     */
+    public void addRevisionHeader(RevisionHeader revisionHeader) {
+        revisionHeaderList.add(revisionHeader);
+    }
+
+    /**
+     * Get the revisions on this page, newest first.
+     * @return the revisions on this page.
+     */
+    public List<RevisionHeader> getRevisionHeaderList() {
+        return Collections.unmodifiableList(revisionHeaderList);
+    }
+
+    /**
+     * Get the number of revisions in the file's history, whether or not they pass the filter.
+     * @return the number of revisions in the file's history.
+     */
+    public int getRevisionCount() {
+        return revisionCount;
+    }
+
+    /**
+     * Set the number of revisions in the file's history.
+     * @param count the number of revisions in the file's history.
+     */
+    public void setRevisionCount(int count) {
+        this.revisionCount = count;
+    }
+
+    /**
+     * Get the file revision id to use as the cursor for the next page.
+     * @return the file revision id of the last revision examined for this page; null if there are no older revisions.
+     */
+    public Integer getNextFileRevisionId() {
+        return nextFileRevisionId;
+    }
+
+    /**
+     * Set the file revision id to use as the cursor for the next page.
+     * @param fileRevisionId the file revision id of the last revision examined for this page; null if there are no older revisions.
+     */
+    public void setNextFileRevisionId(Integer fileRevisionId) {
+        this.nextFileRevisionId = fileRevisionId;
+    }
+
+    /**
+     * Are there older revisions to fetch?
+     * @return true if there may be more revisions after this page.
+     */
+    public boolean hasMore() {
+        return nextFileRevisionId != null;
+    }
+
+    private void writeObject(java.io.ObjectOutputStream out) throws IOException {
+        revisionIndexes = new int[revisionHeaderList.size()];
+        for (int i = 0; i < revisionIndexes.length; i++) {
+            revisionIndexes[i] = revisionHeaderList.get(i).getRevisionIndex();
+        }
+        out.defaultWriteObject();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        for (int i = 0; i < revisionIndexes.length && i < revisionHeaderList.size(); i++) {
+            revisionHeaderList.get(i).setRevisionIndex(revisionIndexes[i]);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/*   Copyright 2004-2023 Jim Voris
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.qumasoft.qvcslib;
+
+import com.qumasoft.qvcslib.requestdata.ClientRequestGetRevisionHistoryPageData;
+import com.qumasoft.qvcslib.response.ServerResponseGetRevisionHistoryPage;
+import com.qumasoft.qvcslib.response.ServerResponseMessage;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Ask the server for a page of revision history without waiting for the answer.
+ *
+ * @author Jim Voris
+ */
+public final class RevisionHistoryPageFetcher {
+
+    // Hide the default constructor.
+    private RevisionHistoryPageFetcher() {
+    }
+
+    /**
+     * Write a get revision history page request.
+     *
+     * @param transportProxy the connection to the server.
+     * @param request the request.
+     * @return a future that completes (on the transport's receive thread) with the page. It completes exceptionally if the server could not build the
+     * page, or the connection goes away.
+     */
+    public static CompletableFuture<RevisionHistoryPage> fetchPage(TransportProxyInterface transportProxy, ClientRequestGetRevisionHistoryPageData request) {
+        return transportProxy.writeAsync(request).thenApply((Object response) -> {
+            if (response instanceof ServerResponseGetRevisionHistoryPage pageResponse && pageResponse.getRevisionHistoryPage() != null) {
+                return pageResponse.getRevisionHistoryPage();
+            } else if (response instanceof ServerResponseMessage message) {
+                throw new QVCSRuntimeException(message.getMessage());
+            }
+            throw new QVCSRuntimeException("Revision history not found for: [" + request.getShortWorkfileName() + "]");
+        });
+    }
+}
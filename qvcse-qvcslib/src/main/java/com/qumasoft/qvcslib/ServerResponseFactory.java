@@ -18,34 +18,74 @@ import com.qumasoft.qvcslib.response.ServerResponseError;
 import com.qumasoft.qvcslib.response.ServerResponseLogin;
 import com.qumasoft.qvcslib.response.ServerResponseTransactionBegin;
 import com.qumasoft.qvcslib.response.ServerResponseTransactionEnd;
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.ObjectOutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
-import java.util.TimerTask;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Server response factory.
+ * Server response factory. Responses are prepared (serialized and compressed) on the thread that creates them, and put on this connection's outbound queue.
+ * A writer thread takes everything that is queued, writes it, and flushes once, so the thread that made a response does not wait for the client to read
+ * it. The writer threads are shared by all connections, but only one at a time works on a given connection, so responses reach the client in the order
+ * they were queued.
+ *
+ * <p>The outbound queue is bounded by the number of bytes it holds. When it is full, {@link #sendPreparedServerResponse(java.io.Serializable)} waits for
+ * the writer to make room, so a producer that streams many responses (like get directory) is held to the speed of the client. If the client makes no room
+ * for as long as it would take us to decide it is dead, we give up on the connection.</p>
+ *
  * @author Jim Voris
  */
 public class ServerResponseFactory implements ServerResponseFactoryInterface {
     // Create our logger object
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ServerResponseFactory.class);
+
+    /** The default for the most bytes of prepared responses that may wait to be written to one client. */
+    public static final long DEFAULT_MAXIMUM_QUEUED_BYTES = Long.getLong("qvcsos.server.clientOutboundQueueBytes", 16L * 1024L * 1024L);
+    private static final int WRITER_THREAD_COUNT = Integer.getInteger("qvcsos.server.responseWriterThreadCount", 8);
+    private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+    /** What we count against the queue for a response whose size we do not know. */
+    private static final int UNKNOWN_RESPONSE_SIZE = 1024;
+    private static final ExecutorService WRITER_POOL = Executors.newFixedThreadPool(WRITER_THREAD_COUNT, new WriterThreadFactory());
+
     private java.io.ObjectOutputStream objectOutputStream = null;
     private java.io.OutputStream outputStream = null;
     private final Object outputStreamSyncObject = new Object();
+    private final long maximumQueuedBytes;
+
+    // The outbound queue, and the writer's state. Guarded by outboundLock.
+    private final Object outboundLock = new Object();
+    private final Deque<PreparedResponse> outboundQueue = new ArrayDeque<>();
+    private long queuedBytes = 0L;
+    private boolean writerActiveFlag = false;
+
+    // Statistics. Guarded by outboundLock.
+    private long largestQueuedBytes = 0L;
+    private long producerWaitCount = 0L;
+    private long writtenCount = 0L;
+    private long flushCount = 0L;
+
     private final Set<ArchiveDirManagerInterface> directoryManagers = new HashSet<>();
     private String userName = null;
     private String serverName = null;
     private boolean isUserLoggedInFlag = false;
     private int clientPort = -1;
     private String clientIPAddress = null;
-    private boolean connectionAliveFlag = false;
-    private HeartBeatTimerTask heartBeatTimerTask = null;
+    private volatile boolean connectionAliveFlag = false;
+    private volatile int wireProtocolVersion = WireProtocolCodec.JAVA_SERIALIZATION_PROTOCOL_VERSION;
+    private ConnectionLivenessSupervisor.Registration livenessRegistration = null;
     private static final long HEART_BEAT_COUNT_BEFORE_DECLARING_FAILURE = 8;
     /** This can be static because there is only one server. */
     private static boolean shutdownInProgressFlag = false;
@@ -57,9 +97,24 @@ public class ServerResponseFactory implements ServerResponseFactoryInterface {
      * @param cIPAddress the client IP address associated with the socket.
      */
     public ServerResponseFactory(java.io.OutputStream oStream, final int cPort, final String cIPAddress) {
+        this(oStream, cPort, cIPAddress, DEFAULT_MAXIMUM_QUEUED_BYTES);
+    }
+
+    /**
+     * Creates new ServerResponseFactory with a specific limit on the size of its outbound queue.
+     * @param oStream the output stream. Typically, this will be the output stream of a Socket.
+     * @param cPort the client port associated with the socket.
+     * @param cIPAddress the client IP address associated with the socket.
+     * @param maxQueuedBytes the most bytes of prepared responses that may wait to be written to the client.
+     */
+    public ServerResponseFactory(java.io.OutputStream oStream, final int cPort, final String cIPAddress, long maxQueuedBytes) {
+        maximumQueuedBytes = maxQueuedBytes;
         try {
             outputStream = oStream;
-            objectOutputStream = new ObjectOutputStream(oStream);
+            objectOutputStream = new ObjectOutputStream(new BufferedOutputStream(oStream, OUTPUT_BUFFER_SIZE));
+
+            // The client waits for the stream header before it sends anything.
+            objectOutputStream.flush();
             clientPort = cPort;
             clientIPAddress = cIPAddress;
             connectionAliveFlag = true;
@@ -92,51 +147,249 @@ public class ServerResponseFactory implements ServerResponseFactoryInterface {
     @Override
     public void createServerResponse(java.io.Serializable responseObject) {
         if (null != responseObject) {
+            sendPreparedServerResponse(prepareServerResponse(responseObject));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public java.io.Serializable prepareServerResponse(java.io.Serializable responseObject) {
+        if (null == responseObject) {
+            return null;
+        }
+        java.io.Serializable preparedResponse = responseObject;
+
+        // Make sure the user is logged in before we actually share any
+        // info with them.
+        if (!getIsUserLoggedIn()) {
+            if (responseObject instanceof ServerResponseLogin) {
+                ServerResponseLogin response = (ServerResponseLogin) responseObject;
+                LOGGER.warn("User [" + response.getUserName() + "] failed to login.");
+            } else if (responseObject instanceof ServerResponseTransactionBegin) {
+                LOGGER.trace("Sending transaction begin without being logged in.");
+            } else if (responseObject instanceof ServerResponseTransactionEnd) {
+                LOGGER.trace("Sending transaction end without being logged in.");
+            } else {
+                preparedResponse = new ServerResponseError("Not logged in!!", null, null, null);
+            }
+        }
+
+        if (wireProtocolVersion >= WireProtocolCodec.BINARY_PROTOCOL_VERSION) {
             try {
-                MutableByteArray responseArray = new MutableByteArray();
-
-                // Make sure the user is logged in before we actually share any
-                // info with them.
-                if (!getIsUserLoggedIn()) {
-                    if (responseObject instanceof ServerResponseLogin) {
-                        ServerResponseLogin response = (ServerResponseLogin) responseObject;
-                        LOGGER.warn("User [" + response.getUserName() + "] failed to login.");
-                    } else if (responseObject instanceof ServerResponseTransactionBegin) {
-                        LOGGER.trace("Sending transaction begin without being logged in.");
-                    } else if (responseObject instanceof ServerResponseTransactionEnd) {
-                        LOGGER.trace("Sending transaction end without being logged in.");
-                    } else {
-                        ServerResponseError error = new ServerResponseError("Not logged in!!", null, null, null);
-                        responseObject = error;
-                    }
+                byte[] encodedResponse = WireProtocolCodec.encode(preparedResponse);
+                return new PreparedResponse(encodedResponse, encodedResponse.length);
+            } catch (IOException e) {
+                LOGGER.warn("Failed to encode [{}]; falling back to Java serialization: [{}]", preparedResponse.getClass().getSimpleName(), e.getLocalizedMessage());
+            }
+        }
+
+        // Compress the response. This happens on the caller's thread so that a large response does not hold up the writer.
+        MutableByteArray responseArray = new MutableByteArray();
+        int serializedSize = compress(preparedResponse, responseArray);
+        if (responseArray.getValue() != null) {
+            // Things compressed... send the compressed result.
+            return new PreparedResponse(responseArray.getValue(), responseArray.getValue().length);
+        }
+        // Otherwise, things would not compress... just send the original object.
+        if (serializedSize > 0) {
+            return new PreparedResponse(preparedResponse, serializedSize);
+        }
+        return new PreparedResponse(preparedResponse, UNKNOWN_RESPONSE_SIZE);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void sendPreparedServerResponse(java.io.Serializable preparedResponse) {
+        if (null == preparedResponse) {
+            return;
+        }
+        PreparedResponse frame;
+        if (preparedResponse instanceof PreparedResponse prepared) {
+            frame = prepared;
+        } else {
+            frame = new PreparedResponse(preparedResponse, UNKNOWN_RESPONSE_SIZE);
+        }
+        boolean startWriterFlag = false;
+        synchronized (outboundLock) {
+            if (!waitForRoom(frame.size)) {
+                return;
+            }
+            outboundQueue.addLast(frame);
+            queuedBytes += frame.size;
+            largestQueuedBytes = Math.max(largestQueuedBytes, queuedBytes);
+            if (!writerActiveFlag) {
+                writerActiveFlag = true;
+                startWriterFlag = true;
+            }
+        }
+        if (startWriterFlag) {
+            WRITER_POOL.execute(this::writeQueuedResponses);
+        }
+    }
+
+    /**
+     * Wait until the outbound queue has room for a response of the given size. A response that is bigger than the whole queue is let in once the queue is
+     * empty. Call this holding the outbound lock.
+     * @param size the size of the response.
+     * @return true if there is room; false if the connection is dead.
+     */
+    private boolean waitForRoom(long size) {
+        long deadline = System.currentTimeMillis() + HEART_BEAT_COUNT_BEFORE_DECLARING_FAILURE * QVCSConstants.HEART_BEAT_SLEEP_TIME;
+        boolean waitedFlag = false;
+        while (connectionAliveFlag && queuedBytes > 0L && queuedBytes + size > maximumQueuedBytes) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0L) {
+                LOGGER.warn("Client [{}] at [{}] has not read its responses in time. Closing the connection.", userName, clientIPAddress);
+                closeConnection();
+                break;
+            }
+            if (!waitedFlag) {
+                waitedFlag = true;
+                producerWaitCount++;
+            }
+            try {
+                outboundLock.wait(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return connectionAliveFlag;
+    }
+
+    /**
+     * Write everything on the outbound queue, a batch at a time, with one flush per batch. This runs on a writer thread; only one writer thread works on a
+     * given connection at a time.
+     */
+    private void writeQueuedResponses() {
+        List<PreparedResponse> batch = new ArrayList<>();
+        while (true) {
+            synchronized (outboundLock) {
+                if (outboundQueue.isEmpty() || !connectionAliveFlag) {
+                    outboundQueue.clear();
+                    queuedBytes = 0L;
+                    writerActiveFlag = false;
+                    outboundLock.notifyAll();
+                    return;
                 }
+                batch.addAll(outboundQueue);
+                outboundQueue.clear();
+            }
+            long batchBytes = 0L;
+            for (PreparedResponse frame : batch) {
+                batchBytes += frame.size;
+            }
+            writeBatch(batch);
+            synchronized (outboundLock) {
+                // If the connection was closed while we were writing, the queued byte count has already been cleared.
+                if (connectionAliveFlag) {
+                    queuedBytes -= batchBytes;
+                    writtenCount += batch.size();
+                    flushCount++;
+                }
+                outboundLock.notifyAll();
+            }
+            batch.clear();
+        }
+    }
 
-                synchronized (outputStreamSyncObject) {
-                    // Cancel the heartbeat timer so we won't kill the connection for really long/big responses.
-                    heartBeatTimerTask.cancel();
-
-                    // Compress the response
-                    if (compress(responseObject, responseArray)) {
-                        // Things compressed... send the compressed result.
-                        objectOutputStream.writeObject(responseArray.getValue());
-                    } else {
-                        // Things would not compress... just send the original object.
-                        objectOutputStream.writeObject(responseObject);
+    private void writeBatch(List<PreparedResponse> batch) {
+        try {
+            synchronized (outputStreamSyncObject) {
+                // Hold off the liveness supervisor so we won't kill the connection for really long/big responses.
+                livenessRegistration.suspend();
+                try {
+                    for (PreparedResponse frame : batch) {
+                        objectOutputStream.writeObject(frame.payload);
+                        objectOutputStream.reset();
                     }
                     objectOutputStream.flush();
-                    objectOutputStream.reset();
+                } finally {
+                    livenessRegistration.resume();
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.warn(e.getLocalizedMessage(), e);
+            synchronized (outboundLock) {
+                closeConnection();
+            }
+        }
+    }
+
+    /**
+     * Give up on the connection. Call this holding the outbound lock.
+     */
+    private void closeConnection() {
+        try {
+            outputStream.close();
+        } catch (IOException ioe) {
+            LOGGER.warn(ioe.getLocalizedMessage(), ioe);
+        } finally {
+            connectionAliveFlag = false;
+            outboundQueue.clear();
+            queuedBytes = 0L;
+            outboundLock.notifyAll();
+        }
+    }
+
+    /**
+     * Wait for the responses that have been queued to be written to the client. Use this before closing the connection, so that the last responses are
+     * not lost.
+     * @param timeout the longest to wait, in milliseconds.
+     * @return true if everything queued was written.
+     */
+    public boolean awaitOutboundQueueEmpty(long timeout) {
+        long deadline = System.currentTimeMillis() + timeout;
+        synchronized (outboundLock) {
+            while (connectionAliveFlag && (writerActiveFlag || !outboundQueue.isEmpty())) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0L) {
+                    return false;
                 }
-                clientIsAlive();
-            } catch (IOException e) {
-                LOGGER.warn(e.getLocalizedMessage(), e);
                 try {
-                    outputStream.close();
-                } catch (IOException ioe) {
-                    LOGGER.warn(ioe.getLocalizedMessage(), ioe);
-                } finally {
-                    connectionAliveFlag = false;
+                    outboundLock.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
                 }
             }
+            return outboundQueue.isEmpty();
+        }
+    }
+
+    /**
+     * Get the number of bytes of prepared responses waiting to be written to the client (including those being written now).
+     * @return the number of bytes waiting to be written.
+     */
+    public long getQueuedOutboundBytes() {
+        synchronized (outboundLock) {
+            return queuedBytes;
+        }
+    }
+
+    /**
+     * Is the outbound queue full? A producer that sends a response now would wait for the writer.
+     * @return true if the outbound queue is full.
+     */
+    @Override
+    public boolean isOutboundQueueFull() {
+        synchronized (outboundLock) {
+            return queuedBytes >= maximumQueuedBytes;
+        }
+    }
+
+    /**
+     * Get a one line summary of this connection's outbound statistics.
+     * @return a one line summary of this connection's outbound statistics.
+     */
+    public String getOutboundStatistics() {
+        synchronized (outboundLock) {
+            return String.format("Responses written: [%d] flushes: [%d] largest queue: [%d bytes] producer waits: [%d]", writtenCount, flushCount,
+                    largestQueuedBytes, producerWaitCount);
         }
     }
 
@@ -156,10 +409,15 @@ public class ServerResponseFactory implements ServerResponseFactoryInterface {
         return directoryManagers;
     }
 
-    private boolean compress(java.io.Serializable responseObject, MutableByteArray compressedArray) {
-        boolean retVal;
+    /**
+     * Serialize and compress a response.
+     * @param responseObject the response.
+     * @param compressedArray gets the compressed response, if it was worth compressing.
+     * @return the serialized size of the response; 0 if we could not serialize it.
+     */
+    private int compress(java.io.Serializable responseObject, MutableByteArray compressedArray) {
+        int retVal;
         try {
-            Compressor compressor = new ZlibCompressor();
             ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
             ObjectOutputStream compressedObjectOutputStream = new ObjectOutputStream(byteArrayOutputStream);
             compressedObjectOutputStream.writeObject(responseObject);
@@ -167,24 +425,41 @@ public class ServerResponseFactory implements ServerResponseFactoryInterface {
             compressedObjectOutputStream.close();
             byteArrayOutputStream.close();
             byte[] inputByteArray = byteArrayOutputStream.toByteArray();
-            retVal = compressor.compress(inputByteArray);
+            byte[] compressedBuffer = CompressionEngine.getInstance().compress(inputByteArray, CompressionEngine.getContentName(responseObject));
+            retVal = inputByteArray.length;
 
-            if (retVal) {
-                compressedArray.setValue(compressor.getCompressedBuffer());
+            if (compressedBuffer != null) {
+                compressedArray.setValue(compressedBuffer);
                 LOGGER.debug("Compressed server response for [{}] from: [{}] to: [{}]", responseObject.getClass().toString(), inputByteArray.length, compressedArray.getValue().length);
             }
         } catch (java.lang.OutOfMemoryError e) {
-            retVal = false;
+            retVal = 0;
 
             // If they are trying to create an archive for a really big file,
             // we might have problems.
             LOGGER.warn("Out of memory trying to compress response object");
         } catch (IOException e) {
-            retVal = false;
+            retVal = 0;
         }
         return retVal;
     }
 
+    /**
+     * Set the wire protocol version for responses sent on this connection. This is agreed with the client at login.
+     * @param protocolVersion the wire protocol version.
+     */
+    public void setWireProtocolVersion(int protocolVersion) {
+        wireProtocolVersion = protocolVersion;
+    }
+
+    /**
+     * Get the wire protocol version for responses sent on this connection.
+     * @return the wire protocol version.
+     */
+    public int getWireProtocolVersion() {
+        return wireProtocolVersion;
+    }
+
     /**
      * Is the user logged in.
      * @return true if the user is logged in; false if not logged in.
@@ -250,8 +525,8 @@ public class ServerResponseFactory implements ServerResponseFactoryInterface {
     }
 
     private void initKeepAliveTimer() {
-        heartBeatTimerTask = new HeartBeatTimerTask();
-        TimerManager.getInstance().getTimer().schedule(heartBeatTimerTask, HEART_BEAT_COUNT_BEFORE_DECLARING_FAILURE * QVCSConstants.HEART_BEAT_SLEEP_TIME);
+        livenessRegistration = ConnectionLivenessSupervisor.getInstance().register(clientIPAddress + ":" + clientPort,
+                HEART_BEAT_COUNT_BEFORE_DECLARING_FAILURE * QVCSConstants.HEART_BEAT_SLEEP_TIME, () -> setConnectionAliveFlag(false));
     }
 
     /**
@@ -259,9 +534,37 @@ public class ServerResponseFactory implements ServerResponseFactoryInterface {
      */
     @Override
     public void clientIsAlive() {
-        heartBeatTimerTask.cancel();
-        heartBeatTimerTask = new HeartBeatTimerTask();
-        TimerManager.getInstance().getTimer().schedule(heartBeatTimerTask, HEART_BEAT_COUNT_BEFORE_DECLARING_FAILURE * QVCSConstants.HEART_BEAT_SLEEP_TIME);
+        livenessRegistration.touch();
+    }
+
+    /**
+     * The client sent a heartbeat.
+     * @param roundTripMillis the round trip time the client measured for its previous heartbeat, in milliseconds; negative if it did not report one.
+     */
+    public void heartBeatReceived(long roundTripMillis) {
+        if (livenessRegistration != null) {
+            livenessRegistration.recordHeartBeat(roundTripMillis);
+        }
+    }
+
+    /**
+     * Get a one line summary of this connection's heartbeats.
+     * @return a one line summary of this connection's heartbeats.
+     */
+    public String getHeartBeatStatistics() {
+        if (livenessRegistration == null) {
+            return "";
+        }
+        return livenessRegistration.getHeartBeatStatistics();
+    }
+
+    /**
+     * Stop watching this connection for liveness. Use this once the connection has been closed.
+     */
+    public void stopLivenessSupervision() {
+        if (livenessRegistration != null) {
+            livenessRegistration.cancel();
+        }
     }
 
     /**
@@ -273,14 +576,37 @@ public class ServerResponseFactory implements ServerResponseFactoryInterface {
     }
 
     private void setConnectionAliveFlag(boolean flag) {
-        connectionAliveFlag = flag;
+        synchronized (outboundLock) {
+            connectionAliveFlag = flag;
+
+            // Let any producer waiting for room know.
+            outboundLock.notifyAll();
+        }
+    }
+
+    /**
+     * A response that is ready to write, and the number of bytes it counts against the outbound queue.
+     */
+    static final class PreparedResponse implements java.io.Serializable {
+        private static final long serialVersionUID = 6307815547432157318L;
+
+        private final java.io.Serializable payload;
+        private final transient long size;
+
+        PreparedResponse(java.io.Serializable responsePayload, long responseSize) {
+            this.payload = responsePayload;
+            this.size = responseSize;
+        }
     }
 
-    class HeartBeatTimerTask extends TimerTask {
+    static class WriterThreadFactory implements ThreadFactory {
+        private final AtomicInteger threadCounter = new AtomicInteger(0);
 
         @Override
-        public void run() {
-            setConnectionAliveFlag(false);
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "ServerResponseWriter-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
         }
     }
 
@@ -29,11 +29,29 @@ public interface ServerResponseFactoryInterface {
     void addArchiveDirManager(ArchiveDirManagerInterface archiveDirManager);
 
     /**
-     * Send the server response object to the client. The message <i>may</i> be compressed before sending.
+     * Send the server response object to the client. The message <i>may</i> be compressed before sending. The response may be written after this method
+     * returns; this waits only if too many responses are already waiting to be written to the client.
      * @param responseObject the response object to send to the client.
      */
     void createServerResponse(java.io.Serializable responseObject);
 
+    /**
+     * Do the work needed to get a response object ready to send, without sending it. This is the (possibly expensive) serialization and compression part of
+     * {@link #createServerResponse(java.io.Serializable)}, and does not hold the output stream, so it may be called from any thread. The returned object
+     * must be sent using {@link #sendPreparedServerResponse(java.io.Serializable)}.
+     * @param responseObject the response object to prepare.
+     * @return the object to hand to {@link #sendPreparedServerResponse(java.io.Serializable)}.
+     */
+    java.io.Serializable prepareServerResponse(java.io.Serializable responseObject);
+
+    /**
+     * Send a response that was prepared by {@link #prepareServerResponse(java.io.Serializable)}. Responses are written to the client in the order in which
+     * this method is called. If too many responses are already waiting to be written to the client, this waits until the client has caught up; that is how a
+     * producer that sends many responses is held to the client's pace.
+     * @param preparedResponse the prepared response.
+     */
+    void sendPreparedServerResponse(java.io.Serializable preparedResponse);
+
     /**
      * Get the server name. This is the client's name for the server.
      * @return the client's name for the server.
@@ -64,6 +82,12 @@ public interface ServerResponseFactoryInterface {
      */
     boolean getConnectionAliveFlag();
 
+    /**
+     * Is the outbound queue to the client full? Sending a response now would wait for the client to read what has already been sent.
+     * @return true if the outbound queue is full.
+     */
+    boolean isOutboundQueueFull();
+
     /**
      * Poke this method to indicate that we're still able to communicate with the client. This method must be called within every so often, or the server will determine that
      * the client is dead. Normally, the client will send a heartbeat message to the server at some interval. On receipt of the heartbeat from the client, the server will poke
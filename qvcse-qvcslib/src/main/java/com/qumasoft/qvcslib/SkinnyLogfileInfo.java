@@ -254,4 +254,25 @@ public class SkinnyLogfileInfo implements java.io.Serializable {
     public void setFileRevisionId(Integer id) {
         this.fileRevisionId = id;
     }
+
+    /**
+     * @param attributes the archive attributes to set
+     */
+    public void setAttributes(ArchiveAttributes attributes) {
+        this.archiveAttributes = attributes;
+    }
+
+    /**
+     * @param separatorString the separator String to set
+     */
+    public void setSeparator(String separatorString) {
+        this.separator = separatorString;
+    }
+
+    /**
+     * @param flag the overlap flag to set
+     */
+    public void setOverlapFlag(boolean flag) {
+        this.overlapFlag = flag;
+    }
 }
@@ -19,6 +19,8 @@ import com.qumasoft.qvcslib.requestdata.ClientRequestClientData;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -27,6 +29,12 @@ import org.slf4j.LoggerFactory;
  * A singleton to put synchronization all in one place so that even an error
  * response can release the wait... at least that's the idea.
  *
+ * <p>A caller can either block on a token with {@link #waitOnToken}, or ask
+ * for a future with {@link #registerFuture} and let the transport pipeline
+ * its request (see {@link TransportProxyInterface#writeAsync}). Either way,
+ * the receive thread releases the token via {@link #completeOnToken} once the
+ * response has been handled.</p>
+ *
  * @author Jim Voris
  */
 public final class SynchronizationManager {
@@ -42,6 +50,9 @@ public final class SynchronizationManager {
     // Where we store the sync objects.
     private final Map<Integer, Object> syncObjectsMap = Collections.synchronizedMap(new HashMap<>());
 
+    // The futures for pipelined requests, keyed by sync token.
+    private final Map<Integer, CompletableFuture<Object>> futuresMap = new ConcurrentHashMap<>();
+
     /**
      * Creates a new instance of Synchronization Manager.
      */
@@ -93,6 +104,58 @@ public final class SynchronizationManager {
         }
     }
 
+    /**
+     * Register a future that will be completed with the response for the given
+     * token. The caller is responsible for writing the request.
+     *
+     * @param token the sync token of the request.
+     * @return the future that the response will complete.
+     */
+    public CompletableFuture<Object> registerFuture(Integer token) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        if (futuresMap.putIfAbsent(token, future) != null) {
+            throw new QVCSRuntimeException("A future is already registered for sync token: [" + token + "]");
+        }
+        return future;
+    }
+
+    /**
+     * Complete the future (if any) associated with the given token, and
+     * notify any threads waiting on the token.
+     *
+     * @param token the token that identifies the request.
+     * @param response the response object from the server.
+     */
+    public void completeOnToken(Integer token, Object response) {
+        if (token != null) {
+            CompletableFuture<Object> future = futuresMap.remove(token);
+            if (future != null) {
+                future.complete(response);
+            }
+        }
+        notifyOnToken(token);
+    }
+
+    /**
+     * Fail the future (if any) associated with the given token, and notify any
+     * threads waiting on the token. We use this when the connection goes away
+     * before the response arrives.
+     *
+     * @param token the token that identifies the request.
+     * @param throwable why the request failed.
+     */
+    public void failOnToken(Integer token, Throwable throwable) {
+        if (token != null) {
+            CompletableFuture<Object> future = futuresMap.remove(token);
+            if (future != null) {
+                future.completeExceptionally(throwable);
+            }
+            if (syncObjectsMap.containsKey(token)) {
+                notifyOnToken(token);
+            }
+        }
+    }
+
     /**
      * Notify any threads waiting on the internal sync object associated with
      * the given token.
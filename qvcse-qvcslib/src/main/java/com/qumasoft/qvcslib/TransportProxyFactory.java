@@ -30,6 +30,7 @@ import com.qumasoft.qvcslib.response.ServerResponseAddDirectory;
 import com.qumasoft.qvcslib.response.ServerResponseAddUserProperty;
 import com.qumasoft.qvcslib.response.ServerResponseApplyTag;
 import com.qumasoft.qvcslib.response.ServerResponseChangePassword;
+import com.qumasoft.qvcslib.response.ServerResponseBulk;
 import com.qumasoft.qvcslib.response.ServerResponseCheckIn;
 import com.qumasoft.qvcslib.response.ServerResponseCreateArchive;
 import com.qumasoft.qvcslib.response.ServerResponseError;
@@ -61,6 +62,7 @@ import com.qumasoft.qvcslib.response.ServerResponsePromotionMoveAndRename;
 import com.qumasoft.qvcslib.response.ServerResponsePromotionRename;
 import com.qumasoft.qvcslib.response.ServerResponsePromotionSimple;
 import com.qumasoft.qvcslib.response.ServerResponseRegisterClientListener;
+import com.qumasoft.qvcslib.response.ServerResponseRegisterClientListenerBulk;
 import com.qumasoft.qvcslib.response.ServerResponseRenameArchive;
 import com.qumasoft.qvcslib.response.ServerResponseResolveConflictFromParentBranch;
 import com.qumasoft.qvcslib.response.ServerResponseSuccess;
@@ -286,6 +288,7 @@ public final class TransportProxyFactory {
         loginRequest.setServerName(serverProperties.getServerName());
         loginRequest.setVersion(QVCSConstants.QVCS_RELEASE_VERSION);
         loginRequest.setClientComputerName(Utility.getComputerName());
+        loginRequest.setWireProtocolVersion(WireProtocolCodec.BINARY_PROTOCOL_VERSION);
         SynchronizationManager.getSynchronizationManager().waitOnToken(transportProxy, loginRequest);
     }
 
@@ -568,141 +571,17 @@ public final class TransportProxyFactory {
                 ServerManager.getServerManager().handleServerManagement(object);
                 AbstractServerManagementResponse abstractServerManagementResponse = (AbstractServerManagementResponse) object;
                 Integer syncToken = abstractServerManagementResponse.getSyncToken();
-                SynchronizationManager.getSynchronizationManager().notifyOnToken(syncToken);
+                SynchronizationManager.getSynchronizationManager().completeOnToken(syncToken, object);
             } else if (object instanceof AbstractServerResponse) {
                 AbstractServerResponse abstractServerResponse = (AbstractServerResponse) object;
-                ServerResponseInterface.ResponseOperationType responseType = abstractServerResponse.getOperationType();
-                switch (responseType) {
-                    case SR_LOGIN:
-                        handleLoginResponse(object);
-                        break;
-                    case SR_REGISTER_CLIENT_LISTENER:
-                        handleRegisterClientListenerResponse(object);
-                        break;
-                    case SR_GET_REVISION:
-                        handleGetRevisionResponse(object);
-                        break;
-                    case SR_GET_DIRECTORY:
-                        handleGetDirectoryResponse(object);
-                        break;
-                    case SR_GET_REVISION_FOR_COMPARE:
-                        handleGetRevisionForCompareResponse(object);
-                        break;
-                    case SR_GET_USER_COMMIT_COMMENTS:
-                        handleGetUserCommitComments(object);
-                        break;
-                    case SR_GET_COMMIT_LIST_FOR_MOVEABLE_TAG_READ_ONLY_BRANCHES:
-                        handleGetCommitListForMoveableTagReadOnlyBranches(object);
-                        break;
-                    case SR_GET_BRIEF_COMMIT_INFO_LIST:
-                        handleGetBriefCommitInfoList(object);
-                        break;
-                    case SR_GET_USER_PROPERTIES:
-                        handleGetUserPropertiesResponse(object);
-                        break;
-                    case SR_ADD_USER_PROPERTY:
-                        handleAddUserPropertyResponse(object);
-                        break;
-                    case SR_UPDATE_VIEW_UTILITY_COMMAND:
-                        handleUpdateViewUtilityCommandResponse(object);
-                        break;
-                    case SR_UPDATE_FILTER_FILE_COLLECTION:
-                        handleFileFilterResponse(object);
-                        break;
-                    case SR_CHECK_IN:
-                        handleCheckInResponse(object);
-                        break;
-                    case SR_GET_FOR_VISUAL_COMPARE:
-                        handleGetForVisualCompareResponse(object);
-                        break;
-                    case SR_ADD_DIRECTORY:
-                        handleAddDirectoryResponse(object);
-                        break;
-                    case SR_PROJECT_CONTROL:
-                        handleProjectControlResponse(object);
-                        break;
-                    case SR_GET_LOGFILE_INFO:
-                        handleGetLogfileInfoResponse(object);
-                        break;
-                    case SR_GET_ALL_LOGFILE_INFO:
-                        handleGetAllLogfileInfoResponse(object);
-                        break;
-                    case SR_CHANGE_USER_PASSWORD:
-                        handleChangePasswordResponse(object);
-                        break;
-                    case SR_RESPONSE_SUCCESS:
-                        handleSuccessResponse(object);
-                        break;
-                    case SR_RESPONSE_ERROR:
-                        handleErrorResponse(object);
-                        break;
-                    case SR_CREATE_ARCHIVE:
-                        handleCreateArchiveResponse(object);
-                        break;
-                    case SR_MOVE_FILE:
-                        handleMoveFileResponse(object);
-                        break;
-                    case SR_RENAME_FILE:
-                        handleRenameArchiveResponse(object);
-                        break;
-                    case SR_BEGIN_TRANSACTION:
-                        handleTransactionBeginResponse(object);
-                        break;
-                    case SR_END_TRANSACTION:
-                        handleTransactionEndResponse(object);
-                        break;
-                    case SR_RESPONSE_MESSAGE:
-                        handleResponseMessage(object);
-                        break;
-                    case SR_HEARTBEAT:
-                        handleHeartBeatResponseMessage(object);
-                        break;
-                    case SR_GET_INFO_FOR_MERGE:
-                        handleGetInfoForMerge(object);
-                        break;
-                    case SR_RESOLVE_CONFLICT_FROM_PARENT_BRANCH:
-                        handleResolveConflictFromParentBranch(object);
-                        break;
-                    case SR_LIST_FILES_TO_PROMOTE:
-                        handleListFilesToPromoteResponse(object);
-                        break;
-                    case SR_PROMOTE_FILE_SIMPLE:
-                        handlePromoteFileSimpleResponse(object);
-                        break;
-                    case SR_PROMOTE_FILE_CREATE:
-                        handlePromoteCreateResponse(object);
-                        break;
-                    case SR_PROMOTE_FILE_RENAME:
-                        handlePromoteRenameResponse(object);
-                        break;
-                    case SR_PROMOTE_FILE_MOVE:
-                        handlePromoteMoveResponse(object);
-                        break;
-                    case SR_PROMOTE_FILE_MOVE_AND_RENAME:
-                        handlePromoteMoveAndRenameResponse(object);
-                        break;
-                    case SR_PROMOTE_FILE_DELETE:
-                        handlePromoteDeleteResponse(object);
-                        break;
-                    case SR_GET_MOST_RECENT_ACTIVITY:
-                        handleGetMostRecentActivity(object);
-                        break;
-                    case SR_APPLY_TAG:
-                        handleApplyTagResponse(object);
-                        break;
-                    case SR_GET_TAGS:
-                        handleGetTagsResponse(object);
-                        break;
-                    case SR_GET_TAGS_INFO:
-                        handleGetTagsInfoResponse(object);
-                        break;
-                    default:
-                        LOGGER.warn("read unknown or unexpected response object: " + object.getClass().toString());
-                        break;
-                }
+                dispatchServerResponse(abstractServerResponse);
                 Integer syncToken = abstractServerResponse.getSyncToken();
                 LOGGER.debug("Response type: [{}] token: [{}]", abstractServerResponse.getOperationType(), syncToken);
-                SynchronizationManager.getSynchronizationManager().notifyOnToken(syncToken);
+
+                // The per-directory responses to a bulk registration have no token of their own; the bulk response that follows them does.
+                if (syncToken != null || abstractServerResponse.getOperationType() != ServerResponseInterface.ResponseOperationType.SR_REGISTER_CLIENT_LISTENER) {
+                    SynchronizationManager.getSynchronizationManager().completeOnToken(syncToken, object);
+                }
             } else {
                 if (object != null) {
                     LOGGER.warn("read unknown or unexpected response object: " + object.getClass().toString());
@@ -713,6 +592,166 @@ public final class TransportProxyFactory {
             }
         }
 
+        /**
+         * Dispatch a response to its handler.
+         * @param object the response.
+         */
+        private void dispatchServerResponse(AbstractServerResponse object) {
+            ServerResponseInterface.ResponseOperationType responseType = object.getOperationType();
+            switch (responseType) {
+                case SR_LOGIN:
+                    handleLoginResponse(object);
+                    break;
+                case SR_REGISTER_CLIENT_LISTENER:
+                    handleRegisterClientListenerResponse(object);
+                    break;
+                case SR_REGISTER_CLIENT_LISTENER_BULK:
+                    handleRegisterClientListenerBulkResponse(object);
+                    break;
+                case SR_GET_REVISION:
+                    handleGetRevisionResponse(object);
+                    break;
+                case SR_GET_DIRECTORY:
+                    handleGetDirectoryResponse(object);
+                    break;
+                case SR_GET_REVISION_FOR_COMPARE:
+                    handleGetRevisionForCompareResponse(object);
+                    break;
+                case SR_GET_USER_COMMIT_COMMENTS:
+                    handleGetUserCommitComments(object);
+                    break;
+                case SR_GET_COMMIT_LIST_FOR_MOVEABLE_TAG_READ_ONLY_BRANCHES:
+                    handleGetCommitListForMoveableTagReadOnlyBranches(object);
+                    break;
+                case SR_GET_BRIEF_COMMIT_INFO_LIST:
+                    handleGetBriefCommitInfoList(object);
+                    break;
+                case SR_GET_USER_PROPERTIES:
+                    handleGetUserPropertiesResponse(object);
+                    break;
+                case SR_ADD_USER_PROPERTY:
+                    handleAddUserPropertyResponse(object);
+                    break;
+                case SR_UPDATE_VIEW_UTILITY_COMMAND:
+                    handleUpdateViewUtilityCommandResponse(object);
+                    break;
+                case SR_UPDATE_FILTER_FILE_COLLECTION:
+                    handleFileFilterResponse(object);
+                    break;
+                case SR_CHECK_IN:
+                    handleCheckInResponse(object);
+                    break;
+                case SR_BULK_OPERATION:
+                    handleBulkResponse(object);
+                    break;
+                case SR_GET_FOR_VISUAL_COMPARE:
+                    handleGetForVisualCompareResponse(object);
+                    break;
+                case SR_ADD_DIRECTORY:
+                    handleAddDirectoryResponse(object);
+                    break;
+                case SR_PROJECT_CONTROL:
+                    handleProjectControlResponse(object);
+                    break;
+                case SR_GET_LOGFILE_INFO:
+                    handleGetLogfileInfoResponse(object);
+                    break;
+                case SR_GET_ALL_LOGFILE_INFO:
+                    handleGetAllLogfileInfoResponse(object);
+                    break;
+                case SR_GET_REVISION_HISTORY_PAGE:
+                    // The requester picks the page up from the future for its sync token.
+                    break;
+                case SR_CHANGE_USER_PASSWORD:
+                    handleChangePasswordResponse(object);
+                    break;
+                case SR_RESPONSE_SUCCESS:
+                    handleSuccessResponse(object);
+                    break;
+                case SR_RESPONSE_ERROR:
+                    handleErrorResponse(object);
+                    break;
+                case SR_CREATE_ARCHIVE:
+                    handleCreateArchiveResponse(object);
+                    break;
+                case SR_MOVE_FILE:
+                    handleMoveFileResponse(object);
+                    break;
+                case SR_RENAME_FILE:
+                    handleRenameArchiveResponse(object);
+                    break;
+                case SR_BEGIN_TRANSACTION:
+                    handleTransactionBeginResponse(object);
+                    break;
+                case SR_END_TRANSACTION:
+                    handleTransactionEndResponse(object);
+                    break;
+                case SR_RESPONSE_MESSAGE:
+                    handleResponseMessage(object);
+                    break;
+                case SR_HEARTBEAT:
+                    handleHeartBeatResponseMessage(object);
+                    break;
+                case SR_GET_INFO_FOR_MERGE:
+                    handleGetInfoForMerge(object);
+                    break;
+                case SR_RESOLVE_CONFLICT_FROM_PARENT_BRANCH:
+                    handleResolveConflictFromParentBranch(object);
+                    break;
+                case SR_LIST_FILES_TO_PROMOTE:
+                    handleListFilesToPromoteResponse(object);
+                    break;
+                case SR_PROMOTE_FILE_SIMPLE:
+                    handlePromoteFileSimpleResponse(object);
+                    break;
+                case SR_PROMOTE_FILE_CREATE:
+                    handlePromoteCreateResponse(object);
+                    break;
+                case SR_PROMOTE_FILE_RENAME:
+                    handlePromoteRenameResponse(object);
+                    break;
+                case SR_PROMOTE_FILE_MOVE:
+                    handlePromoteMoveResponse(object);
+                    break;
+                case SR_PROMOTE_FILE_MOVE_AND_RENAME:
+                    handlePromoteMoveAndRenameResponse(object);
+                    break;
+                case SR_PROMOTE_FILE_DELETE:
+                    handlePromoteDeleteResponse(object);
+                    break;
+                case SR_GET_MOST_RECENT_ACTIVITY:
+                    handleGetMostRecentActivity(object);
+                    break;
+                case SR_APPLY_TAG:
+                    handleApplyTagResponse(object);
+                    break;
+                case SR_GET_TAGS:
+                    handleGetTagsResponse(object);
+                    break;
+                case SR_GET_TAGS_INFO:
+                    handleGetTagsInfoResponse(object);
+                    break;
+                default:
+                    LOGGER.warn("read unknown or unexpected response object: " + object.getClass().toString());
+                    break;
+            }
+        }
+
+        /**
+         * Handle each of the responses to a bulk operation, in order.
+         * @param object the bulk response.
+         */
+        private void handleBulkResponse(Object object) {
+            ServerResponseBulk response = (ServerResponseBulk) object;
+            LOGGER.info("Bulk operation completed [{}] requests with commit id: [{}]", response.getResponseList().size(), response.getCommitId());
+            for (AbstractServerResponse containedResponse : response.getResponseList()) {
+                dispatchServerResponse(containedResponse);
+
+                // Release the sync token of the contained request.
+                SynchronizationManager.getSynchronizationManager().completeOnToken(containedResponse.getSyncToken(), containedResponse);
+            }
+        }
+
         /**
          * Dispatch notification messages.
          * @param object the notification object.
@@ -746,6 +785,7 @@ public final class TransportProxyFactory {
             ServerResponseLogin response = (ServerResponseLogin) object;
             LOGGER.trace("ServerResponseLogin for user [" + response.getUserName() + "]");
             responseProxy.setIsLoggedInToServer(response.getLoginResult());
+            responseProxy.setWireProtocolVersion(response.getWireProtocolVersion());
             if (responseProxy.getIsLoggedInToServer()) {
                 // Start the heartbeat thread.
                 HeartbeatThread heartbeatThread = new HeartbeatThread(responseProxy);
@@ -784,6 +824,11 @@ public final class TransportProxyFactory {
             response.updateDirManagerProxy(dirManagerProxy);
         }
 
+        void handleRegisterClientListenerBulkResponse(Object object) {
+            ServerResponseRegisterClientListenerBulk response = (ServerResponseRegisterClientListenerBulk) object;
+            LOGGER.info("Registered as a listener for [{}] directories on [{}]:[{}]", response.getDirectoryCount(), response.getProjectName(), response.getBranchName());
+        }
+
         void handleGetRevisionResponse(Object object) {
             ServerResponseGetRevision response = (ServerResponseGetRevision) object;
             java.io.FileOutputStream outputStream = null;
@@ -827,7 +872,7 @@ public final class TransportProxyFactory {
                         dirManagerProxy.notifyListeners();
                     }
                 }
-                SynchronizationManager.getSynchronizationManager().notifyOnToken(response.getSyncToken());
+                SynchronizationManager.getSynchronizationManager().completeOnToken(response.getSyncToken(), response);
             } catch (java.io.IOException e) {
                 LOGGER.warn(e.getLocalizedMessage(), e);
                 if (dirManagerProxy != null) {
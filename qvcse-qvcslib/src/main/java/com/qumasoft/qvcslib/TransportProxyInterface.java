@@ -14,6 +14,9 @@
  */
 package com.qumasoft.qvcslib;
 
+import com.qumasoft.qvcslib.requestdata.ClientRequestClientData;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Transport proxy interface. For a client, each connection between client and server is managed by a TransportProxy instance.
  * Any supported transport must implement this interface.
@@ -81,6 +84,47 @@ public interface TransportProxyInterface {
      */
     void write(Object object);
 
+    /**
+     * Write a request to the server without waiting for its response. Requests written this way are pipelined: several may be outstanding on the
+     * connection at once, up to the in-flight window. The server handles the requests on a connection one at a time, in the order they were written, so
+     * the returned futures complete in that same order. A future completes on the receive thread after the response has been handled (just as
+     * {@link SynchronizationManager#waitOnToken} would have returned), so callers should do any heavy work on their own thread. If the in-flight window is
+     * full, this blocks until a slot is free. If the connection goes away, the futures of any outstanding requests complete exceptionally.
+     * @param request the request to write. Its sync token identifies the response.
+     * @return a future that is completed with the server's response.
+     */
+    CompletableFuture<Object> writeAsync(ClientRequestClientData request);
+
+    /**
+     * Set the maximum number of pipelined requests that may be outstanding on this connection at once.
+     * @param count the size of the in-flight window; must be at least 1.
+     */
+    void setMaximumInFlightRequestCount(int count);
+
+    /**
+     * Get the maximum number of pipelined requests that may be outstanding on this connection at once.
+     * @return the size of the in-flight window.
+     */
+    int getMaximumInFlightRequestCount();
+
+    /**
+     * Get the number of pipelined requests that are waiting for a response.
+     * @return the number of outstanding pipelined requests.
+     */
+    int getInFlightRequestCount();
+
+    /**
+     * Set the wire protocol version to use for writes. This is agreed with the server at login.
+     * @param protocolVersion the wire protocol version.
+     */
+    void setWireProtocolVersion(int protocolVersion);
+
+    /**
+     * Get the wire protocol version used for writes.
+     * @return the wire protocol version.
+     */
+    int getWireProtocolVersion();
+
     /**
      * Get an Object that must be used for synchronization of reads.
      * @return an Object that must be used for synchronization of reads.
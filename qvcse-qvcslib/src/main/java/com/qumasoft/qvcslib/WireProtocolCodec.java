@@ -0,0 +1,483 @@
+/*   Copyright 2004-2023 Jim Voris
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.qumasoft.qvcslib;
+
+import com.qumasoft.qvcslib.notifications.ServerNotificationCheckIn;
+import com.qumasoft.qvcslib.notifications.ServerNotificationCreateArchive;
+import com.qumasoft.qvcslib.notifications.ServerNotificationRemoveArchive;
+import com.qumasoft.qvcslib.notifications.ServerNotificationRenameArchive;
+import com.qumasoft.qvcslib.requestdata.ClientRequestHeartBeatData;
+import com.qumasoft.qvcslib.response.ServerResponseGetRevision;
+import com.qumasoft.qvcslib.response.ServerResponseHeartBeat;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * Encode and decode the compact binary wire protocol used between client and server once both sides have agreed to it at login.
+ *
+ * <p>Each message is sent as a single byte array frame. The frame header is a magic number, the protocol version, a message type, a flags byte, and the
+ * length of the payload. The frequently sent messages (heartbeats, fetched revisions, and the common notifications) have hand written encoders so that they
+ * need no reflection and very little garbage. Everything else is carried as a Java serialized payload inside the same frame, so any message can be sent once
+ * the binary protocol is in use. Payloads may be compressed by the {@link CompressionEngine}, in which case the payload starts with its
+ * {@link RevisionCompressionHeader}, so the receiver knows which codec to expand it with.</p>
+ *
+ * <p>The magic number is negative, which distinguishes a frame from the legacy compressed object buffer, which always starts with its (non-negative)
+ * uncompressed size.</p>
+ *
+ * @author Jim Voris
+ */
+public final class WireProtocolCodec {
+
+    /** The wire protocol version for peers that only understand Java serialization. */
+    public static final int JAVA_SERIALIZATION_PROTOCOL_VERSION = 0;
+    /** The binary wire protocol version that this code speaks. */
+    public static final int BINARY_PROTOCOL_VERSION = 1;
+
+    static final int FRAME_MAGIC = 0xC0DE5156;
+    static final int FRAME_HEADER_SIZE = 11;
+    static final int FLAG_COMPRESSED = 0x01;
+
+    /** Both ends of a binary protocol connection know about the raw deflate codec, so use it and skip the zlib checksum. */
+    private static final int FRAME_COMPRESSION_ALGORITHM = RevisionCompressionHeader.COMPRESS_ALGORITHM_3;
+
+    // Message types.
+    static final byte MESSAGE_JAVA_SERIALIZED = 0;
+    static final byte MESSAGE_CLIENT_HEARTBEAT = 1;
+    static final byte MESSAGE_SERVER_HEARTBEAT = 2;
+    static final byte MESSAGE_GET_REVISION = 3;
+    static final byte MESSAGE_NOTIFY_CHECK_IN = 4;
+    static final byte MESSAGE_NOTIFY_CREATE_ARCHIVE = 5;
+    static final byte MESSAGE_NOTIFY_REMOVE_ARCHIVE = 6;
+    static final byte MESSAGE_NOTIFY_RENAME_ARCHIVE = 7;
+
+    private static final int NULL_LENGTH = -1;
+    /** What we guess a payload will need, before counting any revision buffer it carries. */
+    private static final int PAYLOAD_SIZE_ESTIMATE = 256;
+
+    private WireProtocolCodec() {
+    }
+
+    /**
+     * Decide which wire protocol to use, given the version the other side asked for.
+     * @param requestedVersion the wire protocol version the peer supports.
+     * @return the wire protocol version both sides will use.
+     */
+    public static int negotiateProtocolVersion(int requestedVersion) {
+        return Math.max(JAVA_SERIALIZATION_PROTOCOL_VERSION, Math.min(requestedVersion, BINARY_PROTOCOL_VERSION));
+    }
+
+    /**
+     * Is the given buffer a binary protocol frame.
+     * @param buffer the buffer read from the wire.
+     * @return true if the buffer is a binary protocol frame.
+     */
+    public static boolean isFrame(byte[] buffer) {
+        return buffer.length >= FRAME_HEADER_SIZE && ByteBuffer.wrap(buffer, 0, Integer.BYTES).getInt() == FRAME_MAGIC;
+    }
+
+    /**
+     * Encode a message as a binary protocol frame.
+     * @param message the message to encode.
+     * @return the frame.
+     * @throws IOException if the message cannot be encoded.
+     */
+    public static byte[] encode(Serializable message) throws IOException {
+        ByteArrayOutputStream payloadStream = new ByteArrayOutputStream(estimatePayloadSize(message));
+        byte messageType;
+        try (DataOutputStream out = new DataOutputStream(payloadStream)) {
+            messageType = encodePayload(message, out);
+        }
+        if (messageType == MESSAGE_JAVA_SERIALIZED) {
+            try (ObjectOutputStream objectOutputStream = new ObjectOutputStream(payloadStream)) {
+                objectOutputStream.writeObject(message);
+            }
+        }
+        byte[] payload = payloadStream.toByteArray();
+        int flags = 0;
+        byte[] compressedPayload = CompressionEngine.getInstance().compress(payload, CompressionEngine.getContentName(message), FRAME_COMPRESSION_ALGORITHM);
+        if (compressedPayload != null) {
+            payload = compressedPayload;
+            flags |= FLAG_COMPRESSED;
+        }
+        ByteArrayOutputStream frameStream = new ByteArrayOutputStream(FRAME_HEADER_SIZE + payload.length);
+        try (DataOutputStream frame = new DataOutputStream(frameStream)) {
+            frame.writeInt(FRAME_MAGIC);
+            frame.writeByte(BINARY_PROTOCOL_VERSION);
+            frame.writeByte(messageType);
+            frame.writeByte(flags);
+            frame.writeInt(payload.length);
+            frame.write(payload);
+        }
+        return frameStream.toByteArray();
+    }
+
+    /**
+     * Decode a binary protocol frame.
+     * @param frame the frame.
+     * @return the decoded message.
+     * @throws IOException if the frame is malformed, or from a newer protocol version.
+     */
+    public static Object decode(byte[] frame) throws IOException {
+        DataInputStream header = new DataInputStream(new ByteArrayInputStream(frame));
+        if (header.readInt() != FRAME_MAGIC) {
+            throw new IOException("Not a wire protocol frame.");
+        }
+        int version = header.readUnsignedByte();
+        if (version > BINARY_PROTOCOL_VERSION) {
+            throw new IOException("Unsupported wire protocol version: " + version);
+        }
+        byte messageType = header.readByte();
+        int flags = header.readUnsignedByte();
+        int payloadLength = header.readInt();
+        int payloadOffset = FRAME_HEADER_SIZE;
+        byte[] payload = frame;
+        int payloadSize = payloadLength;
+        if ((flags & FLAG_COMPRESSED) != 0) {
+            byte[] compressedPayload = Arrays.copyOfRange(frame, payloadOffset, payloadOffset + payloadLength);
+            try {
+                payload = CompressionEngine.getInstance().expand(compressedPayload);
+            } catch (RuntimeException e) {
+                throw new IOException("Corrupt wire protocol frame.", e);
+            }
+            payloadOffset = 0;
+            payloadSize = payload.length;
+        }
+        ByteArrayInputStream payloadStream = new ByteArrayInputStream(payload, payloadOffset, payloadSize);
+        if (messageType == MESSAGE_JAVA_SERIALIZED) {
+            try (ObjectInputStream objectInputStream = new ObjectInputStream(payloadStream)) {
+                return objectInputStream.readObject();
+            } catch (ClassNotFoundException e) {
+                throw new IOException(e.getLocalizedMessage(), e);
+            }
+        }
+        return decodePayload(messageType, new DataInputStream(payloadStream));
+    }
+
+    private static int estimatePayloadSize(Serializable message) {
+        int estimate = PAYLOAD_SIZE_ESTIMATE;
+        if (message instanceof ServerResponseGetRevision) {
+            byte[] buffer = ((ServerResponseGetRevision) message).getBuffer();
+            if (buffer != null) {
+                estimate += buffer.length;
+            }
+        }
+        return estimate;
+    }
+
+    /**
+     * Write the payload for the message types we know how to encode directly.
+     * @param message the message to encode.
+     * @param out where to write the payload.
+     * @return the message type; {@link #MESSAGE_JAVA_SERIALIZED} if nothing was written and the message must be serialized.
+     */
+    private static byte encodePayload(Serializable message, DataOutputStream out) throws IOException {
+        // Only exact classes: a subclass may carry state that these encoders know nothing about.
+        Class<?> messageClass = message.getClass();
+        byte messageType = MESSAGE_JAVA_SERIALIZED;
+        if (messageClass == ClientRequestHeartBeatData.class) {
+            // A heartbeat request only carries its valid elements: the server name and the sync token, followed by the round trip time of the previous
+            // heartbeat. That comes last, so a peer that does not know about it just ignores it.
+            ClientRequestHeartBeatData heartBeat = (ClientRequestHeartBeatData) message;
+            writeString(out, heartBeat.getServerName());
+            writeInteger(out, heartBeat.getSyncToken());
+            out.writeLong(heartBeat.getRoundTripTime());
+            messageType = MESSAGE_CLIENT_HEARTBEAT;
+        } else if (messageClass == ServerResponseHeartBeat.class) {
+            ServerResponseHeartBeat heartBeat = (ServerResponseHeartBeat) message;
+            writeString(out, heartBeat.getServerName());
+            writeInteger(out, heartBeat.getSyncToken());
+            messageType = MESSAGE_SERVER_HEARTBEAT;
+        } else if (messageClass == ServerResponseGetRevision.class && ((ServerResponseGetRevision) message).getLogfileInfo() == null) {
+            // The rare get revision response that carries a full LogfileInfo is left to Java serialization.
+            ServerResponseGetRevision getRevision = (ServerResponseGetRevision) message;
+            writeString(out, getRevision.getClientWorkfileName());
+            writeString(out, getRevision.getShortWorkfileName());
+            writeString(out, getRevision.getAppendedPath());
+            writeString(out, getRevision.getProjectName());
+            writeString(out, getRevision.getBranchName());
+            writeString(out, getRevision.getRevisionString());
+            out.writeBoolean(getRevision.getDirectoryLevelOperationFlag());
+            out.writeInt(getRevision.getDirectoryLevelTransactionID());
+            writeSkinnyLogfileInfo(out, getRevision.getSkinnyLogfileInfo());
+            writeOrdinal(out, getRevision.getTimestampBehavior());
+            writeOrdinal(out, getRevision.getOverwriteBehavior());
+            out.writeLong(getRevision.getTimestamp());
+            writeInteger(out, getRevision.getSyncToken());
+            writeBytes(out, getRevision.getBuffer());
+            messageType = MESSAGE_GET_REVISION;
+        } else if (messageClass == ServerNotificationCheckIn.class) {
+            ServerNotificationCheckIn notification = (ServerNotificationCheckIn) message;
+            writeString(out, notification.getServerName());
+            writeString(out, notification.getProjectName());
+            writeString(out, notification.getBranchName());
+            writeString(out, notification.getAppendedPath());
+            writeString(out, notification.getShortWorkfileName());
+            writeInteger(out, notification.getBranchId());
+            writeSkinnyLogfileInfo(out, notification.getSkinnyLogfileInfo());
+            messageType = MESSAGE_NOTIFY_CHECK_IN;
+        } else if (messageClass == ServerNotificationCreateArchive.class) {
+            ServerNotificationCreateArchive notification = (ServerNotificationCreateArchive) message;
+            writeString(out, notification.getServerName());
+            writeString(out, notification.getProjectName());
+            writeString(out, notification.getBranchName());
+            writeString(out, notification.getAppendedPath());
+            writeString(out, notification.getShortWorkfileName());
+            writeInteger(out, notification.getBranchId());
+            writeSkinnyLogfileInfo(out, notification.getSkinnyLogfileInfo());
+            messageType = MESSAGE_NOTIFY_CREATE_ARCHIVE;
+        } else if (messageClass == ServerNotificationRemoveArchive.class) {
+            ServerNotificationRemoveArchive notification = (ServerNotificationRemoveArchive) message;
+            writeString(out, notification.getServerName());
+            writeString(out, notification.getProjectName());
+            writeString(out, notification.getBranchName());
+            writeString(out, notification.getAppendedPath());
+            writeString(out, notification.getShortWorkfileName());
+            writeInteger(out, notification.getBranchId());
+            messageType = MESSAGE_NOTIFY_REMOVE_ARCHIVE;
+        } else if (messageClass == ServerNotificationRenameArchive.class) {
+            ServerNotificationRenameArchive notification = (ServerNotificationRenameArchive) message;
+            writeString(out, notification.getServerName());
+            writeString(out, notification.getProjectName());
+            writeString(out, notification.getBranchName());
+            writeString(out, notification.getAppendedPath());
+            writeString(out, notification.getOldShortWorkfileName());
+            writeString(out, notification.getNewShortWorkfileName());
+            writeInteger(out, notification.getBranchId());
+            writeSkinnyLogfileInfo(out, notification.getSkinnyLogfileInfo());
+            messageType = MESSAGE_NOTIFY_RENAME_ARCHIVE;
+        }
+        return messageType;
+    }
+
+    private static Object decodePayload(byte messageType, DataInputStream in) throws IOException {
+        Object message;
+        switch (messageType) {
+            case MESSAGE_CLIENT_HEARTBEAT:
+                ClientRequestHeartBeatData clientHeartBeat = new ClientRequestHeartBeatData();
+                clientHeartBeat.setServerName(readString(in));
+                clientHeartBeat.setSyncToken(readInteger(in));
+                if (in.available() >= Long.BYTES) {
+                    clientHeartBeat.setRoundTripTime(in.readLong());
+                }
+                message = clientHeartBeat;
+                break;
+            case MESSAGE_SERVER_HEARTBEAT:
+                ServerResponseHeartBeat serverHeartBeat = new ServerResponseHeartBeat();
+                serverHeartBeat.setServerName(readString(in));
+                serverHeartBeat.setSyncToken(readInteger(in));
+                message = serverHeartBeat;
+                break;
+            case MESSAGE_GET_REVISION:
+                ServerResponseGetRevision getRevision = new ServerResponseGetRevision();
+                getRevision.setClientWorkfileName(readString(in));
+                getRevision.setShortWorkfileName(readString(in));
+                getRevision.setAppendedPath(readString(in));
+                getRevision.setProjectName(readString(in));
+                getRevision.setBranchName(readString(in));
+                getRevision.setRevisionString(readString(in));
+                getRevision.setDirectoryLevelOperationFlag(in.readBoolean());
+                getRevision.setDirectoryLevelTransactionID(in.readInt());
+                getRevision.setSkinnyLogfileInfo(readSkinnyLogfileInfo(in));
+                getRevision.setTimestampBehavior(readOrdinal(in, Utility.TimestampBehavior.values()));
+                getRevision.setOverwriteBehavior(readOrdinal(in, Utility.OverwriteBehavior.values()));
+                getRevision.setTimestamp(in.readLong());
+                getRevision.setSyncToken(readInteger(in));
+                getRevision.setBuffer(readBytes(in));
+                message = getRevision;
+                break;
+            case MESSAGE_NOTIFY_CHECK_IN:
+                ServerNotificationCheckIn checkIn = new ServerNotificationCheckIn();
+                checkIn.setServerName(readString(in));
+                checkIn.setProjectName(readString(in));
+                checkIn.setBranchName(readString(in));
+                checkIn.setAppendedPath(readString(in));
+                checkIn.setShortWorkfileName(readString(in));
+                checkIn.setBranchId(readInteger(in));
+                checkIn.setSkinnyLogfileInfo(readSkinnyLogfileInfo(in));
+                message = checkIn;
+                break;
+            case MESSAGE_NOTIFY_CREATE_ARCHIVE:
+                ServerNotificationCreateArchive createArchive = new ServerNotificationCreateArchive();
+                createArchive.setServerName(readString(in));
+                createArchive.setProjectName(readString(in));
+                createArchive.setBranchName(readString(in));
+                createArchive.setAppendedPath(readString(in));
+                createArchive.setShortWorkfileName(readString(in));
+                createArchive.setBranchId(readInteger(in));
+                createArchive.setSkinnyLogfileInfo(readSkinnyLogfileInfo(in));
+                message = createArchive;
+                break;
+            case MESSAGE_NOTIFY_REMOVE_ARCHIVE:
+                ServerNotificationRemoveArchive removeArchive = new ServerNotificationRemoveArchive();
+                removeArchive.setServerName(readString(in));
+                removeArchive.setProjectName(readString(in));
+                removeArchive.setBranchName(readString(in));
+                removeArchive.setAppendedPath(readString(in));
+                removeArchive.setShortWorkfileName(readString(in));
+                removeArchive.setBranchId(readInteger(in));
+                message = removeArchive;
+                break;
+            case MESSAGE_NOTIFY_RENAME_ARCHIVE:
+                ServerNotificationRenameArchive renameArchive = new ServerNotificationRenameArchive();
+                renameArchive.setServerName(readString(in));
+                renameArchive.setProjectName(readString(in));
+                renameArchive.setBranchName(readString(in));
+                renameArchive.setAppendedPath(readString(in));
+                renameArchive.setOldShortWorkfileName(readString(in));
+                renameArchive.setNewShortWorkfileName(readString(in));
+                renameArchive.setBranchId(readInteger(in));
+                renameArchive.setSkinnyLogfileInfo(readSkinnyLogfileInfo(in));
+                message = renameArchive;
+                break;
+            default:
+                throw new IOException("Unknown wire protocol message type: " + messageType);
+        }
+        return message;
+    }
+
+    private static void writeOrdinal(DataOutputStream out, Enum<?> value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL_LENGTH);
+        } else {
+            out.writeByte(value.ordinal());
+        }
+    }
+
+    private static <T extends Enum<T>> T readOrdinal(DataInputStream in, T[] values) throws IOException {
+        int ordinal = in.readByte();
+        if (ordinal == NULL_LENGTH) {
+            return null;
+        }
+        return values[ordinal];
+    }
+
+    static void writeSkinnyLogfileInfo(DataOutputStream out, SkinnyLogfileInfo skinnyInfo) throws IOException {
+        out.writeBoolean(skinnyInfo != null);
+        if (skinnyInfo != null) {
+            writeString(out, skinnyInfo.getShortWorkfileName());
+            long lastCheckInTime = Long.MIN_VALUE;
+            if (skinnyInfo.getLastCheckInDate() != null) {
+                lastCheckInTime = skinnyInfo.getLastCheckInDate().getTime();
+            }
+            out.writeLong(lastCheckInTime);
+            writeString(out, skinnyInfo.getLastEditByString());
+            writeString(out, skinnyInfo.getDefaultRevisionString());
+            writeString(out, skinnyInfo.getSeparator());
+            out.writeBoolean(skinnyInfo.getAttributes() != null);
+            if (skinnyInfo.getAttributes() != null) {
+                out.writeInt(skinnyInfo.getAttributes().getAttributesAsInt());
+            }
+            writeBytes(out, skinnyInfo.getDefaultRevisionDigest());
+            writeInteger(out, skinnyInfo.getBranchId());
+            writeInteger(out, skinnyInfo.getCommitId());
+            writeInteger(out, skinnyInfo.getFileRevisionId());
+            out.writeInt(skinnyInfo.getCacheIndex());
+            out.writeInt(skinnyInfo.getRevisionCount());
+            out.writeInt(skinnyInfo.getFileID());
+            out.writeBoolean(skinnyInfo.getOverlapFlag());
+        }
+    }
+
+    static SkinnyLogfileInfo readSkinnyLogfileInfo(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        SkinnyLogfileInfo skinnyInfo = new SkinnyLogfileInfo(readString(in));
+        long lastCheckInTime = in.readLong();
+        if (lastCheckInTime != Long.MIN_VALUE) {
+            skinnyInfo.setLastCheckInDate(new Date(lastCheckInTime));
+        }
+        skinnyInfo.setLastEditByString(readString(in));
+        skinnyInfo.setDefaultRevisionString(readString(in));
+        skinnyInfo.setSeparator(readString(in));
+        if (in.readBoolean()) {
+            skinnyInfo.setAttributes(new ArchiveAttributes(in.readInt()));
+        } else {
+            skinnyInfo.setAttributes(null);
+        }
+        skinnyInfo.setDefaultRevisionDigest(readBytes(in));
+        skinnyInfo.setBranchId(readInteger(in));
+        skinnyInfo.setCommitId(readInteger(in));
+        skinnyInfo.setFileRevisionId(readInteger(in));
+        skinnyInfo.setCacheIndex(in.readInt());
+        skinnyInfo.setRevisionCount(in.readInt());
+        skinnyInfo.setFileID(in.readInt());
+        skinnyInfo.setOverlapFlag(in.readBoolean());
+        return skinnyInfo;
+    }
+
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(NULL_LENGTH);
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeInteger(DataOutputStream out, Integer value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeInt(value);
+        }
+    }
+
+    private static Integer readInteger(DataInputStream in) throws IOException {
+        if (in.readBoolean()) {
+            return in.readInt();
+        }
+        return null;
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] value) throws IOException {
+        if (value == null) {
+            out.writeInt(NULL_LENGTH);
+        } else {
+            out.writeInt(value.length);
+            out.write(value);
+        }
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+}
@@ -1,4 +1,4 @@
-/*   Copyright 2004-2015 Jim Voris
+/*   Copyright 2004-2023 Jim Voris
  *
  *   Licensed under the Apache License, Version 2.0 (the "License");
  *   you may not use this file except in compliance with the License.
@@ -14,16 +14,37 @@
  */
 package com.qumasoft.qvcslib;
 
-import java.util.Collections;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.TreeMap;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Workfile Digest Dictionary store. This class manages the storage of the workfile digest information.
+ *
+ * <p>The store is kept on disk as an append-only log of small binary records. Each record is keyed by a 64 bit hash of the project, branch, and full workfile name,
+ * and holds the workfile's size, last changed time, fetched date, fetched revision, and digest. Saving the store appends records for just the entries that have changed
+ * since the last save, and removals are appended as tombstones. When the log holds too many stale records, it is compacted by rewriting it with only the live entries.
+ * At startup the log is memory mapped and replayed into a concurrent map, so lookups never take a lock.</p>
+ *
+ * <p>Older releases Java-serialized the whole store. That is why this class is still Serializable: it lets us read such a store one last time and convert it.</p>
+ *
  * @author Jim Voris
  */
 public class WorkfileDigestDictionaryStore implements java.io.Serializable {
@@ -31,38 +52,76 @@ public class WorkfileDigestDictionaryStore implements java.io.Serializable {
     // Create our logger object
     private static final transient Logger LOGGER = LoggerFactory.getLogger(WorkfileDigestDictionaryStore.class);
 
-    private final Map<String, WorkfileDigestDictionaryElement>  map;
+    /** Identifies a digest log file: "QDGS". */
+    static final int LOG_MAGIC = 0x51444753;
+    static final int LOG_VERSION = 1;
+    static final int HEADER_SIZE = 8;
+    static final byte PUT_RECORD = 1;
+    static final byte REMOVE_RECORD = 2;
+    /** Don't bother compacting a log that has fewer records than this. */
+    static final int COMPACTION_MINIMUM_RECORDS = Integer.getInteger("qvcsos.client.digestStoreCompactionMinimum", 1000);
+    /** Compact when the log has this many times more records than there are live entries. */
+    static final int COMPACTION_RATIO = Integer.getInteger("qvcsos.client.digestStoreCompactionRatio", 2);
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final int BYTE_MASK = 0xff;
+
+    /** Only populated when reading a store written by an older release. */
+    private Map<String, WorkfileDigestDictionaryElement> map;
+
+    private final transient File logFile;
+    private final transient Map<Long, WorkfileDigestDictionaryElement> elementMap = new ConcurrentHashMap<>();
+    private final transient Queue<Long> pendingRemovalQueue = new ConcurrentLinkedQueue<>();
+    private transient int logRecordCount;
 
     /**
-     * Default constructor.
+     * Create an empty store that is not backed by a file. Nothing is written when it is saved.
      */
     public WorkfileDigestDictionaryStore() {
-        this.map = Collections.synchronizedMap(new TreeMap<String, WorkfileDigestDictionaryElement>());
+        this.logFile = null;
+    }
+
+    private WorkfileDigestDictionaryStore(File file) {
+        this.logFile = file;
+    }
+
+    /**
+     * Open the digest store kept in the given log file. If there is no log file yet but there is a store written by an older release, that store is converted.
+     *
+     * @param logFile the digest log file.
+     * @param legacyStoreFile where an older release would have written the store.
+     * @return the digest store.
+     */
+    static WorkfileDigestDictionaryStore open(File logFile, File legacyStoreFile) {
+        WorkfileDigestDictionaryStore store = new WorkfileDigestDictionaryStore(logFile);
+        if (logFile.exists()) {
+            store.replayLog();
+        } else if (legacyStoreFile != null && legacyStoreFile.exists()) {
+            store.convertLegacyStore(legacyStoreFile);
+        }
+        return store;
     }
 
     void addWorkfileDigest(WorkfileInfoInterface workfileInfo, byte[] digest) {
         if ((workfileInfo != null) && (digest != null)) {
-            String key = getDigestKey(workfileInfo);
-            map.put(key, new WorkfileDigestDictionaryElement(workfileInfo, digest));
+            long keyHash = getDigestKeyHash(workfileInfo);
+            elementMap.put(keyHash, new WorkfileDigestDictionaryElement(workfileInfo, digest));
         }
     }
 
     void removeWorkfileDigest(WorkfileInfoInterface workfileInfo) {
-        String key = getDigestKey(workfileInfo);
-        if (key != null) {
-            map.remove(key);
+        long keyHash = getDigestKeyHash(workfileInfo);
+        if (elementMap.remove(keyHash) != null) {
+            pendingRemovalQueue.add(keyHash);
         }
     }
 
     byte[] lookupWorkfileDigest(WorkfileInfoInterface workfileInfo) {
         byte[] retVal = null;
         if (workfileInfo != null) {
-            String key = getDigestKey(workfileInfo);
-            if (key != null) {
-                WorkfileDigestDictionaryElement element = map.get(key);
-                if (element != null) {
-                    retVal = element.getDigest();
-                }
+            WorkfileDigestDictionaryElement element = elementMap.get(getDigestKeyHash(workfileInfo));
+            if (element != null) {
+                retVal = element.getDigest();
             }
         }
         return retVal;
@@ -71,56 +130,427 @@ public class WorkfileDigestDictionaryStore implements java.io.Serializable {
     WorkfileInfoInterface lookupWorkfileInfo(WorkfileInfoInterface workfileInfo) {
         WorkfileInfoInterface retVal = null;
         if (workfileInfo != null) {
-            String key = getDigestKey(workfileInfo);
-            if (key != null) {
-                WorkfileDigestDictionaryElement element = map.get(key);
-                if (element != null) {
-                    retVal = element.getWorkfileInfo();
-                }
+            WorkfileDigestDictionaryElement element = elementMap.get(getDigestKeyHash(workfileInfo));
+            if (element != null) {
+                retVal = element.getWorkfileInfo(workfileInfo);
             }
         }
         return retVal;
     }
 
     /**
-     * Compute the key we use to lookup the digest for the given workfile
+     * Get the number of workfiles that have a digest in the store.
+     * @return the number of workfiles that have a digest.
+     */
+    int size() {
+        return elementMap.size();
+    }
+
+    /**
+     * Get the number of records in the log file, live or not.
+     * @return the number of records in the log file.
+     */
+    int getLogRecordCount() {
+        return logRecordCount;
+    }
+
+    /**
+     * Compute the key we use to lookup the digest for the given workfile. This is a 64 bit FNV-1a hash of project:branch:fullWorkfileName, which is plenty to keep the
+     * workfiles in one workspace apart.
      * @param workfileInfo the workfile info from which to compute the digest key.
      * @return the computed digest key for the given workfile.
      */
-    private String getDigestKey(WorkfileInfoInterface workfileInfo) {
-        return workfileInfo.getProjectName() + ":" + workfileInfo.getBranchName() + ":" + workfileInfo.getFullWorkfileName();
+    static long getDigestKeyHash(WorkfileInfoInterface workfileInfo) {
+        return hashDigestKey(workfileInfo.getProjectName() + ":" + workfileInfo.getBranchName() + ":" + workfileInfo.getFullWorkfileName());
+    }
+
+    private static long hashDigestKey(String key) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            hash ^= c & BYTE_MASK;
+            hash *= FNV_PRIME;
+            hash ^= c >>> Byte.SIZE;
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * Save the store. Only the entries that changed since the last save are appended to the log, along with the removals. If the log has grown too far beyond the
+     * number of live entries, it is compacted instead.
+     */
+    synchronized void save() {
+        if (logFile == null) {
+            return;
+        }
+        try {
+            if (needsCompaction()) {
+                compact();
+                return;
+            }
+            List<WorkfileDigestDictionaryElement> writtenList = new ArrayList<>();
+            ByteBuffer buffer = ByteBuffer.allocate(WorkfileDigestManager.READ_BUFFER_SIZE);
+            int recordCount = 0;
+            try (FileChannel channel = openLogForAppend()) {
+                Long removedKeyHash;
+                while ((removedKeyHash = pendingRemovalQueue.poll()) != null) {
+                    buffer = writeRecord(channel, buffer, REMOVE_RECORD, removedKeyHash, null);
+                    recordCount++;
+                }
+                for (Map.Entry<Long, WorkfileDigestDictionaryElement> entry : elementMap.entrySet()) {
+                    WorkfileDigestDictionaryElement element = entry.getValue();
+                    RecordState state = element.getChangedState();
+                    if (state != null) {
+                        buffer = writeRecord(channel, buffer, PUT_RECORD, entry.getKey(), state);
+                        element.pendingState = state;
+                        writtenList.add(element);
+                        recordCount++;
+                    }
+                }
+                flushBuffer(channel, buffer);
+            }
+            for (WorkfileDigestDictionaryElement element : writtenList) {
+                element.writtenState = element.pendingState;
+            }
+            logRecordCount += recordCount;
+            LOGGER.debug("Appended [{}] records to workfile digest log: [{}]", recordCount, logFile.getName());
+        } catch (IOException e) {
+            LOGGER.warn("Failed to save workfile digest log: [{}] [{}]", logFile.getAbsolutePath(), e.getLocalizedMessage());
+        }
+    }
+
+    private boolean needsCompaction() {
+        return logRecordCount >= COMPACTION_MINIMUM_RECORDS && logRecordCount > COMPACTION_RATIO * elementMap.size();
+    }
+
+    /**
+     * Rewrite the log with just the live entries, then swap it in place of the old one.
+     * @throws IOException if we cannot write the new log.
+     */
+    private void compact() throws IOException {
+        if (!logFile.getParentFile().exists()) {
+            logFile.getParentFile().mkdirs();
+        }
+        File compactFile = new File(logFile.getAbsolutePath() + ".compact");
+        List<WorkfileDigestDictionaryElement> writtenList = new ArrayList<>();
+        int recordCount = 0;
+        pendingRemovalQueue.clear();
+        try (FileChannel channel = FileChannel.open(compactFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(WorkfileDigestManager.READ_BUFFER_SIZE);
+            buffer.putInt(LOG_MAGIC).putInt(LOG_VERSION);
+            for (Map.Entry<Long, WorkfileDigestDictionaryElement> entry : elementMap.entrySet()) {
+                WorkfileDigestDictionaryElement element = entry.getValue();
+                RecordState state = element.getCurrentState();
+                buffer = writeRecord(channel, buffer, PUT_RECORD, entry.getKey(), state);
+                element.pendingState = state;
+                writtenList.add(element);
+                recordCount++;
+            }
+            flushBuffer(channel, buffer);
+            channel.force(false);
+        }
+        Files.move(compactFile.toPath(), logFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        for (WorkfileDigestDictionaryElement element : writtenList) {
+            element.writtenState = element.pendingState;
+        }
+        LOGGER.info("Compacted workfile digest log: [{}] from [{}] records to [{}] records.", logFile.getName(), logRecordCount, recordCount);
+        logRecordCount = recordCount;
+    }
+
+    private FileChannel openLogForAppend() throws IOException {
+        boolean newFileFlag = !logFile.exists();
+        if (newFileFlag && !logFile.getParentFile().exists()) {
+            logFile.getParentFile().mkdirs();
+        }
+        FileChannel channel = FileChannel.open(logFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        if (channel.size() == 0L) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(LOG_MAGIC).putInt(LOG_VERSION);
+            flushBuffer(channel, header);
+        }
+        return channel;
+    }
+
+    /**
+     * Add a record to the buffer, writing the buffer out to the channel first if the record will not fit.
+     * @param channel the log's channel.
+     * @param buffer the buffer to add the record to.
+     * @param recordType the type of record.
+     * @param keyHash the hash of the element's key.
+     * @param state the element's state, for a put record.
+     * @return the buffer, which is a new, larger one if the record would not fit in the one passed in.
+     * @throws IOException if we cannot write to the channel.
+     */
+    private static ByteBuffer writeRecord(FileChannel channel, ByteBuffer buffer, byte recordType, long keyHash, RecordState state) throws IOException {
+        byte[] revisionBytes = null;
+        int recordLength = Byte.BYTES + Long.BYTES;
+        if (recordType == PUT_RECORD) {
+            // The size, the last changed time, and the fetched date; the digest and its length; the revision string and its length.
+            recordLength += Long.BYTES + Long.BYTES + Long.BYTES + Byte.BYTES + state.digest.length + Short.BYTES;
+            if (state.revisionString != null) {
+                revisionBytes = state.revisionString.getBytes(StandardCharsets.UTF_8);
+                recordLength += revisionBytes.length;
+            }
+        }
+        ByteBuffer recordBuffer = buffer;
+        if (recordBuffer.remaining() < Integer.BYTES + recordLength) {
+            flushBuffer(channel, recordBuffer);
+            if (recordBuffer.capacity() < Integer.BYTES + recordLength) {
+                recordBuffer = ByteBuffer.allocate(Integer.BYTES + recordLength);
+            }
+        }
+        recordBuffer.putInt(recordLength);
+        recordBuffer.put(recordType);
+        recordBuffer.putLong(keyHash);
+        if (recordType == PUT_RECORD) {
+            recordBuffer.putLong(state.size);
+            recordBuffer.putLong(state.lastChangedTime);
+            recordBuffer.putLong(state.fetchedDate);
+            recordBuffer.put((byte) state.digest.length);
+            recordBuffer.put(state.digest);
+            if (revisionBytes == null) {
+                recordBuffer.putShort((short) -1);
+            } else {
+                recordBuffer.putShort((short) revisionBytes.length);
+                recordBuffer.put(revisionBytes);
+            }
+        }
+        return recordBuffer;
+    }
+
+    private static void flushBuffer(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Read the log into memory. If the last record is incomplete (we were stopped part way through a save), the log is cut back to the last complete record.
+     * The log is read with plain channel reads rather than memory mapped, since we may need to truncate it when we are done, and a mapping would stay live
+     * until it is garbage collected.
+     */
+    private void replayLog() {
+        long validLength = 0L;
+        long fileLength = logFile.length();
+        if (fileLength > Integer.MAX_VALUE) {
+            LOGGER.warn("Workfile digest log: [{}] is too large to load. Starting over.", logFile.getAbsolutePath());
+        } else {
+            try (FileChannel channel = FileChannel.open(logFile.toPath(), StandardOpenOption.READ)) {
+                ByteBuffer logBuffer = readLog(channel, (int) fileLength);
+                if (logBuffer.remaining() >= HEADER_SIZE && logBuffer.getInt() == LOG_MAGIC && logBuffer.getInt() == LOG_VERSION) {
+                    validLength = HEADER_SIZE;
+                    while (logBuffer.remaining() >= Integer.BYTES) {
+                        int recordLength = logBuffer.getInt();
+                        if (recordLength < Byte.BYTES + Long.BYTES || recordLength > logBuffer.remaining()) {
+                            break;
+                        }
+                        int recordEnd = logBuffer.position() + recordLength;
+                        if (!replayRecord(logBuffer)) {
+                            break;
+                        }
+                        logBuffer.position(recordEnd);
+                        validLength = recordEnd;
+                        logRecordCount++;
+                    }
+                } else {
+                    LOGGER.warn("Workfile digest log: [{}] has an unexpected header. Starting over.", logFile.getAbsolutePath());
+                }
+            } catch (IOException | RuntimeException e) {
+                LOGGER.warn("Failed to read workfile digest log: [{}] [{}]", logFile.getAbsolutePath(), e.getLocalizedMessage());
+            }
+        }
+        if (validLength < fileLength) {
+            truncateLog(validLength);
+        }
+        LOGGER.info("Loaded [{}] workfile digests from [{}] log records.", elementMap.size(), logRecordCount);
+    }
+
+    private static ByteBuffer readLog(FileChannel channel, int fileLength) throws IOException {
+        ByteBuffer logBuffer = ByteBuffer.allocate(fileLength);
+        int bytesRead = 0;
+        while (logBuffer.hasRemaining() && bytesRead >= 0) {
+            bytesRead = channel.read(logBuffer);
+        }
+        logBuffer.flip();
+        return logBuffer;
+    }
+
+    private boolean replayRecord(ByteBuffer logBuffer) {
+        byte recordType = logBuffer.get();
+        long keyHash = logBuffer.getLong();
+        if (recordType == REMOVE_RECORD) {
+            elementMap.remove(keyHash);
+            return true;
+        } else if (recordType == PUT_RECORD) {
+            long size = logBuffer.getLong();
+            long lastChangedTime = logBuffer.getLong();
+            long fetchedDate = logBuffer.getLong();
+            byte[] digest = new byte[Byte.toUnsignedInt(logBuffer.get())];
+            logBuffer.get(digest);
+            short revisionLength = logBuffer.getShort();
+            String revisionString = null;
+            if (revisionLength >= 0) {
+                byte[] revisionBytes = new byte[revisionLength];
+                logBuffer.get(revisionBytes);
+                revisionString = new String(revisionBytes, StandardCharsets.UTF_8);
+            }
+            elementMap.put(keyHash, new WorkfileDigestDictionaryElement(new RecordState(size, lastChangedTime, fetchedDate, revisionString, digest)));
+            return true;
+        }
+        return false;
+    }
+
+    private void truncateLog(long validLength) {
+        try {
+            if (validLength == 0L) {
+                Files.deleteIfExists(logFile.toPath());
+                elementMap.clear();
+                logRecordCount = 0;
+            } else {
+                LOGGER.warn("Truncating workfile digest log: [{}] to [{}] bytes.", logFile.getAbsolutePath(), validLength);
+                try (FileChannel channel = FileChannel.open(logFile.toPath(), StandardOpenOption.WRITE)) {
+                    channel.truncate(validLength);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Failed to truncate workfile digest log: [{}] [{}]", logFile.getAbsolutePath(), e.getLocalizedMessage());
+        }
+    }
+
+    /**
+     * Read a store that an older release wrote with Java serialization, copy its entries, and write them out as a new log.
+     * @param legacyStoreFile the file that holds the old store.
+     */
+    private void convertLegacyStore(File legacyStoreFile) {
+        try (ObjectInputStream inStream = new ObjectInputStream(new FileInputStream(legacyStoreFile))) {
+            WorkfileDigestDictionaryStore legacyStore = (WorkfileDigestDictionaryStore) inStream.readObject();
+            if (legacyStore.map != null) {
+                synchronized (legacyStore.map) {
+                    for (Map.Entry<String, WorkfileDigestDictionaryElement> entry : legacyStore.map.entrySet()) {
+                        WorkfileDigestDictionaryElement element = entry.getValue();
+                        if (element.workfileInfo != null && element.digest != null) {
+                            elementMap.put(hashDigestKey(entry.getKey()), new WorkfileDigestDictionaryElement(element.workfileInfo, element.digest));
+                        }
+                    }
+                }
+            }
+            compact();
+            LOGGER.info("Converted [{}] workfile digests from: [{}]", elementMap.size(), legacyStoreFile.getAbsolutePath());
+            Files.delete(legacyStoreFile.toPath());
+        } catch (IOException | ClassNotFoundException | RuntimeException e) {
+            LOGGER.warn("Failed to convert workfile digest store: [{}] [{}]", legacyStoreFile.getAbsolutePath(), e.getLocalizedMessage());
+        }
     }
 
     void dumpMap() {
         LOGGER.info("WorkfileDigestDictionaryStore.dumpMap()");
-        Set keys = map.keySet();
-        Iterator i = keys.iterator();
+        Iterator<Long> i = elementMap.keySet().iterator();
         while (i.hasNext()) {
-            LOGGER.info(i.next().toString());
+            LOGGER.info(Long.toHexString(i.next()));
         }
     }
 
     /**
-     * Workfile digest dictionary element. Hold on to the workfile's digest and workfile info values.
+     * What a log record says about a workfile.
+     */
+    static final class RecordState {
+        private final long size;
+        private final long lastChangedTime;
+        private final long fetchedDate;
+        private final String revisionString;
+        private final byte[] digest;
+
+        RecordState(long workfileSize, long lastChanged, long fetched, String revision, byte[] dgst) {
+            this.size = workfileSize;
+            this.lastChangedTime = lastChanged;
+            this.fetchedDate = fetched;
+            this.revisionString = revision;
+            this.digest = dgst;
+        }
+
+        boolean sameAs(RecordState other) {
+            return other != null
+                    && size == other.size
+                    && lastChangedTime == other.lastChangedTime
+                    && fetchedDate == other.fetchedDate
+                    && Objects.equals(revisionString, other.revisionString)
+                    && digest == other.digest;
+        }
+    }
+
+    /**
+     * Workfile digest dictionary element. Hold on to the workfile's digest and workfile info values. An element read from the log does not have a workfile info object
+     * until one is asked for; callers may update the fetched date and revision on the workfile info they get back, and those updates are saved with the next save.
      */
     public static class WorkfileDigestDictionaryElement implements java.io.Serializable {
         private static final long serialVersionUID = -6889544110720053739L;
 
         private final byte[] digest;
-        private final WorkfileInfoInterface workfileInfo;
+        private volatile WorkfileInfoInterface workfileInfo;
+        private final transient RecordState loadedState;
+        private transient RecordState writtenState;
+        private transient RecordState pendingState;
 
         WorkfileDigestDictionaryElement(WorkfileInfoInterface workInfo, byte[] dgst) {
             workfileInfo = workInfo;
             digest = dgst;
+            loadedState = null;
+        }
+
+        WorkfileDigestDictionaryElement(RecordState state) {
+            workfileInfo = null;
+            digest = state.digest;
+            loadedState = state;
+            writtenState = state;
         }
 
         byte[] getDigest() {
             return digest;
         }
 
-        WorkfileInfoInterface getWorkfileInfo() {
-            return workfileInfo;
+        /**
+         * Get the workfile info for this element, creating it from what we read from the log if need be.
+         * @param lookupWorkfileInfo the workfile info that was used to find this element; we take the workfile's names from it.
+         * @return the stored workfile info.
+         */
+        WorkfileInfoInterface getWorkfileInfo(WorkfileInfoInterface lookupWorkfileInfo) {
+            WorkfileInfoInterface retVal = workfileInfo;
+            if (retVal == null) {
+                synchronized (this) {
+                    retVal = workfileInfo;
+                    if (retVal == null) {
+                        retVal = new WorkfileInfo(lookupWorkfileInfo, loadedState.size, loadedState.lastChangedTime, loadedState.fetchedDate, loadedState.revisionString);
+                        workfileInfo = retVal;
+                    }
+                }
+            }
+            return retVal;
         }
-    }
 
+        RecordState getCurrentState() {
+            WorkfileInfoInterface info = workfileInfo;
+            if (info == null) {
+                return loadedState;
+            }
+            long lastChangedTime = 0L;
+            if (info.getWorkfileLastChangedDate() != null) {
+                lastChangedTime = info.getWorkfileLastChangedDate().getTime();
+            }
+            return new RecordState(info.getWorkfileSize(), lastChangedTime, info.getFetchedDate(), info.getWorkfileRevisionString(), digest);
+        }
+
+        /**
+         * Get the state of this element if it differs from what we last wrote to the log.
+         * @return the current state, or null if it has not changed.
+         */
+        RecordState getChangedState() {
+            RecordState currentState = getCurrentState();
+            if (currentState.sameAs(writtenState)) {
+                return null;
+            }
+            return currentState;
+        }
+    }
 }
@@ -1,4 +1,4 @@
-/*   Copyright 2004-2022 Jim Voris
+/*   Copyright 2004-2023 Jim Voris
  *
  *   Licensed under the Apache License, Version 2.0 (the "License");
  *   you may not use this file except in compliance with the License.
@@ -15,15 +15,24 @@
 package com.qumasoft.qvcslib;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.TimerTask;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -31,6 +40,10 @@ import org.slf4j.LoggerFactory;
  * A class to manage the collection of digests associated with a user's set of workfiles. Each user gets their own instance of the dictionary (since this work is done on the
  * client) It is a singleton.
  *
+ * <p>Digests are computed by streaming the workfile through a fixed size buffer (or, for large files, through memory mapped chunks) into a digest that belongs to the
+ * calling thread, so no lock is needed and no workfile is ever read into memory all at once. A whole directory's worth of workfiles can be brought up to date in parallel
+ * with {@link #refreshWorkfileDigests(Collection)}.</p>
+ *
  * @author Jim Voris
  */
 public final class WorkfileDigestManager {
@@ -39,13 +52,19 @@ public final class WorkfileDigestManager {
      * Wait 10 seconds before saving the latest file id.
      */
     private static final long SAVE_WORKFILE_DIGEST_DELAY = 1000L * 10L;
+    /** The size of the buffer each thread uses to read workfiles. */
+    static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final int DIGEST_THREAD_COUNT = Integer.getInteger("qvcsos.client.digestThreadCount", Runtime.getRuntime().availableProcessors());
+    private static final ThreadLocal<MessageDigest> THREAD_DIGEST = ThreadLocal.withInitial(WorkfileDigestManager::createMessageDigest);
+    private static final ThreadLocal<ByteBuffer> THREAD_READ_BUFFER = ThreadLocal.withInitial(() -> ByteBuffer.allocate(READ_BUFFER_SIZE));
     private static final WorkfileDigestManager WORKFILE_DIGEST_MANAGER_MEMBER = new WorkfileDigestManager();
-    private boolean isInitializedFlag = false;
+    private volatile boolean isInitializedFlag = false;
     private String storeName = null;
-    private String oldStoreName = null;
+    private String legacyStoreName = null;
     private WorkfileDigestDictionaryStore store = null;
-    private MessageDigest messageDigest = null;
-    private final Object messageDigestSyncObject = new Object();
+    private ExecutorService digestPool = null;
+    private final LongAdder computedDigestCount = new LongAdder();
+    private final LongAdder skippedDigestCount = new LongAdder();
     private SaveWorkfileDigestStoreTimerTask saveWorkfileDigestStoreTimerTask = null;
     // Create our logger object
     private static final transient Logger LOGGER = LoggerFactory.getLogger(WorkfileDigestManager.class);
@@ -54,11 +73,14 @@ public final class WorkfileDigestManager {
      * Creates a new instance of WorkfileDigestDictionary.
      */
     private WorkfileDigestManager() {
+    }
+
+    private static MessageDigest createMessageDigest() {
         try {
-            messageDigest = MessageDigest.getInstance(QVCSConstants.QVCSOS_DIGEST_ALGORITHM);
+            return MessageDigest.getInstance(QVCSConstants.QVCSOS_DIGEST_ALGORITHM);
         } catch (NoSuchAlgorithmException e) {
             LOGGER.error("Failed to create [{}] digest instance! [{}] [{}]", QVCSConstants.QVCSOS_DIGEST_ALGORITHM, e.getClass().toString(), e.getLocalizedMessage());
-            LOGGER.warn(e.getLocalizedMessage(), e);
+            throw new QVCSRuntimeException("Failed to create " + QVCSConstants.QVCSOS_DIGEST_ALGORITHM + " digest instance.");
         }
     }
 
@@ -78,15 +100,16 @@ public final class WorkfileDigestManager {
      */
     public boolean initialize() {
         if (!isInitializedFlag) {
-            storeName = System.getProperty("user.dir")
+            String storeBaseName = System.getProperty("user.dir")
                     + File.separator
                     + QVCSConstants.QVCS_META_DATA_DIRECTORY
                     + File.separator
                     + QVCSConstants.QVCS_WORKFILE_DIGEST_STORE_NAME
-                    + System.getProperty("user.name")
-                    + ".dat";
+                    + System.getProperty("user.name");
+            storeName = storeBaseName + ".log";
 
-            oldStoreName = storeName + ".old";
+            // Where releases before the digest log kept the store.
+            legacyStoreName = storeBaseName + ".dat";
 
             loadStore();
             isInitializedFlag = true;
@@ -103,6 +126,63 @@ public final class WorkfileDigestManager {
      * @return the digest for the workfile.
      */
     public byte[] updateWorkfileDigestOnly(WorkfileInfoInterface workfileInfo) {
+        return updateWorkfileDigestOnly(workfileInfo, true);
+    }
+
+    /**
+     * Bring the digests for a collection of workfiles up to date, spreading the work across the available cores. Workfiles whose size and last changed date match what we
+     * stored along with their digest are skipped; the others are re-read. This does the same thing as calling {@link #updateWorkfileDigestOnly(WorkfileInfoInterface)} for
+     * each workfile, and returns when they are all done.
+     *
+     * @param workfileInfoCollection the workfiles whose digests we should refresh.
+     * @return the number of workfiles whose digest had to be computed.
+     */
+    public int refreshWorkfileDigests(Collection<WorkfileInfoInterface> workfileInfoCollection) {
+        if (!isInitializedFlag || workfileInfoCollection.isEmpty()) {
+            return 0;
+        }
+        long startTime = System.currentTimeMillis();
+        long computedBefore = computedDigestCount.sum();
+        List<Callable<byte[]>> taskList = new ArrayList<>(workfileInfoCollection.size());
+        for (WorkfileInfoInterface workfileInfo : workfileInfoCollection) {
+            taskList.add(() -> updateWorkfileDigestOnly(workfileInfo, false));
+        }
+        try {
+            for (Future<byte[]> future : getDigestPool().invokeAll(taskList)) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    LOGGER.warn("Failed to refresh workfile digest: [{}]", e.getCause().getLocalizedMessage());
+                }
+            }
+        } catch (InterruptedException e) {
+            LOGGER.warn("Interrupted while refreshing workfile digests.");
+            Thread.currentThread().interrupt();
+        }
+        int computedCount = (int) (computedDigestCount.sum() - computedBefore);
+        if (computedCount > 0) {
+            scheduleSaveOfStore();
+        }
+        LOGGER.debug("Refreshed [{}] workfile digests in [{}] ms; computed: [{}]", taskList.size(), System.currentTimeMillis() - startTime, computedCount);
+        return computedCount;
+    }
+
+    /**
+     * Get a one line summary of how many digests we have computed, and how many we were able to skip.
+     * @return a summary of the digest work done so far.
+     */
+    public String getStatistics() {
+        return String.format("Workfile digests computed: [%d]; skipped: [%d]", computedDigestCount.sum(), skippedDigestCount.sum());
+    }
+
+    private synchronized ExecutorService getDigestPool() {
+        if (digestPool == null) {
+            digestPool = Executors.newFixedThreadPool(Math.max(1, DIGEST_THREAD_COUNT), new DigestThreadFactory());
+        }
+        return digestPool;
+    }
+
+    private byte[] updateWorkfileDigestOnly(WorkfileInfoInterface workfileInfo, boolean scheduleSaveFlag) {
         if (workfileInfo == null) {
             throw new QVCSRuntimeException("Unexpected null value for workfileInfo argument.");
         }
@@ -138,15 +218,14 @@ public final class WorkfileDigestManager {
             if (storedWorkfileInfo != null) {
                 if (storedWorkfileInfo.getFetchedDate() == 0L) {
                     LOGGER.warn("missing fetched date in stored workfile information for:" + workfileInfo.getShortWorkfileName());
-                    retVal = computeWorkfileDigest(workfileInfo);
                 } else {
                     workfileInfo.setFetchedDate(storedWorkfileInfo.getFetchedDate());
                     workfileInfo.setWorkfileRevisionString(storedWorkfileInfo.getWorkfileRevisionString());
-                    retVal = computeWorkfileDigest(workfileInfo);
                 }
-            } else {
-                retVal = computeWorkfileDigest(workfileInfo);
             }
+            retVal = computeWorkfileDigest(workfileInfo, scheduleSaveFlag);
+        } else {
+            skippedDigestCount.increment();
         }
         return retVal;
     }
@@ -182,14 +261,13 @@ public final class WorkfileDigestManager {
      * @throws com.qumasoft.qvcslib.QVCSException when there is a problem.
      */
     public void updateWorkfileDigestForMerge(byte[] workfileBytes, WorkfileInfoInterface workfileInfo) throws QVCSException {
-        synchronized (messageDigestSyncObject) {
-            try {
-                messageDigest.reset();
-                byte[] digest = messageDigest.digest(workfileBytes);
-                store.addWorkfileDigest(workfileInfo, digest);
-            } catch (Exception e) {
-                LOGGER.warn(e.getLocalizedMessage(), e);
-            }
+        try {
+            MessageDigest messageDigest = THREAD_DIGEST.get();
+            messageDigest.reset();
+            byte[] digest = messageDigest.digest(workfileBytes);
+            store.addWorkfileDigest(workfileInfo, digest);
+        } catch (Exception e) {
+            LOGGER.warn(e.getLocalizedMessage(), e);
         }
         scheduleSaveOfStore();
     }
@@ -205,11 +283,18 @@ public final class WorkfileDigestManager {
     }
 
     private byte[] computeWorkfileDigest(WorkfileInfoInterface workfileInfo) {
+        return computeWorkfileDigest(workfileInfo, true);
+    }
+
+    private byte[] computeWorkfileDigest(WorkfileInfoInterface workfileInfo, boolean scheduleSaveFlag) {
         byte[] retVal = null;
         if (workfileInfo.getWorkfileExists()) {
             retVal = computeDigest(workfileInfo.getWorkfile());
+            computedDigestCount.increment();
             store.addWorkfileDigest(workfileInfo, retVal);
-            scheduleSaveOfStore();
+            if (scheduleSaveFlag) {
+                scheduleSaveOfStore();
+            }
         }
         return retVal;
     }
@@ -227,32 +312,33 @@ public final class WorkfileDigestManager {
         return digestWorkfileInfo;
     }
 
-    private byte[] computeDigest(File workFile) {
+    /**
+     * Compute the digest of a file. The file is read through this thread's buffer, whatever its size. We do not memory map large files: a mapping stays live
+     * until it is garbage collected, and on Windows a mapped file cannot be changed or deleted until then. The digest belongs to the calling thread, so any
+     * number of threads may compute digests at the same time.
+     *
+     * @param workFile the file.
+     * @return the file's digest, or null if the file could not be read.
+     */
+    static byte[] computeDigest(File workFile) {
         byte[] digest = null;
-        FileInputStream inStream = null;
-
-        synchronized (messageDigestSyncObject) {
-            try {
-                messageDigest.reset();
-
-                inStream = new FileInputStream(workFile);
-                byte[] buffer = new byte[(int) workFile.length()];
-                Utility.readDataFromStream(buffer, inStream);
-                LOGGER.trace("computing digest on buffer of size: " + buffer.length + " for file: " + workFile.getName());
-                digest = messageDigest.digest(buffer);
-            } catch (IOException e) {
-                LOGGER.warn(e.getLocalizedMessage(), e);
-            } finally {
-                if (inStream != null) {
-                    try {
-                        inStream.close();
-                    } catch (IOException e) {
-                        LOGGER.warn("caught exception: " + e.getClass().toString() + " " + e.getLocalizedMessage());
-                    }
-                }
+        MessageDigest messageDigest = THREAD_DIGEST.get();
+        messageDigest.reset();
+        try (FileChannel channel = FileChannel.open(workFile.toPath(), StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            LOGGER.trace("computing digest for file: [{}] of size: [{}]", workFile.getName(), fileSize);
+            ByteBuffer buffer = THREAD_READ_BUFFER.get();
+            buffer.clear();
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                messageDigest.update(buffer);
+                buffer.clear();
             }
+            digest = messageDigest.digest();
+        } catch (IOException e) {
+            messageDigest.reset();
+            LOGGER.warn(e.getLocalizedMessage(), e);
         }
-
         return digest;
     }
 
@@ -267,76 +353,15 @@ public final class WorkfileDigestManager {
     }
 
     private void loadStore() {
-        File storeFile;
-        FileInputStream fileStream = null;
-
-        try {
-            storeFile = new File(storeName);
-            fileStream = new FileInputStream(storeFile);
-
-            // Use try with resources so we're guaranteed the object output stream is closed.
-            try (ObjectInputStream inStream = new ObjectInputStream(fileStream)) {
-                store = (WorkfileDigestDictionaryStore) inStream.readObject();
-            }
-        } catch (FileNotFoundException e) {
-            // The file doesn't exist yet. Create a default store.
-            store = new WorkfileDigestDictionaryStore();
-        } catch (IOException | ClassNotFoundException e) {
-            // Serialization failed.  Create a default store.
-            store = new WorkfileDigestDictionaryStore();
-        } finally {
-            if (fileStream != null) {
-                try {
-                    fileStream.close();
-                } catch (IOException e) {
-                    LOGGER.warn(e.getLocalizedMessage(), e);
-                }
-            }
-        }
+        store = WorkfileDigestDictionaryStore.open(new File(storeName), new File(legacyStoreName));
     }
 
     /**
-     * Write the digest store to disk.
+     * Write the digest store to disk. Only the digests that changed since the last write are appended to the store's log.
      */
     public synchronized void writeStore() {
-        FileOutputStream fileStream = null;
-        ObjectOutputStream outStream = null;
-
-        try {
-            File storeFile = new File(storeName);
-            File oldStoreFile = new File(oldStoreName);
-
-            if (oldStoreFile.exists()) {
-                oldStoreFile.delete();
-            }
-
-            if (storeFile.exists()) {
-                storeFile.renameTo(oldStoreFile);
-            }
-
-            File newStoreFile = new File(storeName);
-
-            // Make sure the needed directories exists
-            if (!newStoreFile.getParentFile().exists()) {
-                newStoreFile.getParentFile().mkdirs();
-            }
-
-            fileStream = new FileOutputStream(newStoreFile);
-            outStream = new ObjectOutputStream(fileStream);
-            outStream.writeObject(store);
-        } catch (IOException e) {
-            LOGGER.warn(e.getLocalizedMessage(), e);
-        } finally {
-            if (fileStream != null) {
-                try {
-                    if (outStream != null) {
-                        outStream.close();
-                    }
-                    fileStream.close();
-                } catch (IOException e) {
-                    LOGGER.warn(e.getLocalizedMessage(), e);
-                }
-            }
+        if (store != null) {
+            store.save();
         }
     }
 
@@ -364,4 +389,15 @@ public final class WorkfileDigestManager {
             writeStore();
         }
     }
+
+    static class DigestThreadFactory implements ThreadFactory {
+        private final AtomicInteger threadCounter = new AtomicInteger(0);
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "WorkfileDigest-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
 }
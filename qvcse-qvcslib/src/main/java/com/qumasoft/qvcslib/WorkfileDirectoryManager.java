@@ -1,4 +1,4 @@
-/*   Copyright 2004-2022 Jim Voris
+/*   Copyright 2004-2023 Jim Voris
  *
  *   Licensed under the Apache License, Version 2.0 (the "License");
  *   you may not use this file except in compliance with the License.
@@ -16,15 +16,20 @@ package com.qumasoft.qvcslib;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Workfile Directory Manager. Keep track of the workfiles for a given directory.
+ * Workfile Directory Manager. Keep track of the workfiles for a given directory. The {@link WorkspaceChangeTracker} tells us which workfiles have changed, so that
+ * {@link #refreshChangedWorkfiles()} only has to look at those.
  *
  * @author Jim Voris
  */
@@ -33,7 +38,8 @@ public final class WorkfileDirectoryManager implements WorkfileDirectoryManagerI
     private static final Logger LOGGER = LoggerFactory.getLogger(WorkfileDirectoryManager.class);
 
     private final String directoryName;
-    private File directory;
+    private final File directory;
+    private final Path directoryPath;
     // The container for our workfile information.
     private final Map<String, WorkfileInfoInterface> workfileMap = Collections.synchronizedMap(new TreeMap<>());
     private ArchiveDirManagerInterface archiveDirManager = null;
@@ -49,12 +55,14 @@ public final class WorkfileDirectoryManager implements WorkfileDirectoryManagerI
         directoryName = workfileDirectory;
         archiveDirManager = archiveManager;
         directoryManager = dirManager;
+        directory = new File(directoryName);
+        directoryPath = directory.toPath().toAbsolutePath().normalize();
+        WorkspaceChangeTracker.getInstance().startReconcile(directoryPath, this);
         initDirectory();
     }
 
     private void initDirectory() {
         try {
-            directory = new File(directoryName);
             File[] fileList = directory.listFiles();
             if (fileList == null) {
                 return;
@@ -67,24 +75,112 @@ public final class WorkfileDirectoryManager implements WorkfileDirectoryManagerI
                     LOGGER.debug("Ignoring file: [{}] due to an entry in .qvcsosignore", workFile.getAbsolutePath());
                     continue;
                 }
-                try {
-                    boolean binaryFileFlag = false;
-                    ArchiveInfoInterface archiveInfo = archiveDirManager.getArchiveInfo(workFile.getName());
-                    if (archiveInfo != null) {
-                        binaryFileFlag = archiveInfo.getAttributes().getIsBinaryfile();
-                    }
-                    WorkfileInfo workfileInfo = new WorkfileInfo(workFile, binaryFileFlag, archiveDirManager.getProjectName(), archiveDirManager.getBranchName());
-                    workfileMap.put(workfileInfo.getShortWorkfileName(), workfileInfo);
-                } catch (IOException e) {
-                    // Log the exception.  There isn't anything we can do about it.
-                    LOGGER.warn("IOException when creating workfile information for [{}]", workFile.getAbsolutePath());
-                }
+                addWorkfile(workFile);
             }
         } catch (Exception e) {
             LOGGER.warn("Failed to initialize workfile directory: " + directoryName + ". Caught exception: " + e.getLocalizedMessage());
         }
     }
 
+    private boolean addWorkfile(File workFile) {
+        try {
+            boolean binaryFileFlag = false;
+            ArchiveInfoInterface archiveInfo = archiveDirManager.getArchiveInfo(workFile.getName());
+            if (archiveInfo != null) {
+                binaryFileFlag = archiveInfo.getAttributes().getIsBinaryfile();
+            }
+            WorkfileInfo workfileInfo = new WorkfileInfo(workFile, binaryFileFlag, archiveDirManager.getProjectName(), archiveDirManager.getBranchName());
+            workfileMap.put(workfileInfo.getShortWorkfileName(), workfileInfo);
+            return true;
+        } catch (IOException e) {
+            // Log the exception.  There isn't anything we can do about it.
+            LOGGER.warn("IOException when creating workfile information for [{}]", workFile.getAbsolutePath());
+            return false;
+        }
+    }
+
+    /**
+     * Bring the workfile information up to date for one file, if it has changed.
+     * @param workFile the file.
+     * @return true if the file was added, updated, or removed.
+     */
+    private boolean refreshWorkfile(File workFile) {
+        String shortWorkfileName = workFile.getName();
+        WorkfileInfoInterface existingWorkfileInfo = workfileMap.get(shortWorkfileName);
+        if (!workFile.isFile()) {
+            return existingWorkfileInfo != null && workfileMap.remove(shortWorkfileName) != null;
+        }
+        if (existingWorkfileInfo == null) {
+            try {
+                if (QvcsosClientIgnoreManager.getInstance().ignoreFile(this.archiveDirManager.getAppendedPath(), workFile)) {
+                    return false;
+                }
+            } catch (IOException e) {
+                LOGGER.warn("IOException when checking .qvcsosignore for [{}]", workFile.getAbsolutePath());
+                return false;
+            }
+            return addWorkfile(workFile);
+        }
+        if (existingWorkfileInfo.getWorkfileSize() == workFile.length()
+                && existingWorkfileInfo.getWorkfileLastChangedDate().getTime() == workFile.lastModified()) {
+            return false;
+        }
+        return addWorkfile(workFile);
+    }
+
+    /**
+     * Compare what we know about this directory with what is on disk, looking only at the names, sizes, and last modified times of its files.
+     * @return the short names of the workfiles that were added, updated, or removed.
+     */
+    private Set<String> reconcile() {
+        Set<String> changedNames = new HashSet<>();
+        File[] fileList = directory.listFiles();
+        Set<String> presentNames = new HashSet<>();
+        if (fileList != null) {
+            for (File workFile : fileList) {
+                if (workFile.isDirectory()) {
+                    continue;
+                }
+                presentNames.add(workFile.getName());
+                if (refreshWorkfile(workFile)) {
+                    changedNames.add(workFile.getName());
+                }
+            }
+        }
+        for (String shortWorkfileName : new ArrayList<>(workfileMap.keySet())) {
+            if (!presentNames.contains(shortWorkfileName)) {
+                workfileMap.remove(shortWorkfileName);
+                changedNames.add(shortWorkfileName);
+            }
+        }
+        return changedNames;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized Set<String> refreshChangedWorkfiles() {
+        WorkspaceChangeTracker tracker = WorkspaceChangeTracker.getInstance();
+        Set<String> changedNames = tracker.takeChanges(directoryPath, this);
+        if (changedNames == null) {
+            tracker.startReconcile(directoryPath, this);
+            changedNames = reconcile();
+            LOGGER.debug("Reconciled workfile directory: [{}]; changed workfiles: [{}]", directoryName, changedNames.size());
+        } else {
+            changedNames.removeIf(shortWorkfileName -> !refreshWorkfile(new File(directory, shortWorkfileName)));
+        }
+        return changedNames;
+    }
+
+    /**
+     * Stop tracking changes to this directory. Call this when this workfile directory manager is being replaced by one for a different directory, or
+     * when its directory manager is discarded.
+     */
+    public void stopTracking() {
+        WorkspaceChangeTracker.getInstance().stopTracking(directoryPath, this);
+    }
+
     /**
      * {@inheritDoc}
      * @return
@@ -122,6 +218,7 @@ public final class WorkfileDirectoryManager implements WorkfileDirectoryManagerI
      */
     @Override
     public synchronized void refresh() {
+        WorkspaceChangeTracker.getInstance().startReconcile(directoryPath, this);
         workfileMap.clear();
         initDirectory();
     }
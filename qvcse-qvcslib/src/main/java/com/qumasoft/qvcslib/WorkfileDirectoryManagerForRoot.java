@@ -1,4 +1,4 @@
-/*   Copyright 2004-2014 Jim Voris
+/*   Copyright 2004-2023 Jim Voris
  *
  *   Licensed under the Apache License, Version 2.0 (the "License");
  *   you may not use this file except in compliance with the License.
@@ -15,6 +15,8 @@
 package com.qumasoft.qvcslib;
 
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
 
 /**
  * Workfile directory manager for the project root directory. This special class for the root directory implements the needed WorkfileDirectoryManagerInterface,
@@ -65,6 +67,16 @@ public class WorkfileDirectoryManagerForRoot implements WorkfileDirectoryManager
     public void refresh() {
     }
 
+    /**
+     * Refresh the changed workfiles in the project root directory. This is a no-op operation for the project root directory.
+     *
+     * @return an empty set.
+     */
+    @Override
+    public Set<String> refreshChangedWorkfiles() {
+        return Collections.emptySet();
+    }
+
     /**
      * Create the directory for the project root.
      *
@@ -1,4 +1,4 @@
-/*   Copyright 2004-2014 Jim Voris
+/*   Copyright 2004-2023 Jim Voris
  *
  *   Licensed under the Apache License, Version 2.0 (the "License");
  *   you may not use this file except in compliance with the License.
@@ -15,6 +15,7 @@
 package com.qumasoft.qvcslib;
 
 import java.util.Collection;
+import java.util.Set;
 
 /**
  * Workfile directory manager interface. Define the behaviors that we need from the Workfile Directory Manager.
@@ -58,4 +59,10 @@ public interface WorkfileDirectoryManagerInterface {
      * Re-read the workfile directory from the file system and update the workfile information for this Workfile Directory Manager.
      */
     void refresh();
+
+    /**
+     * Bring the workfile information up to date for just the workfiles that have changed on disk since the last refresh.
+     * @return the short names of the workfiles that were added, updated, or removed.
+     */
+    Set<String> refreshChangedWorkfiles();
 }
@@ -1,4 +1,4 @@
-/*   Copyright 2004-2014 Jim Voris
+/*   Copyright 2004-2023 Jim Voris
  *
  *   Licensed under the Apache License, Version 2.0 (the "License");
  *   you may not use this file except in compliance with the License.
@@ -84,6 +84,26 @@ public class WorkfileInfo implements WorkfileInfoInterface, Comparable, java.io.
         branchName = branch;
     }
 
+    /**
+     * Constructor used by the workfile digest store to recreate the workfile information it saved along with a workfile's digest.
+     * @param namedWorkfileInfo the workfile info that supplies the workfile's names, project, and branch.
+     * @param size the workfile size when its digest was computed.
+     * @param lastChangedTime the workfile's last changed time when its digest was computed.
+     * @param fetched the date the workfile was fetched from the server.
+     * @param revisionString the revision that was fetched from the server.
+     */
+    WorkfileInfo(WorkfileInfoInterface namedWorkfileInfo, long size, long lastChangedTime, long fetched, String revisionString) {
+        fullWorkfileName = namedWorkfileInfo.getFullWorkfileName();
+        shortWorkfileName = namedWorkfileInfo.getShortWorkfileName();
+        binaryFileAttribute = namedWorkfileInfo.getBinaryFileAttribute();
+        projectName = namedWorkfileInfo.getProjectName();
+        branchName = namedWorkfileInfo.getBranchName();
+        workfileSize = size;
+        lastChanged = new Date(lastChangedTime);
+        fetchedDate = fetched;
+        workfileRevisionString = revisionString;
+    }
+
     /**
      * {@inheritDoc}
      */
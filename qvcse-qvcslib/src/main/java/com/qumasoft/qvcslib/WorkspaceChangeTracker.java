@@ -0,0 +1,222 @@
+/*   Copyright 2004-2023 Jim Voris
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.qumasoft.qvcslib;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keep track of which workfiles have changed in the workspace directories that we are displaying, so a refresh only has to look at those workfiles instead of re-reading
+ * every directory. Changes are reported by the file system's {@link WatchService}. We cannot count on the watch service for everything (events can be lost when it
+ * overflows, some platforms do not support it, and there are limits on how many directories can be watched), so a directory is also due for a full reconciliation scan
+ * when it is not being watched, when events have been lost, or when it has not been reconciled for a while. It is a singleton.
+ *
+ * @author Jim Voris
+ */
+public final class WorkspaceChangeTracker {
+    // Create our logger object
+    private static final Logger LOGGER = LoggerFactory.getLogger(WorkspaceChangeTracker.class);
+
+    /** How long a watched directory can go without a reconciliation scan. */
+    static final long RECONCILE_INTERVAL = Long.getLong("qvcsos.client.workspaceReconcileInterval", 10L * 60L * 1000L);
+    private static final WorkspaceChangeTracker WORKSPACE_CHANGE_TRACKER = new WorkspaceChangeTracker();
+
+    private final Map<Path, DirectoryState> directoryStateMap = new ConcurrentHashMap<>();
+    private WatchService watchService;
+    private boolean watchServiceFailedFlag = false;
+
+    /**
+     * Creates a new instance of WorkspaceChangeTracker.
+     */
+    private WorkspaceChangeTracker() {
+    }
+
+    /**
+     * Get the singleton instance of the WorkspaceChangeTracker.
+     *
+     * @return the singleton instance of the WorkspaceChangeTracker.
+     */
+    public static WorkspaceChangeTracker getInstance() {
+        return WORKSPACE_CHANGE_TRACKER;
+    }
+
+    /**
+     * Take the names of the files that changed in the given directory since the given consumer last asked. Each consumer of a directory (there is one workfile
+     * directory manager per branch that maps to the directory) has its own set of changes, so taking them for one consumer leaves them in place for the others.
+     *
+     * @param directory the workfile directory.
+     * @param consumer the consumer of the changes, i.e. the workfile directory manager.
+     * @return the short names of the files that were created, modified, or deleted; or null if the directory needs a reconciliation scan, because it is not being
+     * watched, because change events were lost, or because it is due for one.
+     */
+    Set<String> takeChanges(Path directory, Object consumer) {
+        DirectoryState state = directoryStateMap.get(directory);
+        if (state == null || !state.watchKey.isValid()) {
+            return null;
+        }
+        ConsumerState consumerState = state.consumerStateMap.get(consumer);
+        if (consumerState == null || consumerState.overflowFlag || System.currentTimeMillis() - consumerState.lastReconcileTime > RECONCILE_INTERVAL) {
+            return null;
+        }
+        Set<String> changedNames = new HashSet<>();
+        Iterator<String> it = consumerState.changedNameSet.iterator();
+        while (it.hasNext()) {
+            changedNames.add(it.next());
+            it.remove();
+        }
+        return changedNames;
+    }
+
+    /**
+     * Note that the given consumer is about to compare the given directory in full with what is on disk, and watch the directory from now on if we are not already.
+     * Call this before the scan, so changes made during the scan are reported next time.
+     *
+     * @param directory the workfile directory.
+     * @param consumer the consumer of the changes, i.e. the workfile directory manager.
+     */
+    synchronized void startReconcile(Path directory, Object consumer) {
+        DirectoryState state = directoryStateMap.get(directory);
+        if (state == null || !state.watchKey.isValid()) {
+            state = watchDirectory(directory);
+        }
+        if (state != null) {
+            ConsumerState consumerState = state.consumerStateMap.computeIfAbsent(consumer, k -> new ConsumerState());
+            consumerState.overflowFlag = false;
+            consumerState.changedNameSet.clear();
+            consumerState.lastReconcileTime = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Stop reporting changes in the given directory to the given consumer. We stop watching the directory once it has no consumers left.
+     *
+     * @param directory the workfile directory.
+     * @param consumer the consumer of the changes, i.e. the workfile directory manager.
+     */
+    synchronized void stopTracking(Path directory, Object consumer) {
+        DirectoryState state = directoryStateMap.get(directory);
+        if (state != null) {
+            state.consumerStateMap.remove(consumer);
+            if (state.consumerStateMap.isEmpty()) {
+                directoryStateMap.remove(directory);
+                state.watchKey.cancel();
+            }
+        }
+    }
+
+    /**
+     * Is the given directory being watched?
+     *
+     * @param directory the workfile directory.
+     * @return true if changes to the directory are reported by the watch service.
+     */
+    boolean isWatched(Path directory) {
+        DirectoryState state = directoryStateMap.get(directory);
+        return state != null && state.watchKey.isValid();
+    }
+
+    private synchronized DirectoryState watchDirectory(Path directory) {
+        DirectoryState state = null;
+        WatchService service = getWatchService();
+        if (service != null && directory.toFile().isDirectory()) {
+            try {
+                WatchKey watchKey = directory.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE,
+                        StandardWatchEventKinds.ENTRY_MODIFY);
+                state = new DirectoryState(watchKey);
+                directoryStateMap.put(directory, state);
+            } catch (IOException | UnsupportedOperationException e) {
+                // Probably out of watches. We'll scan this directory instead.
+                LOGGER.info("Unable to watch workfile directory: [{}] [{}]", directory, e.getLocalizedMessage());
+            }
+        }
+        return state;
+    }
+
+    private WatchService getWatchService() {
+        if (watchService == null && !watchServiceFailedFlag) {
+            try {
+                watchService = FileSystems.getDefault().newWatchService();
+                Thread watchThread = new Thread(this::processEvents, "WorkspaceChangeTracker");
+                watchThread.setDaemon(true);
+                watchThread.start();
+            } catch (IOException | UnsupportedOperationException e) {
+                LOGGER.warn("Workspace file watching is not available; falling back to directory scans. [{}]", e.getLocalizedMessage());
+                watchServiceFailedFlag = true;
+            }
+        }
+        return watchService;
+    }
+
+    private void processEvents() {
+        while (true) {
+            WatchKey watchKey;
+            try {
+                watchKey = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                LOGGER.info("Workspace change tracker stopped.");
+                return;
+            }
+            DirectoryState state = directoryStateMap.get((Path) watchKey.watchable());
+            for (WatchEvent<?> event : watchKey.pollEvents()) {
+                if (state == null) {
+                    continue;
+                }
+                for (ConsumerState consumerState : state.consumerStateMap.values()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        consumerState.overflowFlag = true;
+                    } else {
+                        consumerState.changedNameSet.add(event.context().toString());
+                    }
+                }
+            }
+            // If the key is no longer valid, the directory went away; the next refresh will reconcile it.
+            watchKey.reset();
+        }
+    }
+
+    /**
+     * What we know about a watched directory.
+     */
+    static final class DirectoryState {
+        private final WatchKey watchKey;
+        private final Map<Object, ConsumerState> consumerStateMap = new ConcurrentHashMap<>();
+
+        DirectoryState(WatchKey key) {
+            this.watchKey = key;
+        }
+    }
+
+    /**
+     * What one consumer of a watched directory has yet to hear about.
+     */
+    static final class ConsumerState {
+        private final Set<String> changedNameSet = ConcurrentHashMap.newKeySet();
+        private volatile boolean overflowFlag = false;
+        private volatile long lastReconcileTime = System.currentTimeMillis();
+    }
+}
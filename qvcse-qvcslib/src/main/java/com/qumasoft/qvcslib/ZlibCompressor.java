@@ -1,4 +1,4 @@
-/*   Copyright 2004-2015 Jim Voris
+/*   Copyright 2004-2023 Jim Voris
  *
  *   Licensed under the Apache License, Version 2.0 (the "License");
  *   you may not use this file except in compliance with the License.
@@ -15,10 +15,7 @@
 package com.qumasoft.qvcslib;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
-import java.io.IOException;
+import java.util.Arrays;
 import java.util.zip.DataFormatException;
 import java.util.zip.Deflater;
 import java.util.zip.Inflater;
@@ -26,97 +23,136 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * ZLib compressor. Use the JVM supplied ZLib compression algorithm.
+ * ZLib compressor. Use the JVM supplied ZLib compression algorithm. The deflaters and inflaters come from the {@link CompressionEngine} pool, and the
+ * output buffer grows as needed, so we give up as soon as the output would be no smaller than the input.
  * @author Jim Voris
  */
 public class ZlibCompressor implements Compressor {
     // Create our logger object
     private static final Logger LOGGER = LoggerFactory.getLogger(ZlibCompressor.class);
-    private static final int OUTPUT_BUFFER_PADDING_SIZE = 16;
+    private static final int MINIMUM_INITIAL_OUTPUT_SIZE = 1024;
+    private static final int INITIAL_OUTPUT_FRACTION = 4;
+    private final int compressionType;
+    private final boolean nowrapFlag;
+    private final int compressionLevel;
     private byte[] unCompressedBuffer;
     private byte[] compressedBuffer;
     private boolean bufferIsCompressedFlag;
 
     /**
-     * Default constructor.
+     * Default constructor. Use the compression engine's compression level.
      */
     public ZlibCompressor() {
+        this(RevisionCompressionHeader.COMPRESS_ALGORITHM_2, false, CompressionEngine.getInstance().getCompressionLevel());
+    }
+
+    /**
+     * Constructor for a zlib compressor that uses a specific compression level.
+     * @param level the deflate compression level.
+     */
+    public ZlibCompressor(int level) {
+        this(RevisionCompressionHeader.COMPRESS_ALGORITHM_2, false, level);
+    }
+
+    /**
+     * Constructor for the deflate based compressors.
+     * @param type the compression type to record in the compression header.
+     * @param nowrap true to produce a raw deflate stream; false to produce a zlib stream.
+     * @param level the deflate compression level.
+     */
+    protected ZlibCompressor(int type, boolean nowrap, int level) {
+        this.compressionType = type;
+        this.nowrapFlag = nowrap;
+        this.compressionLevel = level;
     }
 
     @Override
     public boolean compress(byte[] inputBuffer) {
-        boolean retVal = true;
+        long startTime = System.nanoTime();
         unCompressedBuffer = inputBuffer;
+        compressedBuffer = null;
+        bufferIsCompressedFlag = false;
+        int headerSize = RevisionCompressionHeader.getHeaderSize();
 
-        // Compress the bytes
-        byte[] output = new byte[inputBuffer.length + OUTPUT_BUFFER_PADDING_SIZE];
-        Deflater compresser = new Deflater();
-        compresser.setInput(inputBuffer);
-        compresser.finish();
-        int compressedDataLength = compresser.deflate(output);
-        compresser.end();
-        if ((RevisionCompressionHeader.getHeaderSize() + compressedDataLength) >= inputBuffer.length) {
-            // Compression didn't save anything.
-            retVal = false;
-        } else {
+        // The compressed result, including its header, has to be smaller than the input, or there is no point.
+        int outputLimit = inputBuffer.length - 1;
+        if (outputLimit > headerSize) {
+            CompressionEngine engine = CompressionEngine.getInstance();
+            Deflater compresser = engine.borrowDeflater(compressionLevel, nowrapFlag);
             try {
-                RevisionCompressionHeader compressionHeader = new RevisionCompressionHeader();
-                compressionHeader.setInputSize(inputBuffer.length);
-                compressionHeader.setCompressedSize(RevisionCompressionHeader.getHeaderSize() + compressedDataLength);
-                compressionHeader.setCompressionType(RevisionCompressionHeader.COMPRESS_ALGORITHM_2);
-
-                ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
-                DataOutputStream outStream = new DataOutputStream(byteStream);
-                compressionHeader.write(outStream);
-                outStream.write(output, 0, compressedDataLength);
-                outStream.close();
-                byteStream.close();
-                compressedBuffer = byteStream.toByteArray();
-                bufferIsCompressedFlag = true;
-            } catch (IOException e) {
-                LOGGER.info("ZLib Compression failure: " + e.getLocalizedMessage());
-                retVal = false;
-                bufferIsCompressedFlag = false;
+                compresser.setInput(inputBuffer);
+                compresser.finish();
+                int initialSize = headerSize + Math.max(MINIMUM_INITIAL_OUTPUT_SIZE, inputBuffer.length / INITIAL_OUTPUT_FRACTION);
+                byte[] output = new byte[Math.min(outputLimit, initialSize)];
+                int outputLength = headerSize;
+                boolean tooBigFlag = false;
+                while (!compresser.finished()) {
+                    if (outputLength == output.length) {
+                        if (output.length == outputLimit) {
+                            tooBigFlag = true;
+                            break;
+                        }
+                        output = Arrays.copyOf(output, (int) Math.min(outputLimit, 2L * output.length));
+                    }
+                    outputLength += compresser.deflate(output, outputLength, output.length - outputLength);
+                }
+                if (!tooBigFlag) {
+                    RevisionCompressionHeader compressionHeader = new RevisionCompressionHeader();
+                    compressionHeader.setInputSize(inputBuffer.length);
+                    compressionHeader.setCompressedSize(outputLength);
+                    compressionHeader.setCompressionType(compressionType);
+                    compressionHeader.writeTo(output);
+                    compressedBuffer = output;
+                    if (outputLength != output.length) {
+                        compressedBuffer = Arrays.copyOf(output, outputLength);
+                    }
+                    bufferIsCompressedFlag = true;
+                }
+            } finally {
+                engine.returnDeflater(compresser, nowrapFlag);
             }
+            int compressedLength = -1;
+            if (bufferIsCompressedFlag) {
+                compressedLength = compressedBuffer.length;
+            }
+            engine.recordCompression(inputBuffer.length, compressedLength, System.nanoTime() - startTime);
         }
-        return retVal;
+        return bufferIsCompressedFlag;
     }
 
     @Override
     public byte[] expand(RevisionCompressionHeader compressionHeader, byte[] inputBuffer) {
+        long startTime = System.nanoTime();
         /*
          * Allocate memory for the output (decompressed buffer)
          */
         byte[] outputBuffer = new byte[(int) compressionHeader.getInputSize()];
+        CompressionEngine engine = CompressionEngine.getInstance();
+        Inflater decompresser = engine.borrowInflater(nowrapFlag);
         try {
             // Decompress the bytes
-            Inflater decompresser = new Inflater();
             decompresser.setInput(inputBuffer, RevisionCompressionHeader.getHeaderSize(), inputBuffer.length - RevisionCompressionHeader.getHeaderSize());
-            int resultLength = decompresser.inflate(outputBuffer);
-            decompresser.end();
+            int resultLength = 0;
+            while (resultLength < outputBuffer.length && !decompresser.finished()) {
+                int inflatedCount = decompresser.inflate(outputBuffer, resultLength, outputBuffer.length - resultLength);
+                if (inflatedCount == 0 && (decompresser.needsInput() || decompresser.needsDictionary())) {
+                    break;
+                }
+                resultLength += inflatedCount;
+            }
             QumaAssert.isTrue(resultLength == compressionHeader.getInputSize(), null);
         } catch (DataFormatException e) {
             LOGGER.info("ZLib decompression failure: " + e.getLocalizedMessage());
+        } finally {
+            engine.returnInflater(decompresser, nowrapFlag);
         }
+        engine.recordExpansion(System.nanoTime() - startTime);
         return outputBuffer;
     }
 
     @Override
     public byte[] expand(byte[] inputBuffer) {
-        byte[] retVal = null;
-        ByteArrayInputStream inStream = new ByteArrayInputStream(inputBuffer);
-        DataInputStream dataInStream = new DataInputStream(inStream);
-        RevisionCompressionHeader compressionHeader = new RevisionCompressionHeader();
-        try {
-            compressionHeader.read(dataInStream);
-            retVal = expand(compressionHeader, inputBuffer);
-
-            dataInStream.close();
-            inStream.close();
-        } catch (IOException e) {
-            LOGGER.warn("Caught IOException in expand: " + e.getLocalizedMessage());
-        }
-        return retVal;
+        return expand(RevisionCompressionHeader.fromBuffer(inputBuffer), inputBuffer);
     }
 
     @Override
@@ -0,0 +1,95 @@
+/*   Copyright 2004-2023 Jim Voris
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.qumasoft.qvcslib.requestdata;
+
+import com.qumasoft.qvcslib.QVCSRuntimeException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Bulk operation request data. This carries a batch of check-in, delete, and rename requests for files on a single project/branch, so the server can
+ * handle them all in one transaction under one commit. Each contained request keeps its own appended path, file id, sync token, etc. The server answers
+ * with a single {@link com.qumasoft.qvcslib.response.ServerResponseBulk} that holds the response to each contained request.
+ *
+ * @author Jim Voris
+ */
+public class ClientRequestBulkData extends ClientRequestClientData {
+    private static final long serialVersionUID = -3137430461802735871L;
+
+    private static final ValidRequestElementType[] VALID_ELEMENTS = {
+        ValidRequestElementType.PROJECT_NAME,
+        ValidRequestElementType.BRANCH_NAME,
+        ValidRequestElementType.SYNC_TOKEN
+    };
+    private final ArrayList<ClientRequestClientData> requestList = new ArrayList<>();
+    private String commitMessage;
+
+    /**
+     * Creates new ClientRequestBulkData.
+     */
+    public ClientRequestBulkData() {
+    }
+
+    /**
+     * Add a request to the batch. Only check-in, delete file, and rename file requests may be batched.
+     * @param request the request to add.
+     */
+    public void addRequest(ClientRequestClientData request) {
+        switch (request.getOperationType()) {
+            case CHECK_IN:
+            case DELETE_FILE:
+            case RENAME_FILE:
+                requestList.add(request);
+                break;
+            default:
+                throw new QVCSRuntimeException("Unsupported bulk request type: [" + request.getOperationType() + "]");
+        }
+    }
+
+    /**
+     * Get the batched requests, in the order they were added.
+     * @return the batched requests.
+     */
+    public List<ClientRequestClientData> getRequestList() {
+        return Collections.unmodifiableList(requestList);
+    }
+
+    /**
+     * Get the commit message.
+     * @return the commit message.
+     */
+    public String getCommitMessage() {
+        return commitMessage;
+    }
+
+    /**
+     * Set the commit message. This is used for the commit that holds the whole batch.
+     * @param message the commit message.
+     */
+    public void setCommitMessage(String message) {
+        commitMessage = message;
+    }
+
+    @Override
+    public RequestOperationType getOperationType() {
+        return RequestOperationType.BULK_OPERATION;
+    }
+
+    @Override
+    public ValidRequestElementType[] getValidElements() {
+        return VALID_ELEMENTS;
+    }
+}
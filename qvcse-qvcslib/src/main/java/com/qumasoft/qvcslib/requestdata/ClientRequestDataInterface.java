@@ -72,16 +72,22 @@ public interface ClientRequestDataInterface extends java.io.Serializable {
         CHECK_IN,
         /** Checkin the files in a directory. */
         CHECK_IN_DIRECTORY,
+        /** Check in, delete, and rename a batch of files in a single request. */
+        BULK_OPERATION,
         /** Login to the server. */
         LOGIN,
         /** Register as a client listener to a directory. */
         REGISTER_CLIENT_LISTENER,
+        /** Register as a client listener to a collection of directories in a single request. */
+        REGISTER_CLIENT_LISTENER_BULK,
         /** Create an archive file. */
         ADD_FILE,
         /** Get the logfile information for a file. */
         GET_LOGFILE_INFO,
         /** Get all the logfile information for a file. */
         GET_ALL_LOGFILE_INFO,
+        /** Get one page of the revision history for a file. */
+        GET_REVISION_HISTORY_PAGE,
         /** Delete a file. (Move to cemetery). */
         DELETE_FILE,
         /** UnDelete a file. (Restore from cemetery) */
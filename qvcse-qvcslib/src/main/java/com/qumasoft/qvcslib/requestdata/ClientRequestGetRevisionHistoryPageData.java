@@ -0,0 +1,116 @@
+/*   Copyright 2004-2023 Jim Voris
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.qumasoft.qvcslib.requestdata;
+
+import com.qumasoft.qvcslib.RevisionHistoryFilter;
+
+/**
+ * Get one page of a file's revision history, newest revision first. The first page starts with the newest revision; each following page starts after
+ * the cursor file revision id reported by the previous page. The server answers with a
+ * {@link com.qumasoft.qvcslib.response.ServerResponseGetRevisionHistoryPage}.
+ *
+ * @author Jim Voris
+ */
+public class ClientRequestGetRevisionHistoryPageData extends ClientRequestClientData {
+    private static final long serialVersionUID = 6512374035882194417L;
+
+    /** The number of revisions we ask for when the caller does not say. */
+    public static final int DEFAULT_PAGE_SIZE = 50;
+
+    private static final ValidRequestElementType[] VALID_ELEMENTS = {
+        ValidRequestElementType.PROJECT_NAME,
+        ValidRequestElementType.BRANCH_NAME,
+        ValidRequestElementType.APPENDED_PATH,
+        ValidRequestElementType.SHORT_WORKFILE_NAME,
+        ValidRequestElementType.FILE_ID,
+        ValidRequestElementType.SYNC_TOKEN
+    };
+    private boolean allBranchesFlag = false;
+    private Integer startAfterFileRevisionId = null;
+    private int pageSize = DEFAULT_PAGE_SIZE;
+    private RevisionHistoryFilter revisionHistoryFilter = null;
+
+    /**
+     * Creates a new instance of ClientRequestGetRevisionHistoryPageData.
+     */
+    public ClientRequestGetRevisionHistoryPageData() {
+    }
+
+    @Override
+    public ValidRequestElementType[] getValidElements() {
+        return VALID_ELEMENTS;
+    }
+
+    @Override
+    public RequestOperationType getOperationType() {
+        return RequestOperationType.GET_REVISION_HISTORY_PAGE;
+    }
+
+    /**
+     * @return true to page through the revisions on all branches; false for just the revisions visible on the requested branch.
+     */
+    public boolean getAllBranchesFlag() {
+        return allBranchesFlag;
+    }
+
+    /**
+     * @param flag true to page through the revisions on all branches; false for just the revisions visible on the requested branch.
+     */
+    public void setAllBranchesFlag(boolean flag) {
+        this.allBranchesFlag = flag;
+    }
+
+    /**
+     * @return the file revision id that the page starts after; null for the first page.
+     */
+    public Integer getStartAfterFileRevisionId() {
+        return startAfterFileRevisionId;
+    }
+
+    /**
+     * @param fileRevisionId the file revision id that the page starts after; null for the first page.
+     */
+    public void setStartAfterFileRevisionId(Integer fileRevisionId) {
+        this.startAfterFileRevisionId = fileRevisionId;
+    }
+
+    /**
+     * @return the maximum number of revisions on the page.
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * @param size the maximum number of revisions on the page.
+     */
+    public void setPageSize(int size) {
+        this.pageSize = size;
+    }
+
+    /**
+     * @return the filter the server applies to the revisions; may be null.
+     */
+    public RevisionHistoryFilter getRevisionHistoryFilter() {
+        return revisionHistoryFilter;
+    }
+
+    /**
+     * @param filter the filter the server applies to the revisions; may be null.
+     */
+    public void setRevisionHistoryFilter(RevisionHistoryFilter filter) {
+        this.revisionHistoryFilter = filter;
+    }
+}
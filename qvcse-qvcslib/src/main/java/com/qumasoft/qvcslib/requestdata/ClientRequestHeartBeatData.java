@@ -20,11 +20,14 @@ package com.qumasoft.qvcslib.requestdata;
  */
 public class ClientRequestHeartBeatData extends ClientRequestClientData {
     private static final long serialVersionUID = -1992510600504057635L;
+    /** What we send when we have no round trip time to report. */
+    public static final long ROUND_TRIP_TIME_NOT_MEASURED = -1L;
 
     private static final ValidRequestElementType[] VALID_ELEMENTS = {
         ValidRequestElementType.SERVER_NAME,
         ValidRequestElementType.SYNC_TOKEN
     };
+    private long roundTripTime = ROUND_TRIP_TIME_NOT_MEASURED;
 
     /**
      * Creates a new instance of ClientRequestListProjectsData.
@@ -32,6 +35,22 @@ public class ClientRequestHeartBeatData extends ClientRequestClientData {
     public ClientRequestHeartBeatData() {
     }
 
+    /**
+     * Get the round trip time the client measured for its previous heartbeat.
+     * @return the round trip time of the previous heartbeat, in milliseconds; {@link #ROUND_TRIP_TIME_NOT_MEASURED} if there is none.
+     */
+    public long getRoundTripTime() {
+        return roundTripTime;
+    }
+
+    /**
+     * Set the round trip time the client measured for its previous heartbeat.
+     * @param time the round trip time of the previous heartbeat, in milliseconds.
+     */
+    public void setRoundTripTime(long time) {
+        this.roundTripTime = time;
+    }
+
     @Override
     public RequestOperationType getOperationType() {
         return RequestOperationType.HEARTBEAT;
@@ -29,6 +29,7 @@ public class ClientRequestLoginData extends ClientRequestClientData {
     };
     private String version;
     private String clientComputerName;
+    private int wireProtocolVersion;
 
     /**
      * Creates a new instance of ClientRequestLogin.
@@ -75,4 +76,20 @@ public class ClientRequestLoginData extends ClientRequestClientData {
     public void setClientComputerName(String computerName) {
         this.clientComputerName = computerName;
     }
+
+    /**
+     * Get the wire protocol version the client supports. Older clients do not send this, so it defaults to Java serialization.
+     * @return the wire protocol version the client supports.
+     */
+    public int getWireProtocolVersion() {
+        return wireProtocolVersion;
+    }
+
+    /**
+     * Set the wire protocol version the client supports.
+     * @param protocolVersion the wire protocol version the client supports.
+     */
+    public void setWireProtocolVersion(int protocolVersion) {
+        this.wireProtocolVersion = protocolVersion;
+    }
 }
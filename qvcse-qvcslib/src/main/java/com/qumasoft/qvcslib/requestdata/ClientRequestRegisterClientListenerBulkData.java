@@ -0,0 +1,126 @@
+/*   Copyright 2004-2023 Jim Voris
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.qumasoft.qvcslib.requestdata;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Bulk register client listener request data. This registers the client as a listener for a collection of directories on a single project/branch, so a
+ * client that is opening a directory tree needs one round trip instead of one per directory. The request's appended path is the root of the subtree that
+ * holds all the directories; it is kept up to date as directories are added. The server sends a
+ * {@link com.qumasoft.qvcslib.response.ServerResponseRegisterClientListener} for each directory as it goes, and finishes with a
+ * {@link com.qumasoft.qvcslib.response.ServerResponseRegisterClientListenerBulk} that carries this request's sync token.
+ *
+ * <p>A directory may be added along with the directory stamp of the archive information the client has cached for it. If the directory has not changed
+ * since, the server does not send the archive information again. See {@link com.qumasoft.qvcslib.ArchiveInfoCacheStore}.</p>
+ *
+ * @author Jim Voris
+ */
+public class ClientRequestRegisterClientListenerBulkData extends ClientRequestClientData {
+    private static final long serialVersionUID = -6090236476306415872L;
+
+    private static final ValidRequestElementType[] VALID_ELEMENTS = {
+        ValidRequestElementType.PROJECT_NAME,
+        ValidRequestElementType.BRANCH_NAME,
+        ValidRequestElementType.APPENDED_PATH,
+        ValidRequestElementType.SYNC_TOKEN
+    };
+    private final ArrayList<String> appendedPathList = new ArrayList<>();
+    private final HashMap<String, Long> cachedStampMap = new HashMap<>();
+
+    /**
+     * Creates a new instance of ClientRequestRegisterClientListenerBulkData.
+     */
+    public ClientRequestRegisterClientListenerBulkData() {
+    }
+
+    /**
+     * Add a directory to the request. This also narrows the request's appended path to the deepest directory that contains all the directories added so
+     * far.
+     * @param path the appended path of the directory.
+     */
+    public void addAppendedPath(String path) {
+        if (appendedPathList.isEmpty()) {
+            setAppendedPath(path);
+        } else {
+            setAppendedPath(findCommonAncestor(getAppendedPath(), path));
+        }
+        appendedPathList.add(path);
+    }
+
+    /**
+     * Add a directory to the request, along with the directory stamp of the archive information the client has cached for it.
+     * @param path the appended path of the directory.
+     * @param cachedStamp the directory stamp of the cached archive information, or null if the client has nothing cached for the directory.
+     */
+    public void addAppendedPath(String path, Long cachedStamp) {
+        addAppendedPath(path);
+        if (cachedStamp != null) {
+            cachedStampMap.put(path, cachedStamp);
+        }
+    }
+
+    /**
+     * Get the directory stamp of the archive information the client has cached for a directory.
+     * @param path the appended path of the directory.
+     * @return the directory stamp of the cached archive information, or null if the client has nothing cached for the directory.
+     */
+    public Long getCachedStamp(String path) {
+        return cachedStampMap.get(path);
+    }
+
+    /**
+     * Get the number of directories for which the client has cached archive information.
+     * @return the number of directories for which the client has cached archive information.
+     */
+    public int getCachedStampCount() {
+        return cachedStampMap.size();
+    }
+
+    /**
+     * Get the appended paths of the directories to register for, in the order they were added.
+     * @return the appended paths of the directories.
+     */
+    public List<String> getAppendedPathList() {
+        return Collections.unmodifiableList(appendedPathList);
+    }
+
+    @Override
+    public RequestOperationType getOperationType() {
+        return RequestOperationType.REGISTER_CLIENT_LISTENER_BULK;
+    }
+
+    @Override
+    public ValidRequestElementType[] getValidElements() {
+        return VALID_ELEMENTS;
+    }
+
+    static String findCommonAncestor(String ancestor, String path) {
+        String commonAncestor = ancestor;
+        while (commonAncestor.length() > 0 && !(path.equals(commonAncestor) || path.startsWith(commonAncestor + File.separator))) {
+            int index = commonAncestor.lastIndexOf(File.separatorChar);
+            if (index < 0) {
+                commonAncestor = "";
+            } else {
+                commonAncestor = commonAncestor.substring(0, index);
+            }
+        }
+        return commonAncestor;
+    }
+}
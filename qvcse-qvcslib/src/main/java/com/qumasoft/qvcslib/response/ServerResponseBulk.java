@@ -0,0 +1,86 @@
+/*   Copyright 2004-2023 Jim Voris
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.qumasoft.qvcslib.response;
+
+import com.qumasoft.qvcslib.ArchiveDirManagerProxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Bulk operation response. This holds the responses for each of the requests in a bulk operation, in request order. Each contained response carries
+ * the sync token of its own request, so the client can release those tokens as well as the token of the bulk request.
+ * @author Jim Voris
+ */
+public class ServerResponseBulk extends AbstractServerResponse {
+    private static final long serialVersionUID = 5360931862291766019L;
+
+    // These are serialized:
+    private final ArrayList<AbstractServerResponse> responseList = new ArrayList<>();
+    private Integer commitId;
+
+    /**
+     * Creates a new instance of ServerResponseBulk.
+     */
+    public ServerResponseBulk() {
+    }
+
+    /**
+     * Add the response for one of the batched requests.
+     * @param response the response.
+     */
+    public void addResponse(AbstractServerResponse response) {
+        responseList.add(response);
+    }
+
+    /**
+     * Get the responses for the batched requests.
+     * @return the responses, in request order.
+     */
+    public List<AbstractServerResponse> getResponseList() {
+        return Collections.unmodifiableList(responseList);
+    }
+
+    /**
+     * Get the id of the commit that holds the batch.
+     * @return the commit id, or null if nothing was committed.
+     */
+    public Integer getCommitId() {
+        return commitId;
+    }
+
+    /**
+     * Set the id of the commit that holds the batch.
+     * @param id the commit id.
+     */
+    public void setCommitId(Integer id) {
+        commitId = id;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void updateDirManagerProxy(ArchiveDirManagerProxy directoryManagerProxy) {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ResponseOperationType getOperationType() {
+        return ResponseOperationType.SR_BULK_OPERATION;
+    }
+}
@@ -0,0 +1,119 @@
+/*   Copyright 2004-2023 Jim Voris
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.qumasoft.qvcslib.response;
+
+import com.qumasoft.qvcslib.ArchiveDirManagerProxy;
+import com.qumasoft.qvcslib.RevisionHistoryPage;
+
+/**
+ * The response to a get revision history page request. The requester picks the page up from the future returned when it wrote the request.
+ *
+ * @author Jim Voris
+ */
+public class ServerResponseGetRevisionHistoryPage extends AbstractServerResponse {
+    private static final long serialVersionUID = -7364092163851705529L;
+
+    // These are serialized:
+    private String projectName = null;
+    private String branchName = null;
+    private String appendedPath = null;
+    private String shortWorkfileName = null;
+    private RevisionHistoryPage revisionHistoryPage = null;
+
+    /**
+     * Creates new ServerResponseGetRevisionHistoryPage.
+     */
+    public ServerResponseGetRevisionHistoryPage() {
+    }
+
+    @Override
+    public void updateDirManagerProxy(ArchiveDirManagerProxy directoryManagerProxy) {
+    }
+
+    @Override
+    public ResponseOperationType getOperationType() {
+        return ResponseOperationType.SR_GET_REVISION_HISTORY_PAGE;
+    }
+
+    /**
+     * @return the projectName
+     */
+    public String getProjectName() {
+        return projectName;
+    }
+
+    /**
+     * @param name the projectName to set
+     */
+    public void setProjectName(String name) {
+        this.projectName = name;
+    }
+
+    /**
+     * @return the branchName
+     */
+    public String getBranchName() {
+        return branchName;
+    }
+
+    /**
+     * @param name the branchName to set
+     */
+    public void setBranchName(String name) {
+        this.branchName = name;
+    }
+
+    /**
+     * @return the appendedPath
+     */
+    public String getAppendedPath() {
+        return appendedPath;
+    }
+
+    /**
+     * @param path the appendedPath to set
+     */
+    public void setAppendedPath(String path) {
+        this.appendedPath = path;
+    }
+
+    /**
+     * @return the shortWorkfileName
+     */
+    public String getShortWorkfileName() {
+        return shortWorkfileName;
+    }
+
+    /**
+     * @param name the shortWorkfileName to set
+     */
+    public void setShortWorkfileName(String name) {
+        this.shortWorkfileName = name;
+    }
+
+    /**
+     * @return the page of revision history.
+     */
+    public RevisionHistoryPage getRevisionHistoryPage() {
+        return revisionHistoryPage;
+    }
+
+    /**
+     * @param page the page of revision history.
+     */
+    public void setRevisionHistoryPage(RevisionHistoryPage page) {
+        this.revisionHistoryPage = page;
+    }
+}
@@ -72,16 +72,22 @@ public interface ServerResponseInterface extends Serializable {
         SR_GET_BRIEF_COMMIT_INFO_LIST,
         /** Check in response. */
         SR_CHECK_IN,
+        /** Bulk operation response. */
+        SR_BULK_OPERATION,
         /** Login response. */
         SR_LOGIN,
         /** Register client listener response. */
         SR_REGISTER_CLIENT_LISTENER,
+        /** Bulk register client listener response. */
+        SR_REGISTER_CLIENT_LISTENER_BULK,
         /** Create archive response. */
         SR_CREATE_ARCHIVE,
         /** Get logfile info response. */
         SR_GET_LOGFILE_INFO,
         /** Get all logfile info response. */
         SR_GET_ALL_LOGFILE_INFO,
+        /** Get revision history page response. */
+        SR_GET_REVISION_HISTORY_PAGE,
         /** Set obsolete response. */
         SR_SET_OBSOLETE,
         /** Add directory response. */
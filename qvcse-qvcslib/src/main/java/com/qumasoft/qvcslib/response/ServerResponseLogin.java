@@ -35,6 +35,7 @@ public class ServerResponseLogin extends AbstractServerResponse {
     private boolean versionsMatchFlag;
     private int webServerPort;
     private String failureReason;
+    private int wireProtocolVersion;
     private List<UserPropertyData> userPropertyList;
     private List<ViewUtilityCommandLineData> viewUtilityCommandLineDataList;
     private List<ViewUtilityFileExtensionCommandData> viewUtilityFileExtensionCommandDataList;
@@ -232,4 +233,20 @@ public class ServerResponseLogin extends AbstractServerResponse {
     public void setAutoUpdateJar(byte[] updateJarBytes) {
         this.autoUpdateJar = updateJarBytes;
     }
+
+    /**
+     * Get the wire protocol version that the server will use for this connection once it has sent this response.
+     * @return the negotiated wire protocol version.
+     */
+    public int getWireProtocolVersion() {
+        return wireProtocolVersion;
+    }
+
+    /**
+     * Set the negotiated wire protocol version.
+     * @param protocolVersion the negotiated wire protocol version.
+     */
+    public void setWireProtocolVersion(int protocolVersion) {
+        this.wireProtocolVersion = protocolVersion;
+    }
 }
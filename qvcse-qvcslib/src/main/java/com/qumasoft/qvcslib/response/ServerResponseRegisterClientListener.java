@@ -15,13 +15,17 @@
 package com.qumasoft.qvcslib.response;
 
 import com.qumasoft.qvcslib.ArchiveDirManagerProxy;
+import com.qumasoft.qvcslib.ArchiveInfoCacheStore;
 import com.qumasoft.qvcslib.QVCSConstants;
 import com.qumasoft.qvcslib.SkinnyLogfileInfo;
 import java.util.Collections;
+import java.util.List;
 import org.slf4j.LoggerFactory;
 
 /**
- * Register client listener response.
+ * Register client listener response. When the response carries a directory stamp, the client caches the archive information under that stamp. If the
+ * server found that the client's cached archive information is still current, the response is marked unchanged and carries no archive information; the
+ * client uses what it has cached instead.
  * @author Jim Voris
  */
 public class ServerResponseRegisterClientListener extends AbstractServerResponse {
@@ -37,6 +41,8 @@ public class ServerResponseRegisterClientListener extends AbstractServerResponse
     private Integer parentBranchId;
     private Boolean cemeteryInfoFlag;
     private Integer syncToken;
+    private Long directoryStamp;
+    private Boolean unchangedFlag;
     private final java.util.List<SkinnyLogfileInfo> logfileInformationArray = Collections.synchronizedList(new java.util.ArrayList<>());
 
     /**
@@ -44,6 +50,7 @@ public class ServerResponseRegisterClientListener extends AbstractServerResponse
      */
     public ServerResponseRegisterClientListener() {
         this.cemeteryInfoFlag = Boolean.FALSE;
+        this.unchangedFlag = Boolean.FALSE;
     }
 
     /**
@@ -60,8 +67,22 @@ public class ServerResponseRegisterClientListener extends AbstractServerResponse
     @Override
     public void updateDirManagerProxy(ArchiveDirManagerProxy directoryManagerProxy) {
         LOGGER.info("updateDirManagerProxy for: [{}]:[{}]:[{}]", directoryManagerProxy.getProjectName(), directoryManagerProxy.getBranchName(), directoryManagerProxy.getAppendedPath());
-        for (int i = 0; i < logfileInformationArray.size(); i++) {
-            SkinnyLogfileInfo skinnyLogfileInfo = logfileInformationArray.get(i);
+        List<SkinnyLogfileInfo> skinnyList = logfileInformationArray;
+        ArchiveInfoCacheStore cacheStore = directoryManagerProxy.getArchiveInfoCacheStore();
+        if (cacheStore != null && directoryStamp != null) {
+            if (unchangedFlag) {
+                ArchiveInfoCacheStore.CachedDirectory cachedDirectory = cacheStore.get(getAppendedPath());
+                if (cachedDirectory != null && cachedDirectory.getDirectoryStamp() == directoryStamp) {
+                    skinnyList = cachedDirectory.getSkinnyList();
+                } else {
+                    LOGGER.warn("No cached archive info for unchanged directory: [{}]:[{}]:[{}]", getProjectName(), getBranchName(), getAppendedPath());
+                }
+            } else {
+                cacheStore.put(getAppendedPath(), directoryStamp, logfileInformationArray);
+            }
+        }
+        for (int i = 0; i < skinnyList.size(); i++) {
+            SkinnyLogfileInfo skinnyLogfileInfo = skinnyList.get(i);
             LOGGER.debug("SkinnyInfo: [{}]:[{}]:[{}]", getBranchName(), skinnyLogfileInfo.getShortWorkfileName(), skinnyLogfileInfo.getDefaultRevisionString());
             directoryManagerProxy.updateArchiveInfo(skinnyLogfileInfo.getShortWorkfileName(), skinnyLogfileInfo);
         }
@@ -193,4 +214,36 @@ public class ServerResponseRegisterClientListener extends AbstractServerResponse
     public void setCemeteryInfoFlag(Boolean flag) {
         this.cemeteryInfoFlag = flag;
     }
+
+    /**
+     * Get the directory stamp of the archive information.
+     * @return the directory stamp, or null if the server did not stamp the archive information.
+     */
+    public Long getDirectoryStamp() {
+        return directoryStamp;
+    }
+
+    /**
+     * Set the directory stamp of the archive information.
+     * @param stamp the directory stamp.
+     */
+    public void setDirectoryStamp(Long stamp) {
+        this.directoryStamp = stamp;
+    }
+
+    /**
+     * Is the client's cached archive information for the directory still current. If so, this response carries no archive information.
+     * @return true if the client's cached archive information is still current.
+     */
+    public Boolean getUnchangedFlag() {
+        return unchangedFlag;
+    }
+
+    /**
+     * Set whether the client's cached archive information for the directory is still current.
+     * @param flag true if the client's cached archive information is still current.
+     */
+    public void setUnchangedFlag(Boolean flag) {
+        this.unchangedFlag = flag;
+    }
 }
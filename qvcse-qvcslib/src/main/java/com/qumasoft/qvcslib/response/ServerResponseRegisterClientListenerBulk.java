@@ -0,0 +1,100 @@
+/*   Copyright 2004-2023 Jim Voris
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.qumasoft.qvcslib.response;
+
+import com.qumasoft.qvcslib.ArchiveDirManagerProxy;
+
+/**
+ * Bulk register client listener response. The server sends this after it has sent a {@link ServerResponseRegisterClientListener} for each of the
+ * directories in the bulk request, so its arrival tells the client that all the directories have been registered.
+ * @author Jim Voris
+ */
+public class ServerResponseRegisterClientListenerBulk extends AbstractServerResponse {
+    private static final long serialVersionUID = 2651327946640148229L;
+
+    // These are serialized:
+    private String projectName;
+    private String branchName;
+    private int directoryCount;
+
+    /**
+     * Creates a new instance of ServerResponseRegisterClientListenerBulk.
+     */
+    public ServerResponseRegisterClientListenerBulk() {
+    }
+
+    /**
+     * Get the project name.
+     * @return the project name.
+     */
+    public String getProjectName() {
+        return projectName;
+    }
+
+    /**
+     * Set the project name.
+     * @param project the project name.
+     */
+    public void setProjectName(String project) {
+        projectName = project;
+    }
+
+    /**
+     * Get the branch name.
+     * @return the branch name.
+     */
+    public String getBranchName() {
+        return branchName;
+    }
+
+    /**
+     * Set the branch name.
+     * @param branch the branch name.
+     */
+    public void setBranchName(String branch) {
+        branchName = branch;
+    }
+
+    /**
+     * Get the number of directories that were registered.
+     * @return the number of directories that were registered.
+     */
+    public int getDirectoryCount() {
+        return directoryCount;
+    }
+
+    /**
+     * Set the number of directories that were registered.
+     * @param count the number of directories that were registered.
+     */
+    public void setDirectoryCount(int count) {
+        directoryCount = count;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void updateDirManagerProxy(ArchiveDirManagerProxy directoryManagerProxy) {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ResponseOperationType getOperationType() {
+        return ResponseOperationType.SR_REGISTER_CLIENT_LISTENER_BULK;
+    }
+}
@@ -0,0 +1,173 @@
+/*   Copyright 2004-2023 Jim Voris
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.qumasoft.qvcslib;
+
+import com.qumasoft.qvcslib.requestdata.ClientRequestClientData;
+import com.qumasoft.qvcslib.requestdata.ClientRequestGetMostRecentActivityData;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ * Test the pipelined request support in the abstract transport proxy.
+ *
+ * @author Jim Voris
+ */
+public class AbstractTransportProxyTest {
+
+    /**
+     * A transport that remembers what was written instead of sending it anywhere.
+     */
+    static class RecordingTransportProxy extends AbstractTransportProxy {
+        private final List<Object> writtenObjects = new CopyOnWriteArrayList<>();
+
+        RecordingTransportProxy() {
+            super("test", null, null, null);
+        }
+
+        @Override
+        public boolean open(int port) {
+            setIsOpen(true);
+            return true;
+        }
+
+        @Override
+        public void write(Object object) {
+            writtenObjects.add(object);
+        }
+
+        @Override
+        public String getTransportName() {
+            return "recording";
+        }
+
+        List<Object> getWrittenObjects() {
+            return writtenObjects;
+        }
+    }
+
+    /**
+     * Requests are written as soon as they are submitted, and each future completes with the response for its own token.
+     * @throws Exception if the test fails.
+     */
+    @Test
+    public void testPipelinedRequestsCompleteInOrder() throws Exception {
+        RecordingTransportProxy proxy = new RecordingTransportProxy();
+        proxy.open(0);
+        List<ClientRequestClientData> requests = new ArrayList<>();
+        List<CompletableFuture<Object>> futures = new ArrayList<>();
+        List<Integer> completionOrder = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            ClientRequestClientData request = new ClientRequestGetMostRecentActivityData();
+            requests.add(request);
+            CompletableFuture<Object> future = proxy.writeAsync(request);
+            future.thenAccept(response -> completionOrder.add(request.getSyncToken()));
+            futures.add(future);
+        }
+        // Nothing waited for a response before writing the next request.
+        assertEquals(requests, proxy.getWrittenObjects());
+        assertEquals(5, proxy.getInFlightRequestCount());
+
+        // The receive thread hands the responses back in the order the server sends them.
+        List<Object> responses = new ArrayList<>();
+        for (ClientRequestClientData request : requests) {
+            Object response = "Response for " + request.getSyncToken();
+            responses.add(response);
+            SynchronizationManager.getSynchronizationManager().completeOnToken(request.getSyncToken(), response);
+        }
+        for (int i = 0; i < futures.size(); i++) {
+            assertSame(responses.get(i), futures.get(i).get(1, TimeUnit.SECONDS));
+            assertEquals(requests.get(i).getSyncToken(), completionOrder.get(i));
+        }
+        assertEquals(0, proxy.getInFlightRequestCount());
+    }
+
+    /**
+     * When the in-flight window is full, the next request waits for a response before it is written.
+     * @throws Exception if the test fails.
+     */
+    @Test
+    public void testInFlightWindowLimitsOutstandingRequests() throws Exception {
+        RecordingTransportProxy proxy = new RecordingTransportProxy();
+        proxy.open(0);
+        proxy.setMaximumInFlightRequestCount(2);
+        ClientRequestClientData first = new ClientRequestGetMostRecentActivityData();
+        ClientRequestClientData second = new ClientRequestGetMostRecentActivityData();
+        ClientRequestClientData third = new ClientRequestGetMostRecentActivityData();
+        proxy.writeAsync(first);
+        proxy.writeAsync(second);
+
+        CompletableFuture<CompletableFuture<Object>> thirdSubmit = CompletableFuture.supplyAsync(() -> proxy.writeAsync(third));
+        try {
+            thirdSubmit.get(200, TimeUnit.MILLISECONDS);
+            fail("Expected the third request to wait for a free slot.");
+        } catch (TimeoutException e) {
+            assertEquals(2, proxy.getWrittenObjects().size());
+        }
+
+        SynchronizationManager.getSynchronizationManager().completeOnToken(first.getSyncToken(), "first");
+        CompletableFuture<Object> thirdFuture = thirdSubmit.get(5, TimeUnit.SECONDS);
+        assertEquals(3, proxy.getWrittenObjects().size());
+        assertSame(third, proxy.getWrittenObjects().get(2));
+        assertEquals(2, proxy.getInFlightRequestCount());
+
+        SynchronizationManager.getSynchronizationManager().completeOnToken(second.getSyncToken(), "second");
+        SynchronizationManager.getSynchronizationManager().completeOnToken(third.getSyncToken(), "third");
+        assertEquals("third", thirdFuture.get(1, TimeUnit.SECONDS));
+        assertEquals(0, proxy.getInFlightRequestCount());
+
+        try {
+            proxy.setMaximumInFlightRequestCount(0);
+            fail("Expected an empty window to be rejected.");
+        } catch (IllegalArgumentException e) {
+            assertEquals(2, proxy.getMaximumInFlightRequestCount());
+        }
+    }
+
+    /**
+     * Closing the connection fails the requests that are still waiting, and frees their slots.
+     * @throws Exception if the test fails.
+     */
+    @Test
+    public void testCloseFailsOutstandingRequests() throws Exception {
+        RecordingTransportProxy proxy = new RecordingTransportProxy();
+        proxy.open(0);
+        CompletableFuture<Object> future = proxy.writeAsync(new ClientRequestGetMostRecentActivityData());
+        assertFalse(future.isDone());
+        proxy.close();
+        try {
+            future.get(1, TimeUnit.SECONDS);
+            fail("Expected the outstanding request to fail.");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof QVCSRuntimeException);
+        }
+        assertEquals(0, proxy.getInFlightRequestCount());
+
+        // A closed connection fails new requests right away.
+        CompletableFuture<Object> closedFuture = proxy.writeAsync(new ClientRequestGetMostRecentActivityData());
+        assertTrue(closedFuture.isCompletedExceptionally());
+        assertEquals(0, proxy.getInFlightRequestCount());
+    }
+}
@@ -0,0 +1,182 @@
+/*   Copyright 2004-2023 Jim Voris
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.qumasoft.qvcslib;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the archive info cache store.
+ *
+ * @author Jim Voris
+ */
+public class ArchiveInfoCacheStoreTest {
+    private File testDirectory;
+    private File logFile;
+
+    @Before
+    public void setUp() throws IOException {
+        testDirectory = Files.createTempDirectory("archiveInfoCacheStoreTest").toFile();
+        logFile = new File(testDirectory, "archiveInfoCache.log");
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = testDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        testDirectory.delete();
+    }
+
+    private static SkinnyLogfileInfo createSkinnyInfo(String name, int fileId, String revisionString) {
+        SkinnyLogfileInfo skinnyInfo = new SkinnyLogfileInfo(name);
+        skinnyInfo.setFileID(fileId);
+        skinnyInfo.setDefaultRevisionString(revisionString);
+        skinnyInfo.setLastEditByString("JimVoris");
+        skinnyInfo.setLastCheckInDate(new Date(1_600_000_000_000L + fileId));
+        skinnyInfo.setBranchId(1);
+        skinnyInfo.setCommitId(fileId * 10);
+        return skinnyInfo;
+    }
+
+    private static List<SkinnyLogfileInfo> createSkinnyList(int count) {
+        List<SkinnyLogfileInfo> skinnyList = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            skinnyList.add(createSkinnyInfo("File" + i + ".java", i, "1." + i));
+        }
+        return skinnyList;
+    }
+
+    /**
+     * The stamp should not depend on the order of the files, but should change when any file changes.
+     */
+    @Test
+    public void testComputeDirectoryStamp() {
+        List<SkinnyLogfileInfo> skinnyList = createSkinnyList(3);
+        long stamp = ArchiveInfoCacheStore.computeDirectoryStamp(skinnyList);
+        List<SkinnyLogfileInfo> reversedList = Arrays.asList(skinnyList.get(2), skinnyList.get(1), skinnyList.get(0));
+        assertEquals(stamp, ArchiveInfoCacheStore.computeDirectoryStamp(reversedList));
+
+        skinnyList.set(1, createSkinnyInfo("File2.java", 2, "1.3"));
+        assertNotEquals(stamp, ArchiveInfoCacheStore.computeDirectoryStamp(skinnyList));
+
+        skinnyList.set(1, createSkinnyInfo("Renamed.java", 2, "1.2"));
+        assertNotEquals(stamp, ArchiveInfoCacheStore.computeDirectoryStamp(skinnyList));
+
+        assertNotEquals(stamp, ArchiveInfoCacheStore.computeDirectoryStamp(createSkinnyList(2)));
+        assertNotEquals(ArchiveInfoCacheStore.computeDirectoryStamp(new ArrayList<>()), ArchiveInfoCacheStore.computeDirectoryStamp(createSkinnyList(1)));
+    }
+
+    /**
+     * What we save should be there when the store is opened again, and only changed directories are appended.
+     */
+    @Test
+    public void testSaveAndReopen() {
+        ArchiveInfoCacheStore store = ArchiveInfoCacheStore.open(logFile);
+        List<SkinnyLogfileInfo> firstList = createSkinnyList(3);
+        long firstStamp = ArchiveInfoCacheStore.computeDirectoryStamp(firstList);
+        store.put("src", firstStamp, firstList);
+        store.put("src" + File.separator + "main", ArchiveInfoCacheStore.computeDirectoryStamp(new ArrayList<>()), new ArrayList<>());
+        store.save();
+        assertEquals(2, store.getLogRecordCount());
+
+        // Putting the same stamp again changes nothing, so nothing more is written.
+        store.put("src", firstStamp, firstList);
+        store.save();
+        assertEquals(2, store.getLogRecordCount());
+
+        List<SkinnyLogfileInfo> changedList = createSkinnyList(4);
+        long changedStamp = ArchiveInfoCacheStore.computeDirectoryStamp(changedList);
+        store.put("src", changedStamp, changedList);
+        store.save();
+        assertEquals(3, store.getLogRecordCount());
+
+        ArchiveInfoCacheStore reopened = ArchiveInfoCacheStore.open(logFile);
+        assertEquals(2, reopened.size());
+        assertEquals(3, reopened.getLogRecordCount());
+        ArchiveInfoCacheStore.CachedDirectory cachedDirectory = reopened.get("src");
+        assertNotNull(cachedDirectory);
+        assertEquals(changedStamp, cachedDirectory.getDirectoryStamp());
+        assertEquals(4, cachedDirectory.getSkinnyList().size());
+        SkinnyLogfileInfo skinnyInfo = cachedDirectory.getSkinnyList().get(3);
+        assertEquals("File4.java", skinnyInfo.getShortWorkfileName());
+        assertEquals("1.4", skinnyInfo.getDefaultRevisionString());
+        assertEquals(4, skinnyInfo.getFileID());
+        assertEquals(Integer.valueOf(40), skinnyInfo.getCommitId());
+        assertEquals(changedStamp, ArchiveInfoCacheStore.computeDirectoryStamp(cachedDirectory.getSkinnyList()));
+        assertEquals(0, reopened.get("src" + File.separator + "main").getSkinnyList().size());
+        assertNull(reopened.get("test"));
+    }
+
+    /**
+     * A record cut short by a crash should be dropped, along with anything after it, leaving the records before it intact.
+     * @throws Exception if the test fails.
+     */
+    @Test
+    public void testTornTailIsTruncated() throws Exception {
+        ArchiveInfoCacheStore store = ArchiveInfoCacheStore.open(logFile);
+        List<SkinnyLogfileInfo> firstList = createSkinnyList(2);
+        store.put("first", ArchiveInfoCacheStore.computeDirectoryStamp(firstList), firstList);
+        store.save();
+        long goodLength = logFile.length();
+        List<SkinnyLogfileInfo> secondList = createSkinnyList(5);
+        store.put("second", ArchiveInfoCacheStore.computeDirectoryStamp(secondList), secondList);
+        store.save();
+        try (RandomAccessFile file = new RandomAccessFile(logFile, "rw")) {
+            file.setLength(logFile.length() - 7);
+        }
+
+        ArchiveInfoCacheStore reopened = ArchiveInfoCacheStore.open(logFile);
+        assertEquals(1, reopened.size());
+        assertNotNull(reopened.get("first"));
+        assertNull(reopened.get("second"));
+        assertEquals(goodLength, logFile.length());
+    }
+
+    /**
+     * When the log has many more records than cached directories, saving it should compact it.
+     */
+    @Test
+    public void testCompaction() {
+        ArchiveInfoCacheStore store = ArchiveInfoCacheStore.open(logFile);
+        int saveCount = ArchiveInfoCacheStore.COMPACTION_MINIMUM_RECORDS;
+        for (int i = 0; i < saveCount; i++) {
+            List<SkinnyLogfileInfo> skinnyList = createSkinnyList(1 + (i % 2));
+            store.put("src", ArchiveInfoCacheStore.computeDirectoryStamp(skinnyList), skinnyList);
+            store.save();
+        }
+        assertEquals(1, store.getLogRecordCount());
+
+        ArchiveInfoCacheStore reopened = ArchiveInfoCacheStore.open(logFile);
+        assertEquals(1, reopened.size());
+        assertEquals(1 + ((saveCount - 1) % 2), reopened.get("src").getSkinnyList().size());
+    }
+}
@@ -15,9 +15,13 @@
 package com.qumasoft.qvcslib;
 
 import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
 import java.util.Properties;
 import org.junit.After;
 import org.junit.AfterClass;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import org.junit.Before;
@@ -453,6 +457,39 @@ public class CompareFilesWithApacheDiffTest {
         }
     }
 
+    @Test
+    public void testComputeEditScriptMatchesFileCompare() throws Exception {
+        System.out.println("testComputeEditScriptMatchesFileCompare");
+        String[][] filePairs = {
+            {"CompareTest1a.txt", "CompareTest1b.txt"},
+            {"CompareTest2b.txt", "CompareTest2a.txt"},
+            {"CompareTest3a.txt", "CompareTest3b.txt"},
+            {"CompareTest9a.txt", "CompareTest9b.txt"},
+            {"CompareTest12b.txt", "CompareTest12a.txt"}
+        };
+        for (String[] filePair : filePairs) {
+            CompareFilesWithApacheDiff compareFilesWithApacheDiff = compareFilesSetup(filePair[0], filePair[1]);
+            String[] args = compareFilesWithApacheDiff.getArgs();
+            try {
+                assertTrue(compareFilesWithApacheDiff.execute());
+                byte[] fileEditScript = Files.readAllBytes(new File(args[2]).toPath());
+                byte[] bufferA = Files.readAllBytes(new File(args[0]).toPath());
+                byte[] bufferB = Files.readAllBytes(new File(args[1]).toPath());
+                byte[] memoryEditScript = new CompareFilesWithApacheDiff().computeEditScript(bufferA, bufferB);
+
+                // The header holds the time the script was created, so skip over that when comparing.
+                int timeOffset = Long.BYTES;
+                int headerSize = CompareFilesEditHeader.getEditHeaderSize();
+                assertEquals(fileEditScript.length, memoryEditScript.length);
+                assertArrayEquals(Arrays.copyOfRange(fileEditScript, 0, timeOffset), Arrays.copyOfRange(memoryEditScript, 0, timeOffset));
+                assertArrayEquals(Arrays.copyOfRange(fileEditScript, headerSize, fileEditScript.length),
+                        Arrays.copyOfRange(memoryEditScript, headerSize, memoryEditScript.length));
+            } finally {
+                new File(args[2]).delete();
+            }
+        }
+    }
+
     private void compareFiles(String file1Name, String file2Name) throws QVCSException {
         String fullFile1Name;
         String fullFile2Name;
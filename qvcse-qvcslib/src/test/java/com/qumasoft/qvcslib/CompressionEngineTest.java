@@ -0,0 +1,129 @@
+/*   Copyright 2004-2023 Jim Voris
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.qumasoft.qvcslib;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.Deflater;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Test the compression engine.
+ *
+ * @author Jim Voris
+ */
+public class CompressionEngineTest {
+
+    private static byte[] createCompressibleBuffer() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            text.append("This is line ").append(i).append(" of a revision that should compress well.\n");
+        }
+        return text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Each registered algorithm should round trip, and record its algorithm in the compression header.
+     */
+    @Test
+    public void testRoundTripForEachAlgorithm() {
+        CompressionEngine engine = CompressionEngine.getInstance();
+        byte[] input = createCompressibleBuffer();
+        int[] algorithms = {RevisionCompressionHeader.COMPRESS_ALGORITHM_2, RevisionCompressionHeader.COMPRESS_ALGORITHM_3};
+        for (int algorithm : algorithms) {
+            byte[] compressed = engine.compress(input, "Test.java", algorithm);
+            assertNotNull(compressed);
+            assertTrue(compressed.length < input.length);
+            RevisionCompressionHeader header = RevisionCompressionHeader.fromBuffer(compressed);
+            assertEquals(algorithm, header.getCompressionType());
+            assertEquals(input.length, header.getInputSize());
+            assertEquals(compressed.length, header.getCompressedSize());
+            assertArrayEquals(input, engine.expand(compressed));
+        }
+    }
+
+    /**
+     * Pooled deflaters must not carry state from one buffer to the next, whatever level they were last used at.
+     */
+    @Test
+    public void testPooledDeflatersAreReset() {
+        byte[] input = createCompressibleBuffer();
+        byte[] expected = null;
+        for (int i = 0; i < 20; i++) {
+            int level = (i % 2 == 0) ? Deflater.BEST_SPEED : Deflater.BEST_COMPRESSION;
+            ZlibCompressor compressor = new ZlibCompressor(level);
+            assertTrue(compressor.compress(input));
+            assertArrayEquals(input, compressor.expand(compressor.getCompressedBuffer()));
+            if (level == Deflater.BEST_SPEED) {
+                if (expected == null) {
+                    expected = compressor.getCompressedBuffer();
+                } else {
+                    assertArrayEquals(expected, compressor.getCompressedBuffer());
+                }
+            }
+        }
+    }
+
+    /**
+     * Small buffers, already compressed content, and incompressible buffers are all left alone.
+     */
+    @Test
+    public void testPolicySkipsBuffersNotWorthCompressing() {
+        CompressionEngine engine = CompressionEngine.getInstance();
+        byte[] compressible = createCompressibleBuffer();
+
+        long tooSmallCount = engine.getSkippedTooSmallCount();
+        assertNull(engine.compress("small".getBytes(StandardCharsets.UTF_8), null));
+        assertEquals(tooSmallCount + 1, engine.getSkippedTooSmallCount());
+
+        long alreadyCompressedCount = engine.getSkippedAlreadyCompressedCount();
+        assertNull(engine.compress(compressible, "library.JAR"));
+        byte[] zipMagic = compressible.clone();
+        zipMagic[0] = 'P';
+        zipMagic[1] = 'K';
+        zipMagic[2] = 3;
+        zipMagic[3] = 4;
+        assertNull(engine.compress(zipMagic, null));
+        assertEquals(alreadyCompressedCount + 2, engine.getSkippedAlreadyCompressedCount());
+
+        long notWorthwhileCount = engine.getNotWorthwhileCount();
+        byte[] random = new byte[8192];
+        new Random(42L).nextBytes(random);
+        assertNull(engine.compress(random, null));
+        assertEquals(notWorthwhileCount + 1, engine.getNotWorthwhileCount());
+    }
+
+    /**
+     * The compression header should only accept registered algorithms, and the factory should not allow an algorithm id to be reused.
+     */
+    @Test
+    public void testAlgorithmRegistration() {
+        assertTrue(CompressionFactory.isRegistered(RevisionCompressionHeader.COMPRESS_ALGORITHM_3));
+        assertTrue(CompressionFactory.getCompressor(RevisionCompressionHeader.COMPRESS_ALGORITHM_3) instanceof RawDeflateCompressor);
+        assertFalse(CompressionFactory.isRegistered(Integer.MAX_VALUE));
+        try {
+            CompressionFactory.registerCompressor(RevisionCompressionHeader.COMPRESS_ALGORITHM_2, ZlibCompressor::new);
+            throw new AssertionError("Expected duplicate registration to fail.");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("already registered"));
+        }
+    }
+}
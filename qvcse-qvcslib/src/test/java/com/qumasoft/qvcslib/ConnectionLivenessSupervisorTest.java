@@ -0,0 +1,134 @@
+/*   Copyright 2004-2023 Jim Voris
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.qumasoft.qvcslib;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the connection liveness supervisor. The supervisor is driven by a clock we control, and swept by hand.
+ *
+ * @author Jim Voris
+ */
+public class ConnectionLivenessSupervisorTest {
+    private static final long TICK_MILLIS = 100L;
+    private static final long TIMEOUT_MILLIS = 1000L;
+
+    private final AtomicLong clock = new AtomicLong(TimeUnit.SECONDS.toNanos(5L));
+    private ConnectionLivenessSupervisor supervisor;
+
+    @Before
+    public void setUp() {
+        // A small wheel, so the timeout is more than one turn of the wheel.
+        supervisor = new ConnectionLivenessSupervisor(TICK_MILLIS, 4, clock::get);
+    }
+
+    private void advanceAndSweep(long millis) {
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+        supervisor.sweep();
+    }
+
+    /**
+     * A connection that is not heard from expires once, after its timeout, and not before.
+     */
+    @Test
+    public void testQuietConnectionExpires() {
+        AtomicInteger expiredCount = new AtomicInteger(0);
+        ConnectionLivenessSupervisor.Registration registration = supervisor.register("quiet", TIMEOUT_MILLIS, expiredCount::incrementAndGet);
+        assertEquals(1, supervisor.getRegistrationCount());
+        for (int i = 0; i < 9; i++) {
+            advanceAndSweep(TICK_MILLIS);
+        }
+        assertEquals(0, expiredCount.get());
+        advanceAndSweep(2 * TICK_MILLIS);
+        assertEquals(1, expiredCount.get());
+        assertTrue(registration.isCancelled());
+        assertEquals(0, supervisor.getRegistrationCount());
+        assertEquals(1L, supervisor.getExpiredCount());
+        advanceAndSweep(10 * TIMEOUT_MILLIS);
+        assertEquals(1, expiredCount.get());
+    }
+
+    /**
+     * A connection that keeps being heard from does not expire, and neither does one that is being written to.
+     */
+    @Test
+    public void testActiveConnectionsStayAlive() {
+        AtomicInteger expiredCount = new AtomicInteger(0);
+        ConnectionLivenessSupervisor.Registration touched = supervisor.register("touched", TIMEOUT_MILLIS, expiredCount::incrementAndGet);
+        ConnectionLivenessSupervisor.Registration busy = supervisor.register("busy", TIMEOUT_MILLIS, expiredCount::incrementAndGet);
+        busy.suspend();
+        for (int i = 0; i < 50; i++) {
+            advanceAndSweep(TICK_MILLIS);
+            if (i % 5 == 0) {
+                touched.touch();
+            }
+        }
+        assertEquals(0, expiredCount.get());
+
+        // Once the write is done, the busy connection gets a full timeout from then.
+        busy.resume();
+        touched.cancel();
+        advanceAndSweep(TIMEOUT_MILLIS - TICK_MILLIS);
+        assertEquals(0, expiredCount.get());
+        advanceAndSweep(2 * TICK_MILLIS);
+        assertEquals(1, expiredCount.get());
+        assertTrue(busy.isCancelled());
+    }
+
+    /**
+     * Connections that go quiet together are expired in the same sweep, and a sweep that has fallen behind catches up.
+     */
+    @Test
+    public void testBatchExpiry() {
+        AtomicInteger expiredCount = new AtomicInteger(0);
+        for (int i = 0; i < 100; i++) {
+            supervisor.register("connection-" + i, TIMEOUT_MILLIS, expiredCount::incrementAndGet);
+        }
+        ConnectionLivenessSupervisor.Registration cancelled = supervisor.register("cancelled", TIMEOUT_MILLIS, expiredCount::incrementAndGet);
+        assertTrue(cancelled.cancel());
+        assertFalse(cancelled.cancel());
+        supervisor.sweep();
+        advanceAndSweep(5 * TIMEOUT_MILLIS);
+        assertEquals(100, expiredCount.get());
+        assertEquals(0, supervisor.getRegistrationCount());
+    }
+
+    /**
+     * The round trip times the client reports are summarized.
+     */
+    @Test
+    public void testHeartBeatStatistics() {
+        ConnectionLivenessSupervisor.Registration registration = supervisor.register("heartbeat", TIMEOUT_MILLIS, () -> { });
+        assertTrue(registration.getHeartBeatStatistics().contains("not reported"));
+        registration.recordHeartBeat(-1L);
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(500L));
+        registration.recordHeartBeat(100L);
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(300L));
+        registration.recordHeartBeat(20L);
+        assertEquals(90L, registration.getSmoothedRoundTripMillis());
+        String statistics = registration.getHeartBeatStatistics();
+        assertTrue(statistics, statistics.contains("Heartbeats: [3]"));
+        assertTrue(statistics, statistics.contains("longest interval: [500 ms]"));
+        assertTrue(statistics, statistics.contains("last: [20 ms]"));
+        assertTrue(statistics, statistics.contains("min: [20 ms] max: [100 ms]"));
+    }
+}
@@ -0,0 +1,239 @@
+/*   Copyright 2004-2023 Jim Voris
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.qumasoft.qvcslib;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Ignore;
+import org.junit.Test;
+
+/**
+ * Test the Myers line diff. What matters is that it produces exactly the same edit scripts as the apache diff does.
+ *
+ * @author Jim Voris
+ */
+public class MyersLineDiffTest {
+    private static final String[] LINES = {
+        "}\n", "\n", "    return result;\n", "    RETURN result;\n", "\tint i = 0;\n", "int i = 0;\n", "    int  i = 0;\n", "// comment\r\n", "// comment\n", "x\n",
+    };
+
+    private static byte[] randomFile(Random random, int maximumLineCount, boolean lastLineFlag) {
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        int lineCount = random.nextInt(maximumLineCount + 1);
+        for (int i = 0; i < lineCount; i++) {
+            byte[] line = LINES[random.nextInt(LINES.length)].getBytes(StandardCharsets.UTF_8);
+            file.write(line, 0, line.length);
+        }
+        if (lastLineFlag) {
+            byte[] line = "no newline".getBytes(StandardCharsets.UTF_8);
+            file.write(line, 0, line.length);
+        }
+        return file.toByteArray();
+    }
+
+    private static byte[] editFile(Random random, byte[] original) {
+        String[] lines = new String(original, StandardCharsets.UTF_8).split("(?<=\n)");
+        StringBuilder edited = new StringBuilder();
+        for (String line : lines) {
+            int choice = random.nextInt(10);
+            if (choice == 0) {
+                continue;
+            } else if (choice == 1) {
+                edited.append(LINES[random.nextInt(LINES.length)]);
+            }
+            edited.append(line);
+        }
+        return edited.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static CompareFilesWithApacheDiff createCompare(int flags) {
+        CompareFilesWithApacheDiff compare = new CompareFilesWithApacheDiff();
+        compare.setIgnoreCaseFlag((flags & 1) != 0);
+        compare.setIgnoreAllWhiteSpace((flags & 2) != 0);
+        compare.setIgnoreLeadingWhiteSpace((flags & 4) != 0);
+        return compare;
+    }
+
+    private static void assertSameEditScript(byte[] bufferA, byte[] bufferB, int flags) throws QVCSOperationException {
+        CompareFilesWithApacheDiff apacheCompare = createCompare(flags);
+        CompareFilesWithApacheDiff compare = createCompare(flags);
+        byte[] expected;
+        try {
+            expected = apacheCompare.computeEditScriptWithApacheDiff(bufferA, bufferB);
+        } catch (QVCSRuntimeException e) {
+            // Altered lines can make the inserted bytes disagree with the byte count; that has to fail the same way.
+            try {
+                compare.computeEditScript(bufferA, bufferB);
+                fail("Expected a QVCSRuntimeException");
+            } catch (QVCSRuntimeException expectedException) {
+                assertEquals(e.getMessage(), expectedException.getMessage());
+            }
+            return;
+        }
+        byte[] actual = compare.computeEditScript(bufferA, bufferB);
+
+        // The header holds the time the script was created, so skip over that when comparing.
+        int timeOffset = Long.BYTES;
+        int headerSize = CompareFilesEditHeader.getEditHeaderSize();
+        String message = "[" + new String(bufferA, StandardCharsets.UTF_8) + "] -> [" + new String(bufferB, StandardCharsets.UTF_8) + "] flags: " + flags;
+        assertEquals(message, expected.length, actual.length);
+        assertArrayEquals(message, Arrays.copyOfRange(expected, 0, timeOffset), Arrays.copyOfRange(actual, 0, timeOffset));
+        assertArrayEquals(message, Arrays.copyOfRange(expected, headerSize, expected.length), Arrays.copyOfRange(actual, headerSize, actual.length));
+        assertEquals(message, apacheCompare.isEqual(), compare.isEqual());
+        assertEquals(apacheCompare.getFile1LineCount(), compare.getFile1LineCount());
+        assertEquals(apacheCompare.getFile2LineCount(), compare.getFile2LineCount());
+    }
+
+    /**
+     * Random files made from a handful of lines have lots of equally short edit scripts to choose from; we must choose the same one as the apache diff.
+     * @throws Exception if the test fails.
+     */
+    @Test
+    public void testRandomFilesMatchApacheDiff() throws Exception {
+        Random random = new Random(20231017L);
+        for (int i = 0; i < 3000; i++) {
+            byte[] bufferA = randomFile(random, 30, random.nextInt(4) == 0);
+            if (bufferA.length == 0) {
+                // The apache diff cannot insert into an empty file.
+                continue;
+            }
+            byte[] bufferB = random.nextBoolean() ? randomFile(random, 30, random.nextInt(4) == 0) : editFile(random, bufferA);
+            assertSameEditScript(bufferA, bufferB, i % 8);
+        }
+    }
+
+    /**
+     * Files that share a long prefix and suffix, and identical files.
+     * @throws Exception if the test fails.
+     */
+    @Test
+    public void testCommonPrefixAndSuffix() throws Exception {
+        StringBuilder commonLines = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            commonLines.append("line ").append(i).append('\n');
+        }
+        String common = commonLines.toString();
+        byte[] bufferA = (common + "a\nb\n" + common).getBytes(StandardCharsets.UTF_8);
+        byte[] bufferB = (common + "b\nc\nb\n" + common).getBytes(StandardCharsets.UTF_8);
+        assertSameEditScript(bufferA, bufferB, 0);
+        assertSameEditScript(bufferB, bufferA, 0);
+        assertSameEditScript(bufferA, (common + common).getBytes(StandardCharsets.UTF_8), 0);
+
+        CompareFilesWithApacheDiff compare = new CompareFilesWithApacheDiff();
+        byte[] editScript = compare.computeEditScript(bufferA, bufferA);
+        assertTrue(compare.isEqual());
+        assertEquals(CompareFilesEditHeader.getEditHeaderSize(), editScript.length);
+        compare.computeEditScript(bufferA, bufferB);
+        assertFalse(compare.isEqual());
+    }
+
+    /**
+     * Lines whose hashes collide must still get different ids.
+     */
+    @Test
+    public void testInternerChecksForCollisions() {
+        Map<Integer, byte[]> linesByHash = new HashMap<>();
+        byte[] first = null;
+        byte[] second = null;
+        for (int i = 0; first == null; i++) {
+            byte[] line = ("line " + i + "\n").getBytes(StandardCharsets.UTF_8);
+            byte[] previous = linesByHash.put(MyersLineDiff.Interner.hash(line, 0, line.length), line);
+            if (previous != null) {
+                first = previous;
+                second = line;
+            }
+        }
+        assertNotNull(second);
+        MyersLineDiff.Interner interner = new MyersLineDiff.Interner();
+        int firstId = interner.intern(first, 0, first.length);
+        int secondId = interner.intern(second, 0, second.length);
+        assertNotEquals(firstId, secondId);
+        assertEquals(firstId, interner.intern(first.clone(), 0, first.length));
+        assertEquals(secondId, interner.intern(second.clone(), 0, second.length));
+        assertEquals(2, interner.getCount());
+    }
+
+    /**
+     * Time the two diffs against each other on a large file with scattered edits, and on files that have nothing in common. This is for running by hand.
+     * @throws Exception if the test fails.
+     */
+    @Test
+    @Ignore
+    public void testCompareWithApacheDiffTiming() throws Exception {
+        Random random = new Random(17L);
+        StringBuilder largeFile = new StringBuilder();
+        for (int i = 0; i < 200_000; i++) {
+            largeFile.append(i % 7 == 0 ? "\n" : "    statement(" + random.nextInt(1000) + ");\n");
+        }
+        byte[] large = largeFile.toString().getBytes(StandardCharsets.UTF_8);
+        byte[] largeEdited = editLargeFile(random, large);
+        StringBuilder differentA = new StringBuilder();
+        StringBuilder differentB = new StringBuilder();
+        for (int i = 0; i < 2_500; i++) {
+            differentA.append("a ").append(i).append('\n');
+            differentB.append("b ").append(i).append('\n');
+        }
+        byte[][][] cases = {
+            {large, largeEdited},
+            {differentA.toString().getBytes(StandardCharsets.UTF_8), differentB.toString().getBytes(StandardCharsets.UTF_8)},
+        };
+        String[] caseNames = {"large file, scattered edits", "nothing in common"};
+        for (int c = 0; c < cases.length; c++) {
+            // Warm up, then measure.
+            for (int i = 0; i < 3; i++) {
+                new CompareFilesWithApacheDiff().computeEditScriptWithApacheDiff(cases[c][0], cases[c][1]);
+                new CompareFilesWithApacheDiff().computeEditScript(cases[c][0], cases[c][1]);
+            }
+            int iterations = 5;
+            long apacheStart = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                new CompareFilesWithApacheDiff().computeEditScriptWithApacheDiff(cases[c][0], cases[c][1]);
+            }
+            long apacheNanos = (System.nanoTime() - apacheStart) / iterations;
+            long myersStart = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                new CompareFilesWithApacheDiff().computeEditScript(cases[c][0], cases[c][1]);
+            }
+            long myersNanos = (System.nanoTime() - myersStart) / iterations;
+            System.out.println(caseNames[c] + ": apache diff: [" + (apacheNanos / 1_000_000L) + " ms] line diff: [" + (myersNanos / 1_000_000L) + " ms]");
+        }
+    }
+
+    private static byte[] editLargeFile(Random random, byte[] original) {
+        String[] lines = new String(original, StandardCharsets.UTF_8).split("(?<=\n)");
+        StringBuilder edited = new StringBuilder();
+        for (String line : lines) {
+            int choice = random.nextInt(500);
+            if (choice == 0) {
+                continue;
+            } else if (choice == 1) {
+                edited.append("    inserted(").append(random.nextInt(1000)).append(");\n");
+            }
+            edited.append(line);
+        }
+        return edited.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,195 @@
+/*   Copyright 2004-2023 Jim Voris
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.qumasoft.qvcslib;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Test the server response factory's outbound queue.
+ *
+ * @author Jim Voris
+ */
+public class ServerResponseFactoryTest {
+    private static final long TIMEOUT = 10_000L;
+    private static final int RESPONSE_COUNT = 200;
+
+    /**
+     * An output stream that keeps what is written to it, counts flushes, and can be told to hold up the first write after the stream header, like a client
+     * that is slow to read.
+     */
+    static class GatedOutputStream extends OutputStream {
+        private final ByteArrayOutputStream written = new ByteArrayOutputStream();
+        private final CountDownLatch gateLatch;
+        private final CountDownLatch blockedLatch = new CountDownLatch(1);
+        private final AtomicInteger flushCount = new AtomicInteger();
+        private volatile boolean headerWrittenFlag = false;
+        private volatile boolean failFlag = false;
+
+        GatedOutputStream(boolean gatedFlag) {
+            this.gateLatch = new CountDownLatch(gatedFlag ? 1 : 0);
+        }
+
+        void openGate() {
+            gateLatch.countDown();
+        }
+
+        boolean awaitBlocked() throws InterruptedException {
+            return blockedLatch.await(TIMEOUT, TimeUnit.MILLISECONDS);
+        }
+
+        void fail() {
+            failFlag = true;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) throws IOException {
+            if (failFlag) {
+                throw new IOException("Connection reset.");
+            }
+            if (headerWrittenFlag) {
+                blockedLatch.countDown();
+                try {
+                    gateLatch.await(TIMEOUT, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            synchronized (written) {
+                written.write(buffer, offset, length);
+            }
+        }
+
+        @Override
+        public void flush() {
+            if (!headerWrittenFlag) {
+                headerWrittenFlag = true;
+            } else {
+                flushCount.incrementAndGet();
+            }
+        }
+
+        int getFlushCount() {
+            return flushCount.get();
+        }
+
+        List<Object> readObjects() throws IOException, ClassNotFoundException {
+            byte[] bytes;
+            synchronized (written) {
+                bytes = written.toByteArray();
+            }
+            List<Object> objectList = new ArrayList<>();
+            try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                while (true) {
+                    objectList.add(in.readObject());
+                }
+            } catch (EOFException e) {
+                return objectList;
+            }
+        }
+    }
+
+    private static ServerResponseFactory createResponseFactory(OutputStream outputStream, long maxQueuedBytes) {
+        ServerResponseFactory responseFactory = new ServerResponseFactory(outputStream, 0, "127.0.0.1", maxQueuedBytes);
+        responseFactory.setIsUserLoggedIn(true);
+        return responseFactory;
+    }
+
+    /**
+     * Responses should reach the client in the order they were sent. The ones that pile up while the writer is busy go out together, with a single flush.
+     * @throws Exception if the test fails.
+     */
+    @Test
+    public void testResponsesAreWrittenInOrderWithBatchedFlushes() throws Exception {
+        GatedOutputStream outputStream = new GatedOutputStream(true);
+        ServerResponseFactory responseFactory = createResponseFactory(outputStream, ServerResponseFactory.DEFAULT_MAXIMUM_QUEUED_BYTES);
+        for (int i = 0; i < RESPONSE_COUNT; i++) {
+            responseFactory.createServerResponse(i);
+        }
+        outputStream.openGate();
+        assertTrue(responseFactory.awaitOutboundQueueEmpty(TIMEOUT));
+
+        List<Object> objectList = outputStream.readObjects();
+        assertEquals(RESPONSE_COUNT, objectList.size());
+        for (int i = 0; i < RESPONSE_COUNT; i++) {
+            assertEquals(i, objectList.get(i));
+        }
+        assertTrue("Expected batched flushes, but there were: " + outputStream.getFlushCount(), outputStream.getFlushCount() < RESPONSE_COUNT / 2);
+        assertEquals(0L, responseFactory.getQueuedOutboundBytes());
+    }
+
+    /**
+     * A producer should wait while the client's outbound queue is full, and carry on once the client catches up.
+     * @throws Exception if the test fails.
+     */
+    @Test
+    public void testProducerWaitsWhenQueueIsFull() throws Exception {
+        GatedOutputStream outputStream = new GatedOutputStream(true);
+        ServerResponseFactory responseFactory = createResponseFactory(outputStream, 1L);
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < 3; i++) {
+                responseFactory.createServerResponse(i);
+            }
+        });
+        producer.start();
+        assertTrue(outputStream.awaitBlocked());
+        producer.join(500L);
+        assertTrue("The producer should be waiting for room.", producer.isAlive());
+        assertTrue(responseFactory.isOutboundQueueFull());
+
+        outputStream.openGate();
+        producer.join(TIMEOUT);
+        assertFalse(producer.isAlive());
+        assertTrue(responseFactory.awaitOutboundQueueEmpty(TIMEOUT));
+        assertEquals(List.of(0, 1, 2), outputStream.readObjects());
+        assertFalse(responseFactory.getOutboundStatistics().contains("producer waits: [0]"));
+    }
+
+    /**
+     * A failed write should mark the connection dead, and later responses should be dropped without waiting.
+     * @throws Exception if the test fails.
+     */
+    @Test
+    public void testFailedWriteClosesConnection() throws Exception {
+        GatedOutputStream outputStream = new GatedOutputStream(false);
+        ServerResponseFactory responseFactory = createResponseFactory(outputStream, 1L);
+        outputStream.fail();
+        responseFactory.createServerResponse(1);
+        assertTrue(responseFactory.awaitOutboundQueueEmpty(TIMEOUT));
+        assertFalse(responseFactory.getConnectionAliveFlag());
+
+        responseFactory.createServerResponse(2);
+        responseFactory.createServerResponse(3);
+        assertEquals(0L, responseFactory.getQueuedOutboundBytes());
+    }
+}
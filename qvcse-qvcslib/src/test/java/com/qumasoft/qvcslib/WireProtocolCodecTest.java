@@ -0,0 +1,219 @@
+/*   Copyright 2004-2023 Jim Voris
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.qumasoft.qvcslib;
+
+import com.qumasoft.qvcslib.notifications.ServerNotificationCheckIn;
+import com.qumasoft.qvcslib.notifications.ServerNotificationRenameArchive;
+import com.qumasoft.qvcslib.requestdata.ClientRequestHeartBeatData;
+import com.qumasoft.qvcslib.response.ServerResponseGetRevision;
+import com.qumasoft.qvcslib.response.ServerResponseHeartBeat;
+import com.qumasoft.qvcslib.response.ServerResponseMessage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Test the binary wire protocol codec.
+ *
+ * @author Jim Voris
+ */
+public class WireProtocolCodecTest {
+
+    private static SkinnyLogfileInfo createSkinnyLogfileInfo() {
+        SkinnyLogfileInfo skinnyInfo = new SkinnyLogfileInfo("Test.java");
+        skinnyInfo.setLastCheckInDate(new Date(1234567890L));
+        skinnyInfo.setLastEditByString("JimVoris");
+        skinnyInfo.setDefaultRevisionString("1.5");
+        skinnyInfo.setSeparator("/");
+        skinnyInfo.setAttributes(new ArchiveAttributes(0x2a0));
+        skinnyInfo.setDefaultRevisionDigest(new byte[]{1, 2, 3, 4});
+        skinnyInfo.setBranchId(1);
+        skinnyInfo.setCommitId(42);
+        skinnyInfo.setFileRevisionId(99);
+        skinnyInfo.setRevisionCount(5);
+        skinnyInfo.setFileID(7);
+        skinnyInfo.setOverlapFlag(true);
+        return skinnyInfo;
+    }
+
+    private static void assertSkinnyLogfileInfoEquals(SkinnyLogfileInfo expected, SkinnyLogfileInfo actual) {
+        assertEquals(expected.getShortWorkfileName(), actual.getShortWorkfileName());
+        assertEquals(expected.getLastCheckInDate(), actual.getLastCheckInDate());
+        assertEquals(expected.getLastEditByString(), actual.getLastEditByString());
+        assertEquals(expected.getDefaultRevisionString(), actual.getDefaultRevisionString());
+        assertEquals(expected.getSeparator(), actual.getSeparator());
+        assertEquals(expected.getAttributes().getAttributesAsInt(), actual.getAttributes().getAttributesAsInt());
+        assertArrayEquals(expected.getDefaultRevisionDigest(), actual.getDefaultRevisionDigest());
+        assertEquals(expected.getBranchId(), actual.getBranchId());
+        assertEquals(expected.getCommitId(), actual.getCommitId());
+        assertEquals(expected.getFileRevisionId(), actual.getFileRevisionId());
+        assertEquals(expected.getCacheIndex(), actual.getCacheIndex());
+        assertEquals(expected.getRevisionCount(), actual.getRevisionCount());
+        assertEquals(expected.getFileID(), actual.getFileID());
+        assertEquals(expected.getOverlapFlag(), actual.getOverlapFlag());
+    }
+
+    /**
+     * Test a heartbeat round trip in each direction.
+     * @throws IOException if the codec fails.
+     */
+    @Test
+    public void testHeartBeatRoundTrip() throws IOException {
+        ClientRequestHeartBeatData request = new ClientRequestHeartBeatData();
+        request.setServerName("Test Server");
+        request.setSyncToken(12);
+        request.setRoundTripTime(42L);
+        byte[] frame = WireProtocolCodec.encode(request);
+        assertTrue(WireProtocolCodec.isFrame(frame));
+        assertEquals(WireProtocolCodec.MESSAGE_CLIENT_HEARTBEAT, frame[5]);
+        ClientRequestHeartBeatData decodedRequest = (ClientRequestHeartBeatData) WireProtocolCodec.decode(frame);
+        assertEquals("Test Server", decodedRequest.getServerName());
+        assertEquals(Integer.valueOf(12), decodedRequest.getSyncToken());
+        assertEquals(42L, decodedRequest.getRoundTripTime());
+
+        ServerResponseHeartBeat response = new ServerResponseHeartBeat();
+        response.setServerName("Test Server");
+        response.setSyncToken(13);
+        ServerResponseHeartBeat decodedResponse = (ServerResponseHeartBeat) WireProtocolCodec.decode(WireProtocolCodec.encode(response));
+        assertEquals("Test Server", decodedResponse.getServerName());
+        assertEquals(Integer.valueOf(13), decodedResponse.getSyncToken());
+    }
+
+    /**
+     * Test a get revision round trip, including a buffer large enough to be compressed.
+     * @throws IOException if the codec fails.
+     */
+    @Test
+    public void testGetRevisionRoundTrip() throws IOException {
+        StringBuilder revision = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            revision.append("This is line ").append(i).append(" of a revision that should compress well.\n");
+        }
+        byte[] buffer = revision.toString().getBytes(StandardCharsets.UTF_8);
+        ServerResponseGetRevision response = new ServerResponseGetRevision();
+        response.setClientWorkfileName("/work/Test.java");
+        response.setShortWorkfileName("Test.java");
+        response.setAppendedPath("src");
+        response.setProjectName("Test Project");
+        response.setBranchName("Trunk");
+        response.setRevisionString("1.5");
+        response.setSkinnyLogfileInfo(createSkinnyLogfileInfo());
+        response.setTimestampBehavior(Utility.TimestampBehavior.SET_TIMESTAMP_TO_CHECKIN_TIME);
+        response.setOverwriteBehavior(null);
+        response.setTimestamp(987654321L);
+        response.setSyncToken(14);
+        response.setBuffer(buffer);
+
+        byte[] frame = WireProtocolCodec.encode(response);
+        assertTrue("Expected the frame to be compressed", (frame[6] & WireProtocolCodec.FLAG_COMPRESSED) != 0);
+        assertTrue("Expected a smaller frame", frame.length < buffer.length);
+
+        ServerResponseGetRevision decoded = (ServerResponseGetRevision) WireProtocolCodec.decode(frame);
+        assertEquals(response.getClientWorkfileName(), decoded.getClientWorkfileName());
+        assertEquals(response.getShortWorkfileName(), decoded.getShortWorkfileName());
+        assertEquals(response.getAppendedPath(), decoded.getAppendedPath());
+        assertEquals(response.getProjectName(), decoded.getProjectName());
+        assertEquals(response.getBranchName(), decoded.getBranchName());
+        assertEquals(response.getRevisionString(), decoded.getRevisionString());
+        assertEquals(response.getTimestampBehavior(), decoded.getTimestampBehavior());
+        assertNull(decoded.getOverwriteBehavior());
+        assertEquals(response.getTimestamp(), decoded.getTimestamp());
+        assertEquals(response.getSyncToken(), decoded.getSyncToken());
+        assertArrayEquals(buffer, decoded.getBuffer());
+        assertSkinnyLogfileInfoEquals(response.getSkinnyLogfileInfo(), decoded.getSkinnyLogfileInfo());
+    }
+
+    /**
+     * Test notification round trips.
+     * @throws IOException if the codec fails.
+     */
+    @Test
+    public void testNotificationRoundTrip() throws IOException {
+        ServerNotificationCheckIn checkIn = new ServerNotificationCheckIn();
+        checkIn.setServerName("Test Server");
+        checkIn.setProjectName("Test Project");
+        checkIn.setBranchName("Trunk");
+        checkIn.setAppendedPath("src");
+        checkIn.setShortWorkfileName("Test.java");
+        checkIn.setBranchId(1);
+        checkIn.setSkinnyLogfileInfo(createSkinnyLogfileInfo());
+        ServerNotificationCheckIn decodedCheckIn = (ServerNotificationCheckIn) WireProtocolCodec.decode(WireProtocolCodec.encode(checkIn));
+        assertEquals(checkIn.getAppendedPath(), decodedCheckIn.getAppendedPath());
+        assertEquals(checkIn.getBranchId(), decodedCheckIn.getBranchId());
+        assertSkinnyLogfileInfoEquals(checkIn.getSkinnyLogfileInfo(), decodedCheckIn.getSkinnyLogfileInfo());
+
+        ServerNotificationRenameArchive rename = new ServerNotificationRenameArchive();
+        rename.setServerName("Test Server");
+        rename.setProjectName("Test Project");
+        rename.setBranchName("Trunk");
+        rename.setAppendedPath("src");
+        rename.setOldShortWorkfileName("Old.java");
+        rename.setNewShortWorkfileName("New.java");
+        rename.setBranchId(1);
+        ServerNotificationRenameArchive decodedRename = (ServerNotificationRenameArchive) WireProtocolCodec.decode(WireProtocolCodec.encode(rename));
+        assertEquals("Old.java", decodedRename.getOldShortWorkfileName());
+        assertEquals("New.java", decodedRename.getNewShortWorkfileName());
+        assertNull(decodedRename.getSkinnyLogfileInfo());
+    }
+
+    /**
+     * Messages without a hand written encoder should be carried as Java serialization inside a frame.
+     * @throws IOException if the codec fails.
+     */
+    @Test
+    public void testJavaSerializationFallback() throws IOException {
+        ServerResponseMessage message = new ServerResponseMessage("Hello", "Test Project", "Trunk", "src", ServerResponseMessage.HIGH_PRIORITY);
+        byte[] frame = WireProtocolCodec.encode(message);
+        assertEquals(WireProtocolCodec.MESSAGE_JAVA_SERIALIZED, frame[5]);
+        ServerResponseMessage decoded = (ServerResponseMessage) WireProtocolCodec.decode(frame);
+        assertEquals("Hello", decoded.getMessage());
+        assertEquals(ServerResponseMessage.HIGH_PRIORITY, decoded.getPriority());
+    }
+
+    /**
+     * A legacy compressed object buffer must never be mistaken for a frame.
+     * @throws IOException if serialization fails.
+     */
+    @Test
+    public void testLegacyCompressedBufferIsNotAFrame() throws IOException {
+        ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
+        try (ObjectOutputStream objectStream = new ObjectOutputStream(byteStream)) {
+            for (int i = 0; i < 100; i++) {
+                objectStream.writeObject(new ServerResponseMessage("Hello " + i, null, null, null, ServerResponseMessage.MEDIUM_PRIORITY));
+            }
+        }
+        ZlibCompressor compressor = new ZlibCompressor();
+        assertTrue(compressor.compress(byteStream.toByteArray()));
+        assertFalse(WireProtocolCodec.isFrame(compressor.getCompressedBuffer()));
+    }
+
+    /**
+     * The negotiated version is the lower of the two sides, never below Java serialization.
+     */
+    @Test
+    public void testNegotiateProtocolVersion() {
+        assertEquals(WireProtocolCodec.JAVA_SERIALIZATION_PROTOCOL_VERSION, WireProtocolCodec.negotiateProtocolVersion(0));
+        assertEquals(WireProtocolCodec.BINARY_PROTOCOL_VERSION, WireProtocolCodec.negotiateProtocolVersion(WireProtocolCodec.BINARY_PROTOCOL_VERSION));
+        assertEquals(WireProtocolCodec.BINARY_PROTOCOL_VERSION, WireProtocolCodec.negotiateProtocolVersion(WireProtocolCodec.BINARY_PROTOCOL_VERSION + 1));
+    }
+}
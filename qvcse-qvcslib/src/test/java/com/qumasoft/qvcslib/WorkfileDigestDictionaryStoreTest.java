@@ -0,0 +1,160 @@
+/*   Copyright 2004-2023 Jim Voris
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.qumasoft.qvcslib;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the log structured workfile digest store.
+ *
+ * @author Jim Voris
+ */
+public class WorkfileDigestDictionaryStoreTest {
+    private File testDirectory;
+    private File logFile;
+
+    @Before
+    public void setUp() throws IOException {
+        testDirectory = Files.createTempDirectory("workfileDigestStoreTest").toFile();
+        logFile = new File(testDirectory, "digest.log");
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = testDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        testDirectory.delete();
+    }
+
+    private WorkfileInfo createWorkfileInfo(String name) throws IOException {
+        File file = new File(testDirectory, name);
+        Files.write(file.toPath(), name.getBytes());
+        return new WorkfileInfo(file, false, "TestProject", "Trunk");
+    }
+
+    private static byte[] digestFor(int i) {
+        byte[] digest = new byte[32];
+        digest[0] = (byte) i;
+        digest[31] = (byte) (i >> 8);
+        return digest;
+    }
+
+    /**
+     * What we save should be there when the store is opened again, including changes made to a stored workfile info after it was added.
+     * @throws Exception if the test fails.
+     */
+    @Test
+    public void testSaveAndReopen() throws Exception {
+        WorkfileDigestDictionaryStore store = WorkfileDigestDictionaryStore.open(logFile, null);
+        WorkfileInfo first = createWorkfileInfo("First.java");
+        WorkfileInfo second = createWorkfileInfo("Second.java");
+        WorkfileInfo third = createWorkfileInfo("Third.java");
+        store.addWorkfileDigest(first, digestFor(1));
+        store.addWorkfileDigest(second, digestFor(2));
+        store.addWorkfileDigest(third, digestFor(3));
+        store.save();
+        assertEquals(3, store.getLogRecordCount());
+
+        // Nothing changed, so nothing more is written.
+        store.save();
+        assertEquals(3, store.getLogRecordCount());
+
+        store.lookupWorkfileInfo(first).setWorkfileRevisionString("1.4");
+        store.lookupWorkfileInfo(first).setFetchedDate(12345L);
+        store.removeWorkfileDigest(third);
+        store.save();
+        assertEquals(5, store.getLogRecordCount());
+
+        WorkfileDigestDictionaryStore reopenedStore = WorkfileDigestDictionaryStore.open(logFile, null);
+        assertEquals(2, reopenedStore.size());
+        assertArrayEquals(digestFor(1), reopenedStore.lookupWorkfileDigest(first));
+        assertArrayEquals(digestFor(2), reopenedStore.lookupWorkfileDigest(second));
+        assertNull(reopenedStore.lookupWorkfileDigest(third));
+
+        WorkfileInfoInterface storedInfo = reopenedStore.lookupWorkfileInfo(first);
+        assertEquals("1.4", storedInfo.getWorkfileRevisionString());
+        assertEquals(12345L, storedInfo.getFetchedDate());
+        assertEquals(first.getWorkfileSize(), storedInfo.getWorkfileSize());
+        assertEquals(first.getWorkfileLastChangedDate(), storedInfo.getWorkfileLastChangedDate());
+        assertEquals(first.getFullWorkfileName(), storedInfo.getFullWorkfileName());
+        assertNull(reopenedStore.lookupWorkfileInfo(second).getWorkfileRevisionString());
+    }
+
+    /**
+     * When the log holds mostly stale records, saving compacts it down to the live entries.
+     * @throws Exception if the test fails.
+     */
+    @Test
+    public void testCompaction() throws Exception {
+        WorkfileDigestDictionaryStore store = WorkfileDigestDictionaryStore.open(logFile, null);
+        WorkfileInfo workfileInfo = createWorkfileInfo("Churn.java");
+        for (int i = 0; i < WorkfileDigestDictionaryStore.COMPACTION_MINIMUM_RECORDS; i++) {
+            store.addWorkfileDigest(workfileInfo, digestFor(i));
+            store.save();
+        }
+        long uncompactedLength = logFile.length();
+        store.addWorkfileDigest(workfileInfo, digestFor(7));
+        store.save();
+        assertEquals(1, store.getLogRecordCount());
+        assertTrue(logFile.length() < uncompactedLength);
+
+        WorkfileDigestDictionaryStore reopenedStore = WorkfileDigestDictionaryStore.open(logFile, null);
+        assertEquals(1, reopenedStore.getLogRecordCount());
+        assertArrayEquals(digestFor(7), reopenedStore.lookupWorkfileDigest(workfileInfo));
+    }
+
+    /**
+     * A record cut short by a crash is dropped, and the records before it survive.
+     * @throws Exception if the test fails.
+     */
+    @Test
+    public void testTruncatedRecord() throws Exception {
+        WorkfileDigestDictionaryStore store = WorkfileDigestDictionaryStore.open(logFile, null);
+        WorkfileInfo first = createWorkfileInfo("First.java");
+        WorkfileInfo second = createWorkfileInfo("Second.java");
+        store.addWorkfileDigest(first, digestFor(1));
+        store.save();
+        long firstLength = logFile.length();
+        store.addWorkfileDigest(second, digestFor(2));
+        store.save();
+        try (RandomAccessFile file = new RandomAccessFile(logFile, "rw")) {
+            file.setLength(file.length() - 5);
+        }
+
+        WorkfileDigestDictionaryStore reopenedStore = WorkfileDigestDictionaryStore.open(logFile, null);
+        assertEquals(firstLength, logFile.length());
+        assertNotNull(reopenedStore.lookupWorkfileDigest(first));
+        assertNull(reopenedStore.lookupWorkfileDigest(second));
+
+        reopenedStore.addWorkfileDigest(second, digestFor(2));
+        reopenedStore.save();
+        assertArrayEquals(digestFor(2), WorkfileDigestDictionaryStore.open(logFile, null).lookupWorkfileDigest(second));
+    }
+}
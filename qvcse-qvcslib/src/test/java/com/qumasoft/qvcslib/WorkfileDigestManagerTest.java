@@ -0,0 +1,127 @@
+/*   Copyright 2004-2023 Jim Voris
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.qumasoft.qvcslib;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Test the streaming workfile digest computation.
+ *
+ * @author Jim Voris
+ */
+public class WorkfileDigestManagerTest {
+    private static File testDirectory;
+
+    @BeforeClass
+    public static void setUpClass() throws IOException {
+        testDirectory = Files.createTempDirectory("workfileDigestTest").toFile();
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        File[] files = testDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        testDirectory.delete();
+    }
+
+    private static File createFile(String name, int size) throws IOException {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        File file = new File(testDirectory, name);
+        Files.write(file.toPath(), bytes);
+        return file;
+    }
+
+    private static byte[] expectedDigest(File file) throws Exception {
+        return MessageDigest.getInstance(QVCSConstants.QVCSOS_DIGEST_ALGORITHM).digest(Files.readAllBytes(file.toPath()));
+    }
+
+    /**
+     * Files read through the buffer, including ones that end exactly on a buffer boundary, should get the same digest as digesting the whole file at once.
+     * @throws Exception if the test fails.
+     */
+    @Test
+    public void testBufferedDigest() throws Exception {
+        int[] sizes = {0, 1, WorkfileDigestManager.READ_BUFFER_SIZE - 1, WorkfileDigestManager.READ_BUFFER_SIZE, 3 * WorkfileDigestManager.READ_BUFFER_SIZE + 17};
+        for (int size : sizes) {
+            File file = createFile("buffered" + size + ".dat", size);
+            assertArrayEquals("size: " + size, expectedDigest(file), WorkfileDigestManager.computeDigest(file));
+        }
+    }
+
+    /**
+     * A large file should get the same digest as digesting the whole file at once.
+     * @throws Exception if the test fails.
+     */
+    @Test
+    public void testLargeFileDigest() throws Exception {
+        File file = createFile("large.dat", 4 * 1024 * 1024 + 12345);
+        assertArrayEquals(expectedDigest(file), WorkfileDigestManager.computeDigest(file));
+    }
+
+    /**
+     * Several threads computing digests at once should not disturb each other.
+     * @throws Exception if the test fails.
+     */
+    @Test
+    public void testConcurrentDigests() throws Exception {
+        List<File> fileList = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            fileList.add(createFile("concurrent" + i + ".dat", 10_000 * (i + 1)));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (int pass = 0; pass < 4; pass++) {
+                List<Callable<byte[]>> taskList = new ArrayList<>();
+                for (File file : fileList) {
+                    taskList.add(() -> WorkfileDigestManager.computeDigest(file));
+                }
+                List<Future<byte[]>> futureList = executor.invokeAll(taskList);
+                for (int i = 0; i < fileList.size(); i++) {
+                    assertArrayEquals(expectedDigest(fileList.get(i)), futureList.get(i).get());
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * A file we cannot read has no digest.
+     */
+    @Test
+    public void testMissingFile() {
+        assertNull(WorkfileDigestManager.computeDigest(new File(testDirectory, "doesNotExist.dat")));
+    }
+}
@@ -0,0 +1,132 @@
+/*   Copyright 2004-2023 Jim Voris
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.qumasoft.qvcslib;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the workspace change tracker.
+ *
+ * @author Jim Voris
+ */
+public class WorkspaceChangeTrackerTest {
+    private static final long TIMEOUT = 15_000L;
+    private final Object consumer = new Object();
+    private final Object otherConsumer = new Object();
+    private Path testDirectory;
+
+    @Before
+    public void setUp() throws IOException {
+        testDirectory = Files.createTempDirectory("workspaceChangeTrackerTest").toAbsolutePath().normalize();
+    }
+
+    @After
+    public void tearDown() {
+        WorkspaceChangeTracker.getInstance().stopTracking(testDirectory, consumer);
+        WorkspaceChangeTracker.getInstance().stopTracking(testDirectory, otherConsumer);
+        File[] files = testDirectory.toFile().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        testDirectory.toFile().delete();
+    }
+
+    private static Set<String> waitForChanges(Path directory, Object consumer, Set<String> expectedNames) throws InterruptedException {
+        Set<String> changedNames = new HashSet<>();
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (!changedNames.containsAll(expectedNames) && System.currentTimeMillis() < deadline) {
+            Set<String> names = WorkspaceChangeTracker.getInstance().takeChanges(directory, consumer);
+            assertNotNull(names);
+            changedNames.addAll(names);
+            Thread.sleep(20L);
+        }
+        return changedNames;
+    }
+
+    /**
+     * A directory that has never been reconciled needs a scan.
+     */
+    @Test
+    public void testUntrackedDirectoryNeedsReconcile() {
+        assertNull(WorkspaceChangeTracker.getInstance().takeChanges(testDirectory, consumer));
+    }
+
+    /**
+     * Once a directory has been reconciled, the files created, modified, and deleted in it are reported, and only once.
+     * @throws Exception if the test fails.
+     */
+    @Test
+    public void testChangesAreReported() throws Exception {
+        WorkspaceChangeTracker tracker = WorkspaceChangeTracker.getInstance();
+        Path existingFile = Files.write(testDirectory.resolve("Existing.java"), "existing".getBytes());
+        tracker.startReconcile(testDirectory, consumer);
+        Assume.assumeTrue("File watching is not available here.", tracker.isWatched(testDirectory));
+        assertEquals(0, tracker.takeChanges(testDirectory, consumer).size());
+
+        Files.write(testDirectory.resolve("Added.java"), "added".getBytes());
+        Files.write(existingFile, "modified".getBytes());
+        Set<String> changedNames = waitForChanges(testDirectory, consumer, Set.of("Added.java", "Existing.java"));
+        assertTrue(changedNames.toString(), changedNames.containsAll(Set.of("Added.java", "Existing.java")));
+
+        Files.delete(existingFile);
+        changedNames = waitForChanges(testDirectory, consumer, Set.of("Existing.java"));
+        assertTrue(changedNames.contains("Existing.java"));
+        assertTrue(changedNames.toString(), !changedNames.contains("Added.java"));
+    }
+
+    /**
+     * Two consumers of the same directory (e.g. the workfile directory managers for two branches) each hear about every change, and one of them stopping leaves the
+     * directory watched for the other.
+     * @throws Exception if the test fails.
+     */
+    @Test
+    public void testChangesAreReportedToEachConsumer() throws Exception {
+        WorkspaceChangeTracker tracker = WorkspaceChangeTracker.getInstance();
+        tracker.startReconcile(testDirectory, consumer);
+        tracker.startReconcile(testDirectory, otherConsumer);
+        Assume.assumeTrue("File watching is not available here.", tracker.isWatched(testDirectory));
+
+        Files.write(testDirectory.resolve("Shared.java"), "shared".getBytes());
+        Set<String> changedNames = waitForChanges(testDirectory, consumer, Set.of("Shared.java"));
+        assertTrue(changedNames.toString(), changedNames.contains("Shared.java"));
+        Set<String> otherChangedNames = waitForChanges(testDirectory, otherConsumer, Set.of("Shared.java"));
+        assertTrue(otherChangedNames.toString(), otherChangedNames.contains("Shared.java"));
+
+        tracker.stopTracking(testDirectory, consumer);
+        assertTrue(tracker.isWatched(testDirectory));
+        assertNull(tracker.takeChanges(testDirectory, consumer));
+        Files.write(testDirectory.resolve("Later.java"), "later".getBytes());
+        otherChangedNames = waitForChanges(testDirectory, otherConsumer, Set.of("Later.java"));
+        assertTrue(otherChangedNames.toString(), otherChangedNames.contains("Later.java"));
+
+        tracker.stopTracking(testDirectory, otherConsumer);
+        assertTrue(!tracker.isWatched(testDirectory));
+    }
+}
@@ -0,0 +1,112 @@
+/*   Copyright 2004-2019 Jim Voris
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.qumasoft.qvcslib.requestdata;
+
+import com.qumasoft.qvcslib.QVCSRuntimeException;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import org.junit.Test;
+
+/**
+ * Client Request Bulk Data Test.
+ * @author Jim Voris
+ */
+public class ClientRequestBulkDataTest {
+
+    /**
+     * Test of getProjectName method, of class ClientRequestBulkData.
+     */
+    @Test
+    public void testGetProjectName() {
+        ClientRequestBulkData instance = new ClientRequestBulkData();
+        String expResult = "Set project name";
+        instance.setProjectName(expResult);
+        String result = instance.getProjectName();
+        assertEquals(expResult, result);
+    }
+
+    /**
+     * Test of getBranchName method, of class ClientRequestBulkData.
+     */
+    @Test
+    public void testGetBranchName() {
+        ClientRequestBulkData instance = new ClientRequestBulkData();
+        String expResult = "Set branch name";
+        instance.setBranchName(expResult);
+        String result = instance.getBranchName();
+        assertEquals(expResult, result);
+    }
+
+    /**
+     * Test of getCommitMessage method, of class ClientRequestBulkData.
+     */
+    @Test
+    public void testGetCommitMessage() {
+        ClientRequestBulkData instance = new ClientRequestBulkData();
+        String expResult = "Set commit message";
+        instance.setCommitMessage(expResult);
+        String result = instance.getCommitMessage();
+        assertEquals(expResult, result);
+    }
+
+    /**
+     * Test of addRequest method, of class ClientRequestBulkData. The batched requests should come back in the order they were added.
+     */
+    @Test
+    public void testAddRequest() {
+        ClientRequestBulkData instance = new ClientRequestBulkData();
+        ClientRequestRenameData renameData = new ClientRequestRenameData();
+        ClientRequestCheckInData checkInData = new ClientRequestCheckInData();
+        ClientRequestDeleteFileData deleteFileData = new ClientRequestDeleteFileData();
+        instance.addRequest(renameData);
+        instance.addRequest(checkInData);
+        instance.addRequest(deleteFileData);
+        List<ClientRequestClientData> result = instance.getRequestList();
+        assertEquals(3, result.size());
+        assertSame(renameData, result.get(0));
+        assertSame(checkInData, result.get(1));
+        assertSame(deleteFileData, result.get(2));
+    }
+
+    /**
+     * Verify that we get a QVCSRuntimeException for a request type that cannot be batched.
+     */
+    @Test(expected=QVCSRuntimeException.class)
+    public void testAddUnsupportedRequest() {
+        ClientRequestBulkData instance = new ClientRequestBulkData();
+        instance.addRequest(new ClientRequestMoveFileData());
+    }
+
+    /**
+     * Verify that we get a QVCSRuntimeException for at least one of the invalid fields.
+     */
+    @Test(expected=QVCSRuntimeException.class)
+    public void testInvalidSet() {
+        ClientRequestBulkData instance = new ClientRequestBulkData();
+        instance.setFileID(1);
+    }
+
+    /**
+     * Test of getOperationType method, of class ClientRequestBulkData.
+     */
+    @Test
+    public void testGetOperationType() {
+        ClientRequestBulkData instance = new ClientRequestBulkData();
+        ClientRequestDataInterface.RequestOperationType expResult = ClientRequestDataInterface.RequestOperationType.BULK_OPERATION;
+        ClientRequestDataInterface.RequestOperationType result = instance.getOperationType();
+        assertEquals(expResult, result);
+    }
+}
@@ -0,0 +1,97 @@
+/*   Copyright 2004-2023 Jim Voris
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.qumasoft.qvcslib.requestdata;
+
+import com.qumasoft.qvcslib.QVCSRuntimeException;
+import java.io.File;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+/**
+ * Client Request Register Client Listener Bulk Data Test.
+ * @author Jim Voris
+ */
+public class ClientRequestRegisterClientListenerBulkDataTest {
+
+    private static String path(String... segments) {
+        return String.join(File.separator, segments);
+    }
+
+    /**
+     * Test of getProjectName method, of class ClientRequestRegisterClientListenerBulkData.
+     */
+    @Test
+    public void testGetProjectName() {
+        ClientRequestRegisterClientListenerBulkData instance = new ClientRequestRegisterClientListenerBulkData();
+        String expResult = "Set project name";
+        instance.setProjectName(expResult);
+        String result = instance.getProjectName();
+        assertEquals(expResult, result);
+    }
+
+    /**
+     * Test of getBranchName method, of class ClientRequestRegisterClientListenerBulkData.
+     */
+    @Test
+    public void testGetBranchName() {
+        ClientRequestRegisterClientListenerBulkData instance = new ClientRequestRegisterClientListenerBulkData();
+        String expResult = "Set branch name";
+        instance.setBranchName(expResult);
+        String result = instance.getBranchName();
+        assertEquals(expResult, result);
+    }
+
+    /**
+     * Test of addAppendedPath method, of class ClientRequestRegisterClientListenerBulkData. The paths should come back in the order they were added, and the
+     * appended path should be the deepest directory that holds them all.
+     */
+    @Test
+    public void testAddAppendedPath() {
+        ClientRequestRegisterClientListenerBulkData instance = new ClientRequestRegisterClientListenerBulkData();
+        instance.addAppendedPath(path("src", "main", "java"));
+        assertEquals(path("src", "main", "java"), instance.getAppendedPath());
+        instance.addAppendedPath(path("src", "main", "java", "com"));
+        assertEquals(path("src", "main", "java"), instance.getAppendedPath());
+        instance.addAppendedPath(path("src", "main", "javadoc"));
+        assertEquals(path("src", "main"), instance.getAppendedPath());
+        instance.addAppendedPath(path("test"));
+        assertEquals("", instance.getAppendedPath());
+        List<String> result = instance.getAppendedPathList();
+        assertEquals(4, result.size());
+        assertEquals(path("src", "main", "java"), result.get(0));
+        assertEquals(path("test"), result.get(3));
+    }
+
+    /**
+     * Verify that we get a QVCSRuntimeException for at least one of the invalid fields.
+     */
+    @Test(expected=QVCSRuntimeException.class)
+    public void testInvalidSet() {
+        ClientRequestRegisterClientListenerBulkData instance = new ClientRequestRegisterClientListenerBulkData();
+        instance.setFileID(1);
+    }
+
+    /**
+     * Test of getOperationType method, of class ClientRequestRegisterClientListenerBulkData.
+     */
+    @Test
+    public void testGetOperationType() {
+        ClientRequestRegisterClientListenerBulkData instance = new ClientRequestRegisterClientListenerBulkData();
+        ClientRequestDataInterface.RequestOperationType expResult = ClientRequestDataInterface.RequestOperationType.REGISTER_CLIENT_LISTENER_BULK;
+        ClientRequestDataInterface.RequestOperationType result = instance.getOperationType();
+        assertEquals(expResult, result);
+    }
+}
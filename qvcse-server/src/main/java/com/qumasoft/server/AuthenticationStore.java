@@ -89,6 +89,7 @@ public final class AuthenticationStore implements Serializable {
                     LOGGER.warn("AuthenticationStore.removeUser -- user: [{}] already deleted.", userName);
                 } else {
                     retVal = userDAO.delete(user);
+                    RolePrivilegesManager.getInstance().invalidateUserRoles();
                 }
             } else {
                 LOGGER.warn("AuthenticationStore.removeUser -- attempt to remove non-existing user: [{}]", userName);
@@ -0,0 +1,141 @@
+/*   Copyright 2004-2023 Jim Voris
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.qumasoft.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Blocking streams on top of a non-blocking socket channel. The channel has to stay in non-blocking mode so that the connection server's selector can watch
+ * it while the connection is idle, but the object streams that carry the client requests and server responses need blocking reads and writes. When the
+ * channel has nothing to read, or no room to write, these streams wait for it on a selector that belongs to the calling thread.
+ *
+ * @author Jim Voris
+ */
+final class ChannelStreams {
+
+    private static final ThreadLocal<Selector> THREAD_SELECTOR = new ThreadLocal<>();
+
+    private ChannelStreams() {
+    }
+
+    /**
+     * Wait until the channel is ready for the given operation.
+     * @param channel the channel.
+     * @param operation SelectionKey.OP_READ or SelectionKey.OP_WRITE.
+     * @param timeout how long to wait, in milliseconds.
+     * @throws IOException if the channel is closed, or we time out.
+     */
+    private static void waitFor(SocketChannel channel, int operation, long timeout) throws IOException {
+        Selector selector = THREAD_SELECTOR.get();
+        if (selector == null) {
+            selector = Selector.open();
+            THREAD_SELECTOR.set(selector);
+        }
+        SelectionKey key = channel.register(selector, operation);
+        try {
+            if (selector.select(timeout) == 0) {
+                throw new SocketTimeoutException("Timed out waiting for client: [" + channel.socket().getRemoteSocketAddress() + "]");
+            }
+        } finally {
+            key.cancel();
+            // Flush the cancelled key so the channel can be registered with this selector again.
+            selector.selectNow();
+        }
+    }
+
+    /**
+     * An input stream that reads from a non-blocking channel, blocking until data arrives. It never reads ahead, so everything the selector sees as
+     * readable is still in the channel.
+     */
+    static final class ChannelInputStream extends InputStream {
+        private final SocketChannel channel;
+        private final long timeout;
+
+        ChannelInputStream(SocketChannel socketChannel, long timeoutMillis) {
+            this.channel = socketChannel;
+            this.timeout = timeoutMillis;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] oneByte = new byte[1];
+            int count = read(oneByte, 0, 1);
+            if (count < 0) {
+                return -1;
+            }
+            return Byte.toUnsignedInt(oneByte[0]);
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, offset, length);
+            while (true) {
+                int count = channel.read(byteBuffer);
+                if (count != 0) {
+                    return count;
+                }
+                waitFor(channel, SelectionKey.OP_READ, timeout);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * An output stream that writes to a non-blocking channel, blocking until everything has been written.
+     */
+    static final class ChannelOutputStream extends OutputStream {
+        private final SocketChannel channel;
+        private final long timeout;
+
+        ChannelOutputStream(SocketChannel socketChannel, long timeoutMillis) {
+            this.channel = socketChannel;
+            this.timeout = timeoutMillis;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) throws IOException {
+            ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, offset, length);
+            while (byteBuffer.hasRemaining()) {
+                if (channel.write(byteBuffer) == 0) {
+                    waitFor(channel, SelectionKey.OP_WRITE, timeout);
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
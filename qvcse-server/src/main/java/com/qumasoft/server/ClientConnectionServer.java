@@ -0,0 +1,361 @@
+/*   Copyright 2004-2023 Jim Voris
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.qumasoft.server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Accept client connections and dispatch their requests. A single selector thread watches the listen ports and every idle client connection. When a client
+ * sends a request, its connection is taken off the selector and handed to the bounded request executor, which runs the request to completion
+ * ({@link com.qumasoft.server.clientrequest.ClientRequestInterface#execute} is still the unit of work); then the connection goes back on the selector. An
+ * idle connection costs a selection key, not a thread.
+ *
+ * <p>There is a limit on the number of open connections (we refuse connections beyond it), and on the number of requests in flight at once (further
+ * ready connections wait their turn on the selector thread, in arrival order).</p>
+ *
+ * <p>Closing a connection can wait for its queued responses to reach the client, so connections are closed on a separate executor; the selector thread
+ * never waits on a client.</p>
+ *
+ * @author Jim Voris
+ */
+final class ClientConnectionServer implements Runnable {
+    // Create our logger object
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClientConnectionServer.class);
+
+    /** How often we look for connections whose client has gone quiet. */
+    private static final long SELECT_TIMEOUT = 1000L;
+
+    /** How long shutdown waits for the connections it is closing. */
+    private static final long CLOSE_TIMEOUT = 30_000L;
+
+    private final int[] listenPorts;
+    private final ExecutorService requestExecutor;
+    private final int maximumConnectionCount;
+    private final int maximumInFlightRequestCount;
+    private final Function<SocketChannel, ServerWorker> workerFactory;
+    private final Selector selector;
+    private final ExecutorService closeExecutor = Executors.newCachedThreadPool(new CloseThreadFactory());
+    private final List<ServerSocketChannel> serverChannels = new ArrayList<>();
+    private final Set<ServerWorker> connections = ConcurrentHashMap.newKeySet();
+
+    /** Connections whose request has finished, waiting for the selector thread to put them back on the selector. */
+    private final Queue<ServerWorker> completedQueue = new ConcurrentLinkedQueue<>();
+
+    /** Connections with a request ready, waiting for an in-flight slot. Only the selector thread touches this. */
+    private final Deque<ServerWorker> waitingQueue = new ArrayDeque<>();
+
+    /** Only the selector thread touches this. */
+    private int inFlightCount = 0;
+
+    private final Object stateLock = new Object();
+    private boolean stoppedFlag = false;
+    private volatile boolean closeRequestedFlag = false;
+
+    /**
+     * Create a connection server.
+     * @param ports the ports to listen on.
+     * @param executor the executor that runs client requests. Its thread count bounds the number of requests that execute at once.
+     * @param maxConnections the maximum number of open client connections.
+     * @param maxInFlightRequests the maximum number of requests that may be handed to the executor at once.
+     * @throws IOException if we cannot open a selector.
+     */
+    ClientConnectionServer(int[] ports, ExecutorService executor, int maxConnections, int maxInFlightRequests) throws IOException {
+        this(ports, executor, maxConnections, maxInFlightRequests, ServerWorker::new);
+    }
+
+    /**
+     * Create a connection server that uses the given factory to create the handler for each client connection.
+     * @param ports the ports to listen on.
+     * @param executor the executor that runs client requests.
+     * @param maxConnections the maximum number of open client connections.
+     * @param maxInFlightRequests the maximum number of requests that may be handed to the executor at once.
+     * @param factory creates the handler for a newly accepted connection.
+     * @throws IOException if we cannot open a selector.
+     */
+    ClientConnectionServer(int[] ports, ExecutorService executor, int maxConnections, int maxInFlightRequests, Function<SocketChannel, ServerWorker> factory)
+            throws IOException {
+        if (maxConnections < 1 || maxInFlightRequests < 1) {
+            throw new IllegalArgumentException("Connection and in-flight request limits must be at least 1.");
+        }
+        this.listenPorts = ports.clone();
+        this.requestExecutor = executor;
+        this.maximumConnectionCount = maxConnections;
+        this.maximumInFlightRequestCount = maxInFlightRequests;
+        this.workerFactory = factory;
+        this.selector = Selector.open();
+    }
+
+    /**
+     * Stop accepting connections, and close the connections to all clients. A request that is executing is allowed to finish; its connection is closed
+     * when it does.
+     */
+    void close() {
+        closeRequestedFlag = true;
+        selector.wakeup();
+    }
+
+    /**
+     * Get the number of open client connections.
+     * @return the number of open client connections.
+     */
+    int getConnectionCount() {
+        return connections.size();
+    }
+
+    @Override
+    public void run() {
+        try {
+            for (int port : listenPorts) {
+                ServerSocketChannel serverChannel = ServerSocketChannel.open();
+                serverChannel.bind(new InetSocketAddress(port));
+                serverChannel.configureBlocking(false);
+                serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+                serverChannels.add(serverChannel);
+                LOGGER.info("Non secure server is listening on port: [" + port + "]");
+            }
+            long nextReapTime = System.currentTimeMillis() + SELECT_TIMEOUT;
+            while (!closeRequestedFlag) {
+                selector.select(SELECT_TIMEOUT);
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept((ServerSocketChannel) key.channel());
+                    } else if (key.isReadable()) {
+                        // Stop watching this connection until its request is done.
+                        key.interestOps(0);
+                        dispatch((ServerWorker) key.attachment());
+                    }
+                }
+                rearmCompletedConnections();
+                while (inFlightCount < maximumInFlightRequestCount && !waitingQueue.isEmpty()) {
+                    dispatch(waitingQueue.pollFirst());
+                }
+                long now = System.currentTimeMillis();
+                if (now >= nextReapTime) {
+                    closeQuietConnections();
+                    nextReapTime = now + SELECT_TIMEOUT;
+                }
+            }
+        } catch (ClosedSelectorException | IOException e) {
+            LOGGER.warn(e.getLocalizedMessage(), e);
+        } finally {
+            shutdown();
+        }
+    }
+
+    private void accept(ServerSocketChannel serverChannel) throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        if (connections.size() >= maximumConnectionCount) {
+            LOGGER.warn("Refusing connection from: [{}]. There are already [{}] client connections.", channel.socket().getInetAddress().getHostAddress(),
+                    connections.size());
+            channel.close();
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        channel.socket().setKeepAlive(true);
+
+        LOGGER.info("QVCSEnterpriseServer: got non-secure connect");
+        LOGGER.info("local  socket port: [" + channel.socket().getLocalPort() + "]");
+        LOGGER.info("remote socket port: [" + channel.socket().getPort() + "]");
+
+        ServerWorker worker = workerFactory.apply(channel);
+        connections.add(worker);
+        if (worker.open()) {
+            worker.setSelectionKey(channel.register(selector, SelectionKey.OP_READ, worker));
+        } else {
+            closeConnection(worker);
+        }
+    }
+
+    private void dispatch(ServerWorker worker) {
+        if (inFlightCount >= maximumInFlightRequestCount) {
+            waitingQueue.addLast(worker);
+            return;
+        }
+        synchronized (stateLock) {
+            worker.setInFlightFlag(true);
+        }
+        inFlightCount++;
+        try {
+            requestExecutor.execute(() -> handleRequest(worker));
+        } catch (RejectedExecutionException e) {
+            LOGGER.warn("Request executor rejected request from: [{}]", worker.getChannel().socket().getInetAddress().getHostAddress());
+            inFlightCount--;
+            synchronized (stateLock) {
+                worker.setInFlightFlag(false);
+            }
+            closeConnection(worker);
+        }
+    }
+
+    /**
+     * This runs on a request executor thread.
+     * @param worker the connection that has a request ready.
+     */
+    private void handleRequest(ServerWorker worker) {
+        boolean keepOpenFlag = false;
+        try {
+            keepOpenFlag = worker.handleClientRequests();
+        } finally {
+            if (!keepOpenFlag) {
+                closeConnection(worker);
+            }
+            boolean closeNowFlag;
+            synchronized (stateLock) {
+                worker.setInFlightFlag(false);
+                closeNowFlag = stoppedFlag;
+                if (!closeNowFlag) {
+                    completedQueue.add(worker);
+                }
+            }
+            if (closeNowFlag) {
+                closeConnection(worker);
+            } else {
+                selector.wakeup();
+            }
+        }
+    }
+
+    private void rearmCompletedConnections() {
+        ServerWorker worker;
+        while ((worker = completedQueue.poll()) != null) {
+            inFlightCount--;
+            SelectionKey key = worker.getSelectionKey();
+            if (worker.isAlive() && key != null && key.isValid()) {
+                key.interestOps(SelectionKey.OP_READ);
+            } else {
+                closeConnection(worker);
+            }
+        }
+    }
+
+    /**
+     * Close the idle connections whose client we have not heard from in too long, or whose response stream has failed.
+     */
+    private void closeQuietConnections() {
+        for (ServerWorker worker : connections) {
+            boolean idleFlag;
+            synchronized (stateLock) {
+                idleFlag = !worker.getInFlightFlag();
+            }
+            if (idleFlag && !waitingQueue.contains(worker) && !worker.isAlive()) {
+                LOGGER.info("Closing quiet connection to: [{}]", worker.getChannel().socket().getInetAddress().getHostAddress());
+                closeConnection(worker);
+            }
+        }
+    }
+
+    private void closeConnection(ServerWorker worker) {
+        SelectionKey key = worker.getSelectionKey();
+        if (key != null) {
+            key.cancel();
+        }
+        connections.remove(worker);
+        try {
+            closeExecutor.execute(worker::close);
+        } catch (RejectedExecutionException e) {
+            // We have shut down; this is a request thread finishing the request that was in flight, so it can wait for the close itself.
+            worker.close();
+        }
+    }
+
+    private void shutdown() {
+        synchronized (stateLock) {
+            stoppedFlag = true;
+        }
+        for (ServerSocketChannel serverChannel : serverChannels) {
+            try {
+                serverChannel.close();
+            } catch (IOException e) {
+                LOGGER.trace("QVCS Enterprise IOException when closing server socket: [{}]", e.getLocalizedMessage());
+            }
+        }
+        for (ServerWorker worker : connections) {
+            boolean idleFlag;
+            synchronized (stateLock) {
+                idleFlag = !worker.getInFlightFlag();
+            }
+            // Anything in flight closes its own connection when its request finishes.
+            if (idleFlag) {
+                closeConnection(worker);
+            }
+        }
+        completedQueue.clear();
+        waitingQueue.clear();
+        closeExecutor.shutdown();
+        try {
+            if (!closeExecutor.awaitTermination(CLOSE_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                LOGGER.warn("Timed out waiting for client connections to close.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            LOGGER.trace(e.getLocalizedMessage(), e);
+        }
+        for (int port : listenPorts) {
+            LOGGER.info("QVCSEnterpriseServer: closing listener thread for port: [" + port + "]");
+        }
+    }
+
+    /**
+     * Name the threads that close connections so they are easy to find in a thread dump.
+     */
+    static class CloseThreadFactory implements ThreadFactory {
+        private final AtomicInteger threadCounter = new AtomicInteger(0);
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "client connection close " + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
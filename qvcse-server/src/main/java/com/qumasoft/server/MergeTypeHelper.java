@@ -18,30 +18,23 @@ package com.qumasoft.server;
 import com.qumasoft.qvcslib.QVCSConstants;
 import com.qumasoft.qvcslib.QVCSRuntimeException;
 import com.qvcsos.server.DatabaseManager;
+import com.qvcsos.server.DirectoryLocationIndex;
 import com.qvcsos.server.SourceControlBehaviorManager;
 import com.qvcsos.server.dataaccess.BranchDAO;
-import com.qvcsos.server.dataaccess.DirectoryDAO;
-import com.qvcsos.server.dataaccess.DirectoryLocationDAO;
 import com.qvcsos.server.dataaccess.FileNameDAO;
 import com.qvcsos.server.dataaccess.FileNameHistoryDAO;
 import com.qvcsos.server.dataaccess.FunctionalQueriesDAO;
 import com.qvcsos.server.dataaccess.ProjectDAO;
 import com.qvcsos.server.dataaccess.impl.BranchDAOImpl;
-import com.qvcsos.server.dataaccess.impl.DirectoryDAOImpl;
-import com.qvcsos.server.dataaccess.impl.DirectoryLocationDAOImpl;
 import com.qvcsos.server.dataaccess.impl.FileNameDAOImpl;
 import com.qvcsos.server.dataaccess.impl.FileNameHistoryDAOImpl;
 import com.qvcsos.server.dataaccess.impl.FunctionalQueriesDAOImpl;
 import com.qvcsos.server.dataaccess.impl.ProjectDAOImpl;
 import com.qvcsos.server.datamodel.Branch;
-import com.qvcsos.server.datamodel.Directory;
-import com.qvcsos.server.datamodel.DirectoryLocation;
 import com.qvcsos.server.datamodel.FileName;
 import com.qvcsos.server.datamodel.FileNameHistory;
 import com.qvcsos.server.datamodel.Project;
 import java.sql.SQLException;
-import java.util.ArrayDeque;
-import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -65,8 +58,6 @@ public class MergeTypeHelper {
 
     private final ProjectDAO projectDAO;
     private final BranchDAO branchDAO;
-    private final DirectoryDAO directoryDAO;
-    private final DirectoryLocationDAO directoryLocationDAO;
     private final FileNameDAO fileNameDAO;
     private final FileNameHistoryDAO fileNameHistoryDAO;
     private final FunctionalQueriesDAO functionalQueriesDAO;
@@ -87,8 +78,6 @@ public class MergeTypeHelper {
 
         this.projectDAO = new ProjectDAOImpl(schemaName);
         this.branchDAO = new BranchDAOImpl(schemaName);
-        this.directoryDAO = new DirectoryDAOImpl(schemaName);
-        this.directoryLocationDAO = new DirectoryLocationDAOImpl(schemaName);
         this.fileNameDAO = new FileNameDAOImpl(schemaName);
         this.fileNameHistoryDAO = new FileNameHistoryDAOImpl(schemaName);
         this.functionalQueriesDAO = new FunctionalQueriesDAOImpl(schemaName);
@@ -119,28 +108,11 @@ public class MergeTypeHelper {
             directoryId = fileName.getDirectoryId();
         }
 
-        StringBuilder appendedPathBuilder = new StringBuilder("");
-        Directory directory = directoryDAO.findById(directoryId);
-        DirectoryLocation directoryLocation = directoryLocationDAO.findByDirectoryId(directory.getId());
-        if (directoryLocation != null) {
-            Deque<String> segmentStack = new ArrayDeque<>();
-            segmentStack.push(directoryLocation.getDirectorySegmentName());
-            while (directoryLocation.getParentDirectoryLocationId() != null) {
-                DirectoryLocation parentDirectoryLocation = directoryLocationDAO.findById(directoryLocation.getParentDirectoryLocationId());
-                segmentStack.push(parentDirectoryLocation.getDirectorySegmentName());
-                directoryLocation = parentDirectoryLocation;
-            }
-
-            // Pop the root directory segment...
-            String rootDirSegment = segmentStack.pop();
-            while (segmentStack.size() > 0) {
-                appendedPathBuilder.append(segmentStack.pop());
-                if (segmentStack.size() > 0) {
-                    appendedPathBuilder.append(java.io.File.separator);
-                }
-            }
+        String appendedPath = DirectoryLocationIndex.getInstance(schemaName).buildAppendedPath(directoryId);
+        if (appendedPath == null) {
+            appendedPath = "";
         }
-        return appendedPathBuilder.toString();
+        return appendedPath;
     }
 
     /**
@@ -246,8 +218,8 @@ public class MergeTypeHelper {
     }
 
     private boolean isFilenameDifferentForFeatureBranchType(Integer fileId, Integer childBranchId, Integer parentBranchId) {
-        String childBranchList = functionalQueriesDAO.buildBranchesToSearchString(functionalQueriesDAO.getBranchAncestryList(childBranchId));
-        String parentBranchList = functionalQueriesDAO.buildBranchesToSearchString(functionalQueriesDAO.getBranchAncestryList(parentBranchId));
+        String childBranchList = functionalQueriesDAO.getBranchesToSearchString(childBranchId);
+        String parentBranchList = functionalQueriesDAO.getBranchesToSearchString(parentBranchId);
         boolean retFlag = fileNameDAO.isFileNameDifferentOnFeatureBranch(fileId, childBranchList, parentBranchList);
         return retFlag;
     }
@@ -402,8 +374,7 @@ public class MergeTypeHelper {
 
     private boolean wasFileDeletedOnFeatureBranchForFeatureBranchType(Integer fileId, Integer childBranchId) {
         boolean retFlag = false;
-        List<Branch> branchList = functionalQueriesDAO.getBranchAncestryList(childBranchId);
-        String branchListString = functionalQueriesDAO.buildBranchesToSearchString(branchList);
+        String branchListString = functionalQueriesDAO.getBranchesToSearchString(childBranchId);
 
         retFlag = fileNameDAO.wasFileDeletedOnFeatureBranch(fileId, childBranchId, branchListString);
         return retFlag;
@@ -470,41 +441,28 @@ public class MergeTypeHelper {
         return retFlag;
     }
 
-    private void createProvisionalDirectoryLocations(Integer fileId, Integer childBranchId, Integer parentBranchId) throws SQLException {
+    /**
+     * Create the provisional directory locations on the parent branch that a file created on the child branch needs.
+     *
+     * @param fileId the file id.
+     * @param childBranchId the id of the child branch.
+     * @param parentBranchId the id of the parent branch.
+     * @throws SQLException if we cannot create the directory locations.
+     */
+    void createProvisionalDirectoryLocations(Integer fileId, Integer childBranchId, Integer parentBranchId) throws SQLException {
         String childBranchAppendedPath = buildAppendedPathForBranch(fileId, childBranchId);
         Project project = this.projectDAO.findByProjectName(projectName);
         SourceControlBehaviorManager.getInstance().createProvisionalDirectories(project.getId(), parentBranchId, childBranchId, childBranchAppendedPath);
     }
 
     private String buildAppendedPathForBranch(Integer fileId, Integer childBranchId) {
-        Integer directoryId;
-        StringBuilder appendedPathBuilder = null;
         String appendedPath = null;
         FileName fileName = fileNameDAO.findByFileIdAndBranchId(fileId, childBranchId);
         if (fileName != null) {
-            directoryId = fileName.getDirectoryId();
-            appendedPathBuilder = new StringBuilder("");
-            Directory directory = directoryDAO.findById(directoryId);
-            DirectoryLocation directoryLocation = directoryLocationDAO.findByDirectoryId(directory.getId());
-            if (directoryLocation != null) {
-                Deque<String> segmentStack = new ArrayDeque<>();
-                segmentStack.push(directoryLocation.getDirectorySegmentName());
-                while (directoryLocation.getParentDirectoryLocationId() != null) {
-                    DirectoryLocation parentDirectoryLocation = directoryLocationDAO.findById(directoryLocation.getParentDirectoryLocationId());
-                    segmentStack.push(parentDirectoryLocation.getDirectorySegmentName());
-                    directoryLocation = parentDirectoryLocation;
-                }
-
-                // Pop the root directory segment...
-                segmentStack.pop();
-                while (!segmentStack.isEmpty()) {
-                    appendedPathBuilder.append(segmentStack.pop());
-                    if (!segmentStack.isEmpty()) {
-                        appendedPathBuilder.append(java.io.File.separator);
-                    }
-                }
+            appendedPath = DirectoryLocationIndex.getInstance(schemaName).buildAppendedPath(fileName.getDirectoryId());
+            if (appendedPath == null) {
+                appendedPath = "";
             }
-            appendedPath = appendedPathBuilder.toString();
         }
         return appendedPath;
     }
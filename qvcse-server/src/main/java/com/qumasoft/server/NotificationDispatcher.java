@@ -0,0 +1,482 @@
+/*
+ * Copyright 2021-2023 Jim Voris.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qumasoft.server;
+
+import com.qumasoft.qvcslib.DirectoryCoordinate;
+import com.qumasoft.qvcslib.ServerResponseFactoryInterface;
+import com.qumasoft.qvcslib.logfileaction.ActionType;
+import com.qumasoft.qvcslib.response.ServerResponseMessage;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Deliver notifications to clients off of the request threads. Notifications are put on a bounded queue. A single fan-out thread takes them off the queue,
+ * waits out a short coalescing window so that a burst of changes to the same file is reported once, and hands each batch to the fan-out callback (which
+ * decides who needs to hear about what). The fan-out callback gives each client's notifications to {@link #sendToClient}; each client has its own bounded
+ * outbound queue, drained by a fixed pool of delivery threads. A delivery thread never waits for a client that is slow to read: when the client's response
+ * stream is backed up, its notifications stay queued and the drain is tried again a little later, so a slow client holds up only itself.
+ *
+ * <p>When a client's queue overflows, we either drop its oldest notification, or (the default) throw its queue away and tell the client to refresh, since
+ * its view of the project can no longer be kept current one notification at a time.</p>
+ *
+ * @author Jim Voris
+ */
+final class NotificationDispatcher {
+    // Create our logger object
+    private static final Logger LOGGER = LoggerFactory.getLogger(NotificationDispatcher.class);
+
+    /** What to do when a client's outbound queue is full. */
+    enum OverflowPolicy {
+        /** Drop the client's oldest queued notification. */
+        DROP,
+        /** Drop all of the client's queued notifications, and tell the client to refresh. */
+        RESYNC
+    }
+
+    /** The message we send to a client that has fallen too far behind. */
+    static final String RESYNC_MESSAGE = "The server could not keep up reporting changes made by other users. Refresh your view to see their changes.";
+
+    private static final long POLL_TIMEOUT = 1000L;
+    private static final long NANOS_PER_MILLI = 1_000_000L;
+
+    /** How long to wait before trying again to deliver to a client whose response stream is backed up. */
+    static final long DRAIN_RETRY_DELAY = 50L;
+
+    private final BlockingQueue<PendingNotification> queue;
+    private final int clientQueueCapacity;
+    private final long coalesceWindowMillis;
+    private final OverflowPolicy overflowPolicy;
+    private final Consumer<List<QueuedNotification>> fanOut;
+    private final ExecutorService fanOutExecutor;
+    private final ExecutorService deliveryExecutor;
+    private final ScheduledExecutorService retryExecutor;
+    private final Map<ServerResponseFactoryInterface, ClientOutbox> outboxMap = new ConcurrentHashMap<>();
+    private volatile boolean stoppedFlag = false;
+
+    // Statistics.
+    private final LongAdder submittedCount = new LongAdder();
+    private final LongAdder droppedCount = new LongAdder();
+    private final LongAdder coalescedCount = new LongAdder();
+    private final LongAdder batchCount = new LongAdder();
+    private final LongAdder fanOutNanos = new LongAdder();
+    private final AtomicLong maximumFanOutNanos = new AtomicLong();
+    private final LongAdder clientDroppedCount = new LongAdder();
+    private final LongAdder resyncCount = new LongAdder();
+    private final LongAdder deferredCount = new LongAdder();
+    private final AtomicInteger maximumClientQueueDepth = new AtomicInteger();
+
+    /**
+     * Create a notification dispatcher, and start its fan-out thread.
+     * @param queueCapacity the most notifications that may wait for fan-out.
+     * @param clientCapacity the most notifications that may wait to be written to a single client.
+     * @param deliveryThreadCount the number of threads that write notifications to clients.
+     * @param coalesceWindow how long, in milliseconds, to gather notifications before fanning them out.
+     * @param policy what to do when a client's outbound queue is full.
+     * @param fanOutCallback called on the fan-out thread with each batch of notifications, in the order they were submitted.
+     */
+    NotificationDispatcher(int queueCapacity, int clientCapacity, int deliveryThreadCount, long coalesceWindow, OverflowPolicy policy,
+            Consumer<List<QueuedNotification>> fanOutCallback) {
+        if (queueCapacity < 1 || clientCapacity < 1 || deliveryThreadCount < 1 || coalesceWindow < 0L) {
+            throw new IllegalArgumentException("Invalid notification dispatcher configuration.");
+        }
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.clientQueueCapacity = clientCapacity;
+        this.coalesceWindowMillis = coalesceWindow;
+        this.overflowPolicy = policy;
+        this.fanOut = fanOutCallback;
+        this.fanOutExecutor = Executors.newSingleThreadExecutor(new DaemonThreadFactory("notification fan-out"));
+        this.deliveryExecutor = Executors.newFixedThreadPool(deliveryThreadCount, new DaemonThreadFactory("notification delivery"));
+        this.retryExecutor = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("notification retry"));
+        this.fanOutExecutor.execute(this::runFanOut);
+    }
+
+    /**
+     * Queue a notification for fan-out. This does not block; if the queue is full, the notification is dropped.
+     * @param notification the notification.
+     * @return true if the notification was queued.
+     */
+    boolean submit(QueuedNotification notification) {
+        if (stoppedFlag) {
+            return false;
+        }
+        if (queue.offer(new PendingNotification(notification, System.nanoTime()))) {
+            submittedCount.increment();
+            return true;
+        }
+        droppedCount.increment();
+        DirectoryCoordinate dc = notification.getDirectoryCoordinate();
+        LOGGER.warn("Notification queue is full. Dropping notification for {}::{}::{} Action: {}", dc.getProjectName(), dc.getBranchName(),
+                dc.getAppendedPath(), notification.getAction().getActionType());
+        return false;
+    }
+
+    /**
+     * Queue a notification to be written to a client. Called from the fan-out callback. The notification must not be changed after it is handed to us.
+     * @param client the client.
+     * @param notification the notification to send.
+     */
+    void sendToClient(ServerResponseFactoryInterface client, java.io.Serializable notification) {
+        if (stoppedFlag) {
+            return;
+        }
+        ClientOutbox outbox = outboxMap.computeIfAbsent(client, ClientOutbox::new);
+        if (outbox.add(notification)) {
+            scheduleDrain(outbox);
+        }
+    }
+
+    private void scheduleDrain(ClientOutbox outbox) {
+        try {
+            deliveryExecutor.execute(outbox::drain);
+        } catch (RejectedExecutionException e) {
+            LOGGER.trace("Notification delivery has stopped.");
+        }
+    }
+
+    private void scheduleDrainLater(ClientOutbox outbox) {
+        deferredCount.increment();
+        try {
+            retryExecutor.schedule(() -> scheduleDrain(outbox), DRAIN_RETRY_DELAY, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            LOGGER.trace("Notification delivery has stopped.");
+        }
+    }
+
+    /**
+     * Forget a client that has gone away, along with any notifications still queued for it.
+     * @param client the client.
+     */
+    void removeClient(ServerResponseFactoryInterface client) {
+        ClientOutbox outbox = outboxMap.remove(client);
+        if (outbox != null) {
+            outbox.clear();
+        }
+    }
+
+    /**
+     * Stop the fan-out and delivery threads. Notifications that have not been sent are discarded.
+     */
+    void shutdown() {
+        stoppedFlag = true;
+        fanOutExecutor.shutdownNow();
+        deliveryExecutor.shutdownNow();
+        retryExecutor.shutdownNow();
+        queue.clear();
+        outboxMap.clear();
+    }
+
+    /**
+     * Get the number of notifications waiting for fan-out.
+     * @return the number of notifications waiting for fan-out.
+     */
+    int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * Get the number of notifications waiting to be written to the given client.
+     * @param client the client.
+     * @return the number of notifications waiting to be written to the client.
+     */
+    int getClientQueueDepth(ServerResponseFactoryInterface client) {
+        ClientOutbox outbox = outboxMap.get(client);
+        if (outbox == null) {
+            return 0;
+        }
+        return outbox.size();
+    }
+
+    /**
+     * Get the deepest any client's outbound queue has been.
+     * @return the deepest any client's outbound queue has been.
+     */
+    int getMaximumClientQueueDepth() {
+        return maximumClientQueueDepth.get();
+    }
+
+    /**
+     * Get the number of notifications dropped because the fan-out queue was full.
+     * @return the number of notifications dropped because the fan-out queue was full.
+     */
+    long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    /**
+     * Get the number of notifications that were folded into a later notification for the same file.
+     * @return the number of coalesced notifications.
+     */
+    long getCoalescedCount() {
+        return coalescedCount.sum();
+    }
+
+    /**
+     * Get the number of notifications dropped because a client's outbound queue was full.
+     * @return the number of notifications dropped because a client's outbound queue was full.
+     */
+    long getClientDroppedCount() {
+        return clientDroppedCount.sum();
+    }
+
+    /**
+     * Get the number of times we told a client to refresh because its outbound queue overflowed.
+     * @return the number of resync messages.
+     */
+    long getResyncCount() {
+        return resyncCount.sum();
+    }
+
+    /**
+     * Get the number of times delivery to a client was put off because the client's response stream was backed up.
+     * @return the number of deferred deliveries.
+     */
+    long getDeferredCount() {
+        return deferredCount.sum();
+    }
+
+    /**
+     * Get the average fan-out latency: the time from when the first notification of a batch was submitted until the batch had been handed to the clients'
+     * outbound queues. This includes the coalescing window.
+     * @return the average fan-out latency in milliseconds.
+     */
+    long getAverageFanOutLatency() {
+        long batches = batchCount.sum();
+        if (batches == 0L) {
+            return 0L;
+        }
+        return fanOutNanos.sum() / batches / NANOS_PER_MILLI;
+    }
+
+    /**
+     * Get the largest fan-out latency.
+     * @return the largest fan-out latency in milliseconds.
+     */
+    long getMaximumFanOutLatency() {
+        return maximumFanOutNanos.get() / NANOS_PER_MILLI;
+    }
+
+    /**
+     * Get a one line summary of the notification statistics.
+     * @return a one line summary of the notification statistics.
+     */
+    String getStatistics() {
+        return String.format("Submitted: [%d] coalesced: [%d] dropped: [%d] batches: [%d] queue depth: [%d] average fan-out latency: [%d ms] "
+                + "maximum fan-out latency: [%d ms] maximum client queue depth: [%d] client dropped: [%d] resyncs: [%d] deferred deliveries: [%d]",
+                submittedCount.sum(), getCoalescedCount(), getDroppedCount(), batchCount.sum(), getQueueDepth(), getAverageFanOutLatency(),
+                getMaximumFanOutLatency(), getMaximumClientQueueDepth(), getClientDroppedCount(), getResyncCount(), getDeferredCount());
+    }
+
+    private void runFanOut() {
+        List<PendingNotification> batch = new ArrayList<>();
+        while (!stoppedFlag) {
+            try {
+                PendingNotification first = queue.poll(POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long windowEnd = first.submitNanos + TimeUnit.MILLISECONDS.toNanos(coalesceWindowMillis);
+                long remaining;
+                while ((remaining = windowEnd - System.nanoTime()) > 0L) {
+                    PendingNotification next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                queue.drainTo(batch);
+                List<QueuedNotification> notificationList = new ArrayList<>(batch.size());
+                for (PendingNotification pending : batch) {
+                    notificationList.add(pending.notification);
+                }
+                List<QueuedNotification> coalescedList = coalesce(notificationList);
+                coalescedCount.add(notificationList.size() - coalescedList.size());
+                try {
+                    fanOut.accept(coalescedList);
+                } catch (RuntimeException e) {
+                    LOGGER.warn("Notification fan-out failed: [{}]", e.getLocalizedMessage(), e);
+                }
+                long latency = System.nanoTime() - first.submitNanos;
+                batchCount.increment();
+                fanOutNanos.add(latency);
+                maximumFanOutNanos.accumulateAndGet(latency, Math::max);
+                LOGGER.debug("Fanned out [{}] notifications ([{}] submitted) in [{}] ms.", coalescedList.size(), notificationList.size(),
+                        latency / NANOS_PER_MILLI);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Fold together the notifications for the same file. A check-in notification carries the file's latest state, so a check-in replaces an earlier check-in
+     * for the same file in the same directory, provided nothing else happened to that file in between. Every other notification is kept, and the order of
+     * the notifications for any one file is preserved.
+     * @param notificationList the notifications, in the order they were submitted.
+     * @return the coalesced notifications.
+     */
+    static List<QueuedNotification> coalesce(List<QueuedNotification> notificationList) {
+        List<QueuedNotification> coalescedList = new ArrayList<>(notificationList.size());
+        Map<String, Integer> checkInIndexMap = new HashMap<>();
+        for (QueuedNotification notification : notificationList) {
+            DirectoryCoordinate dc = notification.getDirectoryCoordinate();
+            String key = dc.getProjectName() + "::" + dc.getBranchName() + "::" + dc.getAppendedPath() + "::" + notification.getSkinnyInfo().getFileID();
+            if (notification.getAction().getAction() == ActionType.CHECKIN_FILE) {
+                Integer index = checkInIndexMap.get(key);
+                if (index != null) {
+                    coalescedList.set(index, notification);
+                } else {
+                    checkInIndexMap.put(key, coalescedList.size());
+                    coalescedList.add(notification);
+                }
+            } else {
+                checkInIndexMap.remove(key);
+                coalescedList.add(notification);
+            }
+        }
+        return coalescedList;
+    }
+
+    private static final class PendingNotification {
+        private final QueuedNotification notification;
+        private final long submitNanos;
+
+        PendingNotification(QueuedNotification qn, long nanos) {
+            this.notification = qn;
+            this.submitNanos = nanos;
+        }
+    }
+
+    /**
+     * The notifications waiting to be written to one client. At most one delivery thread drains a given outbox at a time (a drain that is put off still
+     * counts), so the client sees its notifications in order.
+     */
+    private final class ClientOutbox {
+        private final ServerResponseFactoryInterface client;
+        private final Deque<java.io.Serializable> pendingQueue = new ArrayDeque<>();
+        private boolean drainingFlag = false;
+
+        ClientOutbox(ServerResponseFactoryInterface responseFactory) {
+            this.client = responseFactory;
+        }
+
+        /**
+         * Add a notification.
+         * @param notification the notification.
+         * @return true if the caller needs to schedule a drain.
+         */
+        synchronized boolean add(java.io.Serializable notification) {
+            if (pendingQueue.size() >= clientQueueCapacity) {
+                if (overflowPolicy == OverflowPolicy.DROP) {
+                    pendingQueue.pollFirst();
+                    clientDroppedCount.increment();
+                    pendingQueue.addLast(notification);
+                } else {
+                    clientDroppedCount.add(pendingQueue.size() + 1L);
+                    resyncCount.increment();
+                    pendingQueue.clear();
+                    pendingQueue.addLast(new ServerResponseMessage(RESYNC_MESSAGE, null, null, null, ServerResponseMessage.HIGH_PRIORITY));
+                }
+                LOGGER.warn("Notification queue for [{}] at [{}] is full.", client.getUserName(), client.getClientIPAddress());
+            } else {
+                pendingQueue.addLast(notification);
+            }
+            maximumClientQueueDepth.accumulateAndGet(pendingQueue.size(), Math::max);
+            if (drainingFlag) {
+                return false;
+            }
+            drainingFlag = true;
+            return true;
+        }
+
+        synchronized int size() {
+            return pendingQueue.size();
+        }
+
+        synchronized void clear() {
+            pendingQueue.clear();
+        }
+
+        private synchronized java.io.Serializable next() {
+            java.io.Serializable notification = pendingQueue.pollFirst();
+            if (notification == null) {
+                drainingFlag = false;
+            }
+            return notification;
+        }
+
+        void drain() {
+            while (true) {
+                if (client.getConnectionAliveFlag() && client.isOutboundQueueFull() && size() > 0) {
+                    // Writing now would wait for the client to read. Leave the notifications queued and free this thread for other clients.
+                    scheduleDrainLater(this);
+                    return;
+                }
+                java.io.Serializable notification = next();
+                if (notification == null) {
+                    return;
+                }
+                if (!client.getConnectionAliveFlag()) {
+                    removeClient(client);
+                    continue;
+                }
+                try {
+                    client.createServerResponse(notification);
+                } catch (RuntimeException e) {
+                    LOGGER.warn("Failed to send notification to [{}]: [{}]", client.getUserName(), e.getLocalizedMessage(), e);
+                }
+            }
+        }
+    }
+
+    private static final class DaemonThreadFactory implements ThreadFactory {
+        private final String namePrefix;
+        private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+        DaemonThreadFactory(String prefix) {
+            this.namePrefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, namePrefix + " " + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
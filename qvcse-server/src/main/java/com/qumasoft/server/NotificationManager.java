@@ -40,19 +40,21 @@ import com.qvcsos.server.dataaccess.impl.BranchDAOImpl;
 import com.qvcsos.server.dataaccess.impl.FunctionalQueriesDAOImpl;
 import com.qvcsos.server.datamodel.Branch;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Properties;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Manage notifications to clients.
+ * Manage notifications to clients. Notifications are fanned out to the interested clients by a {@link NotificationDispatcher}, so the request that caused
+ * a notification does not wait for it to reach anyone.
  * @author Jim Voris
  */
 public final class NotificationManager {
@@ -61,6 +63,11 @@ public final class NotificationManager {
      */
     private static final Logger LOGGER = LoggerFactory.getLogger(NotificationManager.class);
 
+    private static final int DEFAULT_QUEUE_CAPACITY = 10_000;
+    private static final int DEFAULT_CLIENT_QUEUE_CAPACITY = 1_000;
+    private static final int DEFAULT_DELIVERY_THREAD_COUNT = 4;
+    private static final long DEFAULT_COALESCE_WINDOW = 250L;
+
     private static final NotificationManager NOTIFICATION_MANAGER = new NotificationManager();
     private final DatabaseManager databaseManager;
     private final String schemaName;
@@ -73,8 +80,13 @@ public final class NotificationManager {
     // The first map is keyed by branchId, the 2nd map is keyed by fileId, and its value is the branchId of the tip revision for the given file.
     private final Map<Integer, Map<Integer, Integer>> mapOfMapsOfTipBranchIds = Collections.synchronizedMap(new TreeMap<>());
 
-    // The list of queued notifications.
-    private final List<QueuedNotification> queuedNotificationList = Collections.synchronizedList(new ArrayList<>());
+    // The notifications queued on the current thread, to be sent once the request's response has gone out.
+    private final ThreadLocal<List<QueuedNotification>> threadLocalQueuedNotifications = ThreadLocal.withInitial(ArrayList::new);
+
+    // The notifications held back while a bulk operation runs on the current thread.
+    private final ThreadLocal<List<QueuedNotification>> threadLocalNotificationBatch = new ThreadLocal<>();
+
+    private final NotificationDispatcher notificationDispatcher;
 
     /**
      * Creates a new instance of Notification Manager.
@@ -82,6 +94,12 @@ public final class NotificationManager {
     private NotificationManager() {
         this.databaseManager = DatabaseManager.getInstance();
         this.schemaName = databaseManager.getSchemaName();
+        NotificationDispatcher.OverflowPolicy overflowPolicy = NotificationDispatcher.OverflowPolicy.valueOf(
+                System.getProperty("qvcsos.server.notificationOverflowPolicy", NotificationDispatcher.OverflowPolicy.RESYNC.name()));
+        this.notificationDispatcher = new NotificationDispatcher(Integer.getInteger("qvcsos.server.notificationQueueCapacity", DEFAULT_QUEUE_CAPACITY),
+                Integer.getInteger("qvcsos.server.clientNotificationQueueCapacity", DEFAULT_CLIENT_QUEUE_CAPACITY),
+                Integer.getInteger("qvcsos.server.notificationThreadCount", DEFAULT_DELIVERY_THREAD_COUNT),
+                Long.getLong("qvcsos.server.notificationCoalesceWindow", DEFAULT_COALESCE_WINDOW), overflowPolicy, this::fanOut);
     }
 
     /**
@@ -99,7 +117,7 @@ public final class NotificationManager {
 
         Set<ServerResponseFactoryInterface> setOfAttentiveClients = mapOfSetsOfConnectedClients.get(coordinateKey);
         if (setOfAttentiveClients == null) {
-            setOfAttentiveClients = new HashSet<>();
+            setOfAttentiveClients = ConcurrentHashMap.newKeySet();
             mapOfSetsOfConnectedClients.put(coordinateKey, setOfAttentiveClients);
         }
         setOfAttentiveClients.add(response);
@@ -107,7 +125,7 @@ public final class NotificationManager {
         // Iterate over the skinnyArray to capture the branchId of the file's tip revision.
         Map<Integer, Integer> mapsOfTipBranchIds = mapOfMapsOfTipBranchIds.get(fbDcIds.getBranchId());
         if (mapsOfTipBranchIds == null) {
-            mapsOfTipBranchIds = new TreeMap<>();
+            mapsOfTipBranchIds = Collections.synchronizedMap(new TreeMap<>());
             mapOfMapsOfTipBranchIds.put(fbDcIds.getBranchId(), mapsOfTipBranchIds);
         }
         for (SkinnyLogfileInfo skinnyInfo : skinnyArray) {
@@ -125,16 +143,65 @@ public final class NotificationManager {
             String parentCoordinateKey = buildCoordinateKey(parentDirectoryCoordinate);
             Set<ServerResponseFactoryInterface> setOfAttentiveClients = mapOfSetsOfConnectedClients.get(parentCoordinateKey);
             if (setOfAttentiveClients == null) {
-                setOfAttentiveClients = new HashSet<>();
+                setOfAttentiveClients = ConcurrentHashMap.newKeySet();
                 mapOfSetsOfConnectedClients.put(parentCoordinateKey, setOfAttentiveClients);
             }
             setOfAttentiveClients.add(response);
         }
     }
 
+    /**
+     * Add the client as a listener for a collection of directories on a single branch. This does the same thing as calling
+     * {@link #addDirectoryCoordinateListener(ServerResponseFactoryInterface, DirectoryCoordinate, List)} for each directory, without looking up the
+     * directory coordinate ids again for each one.
+     * @param response the response factory for the client.
+     * @param projectName the project name.
+     * @param branchName the branch name.
+     * @param branchId the branch id.
+     * @param skinnyListMap the skinny info of the files in each directory, keyed by appended path.
+     */
+    public void addDirectoryCoordinateListeners(ServerResponseFactoryInterface response, String projectName, String branchName, Integer branchId,
+            Map<String, List<SkinnyLogfileInfo>> skinnyListMap) {
+        Map<Integer, Integer> mapsOfTipBranchIds = mapOfMapsOfTipBranchIds.computeIfAbsent(branchId, id -> Collections.synchronizedMap(new TreeMap<>()));
+        for (Map.Entry<String, List<SkinnyLogfileInfo>> entry : skinnyListMap.entrySet()) {
+            String coordinateKey = buildCoordinateKey(new DirectoryCoordinate(projectName, branchName, entry.getKey()));
+            mapOfSetsOfConnectedClients.computeIfAbsent(coordinateKey, key -> ConcurrentHashMap.newKeySet()).add(response);
+            for (SkinnyLogfileInfo skinnyInfo : entry.getValue()) {
+                mapsOfTipBranchIds.put(skinnyInfo.getFileID(), skinnyInfo.getBranchId());
+            }
+        }
+    }
+
+    /**
+     * Add the client as a listener for the same directories on each of the given branch's parent branches. This walks the branch ancestry once for the
+     * whole collection of directories.
+     * @param response the response factory for the client.
+     * @param projectName the project name.
+     * @param branch the branch the client registered for.
+     * @param appendedPaths the appended paths of the directories.
+     */
+    public void addNotificationListenersForParentBranches(ServerResponseFactoryInterface response, String projectName, Branch branch, Collection<String> appendedPaths) {
+        BranchDAO branchDAO = new BranchDAOImpl(schemaName);
+        Branch parentBranch = branch;
+        while (parentBranch.getParentBranchId() != null) {
+            parentBranch = branchDAO.findById(parentBranch.getParentBranchId());
+            for (String appendedPath : appendedPaths) {
+                String parentCoordinateKey = buildCoordinateKey(new DirectoryCoordinate(projectName, parentBranch.getBranchName(), appendedPath));
+                mapOfSetsOfConnectedClients.computeIfAbsent(parentCoordinateKey, key -> ConcurrentHashMap.newKeySet()).add(response);
+            }
+        }
+    }
+
+    /**
+     * Queue a notification to be sent after the current request's response. See {@link #sendQueuedNotifications()}.
+     * @param response the response factory for the client making the request.
+     * @param directoryCoordinate the directory coordinate of the file.
+     * @param skinnyInfo the file's info.
+     * @param action what happened to the file.
+     */
     public void queueNotification(ServerResponseFactoryInterface response, DirectoryCoordinate directoryCoordinate, SkinnyLogfileInfo skinnyInfo, ActionType action) {
         QueuedNotification qn = new QueuedNotification(directoryCoordinate, skinnyInfo, action);
-        queuedNotificationList.add(qn);
+        threadLocalQueuedNotifications.get().add(qn);
     }
 
     /**
@@ -149,6 +216,7 @@ public final class NotificationManager {
                 responseSet.remove(response);
             }
         }
+        notificationDispatcher.removeClient(response);
     }
 
     private String buildCoordinateKey(DirectoryCoordinate directoryCoordinate) {
@@ -156,35 +224,128 @@ public final class NotificationManager {
         return key;
     }
 
+    /**
+     * Hand the notifications queued on this thread by {@link #queueNotification} to the dispatcher. This is called once the request's response has been
+     * sent, so the client sees the response before the notifications.
+     */
     public void sendQueuedNotifications() {
-        Runnable later = () -> {
+        List<QueuedNotification> queuedNotificationList = threadLocalQueuedNotifications.get();
+        if (!queuedNotificationList.isEmpty()) {
+            submitNotifications(queuedNotificationList);
+            queuedNotificationList.clear();
+        }
+    }
+
+    /**
+     * Stop sending notifications.
+     */
+    public void shutdown() {
+        notificationDispatcher.shutdown();
+    }
+
+    /**
+     * Get a one line summary of the notification statistics.
+     * @return a one line summary of the notification statistics.
+     */
+    public String getStatistics() {
+        return notificationDispatcher.getStatistics();
+    }
+
+    /**
+     * Start holding back the notifications made on this thread, so that a bulk operation can send them all at once when it is done. See
+     * {@link #endNotificationBatch()}.
+     */
+    public void beginNotificationBatch() {
+        threadLocalNotificationBatch.set(new ArrayList<>());
+    }
+
+    /**
+     * Send the notifications held back on this thread since {@link #beginNotificationBatch()}, in the order they were made.
+     */
+    public void endNotificationBatch() {
+        List<QueuedNotification> notificationBatch = threadLocalNotificationBatch.get();
+        threadLocalNotificationBatch.remove();
+        if (notificationBatch != null) {
+            submitNotifications(notificationBatch);
+        }
+    }
+
+    /**
+     * Drop the notifications held back on this thread since {@link #beginNotificationBatch()}. A bulk operation that was rolled back uses this instead
+     * of {@link #endNotificationBatch()}, so that clients never hear about changes that did not happen.
+     */
+    public void discardNotificationBatch() {
+        List<QueuedNotification> notificationBatch = threadLocalNotificationBatch.get();
+        threadLocalNotificationBatch.remove();
+        if (notificationBatch != null && !notificationBatch.isEmpty()) {
+            LOGGER.info("Discarding [{}] notifications for a rolled back bulk operation.", notificationBatch.size());
+        }
+    }
+
+    /**
+     * Let the clients that are paying attention to a directory know that something happened to one of its files.
+     * @param dc the directory coordinate.
+     * @param skinnyInfo the file's info.
+     * @param action what happened to the file.
+     */
+    public void notifySkinnyInfoListeners(DirectoryCoordinate dc, SkinnyLogfileInfo skinnyInfo, ActionType action) {
+        List<QueuedNotification> notificationBatch = threadLocalNotificationBatch.get();
+        if (notificationBatch != null) {
+            notificationBatch.add(new QueuedNotification(dc, skinnyInfo, action));
+        } else {
+            submitNotifications(Collections.singletonList(new QueuedNotification(dc, skinnyInfo, action)));
+        }
+    }
+
+    /**
+     * Look up the directory coordinate ids for each notification, and hand the notifications to the dispatcher. This runs on the request thread, so the
+     * lookups see the request's own uncommitted changes (a directory added in the same transaction, for example), which the fan-out thread could not. We
+     * look up the ids once per directory rather than once per notification. A notification whose directory cannot be resolved is logged and dropped.
+     * @param notificationList the notifications, in the order they were made.
+     */
+    private void submitNotifications(List<QueuedNotification> notificationList) {
+        FunctionalQueriesDAO functionalQueriesDAO = new FunctionalQueriesDAOImpl(schemaName);
+        Map<String, DirectoryCoordinateIds> directoryCoordinateIdsMap = new TreeMap<>();
+        for (QueuedNotification qn : notificationList) {
+            DirectoryCoordinate dc = qn.getDirectoryCoordinate();
             try {
-                // <editor-fold>
-                Thread.sleep(1000L);
-                // </editor-fold>
-            }
-            catch (InterruptedException e) {
-                LOGGER.warn("Sleep interrupted.", e);
-            }
-            synchronized (queuedNotificationList) {
-                for (QueuedNotification qn : queuedNotificationList) {
-                    final DirectoryCoordinate fdc = qn.getDirectoryCoordinate();
-                    final SkinnyLogfileInfo fski = qn.getSkinnyInfo();
-                    final ActionType fa = qn.getAction();
-                    LOGGER.info("Sending queued notification: {}::{}::{} Action: {}", fdc.getProjectName(), fdc.getBranchName(), fdc.getAppendedPath(), fa.getActionType());
-                    notifySkinnyInfoListeners(fdc, fski, fa);
+                DirectoryCoordinateIds fbDcIds = directoryCoordinateIdsMap.computeIfAbsent(buildCoordinateKey(dc),
+                        key -> functionalQueriesDAO.getDirectoryCoordinateIds(dc));
+                if (fbDcIds != null) {
+                    qn.setDirectoryCoordinateIds(fbDcIds);
+                    notificationDispatcher.submit(qn);
+                } else {
+                    LOGGER.warn("Unable to find directory for notification: {}::{}::{} Action: {}", dc.getProjectName(), dc.getBranchName(),
+                            dc.getAppendedPath(), qn.getAction().getActionType());
                 }
-                queuedNotificationList.clear();
+            } catch (RuntimeException e) {
+                LOGGER.warn("Unable to find directory for notification: {}::{}::{} Action: {}", dc.getProjectName(), dc.getBranchName(),
+                        dc.getAppendedPath(), qn.getAction().getActionType(), e);
             }
-        };
-        // Put all this on a separate worker thread.
-        new Thread(later).start();
+        }
     }
 
-    public void notifySkinnyInfoListeners(DirectoryCoordinate dc, SkinnyLogfileInfo skinnyInfo, ActionType action) {
+    /**
+     * Fan out a batch of notifications. This runs on the dispatcher's fan-out thread, and does not use the database: the directory coordinate ids were
+     * looked up on the request thread. A notification that fails is logged, and does not keep the rest of the batch from going out.
+     * @param notificationList the notifications, in the order they were made.
+     */
+    private void fanOut(List<QueuedNotification> notificationList) {
+        for (QueuedNotification qn : notificationList) {
+            DirectoryCoordinate dc = qn.getDirectoryCoordinate();
+            try {
+                LOGGER.info("Sending notification: {}::{}::{} Action: {}", dc.getProjectName(), dc.getBranchName(), dc.getAppendedPath(),
+                        qn.getAction().getActionType());
+                notifySkinnyInfoListeners(dc, qn.getDirectoryCoordinateIds(), qn.getSkinnyInfo(), qn.getAction());
+            } catch (RuntimeException e) {
+                LOGGER.warn("Failed to send notification: {}::{}::{} Action: {}", dc.getProjectName(), dc.getBranchName(), dc.getAppendedPath(),
+                        qn.getAction().getActionType(), e);
+            }
+        }
+    }
+
+    private void notifySkinnyInfoListeners(DirectoryCoordinate dc, DirectoryCoordinateIds fbDcIds, SkinnyLogfileInfo skinnyInfo, ActionType action) {
         String coordinateKey = buildCoordinateKey(dc);
-        FunctionalQueriesDAO functionalQueriesDAO = new FunctionalQueriesDAOImpl(schemaName);
-        DirectoryCoordinateIds fbDcIds = functionalQueriesDAO.getDirectoryCoordinateIds(dc);
 
         // Build the information we need to send to the listeners.
         ServerNotificationInterface notifyInfo = buildLogfileNotification(dc, skinnyInfo, action);
@@ -199,9 +360,6 @@ public final class NotificationManager {
             Set<ServerResponseFactoryInterface> clientListenerSet = mapOfSetsOfConnectedClients.get(coordinateKey);
             if (clientListenerSet != null) {
                 for (ServerResponseFactoryInterface clientListener : clientListenerSet) {
-                    // Set the server name on the notification message.
-                    notifyInfo.setServerName(clientListener.getServerName());
-
                     // Into the meat of notifying all potentially interested branches...
                     for (Integer branchId : fbDcIds.getChildWriteableBranchMap().keySet()) {
                         Map<Integer, Integer> fileIdMap = mapOfMapsOfTipBranchIds.get(branchId);
@@ -223,10 +381,7 @@ public final class NotificationManager {
 
                                 // And send the info for any child branches...
                                 if (Objects.equals(currentBranchId, skinnyInfo.getBranchId())) {
-                                    String branchName = fbDcIds.getChildWriteableBranchMap().get(branchId);
-                                    notifyInfo.setBranchName(branchName);
-                                    notifyInfo.setBranchId(branchId);
-                                    clientListener.createServerResponse(notifyInfo);
+                                    sendNotification(clientListener, dc, skinnyInfo, action, branchId, fbDcIds);
                                 }
 
                                 // If this was a remove notification, we need to remove the file's entry in the map after notifications have been sent to all client listeners...
@@ -241,38 +396,23 @@ public final class NotificationManager {
                                 switch (notifyInfo.getNotificationType()) {
                                     case SR_NOTIFY_CHECKIN -> {
                                         LOGGER.info("checkin notification");
-                                        String branchName = fbDcIds.getChildWriteableBranchMap().get(branchId);
-                                        notifyInfo.setBranchName(branchName);
-                                        notifyInfo.setBranchId(branchId);
-                                        clientListener.createServerResponse(notifyInfo);
+                                        sendNotification(clientListener, dc, skinnyInfo, action, branchId, fbDcIds);
                                     }
                                     case SR_NOTIFY_CREATE -> {
                                         LOGGER.info("create notification");
-                                        String branchName = fbDcIds.getChildWriteableBranchMap().get(branchId);
-                                        notifyInfo.setBranchName(branchName);
-                                        notifyInfo.setBranchId(branchId);
-                                        clientListener.createServerResponse(notifyInfo);
+                                        sendNotification(clientListener, dc, skinnyInfo, action, branchId, fbDcIds);
                                     }
                                     case SR_NOTIFY_REMOVE -> {
                                         LOGGER.info("remove notification");
-                                        String branchName = fbDcIds.getChildWriteableBranchMap().get(branchId);
-                                        notifyInfo.setBranchName(branchName);
-                                        notifyInfo.setBranchId(branchId);
-                                        clientListener.createServerResponse(notifyInfo);
+                                        sendNotification(clientListener, dc, skinnyInfo, action, branchId, fbDcIds);
                                     }
                                     case SR_NOTIFY_RENAME -> {
                                         LOGGER.info("rename notification");
-                                        String branchName = fbDcIds.getChildWriteableBranchMap().get(branchId);
-                                        notifyInfo.setBranchName(branchName);
-                                        notifyInfo.setBranchId(branchId);
-                                        clientListener.createServerResponse(notifyInfo);
+                                        sendNotification(clientListener, dc, skinnyInfo, action, branchId, fbDcIds);
                                     }
                                     case SR_NOTIFY_MOVEFILE -> {
                                         LOGGER.info("move notification");
-                                        String branchName = fbDcIds.getChildWriteableBranchMap().get(branchId);
-                                        notifyInfo.setBranchName(branchName);
-                                        notifyInfo.setBranchId(branchId);
-                                        clientListener.createServerResponse(notifyInfo);
+                                        sendNotification(clientListener, dc, skinnyInfo, action, branchId, fbDcIds);
                                     }
                                     default -> {
                                         throw new QVCSRuntimeException("Unexpected notification type.");
@@ -290,6 +430,25 @@ public final class NotificationManager {
         }
     }
 
+    /**
+     * Hand a notification to the dispatcher for delivery to one client. The client's notification waits in its outbound queue, so each one gets a
+     * notification object of its own.
+     * @param clientListener the client to notify.
+     * @param dc the directory coordinate of the file.
+     * @param skinnyInfo the file's skinny logfile info.
+     * @param action what happened to the file.
+     * @param branchId the id of the branch the client is listening to.
+     * @param fbDcIds the ids for the directory coordinate.
+     */
+    private void sendNotification(ServerResponseFactoryInterface clientListener, DirectoryCoordinate dc, SkinnyLogfileInfo skinnyInfo, ActionType action,
+            Integer branchId, DirectoryCoordinateIds fbDcIds) {
+        ServerNotificationInterface notifyInfo = buildLogfileNotification(dc, skinnyInfo, action);
+        notifyInfo.setServerName(clientListener.getServerName());
+        notifyInfo.setBranchName(fbDcIds.getChildWriteableBranchMap().get(branchId));
+        notifyInfo.setBranchId(branchId);
+        notificationDispatcher.sendToClient(clientListener, notifyInfo);
+    }
+
     private ServerNotificationInterface buildLogfileNotification(DirectoryCoordinate dc, SkinnyLogfileInfo subject, ActionType action) {
         ServerNotificationInterface info = null;
 
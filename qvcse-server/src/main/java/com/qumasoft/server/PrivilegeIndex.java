@@ -0,0 +1,142 @@
+/*   Copyright 2004-2014 Jim Voris
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.qumasoft.server;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+
+/**
+ * An index of which server actions each user may perform on each project. The role privileges are held in an immutable snapshot that maps each role to a
+ * mask with one bit per {@link ServerAction}; a change to the role privileges builds a new snapshot and swaps it in. The roles of each user are cached per
+ * project/user, along with the combined mask for those roles. Lookups never take a lock: they compare the cached entry against two version counters, one
+ * for the role privileges, and one for the assignment of roles to users, and only go back to the database when the user's role assignment may have
+ * changed.
+ *
+ * @author Jim Voris
+ */
+final class PrivilegeIndex {
+    private static final char KEY_SEPARATOR = '\u0000';
+
+    private final List<ServerAction> knownActions;
+    private final BiFunction<String, String, String[]> userRolesLookup;
+    private final AtomicLong roleAssignmentVersion = new AtomicLong(0L);
+    private final Map<String, UserPrivileges> userPrivilegesMap = new ConcurrentHashMap<>();
+    private volatile PrivilegesSnapshot privilegesSnapshot = new PrivilegesSnapshot(0L, Collections.emptyMap());
+
+    /**
+     * Create a privilege index.
+     * @param actions the actions that role privileges may enable.
+     * @param lookup finds the roles of a user for a project, given the project name and the user name.
+     */
+    PrivilegeIndex(List<ServerAction> actions, BiFunction<String, String, String[]> lookup) {
+        this.knownActions = new ArrayList<>(actions);
+        this.userRolesLookup = lookup;
+    }
+
+    /**
+     * Does the user have the privileges needed to perform the requested action.
+     * @param projectName the project name.
+     * @param userName the user name.
+     * @param action the action they wish to perform.
+     * @return true if the user is allowed to perform the requested operation; false if not allowed.
+     */
+    boolean isUserPrivileged(String projectName, String userName, ServerAction action) {
+        // Read the versions before we look at anything else, so that a change made while we compute an entry leaves that entry stale.
+        long assignmentVersion = roleAssignmentVersion.get();
+        PrivilegesSnapshot snapshot = privilegesSnapshot;
+        String key = projectName + KEY_SEPARATOR + userName;
+        UserPrivileges userPrivileges = userPrivilegesMap.get(key);
+        if ((userPrivileges == null) || (userPrivileges.assignmentVersion != assignmentVersion)) {
+            String[] userRoles = userRolesLookup.apply(projectName, userName);
+            userPrivileges = new UserPrivileges(assignmentVersion, userRoles, snapshot);
+            userPrivilegesMap.put(key, userPrivileges);
+        } else if (userPrivileges.privilegesVersion != snapshot.version) {
+            // Same roles, different privileges for those roles. No need to look up the roles again.
+            userPrivileges = new UserPrivileges(assignmentVersion, userPrivileges.userRoles, snapshot);
+            userPrivilegesMap.put(key, userPrivileges);
+        }
+        return (userPrivileges.actionMask & (1L << action.getActionIndex())) != 0L;
+    }
+
+    /**
+     * Replace the role privileges.
+     * @param privilegesMap a map keyed by role name; each contained map is keyed by action name, with a flag to indicate whether that action is allowed
+     * for the role. This is copied, so the caller is free to change it afterwards.
+     */
+    synchronized void setRolePrivileges(Map<String, Map<String, Boolean>> privilegesMap) {
+        Map<String, Long> roleMaskMap = new TreeMap<>();
+        for (Map.Entry<String, Map<String, Boolean>> entry : privilegesMap.entrySet()) {
+            long mask = 0L;
+            for (ServerAction action : knownActions) {
+                if (Boolean.TRUE.equals(entry.getValue().get(action.getAction()))) {
+                    mask |= 1L << action.getActionIndex();
+                }
+            }
+            roleMaskMap.put(entry.getKey(), mask);
+        }
+        privilegesSnapshot = new PrivilegesSnapshot(privilegesSnapshot.version + 1, Collections.unmodifiableMap(roleMaskMap));
+    }
+
+    /**
+     * Discard the cached roles of every user. Call this whenever a role is given to or taken from a user, or a user, project, or role is removed.
+     */
+    void invalidateUserRoles() {
+        roleAssignmentVersion.incrementAndGet();
+        userPrivilegesMap.clear();
+    }
+
+    /**
+     * An immutable map from role name to the mask of actions that role allows.
+     */
+    static final class PrivilegesSnapshot {
+        private final long version;
+        private final Map<String, Long> roleMaskMap;
+
+        PrivilegesSnapshot(long v, Map<String, Long> map) {
+            this.version = v;
+            this.roleMaskMap = map;
+        }
+    }
+
+    /**
+     * The roles a user has for a project, and the actions those roles allow.
+     */
+    static final class UserPrivileges {
+        private final long assignmentVersion;
+        private final long privilegesVersion;
+        private final String[] userRoles;
+        private final long actionMask;
+
+        UserPrivileges(long v, String[] roles, PrivilegesSnapshot snapshot) {
+            this.assignmentVersion = v;
+            this.privilegesVersion = snapshot.version;
+            this.userRoles = roles;
+            long mask = 0L;
+            for (String role : roles) {
+                Long roleMask = snapshot.roleMaskMap.get(role);
+                if (roleMask != null) {
+                    mask |= roleMask;
+                }
+            }
+            this.actionMask = mask;
+        }
+    }
+}
@@ -0,0 +1,453 @@
+/*
+ * Copyright 2021-2023 Jim Voris.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qumasoft.server;
+
+import com.qumasoft.qvcslib.FilePromotionInfo;
+import com.qumasoft.qvcslib.InfoForMerge;
+import com.qumasoft.qvcslib.PromotionType;
+import com.qumasoft.qvcslib.QVCSConstants;
+import com.qumasoft.qvcslib.QVCSException;
+import com.qumasoft.qvcslib.QVCSRuntimeException;
+import com.qumasoft.qvcslib.Utility;
+import com.qvcsos.server.DatabaseManager;
+import com.qvcsos.server.dataaccess.DirectoryLocationDAO;
+import com.qvcsos.server.dataaccess.FileNameDAO;
+import com.qvcsos.server.dataaccess.FileNameHistoryDAO;
+import com.qvcsos.server.dataaccess.FunctionalQueriesDAO;
+import com.qvcsos.server.dataaccess.impl.DirectoryLocationDAOImpl;
+import com.qvcsos.server.dataaccess.impl.FileNameDAOImpl;
+import com.qvcsos.server.dataaccess.impl.FileNameHistoryDAOImpl;
+import com.qvcsos.server.dataaccess.impl.FunctionalQueriesDAOImpl;
+import com.qvcsos.server.datamodel.Branch;
+import com.qvcsos.server.datamodel.DirectoryLocation;
+import com.qvcsos.server.datamodel.FileName;
+import com.qvcsos.server.datamodel.FileNameHistory;
+import com.qvcsos.server.datamodel.FileRevision;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Work out how each of a branch's promotion candidates would be promoted: the type of promotion, and the appended paths and short workfile names on the
+ * promote-from and promote-to branches. This gives the same answers as asking {@link MergeTypeHelper} one file at a time, but it reads all the file
+ * names, file name history, and directory locations it needs for the whole candidate list in three queries, and does the rest in memory.
+ *
+ * <p>Like {@link MergeTypeHelper#wasFileCreatedOnBranch}, this creates the provisional directory locations on the promote-to branch for a file that was
+ * created on the promote-from branch.</p>
+ *
+ * @author Jim Voris
+ */
+public class PromotionCandidateAnalyzer {
+    // Create our logger object
+    private static final Logger LOGGER = LoggerFactory.getLogger(PromotionCandidateAnalyzer.class);
+
+    private final MergeTypeHelper mergeTypeHelper;
+    private final String schemaName;
+
+    private Map<Integer, List<FileName>> fileNameMap;
+    private Map<Integer, List<FileNameHistory>> fileNameHistoryMap;
+    private Map<Integer, DirectoryLocation> directoryLocationByIdMap;
+    private Map<Integer, DirectoryLocation> directoryLocationByDirectoryIdMap;
+
+    /**
+     * Create a promotion candidate analyzer.
+     *
+     * @param userName the user name.
+     * @param projectName the name of the project.
+     * @param branchName the branch name.
+     */
+    public PromotionCandidateAnalyzer(String userName, String projectName, String branchName) {
+        this.schemaName = DatabaseManager.getInstance().getSchemaName();
+        this.mergeTypeHelper = new MergeTypeHelper(userName, projectName, branchName);
+    }
+
+    /**
+     * Analyze the promotion candidates. A candidate whose analysis fails is logged and left out of the result, as it is when we analyze one file at a
+     * time.
+     *
+     * @param candidateList the newest unpromoted revision of each file on the promote-from branch.
+     * @param promoteFromBranch the branch we promote from.
+     * @param promoteToBranch the branch we promote to.
+     * @return a map of file revision id to the promotion info for that candidate. The promotion info has its type of promotion, appended paths, and short
+     * workfile names filled in.
+     */
+    public Map<Integer, FilePromotionInfo> analyze(List<FileRevision> candidateList, Branch promoteFromBranch, Branch promoteToBranch) {
+        Map<Integer, FilePromotionInfo> promotionInfoMap = new TreeMap<>();
+        if (candidateList.isEmpty()) {
+            return promotionInfoMap;
+        }
+        int branchTypeId = promoteFromBranch.getBranchTypeId();
+        if ((branchTypeId != QVCSConstants.QVCS_FEATURE_BRANCH_TYPE) && (branchTypeId != QVCSConstants.QVCS_RELEASE_BRANCH_TYPE)) {
+            throw new QVCSRuntimeException("Attempt to promote from Read-Only Tag based branch.");
+        }
+        FunctionalQueriesDAO functionalQueriesDAO = new FunctionalQueriesDAOImpl(schemaName);
+        Set<Integer> fromBranchIdSet = buildBranchIdSet(functionalQueriesDAO.getBranchAncestryList(promoteFromBranch.getId()));
+        Set<Integer> toBranchIdSet = buildBranchIdSet(functionalQueriesDAO.getBranchAncestryList(promoteToBranch.getId()));
+        loadFileNames(candidateList);
+
+        // Everything but the appended paths...
+        Map<Integer, CandidateAnalysis> analysisMap = new TreeMap<>();
+        Set<Integer> directoryIdSet = new TreeSet<>();
+        for (FileRevision candidate : candidateList) {
+            try {
+                CandidateAnalysis analysis = analyzeCandidate(candidate, promoteFromBranch, promoteToBranch, fromBranchIdSet, toBranchIdSet);
+                analysisMap.put(candidate.getId(), analysis);
+                directoryIdSet.add(analysis.promotedFromDirectoryId);
+                if (analysis.promotedToDirectoryId != null) {
+                    directoryIdSet.add(analysis.promotedToDirectoryId);
+                }
+            } catch (QVCSException | SQLException e) {
+                LOGGER.warn(e.getLocalizedMessage(), e);
+            }
+        }
+
+        // ... and then the appended paths, from one read of the directory locations.
+        loadDirectoryLocations(new ArrayList<>(directoryIdSet));
+        for (Map.Entry<Integer, CandidateAnalysis> entry : analysisMap.entrySet()) {
+            CandidateAnalysis analysis = entry.getValue();
+            FilePromotionInfo filePromotionInfo = analysis.filePromotionInfo;
+            String promotedFromAppendedPath = buildAppendedPath(analysis.promotedFromDirectoryId, false);
+            filePromotionInfo.setPromotedFromAppendedPath(promotedFromAppendedPath);
+            if (analysis.promotedToDirectoryId != null) {
+                filePromotionInfo.setPromotedToAppendedPath(buildAppendedPath(analysis.promotedToDirectoryId, true));
+            } else {
+                filePromotionInfo.setPromotedToAppendedPath(promotedFromAppendedPath);
+            }
+            promotionInfoMap.put(entry.getKey(), filePromotionInfo);
+        }
+        return promotionInfoMap;
+    }
+
+    private CandidateAnalysis analyzeCandidate(FileRevision candidate, Branch promoteFromBranch, Branch promoteToBranch, Set<Integer> fromBranchIdSet,
+            Set<Integer> toBranchIdSet) throws QVCSException, SQLException {
+        Integer fileId = candidate.getFileId();
+        List<FileName> fileNameList = fileNameMap.getOrDefault(fileId, Collections.emptyList());
+        CandidateAnalysis analysis = new CandidateAnalysis();
+        analysis.promotedFromDirectoryId = findDirectoryIdAtCommit(fileId, candidate.getCommitId());
+
+        boolean featureBranchFlag = promoteFromBranch.getBranchTypeId() == QVCSConstants.QVCS_FEATURE_BRANCH_TYPE;
+        boolean didLocationChangeFlag = didFileLocationChange(fileId, fileNameList, promoteFromBranch, promoteToBranch.getId(), featureBranchFlag);
+        boolean nameChangedFlag;
+        boolean createdFlag;
+        boolean deletedFlag;
+        if (featureBranchFlag) {
+            FileName childFileName = findInBranchSet(fileNameList, fromBranchIdSet);
+            FileName parentFileName = findInBranchSet(fileNameList, toBranchIdSet);
+            nameChangedFlag = (childFileName != null) && (parentFileName != null) && !childFileName.getFileName().equals(parentFileName.getFileName());
+            createdFlag = wasFileCreatedOnFeatureBranch(fileNameList, promoteFromBranch.getId());
+            deletedFlag = wasFileDeletedOnFeatureBranch(fileNameList, fromBranchIdSet);
+        } else {
+            nameChangedFlag = isFilenameDifferentOnReleaseBranch(fileId, fileNameList, promoteFromBranch, promoteToBranch.getId());
+            createdFlag = wasFileCreatedOnReleaseBranch(fileId, fileNameList, promoteFromBranch, promoteToBranch.getId());
+            deletedFlag = wasFileDeletedOnReleaseBranch(fileNameList, promoteFromBranch.getId());
+        }
+        if (createdFlag) {
+            mergeTypeHelper.createProvisionalDirectoryLocations(fileId, promoteFromBranch.getId(), promoteToBranch.getId());
+        }
+
+        FilePromotionInfo filePromotionInfo = new FilePromotionInfo();
+        InfoForMerge infoForMerge = new InfoForMerge(null, null, nameChangedFlag, didLocationChangeFlag, createdFlag, deletedFlag);
+        filePromotionInfo.setTypeOfPromotion(Utility.deduceTypeOfMerge(infoForMerge, null));
+        if (didLocationChangeFlag) {
+            analysis.promotedToDirectoryId = findPromotedToDirectoryId(fileId, fileNameList, toBranchIdSet);
+        }
+
+        FileName fromFileName = findInBranchSet(fileNameList, fromBranchIdSet);
+        if (fromFileName == null) {
+            throw new QVCSRuntimeException("file_name record not found for fileId: [" + fileId + "] on branch: [" + promoteFromBranch.getBranchName() + "]");
+        }
+        filePromotionInfo.setPromotedFromShortWorkfileName(fromFileName.getFileName());
+        if (filePromotionInfo.getTypeOfPromotion() != PromotionType.FILE_CREATED_PROMOTION_TYPE) {
+            FileName toFileName = findInBranchSet(fileNameList, toBranchIdSet);
+            if (toFileName != null) {
+                filePromotionInfo.setPromotedToShortWorkfileName(toFileName.getFileName());
+            } else {
+                filePromotionInfo.setPromotedToShortWorkfileName(null);
+            }
+        } else {
+            filePromotionInfo.setPromotedToShortWorkfileName(filePromotionInfo.getPromotedFromShortWorkfileName());
+        }
+        analysis.filePromotionInfo = filePromotionInfo;
+        return analysis;
+    }
+
+    private void loadFileNames(List<FileRevision> candidateList) {
+        List<Integer> fileIdList = new ArrayList<>(candidateList.size());
+        for (FileRevision candidate : candidateList) {
+            fileIdList.add(candidate.getFileId());
+        }
+        FileNameDAO fileNameDAO = new FileNameDAOImpl(schemaName);
+        fileNameMap = new HashMap<>();
+        for (FileName fileName : fileNameDAO.findByFileIdList(fileIdList)) {
+            fileNameMap.computeIfAbsent(fileName.getFileId(), k -> new ArrayList<>()).add(fileName);
+        }
+        FileNameHistoryDAO fileNameHistoryDAO = new FileNameHistoryDAOImpl(schemaName);
+        fileNameHistoryMap = new HashMap<>();
+        for (FileNameHistory fileNameHistory : fileNameHistoryDAO.findByFileIdList(fileIdList)) {
+            fileNameHistoryMap.computeIfAbsent(fileNameHistory.getFileId(), k -> new ArrayList<>()).add(fileNameHistory);
+        }
+    }
+
+    private void loadDirectoryLocations(List<Integer> directoryIdList) {
+        DirectoryLocationDAO directoryLocationDAO = new DirectoryLocationDAOImpl(schemaName);
+        directoryLocationByIdMap = new HashMap<>();
+        directoryLocationByDirectoryIdMap = new HashMap<>();
+        for (DirectoryLocation directoryLocation : directoryLocationDAO.findByDirectoryIdListWithAncestors(directoryIdList)) {
+            directoryLocationByIdMap.put(directoryLocation.getId(), directoryLocation);
+            // The list is in id order, so this keeps the oldest location of each directory.
+            directoryLocationByDirectoryIdMap.putIfAbsent(directoryLocation.getDirectoryId(), directoryLocation);
+        }
+    }
+
+    private static Set<Integer> buildBranchIdSet(List<Branch> branchList) {
+        Set<Integer> branchIdSet = new HashSet<>();
+        for (Branch branch : branchList) {
+            branchIdSet.add(branch.getId());
+        }
+        return branchIdSet;
+    }
+
+    /**
+     * The file name on the nearest of the given branches. The file name list is in descending branch id order, so that is the first match.
+     * @param fileNameList the file name records for a file.
+     * @param branchIdSet the branches to look on.
+     * @return the file name; null if there is none on those branches.
+     */
+    private static FileName findInBranchSet(List<FileName> fileNameList, Set<Integer> branchIdSet) {
+        for (FileName fileName : fileNameList) {
+            if (branchIdSet.contains(fileName.getBranchId())) {
+                return fileName;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The file name with the highest commit id among those that satisfy the filter.
+     * @param fileNameList the file name records for a file.
+     * @param filter which records to consider.
+     * @return the newest matching file name; null if none match.
+     */
+    private static FileName findNewestCommit(List<FileName> fileNameList, Predicate<FileName> filter) {
+        FileName newestFileName = null;
+        for (FileName fileName : fileNameList) {
+            if (filter.test(fileName) && ((newestFileName == null) || (fileName.getCommitId() > newestFileName.getCommitId()))) {
+                newestFileName = fileName;
+            }
+        }
+        return newestFileName;
+    }
+
+    /**
+     * The newest file name history record at or before the given commit. The history list is in descending id order, so that is the first match.
+     * @param fileId the file id.
+     * @param commitId the commit id.
+     * @return the history record; null if there is none that old.
+     */
+    private FileNameHistory findHistoryAtCommit(Integer fileId, Integer commitId) {
+        for (FileNameHistory fileNameHistory : fileNameHistoryMap.getOrDefault(fileId, Collections.emptyList())) {
+            if (fileNameHistory.getCommitId() <= commitId) {
+                return fileNameHistory;
+            }
+        }
+        return null;
+    }
+
+    private Integer findDirectoryIdAtCommit(Integer fileId, Integer commitId) {
+        FileName fileName = findNewestCommit(fileNameMap.getOrDefault(fileId, Collections.emptyList()), fn -> fn.getCommitId() <= commitId);
+        if (fileName != null) {
+            return fileName.getDirectoryId();
+        }
+        FileNameHistory fileNameHistory = findHistoryAtCommit(fileId, commitId);
+        if (fileNameHistory == null) {
+            throw new QVCSRuntimeException("No file name found for fileId: [" + fileId + "] at commit: [" + commitId + "]");
+        }
+        return fileNameHistory.getDirectoryId();
+    }
+
+    private Integer findPromotedToDirectoryId(Integer fileId, List<FileName> fileNameList, Set<Integer> toBranchIdSet) {
+        FileName fileName = findInBranchSet(fileNameList, toBranchIdSet);
+        if (fileName != null) {
+            return fileName.getDirectoryId();
+        }
+        // Nearest branch first, then newest record.
+        FileNameHistory nearestHistory = null;
+        for (FileNameHistory fileNameHistory : fileNameHistoryMap.getOrDefault(fileId, Collections.emptyList())) {
+            if (toBranchIdSet.contains(fileNameHistory.getBranchId())
+                    && ((nearestHistory == null) || (fileNameHistory.getBranchId() > nearestHistory.getBranchId()))) {
+                nearestHistory = fileNameHistory;
+            }
+        }
+        if (nearestHistory == null) {
+            throw new QVCSRuntimeException("No file name found for fileId: [" + fileId + "] on promote-to branch.");
+        }
+        return nearestHistory.getDirectoryId();
+    }
+
+    /**
+     * Build the appended path of a directory from the directory locations we have read.
+     * @param directoryId the directory id.
+     * @param requireLocationFlag if true, a directory with no location is an error; if false, its appended path is an empty string.
+     * @return the appended path.
+     */
+    private String buildAppendedPath(Integer directoryId, boolean requireLocationFlag) {
+        StringBuilder appendedPathBuilder = new StringBuilder();
+        DirectoryLocation directoryLocation = directoryLocationByDirectoryIdMap.get(directoryId);
+        if (directoryLocation == null) {
+            if (requireLocationFlag) {
+                throw new QVCSRuntimeException("No directory location found for directory id: [" + directoryId + "]");
+            }
+            return appendedPathBuilder.toString();
+        }
+        Deque<String> segmentStack = new ArrayDeque<>();
+        segmentStack.push(directoryLocation.getDirectorySegmentName());
+        while (directoryLocation.getParentDirectoryLocationId() != null) {
+            directoryLocation = directoryLocationByIdMap.get(directoryLocation.getParentDirectoryLocationId());
+            segmentStack.push(directoryLocation.getDirectorySegmentName());
+        }
+
+        // Pop the root directory segment...
+        segmentStack.pop();
+        while (!segmentStack.isEmpty()) {
+            appendedPathBuilder.append(segmentStack.pop());
+            if (!segmentStack.isEmpty()) {
+                appendedPathBuilder.append(java.io.File.separator);
+            }
+        }
+        return appendedPathBuilder.toString();
+    }
+
+    private static Map<Integer, FileName> mapByBranchId(Integer fileId, List<FileName> fileNameList) {
+        if (fileNameList.isEmpty()) {
+            throw new QVCSRuntimeException("file_name record not found for fileId: [" + fileId + "]");
+        }
+        Map<Integer, FileName> fileNameByBranchMap = new HashMap<>();
+        for (FileName fileName : fileNameList) {
+            fileNameByBranchMap.put(fileName.getBranchId(), fileName);
+        }
+        return fileNameByBranchMap;
+    }
+
+    private boolean didFileLocationChange(Integer fileId, List<FileName> fileNameList, Branch childBranch, Integer parentBranchId, boolean featureBranchFlag) {
+        Map<Integer, FileName> fileNameByBranchMap = mapByBranchId(fileId, fileNameList);
+        if (fileNameList.size() == 1) {
+            return false;
+        }
+        FileName childBranchFileName = fileNameByBranchMap.get(childBranch.getId());
+        FileName parentBranchFileName = fileNameByBranchMap.get(parentBranchId);
+        boolean retFlag = false;
+        if (parentBranchFileName != null) {
+            if (childBranchFileName != null) {
+                retFlag = childBranchFileName.getDirectoryId().intValue() != parentBranchFileName.getDirectoryId().intValue();
+            } else if (!featureBranchFlag && (parentBranchFileName.getCommitId() > childBranch.getCommitId())) {
+                // The parent file name was moved after the release branch was created.
+                FileNameHistory fileNameHistory = findHistoryAtCommit(fileId, childBranch.getCommitId());
+                if (fileNameHistory != null) {
+                    retFlag = fileNameHistory.getDirectoryId().intValue() != parentBranchFileName.getDirectoryId().intValue();
+                }
+            }
+        }
+        return retFlag;
+    }
+
+    private boolean isFilenameDifferentOnReleaseBranch(Integer fileId, List<FileName> fileNameList, Branch childBranch, Integer parentBranchId) {
+        Map<Integer, FileName> fileNameByBranchMap = mapByBranchId(fileId, fileNameList);
+        if (fileNameList.size() == 1) {
+            return false;
+        }
+        FileName childBranchFileName = fileNameByBranchMap.get(childBranch.getId());
+        FileName parentBranchFileName = fileNameByBranchMap.get(parentBranchId);
+        boolean retFlag = false;
+        if (parentBranchFileName != null) {
+            if (childBranchFileName != null) {
+                retFlag = 0 != childBranchFileName.getFileName().compareTo(parentBranchFileName.getFileName());
+            } else if (parentBranchFileName.getCommitId() > childBranch.getCommitId()) {
+                // The parent file name was changed after the release branch was created.
+                FileNameHistory fileNameHistory = findHistoryAtCommit(fileId, childBranch.getCommitId());
+                if (fileNameHistory != null) {
+                    retFlag = 0 != fileNameHistory.getFileName().compareTo(parentBranchFileName.getFileName());
+                }
+            }
+        }
+        return retFlag;
+    }
+
+    private static boolean wasFileCreatedOnFeatureBranch(List<FileName> fileNameList, Integer childBranchId) {
+        boolean unpromotedFlag = false;
+        for (FileName fileName : fileNameList) {
+            if (fileName.getBranchId() < childBranchId) {
+                // The file exists on an older branch.
+                return false;
+            }
+            if (!fileName.getPromotedFlag()) {
+                unpromotedFlag = true;
+            }
+        }
+        return unpromotedFlag;
+    }
+
+    private static boolean wasFileCreatedOnReleaseBranch(Integer fileId, List<FileName> fileNameList, Branch childBranch, Integer parentBranchId) {
+        Map<Integer, FileName> fileNameByBranchMap = mapByBranchId(fileId, fileNameList);
+        if (fileNameList.size() == 1) {
+            return fileNameList.get(0).getBranchId().intValue() == childBranch.getId().intValue();
+        }
+        FileName childBranchFileName = fileNameByBranchMap.get(childBranch.getId());
+        FileName parentBranchFileName = fileNameByBranchMap.get(parentBranchId);
+        boolean retFlag = false;
+        if (parentBranchFileName == null) {
+            retFlag = true;
+        } else if (childBranchFileName != null) {
+            if (childBranchFileName.getDeletedFlag().booleanValue() != parentBranchFileName.getDeletedFlag().booleanValue()) {
+                retFlag = !childBranchFileName.getDeletedFlag();
+            }
+        } else if (parentBranchFileName.getCommitId() > childBranch.getCommitId()) {
+            // The file was added to the parent after the release branch was created, so it is invisible to the branch.
+            retFlag = true;
+        }
+        return retFlag;
+    }
+
+    private static boolean wasFileDeletedOnFeatureBranch(List<FileName> fileNameList, Set<Integer> fromBranchIdSet) {
+        FileName fileName = findNewestCommit(fileNameList, fn -> !fn.getPromotedFlag() && fromBranchIdSet.contains(fn.getBranchId()));
+        return (fileName != null) && fileName.getDeletedFlag();
+    }
+
+    private static boolean wasFileDeletedOnReleaseBranch(List<FileName> fileNameList, Integer childBranchId) {
+        FileName fileName = findNewestCommit(fileNameList, fn -> fn.getBranchId().intValue() == childBranchId.intValue());
+        return (fileName != null) && fileName.getDeletedFlag();
+    }
+
+    /**
+     * What we know about a candidate before we have read the directory locations.
+     */
+    static class CandidateAnalysis {
+        private FilePromotionInfo filePromotionInfo;
+        private Integer promotedFromDirectoryId;
+        private Integer promotedToDirectoryId;
+    }
+}
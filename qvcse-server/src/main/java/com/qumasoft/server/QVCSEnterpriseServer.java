@@ -14,15 +14,13 @@
  */
 package com.qumasoft.server;
 
+import com.qumasoft.qvcslib.CompressionEngine;
 import com.qumasoft.qvcslib.QVCSConstants;
 import com.qumasoft.qvcslib.QVCSException;
-import com.qumasoft.qvcslib.ServerResponseFactory;
 import com.qumasoft.qvcslib.ServerResponseFactoryInterface;
 import com.qumasoft.webserver.WebServer;
 import com.qvcsos.server.DatabaseManager;
 import java.io.IOException;
-import java.net.ServerSocket;
-import java.net.Socket;
 import java.nio.charset.Charset;
 import java.sql.SQLException;
 import java.util.ArrayList;
@@ -31,9 +29,11 @@ import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -48,7 +48,16 @@ public final class QVCSEnterpriseServer {
     static final int DEFAULT_ADMIN_LISTEN_PORT = 9890;
     static final String POSTGRESQL_DB_SERVER = "postgresql";
     static final String WEB_SERVER_PORT = "9080";
-    static final int WORKER_THREAD_COUNT = 50;
+    /**
+     * The default number of threads that execute client requests. Most requests lease a database connection, so keep this below the size of the database
+     * connection pool. Override with the qvcsos.server.workerThreadCount system property.
+     */
+    static final int WORKER_THREAD_COUNT = 16;
+    /** The default limit on open client connections. Override with the qvcsos.server.maximumConnectionCount system property. */
+    static final int MAXIMUM_CONNECTION_COUNT = 1000;
+    /** The default limit on client requests in flight at once. Override with the qvcsos.server.maximumInFlightRequestCount system property. */
+    static final int MAXIMUM_IN_FLIGHT_REQUEST_COUNT = 2 * WORKER_THREAD_COUNT;
+    private static final long WORKER_THREAD_KEEP_ALIVE_SECONDS = 60L;
     private static final int ARGS_LENGTH_WITH_SYNC_OBJECT = 5;
     private static final int ARGS_SYNC_OBJECT_INDEX = 4;
     private int nonSecurePort = DEFAULT_NON_SECURE_LISTEN_PORT;
@@ -57,13 +66,11 @@ public final class QVCSEnterpriseServer {
     private final String[] arguments;
     private static boolean serverIsRunningFlag;
 
-    private final ExecutorService threadPool = Executors.newCachedThreadPool();
-    private NonSecureServer nonSecureServer = null;
-    private NonSecureServer adminServer = null;
+    private ExecutorService threadPool = null;
+    private ClientConnectionServer connectionServer = null;
     private QVCSWebServer webServer = null;
-    // Server socket listener threads.
-    private Thread nonSecureThread = null;
-    private Thread adminThread = null;
+    // Client connection selector thread.
+    private Thread connectionServerThread = null;
     // Web server thread.
     private Thread webServerThread = null;
     private static QVCSEnterpriseServer qvcsEnterpriseServer;
@@ -142,13 +149,9 @@ public final class QVCSEnterpriseServer {
         if (flag) {
             LOGGER.info("QVCS Enterprise Server is exiting.");
 
-            if ((qvcsEnterpriseServer != null) && (qvcsEnterpriseServer.nonSecureThread != null)) {
-                // Don't accept any more client connection requests on standard client port.
-                qvcsEnterpriseServer.nonSecureServer.closeServerSocket();
-            }
-            if ((qvcsEnterpriseServer != null) && (qvcsEnterpriseServer.adminThread != null)) {
-                // Don't accept any more client connection requests on admin client port.
-                qvcsEnterpriseServer.adminServer.closeServerSocket();
+            if ((qvcsEnterpriseServer != null) && (qvcsEnterpriseServer.connectionServer != null)) {
+                // Don't accept any more client connection requests on the client or admin ports, and disconnect idle clients.
+                qvcsEnterpriseServer.connectionServer.close();
             }
         }
     }
@@ -217,21 +220,36 @@ public final class QVCSEnterpriseServer {
         ActivityJournalManager.getInstance().initialize();
         ActivityJournalManager.getInstance().addJournalEntry("QVCS-Enterprise Server is starting.  Server Version: " + QVCSConstants.QVCS_RELEASE_VERSION + ".");
 
-        // Launch three separate listener threads
-        // one for non-secure requests,
-        // one for admin messages.
+        // The initialization above may have leased a database connection to this thread. Give it back to the pool.
+        DatabaseManager.getInstance().releaseConnection();
+
+        // Configure how we compress what we store and send.
+        configureCompression();
+
+        // Launch two separate listener threads
+        // one that accepts and dispatches requests for both the non-secure and the admin ports,
         // one for the embedded web server.
-        nonSecureServer = new NonSecureServer(nonSecurePort);
-        adminServer = new NonSecureServer(adminPort);
+        int workerThreadCount = Integer.getInteger("qvcsos.server.workerThreadCount", WORKER_THREAD_COUNT);
+        int maximumConnectionCount = Integer.getInteger("qvcsos.server.maximumConnectionCount", MAXIMUM_CONNECTION_COUNT);
+        int maximumInFlightRequestCount = Integer.getInteger("qvcsos.server.maximumInFlightRequestCount", MAXIMUM_IN_FLIGHT_REQUEST_COUNT);
+        ThreadPoolExecutor requestExecutor = new ThreadPoolExecutor(workerThreadCount, workerThreadCount, WORKER_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new RequestThreadFactory());
+        requestExecutor.allowCoreThreadTimeOut(true);
+        threadPool = requestExecutor;
+        try {
+            connectionServer = new ClientConnectionServer(new int[]{nonSecurePort, adminPort}, threadPool, maximumConnectionCount, maximumInFlightRequestCount);
+        } catch (IOException e) {
+            throw new QVCSException("Failed to create client connection server: " + e.getLocalizedMessage());
+        }
+        LOGGER.info("Client requests run on [{}] threads; at most [{}] connections and [{}] requests in flight.", workerThreadCount, maximumConnectionCount,
+                maximumInFlightRequestCount);
         webServer = new QVCSWebServer(arguments);
 
-        nonSecureThread = new Thread(nonSecureServer, "non secure server");
-        adminThread = new Thread(adminServer, "admin server");
+        connectionServerThread = new Thread(connectionServer, "client connection server");
         webServerThread = new Thread(webServer, "web server");
         webServerThread.setDaemon(true);
 
-        nonSecureThread.start();
-        adminThread.start();
+        connectionServerThread.start();
         webServerThread.start();
         serverIsRunningFlag = true;
 
@@ -243,8 +261,7 @@ public final class QVCSEnterpriseServer {
         }
 
         try {
-            nonSecureThread.join();
-            adminThread.join();
+            connectionServerThread.join();
 
             // Kill the web server.
             webServerThread.interrupt();
@@ -285,6 +302,22 @@ public final class QVCSEnterpriseServer {
         }
     }
 
+    /**
+     * Configure the compression engine from the qvcsos.server.minimumCompressionSize and qvcsos.server.compressionLevel system properties.
+     */
+    private void configureCompression() {
+        CompressionEngine compressionEngine = CompressionEngine.getInstance();
+        int minimumCompressionSize = Integer.getInteger("qvcsos.server.minimumCompressionSize", CompressionEngine.DEFAULT_MINIMUM_COMPRESSION_SIZE);
+        compressionEngine.setMinimumCompressionSize(minimumCompressionSize);
+        int compressionLevel = Integer.getInteger("qvcsos.server.compressionLevel", Deflater.DEFAULT_COMPRESSION);
+        try {
+            compressionEngine.setCompressionLevel(compressionLevel);
+        } catch (IllegalArgumentException e) {
+            LOGGER.warn("Ignoring qvcsos.server.compressionLevel: [{}]", e.getLocalizedMessage());
+        }
+        LOGGER.info("Compressing buffers of at least [{}] bytes at level [{}].", compressionEngine.getMinimumCompressionSize(), compressionEngine.getCompressionLevel());
+    }
+
     /**
      * Report the system's information to the log file.... basically all the system properties.
      */
@@ -317,6 +350,9 @@ public final class QVCSEnterpriseServer {
                 ActivityJournalManager.getInstance().addJournalEntry("QVCS-Enterprise Server: shutdown thread called to shutdown.");
                 DatabaseManager.getInstance().shutdownDatabase();
                 ActivityJournalManager.getInstance().closeJournal();
+                LOGGER.info("Compression statistics: {}", CompressionEngine.getInstance().getStatistics());
+                LOGGER.info("Notification statistics: {}", NotificationManager.getNotificationManager().getStatistics());
+                NotificationManager.getNotificationManager().shutdown();
             } catch (Exception e) {
                 LOGGER.warn(e.getLocalizedMessage(), e);
             } finally {
@@ -325,57 +361,18 @@ public final class QVCSEnterpriseServer {
         }
     }
 
-    class NonSecureServer implements Runnable {
-
-        private final int localPort;
-        private ServerSocket nonSecureServerSocket = null;
-
-        NonSecureServer(int port) {
-            this.localPort = port;
-        }
-
-        void closeServerSocket() {
-            if (nonSecureServerSocket != null) {
-                try {
-                    nonSecureServerSocket.close();
-                } catch (IOException e) {
-                    LOGGER.trace("QVCS Enterprise IOException when closing server socket: [{}]", e.getLocalizedMessage());
-                } finally {
-                    nonSecureServerSocket = null;
-                }
-            }
-        }
+    /**
+     * Name the request threads so they are easy to find in a thread dump.
+     */
+    static class RequestThreadFactory implements java.util.concurrent.ThreadFactory {
+        private final AtomicInteger threadCounter = new AtomicInteger(0);
 
         @Override
-        public void run() {
-            try {
-                nonSecureServerSocket = new ServerSocket(localPort);
-                LOGGER.info("Non secure server is listening on port: [" + localPort + "]");
-                while (!ServerResponseFactory.getShutdownInProgress()) {
-                    Socket socket = nonSecureServerSocket.accept();
-                    socket.setTcpNoDelay(true);
-                    socket.setKeepAlive(true);
-
-                    LOGGER.info("QVCSEnterpriseServer: got non-secure connect");
-                    LOGGER.info("local  socket port: [" + socket.getLocalPort() + "]");
-                    LOGGER.info("remote socket port: [" + socket.getPort() + "]");
-
-                    LOGGER.info("Launching worker thread for non-secure connection");
-                    ServerWorker ws = new ServerWorker(socket);
-                    threadPool.execute(ws);
-                }
-            } catch (java.net.SocketException e) {
-                LOGGER.info("QVCSEnterpriseServer: socket exception");
-            } catch (RejectedExecutionException | java.io.IOException e) {
-                LOGGER.warn(e.getLocalizedMessage(), e);
-            } finally {
-                closeServerSocket();
-                LOGGER.info("QVCSEnterpriseServer: closing listener thread for port: [" + localPort + "]");
-            }
+        public Thread newThread(Runnable runnable) {
+            return new Thread(runnable, "client request " + threadCounter.incrementAndGet());
         }
     }
 
-
     static class QVCSWebServer implements Runnable {
 
         private final String[] webServerArguments;
@@ -16,6 +16,7 @@
 package com.qumasoft.server;
 
 import com.qumasoft.qvcslib.DirectoryCoordinate;
+import com.qumasoft.qvcslib.DirectoryCoordinateIds;
 import com.qumasoft.qvcslib.SkinnyLogfileInfo;
 import com.qumasoft.qvcslib.logfileaction.ActionType;
 import org.slf4j.Logger;
@@ -31,6 +32,7 @@ public class QueuedNotification {
     private final DirectoryCoordinate directoryCoordinate;
     private final SkinnyLogfileInfo skinnyInfo;
     private final ActionType action;
+    private DirectoryCoordinateIds directoryCoordinateIds;
 
     public QueuedNotification(DirectoryCoordinate dc, SkinnyLogfileInfo ski, ActionType act) {
         LOGGER.info("Creating queued notification for {}::{}::{} Action: {}", dc.getProjectName(), dc.getBranchName(), dc.getAppendedPath(), act.getActionType());
@@ -61,4 +63,18 @@ public class QueuedNotification {
         return action;
     }
 
+    /**
+     * @return the ids for the directory coordinate; null until they have been looked up.
+     */
+    public DirectoryCoordinateIds getDirectoryCoordinateIds() {
+        return directoryCoordinateIds;
+    }
+
+    /**
+     * @param ids the ids for the directory coordinate.
+     */
+    public void setDirectoryCoordinateIds(DirectoryCoordinateIds ids) {
+        this.directoryCoordinateIds = ids;
+    }
+
 }
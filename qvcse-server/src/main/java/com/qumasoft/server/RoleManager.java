@@ -111,6 +111,7 @@ public final class RoleManager implements RoleManagerInterface {
                     connection.commit();
                 }
                 retVal = true;
+                RolePrivilegesManager.getInstance().invalidateUserRoles();
             } catch (SQLException e) {
                 LOGGER.warn("Failed insert: ", e);
             }
@@ -138,6 +139,7 @@ public final class RoleManager implements RoleManagerInterface {
                 UserProjectRole userProjectRole = userProjectRoleDAO.findByUserProjectAndRoleType(user.getId(), project.getId(), roleType.getId());
                 if (userProjectRole != null) {
                     retVal = userProjectRoleDAO.delete(userProjectRole.getId());
+                    RolePrivilegesManager.getInstance().invalidateUserRoles();
                 }
             } catch (SQLException e) {
                 LOGGER.warn("Failed delete: ", e);
@@ -333,6 +335,7 @@ public final class RoleManager implements RoleManagerInterface {
                 RoleTypeDAO roleTypeDAO = new RoleTypeDAOImpl(schemaName);
                 RoleType roleType = roleTypeDAO.findByRoleName(role);
                 roleTypeDAO.delete(roleType.getId());
+                RolePrivilegesManager.getInstance().invalidateUserRoles();
             } catch (SQLException e) {
                 LOGGER.warn("Exception deleting role: [{}]", role, e);
             }
@@ -40,8 +40,6 @@ import org.slf4j.LoggerFactory;
 public final class RolePrivilegesManager {
     // Create our logger object
     private static final Logger LOGGER = LoggerFactory.getLogger(RolePrivilegesManager.class);
-    // This is a singleton.
-    private static final RolePrivilegesManager ROLE_PRIVILEGES_MANAGER = new RolePrivilegesManager();
     // These are the actions that we know about. The privilege to perform these actions can be enabled/disabled per separately defined role.
     /** Get a file action. */
     public static final ServerAction GET = new ServerAction("Get file", false);
@@ -85,6 +83,11 @@ public final class RolePrivilegesManager {
     public static final ServerAction LIST_USER_ROLES = new ServerAction("(Admin tool): List user roles", false);
     /** Maintain a project's properties action. */
     public static final ServerAction SERVER_MAINTAIN_PROJECT = new ServerAction("(Admin tool): Maintain project", true);
+    private static final List<ServerAction> KNOWN_ACTIONS = List.of(GET, GET_DIRECTORY, SHOW_CEMETERY, SHOW_BRANCH_ARCHIVES_DIRECTORY, CHECK_IN, RENAME_FILE,
+            MOVE_FILE, DELETE_FILE, ADD_FILE, ADD_DIRECTORY, MERGE_FROM_PARENT, PROMOTE_TO_PARENT, DELETE_PROVISIONAL_RECORDS, DELETE_DIRECTORY,
+            SERVER_MAINTAIN_BRANCH, ADD_USER_ROLE, REMOVE_USER_ROLE, ASSIGN_USER_ROLES, LIST_PROJECT_USERS, LIST_USER_ROLES, SERVER_MAINTAIN_PROJECT);
+    // This is a singleton. It must be created after the actions are defined.
+    private static final RolePrivilegesManager ROLE_PRIVILEGES_MANAGER = new RolePrivilegesManager();
     private boolean isInitializedFlag = false;
 
     /**
@@ -95,6 +98,9 @@ public final class RolePrivilegesManager {
     private Map<Integer, PrivilegedAction> privilegedActionByIdMap;
     private Map<String, PrivilegedAction> privilegedActionByStringMap;
 
+    /** Answers isUserPrivileged without taking a lock. */
+    private final PrivilegeIndex privilegeIndex;
+
     private final DatabaseManager databaseManager;
     private final String schemaName;
 
@@ -104,6 +110,7 @@ public final class RolePrivilegesManager {
     private RolePrivilegesManager() {
         this.databaseManager = DatabaseManager.getInstance();
         this.schemaName = databaseManager.getSchemaName();
+        this.privilegeIndex = new PrivilegeIndex(KNOWN_ACTIONS, (projectName, userName) -> RoleManager.getRoleManager().listUserRoles(projectName, userName));
     }
 
     /**
@@ -122,6 +129,7 @@ public final class RolePrivilegesManager {
                 Map<String, Boolean> privilegeMapForRole = populatePrivilegeMapForRole(rt);
                 privilegesMap.put(rt.getRoleName(), privilegeMapForRole);
             }
+            privilegeIndex.setRolePrivileges(privilegesMap);
             isInitializedFlag = true;
         }
         return isInitializedFlag;
@@ -136,25 +144,22 @@ public final class RolePrivilegesManager {
     }
 
     /**
-     * Does the user have the privileges needed to perform the requested action.
+     * Does the user have the privileges needed to perform the requested action. This does not lock, and only goes to the database the first time a
+     * user asks about a project, or after the assignment of roles has changed.
      * @param projectName the project name.
      * @param userName the QVCS user name.
      * @param action the action they wish to perform.
      * @return true if the user is allowed to perform the requested operation; false if not allowed.
      */
-    public synchronized boolean isUserPrivileged(String projectName, String userName, ServerAction action) {
-        String[] userRoles = RoleManager.getRoleManager().listUserRoles(projectName, userName);
-        Boolean returnValue = false;
-        for (String userRole : userRoles) {
-            Map<String, Boolean> privilegeMapForRole = privilegesMap.get(userRole);
-            returnValue = privilegeMapForRole.get(action.getAction());
-            if ((returnValue != null) && returnValue) {
-                break;
-            } else {
-                returnValue = false;
-            }
-        }
-        return returnValue;
+    public boolean isUserPrivileged(String projectName, String userName, ServerAction action) {
+        return privilegeIndex.isUserPrivileged(projectName, userName, action);
+    }
+
+    /**
+     * Discard the cached roles of every user. Call this after a role is given to or taken from a user, or a user or role is removed.
+     */
+    public void invalidateUserRoles() {
+        privilegeIndex.invalidateUserRoles();
     }
 
     /**
@@ -204,6 +209,7 @@ public final class RolePrivilegesManager {
         for (int index = 0; index < privileges.length; index++) {
             flagMap.put(privileges[index], privilegesFlags[index]);
         }
+        privilegeIndex.setRolePrivileges(privilegesMap);
 
         // Update the database...
         RoleTypeDAO roleTypeDAO = new RoleTypeDAOImpl(schemaName);
@@ -14,14 +14,20 @@
  */
 package com.qumasoft.server;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * A Server action. These capture the definition of some server action that can be enabled/disabled per defined role.
  * @author Jim Voris
  */
 public class ServerAction {
+    /** Each action gets its own bit in a {@link PrivilegeIndex} privileges mask. */
+    static final int MAXIMUM_ACTION_COUNT = Long.SIZE;
+    private static final AtomicInteger ACTION_COUNTER = new AtomicInteger(0);
 
     private final String serverAction;
     private final boolean requiresUpdatePrivilegesFlag;
+    private final int actionIndex;
 
     /**
      * Creates a new instance of ServerAction.
@@ -32,6 +38,10 @@ public class ServerAction {
     public ServerAction(final String action, boolean flag) {
         serverAction = action;
         requiresUpdatePrivilegesFlag = flag;
+        actionIndex = ACTION_COUNTER.getAndIncrement();
+        if (actionIndex >= MAXIMUM_ACTION_COUNT) {
+            throw new IllegalStateException("Too many server actions: " + action);
+        }
     }
 
     /**
@@ -49,4 +59,12 @@ public class ServerAction {
     boolean getRequiresUpdatePrivilegesFlag() {
         return requiresUpdatePrivilegesFlag;
     }
+
+    /**
+     * Get the index of this action's bit in a privileges mask.
+     * @return the index of this action's bit in a privileges mask.
+     */
+    int getActionIndex() {
+        return actionIndex;
+    }
 }
@@ -15,6 +15,7 @@
 package com.qumasoft.server;
 
 import com.qumasoft.qvcslib.ArchiveDirManagerInterface;
+import com.qumasoft.qvcslib.QVCSConstants;
 import com.qumasoft.qvcslib.ServerResponseFactory;
 import com.qumasoft.qvcslib.response.AbstractServerManagementResponse;
 import com.qumasoft.qvcslib.response.AbstractServerResponse;
@@ -26,150 +27,263 @@ import com.qumasoft.server.clientrequest.ClientRequestLogin;
 import com.qvcsos.server.DatabaseManager;
 import com.qvcsos.server.ServerTransactionManager;
 import java.io.IOException;
-import java.net.Socket;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
 import java.sql.SQLException;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-class ServerWorker implements Runnable {
+/**
+ * The server side of a single client connection. The connection does not own a thread: the {@link ClientConnectionServer} calls
+ * {@link #handleClientRequests()} on one of its request threads whenever the client has sent something, and watches the connection with its selector
+ * the rest of the time.
+ *
+ * @author Jim Voris
+ */
+class ServerWorker {
     // Create our logger object
     private static final Logger LOGGER = LoggerFactory.getLogger(ServerWorker.class);
+
+    /**
+     * How long a read or write may wait for the client. A live client sends a heartbeat well within this time.
+     */
+    private static final long CLIENT_IO_TIMEOUT = 8L * QVCSConstants.HEART_BEAT_SLEEP_TIME;
+
+    /**
+     * How long to wait for queued responses to reach the client before we close the connection.
+     */
+    private static final long OUTBOUND_DRAIN_TIMEOUT = 5_000L;
+
     /*
      * Socket to client we're handling
      */
-    private final Socket workerSocket;
+    private final SocketChannel workerChannel;
+    private final String connectedTo;
+    private final AtomicBoolean closedFlag = new AtomicBoolean(false);
+    private ServerResponseFactory responseFactory = null;
+    private ClientRequestFactory requestFactory = null;
+    private SelectionKey selectionKey = null;
+    private boolean inFlightFlag = false;
+
+    ServerWorker(SocketChannel channel) {
+        this.workerChannel = channel;
+        this.connectedTo = channel.socket().getInetAddress().getHostAddress();
+    }
+
+    /**
+     * Create the response factory. This writes the object stream header, which the client waits for before it sends its first request.
+     * @return true if the connection is usable.
+     */
+    boolean open() {
+        responseFactory = new ServerResponseFactory(new ChannelStreams.ChannelOutputStream(workerChannel, CLIENT_IO_TIMEOUT), workerChannel.socket().getPort(),
+                connectedTo);
+        LOGGER.info("Connected to: [{}]", connectedTo);
+        return responseFactory.getConnectionAliveFlag();
+    }
+
+    SocketChannel getChannel() {
+        return workerChannel;
+    }
+
+    SelectionKey getSelectionKey() {
+        return selectionKey;
+    }
+
+    void setSelectionKey(SelectionKey key) {
+        this.selectionKey = key;
+    }
 
-    ServerWorker(Socket socket) {
-        this.workerSocket = socket;
+    /**
+     * Is a request thread working on this connection. Guarded by the connection server's state lock.
+     * @return true if a request thread is working on this connection.
+     */
+    boolean getInFlightFlag() {
+        return inFlightFlag;
     }
 
-    @Override
-    public void run() {
-        handleClientRequests();
-        LOGGER.info("Returned from handleClientRequests for thread: [{}]", Thread.currentThread().getName());
+    void setInFlightFlag(boolean flag) {
+        this.inFlightFlag = flag;
     }
 
-    private void handleClientRequests() {
-        String connectedTo = null;
+    /**
+     * Is the connection to the client still usable.
+     * @return true if the connection is open, and the client has been heard from recently.
+     */
+    boolean isAlive() {
+        return !closedFlag.get() && workerChannel.isOpen() && (responseFactory != null) && responseFactory.getConnectionAliveFlag();
+    }
 
-        ServerResponseFactory responseFactory = null;
-        ClientRequestFactory requestFactory;
+    /**
+     * Handle the request the client has sent. While the client has a transaction open, keep reading and executing its requests on this thread, since the
+     * transaction's database connection and pending commit belong to the thread.
+     * @return true if the connection should stay open; false if it should be closed.
+     */
+    boolean handleClientRequests() {
+        boolean keepOpenFlag = false;
         try {
-            requestFactory = new ClientRequestFactory(workerSocket.getInputStream());
-            responseFactory = new ServerResponseFactory(workerSocket.getOutputStream(), workerSocket.getPort(), workerSocket.getInetAddress().getHostAddress());
-            connectedTo = workerSocket.getInetAddress().getHostAddress();
-            LOGGER.info("Connected to: [{}]", connectedTo);
-
-            while (!ServerResponseFactory.getShutdownInProgress() && responseFactory.getConnectionAliveFlag()) {
-                try {
-                    ClientRequestInterface clientRequest = requestFactory.createClientRequest(responseFactory);
-                    if (clientRequest != null) {
-                        java.io.Serializable returnObject = clientRequest.execute(requestFactory.getUserName(), responseFactory);
-                        if (clientRequest.getSyncToken() == null) {
-                            LOGGER.info("null sync token.");
-                        }
-                        if (returnObject instanceof AbstractServerResponse abstractServerResponse) {
-                            abstractServerResponse.setSyncToken(clientRequest.getSyncToken());
-                        } else if (returnObject instanceof AbstractServerManagementResponse abstractServerManagermentResponse) {
-                            abstractServerManagermentResponse.setSyncToken(clientRequest.getSyncToken());
-                        }
+            do {
+                keepOpenFlag = handleClientRequest();
+            } while (keepOpenFlag && ServerTransactionManager.getInstance().transactionIsInProgress(responseFactory));
+        } finally {
+            if (!keepOpenFlag) {
+                // The connection is going to be closed, and the database connection belongs to this thread, so give it back here. That rolls back any
+                // transaction the client left open.
+                closeDatabaseConnection();
+            }
+        }
+        return keepOpenFlag;
+    }
 
-                        if (clientRequest instanceof ClientRequestLogin clientRequestLogin) {
-                            ServerResponseLogin serverResponseLogin = (ServerResponseLogin) returnObject;
-                            if (serverResponseLogin.getLoginResult()) {
-                                requestFactory.setIsUserLoggedIn(true);
-                                requestFactory.setUserName(serverResponseLogin.getUserName());
+    private boolean handleClientRequest() {
+        if (ServerResponseFactory.getShutdownInProgress() || !responseFactory.getConnectionAliveFlag()) {
+            return false;
+        }
+        boolean retVal = false;
+        try {
+            if (requestFactory == null) {
+                // This reads the client's object stream header, so it waits until the client has sent something.
+                requestFactory = new ClientRequestFactory(new ChannelStreams.ChannelInputStream(workerChannel, CLIENT_IO_TIMEOUT));
+            }
+            ClientRequestInterface clientRequest = requestFactory.createClientRequest(responseFactory);
+            if (clientRequest != null) {
+                java.io.Serializable returnObject = clientRequest.execute(requestFactory.getUserName(), responseFactory);
+                if (clientRequest.getSyncToken() == null) {
+                    LOGGER.info("null sync token.");
+                }
+                if (returnObject instanceof AbstractServerResponse abstractServerResponse) {
+                    abstractServerResponse.setSyncToken(clientRequest.getSyncToken());
+                } else if (returnObject instanceof AbstractServerManagementResponse abstractServerManagermentResponse) {
+                    abstractServerManagermentResponse.setSyncToken(clientRequest.getSyncToken());
+                }
 
-                                responseFactory.setIsUserLoggedIn(true);
-                                responseFactory.setUserName(serverResponseLogin.getUserName());
-                                responseFactory.setServerName(clientRequestLogin.getServerName());
-                                requestFactory.setClientVersionMatchesFlag(serverResponseLogin.getVersionsMatchFlag());
+                if (clientRequest instanceof ClientRequestLogin clientRequestLogin) {
+                    ServerResponseLogin serverResponseLogin = (ServerResponseLogin) returnObject;
+                    if (serverResponseLogin.getLoginResult()) {
+                        requestFactory.setIsUserLoggedIn(true);
+                        requestFactory.setUserName(serverResponseLogin.getUserName());
 
-                                QVCSEnterpriseServer.getConnectedUsersCollection().add(responseFactory);
-                            }
-                        }
+                        responseFactory.setIsUserLoggedIn(true);
+                        responseFactory.setUserName(serverResponseLogin.getUserName());
+                        responseFactory.setServerName(clientRequestLogin.getServerName());
+                        requestFactory.setClientVersionMatchesFlag(serverResponseLogin.getVersionsMatchFlag());
 
-                        // Send the response back to the client.
-                        responseFactory.createServerResponse(returnObject);
-
-                        // Send any queued notifications.
-                        NotificationManager.getNotificationManager().sendQueuedNotifications();
-
-                        // If this was a login request that succeeded, we also
-                        // need to send the list of projects for this user.
-                        if (clientRequest instanceof ClientRequestLogin) {
-                            ClientRequestLogin clientRequestLogin = (ClientRequestLogin) clientRequest;
-                            ServerResponseMessage message;
-
-                            if (!responseFactory.getIsUserLoggedIn()) {
-                                // The user failed to login.  Report the problem to the user.
-                                if (clientRequestLogin.getAuthenticationFailedFlag()) {
-                                    message = new ServerResponseMessage("Invalid username/password", null, null, null, ServerResponseMessage.HIGH_PRIORITY);
-                                    responseFactory.createServerResponse(message);
-                                }
-                            } else {
-                                // Report any status information back to the user.
-                                if (clientRequestLogin.getMessage() != null) {
-                                    message = new ServerResponseMessage(clientRequestLogin.getMessage(), null, null, null, ServerResponseMessage.HIGH_PRIORITY);
-                                    responseFactory.createServerResponse(message);
-                                }
-                            }
+                        QVCSEnterpriseServer.getConnectedUsersCollection().add(responseFactory);
+                    }
+                }
+
+                // Send the response back to the client.
+                responseFactory.createServerResponse(returnObject);
+
+                // Send any queued notifications.
+                NotificationManager.getNotificationManager().sendQueuedNotifications();
+
+                // If this was a login request that succeeded, we also
+                // need to send the list of projects for this user.
+                if (clientRequest instanceof ClientRequestLogin) {
+                    ClientRequestLogin clientRequestLogin = (ClientRequestLogin) clientRequest;
+                    ServerResponseMessage message;
+
+                    if (!responseFactory.getIsUserLoggedIn()) {
+                        // The user failed to login.  Report the problem to the user.
+                        if (clientRequestLogin.getAuthenticationFailedFlag()) {
+                            message = new ServerResponseMessage("Invalid username/password", null, null, null, ServerResponseMessage.HIGH_PRIORITY);
+                            responseFactory.createServerResponse(message);
                         }
                     } else {
-                        LOGGER.info("ClientRequest is null!! Breaking connection to: [{}]", connectedTo);
-                        break;
+                        // The login response went out using Java serialization; from here on, use the protocol we agreed on.
+                        ServerResponseLogin serverResponseLogin = (ServerResponseLogin) returnObject;
+                        responseFactory.setWireProtocolVersion(serverResponseLogin.getWireProtocolVersion());
+
+                        // Report any status information back to the user.
+                        if (clientRequestLogin.getMessage() != null) {
+                            message = new ServerResponseMessage(clientRequestLogin.getMessage(), null, null, null, ServerResponseMessage.HIGH_PRIORITY);
+                            responseFactory.createServerResponse(message);
+                        }
                     }
-                } catch (QVCSShutdownException e) {
-                    // We are shutting down this server.
-                    LOGGER.info("Shutting down server at request from: [{}]", connectedTo);
-                    break;
-                } catch (RuntimeException e) {
-                    LOGGER.info("Runtime exception -- breaking connection to: [{}]", connectedTo);
-                    LOGGER.warn(e.getLocalizedMessage(), e);
-                    break;
-                } catch (Exception e) {
-                    LOGGER.info("Exception -- breaking connection to: [{}]", connectedTo);
-                    LOGGER.warn(e.getLocalizedMessage(), e);
-                    break;
                 }
+                retVal = responseFactory.getConnectionAliveFlag();
+            } else {
+                LOGGER.info("ClientRequest is null!! Breaking connection to: [{}]", connectedTo);
             }
-        } catch (IOException e) {
-            LOGGER.info("Breaking connection to: [{}]", connectedTo);
+        } catch (QVCSShutdownException e) {
+            // We are shutting down this server.
+            LOGGER.info("Shutting down server at request from: [{}]", connectedTo);
+        } catch (RuntimeException e) {
+            LOGGER.info("Runtime exception -- breaking connection to: [{}]", connectedTo);
+            LOGGER.warn(e.getLocalizedMessage(), e);
+        } catch (Exception e) {
+            LOGGER.info("Exception -- breaking connection to: [{}]", connectedTo);
             LOGGER.warn(e.getLocalizedMessage(), e);
         } finally {
-            try {
-                // Close this thread's database connection.
-                DatabaseManager.getInstance().closeConnection();
-
-                LOGGER.info("Server closing socket for: [{}]", connectedTo);
-                workerSocket.close();
-
-                // The connection to the client is gone.  Remove the response
-                // factory as a listener for any archive directory managers
-                // so we don't waste time trying to inform a client that we
-                // can no longer talk to.
-                if (responseFactory != null) {
-                    Set<ArchiveDirManagerInterface> directoryManagers = responseFactory.getDirectoryManagers();
-                    for (ArchiveDirManagerInterface directoryManagerInterface : directoryManagers) {
-                        directoryManagerInterface.removeLogFileListener(responseFactory);
-                    }
+            // Give this thread's database connection back to the pool (unless a transaction is in progress).
+            releaseDatabaseConnection();
+        }
+        return retVal;
+    }
+
+    /**
+     * Close the connection to the client, and forget about it. It is safe to call this more than once. This may wait for queued responses to go out, so
+     * the selector thread must not call it. The database connection is not released here: it belongs to the request thread, which gives it back when
+     * {@link #handleClientRequests()} decides the connection should close.
+     */
+    void close() {
+        if (!closedFlag.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            // Let the responses we have already queued go out first.
+            if (responseFactory != null) {
+                responseFactory.awaitOutboundQueueEmpty(OUTBOUND_DRAIN_TIMEOUT);
+                LOGGER.info("Outbound statistics for: [{}] {}", connectedTo, responseFactory.getOutboundStatistics());
+                LOGGER.info("Heartbeat statistics for: [{}] {}", connectedTo, responseFactory.getHeartBeatStatistics());
+                responseFactory.stopLivenessSupervision();
+            }
 
-                    QVCSEnterpriseServer.getConnectedUsersCollection().remove(responseFactory);
+            LOGGER.info("Server closing socket for: [{}]", connectedTo);
+            workerChannel.close();
 
-                    // Disconnect any directory coordinate listeners.
-                    NotificationManager.getNotificationManager().removeServerResponseFactory(responseFactory);
+            // The connection to the client is gone.  Remove the response
+            // factory as a listener for any archive directory managers
+            // so we don't waste time trying to inform a client that we
+            // can no longer talk to.
+            if (responseFactory != null) {
+                Set<ArchiveDirManagerInterface> directoryManagers = responseFactory.getDirectoryManagers();
+                for (ArchiveDirManagerInterface directoryManagerInterface : directoryManagers) {
+                    directoryManagerInterface.removeLogFileListener(responseFactory);
+                }
 
-                    // Decrement the number of logged on users with the
-                    // license manager.
-                    if (responseFactory.getIsUserLoggedIn()) {
-                        ServerTransactionManager.getInstance().flushClientTransaction(responseFactory);
-                        LicenseManager.getInstance().logoutUser(responseFactory.getUserName(), responseFactory.getClientIPAddress());
-                    }
+                QVCSEnterpriseServer.getConnectedUsersCollection().remove(responseFactory);
+
+                // Disconnect any directory coordinate listeners.
+                NotificationManager.getNotificationManager().removeServerResponseFactory(responseFactory);
+
+                // Decrement the number of logged on users with the
+                // license manager.
+                if (responseFactory.getIsUserLoggedIn()) {
+                    ServerTransactionManager.getInstance().flushClientTransaction(responseFactory);
+                    LicenseManager.getInstance().logoutUser(responseFactory.getUserName(), responseFactory.getClientIPAddress());
                 }
-            } catch (SQLException | IOException e) {
-                LOGGER.warn(e.getLocalizedMessage(), e);
             }
+        } catch (IOException e) {
+            LOGGER.warn(e.getLocalizedMessage(), e);
+        }
+    }
+
+    private void closeDatabaseConnection() {
+        try {
+            DatabaseManager.getInstance().closeConnection();
+        } catch (SQLException e) {
+            LOGGER.warn(e.getLocalizedMessage(), e);
+        }
+    }
+
+    private void releaseDatabaseConnection() {
+        try {
+            DatabaseManager.getInstance().releaseConnection();
+        } catch (SQLException e) {
+            LOGGER.warn(e.getLocalizedMessage(), e);
         }
     }
 }
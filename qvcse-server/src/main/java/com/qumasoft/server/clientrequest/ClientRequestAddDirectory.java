@@ -26,13 +26,12 @@ import com.qumasoft.server.ActivityJournalManager;
 import com.qumasoft.server.QVCSEnterpriseServer;
 import com.qumasoft.server.RolePrivilegesManager;
 import com.qvcsos.server.DatabaseManager;
+import com.qvcsos.server.DirectoryLocationIndex;
 import com.qvcsos.server.SourceControlBehaviorManager;
 import com.qvcsos.server.dataaccess.BranchDAO;
-import com.qvcsos.server.dataaccess.DirectoryLocationDAO;
 import com.qvcsos.server.dataaccess.FunctionalQueriesDAO;
 import com.qvcsos.server.dataaccess.ProjectDAO;
 import com.qvcsos.server.dataaccess.impl.BranchDAOImpl;
-import com.qvcsos.server.dataaccess.impl.DirectoryLocationDAOImpl;
 import com.qvcsos.server.dataaccess.impl.FunctionalQueriesDAOImpl;
 import com.qvcsos.server.dataaccess.impl.ProjectDAOImpl;
 import com.qvcsos.server.datamodel.Branch;
@@ -167,8 +166,8 @@ public class ClientRequestAddDirectory extends AbstractClientRequest {
         Branch branch = branchDAO.findById(brnchId);
         Integer rootDirectoryId = branch.getRootDirectoryId();
 
-        DirectoryLocationDAO directoryLocationDAO = new DirectoryLocationDAOImpl(schemaName);
-        DirectoryLocation parentDirectoryLocation = directoryLocationDAO.findByDirectoryId(rootDirectoryId);
+        DirectoryLocationIndex directoryLocationIndex = DirectoryLocationIndex.getInstance(schemaName);
+        DirectoryLocation parentDirectoryLocation = directoryLocationIndex.findByDirectoryId(rootDirectoryId);
 
         StringBuilder constructedAppendedPath = new StringBuilder();
         boolean successFlag = true;
@@ -180,11 +179,12 @@ public class ClientRequestAddDirectory extends AbstractClientRequest {
                     // Create the directory segment.
                     id = sourceControlBehaviorManager.addDirectory(brnchId, projId, parentDirectoryLocation.getId(), segment);
                     LOGGER.info("created directorylocation with id: [{}] for segment: [{}]", id, segment);
-                    parentDirectoryLocation = directoryLocationDAO.findById(id);
+                    parentDirectoryLocation = directoryLocationIndex.findById(id);
                 } catch (SQLException e) {
                     successFlag = false;
                     try {
                         databaseManager.getConnection().rollback();
+                        DirectoryLocationIndex.discardChangesForAll(Thread.currentThread());
                     } catch (SQLException ex) {
                         LOGGER.warn("Rollback failed.", ex);
                     }
@@ -201,6 +201,7 @@ public class ClientRequestAddDirectory extends AbstractClientRequest {
         if (successFlag) {
             try {
                 databaseManager.getConnection().commit();
+                DirectoryLocationIndex.publishChangesForAll(Thread.currentThread());
             } catch (SQLException ex) {
                 LOGGER.warn("Commit failed", ex);
             }
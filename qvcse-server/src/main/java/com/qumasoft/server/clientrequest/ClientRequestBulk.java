@@ -0,0 +1,275 @@
+/*   Copyright 2004-2023 Jim Voris
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.qumasoft.server.clientrequest;
+
+import com.qumasoft.qvcslib.QVCSConstants;
+import com.qumasoft.qvcslib.QVCSRuntimeException;
+import com.qumasoft.qvcslib.ServerResponseFactoryInterface;
+import com.qumasoft.qvcslib.commandargs.CheckInCommandArgs;
+import com.qumasoft.qvcslib.requestdata.ClientRequestBulkData;
+import com.qumasoft.qvcslib.requestdata.ClientRequestCheckInData;
+import com.qumasoft.qvcslib.requestdata.ClientRequestClientData;
+import com.qumasoft.qvcslib.requestdata.ClientRequestDeleteFileData;
+import com.qumasoft.qvcslib.requestdata.ClientRequestRenameData;
+import com.qumasoft.qvcslib.response.AbstractServerResponse;
+import com.qumasoft.qvcslib.response.ServerResponseBulk;
+import com.qumasoft.qvcslib.response.ServerResponseMessage;
+import com.qumasoft.server.NotificationManager;
+import com.qvcsos.server.DatabaseManager;
+import com.qvcsos.server.DirectoryLocationIndex;
+import com.qvcsos.server.ServerTransactionManager;
+import com.qvcsos.server.SourceControlBehaviorManager;
+import com.qvcsos.server.dataaccess.BranchDAO;
+import com.qvcsos.server.dataaccess.ProjectDAO;
+import com.qvcsos.server.dataaccess.impl.BranchDAOImpl;
+import com.qvcsos.server.dataaccess.impl.ProjectDAOImpl;
+import com.qvcsos.server.datamodel.Branch;
+import com.qvcsos.server.datamodel.FileRevision;
+import com.qvcsos.server.datamodel.Project;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Client request bulk operation. Check in, delete, and rename a batch of files in one server transaction, under one commit.
+ *
+ * <p>The check-ins are added with {@link SourceControlBehaviorManager#addRevisions}, which uses JDBC batches and computes the reverse deltas in parallel.
+ * A file that is checked in more than once in the same batch has its later check-ins applied one at a time, after the batch. The deletes and renames
+ * are applied after the check-ins, in request order. Listeners are notified once, for the whole batch, after the transaction commits.</p>
+ *
+ * <p>If the batched check-ins cannot be added, the whole batch is abandoned: the deletes and renames are skipped, the transaction is rolled back, and
+ * the notifications that were held back for the batch are dropped.</p>
+ *
+ * @author Jim Voris
+ */
+public class ClientRequestBulk extends AbstractClientRequest {
+    // Create our logger object
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClientRequestBulk.class);
+    private final String schemaName;
+
+    /**
+     * Creates a new instance of ClientRequestBulk.
+     *
+     * @param data the request data.
+     */
+    public ClientRequestBulk(ClientRequestBulkData data) {
+        this.schemaName = DatabaseManager.getInstance().getSchemaName();
+        setRequest(data);
+    }
+
+    /**
+     * Perform the batched operations.
+     *
+     * @param userName the user's user name.
+     * @param response identify the client.
+     * @return an object to tell the user how things went.
+     */
+    @Override
+    public AbstractServerResponse execute(String userName, ServerResponseFactoryInterface response) {
+        ClientRequestBulkData bulkData = (ClientRequestBulkData) getRequest();
+        SourceControlBehaviorManager sourceControlBehaviorManager = SourceControlBehaviorManager.getInstance();
+        AbstractServerResponse returnObject;
+        String validationProblem = validateRequestList(bulkData);
+        if (validationProblem != null) {
+            returnObject = new ServerResponseMessage(validationProblem, bulkData.getProjectName(), bulkData.getBranchName(), null,
+                    ServerResponseMessage.HIGH_PRIORITY);
+            returnObject.setSyncToken(getRequest().getSyncToken());
+            return returnObject;
+        }
+
+        beginTransaction(response);
+        NotificationManager.getNotificationManager().beginNotificationBatch();
+        boolean rollbackFlag = false;
+        try {
+            sourceControlBehaviorManager.setUserAndResponse(userName, response);
+
+            // Create the one commit that the whole batch shares.
+            String commitMessage = bulkData.getCommitMessage();
+            if (commitMessage == null) {
+                commitMessage = "Bulk operation on [" + bulkData.getRequestList().size() + "] files.";
+            }
+            ServerResponseBulk bulkResponse = new ServerResponseBulk();
+            bulkResponse.setCommitId(sourceControlBehaviorManager.getCommitId(null, commitMessage));
+
+            Map<ClientRequestClientData, AbstractServerResponse> responseMap = new IdentityHashMap<>();
+            checkInFiles(userName, response, bulkData, commitMessage, responseMap);
+            for (ClientRequestClientData request : bulkData.getRequestList()) {
+                switch (request.getOperationType()) {
+                    case DELETE_FILE:
+                        responseMap.put(request, new ClientRequestDeleteFile((ClientRequestDeleteFileData) request).execute(userName, response));
+                        break;
+                    case RENAME_FILE:
+                        responseMap.put(request, new ClientRequestRename((ClientRequestRenameData) request).execute(userName, response));
+                        break;
+                    default:
+                        break;
+                }
+            }
+            for (ClientRequestClientData request : bulkData.getRequestList()) {
+                bulkResponse.addResponse(responseMap.get(request));
+            }
+            LOGGER.info("User: [{}] completed bulk operation on [{}] files with commit id: [{}]", userName, bulkData.getRequestList().size(),
+                    bulkResponse.getCommitId());
+            returnObject = bulkResponse;
+        } catch (SQLException | QVCSRuntimeException e) {
+            LOGGER.warn(e.getLocalizedMessage(), e);
+            rollbackFlag = true;
+            returnObject = new ServerResponseMessage("Bulk operation failed: " + e.getLocalizedMessage(), bulkData.getProjectName(), bulkData.getBranchName(),
+                    null, ServerResponseMessage.HIGH_PRIORITY);
+        } finally {
+            sourceControlBehaviorManager.clearThreadLocals();
+            if (rollbackFlag) {
+                rollbackTransaction();
+                NotificationManager.getNotificationManager().discardNotificationBatch();
+            }
+            endTransaction(response);
+            if (!rollbackFlag) {
+                NotificationManager.getNotificationManager().endNotificationBatch();
+            }
+        }
+        returnObject.setSyncToken(getRequest().getSyncToken());
+        return returnObject;
+    }
+
+    /**
+     * Make sure every batched request is for the project and branch of the bulk request.
+     * @param bulkData the bulk request.
+     * @return a description of the problem, or null if the batch is fine.
+     */
+    private String validateRequestList(ClientRequestBulkData bulkData) {
+        for (ClientRequestClientData request : bulkData.getRequestList()) {
+            if (!Objects.equals(request.getProjectName(), bulkData.getProjectName()) || !Objects.equals(request.getBranchName(), bulkData.getBranchName())) {
+                return "All requests in a bulk operation must be for project [" + bulkData.getProjectName() + "] and branch [" + bulkData.getBranchName() + "]";
+            }
+        }
+        return null;
+    }
+
+    private void checkInFiles(String userName, ServerResponseFactoryInterface response, ClientRequestBulkData bulkData, String commitMessage,
+            Map<ClientRequestClientData, AbstractServerResponse> responseMap) throws SQLException {
+        List<ClientRequestCheckInData> batchedList = new ArrayList<>();
+        List<ClientRequestCheckInData> repeatedList = new ArrayList<>();
+        Set<Integer> fileIdSet = new HashSet<>();
+        for (ClientRequestClientData request : bulkData.getRequestList()) {
+            if (request instanceof ClientRequestCheckInData checkInData) {
+                if (fileIdSet.add(checkInData.getFileID())) {
+                    batchedList.add(checkInData);
+                } else {
+                    repeatedList.add(checkInData);
+                }
+            }
+        }
+        if (batchedList.isEmpty()) {
+            return;
+        }
+        Branch branch = lookupBranch(bulkData);
+        if (branch.getBranchTypeId() == QVCSConstants.QVCS_TAG_BASED_BRANCH_TYPE) {
+            throw new QVCSRuntimeException("Checkins are not allowed on read-only branches!");
+        }
+
+        List<FileRevision> newRevisionList = new ArrayList<>(batchedList.size());
+        for (ClientRequestCheckInData checkInData : batchedList) {
+            CheckInCommandArgs commandArgs = checkInData.getCommandArgs();
+            FileRevision newRevision = new FileRevision();
+            newRevision.setFileId(checkInData.getFileID());
+            newRevision.setWorkfileEditDate(new Timestamp(commandArgs.getInputfileTimeStamp().getTime()));
+            newRevision.setRevisionData(checkInData.getBuffer());
+            newRevisionList.add(newRevision);
+        }
+        List<Integer> fileRevisionIdList = SourceControlBehaviorManager.getInstance().addRevisions(branch.getId(), newRevisionList, commitMessage);
+        if (fileRevisionIdList == null) {
+            // Nothing else in the batch may be applied without these check-ins.
+            throw new QVCSRuntimeException("Failed to check in [" + batchedList.size() + "] files.");
+        }
+        for (int i = 0; i < batchedList.size(); i++) {
+            ClientRequestCheckInData checkInData = batchedList.get(i);
+            responseMap.put(checkInData, new ClientRequestCheckIn(checkInData).completeCheckIn(userName, fileRevisionIdList.get(i)));
+        }
+
+        // A file checked in more than once needs each new revision to see the one before it.
+        for (ClientRequestCheckInData checkInData : repeatedList) {
+            responseMap.put(checkInData, new ClientRequestCheckIn(checkInData).execute(userName, response));
+        }
+    }
+
+    private Branch lookupBranch(ClientRequestBulkData bulkData) {
+        ProjectDAO projectDAO = new ProjectDAOImpl(schemaName);
+        Project project = projectDAO.findByProjectName(bulkData.getProjectName());
+        String branchName = bulkData.getBranchName();
+        if (branchName == null) {
+            branchName = QVCSConstants.QVCS_TRUNK_BRANCH;
+        }
+        BranchDAO branchDAO = new BranchDAOImpl(schemaName);
+        return branchDAO.findByProjectIdAndBranchName(project.getId(), branchName);
+    }
+
+    /**
+     * Join the client's transaction, or start one, so that everything in the batch shares one commit.
+     * @param response identify the client.
+     */
+    private void beginTransaction(ServerResponseFactoryInterface response) {
+        ServerTransactionManager.getInstance().clientBeginTransaction(response);
+        try {
+            Connection connection = DatabaseManager.getInstance().getConnection();
+            if (connection.getAutoCommit()) {
+                connection.setAutoCommit(false);
+            }
+        } catch (SQLException e) {
+            LOGGER.warn("Failed to set auto commit to false", e);
+            throw new QVCSRuntimeException("Failed to set auto commit to false");
+        }
+    }
+
+    /**
+     * Roll back everything the batch has written, and forget the directory location changes this thread made along the way.
+     */
+    private void rollbackTransaction() {
+        try {
+            DatabaseManager.getInstance().getConnection().rollback();
+        } catch (SQLException e) {
+            LOGGER.warn("Rollback failed.", e);
+        }
+        DirectoryLocationIndex.discardChangesForAll(Thread.currentThread());
+    }
+
+    /**
+     * Leave the transaction. If it was ours, this commits the batch.
+     * @param response identify the client.
+     */
+    private void endTransaction(ServerResponseFactoryInterface response) {
+        ServerTransactionManager.getInstance().clientEndTransaction(response);
+        if (!ServerTransactionManager.getInstance().transactionIsInProgress(response)) {
+            try {
+                Connection connection = DatabaseManager.getInstance().getConnection();
+                if (!connection.getAutoCommit()) {
+                    connection.setAutoCommit(true);
+                }
+                DirectoryLocationIndex.publishChangesForAll(Thread.currentThread());
+            } catch (SQLException e) {
+                LOGGER.warn("Failed to set auto commit to true", e);
+                throw new QVCSRuntimeException("Failed to set auto commit to true");
+            }
+        }
+    }
+}
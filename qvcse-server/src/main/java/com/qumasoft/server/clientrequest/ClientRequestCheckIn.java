@@ -81,13 +81,11 @@ public class ClientRequestCheckIn extends AbstractClientRequest {
         sourceControlBehaviorManager.setUserAndResponse(userName, response);
         ClientRequestCheckInData clientRequestCheckInData = (ClientRequestCheckInData) getRequest();
         java.io.File tempFile = null;
-        ServerResponseCheckIn serverResponse;
         AbstractServerResponse returnObject = null;
         CheckInCommandArgs commandArgs = clientRequestCheckInData.getCommandArgs();
         String projectName = getRequest().getProjectName();
         String branchName = getRequest().getBranchName();
         String appendedPath = getRequest().getAppendedPath();
-        DirectoryCoordinate dc = new DirectoryCoordinate(getRequest().getProjectName(), getRequest().getBranchName(), getRequest().getAppendedPath());
         FileOutputStream outputStream = null;
         Integer fileRevisionId;
         try {
@@ -97,30 +95,7 @@ public class ClientRequestCheckIn extends AbstractClientRequest {
             Utility.writeDataToStream(clientRequestCheckInData.getBuffer(), outputStream);
             fileRevisionId = addRevisionToPostgres(commandArgs, tempFile);
             if (fileRevisionId != null) {
-                // Things worked.  Set up the response object to contain the information the client needs.
-                serverResponse = new ServerResponseCheckIn();
-                serverResponse.setShortWorkfileName(commandArgs.getShortWorkfileName());
-                serverResponse.setClientWorkfileName(commandArgs.getFullWorkfileName());
-                serverResponse.setProjectName(projectName);
-                serverResponse.setBranchName(branchName);
-                serverResponse.setAppendedPath(appendedPath);
-                serverResponse.setProtectWorkfileFlag(commandArgs.getProtectWorkfileFlag());
-                serverResponse.setNewRevisionString(commandArgs.getNewRevisionString());
-                serverResponse.setIndex(clientRequestCheckInData.getIndex());
-                serverResponse.setSyncToken(getRequest().getSyncToken());
-                FunctionalQueriesDAO functionalQueriesDAO = new FunctionalQueriesDAOImpl(schemaName);
-                SkinnyLogfileInfo skinnyInfo = functionalQueriesDAO.getSkinnyLogfileInfo(fileRevisionId);
-                commandArgs.setNewRevisionString(skinnyInfo.getDefaultRevisionString());
-                skinnyInfo.setCacheIndex(clientRequestCheckInData.getIndex());
-                serverResponse.setSkinnyLogfileInfo(skinnyInfo);
-
-                returnObject = serverResponse;
-
-                // Notify listeners.
-                NotificationManager.getNotificationManager().notifySkinnyInfoListeners(dc, skinnyInfo, new CheckIn(clientRequestCheckInData.getCommandArgs()));
-
-                // Add an entry to the server journal file.
-                ActivityJournalManager.getInstance().addJournalEntry(buildJournalEntry(userName, commandArgs.getShortWorkfileName()));
+                returnObject = completeCheckIn(userName, fileRevisionId);
             } else {
                 if (fileRevisionId == null) {
                     // Explain the error.
@@ -157,6 +132,46 @@ public class ClientRequestCheckIn extends AbstractClientRequest {
         return returnObject;
     }
 
+    /**
+     * Build the response for a check-in that has been added to the database, notify listeners, and add an entry to the server journal.
+     *
+     * @param userName the user's user name.
+     * @param fileRevisionId the id of the new revision.
+     * @return the response to send to the client.
+     */
+    AbstractServerResponse completeCheckIn(String userName, Integer fileRevisionId) {
+        ClientRequestCheckInData clientRequestCheckInData = (ClientRequestCheckInData) getRequest();
+        CheckInCommandArgs commandArgs = clientRequestCheckInData.getCommandArgs();
+        String projectName = getRequest().getProjectName();
+        String branchName = getRequest().getBranchName();
+        String appendedPath = getRequest().getAppendedPath();
+        DirectoryCoordinate dc = new DirectoryCoordinate(projectName, branchName, appendedPath);
+
+        // Things worked.  Set up the response object to contain the information the client needs.
+        ServerResponseCheckIn serverResponse = new ServerResponseCheckIn();
+        serverResponse.setShortWorkfileName(commandArgs.getShortWorkfileName());
+        serverResponse.setClientWorkfileName(commandArgs.getFullWorkfileName());
+        serverResponse.setProjectName(projectName);
+        serverResponse.setBranchName(branchName);
+        serverResponse.setAppendedPath(appendedPath);
+        serverResponse.setProtectWorkfileFlag(commandArgs.getProtectWorkfileFlag());
+        serverResponse.setNewRevisionString(commandArgs.getNewRevisionString());
+        serverResponse.setIndex(clientRequestCheckInData.getIndex());
+        serverResponse.setSyncToken(getRequest().getSyncToken());
+        FunctionalQueriesDAO functionalQueriesDAO = new FunctionalQueriesDAOImpl(schemaName);
+        SkinnyLogfileInfo skinnyInfo = functionalQueriesDAO.getSkinnyLogfileInfo(fileRevisionId);
+        commandArgs.setNewRevisionString(skinnyInfo.getDefaultRevisionString());
+        skinnyInfo.setCacheIndex(clientRequestCheckInData.getIndex());
+        serverResponse.setSkinnyLogfileInfo(skinnyInfo);
+
+        // Notify listeners.
+        NotificationManager.getNotificationManager().notifySkinnyInfoListeners(dc, skinnyInfo, new CheckIn(clientRequestCheckInData.getCommandArgs()));
+
+        // Add an entry to the server journal file.
+        ActivityJournalManager.getInstance().addJournalEntry(buildJournalEntry(userName, commandArgs.getShortWorkfileName()));
+        return serverResponse;
+    }
+
     private String buildJournalEntry(final String userName, final String shortWorkfileName) {
         ClientRequestCheckInData clientRequestCheckInData = (ClientRequestCheckInData) getRequest();
         CheckInCommandArgs commandArgs = clientRequestCheckInData.getCommandArgs();
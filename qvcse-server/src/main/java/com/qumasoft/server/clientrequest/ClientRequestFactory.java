@@ -14,15 +14,16 @@
  */
 package com.qumasoft.server.clientrequest;
 
-import com.qumasoft.qvcslib.Compressor;
+import com.qumasoft.qvcslib.CompressionEngine;
 import com.qumasoft.qvcslib.QVCSConstants;
 import com.qumasoft.qvcslib.QVCSRuntimeException;
 import com.qumasoft.qvcslib.ServerResponseFactory;
 import com.qumasoft.qvcslib.Utility;
-import com.qumasoft.qvcslib.ZlibCompressor;
+import com.qumasoft.qvcslib.WireProtocolCodec;
 import com.qumasoft.qvcslib.requestdata.ClientRequestAddDirectoryData;
 import com.qumasoft.qvcslib.requestdata.ClientRequestAddUserPropertyData;
 import com.qumasoft.qvcslib.requestdata.ClientRequestApplyTagData;
+import com.qumasoft.qvcslib.requestdata.ClientRequestBulkData;
 import com.qumasoft.qvcslib.requestdata.ClientRequestChangePasswordData;
 import com.qumasoft.qvcslib.requestdata.ClientRequestCheckInData;
 import com.qumasoft.qvcslib.requestdata.ClientRequestClientData;
@@ -42,6 +43,7 @@ import com.qumasoft.qvcslib.requestdata.ClientRequestGetLogfileInfoData;
 import com.qumasoft.qvcslib.requestdata.ClientRequestGetMostRecentActivityData;
 import com.qumasoft.qvcslib.requestdata.ClientRequestGetRevisionData;
 import com.qumasoft.qvcslib.requestdata.ClientRequestGetRevisionForCompareData;
+import com.qumasoft.qvcslib.requestdata.ClientRequestGetRevisionHistoryPageData;
 import com.qumasoft.qvcslib.requestdata.ClientRequestGetTagsData;
 import com.qumasoft.qvcslib.requestdata.ClientRequestGetTagsInfoData;
 import com.qumasoft.qvcslib.requestdata.ClientRequestGetUserCommitCommentsData;
@@ -53,6 +55,7 @@ import com.qumasoft.qvcslib.requestdata.ClientRequestLoginData;
 import com.qumasoft.qvcslib.requestdata.ClientRequestMoveFileData;
 import com.qumasoft.qvcslib.requestdata.ClientRequestOperationDataInterface;
 import com.qumasoft.qvcslib.requestdata.ClientRequestPromoteFileData;
+import com.qumasoft.qvcslib.requestdata.ClientRequestRegisterClientListenerBulkData;
 import com.qumasoft.qvcslib.requestdata.ClientRequestRegisterClientListenerData;
 import com.qumasoft.qvcslib.requestdata.ClientRequestRenameData;
 import com.qumasoft.qvcslib.requestdata.ClientRequestResolveConflictFromParentBranchData;
@@ -136,7 +139,11 @@ public class ClientRequestFactory {
             synchronized (syncObject) {
                 object = objectInputStreamMember.readObject();
                 if (object instanceof byte[]) {
-                    object = decompress(object);
+                    if (WireProtocolCodec.isFrame((byte[]) object)) {
+                        object = WireProtocolCodec.decode((byte[]) object);
+                    } else {
+                        object = decompress(object);
+                    }
                 }
             }
 
@@ -189,13 +196,16 @@ public class ClientRequestFactory {
                         case CHECK_IN:
                         case RENAME_FILE:
                         case MOVE_FILE:
+                        case BULK_OPERATION:
                             returnObject = handleOperationGroupB(operationType, object, request, responseFactory);
                             break;
                         case DELETE_FILE:
                         case UNDELETE_FILE:
                         case GET_LOGFILE_INFO:
                         case GET_ALL_LOGFILE_INFO:
+                        case GET_REVISION_HISTORY_PAGE:
                         case REGISTER_CLIENT_LISTENER:
+                        case REGISTER_CLIENT_LISTENER_BULK:
                         case ADD_FILE:
                         case ADD_DIRECTORY:
                             returnObject = handleOperationGroupC(operationType, object, request, responseFactory);
@@ -474,12 +484,39 @@ public class ClientRequestFactory {
                             RolePrivilegesManager.MOVE_FILE.getAction());
                 }
                 break;
+            case BULK_OPERATION:
+                ClientRequestBulkData bulkData = (ClientRequestBulkData) object;
+                LOGGER.debug("Request Info: bulk operation on [{}] files for project: [{}] branch: [{}]", bulkData.getRequestList().size(),
+                        bulkData.getProjectName(), bulkData.getBranchName());
+
+                returnObject = new ClientRequestBulk(bulkData);
+                for (ClientRequestClientData bulkRequest : bulkData.getRequestList()) {
+                    ServerAction action = getBulkRequestAction(bulkRequest.getOperationType());
+                    if (!isUserPrivileged(request.getProjectName(), action)) {
+                        returnObject = reportProblem(request, bulkRequest.getAppendedPath(), null, responseFactory, action.getAction());
+                        break;
+                    }
+                }
+                break;
             default:
                 throw new QVCSRuntimeException("Unexpected operation type in handleOperationGroupB");
         }
         return returnObject;
     }
 
+    private static ServerAction getBulkRequestAction(ClientRequestDataInterface.RequestOperationType operationType) {
+        switch (operationType) {
+            case CHECK_IN:
+                return RolePrivilegesManager.CHECK_IN;
+            case DELETE_FILE:
+                return RolePrivilegesManager.DELETE_FILE;
+            case RENAME_FILE:
+                return RolePrivilegesManager.RENAME_FILE;
+            default:
+                throw new QVCSRuntimeException("Unexpected operation type in bulk operation: " + operationType);
+        }
+    }
+
     private ClientRequestInterface handleOperationGroupC(ClientRequestDataInterface.RequestOperationType operationType, Object object, ClientRequestOperationDataInterface request,
             ServerResponseFactory responseFactory) {
         ClientRequestInterface returnObject = null;
@@ -538,6 +575,19 @@ public class ClientRequestFactory {
                             RolePrivilegesManager.GET.getAction());
                 }
                 break;
+            case GET_REVISION_HISTORY_PAGE:
+                ClientRequestGetRevisionHistoryPageData clientRequestGetRevisionHistoryPageData = (ClientRequestGetRevisionHistoryPageData) object;
+                LOGGER.debug("Request Info: get revision history page:" + clientRequestGetRevisionHistoryPageData.getAppendedPath() + " project name: "
+                        + clientRequestGetRevisionHistoryPageData.getProjectName());
+
+                if (isUserPrivileged(request.getProjectName(), RolePrivilegesManager.GET)) {
+                    returnObject = new ClientRequestGetRevisionHistoryPage(clientRequestGetRevisionHistoryPageData);
+                } else {
+                    returnObject = reportProblem(request, clientRequestGetRevisionHistoryPageData.getAppendedPath(),
+                            clientRequestGetRevisionHistoryPageData.getShortWorkfileName(), responseFactory,
+                            RolePrivilegesManager.GET.getAction());
+                }
+                break;
             case REGISTER_CLIENT_LISTENER:
                 ClientRequestRegisterClientListenerData registerClientListenerData = (ClientRequestRegisterClientListenerData) object;
                 LOGGER.debug("Request register client listener; project name: [" + registerClientListenerData.getProjectName()
@@ -557,6 +607,18 @@ public class ClientRequestFactory {
                     returnObject = reportProblem(request, registerClientListenerData.getAppendedPath(), null, responseFactory, RolePrivilegesManager.GET.getAction());
                 }
                 break;
+            case REGISTER_CLIENT_LISTENER_BULK:
+                ClientRequestRegisterClientListenerBulkData registerClientListenerBulkData = (ClientRequestRegisterClientListenerBulkData) object;
+                LOGGER.debug("Request register client listener for [{}] directories; project name: [{}] branch name: [{}] subtree: [{}]",
+                        registerClientListenerBulkData.getAppendedPathList().size(), registerClientListenerBulkData.getProjectName(),
+                        registerClientListenerBulkData.getBranchName(), registerClientListenerBulkData.getAppendedPath());
+
+                if (isUserPrivileged(request.getProjectName(), RolePrivilegesManager.GET)) {
+                    returnObject = new ClientRequestRegisterClientListenerBulk(registerClientListenerBulkData);
+                } else {
+                    returnObject = reportProblem(request, registerClientListenerBulkData.getAppendedPath(), null, responseFactory, RolePrivilegesManager.GET.getAction());
+                }
+                break;
             case ADD_FILE:
                 ClientRequestCreateArchiveData createArchiveData = (ClientRequestCreateArchiveData) object;
                 String fullFileName = Utility.formatFilenameForActivityJournal(createArchiveData.getProjectName(), createArchiveData.getBranchName(),
@@ -889,9 +951,8 @@ public class ClientRequestFactory {
 
     private Object decompress(Object object) {
         Object retVal = null;
-        Compressor decompressor = new ZlibCompressor();
         byte[] compressedInput = (byte[]) object;
-        byte[] expandedBuffer = decompressor.expand(compressedInput);
+        byte[] expandedBuffer = CompressionEngine.getInstance().expand(compressedInput);
         ByteArrayInputStream byteInputStream = new ByteArrayInputStream(expandedBuffer);
         try {
             ObjectInputStream objectInputStream = new ObjectInputStream(byteInputStream);
@@ -84,8 +84,7 @@ public class ClientRequestGetBriefCommitInfoList extends AbstractClientRequest {
         }
 
         FunctionalQueriesDAO functionalQueriesDAO = new FunctionalQueriesDAOImpl(schemaName);
-        List<Branch> branchAncestryList = functionalQueriesDAO.getBranchAncestryList(branch.getId());
-        String branchesToSearchString = functionalQueriesDAO.buildBranchesToSearchString(branchAncestryList);
+        String branchesToSearchString = functionalQueriesDAO.getBranchesToSearchString(branch.getId());
 
         List<Commit> commitList = commitDAO.getCommitList(startingCommitId, branchesToSearchString);
         List<BriefCommitInfo> briefCommitInfoList = new ArrayList<>();
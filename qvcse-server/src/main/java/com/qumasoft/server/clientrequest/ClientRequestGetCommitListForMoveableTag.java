@@ -105,8 +105,7 @@ public class ClientRequestGetCommitListForMoveableTag extends AbstractClientRequ
         }
 
         FunctionalQueriesDAO functionalQueriesDAO = new FunctionalQueriesDAOImpl(schemaName);
-        List<Branch> branchAncestryList = functionalQueriesDAO.getBranchAncestryList(branch.getParentBranchId());
-        String branchesToSearchString = functionalQueriesDAO.buildBranchesToSearchString(branchAncestryList);
+        String branchesToSearchString = functionalQueriesDAO.getBranchesToSearchString(branch.getParentBranchId());
 
         List<Commit> commitList = commitDAO.getCommitList(startingCommitId, branchesToSearchString);
         List<CommitInfo> commitInfoList = new ArrayList<>();
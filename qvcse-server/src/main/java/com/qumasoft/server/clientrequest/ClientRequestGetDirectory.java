@@ -16,10 +16,10 @@ package com.qumasoft.server.clientrequest;
 
 import com.qumasoft.qvcslib.DirectoryCoordinate;
 import com.qumasoft.qvcslib.DirectoryCoordinateIds;
+import com.qumasoft.qvcslib.QVCSConstants;
 import com.qumasoft.qvcslib.QVCSRuntimeException;
 import com.qumasoft.qvcslib.ServerResponseFactoryInterface;
 import com.qumasoft.qvcslib.SkinnyLogfileInfo;
-import com.qumasoft.qvcslib.Utility;
 import com.qumasoft.qvcslib.commandargs.GetDirectoryCommandArgs;
 import com.qumasoft.qvcslib.requestdata.ClientRequestGetDirectoryData;
 import com.qumasoft.qvcslib.response.AbstractServerResponse;
@@ -41,14 +41,10 @@ import com.qvcsos.server.datamodel.Branch;
 import com.qvcsos.server.datamodel.DirectoryLocation;
 import com.qvcsos.server.datamodel.Tag;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.IOException;
-import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.TreeMap;
-import java.util.logging.Level;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -103,29 +99,14 @@ public class ClientRequestGetDirectory extends AbstractClientRequest {
                 if (null == branch.getBranchTypeId()) {
                     throw new QVCSRuntimeException("Missing branch type!!");
                 } else {
-                    // <editor-fold>
-                    switch (branch.getBranchTypeId()) {
-                        case 1 -> {
-                            addChildDirectoriesForTrunkOrFeatureBranch(appendedPathList, appendedPath, dcIdsList, ids.getDirectoryLocationId(), branchArray);
-                        }
-                        case 2 -> {
-                            addChildDirectoriesForTrunkOrFeatureBranch(appendedPathList, appendedPath, dcIdsList, ids.getDirectoryLocationId(), branchArray);
-                        }
-                        case 3 -> {
-                            addChildDirectoriesForReadOnlyBranch(branch, appendedPathList, appendedPath, dcIdsList, ids.getDirectoryLocationId(), branchArray);
-                        }
-                        case 4 -> {
-                            addChildDirectoriesForReleaseBranch(branch, appendedPathList, appendedPath, dcIdsList, ids.getDirectoryLocationId(), branchArray);
-                        }
-                        default -> {
-                            throw new QVCSRuntimeException("Unsupported branch type: " + branch.getBranchTypeId());
-                        }
-                    }
-                    // </editor-fold>
+                    addChildDirectories(branch, appendedPathList, appendedPath, dcIdsList, ids.getDirectoryLocationId(), branchArray);
                 }
             }
 
-            processDirectoryCollection(branch, commandArgs, appendedPathList, dcIdsList, response);
+            ServerResponsePipeline pipeline = new ServerResponsePipeline(response);
+            processDirectoryCollection(branch, commandArgs, appendedPathList, dcIdsList, pipeline);
+            int sentCount = pipeline.finish();
+            LOGGER.debug("Sent [{}] revisions for: [{}]", sentCount, appendedPath);
         } finally {
             LOGGER.info("Completed get directory for: [{}]", appendedPath);
         }
@@ -134,87 +115,27 @@ public class ClientRequestGetDirectory extends AbstractClientRequest {
         return returnObject;
     }
 
-    private void addChildDirectoriesForTrunkOrFeatureBranch(List<String> appendedPathList, String appendedPath, List<DirectoryCoordinateIds> dcIdsList, Integer parentDirectoryLocationId,
-            List<Branch> branchArray) {
-        LOGGER.info("addChildDirectoriesForTrunkOrFeatureBranch: appendedPath: [{}]", appendedPath);
+    private void addChildDirectories(Branch branch, List<String> appendedPathList, String appendedPath, List<DirectoryCoordinateIds> dcIdsList,
+            Integer parentDirectoryLocationId, List<Branch> branchArray) {
+        LOGGER.info("addChildDirectories: branch type: [{}] appendedPath: [{}]", branch.getBranchTypeId(), appendedPath);
         FunctionalQueriesDAO functionalQueriesDAO = new FunctionalQueriesDAOImpl(schemaName);
-        List<DirectoryLocation> directoryLocationList = functionalQueriesDAO.findChildDirectoryLocations(branchArray, parentDirectoryLocationId);
-        if (directoryLocationList != null) {
-            for (DirectoryLocation dl : directoryLocationList) {
-                DirectoryCoordinateIds dcIds = new DirectoryCoordinateIds(dcIdsList.get(0).getProjectId(), dl.getBranchId(), dl.getDirectoryId(), dl.getId(), null, new TreeMap<>());
-                dcIdsList.add(dcIds);
-                String newAppendedPath;
-                if (appendedPath.length() == 0) {
-                    newAppendedPath = dl.getDirectorySegmentName();
-                } else {
-                    newAppendedPath = appendedPath + File.separator + dl.getDirectorySegmentName();
-                }
-                appendedPathList.add(newAppendedPath);
-                LOGGER.debug("Adding appended path: [{}}]", newAppendedPath);
-                addChildDirectoriesForTrunkOrFeatureBranch(appendedPathList, newAppendedPath, dcIdsList, dcIds.getDirectoryLocationId(), branchArray);
-            }
-        }
-    }
-
-    private void addChildDirectoriesForReadOnlyBranch(Branch branch, List<String> appendedPathList, String appendedPath, List<DirectoryCoordinateIds> dcIdsList, Integer parentDirectoryLocationId,
-            List<Branch> branchArray) {
-        LOGGER.info("addChildDirectoriesForReadOnlyBranch: appendedPath: [{}]", appendedPath);
-        FunctionalQueriesForReadOnlyBranchesDAO functionalQueriesForReadOnlyBranchesDAO = new FunctionalQueriesForReadOnlyBranchesDAOImpl(schemaName);
-
-        TagDAO tagDAO = new TagDAOImpl(schemaName);
-        Tag tag = tagDAO.findById(branch.getTagId());
-        Integer boundingCommitId = tag.getCommitId();
-
-        List<DirectoryLocation> directoryLocationList = functionalQueriesForReadOnlyBranchesDAO.findChildDirectoryLocationsForReadOnlyBranch(branch,
-                branchArray, boundingCommitId, parentDirectoryLocationId);
-        if (directoryLocationList != null) {
-            for (DirectoryLocation dl : directoryLocationList) {
-                DirectoryCoordinateIds dlId = new DirectoryCoordinateIds(dcIdsList.get(0).getProjectId(), dl.getBranchId(), dl.getDirectoryId(), dl.getId(), null, new TreeMap<>());
-                if (dl.getBranchId() > branch.getId()) {
-                    throw new QVCSRuntimeException("Branch id mismatch!!!");
-                }
-                dcIdsList.add(dlId);
-                String newAppendedPath;
-                if (appendedPath.length() == 0) {
-                    newAppendedPath = dl.getDirectorySegmentName();
-                } else {
-                    newAppendedPath = appendedPath + File.separator + dl.getDirectorySegmentName();
-                }
-                appendedPathList.add(newAppendedPath);
-                LOGGER.debug("Adding appended path: [{}}]", newAppendedPath);
-                addChildDirectoriesForReadOnlyBranch(branch, appendedPathList, newAppendedPath, dcIdsList, dlId.getDirectoryLocationId(), branchArray);
-            }
-        }
-    }
-
-    private void addChildDirectoriesForReleaseBranch(Branch branch, List<String> appendedPathList, String appendedPath, List<DirectoryCoordinateIds> dcIdsList, Integer parentDirectoryLocationId,
-            List<Branch> branchArray) {
-        LOGGER.debug("addChildDirectoriesForReleaseBranch: appendedPath: [{}]", appendedPath);
-        FunctionalQueriesForReleaseBranchesDAO functionalQueriesForReleaseBranchesDAO = new FunctionalQueriesForReleaseBranchesDAOImpl(schemaName);
-        List<DirectoryLocation> directoryLocationList = functionalQueriesForReleaseBranchesDAO.findChildDirectoryLocationsForBranch(branch,
-                branchArray, branch.getCommitId(), parentDirectoryLocationId);
-        if (directoryLocationList != null) {
-            for (DirectoryLocation dl : directoryLocationList) {
-                DirectoryCoordinateIds dlId = new DirectoryCoordinateIds(dcIdsList.get(0).getProjectId(), dl.getBranchId(), dl.getDirectoryId(), dl.getId(), null, new TreeMap<>());
-                if (dl.getBranchId() > branch.getId()) {
-                    throw new QVCSRuntimeException("Branch id mismatch!!!");
-                }
-                dcIdsList.add(dlId);
-                String newAppendedPath;
-                if (appendedPath.length() == 0) {
-                    newAppendedPath = dl.getDirectorySegmentName();
-                } else {
-                    newAppendedPath = appendedPath + File.separator + dl.getDirectorySegmentName();
-                }
-                appendedPathList.add(newAppendedPath);
-                LOGGER.debug("Adding appended path: [{}}]", newAppendedPath);
-                addChildDirectoriesForReleaseBranch(branch, appendedPathList, newAppendedPath, dcIdsList, dlId.getDirectoryLocationId(), branchArray);
+        Map<String, DirectoryLocation> subtreeMap = functionalQueriesDAO.findDirectoryLocationSubtree(branch, branchArray, parentDirectoryLocationId, appendedPath);
+        boolean boundedBranchFlag = (branch.getBranchTypeId() == QVCSConstants.QVCS_TAG_BASED_BRANCH_TYPE)
+                || (branch.getBranchTypeId() == QVCSConstants.QVCS_RELEASE_BRANCH_TYPE);
+        for (Map.Entry<String, DirectoryLocation> entry : subtreeMap.entrySet()) {
+            DirectoryLocation dl = entry.getValue();
+            if (boundedBranchFlag && (dl.getBranchId() > branch.getId())) {
+                throw new QVCSRuntimeException("Branch id mismatch!!!");
             }
+            DirectoryCoordinateIds dcIds = new DirectoryCoordinateIds(dcIdsList.get(0).getProjectId(), dl.getBranchId(), dl.getDirectoryId(), dl.getId(), null, new TreeMap<>());
+            dcIdsList.add(dcIds);
+            appendedPathList.add(entry.getKey());
+            LOGGER.debug("Adding appended path: [{}]", entry.getKey());
         }
     }
 
     private void processDirectoryCollection(Branch branch, GetDirectoryCommandArgs commandArgs, List<String> appendedPathList, List<DirectoryCoordinateIds> dcIds,
-            ServerResponseFactoryInterface response) {
+            ServerResponsePipeline pipeline) {
         LOGGER.info("processDirectoryCollection");
         if (appendedPathList.size() != dcIds.size()) {
             throw new QVCSRuntimeException("######## appendedPath list and directory coordinate ids list are not the same size!!!");
@@ -222,16 +143,16 @@ public class ClientRequestGetDirectory extends AbstractClientRequest {
         // <editor-fold>
         switch (branch.getBranchTypeId()) {
             case 1 -> {
-                processDirectoryCollectionForTrunkOrFeatureBranch(branch, commandArgs, appendedPathList, dcIds, response);
+                processDirectoryCollectionForTrunkOrFeatureBranch(branch, commandArgs, appendedPathList, dcIds, pipeline);
             }
             case 2 -> {
-                processDirectoryCollectionForTrunkOrFeatureBranch(branch, commandArgs, appendedPathList, dcIds, response);
+                processDirectoryCollectionForTrunkOrFeatureBranch(branch, commandArgs, appendedPathList, dcIds, pipeline);
             }
             case 3 -> {
-                processDirectoryCollectionForReadOnlyBranch(branch, commandArgs, appendedPathList, dcIds, response);
+                processDirectoryCollectionForReadOnlyBranch(branch, commandArgs, appendedPathList, dcIds, pipeline);
             }
             case 4 -> {
-                processDirectoryCollectionForReleaseBranch(branch, commandArgs, appendedPathList, dcIds, response);
+                processDirectoryCollectionForReleaseBranch(branch, commandArgs, appendedPathList, dcIds, pipeline);
             }
             default -> {
                 throw new QVCSRuntimeException("Unsupported branch type: " + branch.getBranchTypeId());
@@ -241,19 +162,36 @@ public class ClientRequestGetDirectory extends AbstractClientRequest {
     }
 
     private void processDirectoryCollectionForTrunkOrFeatureBranch(Branch branch, GetDirectoryCommandArgs commandArgs, List<String> appendedPathList, List<DirectoryCoordinateIds> dcIds,
-            ServerResponseFactoryInterface response) {
+            ServerResponsePipeline pipeline) {
         LOGGER.info("processDirectoryCollectionForTrunkOrFeatureBranch");
         FunctionalQueriesDAO functionalQueriesDAO = new FunctionalQueriesDAOImpl(schemaName);
-        for (int i = 0; i < appendedPathList.size(); i++) {
-            List<SkinnyLogfileInfo> skinnyList = functionalQueriesDAO.getSkinnyLogfileInfo(branch.getId(), dcIds.get(i).getDirectoryId());
-            for (SkinnyLogfileInfo skinnyInfo : skinnyList) {
-                sendToClient(commandArgs, appendedPathList.get(i), skinnyInfo, response);
+        if (branch.getBranchTypeId() == QVCSConstants.QVCS_TRUNK_BRANCH_TYPE) {
+            // For the Trunk, we can fetch the skinny info for all the directories at once.
+            List<Integer> directoryIdList = new ArrayList<>(dcIds.size());
+            for (DirectoryCoordinateIds ids : dcIds) {
+                directoryIdList.add(ids.getDirectoryId());
+            }
+            Map<Integer, List<SkinnyLogfileInfo>> skinnyMap = functionalQueriesDAO.getSkinnyLogfileInfoForTrunkDirectories(branch.getId(), directoryIdList);
+            for (int i = 0; i < appendedPathList.size(); i++) {
+                List<SkinnyLogfileInfo> skinnyList = skinnyMap.get(dcIds.get(i).getDirectoryId());
+                if (skinnyList != null) {
+                    for (SkinnyLogfileInfo skinnyInfo : skinnyList) {
+                        sendToClient(commandArgs, appendedPathList.get(i), skinnyInfo, pipeline);
+                    }
+                }
+            }
+        } else {
+            for (int i = 0; i < appendedPathList.size(); i++) {
+                List<SkinnyLogfileInfo> skinnyList = functionalQueriesDAO.getSkinnyLogfileInfo(branch.getId(), dcIds.get(i).getDirectoryId());
+                for (SkinnyLogfileInfo skinnyInfo : skinnyList) {
+                    sendToClient(commandArgs, appendedPathList.get(i), skinnyInfo, pipeline);
+                }
             }
         }
     }
 
     private void processDirectoryCollectionForReadOnlyBranch(Branch branch, GetDirectoryCommandArgs commandArgs, List<String> appendedPathList, List<DirectoryCoordinateIds> dcIds,
-            ServerResponseFactoryInterface response) {
+            ServerResponsePipeline pipeline) {
         FunctionalQueriesForReadOnlyBranchesDAO functionalQueriesDAO = new FunctionalQueriesForReadOnlyBranchesDAOImpl(schemaName);
 
         TagDAO tagDAO = new TagDAOImpl(schemaName);
@@ -263,60 +201,60 @@ public class ClientRequestGetDirectory extends AbstractClientRequest {
         for (int i = 0; i < appendedPathList.size(); i++) {
             List<SkinnyLogfileInfo> skinnyList = functionalQueriesDAO.getSkinnyLogfileInfoForReadOnlyBranch(branch, boundingCommitId, dcIds.get(i));
             for (SkinnyLogfileInfo skinnyInfo : skinnyList) {
-                sendToClient(commandArgs, appendedPathList.get(i), skinnyInfo, response);
+                sendToClient(commandArgs, appendedPathList.get(i), skinnyInfo, pipeline);
             }
         }
     }
 
     private void processDirectoryCollectionForReleaseBranch(Branch branch, GetDirectoryCommandArgs commandArgs, List<String> appendedPathList, List<DirectoryCoordinateIds> dcIds,
-            ServerResponseFactoryInterface response) {
+            ServerResponsePipeline pipeline) {
         FunctionalQueriesForReleaseBranchesDAO functionalQueriesForReleaseBranchesDAO = new FunctionalQueriesForReleaseBranchesDAOImpl(schemaName);
         for (int i = 0; i < appendedPathList.size(); i++) {
             List<SkinnyLogfileInfo> skinnyList = functionalQueriesForReleaseBranchesDAO.getSkinnyLogfileInfoForReleaseBranches(branch, branch.getCommitId(), dcIds.get(i));
             for (SkinnyLogfileInfo skinnyInfo : skinnyList) {
-                sendToClient(commandArgs, appendedPathList.get(i), skinnyInfo, response);
+                sendToClient(commandArgs, appendedPathList.get(i), skinnyInfo, pipeline);
             }
         }
     }
 
-    private void sendToClient(GetDirectoryCommandArgs commandArgs, String appendedPath, SkinnyLogfileInfo skinnyInfo, ServerResponseFactoryInterface response) {
-        FileInputStream fileInputStream = null;
-        try {
-            SourceControlBehaviorManager sourceControlBehaviorManager = SourceControlBehaviorManager.getInstance();
-            java.io.File fetchedRevisionFile = sourceControlBehaviorManager.getFileRevision(skinnyInfo.getFileRevisionId());
-
-            ServerResponseGetRevision serverResponse = new ServerResponseGetRevision();
-
-            // Need to read the resulting file into a buffer that we can send to the client.
-            fileInputStream = new FileInputStream(fetchedRevisionFile);
-            byte[] buffer = new byte[(int) fetchedRevisionFile.length()];
-            Utility.readDataFromStream(buffer, fileInputStream);
-            String fullWorkfileName = commandArgs.getWorkfileBaseDirectory() + File.separator + appendedPath + File.separator + skinnyInfo.getShortWorkfileName();
-            serverResponse.setBuffer(buffer);
-            serverResponse.setSkinnyLogfileInfo(skinnyInfo);
-            serverResponse.setClientWorkfileName(fullWorkfileName);
-            serverResponse.setShortWorkfileName(skinnyInfo.getShortWorkfileName());
-            serverResponse.setProjectName(getRequest().getProjectName());
-            serverResponse.setBranchName(getRequest().getBranchName());
-            serverResponse.setAppendedPath(appendedPath);
-            serverResponse.setRevisionString(skinnyInfo.getDefaultRevisionString());
-            serverResponse.setOverwriteBehavior(commandArgs.getOverwriteBehavior());
-            serverResponse.setTimestampBehavior(commandArgs.getTimeStampBehavior());
-
-            // Send the response.
-            response.createServerResponse(serverResponse);
-        } catch (FileNotFoundException ex) {
-            java.util.logging.Logger.getLogger(ClientRequestGetDirectory.class.getName()).log(Level.SEVERE, null, ex);
-        } catch (IOException | SQLException ex) {
-            java.util.logging.Logger.getLogger(ClientRequestGetDirectory.class.getName()).log(Level.SEVERE, null, ex);
-        } finally {
-            if (fileInputStream != null) {
-                try {
-                    fileInputStream.close();
-                } catch (IOException e) {
-                    LOGGER.warn(e.getLocalizedMessage(), e);
-                }
+    /**
+     * Queue the revision described by the skinny info for sending to the client. The revision is fetched, hydrated, and compressed on one of the
+     * pipeline's worker threads; the pipeline writes the responses in the order they are queued.
+     */
+    private void sendToClient(GetDirectoryCommandArgs commandArgs, String appendedPath, SkinnyLogfileInfo skinnyInfo, ServerResponsePipeline pipeline) {
+        String projectName = getRequest().getProjectName();
+        String branchName = getRequest().getBranchName();
+        pipeline.submit(() -> {
+            try {
+                return buildServerResponse(commandArgs, projectName, branchName, appendedPath, skinnyInfo);
+            } finally {
+                // Worker threads are shared; give back any database connection this one leased.
+                databaseManager.releaseConnection();
             }
+        });
+    }
+
+    private ServerResponseGetRevision buildServerResponse(GetDirectoryCommandArgs commandArgs, String projectName, String branchName, String appendedPath,
+            SkinnyLogfileInfo skinnyInfo) {
+        SourceControlBehaviorManager sourceControlBehaviorManager = SourceControlBehaviorManager.getInstance();
+        byte[] buffer = sourceControlBehaviorManager.getFileRevisionBuffer(skinnyInfo.getFileRevisionId());
+        if (buffer == null) {
+            LOGGER.warn("Failed to fetch revision id: [{}] for: [{}]", skinnyInfo.getFileRevisionId(), skinnyInfo.getShortWorkfileName());
+            return null;
         }
+
+        ServerResponseGetRevision serverResponse = new ServerResponseGetRevision();
+        String fullWorkfileName = commandArgs.getWorkfileBaseDirectory() + File.separator + appendedPath + File.separator + skinnyInfo.getShortWorkfileName();
+        serverResponse.setBuffer(buffer);
+        serverResponse.setSkinnyLogfileInfo(skinnyInfo);
+        serverResponse.setClientWorkfileName(fullWorkfileName);
+        serverResponse.setShortWorkfileName(skinnyInfo.getShortWorkfileName());
+        serverResponse.setProjectName(projectName);
+        serverResponse.setBranchName(branchName);
+        serverResponse.setAppendedPath(appendedPath);
+        serverResponse.setRevisionString(skinnyInfo.getDefaultRevisionString());
+        serverResponse.setOverwriteBehavior(commandArgs.getOverwriteBehavior());
+        serverResponse.setTimestampBehavior(commandArgs.getTimeStampBehavior());
+        return serverResponse;
     }
 }
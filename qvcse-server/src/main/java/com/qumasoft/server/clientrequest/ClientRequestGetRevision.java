@@ -19,13 +19,11 @@ import com.qumasoft.qvcslib.LogfileInfo;
 import com.qumasoft.qvcslib.QVCSConstants;
 import com.qumasoft.qvcslib.ServerResponseFactoryInterface;
 import com.qumasoft.qvcslib.SkinnyLogfileInfo;
-import com.qumasoft.qvcslib.Utility;
 import com.qumasoft.qvcslib.commandargs.GetRevisionCommandArgs;
 import com.qumasoft.qvcslib.requestdata.ClientRequestGetRevisionData;
 import com.qumasoft.qvcslib.response.AbstractServerResponse;
 import com.qumasoft.qvcslib.response.ServerResponseError;
 import com.qumasoft.qvcslib.response.ServerResponseGetRevision;
-import com.qumasoft.qvcslib.response.ServerResponseMessage;
 import com.qvcsos.server.DatabaseManager;
 import com.qvcsos.server.SourceControlBehaviorManager;
 import com.qvcsos.server.dataaccess.BranchDAO;
@@ -37,10 +35,6 @@ import com.qvcsos.server.dataaccess.impl.ProjectDAOImpl;
 import com.qvcsos.server.datamodel.Branch;
 import com.qvcsos.server.datamodel.FileRevision;
 import com.qvcsos.server.datamodel.Project;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.IOException;
-import java.sql.SQLException;
 import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -77,74 +71,51 @@ public class ClientRequestGetRevision extends AbstractClientRequest {
         String appendedPath = getRequest().getAppendedPath();
         ClientRequestGetRevisionData clientRequestGetRevisionData = (ClientRequestGetRevisionData) getRequest();
         GetRevisionCommandArgs commandArgs = clientRequestGetRevisionData.getCommandArgs();
-        FileInputStream fileInputStream = null;
-        try {
-            DirectoryCoordinate directoryCoordinate = new DirectoryCoordinate(projectName, branchName, appendedPath);
-            FunctionalQueriesDAO functionalQueriesDAO = new FunctionalQueriesDAOImpl(schemaName);
-            java.io.File postgresFetchedFile = getRevisionFromPostgres(commandArgs);
-            if (postgresFetchedFile != null) {
-                SkinnyLogfileInfo skinnyInfo = functionalQueriesDAO.getSkinnyLogfileInfoForGet(commandArgs.getFileRevisionId());
-                serverResponse = new ServerResponseGetRevision();
+        DirectoryCoordinate directoryCoordinate = new DirectoryCoordinate(projectName, branchName, appendedPath);
+        FunctionalQueriesDAO functionalQueriesDAO = new FunctionalQueriesDAOImpl(schemaName);
+        byte[] buffer = getRevisionFromPostgres(commandArgs);
+        if (buffer != null) {
+            SkinnyLogfileInfo skinnyInfo = functionalQueriesDAO.getSkinnyLogfileInfoForGet(commandArgs.getFileRevisionId());
+            serverResponse = new ServerResponseGetRevision();
+            serverResponse.setBuffer(buffer);
 
-                // Need to read the resulting file into a buffer that we can send to the client.
-                fileInputStream = new FileInputStream(postgresFetchedFile);
-                byte[] buffer = new byte[(int) postgresFetchedFile.length()];
-                Utility.readDataFromStream(buffer, fileInputStream);
-                serverResponse.setBuffer(buffer);
-
-                serverResponse.setSkinnyLogfileInfo(skinnyInfo);
-                serverResponse.setClientWorkfileName(commandArgs.getOutputFileName());
-                serverResponse.setShortWorkfileName(commandArgs.getShortWorkfileName());
-                serverResponse.setProjectName(projectName);
-                serverResponse.setBranchName(branchName);
-                serverResponse.setAppendedPath(appendedPath);
-                serverResponse.setRevisionString(commandArgs.getRevisionString());
-                serverResponse.setOverwriteBehavior(commandArgs.getOverwriteBehavior());
-                serverResponse.setTimestampBehavior(commandArgs.getTimestampBehavior());
-                if (getRequest().getSyncToken() != null) {
-                    serverResponse.setSyncToken(getRequest().getSyncToken());
-                }
+            serverResponse.setSkinnyLogfileInfo(skinnyInfo);
+            serverResponse.setClientWorkfileName(commandArgs.getOutputFileName());
+            serverResponse.setShortWorkfileName(commandArgs.getShortWorkfileName());
+            serverResponse.setProjectName(projectName);
+            serverResponse.setBranchName(branchName);
+            serverResponse.setAppendedPath(appendedPath);
+            serverResponse.setRevisionString(commandArgs.getRevisionString());
+            serverResponse.setOverwriteBehavior(commandArgs.getOverwriteBehavior());
+            serverResponse.setTimestampBehavior(commandArgs.getTimestampBehavior());
+            if (getRequest().getSyncToken() != null) {
+                serverResponse.setSyncToken(getRequest().getSyncToken());
+            }
 
-                // Send back more info.
-                LogfileInfo logfileInfo = functionalQueriesDAO.getLogfileInfo(directoryCoordinate, commandArgs.getShortWorkfileName(), getRequest().getFileID());
-                serverResponse.setLogfileInfo(logfileInfo);
-                returnObject = serverResponse;
+            // Send back more info.
+            LogfileInfo logfileInfo = functionalQueriesDAO.getLogfileInfo(directoryCoordinate, commandArgs.getShortWorkfileName(), getRequest().getFileID());
+            serverResponse.setLogfileInfo(logfileInfo);
+            returnObject = serverResponse;
+        } else {
+            // Return a command error.
+            LOGGER.warn("Failed to fetch revision for: [{}]", commandArgs.getShortWorkfileName());
+            ServerResponseError error;
+            if ((commandArgs.getFailureReason() != null) && (commandArgs.getFailureReason().length() > 0)) {
+                error = new ServerResponseError("Failed to get revision for " + commandArgs.getShortWorkfileName() + ". " + commandArgs.getFailureReason(), projectName,
+                        branchName, appendedPath);
             } else {
-                // Return a command error.
-                LOGGER.warn("Failed to fetch revision for: [{}]", commandArgs.getShortWorkfileName());
-                ServerResponseError error;
-                if ((commandArgs.getFailureReason() != null) && (commandArgs.getFailureReason().length() > 0)) {
-                    error = new ServerResponseError("Failed to get revision for " + commandArgs.getShortWorkfileName() + ". " + commandArgs.getFailureReason(), projectName,
-                            branchName, appendedPath);
-                } else {
-                    error = new ServerResponseError("Failed to get revision " + commandArgs.getRevisionString() + " for " + commandArgs.getShortWorkfileName(), projectName,
-                            branchName, appendedPath);
-                }
-                returnObject = error;
-            }
-            if (postgresFetchedFile != null) {
-                postgresFetchedFile.delete();
-            }
-        } catch (IOException e) {
-            ServerResponseMessage message = new ServerResponseMessage(e.getLocalizedMessage(), projectName, branchName, appendedPath, ServerResponseMessage.HIGH_PRIORITY);
-            message.setShortWorkfileName(commandArgs.getShortWorkfileName());
-            returnObject = message;
-        } finally {
-            if (fileInputStream != null) {
-                try {
-                    fileInputStream.close();
-                } catch (IOException e) {
-                    LOGGER.warn(e.getLocalizedMessage(), e);
-                }
+                error = new ServerResponseError("Failed to get revision " + commandArgs.getRevisionString() + " for " + commandArgs.getShortWorkfileName(), projectName,
+                        branchName, appendedPath);
             }
+            returnObject = error;
         }
         sourceControlBehaviorManager.clearThreadLocals();
         returnObject.setSyncToken(getRequest().getSyncToken());
         return returnObject;
     }
 
-    private File getRevisionFromPostgres(GetRevisionCommandArgs commandArgs) {
-        java.io.File fetchedRevisionFile = null;
+    private byte[] getRevisionFromPostgres(GetRevisionCommandArgs commandArgs) {
+        byte[] fetchedRevisionBuffer = null;
         SourceControlBehaviorManager sourceControlBehaviorManager = SourceControlBehaviorManager.getInstance();
 
         ProjectDAO projectDAO = new ProjectDAOImpl(schemaName);
@@ -180,19 +151,16 @@ public class ClientRequestGetRevision extends AbstractClientRequest {
         }
 
         if (fetchIndex >= 0) {
-            try {
-                FileRevision fetchingRevision = fileRevisionList.get(fetchIndex);
-                String fetchedRevisionString = String.format("%d.%d", fetchingRevision.getBranchId(), fetchingRevision.getId());
-                commandArgs.setRevisionString(fetchedRevisionString);
-                commandArgs.setFileRevisionId(fetchingRevision.getId());
-                fetchedRevisionFile = sourceControlBehaviorManager.getFileRevision(fetchingRevision.getId());
-                LOGGER.info("File revision: [{}] for file: [{}] fetched from postgres returned in file: [{}]",
-                        fetchedRevisionString, commandArgs.getShortWorkfileName(), fetchedRevisionFile.getAbsolutePath());
-            } catch (SQLException e) {
-                LOGGER.warn(e.getLocalizedMessage(), e);
-                throw new RuntimeException(e);
+            FileRevision fetchingRevision = fileRevisionList.get(fetchIndex);
+            String fetchedRevisionString = String.format("%d.%d", fetchingRevision.getBranchId(), fetchingRevision.getId());
+            commandArgs.setRevisionString(fetchedRevisionString);
+            commandArgs.setFileRevisionId(fetchingRevision.getId());
+            fetchedRevisionBuffer = sourceControlBehaviorManager.getFileRevisionBuffer(fetchingRevision.getId());
+            if (fetchedRevisionBuffer != null) {
+                LOGGER.info("File revision: [{}] for file: [{}] fetched from postgres; size: [{}]", fetchedRevisionString, commandArgs.getShortWorkfileName(),
+                        fetchedRevisionBuffer.length);
             }
         }
-        return fetchedRevisionFile;
+        return fetchedRevisionBuffer;
     }
 }
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2023 Jim Voris.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qumasoft.server.clientrequest;
+
+import com.qumasoft.qvcslib.DirectoryCoordinate;
+import com.qumasoft.qvcslib.RevisionHistoryPage;
+import com.qumasoft.qvcslib.ServerResponseFactoryInterface;
+import com.qumasoft.qvcslib.requestdata.ClientRequestGetRevisionHistoryPageData;
+import com.qumasoft.qvcslib.response.AbstractServerResponse;
+import com.qumasoft.qvcslib.response.ServerResponseGetRevisionHistoryPage;
+import com.qumasoft.qvcslib.response.ServerResponseMessage;
+import com.qvcsos.server.DatabaseManager;
+import com.qvcsos.server.SourceControlBehaviorManager;
+import com.qvcsos.server.dataaccess.FunctionalQueriesDAO;
+import com.qvcsos.server.dataaccess.impl.FunctionalQueriesDAOImpl;
+import java.sql.SQLException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Get one page of the revision history of a file. Only the revisions on the page (after any revision filters) are sent to the client.
+ *
+ * @author Jim Voris.
+ */
+public class ClientRequestGetRevisionHistoryPage extends AbstractClientRequest {
+
+    // Create our logger object
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClientRequestGetRevisionHistoryPage.class);
+    private final DatabaseManager databaseManager;
+    private final String schemaName;
+
+    /**
+     * Creates a new instance of ClientRequestGetRevisionHistoryPage.
+     *
+     * @param data the request data.
+     */
+    public ClientRequestGetRevisionHistoryPage(ClientRequestGetRevisionHistoryPageData data) {
+        this.databaseManager = DatabaseManager.getInstance();
+        this.schemaName = databaseManager.getSchemaName();
+        setRequest(data);
+    }
+
+    @Override
+    public AbstractServerResponse execute(String userName, ServerResponseFactoryInterface response) {
+        SourceControlBehaviorManager sourceControlBehaviorManager = SourceControlBehaviorManager.getInstance();
+        sourceControlBehaviorManager.setUserAndResponse(userName, response);
+        AbstractServerResponse returnObject;
+        ClientRequestGetRevisionHistoryPageData request = (ClientRequestGetRevisionHistoryPageData) getRequest();
+        String projectName = request.getProjectName();
+        String branchName = request.getBranchName();
+        String appendedPath = request.getAppendedPath();
+        String shortWorkfileName = request.getShortWorkfileName();
+        try {
+            DirectoryCoordinate directoryCoordinate = new DirectoryCoordinate(projectName, branchName, appendedPath);
+            RevisionHistoryPage revisionHistoryPage = buildRevisionHistoryPageFromDatabase(directoryCoordinate, request);
+
+            ServerResponseGetRevisionHistoryPage serverResponse = new ServerResponseGetRevisionHistoryPage();
+            serverResponse.setProjectName(projectName);
+            serverResponse.setBranchName(branchName);
+            serverResponse.setAppendedPath(appendedPath);
+            serverResponse.setShortWorkfileName(shortWorkfileName);
+            serverResponse.setRevisionHistoryPage(revisionHistoryPage);
+            returnObject = serverResponse;
+        } catch (Exception e) {
+            LOGGER.warn(e.getLocalizedMessage(), e);
+
+            ServerResponseMessage message = new ServerResponseMessage("Caught exception trying to get revision history for " + shortWorkfileName
+                    + ". Exception string: " + e.getMessage(),
+                    projectName, branchName, appendedPath, ServerResponseMessage.HIGH_PRIORITY);
+            message.setShortWorkfileName(shortWorkfileName);
+            returnObject = message;
+        }
+        sourceControlBehaviorManager.clearThreadLocals();
+        returnObject.setSyncToken(request.getSyncToken());
+        return returnObject;
+    }
+
+    private RevisionHistoryPage buildRevisionHistoryPageFromDatabase(DirectoryCoordinate dc, ClientRequestGetRevisionHistoryPageData request) {
+        RevisionHistoryPage revisionHistoryPage = null;
+        try {
+            DatabaseManager.getInstance().getConnection();
+            FunctionalQueriesDAO functionQueriesDAO = new FunctionalQueriesDAOImpl(schemaName);
+            revisionHistoryPage = functionQueriesDAO.getRevisionHistoryPage(dc, request.getFileID(), request.getAllBranchesFlag(),
+                    request.getStartAfterFileRevisionId(), request.getPageSize(), request.getRevisionHistoryFilter());
+        } catch (SQLException e) {
+            LOGGER.warn(e.getLocalizedMessage(), e);
+            throw new RuntimeException(e);
+        }
+        return revisionHistoryPage;
+    }
+
+}
@@ -14,6 +14,7 @@
  */
 package com.qumasoft.server.clientrequest;
 
+import com.qumasoft.qvcslib.ServerResponseFactory;
 import com.qumasoft.qvcslib.ServerResponseFactoryInterface;
 import com.qumasoft.qvcslib.requestdata.ClientRequestHeartBeatData;
 import com.qumasoft.qvcslib.response.AbstractServerResponse;
@@ -43,6 +44,10 @@ public class ClientRequestHeartBeat extends AbstractClientRequest {
     public AbstractServerResponse execute(String userName, ServerResponseFactoryInterface responseFactory) {
         ServerResponseHeartBeat heartBeatResponse = new ServerResponseHeartBeat();
         heartBeatResponse.setServerName(responseFactory.getServerName());
+        if (responseFactory instanceof ServerResponseFactory serverResponseFactory) {
+            ClientRequestHeartBeatData request = (ClientRequestHeartBeatData) getRequest();
+            serverResponseFactory.heartBeatReceived(request.getRoundTripTime());
+        }
 
         LOGGER.trace("Processed heartbeat message from user: [" + userName + "] at IP address: [" + responseFactory.getClientIPAddress() + "]");
 
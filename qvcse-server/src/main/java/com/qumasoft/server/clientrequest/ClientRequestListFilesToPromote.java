@@ -15,45 +15,25 @@
 package com.qumasoft.server.clientrequest;
 
 import com.qumasoft.qvcslib.FilePromotionInfo;
-import com.qumasoft.qvcslib.InfoForMerge;
-import com.qumasoft.qvcslib.PromotionType;
 import static com.qumasoft.qvcslib.PromotionType.FILE_CREATED_PROMOTION_TYPE;
-import com.qumasoft.qvcslib.QVCSException;
 import com.qumasoft.qvcslib.ServerResponseFactoryInterface;
-import com.qumasoft.qvcslib.Utility;
 import com.qumasoft.qvcslib.requestdata.ClientRequestListFilesToPromoteData;
 import com.qumasoft.qvcslib.response.AbstractServerResponse;
 import com.qumasoft.qvcslib.response.ServerResponseListFilesToPromote;
-import com.qumasoft.server.MergeTypeHelper;
+import com.qumasoft.server.PromotionCandidateAnalyzer;
 import com.qvcsos.server.DatabaseManager;
 import com.qvcsos.server.SourceControlBehaviorManager;
 import com.qvcsos.server.dataaccess.BranchDAO;
-import com.qvcsos.server.dataaccess.DirectoryDAO;
-import com.qvcsos.server.dataaccess.DirectoryLocationDAO;
-import com.qvcsos.server.dataaccess.FileNameDAO;
-import com.qvcsos.server.dataaccess.FileNameHistoryDAO;
 import com.qvcsos.server.dataaccess.FileRevisionDAO;
-import com.qvcsos.server.dataaccess.FunctionalQueriesDAO;
 import com.qvcsos.server.dataaccess.ProjectDAO;
 import com.qvcsos.server.dataaccess.impl.BranchDAOImpl;
-import com.qvcsos.server.dataaccess.impl.DirectoryDAOImpl;
-import com.qvcsos.server.dataaccess.impl.DirectoryLocationDAOImpl;
-import com.qvcsos.server.dataaccess.impl.FileNameDAOImpl;
-import com.qvcsos.server.dataaccess.impl.FileNameHistoryDAOImpl;
 import com.qvcsos.server.dataaccess.impl.FileRevisionDAOImpl;
-import com.qvcsos.server.dataaccess.impl.FunctionalQueriesDAOImpl;
 import com.qvcsos.server.dataaccess.impl.ProjectDAOImpl;
 import com.qvcsos.server.datamodel.Branch;
-import com.qvcsos.server.datamodel.Directory;
-import com.qvcsos.server.datamodel.DirectoryLocation;
-import com.qvcsos.server.datamodel.FileName;
-import com.qvcsos.server.datamodel.FileNameHistory;
 import com.qvcsos.server.datamodel.FileRevision;
 import com.qvcsos.server.datamodel.Project;
-import java.sql.SQLException;
-import java.util.ArrayDeque;
-import java.util.Deque;
 import java.util.List;
+import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -65,7 +45,6 @@ import org.slf4j.LoggerFactory;
 class ClientRequestListFilesToPromote extends AbstractClientRequest {
     // Create our logger object
     private static final Logger LOGGER = LoggerFactory.getLogger(ClientRequestListFilesToPromote.class);
-    private final MergeTypeHelper mergeTypeHelper;
     private final DatabaseManager databaseManager;
     private final String schemaName;
 
@@ -73,7 +52,6 @@ class ClientRequestListFilesToPromote extends AbstractClientRequest {
         this.databaseManager = DatabaseManager.getInstance();
         this.schemaName = databaseManager.getSchemaName();
         setRequest(data);
-        this.mergeTypeHelper = new MergeTypeHelper(getRequest().getUserName(), getRequest().getProjectName(), getRequest().getBranchName());
     }
 
     @Override
@@ -101,33 +79,15 @@ class ClientRequestListFilesToPromote extends AbstractClientRequest {
         serverResponseListFilesToPromote.setProjectName(projectName);
         serverResponseListFilesToPromote.setParentBranchName(promoteToBranchName);
         serverResponseListFilesToPromote.setBranchName(promoteFromBranchName);
-        for (FileRevision fileRevision : promoteFromFileRevisionList) {
-            try {
-                FilePromotionInfo filePromotionInfo = new FilePromotionInfo();
-                filePromotionInfo.setPromotedFromAppendedPath(mergeTypeHelper.buildAppendedPath(fileRevision.getFileId(), fileRevision.getCommitId()));
-                filePromotionInfo.setTypeOfPromotion(deduceTypeOfPromotion(fileRevision, promoteFromBranch, promoteToBranch, filePromotionInfo));
-                filePromotionInfo.setFeatureBranchRevisionId(fileRevision.getId());
-                filePromotionInfo.setFileId(fileRevision.getFileId());
-
-                filePromotionInfo.setPromotedFromBranchName(promoteFromBranchName);
-                filePromotionInfo.setPromotedToBranchName(promoteToBranchName);
-
-                filePromotionInfo.setPromotedFromBranchId(promoteFromBranch.getId());
-                filePromotionInfo.setPromotedToBranchId(promoteToBranch.getId());
 
-                filePromotionInfo.setPromotedFromShortWorkfileName(getShortWorkfileName(fileRevision));
-                if (filePromotionInfo.getTypeOfPromotion() != FILE_CREATED_PROMOTION_TYPE) {
-                    filePromotionInfo.setPromotedToShortWorkfileName(getParentShortWorkfileName(promoteToBranch.getId(), fileRevision.getFileId()));
-                } else {
-                    filePromotionInfo.setPromotedToShortWorkfileName(filePromotionInfo.getPromotedFromShortWorkfileName());
-                }
-
-                filePromotionInfo.setDescribeTypeOfPromotion(deduceMergeDescription(filePromotionInfo));
-                String childBranchTipRevisionString = String.format("%d.%d", promoteFromBranch.getId(), fileRevision.getId());
-                filePromotionInfo.setChildBranchTipRevisionString(childBranchTipRevisionString);
+        // Analyze all the candidates at once...
+        PromotionCandidateAnalyzer promotionCandidateAnalyzer = new PromotionCandidateAnalyzer(getRequest().getUserName(), projectName, promoteFromBranchName);
+        Map<Integer, FilePromotionInfo> promotionInfoMap = promotionCandidateAnalyzer.analyze(promoteFromFileRevisionList, promoteFromBranch, promoteToBranch);
+        for (FileRevision fileRevision : promoteFromFileRevisionList) {
+            FilePromotionInfo filePromotionInfo = promotionInfoMap.get(fileRevision.getId());
+            if (filePromotionInfo != null) {
+                completeFilePromotionInfo(filePromotionInfo, fileRevision, promoteFromBranch, promoteToBranch);
                 serverResponseListFilesToPromote.addToList(filePromotionInfo);
-            } catch (QVCSException | SQLException e) {
-                LOGGER.warn(e.getLocalizedMessage(), e);
             }
         }
         sourceControlBehaviorManager.clearThreadLocals();
@@ -136,21 +96,26 @@ class ClientRequestListFilesToPromote extends AbstractClientRequest {
         return returnObject;
     }
 
-    private PromotionType deduceTypeOfPromotion(FileRevision fileRevision, Branch promoteFromBranch, Branch promoteToBranch, FilePromotionInfo filePromotionInfo) throws QVCSException, SQLException {
-        Integer fileId = fileRevision.getFileId();
-        boolean didLocationChangeFlag = mergeTypeHelper.didFileLocationChange(fileId, promoteFromBranch.getId(), promoteToBranch.getId());
-        InfoForMerge infoForMerge = new InfoForMerge(null, null,
-                mergeTypeHelper.isFilenameDifferent(fileId, promoteFromBranch.getId(), promoteToBranch.getId()),
-                didLocationChangeFlag,
-                mergeTypeHelper.wasFileCreatedOnBranch(fileId, promoteFromBranch.getId(), promoteToBranch.getId()),
-                mergeTypeHelper.wasFileDeletedOnBranch(fileId, promoteFromBranch.getId(), promoteToBranch.getId()));
-        PromotionType promotionType = Utility.deduceTypeOfMerge(infoForMerge, filePromotionInfo.getPromotedFromShortWorkfileName());
-        if (didLocationChangeFlag) {
-            filePromotionInfo.setPromotedToAppendedPath(buildPromotedToAppendedPath(fileId, promoteToBranch.getId()));
-        } else {
-            filePromotionInfo.setPromotedToAppendedPath(filePromotionInfo.getPromotedFromAppendedPath());
-        }
-        return promotionType;
+    /**
+     * Fill in the parts of the promotion info that do not depend on how the candidate was analyzed.
+     * @param filePromotionInfo the promotion info to fill in.
+     * @param fileRevision the feature branch revision that is a candidate for promotion.
+     * @param promoteFromBranch the branch we promote from.
+     * @param promoteToBranch the branch we promote to.
+     */
+    private void completeFilePromotionInfo(FilePromotionInfo filePromotionInfo, FileRevision fileRevision, Branch promoteFromBranch, Branch promoteToBranch) {
+        filePromotionInfo.setFeatureBranchRevisionId(fileRevision.getId());
+        filePromotionInfo.setFileId(fileRevision.getFileId());
+
+        filePromotionInfo.setPromotedFromBranchName(promoteFromBranch.getBranchName());
+        filePromotionInfo.setPromotedToBranchName(promoteToBranch.getBranchName());
+
+        filePromotionInfo.setPromotedFromBranchId(promoteFromBranch.getId());
+        filePromotionInfo.setPromotedToBranchId(promoteToBranch.getId());
+
+        filePromotionInfo.setDescribeTypeOfPromotion(deduceMergeDescription(filePromotionInfo));
+        String childBranchTipRevisionString = String.format("%d.%d", promoteFromBranch.getId(), fileRevision.getId());
+        filePromotionInfo.setChildBranchTipRevisionString(childBranchTipRevisionString);
     }
 
     private String deduceMergeDescription(FilePromotionInfo filePromotionInfo) {
@@ -181,65 +146,4 @@ class ClientRequestListFilesToPromote extends AbstractClientRequest {
         }
         return description.toString();
     }
-
-    private String getShortWorkfileName(FileRevision fileRevision) {
-        FunctionalQueriesDAO functionalQueriesDAO = new FunctionalQueriesDAOImpl(schemaName);
-        List<Branch> ancestorBranchList = functionalQueriesDAO.getBranchAncestryList(fileRevision.getBranchId());
-        String branchesToSearch = functionalQueriesDAO.buildBranchesToSearchString(ancestorBranchList);
-        FileNameDAO fileNameDAO = new FileNameDAOImpl(schemaName);
-        FileName fileName = fileNameDAO.findByBranchListAndFileId(branchesToSearch, fileRevision.getFileId());
-        return fileName.getFileName();
-    }
-
-    private String getParentShortWorkfileName(Integer parentBranchId, Integer fileId) {
-        String parentShortWorkfileName = null;
-        FunctionalQueriesDAO functionalQueriesDAO = new FunctionalQueriesDAOImpl(schemaName);
-        List<Branch> ancestorBranchList = functionalQueriesDAO.getBranchAncestryList(parentBranchId);
-        String branchesToSearch = functionalQueriesDAO.buildBranchesToSearchString(ancestorBranchList);
-        FileNameDAO fileNameDAO = new FileNameDAOImpl(schemaName);
-        FileName fileName = fileNameDAO.findByBranchListAndFileId(branchesToSearch, fileId);
-        if (fileName != null) {
-            parentShortWorkfileName = fileName.getFileName();
-        }
-        return parentShortWorkfileName;
-    }
-
-    private String buildPromotedToAppendedPath(Integer fileId, Integer promotedToBranchId) {
-        Integer directoryId;
-        FunctionalQueriesDAO functionalQueriesDAO = new FunctionalQueriesDAOImpl(schemaName);
-        String branchList = functionalQueriesDAO.buildBranchesToSearchString(functionalQueriesDAO.getBranchAncestryList(promotedToBranchId));
-        FileNameDAO fileNameDAO = new FileNameDAOImpl(schemaName);
-        FileName fileName = fileNameDAO.findByBranchListAndFileId(branchList, fileId);
-        if (fileName == null) {
-            FileNameHistoryDAO fileNameHistoryDAO = new FileNameHistoryDAOImpl(schemaName);
-            FileNameHistory fileNameHistory = fileNameHistoryDAO.findByBranchListAndFileId(branchList, fileId);
-            directoryId = fileNameHistory.getDirectoryId();
-        } else {
-            directoryId = fileName.getDirectoryId();
-        }
-
-        DirectoryDAO directoryDAO = new DirectoryDAOImpl(schemaName);
-        Directory directory = directoryDAO.findById(directoryId);
-        DirectoryLocationDAO directoryLocationDAO = new DirectoryLocationDAOImpl(schemaName);
-        DirectoryLocation directoryLocation = directoryLocationDAO.findByDirectoryId(directory.getId());
-
-        Deque<String> segmentStack = new ArrayDeque<>();
-        segmentStack.push(directoryLocation.getDirectorySegmentName());
-        while (directoryLocation.getParentDirectoryLocationId() != null) {
-            DirectoryLocation parentDirectoryLocation = directoryLocationDAO.findById(directoryLocation.getParentDirectoryLocationId());
-            segmentStack.push(parentDirectoryLocation.getDirectorySegmentName());
-            directoryLocation = parentDirectoryLocation;
-        }
-
-        StringBuilder appendedPathBuilder = new StringBuilder();
-        // Pop the root directory segment...
-        segmentStack.pop();
-        while (!segmentStack.isEmpty()) {
-            appendedPathBuilder.append(segmentStack.pop());
-            if (!segmentStack.isEmpty()) {
-                appendedPathBuilder.append(java.io.File.separator);
-            }
-        }
-        return appendedPathBuilder.toString();
-    }
 }
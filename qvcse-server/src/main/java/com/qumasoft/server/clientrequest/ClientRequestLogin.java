@@ -23,6 +23,7 @@ import com.qumasoft.qvcslib.UserPropertyData;
 import com.qumasoft.qvcslib.Utility;
 import com.qumasoft.qvcslib.ViewUtilityCommandLineData;
 import com.qumasoft.qvcslib.ViewUtilityFileExtensionCommandData;
+import com.qumasoft.qvcslib.WireProtocolCodec;
 import com.qumasoft.qvcslib.requestdata.ClientRequestLoginData;
 import com.qumasoft.qvcslib.response.AbstractServerResponse;
 import com.qumasoft.qvcslib.response.ServerResponseLogin;
@@ -106,6 +107,7 @@ public class ClientRequestLogin extends AbstractClientRequest {
                 if (clientRequestLoginData.getVersion().equals(QVCSConstants.QVCS_RELEASE_VERSION)) {
                     serverResponseLogin.setLoginResult(true);
                     serverResponseLogin.setVersionsMatchFlag(true);
+                    serverResponseLogin.setWireProtocolVersion(WireProtocolCodec.negotiateProtocolVersion(clientRequestLoginData.getWireProtocolVersion()));
                 } else {
                     LOGGER.warn("Login for: " + getRequest().getUserName() + ". Client version [" + clientRequestLoginData.getVersion() + "] not supported.");
                     serverResponseLogin.setLoginResult(true);
@@ -0,0 +1,337 @@
+/*   Copyright 2004-2023 Jim Voris
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.qumasoft.server.clientrequest;
+
+import com.qumasoft.qvcslib.ArchiveInfoCacheStore;
+import com.qumasoft.qvcslib.DirectoryCoordinate;
+import com.qumasoft.qvcslib.DirectoryCoordinateIds;
+import com.qumasoft.qvcslib.QVCSConstants;
+import com.qumasoft.qvcslib.ServerResponseFactoryInterface;
+import com.qumasoft.qvcslib.SkinnyLogfileInfo;
+import com.qumasoft.qvcslib.requestdata.ClientRequestRegisterClientListenerBulkData;
+import com.qumasoft.qvcslib.response.AbstractServerResponse;
+import com.qumasoft.qvcslib.response.ServerResponseError;
+import com.qumasoft.qvcslib.response.ServerResponseRegisterClientListener;
+import com.qumasoft.qvcslib.response.ServerResponseRegisterClientListenerBulk;
+import com.qumasoft.server.NotificationManager;
+import com.qvcsos.server.DatabaseManager;
+import com.qvcsos.server.SourceControlBehaviorManager;
+import com.qvcsos.server.dataaccess.BranchDAO;
+import com.qvcsos.server.dataaccess.FunctionalQueriesDAO;
+import com.qvcsos.server.dataaccess.FunctionalQueriesForReadOnlyBranchesDAO;
+import com.qvcsos.server.dataaccess.FunctionalQueriesForReleaseBranchesDAO;
+import com.qvcsos.server.dataaccess.TagDAO;
+import com.qvcsos.server.dataaccess.impl.BranchDAOImpl;
+import com.qvcsos.server.dataaccess.impl.FunctionalQueriesDAOImpl;
+import com.qvcsos.server.dataaccess.impl.FunctionalQueriesForReadOnlyBranchesDAOImpl;
+import com.qvcsos.server.dataaccess.impl.FunctionalQueriesForReleaseBranchesDAOImpl;
+import com.qvcsos.server.dataaccess.impl.TagDAOImpl;
+import com.qvcsos.server.datamodel.Branch;
+import com.qvcsos.server.datamodel.DirectoryLocation;
+import com.qvcsos.server.datamodel.Tag;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Client request bulk register client listener. Register the client as a listener for a collection of directories on one project/branch, and send the
+ * client the skinny info for each of those directories.
+ *
+ * <p>The directories are resolved with a single walk of the subtree that holds them all, instead of one lookup per directory, and for the Trunk the skinny
+ * info for all the directories is fetched with a few batched queries. Directories that are not found in the subtree (provisional directories, for example)
+ * are looked up one at a time. A {@link ServerResponseRegisterClientListener} is sent for each directory as soon as it is built, and the returned
+ * {@link ServerResponseRegisterClientListenerBulk} tells the client that they have all been sent. A directory that cannot be resolved gets a
+ * {@link ServerResponseError} of its own; the other directories are still registered.</p>
+ *
+ * <p>Each directory's response is stamped with a directory stamp computed from its skinny info. If the client sent the same stamp for the directory (it
+ * has that archive info cached), the response is marked unchanged and the skinny info is left out. The skinny info is still built for every directory,
+ * since the notification manager needs it to track each file's tip branch.</p>
+ *
+ * @author Jim Voris
+ */
+public class ClientRequestRegisterClientListenerBulk extends AbstractClientRequest {
+    // Create our logger object
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClientRequestRegisterClientListenerBulk.class);
+    private final DatabaseManager databaseManager;
+    private final String schemaName;
+    private int directoryCount = 0;
+    private int unchangedCount = 0;
+
+    /**
+     * Creates a new instance of ClientRequestRegisterClientListenerBulk.
+     *
+     * @param data the request data.
+     */
+    public ClientRequestRegisterClientListenerBulk(ClientRequestRegisterClientListenerBulkData data) {
+        this.databaseManager = DatabaseManager.getInstance();
+        this.schemaName = databaseManager.getSchemaName();
+        setRequest(data);
+    }
+
+    /**
+     * Register the client for each of the requested directories, sending the information about each directory back to the client as we go.
+     *
+     * @param userName the user name.
+     * @param response the object used to identify the client.
+     * @return the response that tells the client that all the directories have been registered.
+     */
+    @Override
+    public AbstractServerResponse execute(String userName, ServerResponseFactoryInterface response) {
+        SourceControlBehaviorManager sourceControlBehaviorManager = SourceControlBehaviorManager.getInstance();
+        sourceControlBehaviorManager.setUserAndResponse(userName, response);
+        ClientRequestRegisterClientListenerBulkData request = (ClientRequestRegisterClientListenerBulkData) getRequest();
+        String projectName = request.getProjectName();
+        String branchName = request.getBranchName();
+        String rootAppendedPath = request.getAppendedPath();
+        try {
+            databaseManager.getConnection();
+            FunctionalQueriesDAO functionalQueriesDAO = new FunctionalQueriesDAOImpl(schemaName);
+            DirectoryCoordinateIds rootIds = functionalQueriesDAO.getDirectoryCoordinateIds(new DirectoryCoordinate(projectName, branchName, rootAppendedPath));
+
+            BranchDAO branchDAO = new BranchDAOImpl(schemaName);
+            Branch branch = branchDAO.findById(rootIds.getBranchId());
+
+            Map<String, DirectoryCoordinateIds> idsMap = findDirectoryCoordinateIds(branch, rootIds, request.getAppendedPathList(), response);
+            LOGGER.info("ClientRequestRegisterClientListenerBulk.execute project: [{}], branch: [{}], subtree: [{}], directory count: [{}]", projectName, branchName,
+                    rootAppendedPath, idsMap.size());
+
+            // Add notification listeners for any parent branches, before we send anything.
+            NotificationManager.getNotificationManager().addNotificationListenersForParentBranches(response, projectName, branch, idsMap.keySet());
+
+            sendSkinnyLists(branch, idsMap, response);
+            LOGGER.info("Registered [{}] directories under: [{}]; [{}] were unchanged from the client's cache.", directoryCount, rootAppendedPath, unchangedCount);
+        } catch (Exception e) {
+            LOGGER.warn(e.getLocalizedMessage(), e);
+
+            // Return a command error.
+            ServerResponseError error = new ServerResponseError("Caught exception trying to register client listener for [" + rootAppendedPath + "]",
+                    projectName, branchName, rootAppendedPath);
+            response.createServerResponse(error);
+        }
+        sourceControlBehaviorManager.clearThreadLocals();
+
+        // Always answer, so the client is not left waiting.
+        ServerResponseRegisterClientListenerBulk returnObject = new ServerResponseRegisterClientListenerBulk();
+        returnObject.setProjectName(projectName);
+        returnObject.setBranchName(branchName);
+        returnObject.setDirectoryCount(directoryCount);
+        returnObject.setSyncToken(request.getSyncToken());
+        return returnObject;
+    }
+
+    /**
+     * Find the directory coordinate ids for each of the requested directories.
+     *
+     * @param branch the branch.
+     * @param rootIds the ids of the root of the subtree that holds all the directories.
+     * @param appendedPathList the appended paths of the requested directories.
+     * @param response the object used to identify the client, so we can report the directories that we could not find.
+     * @return the ids of each directory that we found, keyed by appended path, in request order.
+     */
+    private Map<String, DirectoryCoordinateIds> findDirectoryCoordinateIds(Branch branch, DirectoryCoordinateIds rootIds, List<String> appendedPathList,
+            ServerResponseFactoryInterface response) {
+        FunctionalQueriesDAO functionalQueriesDAO = new FunctionalQueriesDAOImpl(schemaName);
+        String projectName = getRequest().getProjectName();
+        String branchName = getRequest().getBranchName();
+        String rootAppendedPath = getRequest().getAppendedPath();
+        Map<String, DirectoryLocation> subtreeMap = new LinkedHashMap<>();
+        if (rootIds.getDirectoryLocationId() != null && rootIds.getDirectoryLocationId() != -1) {
+            List<Branch> branchArray = functionalQueriesDAO.getBranchAncestryList(branch.getId());
+            subtreeMap = functionalQueriesDAO.findDirectoryLocationSubtree(branch, branchArray, rootIds.getDirectoryLocationId(), rootAppendedPath);
+        }
+        Map<String, DirectoryCoordinateIds> idsMap = new LinkedHashMap<>();
+        for (String appendedPath : appendedPathList) {
+            DirectoryCoordinate directoryCoordinate = new DirectoryCoordinate(projectName, branchName, appendedPath);
+            DirectoryLocation directoryLocation = subtreeMap.get(appendedPath);
+            DirectoryCoordinateIds ids;
+            if (0 == appendedPath.compareTo(rootAppendedPath)) {
+                ids = rootIds;
+            } else if (directoryLocation != null) {
+                ids = new DirectoryCoordinateIds(rootIds.getProjectId(), branch.getId(), directoryLocation.getDirectoryId(), directoryLocation.getId(), directoryCoordinate,
+                        rootIds.getChildWriteableBranchMap());
+            } else {
+                LOGGER.debug("Directory not in subtree; looking up: [{}]", appendedPath);
+                try {
+                    ids = functionalQueriesDAO.getDirectoryCoordinateIds(directoryCoordinate);
+                } catch (RuntimeException e) {
+                    LOGGER.warn("Failed to find directory: [{}]: [{}]", appendedPath, e.getLocalizedMessage());
+                    ids = null;
+                }
+            }
+            if (ids != null) {
+                idsMap.put(appendedPath, ids);
+            } else {
+                sendDirectoryError(response, appendedPath);
+            }
+        }
+        return idsMap;
+    }
+
+    /**
+     * Build the list of skinny info for each directory, and send it to the client as soon as it is built.
+     *
+     * @param branch the branch.
+     * @param idsMap the ids of each directory, keyed by appended path.
+     * @param response the object used to identify the client.
+     */
+    private void sendSkinnyLists(Branch branch, Map<String, DirectoryCoordinateIds> idsMap, ServerResponseFactoryInterface response) {
+        switch (branch.getBranchTypeId()) {
+            case QVCSConstants.QVCS_TRUNK_BRANCH_TYPE:
+                sendSkinnyListsForTrunk(branch, idsMap, response);
+                break;
+            case QVCSConstants.QVCS_FEATURE_BRANCH_TYPE:
+                FunctionalQueriesDAO functionalQueriesDAO = new FunctionalQueriesDAOImpl(schemaName);
+                for (Map.Entry<String, DirectoryCoordinateIds> entry : idsMap.entrySet()) {
+                    DirectoryCoordinateIds ids = entry.getValue();
+                    List<SkinnyLogfileInfo> skinnyList = new ArrayList<>();
+                    try {
+                        if (ids.getDirectoryLocationId() != null) {
+                            if (ids.getDirectoryLocationId() == -1) {
+                                skinnyList = functionalQueriesDAO.getSkinnyLogfileInfoForCemetery(branch);
+                            } else {
+                                skinnyList = functionalQueriesDAO.getSkinnyLogfileInfo(ids.getBranchId(), ids.getDirectoryId());
+                            }
+                        }
+                    } catch (RuntimeException e) {
+                        LOGGER.warn("Failed to build skinny info for: [{}]: [{}]", entry.getKey(), e.getLocalizedMessage());
+                        sendDirectoryError(response, entry.getKey());
+                        continue;
+                    }
+                    sendDirectory(response, branch, entry.getKey(), skinnyList);
+                }
+                break;
+            case QVCSConstants.QVCS_TAG_BASED_BRANCH_TYPE:
+                TagDAO tagDAO = new TagDAOImpl(schemaName);
+                Tag tag = tagDAO.findById(branch.getTagId());
+                FunctionalQueriesForReadOnlyBranchesDAO functionalQueriesForReadOnlyBranchesDAO = new FunctionalQueriesForReadOnlyBranchesDAOImpl(schemaName);
+                for (Map.Entry<String, DirectoryCoordinateIds> entry : idsMap.entrySet()) {
+                    List<SkinnyLogfileInfo> skinnyList;
+                    try {
+                        skinnyList = functionalQueriesForReadOnlyBranchesDAO.getSkinnyLogfileInfoForReadOnlyBranch(branch, tag.getCommitId(), entry.getValue());
+                    } catch (RuntimeException e) {
+                        LOGGER.warn("Failed to build skinny info for: [{}]: [{}]", entry.getKey(), e.getLocalizedMessage());
+                        sendDirectoryError(response, entry.getKey());
+                        continue;
+                    }
+                    sendDirectory(response, branch, entry.getKey(), skinnyList);
+                }
+                break;
+            case QVCSConstants.QVCS_RELEASE_BRANCH_TYPE:
+                FunctionalQueriesForReleaseBranchesDAO functionalQueriesForReleaseBranchesDAO = new FunctionalQueriesForReleaseBranchesDAOImpl(schemaName);
+                for (Map.Entry<String, DirectoryCoordinateIds> entry : idsMap.entrySet()) {
+                    DirectoryCoordinateIds ids = entry.getValue();
+                    List<SkinnyLogfileInfo> skinnyList;
+                    try {
+                        if (ids.getDirectoryLocationId() != null && ids.getDirectoryLocationId() == -1) {
+                            skinnyList = new FunctionalQueriesDAOImpl(schemaName).getSkinnyLogfileInfoForCemetery(branch);
+                        } else {
+                            skinnyList = functionalQueriesForReleaseBranchesDAO.getSkinnyLogfileInfoForReleaseBranches(branch, branch.getCommitId(), ids);
+                        }
+                    } catch (RuntimeException e) {
+                        LOGGER.warn("Failed to build skinny info for: [{}]: [{}]", entry.getKey(), e.getLocalizedMessage());
+                        sendDirectoryError(response, entry.getKey());
+                        continue;
+                    }
+                    sendDirectory(response, branch, entry.getKey(), skinnyList);
+                }
+                break;
+            default:
+                for (String appendedPath : idsMap.keySet()) {
+                    sendDirectory(response, branch, appendedPath, new ArrayList<>());
+                }
+                break;
+        }
+    }
+
+    private void sendSkinnyListsForTrunk(Branch branch, Map<String, DirectoryCoordinateIds> idsMap, ServerResponseFactoryInterface response) {
+        FunctionalQueriesDAO functionalQueriesDAO = new FunctionalQueriesDAOImpl(schemaName);
+
+        // Fetch the skinny info for all the real directories at once.
+        List<Integer> directoryIdList = new ArrayList<>(idsMap.size());
+        for (DirectoryCoordinateIds ids : idsMap.values()) {
+            if (ids.getDirectoryLocationId() != null && ids.getDirectoryLocationId() != -1) {
+                directoryIdList.add(ids.getDirectoryId());
+            }
+        }
+        Map<Integer, List<SkinnyLogfileInfo>> skinnyMap = functionalQueriesDAO.getSkinnyLogfileInfoForTrunkDirectories(branch.getId(), directoryIdList);
+        for (Map.Entry<String, DirectoryCoordinateIds> entry : idsMap.entrySet()) {
+            DirectoryCoordinateIds ids = entry.getValue();
+            List<SkinnyLogfileInfo> skinnyList = null;
+            if (ids.getDirectoryLocationId() != null) {
+                if (ids.getDirectoryLocationId() == -1) {
+                    skinnyList = functionalQueriesDAO.getSkinnyLogfileInfoForCemetery(branch);
+                } else {
+                    skinnyList = skinnyMap.get(ids.getDirectoryId());
+                }
+            }
+            if (skinnyList == null) {
+                skinnyList = new ArrayList<>();
+            }
+            sendDirectory(response, branch, entry.getKey(), skinnyList);
+        }
+    }
+
+    /**
+     * Register the client as a listener for one directory, and send it the directory's skinny info. If the client already has the same skinny info
+     * cached, the response just says the directory is unchanged.
+     *
+     * @param response the object used to identify the client.
+     * @param branch the branch.
+     * @param appendedPath the appended path of the directory.
+     * @param skinnyList the skinny info of the directory's files.
+     */
+    private void sendDirectory(ServerResponseFactoryInterface response, Branch branch, String appendedPath, List<SkinnyLogfileInfo> skinnyList) {
+        ClientRequestRegisterClientListenerBulkData request = (ClientRequestRegisterClientListenerBulkData) getRequest();
+        NotificationManager.getNotificationManager().addDirectoryCoordinateListeners(response, request.getProjectName(), request.getBranchName(), branch.getId(),
+                Collections.singletonMap(appendedPath, skinnyList));
+
+        ServerResponseRegisterClientListener serverResponse = new ServerResponseRegisterClientListener();
+        long directoryStamp = ArchiveInfoCacheStore.computeDirectoryStamp(skinnyList);
+        serverResponse.setDirectoryStamp(directoryStamp);
+        Long cachedStamp = request.getCachedStamp(appendedPath);
+        if (cachedStamp != null && cachedStamp == directoryStamp) {
+            // The client already has this directory's archive info.
+            serverResponse.setUnchangedFlag(Boolean.TRUE);
+            unchangedCount++;
+        } else {
+            skinnyList.forEach(skinnyInfo -> {
+                serverResponse.addLogfileInformation(skinnyInfo);
+            });
+        }
+        serverResponse.setAppendedPath(appendedPath);
+        serverResponse.setProjectName(request.getProjectName());
+        serverResponse.setBranchName(request.getBranchName());
+        serverResponse.setBranchId(branch.getId());
+        serverResponse.setParentBranchId(branch.getParentBranchId());
+        response.createServerResponse(serverResponse);
+        directoryCount++;
+    }
+
+    /**
+     * Tell the client that we could not register it for one of the requested directories.
+     *
+     * @param response the object used to identify the client.
+     * @param appendedPath the appended path of the directory.
+     */
+    private void sendDirectoryError(ServerResponseFactoryInterface response, String appendedPath) {
+        ServerResponseError error = new ServerResponseError("Failed to register client listener for [" + appendedPath + "]", getRequest().getProjectName(),
+                getRequest().getBranchName(), appendedPath);
+        response.createServerResponse(error);
+    }
+}
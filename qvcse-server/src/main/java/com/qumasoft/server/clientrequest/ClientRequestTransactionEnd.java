@@ -14,17 +14,26 @@
  */
 package com.qumasoft.server.clientrequest;
 
+import com.qumasoft.qvcslib.QVCSRuntimeException;
 import com.qumasoft.qvcslib.ServerResponseFactoryInterface;
 import com.qumasoft.qvcslib.requestdata.ClientRequestTransactionEndData;
 import com.qumasoft.qvcslib.response.ServerResponseInterface;
 import com.qumasoft.qvcslib.response.ServerResponseTransactionEnd;
+import com.qvcsos.server.DatabaseManager;
+import com.qvcsos.server.DirectoryLocationIndex;
 import com.qvcsos.server.ServerTransactionManager;
+import java.sql.Connection;
+import java.sql.SQLException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Transaction end.
  * @author Jim Voris
  */
 public class ClientRequestTransactionEnd extends AbstractClientRequest {
+    // Create our logger object
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClientRequestTransactionEnd.class);
 
     /**
      * Creates a new instance of ClientRequestTransactionEnd.
@@ -43,6 +52,19 @@ public class ClientRequestTransactionEnd extends AbstractClientRequest {
 
         // Keep track that we ended this transaction.
         ServerTransactionManager.getInstance().clientEndTransaction(response);
+        if (!ServerTransactionManager.getInstance().transactionIsInProgress(response)) {
+            // The outermost transaction is complete; restore auto-commit so this thread's connection can go back to the pool.
+            try {
+                Connection connection = DatabaseManager.getInstance().getConnection();
+                if (!connection.getAutoCommit()) {
+                    connection.setAutoCommit(true);
+                }
+                DirectoryLocationIndex.publishChangesForAll(Thread.currentThread());
+            } catch (SQLException e) {
+                LOGGER.warn("Failed to set auto commit to true", e);
+                throw new QVCSRuntimeException("Failed to set auto commit to true");
+            }
+        }
 
         returnObject.setSyncToken(getRequest().getSyncToken());
         return returnObject;
@@ -114,8 +114,7 @@ public class ClientRequestUpdateTagCommitId extends AbstractClientRequest {
             }
 
             FunctionalQueriesDAO functionalQueriesDAO = new FunctionalQueriesDAOImpl(schemaName);
-            List<Branch> branchAncestryList = functionalQueriesDAO.getBranchAncestryList(branch.getId());
-            String branchesToSearchString = functionalQueriesDAO.buildBranchesToSearchString(branchAncestryList);
+            String branchesToSearchString = functionalQueriesDAO.getBranchesToSearchString(branch.getId());
 
             List<Commit> commitList = commitDAO.getCommitList(startingCommitId, branchesToSearchString);
             List<CommitInfo> commitInfoList = new ArrayList<>();
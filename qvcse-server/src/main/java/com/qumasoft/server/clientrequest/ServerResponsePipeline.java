@@ -0,0 +1,151 @@
+/*   Copyright 2004-2023 Jim Voris
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.qumasoft.server.clientrequest;
+
+import com.qumasoft.qvcslib.QVCSRuntimeException;
+import com.qumasoft.qvcslib.ServerResponseFactoryInterface;
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stream a sequence of responses to a client, building and compressing them in parallel, while writing them in the order they were submitted. The thread
+ * that submits the work is the only writer. It never lets more than a fixed number of responses get ahead of the socket: once the window is full, it writes
+ * the oldest response before it submits the next one, so a slow client throttles the producers rather than letting prepared responses pile up in memory.
+ *
+ * <p>The worker threads are shared by all client connections.</p>
+ *
+ * @author Jim Voris
+ */
+final class ServerResponsePipeline {
+    // Create our logger object
+    private static final Logger LOGGER = LoggerFactory.getLogger(ServerResponsePipeline.class);
+
+    /**
+     * The number of worker threads. Each worker may hold a database connection while it fetches a revision, so keep this well below the size of the database
+     * connection pool.
+     */
+    private static final int WORKER_THREAD_COUNT = Math.max(2, Math.min(Runtime.getRuntime().availableProcessors(), 8));
+
+    /** The maximum number of responses a single pipeline may have in flight (building, or built and waiting to be written). */
+    static final int MAXIMUM_IN_FLIGHT_RESPONSES = 2 * WORKER_THREAD_COUNT;
+
+    private static final ExecutorService WORKER_POOL = Executors.newFixedThreadPool(WORKER_THREAD_COUNT, new WorkerThreadFactory());
+
+    private final ServerResponseFactoryInterface response;
+    private final int maximumInFlight;
+    private final Deque<Future<Serializable>> inFlightQueue = new ArrayDeque<>();
+    private int sentCount;
+
+    /**
+     * Create a pipeline that writes to the given client.
+     * @param responseFactory the client's response factory.
+     */
+    ServerResponsePipeline(ServerResponseFactoryInterface responseFactory) {
+        this(responseFactory, MAXIMUM_IN_FLIGHT_RESPONSES);
+    }
+
+    /**
+     * Create a pipeline that writes to the given client, with a specific in-flight window.
+     * @param responseFactory the client's response factory.
+     * @param maxInFlight the maximum number of responses that may be in flight.
+     */
+    ServerResponsePipeline(ServerResponseFactoryInterface responseFactory, int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("In-flight window must be at least 1.");
+        }
+        this.response = responseFactory;
+        this.maximumInFlight = maxInFlight;
+    }
+
+    /**
+     * Submit a response to be built on a worker thread. The builder may return null if there is nothing to send. If the in-flight window is full, this
+     * writes the oldest response before returning.
+     * @param responseBuilder builds the response object. It runs on a worker thread.
+     */
+    void submit(Callable<Serializable> responseBuilder) {
+        while (inFlightQueue.size() >= maximumInFlight) {
+            sendOldest();
+        }
+        inFlightQueue.addLast(WORKER_POOL.submit(() -> {
+            Serializable responseObject = responseBuilder.call();
+            if (responseObject == null) {
+                return null;
+            }
+            return response.prepareServerResponse(responseObject);
+        }));
+    }
+
+    /**
+     * Write all the responses that are still in flight, in order.
+     * @return the number of responses written by this pipeline.
+     */
+    int finish() {
+        while (!inFlightQueue.isEmpty()) {
+            sendOldest();
+        }
+        return sentCount;
+    }
+
+    private void sendOldest() {
+        Future<Serializable> oldest = inFlightQueue.pollFirst();
+        Serializable preparedResponse;
+        try {
+            preparedResponse = oldest.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancelInFlight();
+            throw new QVCSRuntimeException("Interrupted while streaming responses.");
+        } catch (ExecutionException e) {
+            cancelInFlight();
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            LOGGER.warn(cause.getLocalizedMessage(), cause);
+            throw new QVCSRuntimeException("Failed to build response: " + cause.getLocalizedMessage());
+        }
+        if (preparedResponse != null) {
+            response.sendPreparedServerResponse(preparedResponse);
+            sentCount++;
+        }
+    }
+
+    private void cancelInFlight() {
+        for (Future<Serializable> future : inFlightQueue) {
+            future.cancel(false);
+        }
+        inFlightQueue.clear();
+    }
+
+    static class WorkerThreadFactory implements java.util.concurrent.ThreadFactory {
+        private final AtomicInteger threadCounter = new AtomicInteger(0);
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "ServerResponsePipeline-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,289 @@
+/*
+ * Copyright 2023 Jim Voris.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qumasoft.server;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Unit tests for the client connection server. The connections are handled by an echo worker, so these do not need a database.
+ *
+ * @author Jim Voris
+ */
+public class ClientConnectionServerTest {
+    /**
+     * Create our logger object.
+     */
+    private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(ClientConnectionServerTest.class);
+    private static final int SOCKET_TIMEOUT = 30_000;
+
+    /**
+     * A connection handler that sends back whatever the client sends.
+     */
+    static class EchoWorker extends ServerWorker {
+        private ObjectOutputStream out;
+        private ObjectInputStream in;
+
+        EchoWorker(SocketChannel channel) {
+            super(channel);
+        }
+
+        @Override
+        boolean open() {
+            try {
+                out = new ObjectOutputStream(new ChannelStreams.ChannelOutputStream(getChannel(), SOCKET_TIMEOUT));
+                out.flush();
+                return true;
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+        @Override
+        boolean handleClientRequests() {
+            try {
+                if (in == null) {
+                    in = new ObjectInputStream(new ChannelStreams.ChannelInputStream(getChannel(), SOCKET_TIMEOUT));
+                }
+                out.writeObject(in.readObject());
+                out.flush();
+                return true;
+            } catch (IOException | ClassNotFoundException e) {
+                return false;
+            }
+        }
+
+        @Override
+        boolean isAlive() {
+            return getChannel().isOpen();
+        }
+
+        @Override
+        void close() {
+            try {
+                getChannel().close();
+            } catch (IOException e) {
+                LOGGER.info(e.getLocalizedMessage());
+            }
+        }
+    }
+
+    /**
+     * An echo worker where the first connection goes dead after its first request, and its close waits until the test lets it finish.
+     */
+    static class SlowCloseWorker extends EchoWorker {
+        private static final CountDownLatch CLOSE_LATCH = new CountDownLatch(1);
+        private static final AtomicBoolean FIRST_CONNECTION_FLAG = new AtomicBoolean(true);
+        private final boolean slowCloseFlag;
+        private volatile boolean deadFlag = false;
+
+        SlowCloseWorker(SocketChannel channel) {
+            super(channel);
+            this.slowCloseFlag = FIRST_CONNECTION_FLAG.getAndSet(false);
+        }
+
+        @Override
+        boolean handleClientRequests() {
+            boolean retVal = super.handleClientRequests();
+            if (slowCloseFlag) {
+                deadFlag = true;
+            }
+            return retVal;
+        }
+
+        @Override
+        boolean isAlive() {
+            return !deadFlag && super.isAlive();
+        }
+
+        @Override
+        void close() {
+            if (deadFlag) {
+                try {
+                    CLOSE_LATCH.await(SOCKET_TIMEOUT, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            super.close();
+        }
+    }
+
+    private static int findFreePort() throws IOException {
+        try (ServerSocket serverSocket = new ServerSocket(0)) {
+            return serverSocket.getLocalPort();
+        }
+    }
+
+    private static Socket connect(int port) throws IOException, InterruptedException {
+        IOException lastException = null;
+        for (int i = 0; i < 50; i++) {
+            try {
+                Socket socket = new Socket("localhost", port);
+                socket.setSoTimeout(SOCKET_TIMEOUT);
+                return socket;
+            } catch (IOException e) {
+                // The listener may not be up yet.
+                lastException = e;
+                Thread.sleep(100L);
+            }
+        }
+        throw lastException;
+    }
+
+    private static int sendMessages(int port, int count) throws IOException, InterruptedException, ClassNotFoundException {
+        try (Socket socket = connect(port)) {
+            return sendMessages(socket, count);
+        }
+    }
+
+    private static int sendMessages(Socket socket, int count) throws IOException, ClassNotFoundException {
+        ObjectOutputStream out = new ObjectOutputStream(socket.getOutputStream());
+        out.flush();
+        ObjectInputStream in = new ObjectInputStream(socket.getInputStream());
+        int responseCount = 0;
+        for (int i = 0; i < count; i++) {
+            String message = "Message " + i + " from " + socket.getLocalPort();
+            out.writeObject(message);
+            out.flush();
+            assertEquals(message, in.readObject());
+            responseCount++;
+        }
+        return responseCount;
+    }
+
+    /**
+     * Many clients should be served by a couple of request threads, with every request answered.
+     * @throws Exception if the test fails.
+     */
+    @Test
+    public void testManyClientsFewThreads() throws Exception {
+        LOGGER.info("testManyClientsFewThreads");
+        final int port = findFreePort();
+        final int clientCount = 20;
+        final int messageCount = 5;
+        ExecutorService requestExecutor = Executors.newFixedThreadPool(2);
+        ExecutorService clientExecutor = Executors.newFixedThreadPool(clientCount);
+        ClientConnectionServer server = new ClientConnectionServer(new int[]{port}, requestExecutor, 100, 2, EchoWorker::new);
+        Thread serverThread = new Thread(server, "test connection server");
+        serverThread.start();
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < clientCount; i++) {
+                results.add(clientExecutor.submit(() -> sendMessages(port, messageCount)));
+            }
+            for (Future<Integer> result : results) {
+                assertEquals(Integer.valueOf(messageCount), result.get(SOCKET_TIMEOUT, TimeUnit.MILLISECONDS));
+            }
+        } finally {
+            server.close();
+            serverThread.join(SOCKET_TIMEOUT);
+            clientExecutor.shutdownNow();
+            // A request that was in flight (or waiting for a request thread) when the server closed closes its own connection when it finishes, so let
+            // those requests run, the way the server's shutdown does.
+            requestExecutor.shutdown();
+            requestExecutor.awaitTermination(SOCKET_TIMEOUT, TimeUnit.MILLISECONDS);
+        }
+        assertTrue("Server thread did not exit", !serverThread.isAlive());
+        assertEquals(0, server.getConnectionCount());
+    }
+
+    /**
+     * Connections beyond the limit should be refused, and closing the server should disconnect idle clients.
+     * @throws Exception if the test fails.
+     */
+    @Test
+    public void testConnectionLimitAndClose() throws Exception {
+        LOGGER.info("testConnectionLimitAndClose");
+        final int port = findFreePort();
+        ExecutorService requestExecutor = Executors.newFixedThreadPool(1);
+        ClientConnectionServer server = new ClientConnectionServer(new int[]{port}, requestExecutor, 1, 1, EchoWorker::new);
+        Thread serverThread = new Thread(server, "test connection server");
+        serverThread.start();
+        try (Socket first = connect(port)) {
+            ObjectInputStream firstIn = new ObjectInputStream(first.getInputStream());
+            try (Socket second = connect(port)) {
+                // The second connection is closed before the server writes anything to it.
+                assertEquals(-1, second.getInputStream().read());
+            }
+            assertEquals(1, server.getConnectionCount());
+
+            server.close();
+            serverThread.join(SOCKET_TIMEOUT);
+            try {
+                firstIn.readObject();
+                fail("Expected the idle connection to be closed.");
+            } catch (EOFException e) {
+                LOGGER.info("Idle connection closed as expected.");
+            }
+        } finally {
+            server.close();
+            requestExecutor.shutdownNow();
+            requestExecutor.awaitTermination(SOCKET_TIMEOUT, TimeUnit.MILLISECONDS);
+        }
+        assertEquals(0, server.getConnectionCount());
+    }
+
+    /**
+     * A connection whose close is slow must not stall the selector, so other clients are still served while it closes.
+     * @throws Exception if the test fails.
+     */
+    @Test
+    public void testSlowCloseDoesNotStallOtherClients() throws Exception {
+        LOGGER.info("testSlowCloseDoesNotStallOtherClients");
+        final int port = findFreePort();
+        ExecutorService requestExecutor = Executors.newFixedThreadPool(2);
+        ClientConnectionServer server = new ClientConnectionServer(new int[]{port}, requestExecutor, 100, 2, SlowCloseWorker::new);
+        Thread serverThread = new Thread(server, "test connection server");
+        serverThread.start();
+        try {
+            try (Socket deadSocket = connect(port)) {
+                // After this, the selector thread finds the connection dead, and closes it.
+                assertEquals(1, sendMessages(deadSocket, 1));
+                try (Socket liveSocket = connect(port)) {
+                    // Much less time than the slow close takes.
+                    liveSocket.setSoTimeout(5_000);
+                    assertEquals(5, sendMessages(liveSocket, 5));
+                }
+            }
+        } finally {
+            SlowCloseWorker.CLOSE_LATCH.countDown();
+            server.close();
+            serverThread.join(SOCKET_TIMEOUT);
+            requestExecutor.shutdown();
+            requestExecutor.awaitTermination(SOCKET_TIMEOUT, TimeUnit.MILLISECONDS);
+        }
+        assertEquals(0, server.getConnectionCount());
+    }
+}
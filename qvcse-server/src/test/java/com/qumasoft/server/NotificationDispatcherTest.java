@@ -0,0 +1,298 @@
+/*
+ * Copyright 2023 Jim Voris.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qumasoft.server;
+
+import com.qumasoft.qvcslib.ArchiveDirManagerInterface;
+import com.qumasoft.qvcslib.DirectoryCoordinate;
+import com.qumasoft.qvcslib.ServerResponseFactoryInterface;
+import com.qumasoft.qvcslib.SkinnyLogfileInfo;
+import com.qumasoft.qvcslib.commandargs.CheckInCommandArgs;
+import com.qumasoft.qvcslib.logfileaction.ActionType;
+import com.qumasoft.qvcslib.logfileaction.AddFile;
+import com.qumasoft.qvcslib.logfileaction.CheckIn;
+import com.qumasoft.qvcslib.logfileaction.Remove;
+import com.qumasoft.qvcslib.response.ServerResponseMessage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Unit tests for the notification dispatcher. The fan-out callback and the clients are stand-ins, so these do not need a database.
+ *
+ * @author Jim Voris
+ */
+public class NotificationDispatcherTest {
+    private static final long TIMEOUT = 10L;
+    private static final DirectoryCoordinate DIRECTORY = new DirectoryCoordinate("TestProject", "Trunk", "src");
+    private static final DirectoryCoordinate OTHER_DIRECTORY = new DirectoryCoordinate("TestProject", "Trunk", "test");
+
+    /**
+     * A client that records what it is sent. It can be told to wait before it accepts anything, like a client that is slow to read, or to report that its
+     * outbound queue is full, like a client that has stopped reading.
+     */
+    static class RecordingClient implements ServerResponseFactoryInterface {
+        private final List<java.io.Serializable> receivedList = Collections.synchronizedList(new ArrayList<>());
+        private final CountDownLatch releaseLatch;
+        private volatile boolean outboundQueueFullFlag = false;
+
+        RecordingClient(boolean slowFlag) {
+            this.releaseLatch = new CountDownLatch(slowFlag ? 1 : 0);
+        }
+
+        void release() {
+            releaseLatch.countDown();
+        }
+
+        void setOutboundQueueFull(boolean flag) {
+            outboundQueueFullFlag = flag;
+        }
+
+        List<java.io.Serializable> getReceivedList() {
+            synchronized (receivedList) {
+                return new ArrayList<>(receivedList);
+            }
+        }
+
+        @Override
+        public void addArchiveDirManager(ArchiveDirManagerInterface archiveDirManager) {
+        }
+
+        @Override
+        public void createServerResponse(java.io.Serializable responseObject) {
+            try {
+                releaseLatch.await(TIMEOUT, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            receivedList.add(responseObject);
+        }
+
+        @Override
+        public java.io.Serializable prepareServerResponse(java.io.Serializable responseObject) {
+            return responseObject;
+        }
+
+        @Override
+        public void sendPreparedServerResponse(java.io.Serializable preparedResponse) {
+            createServerResponse(preparedResponse);
+        }
+
+        @Override
+        public String getServerName() {
+            return "Test Server";
+        }
+
+        @Override
+        public String getUserName() {
+            return "TestUser";
+        }
+
+        @Override
+        public int getClientPort() {
+            return 0;
+        }
+
+        @Override
+        public String getClientIPAddress() {
+            return "127.0.0.1";
+        }
+
+        @Override
+        public boolean getConnectionAliveFlag() {
+            return true;
+        }
+
+        @Override
+        public void clientIsAlive() {
+        }
+
+        @Override
+        public boolean isOutboundQueueFull() {
+            return outboundQueueFullFlag;
+        }
+    }
+
+    private static QueuedNotification createNotification(DirectoryCoordinate dc, int fileId, ActionType action) {
+        SkinnyLogfileInfo skinnyInfo = new SkinnyLogfileInfo("File" + fileId + ".java");
+        skinnyInfo.setFileID(fileId);
+        skinnyInfo.setBranchId(1);
+        return new QueuedNotification(dc, skinnyInfo, action);
+    }
+
+    private static void waitFor(RecordingClient client, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIMEOUT);
+        while (client.getReceivedList().size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10L);
+        }
+        assertEquals(count, client.getReceivedList().size());
+    }
+
+    /**
+     * Wait for a delivery thread to take the client's first notification, so that what is sent next stays queued.
+     */
+    private static void waitForDelivery(NotificationDispatcher dispatcher, RecordingClient client) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIMEOUT);
+        while (dispatcher.getClientQueueDepth(client) > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10L);
+        }
+        assertEquals(0, dispatcher.getClientQueueDepth(client));
+    }
+
+    /**
+     * A later check-in for a file replaces an earlier one, unless something else happened to the file in between.
+     */
+    @Test
+    public void testCoalesce() {
+        QueuedNotification firstCheckIn = createNotification(DIRECTORY, 1, new CheckIn(new CheckInCommandArgs()));
+        QueuedNotification otherFileCheckIn = createNotification(DIRECTORY, 2, new CheckIn(new CheckInCommandArgs()));
+        QueuedNotification secondCheckIn = createNotification(DIRECTORY, 1, new CheckIn(new CheckInCommandArgs()));
+        QueuedNotification otherDirectoryCheckIn = createNotification(OTHER_DIRECTORY, 1, new CheckIn(new CheckInCommandArgs()));
+        QueuedNotification remove = createNotification(DIRECTORY, 1, new Remove("File1.java"));
+        QueuedNotification add = createNotification(DIRECTORY, 1, new AddFile());
+        QueuedNotification thirdCheckIn = createNotification(DIRECTORY, 1, new CheckIn(new CheckInCommandArgs()));
+
+        List<QueuedNotification> coalescedList = NotificationDispatcher.coalesce(Arrays.asList(firstCheckIn, otherFileCheckIn, secondCheckIn,
+                otherDirectoryCheckIn, remove, add, thirdCheckIn));
+        assertEquals(Arrays.asList(secondCheckIn, otherFileCheckIn, otherDirectoryCheckIn, remove, add, thirdCheckIn), coalescedList);
+    }
+
+    /**
+     * A burst of notifications inside the coalescing window should reach the fan-out callback as one batch.
+     * @throws Exception if the test fails.
+     */
+    @Test
+    public void testBatchWithinWindow() throws Exception {
+        List<List<QueuedNotification>> batchList = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch fanOutLatch = new CountDownLatch(1);
+        NotificationDispatcher dispatcher = new NotificationDispatcher(100, 10, 1, 200L, NotificationDispatcher.OverflowPolicy.RESYNC, batch -> {
+            batchList.add(batch);
+            fanOutLatch.countDown();
+        });
+        try {
+            for (int i = 0; i < 5; i++) {
+                assertTrue(dispatcher.submit(createNotification(DIRECTORY, 1, new CheckIn(new CheckInCommandArgs()))));
+            }
+            assertTrue(dispatcher.submit(createNotification(DIRECTORY, 2, new AddFile())));
+            assertTrue(fanOutLatch.await(TIMEOUT, TimeUnit.SECONDS));
+            assertEquals(1, batchList.size());
+            assertEquals(2, batchList.get(0).size());
+            assertEquals(4L, dispatcher.getCoalescedCount());
+            assertEquals(0, dispatcher.getQueueDepth());
+        } finally {
+            dispatcher.shutdown();
+        }
+    }
+
+    /**
+     * A client that is slow to read should not hold up the others. When its queue overflows it is told to refresh.
+     * @throws Exception if the test fails.
+     */
+    @Test
+    public void testSlowClientResync() throws Exception {
+        RecordingClient slowClient = new RecordingClient(true);
+        RecordingClient fastClient = new RecordingClient(false);
+        NotificationDispatcher dispatcher = new NotificationDispatcher(100, 3, 2, 0L, NotificationDispatcher.OverflowPolicy.RESYNC, batch -> {
+        });
+        try {
+            dispatcher.sendToClient(slowClient, "Notification 0");
+            waitForDelivery(dispatcher, slowClient);
+            for (int i = 1; i < 7; i++) {
+                dispatcher.sendToClient(slowClient, "Notification " + i);
+                dispatcher.sendToClient(fastClient, "Notification " + i);
+            }
+            waitFor(fastClient, 6);
+            assertEquals("Notification 6", fastClient.getReceivedList().get(5));
+
+            slowClient.release();
+            // Notification 0 was already being written when the queue overflowed. Notifications 1 through 4 were replaced by the resync message.
+            waitFor(slowClient, 4);
+            assertEquals("Notification 0", slowClient.getReceivedList().get(0));
+            assertTrue(slowClient.getReceivedList().get(1) instanceof ServerResponseMessage);
+            assertEquals(NotificationDispatcher.RESYNC_MESSAGE, ((ServerResponseMessage) slowClient.getReceivedList().get(1)).getMessage());
+            assertEquals(Arrays.asList("Notification 5", "Notification 6"), slowClient.getReceivedList().subList(2, 4));
+            assertEquals(1L, dispatcher.getResyncCount());
+            assertEquals(3, dispatcher.getMaximumClientQueueDepth());
+        } finally {
+            dispatcher.shutdown();
+        }
+    }
+
+    /**
+     * With the drop policy, a client whose queue overflows loses its oldest notifications.
+     * @throws Exception if the test fails.
+     */
+    @Test
+    public void testSlowClientDrop() throws Exception {
+        RecordingClient slowClient = new RecordingClient(true);
+        NotificationDispatcher dispatcher = new NotificationDispatcher(100, 2, 1, 0L, NotificationDispatcher.OverflowPolicy.DROP, batch -> {
+        });
+        try {
+            String first = "Notification 0";
+            dispatcher.sendToClient(slowClient, first);
+            waitForDelivery(dispatcher, slowClient);
+            for (int i = 1; i < 5; i++) {
+                dispatcher.sendToClient(slowClient, "Notification " + i);
+            }
+            assertEquals(2, dispatcher.getClientQueueDepth(slowClient));
+            slowClient.release();
+            waitFor(slowClient, 3);
+            assertSame(first, slowClient.getReceivedList().get(0));
+            assertEquals(Arrays.asList(first, "Notification 3", "Notification 4"), slowClient.getReceivedList());
+            assertEquals(2L, dispatcher.getClientDroppedCount());
+        } finally {
+            dispatcher.shutdown();
+        }
+    }
+
+    /**
+     * A client that has stopped reading should not tie up a delivery thread. With a single delivery thread, the other client still gets its notifications,
+     * and the blocked client gets its own, in order, once it starts reading again.
+     * @throws Exception if the test fails.
+     */
+    @Test
+    public void testBlockedClientDoesNotHoldDeliveryThread() throws Exception {
+        RecordingClient blockedClient = new RecordingClient(false);
+        RecordingClient otherClient = new RecordingClient(false);
+        blockedClient.setOutboundQueueFull(true);
+        NotificationDispatcher dispatcher = new NotificationDispatcher(100, 10, 1, 0L, NotificationDispatcher.OverflowPolicy.RESYNC, batch -> {
+        });
+        try {
+            for (int i = 0; i < 3; i++) {
+                dispatcher.sendToClient(blockedClient, "Notification " + i);
+            }
+            for (int i = 0; i < 3; i++) {
+                dispatcher.sendToClient(otherClient, "Notification " + i);
+            }
+            waitFor(otherClient, 3);
+            assertEquals(0, blockedClient.getReceivedList().size());
+            assertEquals(3, dispatcher.getClientQueueDepth(blockedClient));
+            assertTrue(dispatcher.getDeferredCount() > 0L);
+
+            blockedClient.setOutboundQueueFull(false);
+            waitFor(blockedClient, 3);
+            assertEquals(Arrays.asList("Notification 0", "Notification 1", "Notification 2"), blockedClient.getReceivedList());
+        } finally {
+            dispatcher.shutdown();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*   Copyright 2004-2014 Jim Voris
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.qumasoft.server;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the privilege index. The role lookup is a stub, so these do not need a database.
+ *
+ * @author Jim Voris
+ */
+public class PrivilegeIndexTest {
+    private static final ServerAction READ_ACTION = new ServerAction("Test read", false);
+    private static final ServerAction WRITE_ACTION = new ServerAction("Test write", true);
+    private static final ServerAction ADMIN_ACTION = new ServerAction("Test admin", true);
+
+    private final AtomicInteger lookupCount = new AtomicInteger(0);
+    private final Map<String, String[]> userRolesMap = new TreeMap<>();
+    private PrivilegeIndex privilegeIndex;
+
+    private static Map<String, Map<String, Boolean>> buildPrivilegesMap(boolean writerMayWrite) {
+        Map<String, Map<String, Boolean>> privilegesMap = new TreeMap<>();
+        Map<String, Boolean> readerMap = new TreeMap<>();
+        readerMap.put(READ_ACTION.getAction(), Boolean.TRUE);
+        readerMap.put(WRITE_ACTION.getAction(), Boolean.FALSE);
+        privilegesMap.put("READER", readerMap);
+        Map<String, Boolean> writerMap = new TreeMap<>();
+        writerMap.put(WRITE_ACTION.getAction(), writerMayWrite);
+        privilegesMap.put("WRITER", writerMap);
+        return privilegesMap;
+    }
+
+    /**
+     * Set up the index with a counting role lookup.
+     */
+    @Before
+    public void setUp() {
+        userRolesMap.put("project:reader", new String[]{"READER"});
+        userRolesMap.put("project:writer", new String[]{"READER", "WRITER"});
+        privilegeIndex = new PrivilegeIndex(List.of(READ_ACTION, WRITE_ACTION, ADMIN_ACTION), (projectName, userName) -> {
+            lookupCount.incrementAndGet();
+            return userRolesMap.getOrDefault(projectName + ":" + userName, new String[0]);
+        });
+        privilegeIndex.setRolePrivileges(buildPrivilegesMap(true));
+    }
+
+    /**
+     * The privileges of each role should be combined, and the roles of a user looked up only once.
+     */
+    @Test
+    public void testIsUserPrivileged() {
+        assertTrue(privilegeIndex.isUserPrivileged("project", "reader", READ_ACTION));
+        assertFalse(privilegeIndex.isUserPrivileged("project", "reader", WRITE_ACTION));
+        assertTrue(privilegeIndex.isUserPrivileged("project", "writer", READ_ACTION));
+        assertTrue(privilegeIndex.isUserPrivileged("project", "writer", WRITE_ACTION));
+        assertFalse(privilegeIndex.isUserPrivileged("project", "writer", ADMIN_ACTION));
+        assertFalse(privilegeIndex.isUserPrivileged("project", "stranger", READ_ACTION));
+        assertFalse(privilegeIndex.isUserPrivileged("other project", "writer", READ_ACTION));
+        assertEquals(4, lookupCount.get());
+        for (int i = 0; i < 10; i++) {
+            assertTrue(privilegeIndex.isUserPrivileged("project", "writer", WRITE_ACTION));
+        }
+        assertEquals(4, lookupCount.get());
+    }
+
+    /**
+     * Changing the role privileges should take effect at once, without looking up the user's roles again.
+     */
+    @Test
+    public void testRolePrivilegesChange() {
+        assertTrue(privilegeIndex.isUserPrivileged("project", "writer", WRITE_ACTION));
+        privilegeIndex.setRolePrivileges(buildPrivilegesMap(false));
+        assertFalse(privilegeIndex.isUserPrivileged("project", "writer", WRITE_ACTION));
+        assertTrue(privilegeIndex.isUserPrivileged("project", "writer", READ_ACTION));
+        assertEquals(1, lookupCount.get());
+    }
+
+    /**
+     * Changing a user's roles should take effect once the cached roles are invalidated.
+     */
+    @Test
+    public void testInvalidateUserRoles() {
+        assertFalse(privilegeIndex.isUserPrivileged("project", "reader", WRITE_ACTION));
+        userRolesMap.put("project:reader", new String[]{"WRITER"});
+        privilegeIndex.invalidateUserRoles();
+        assertTrue(privilegeIndex.isUserPrivileged("project", "reader", WRITE_ACTION));
+        assertFalse(privilegeIndex.isUserPrivileged("project", "reader", READ_ACTION));
+        assertEquals(2, lookupCount.get());
+    }
+}
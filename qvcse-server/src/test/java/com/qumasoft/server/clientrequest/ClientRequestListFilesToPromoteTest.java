@@ -0,0 +1,350 @@
+/*
+ * Copyright 2023 Jim Voris.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qumasoft.server.clientrequest;
+
+import com.qumasoft.TestHelper;
+import com.qumasoft.qvcslib.BogusResponseObject;
+import com.qumasoft.qvcslib.FilePromotionInfo;
+import com.qumasoft.qvcslib.InfoForMerge;
+import com.qumasoft.qvcslib.PromotionType;
+import com.qumasoft.qvcslib.QVCSConstants;
+import com.qumasoft.qvcslib.QVCSException;
+import com.qumasoft.qvcslib.Utility;
+import com.qumasoft.server.MergeTypeHelper;
+import com.qumasoft.server.PromotionCandidateAnalyzer;
+import com.qvcsos.CommonTestHelper;
+import com.qvcsos.server.DatabaseManager;
+import com.qvcsos.server.SourceControlBehaviorManager;
+import com.qvcsos.server.dataaccess.BranchDAO;
+import com.qvcsos.server.dataaccess.DirectoryDAO;
+import com.qvcsos.server.dataaccess.DirectoryLocationDAO;
+import com.qvcsos.server.dataaccess.FileNameDAO;
+import com.qvcsos.server.dataaccess.FileNameHistoryDAO;
+import com.qvcsos.server.dataaccess.FileRevisionDAO;
+import com.qvcsos.server.dataaccess.FunctionalQueriesDAO;
+import com.qvcsos.server.dataaccess.ProjectDAO;
+import com.qvcsos.server.dataaccess.impl.BranchDAOImpl;
+import com.qvcsos.server.dataaccess.impl.DirectoryDAOImpl;
+import com.qvcsos.server.dataaccess.impl.DirectoryLocationDAOImpl;
+import com.qvcsos.server.dataaccess.impl.FileNameDAOImpl;
+import com.qvcsos.server.dataaccess.impl.FileNameHistoryDAOImpl;
+import com.qvcsos.server.dataaccess.impl.FileRevisionDAOImpl;
+import com.qvcsos.server.dataaccess.impl.FunctionalQueriesDAOImpl;
+import com.qvcsos.server.dataaccess.impl.ProjectDAOImpl;
+import com.qvcsos.server.datamodel.Branch;
+import com.qvcsos.server.datamodel.Directory;
+import com.qvcsos.server.datamodel.DirectoryLocation;
+import com.qvcsos.server.datamodel.FileName;
+import com.qvcsos.server.datamodel.FileNameHistory;
+import com.qvcsos.server.datamodel.FileRevision;
+import com.qvcsos.server.datamodel.Project;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.AfterClass;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compare the set based promotion candidate analysis with the one file at a time analysis it replaced.
+ *
+ * @author Jim Voris
+ */
+public class ClientRequestListFilesToPromoteTest {
+    /**
+     * Create our logger object.
+     */
+    private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(ClientRequestListFilesToPromoteTest.class);
+    private static final BogusResponseObject BOGUS_RESPONSE = new BogusResponseObject();
+    private static final String USER_NAME = "ScriptedTestUser";
+    private static final String FEATURE_BRANCH_NAME = "Scripted Feature Branch";
+    private static final int ROOT_DIRECTORY_ID = 1;
+    private static final int FIRST_CHILD_DIRECTORY_ID = 2;
+    private static final int SECOND_CHILD_DIRECTORY_ID = 3;
+    private static DatabaseManager databaseManager;
+    private static final Set<Integer> SEEDED_FILE_ID_SET = new TreeSet<>();
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        CommonTestHelper.getCommonTestHelper().acquireSyncObject();
+        CommonTestHelper.getCommonTestHelper().resetTestDatabaseViaPsqlScript();
+        CommonTestHelper.getCommonTestHelper().resetQvcsosTestDatabaseViaPsqlScript();
+        databaseManager = DatabaseManager.getInstance();
+        databaseManager.initializeDatabase();
+        databaseManager.getConnection().setAutoCommit(false);
+        seedFeatureBranchRevisions();
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+        databaseManager.closeConnection();
+        databaseManager.shutdownDatabase();
+        CommonTestHelper.getCommonTestHelper().releaseSyncObject();
+    }
+
+    /**
+     * Add some files to the Trunk, and then give the feature branch one promotion candidate of each kind: a simple edit, a rename, a move, a move and
+     * rename, a delete, and a file created on the branch.
+     * @throws SQLException if there is a problem.
+     * @throws IOException if we cannot create the workfiles.
+     */
+    private static void seedFeatureBranchRevisions() throws SQLException, IOException {
+        SourceControlBehaviorManager sourceControlBehaviorManager = SourceControlBehaviorManager.getInstance();
+        String schemaName = databaseManager.getSchemaName();
+        String projectName = TestHelper.getTestProjectName();
+        Project project = new ProjectDAOImpl(schemaName).findByProjectName(projectName);
+        Branch featureBranch = new BranchDAOImpl(schemaName).findByProjectIdAndBranchName(project.getId(), FEATURE_BRANCH_NAME);
+        AtomicInteger mutableFileRevisionId = new AtomicInteger(-1);
+        String[] trunkFileNames = {"Simple.java", "Rename.java", "Move.java", "MoveAndRename.java", "Delete.java"};
+        Integer[] trunkFileIds = new Integer[trunkFileNames.length];
+
+        TestHelper.beginTransaction(BOGUS_RESPONSE);
+        sourceControlBehaviorManager.setUserAndResponse(USER_NAME, BOGUS_RESPONSE);
+        try {
+            for (int i = 0; i < trunkFileNames.length; i++) {
+                trunkFileIds[i] = sourceControlBehaviorManager.addFile(QVCSConstants.QVCS_TRUNK_BRANCH, projectName, "", trunkFileNames[i],
+                        createWorkfile(trunkFileNames[i] + " on the Trunk"), new Date(), "Add " + trunkFileNames[i], mutableFileRevisionId);
+                assertNotNull(trunkFileIds[i]);
+                SEEDED_FILE_ID_SET.add(trunkFileIds[i]);
+            }
+        } finally {
+            sourceControlBehaviorManager.clearThreadLocals();
+            TestHelper.endTransaction(BOGUS_RESPONSE);
+        }
+
+        TestHelper.beginTransaction(BOGUS_RESPONSE);
+        sourceControlBehaviorManager.setUserAndResponse(USER_NAME, BOGUS_RESPONSE);
+        try {
+            FileNameDAO fileNameDAO = new FileNameDAOImpl(schemaName);
+            sourceControlBehaviorManager.addRevision(featureBranch.getId(), trunkFileIds[0], "Simple.java on the branch".getBytes(), null, new Date(),
+                    "Edit Simple.java on the branch");
+            assertNotNull(sourceControlBehaviorManager.renameFile(featureBranch.getId(), trunkFileIds[1], "Renamed.java"));
+            Integer moveFileNameId = fileNameDAO.findByDirectoryIdAndFileName(ROOT_DIRECTORY_ID, trunkFileNames[2]).get(0).getId();
+            assertNotNull(sourceControlBehaviorManager.moveFile(featureBranch.getId(), moveFileNameId, FIRST_CHILD_DIRECTORY_ID));
+            Integer moveAndRenameFileNameId = fileNameDAO.findByDirectoryIdAndFileName(ROOT_DIRECTORY_ID, trunkFileNames[3]).get(0).getId();
+            assertNotNull(sourceControlBehaviorManager.moveAndRenameFile(featureBranch.getId(), moveAndRenameFileNameId, SECOND_CHILD_DIRECTORY_ID,
+                    "MovedAndRenamed.java"));
+            assertNotNull(sourceControlBehaviorManager.deleteFile(projectName, FEATURE_BRANCH_NAME, "", trunkFileNames[4], mutableFileRevisionId));
+            Integer createdFileId = sourceControlBehaviorManager.addFile(FEATURE_BRANCH_NAME, projectName, "", "Created.java",
+                    createWorkfile("Created.java on the branch"), new Date(), "Add Created.java on the branch", mutableFileRevisionId);
+            assertNotNull(createdFileId);
+            SEEDED_FILE_ID_SET.add(createdFileId);
+        } finally {
+            sourceControlBehaviorManager.clearThreadLocals();
+            TestHelper.endTransaction(BOGUS_RESPONSE);
+        }
+    }
+
+    private static File createWorkfile(String content) throws IOException {
+        File workfile = File.createTempFile("qvcsos-promote-", ".tmp");
+        workfile.deleteOnExit();
+        Files.write(workfile.toPath(), content.getBytes());
+        return workfile;
+    }
+
+    /**
+     * For every branch of the test project that can be promoted to its parent, both ways of analyzing the promotion candidates should give the same
+     * promotion info. The feature branch has a candidate for every file we seeded.
+     */
+    @Test
+    public void testAnalyzerMatchesOneAtATime() {
+        LOGGER.info("testAnalyzerMatchesOneAtATime");
+        String schemaName = databaseManager.getSchemaName();
+        ProjectDAO projectDAO = new ProjectDAOImpl(schemaName);
+        Project project = projectDAO.findByProjectName(TestHelper.getTestProjectName());
+        assertNotNull(project);
+        BranchDAO branchDAO = new BranchDAOImpl(schemaName);
+        FileRevisionDAO fileRevisionDAO = new FileRevisionDAOImpl(schemaName);
+
+        TestHelper.beginTransaction(BOGUS_RESPONSE);
+        SourceControlBehaviorManager.getInstance().setUserAndResponse(USER_NAME, BOGUS_RESPONSE);
+        try {
+            for (Branch promoteFromBranch : branchDAO.findProjectBranches(project.getId())) {
+                if (promoteFromBranch.getParentBranchId() == null || promoteFromBranch.getBranchTypeId() == QVCSConstants.QVCS_TAG_BASED_BRANCH_TYPE) {
+                    continue;
+                }
+                Branch promoteToBranch = branchDAO.findById(promoteFromBranch.getParentBranchId());
+                LOGGER.info("Comparing promotion candidates for branch: [{}]", promoteFromBranch.getBranchName());
+
+                List<FileRevision> candidateList = fileRevisionDAO.findPromotionCandidates(promoteFromBranch, promoteToBranch);
+                if (0 == FEATURE_BRANCH_NAME.compareTo(promoteFromBranch.getBranchName())) {
+                    assertFalse(candidateList.isEmpty());
+                    Set<Integer> candidateFileIdSet = new TreeSet<>();
+                    for (FileRevision candidate : candidateList) {
+                        candidateFileIdSet.add(candidate.getFileId());
+                    }
+                    assertTrue(candidateFileIdSet.toString(), candidateFileIdSet.containsAll(SEEDED_FILE_ID_SET));
+                }
+                OneAtATimeAnalyzer oneAtATimeAnalyzer = new OneAtATimeAnalyzer(schemaName, project.getProjectName(), promoteFromBranch.getBranchName());
+                // The candidate query joins on the file id, so a file that has a FileName row on both branches shows up more than once.
+                Map<Integer, FilePromotionInfo> expectedMap = new TreeMap<>();
+                for (FilePromotionInfo expected : oneAtATimeAnalyzer.analyze(candidateList, promoteFromBranch, promoteToBranch)) {
+                    expectedMap.put(expected.getFeatureBranchRevisionId(), expected);
+                }
+                PromotionCandidateAnalyzer analyzer = new PromotionCandidateAnalyzer(USER_NAME, project.getProjectName(), promoteFromBranch.getBranchName());
+                Map<Integer, FilePromotionInfo> actualMap = analyzer.analyze(candidateList, promoteFromBranch, promoteToBranch);
+
+                assertEquals(expectedMap.keySet(), actualMap.keySet());
+                for (FilePromotionInfo expected : expectedMap.values()) {
+                    FilePromotionInfo actual = actualMap.get(expected.getFeatureBranchRevisionId());
+                    assertNotNull(actual);
+                    String fileIdString = expected.getFileId().toString();
+                    assertEquals(fileIdString, expected.getTypeOfPromotion(), actual.getTypeOfPromotion());
+                    assertEquals(fileIdString, expected.getPromotedFromAppendedPath(), actual.getPromotedFromAppendedPath());
+                    assertEquals(fileIdString, expected.getPromotedToAppendedPath(), actual.getPromotedToAppendedPath());
+                    assertEquals(fileIdString, expected.getPromotedFromShortWorkfileName(), actual.getPromotedFromShortWorkfileName());
+                    assertEquals(fileIdString, expected.getPromotedToShortWorkfileName(), actual.getPromotedToShortWorkfileName());
+                }
+            }
+        } finally {
+            SourceControlBehaviorManager.getInstance().clearThreadLocals();
+            TestHelper.endTransaction(BOGUS_RESPONSE);
+        }
+    }
+
+    /**
+     * Analyze the promotion candidates one file at a time, asking {@link MergeTypeHelper} about each file. This is the way ClientRequestListFilesToPromote
+     * used to build the list of files to promote, and it is what {@link PromotionCandidateAnalyzer} must agree with.
+     */
+    static final class OneAtATimeAnalyzer {
+        private final String schemaName;
+        private final MergeTypeHelper mergeTypeHelper;
+
+        OneAtATimeAnalyzer(String schema, String projectName, String branchName) {
+            this.schemaName = schema;
+            this.mergeTypeHelper = new MergeTypeHelper(USER_NAME, projectName, branchName);
+        }
+
+        List<FilePromotionInfo> analyze(List<FileRevision> promoteFromFileRevisionList, Branch promoteFromBranch, Branch promoteToBranch) {
+            List<FilePromotionInfo> filePromotionInfoList = new ArrayList<>();
+            for (FileRevision fileRevision : promoteFromFileRevisionList) {
+                try {
+                    FilePromotionInfo filePromotionInfo = new FilePromotionInfo();
+                    filePromotionInfo.setFeatureBranchRevisionId(fileRevision.getId());
+                    filePromotionInfo.setFileId(fileRevision.getFileId());
+                    filePromotionInfo.setPromotedFromAppendedPath(mergeTypeHelper.buildAppendedPath(fileRevision.getFileId(), fileRevision.getCommitId()));
+                    filePromotionInfo.setTypeOfPromotion(deduceTypeOfPromotion(fileRevision, promoteFromBranch, promoteToBranch, filePromotionInfo));
+
+                    filePromotionInfo.setPromotedFromShortWorkfileName(getShortWorkfileName(fileRevision));
+                    if (filePromotionInfo.getTypeOfPromotion() != PromotionType.FILE_CREATED_PROMOTION_TYPE) {
+                        filePromotionInfo.setPromotedToShortWorkfileName(getParentShortWorkfileName(promoteToBranch.getId(), fileRevision.getFileId()));
+                    } else {
+                        filePromotionInfo.setPromotedToShortWorkfileName(filePromotionInfo.getPromotedFromShortWorkfileName());
+                    }
+                    filePromotionInfoList.add(filePromotionInfo);
+                } catch (QVCSException | SQLException e) {
+                    LOGGER.warn(e.getLocalizedMessage(), e);
+                }
+            }
+            return filePromotionInfoList;
+        }
+
+        private PromotionType deduceTypeOfPromotion(FileRevision fileRevision, Branch promoteFromBranch, Branch promoteToBranch, FilePromotionInfo filePromotionInfo)
+                throws QVCSException, SQLException {
+            Integer fileId = fileRevision.getFileId();
+            boolean didLocationChangeFlag = mergeTypeHelper.didFileLocationChange(fileId, promoteFromBranch.getId(), promoteToBranch.getId());
+            InfoForMerge infoForMerge = new InfoForMerge(null, null,
+                    mergeTypeHelper.isFilenameDifferent(fileId, promoteFromBranch.getId(), promoteToBranch.getId()),
+                    didLocationChangeFlag,
+                    mergeTypeHelper.wasFileCreatedOnBranch(fileId, promoteFromBranch.getId(), promoteToBranch.getId()),
+                    mergeTypeHelper.wasFileDeletedOnBranch(fileId, promoteFromBranch.getId(), promoteToBranch.getId()));
+            PromotionType promotionType = Utility.deduceTypeOfMerge(infoForMerge, filePromotionInfo.getPromotedFromShortWorkfileName());
+            if (didLocationChangeFlag) {
+                filePromotionInfo.setPromotedToAppendedPath(buildPromotedToAppendedPath(fileId, promoteToBranch.getId()));
+            } else {
+                filePromotionInfo.setPromotedToAppendedPath(filePromotionInfo.getPromotedFromAppendedPath());
+            }
+            return promotionType;
+        }
+
+        private String getShortWorkfileName(FileRevision fileRevision) {
+            FunctionalQueriesDAO functionalQueriesDAO = new FunctionalQueriesDAOImpl(schemaName);
+            List<Branch> ancestorBranchList = functionalQueriesDAO.getBranchAncestryList(fileRevision.getBranchId());
+            String branchesToSearch = functionalQueriesDAO.buildBranchesToSearchString(ancestorBranchList);
+            FileNameDAO fileNameDAO = new FileNameDAOImpl(schemaName);
+            FileName fileName = fileNameDAO.findByBranchListAndFileId(branchesToSearch, fileRevision.getFileId());
+            return fileName.getFileName();
+        }
+
+        private String getParentShortWorkfileName(Integer parentBranchId, Integer fileId) {
+            String parentShortWorkfileName = null;
+            FunctionalQueriesDAO functionalQueriesDAO = new FunctionalQueriesDAOImpl(schemaName);
+            List<Branch> ancestorBranchList = functionalQueriesDAO.getBranchAncestryList(parentBranchId);
+            String branchesToSearch = functionalQueriesDAO.buildBranchesToSearchString(ancestorBranchList);
+            FileNameDAO fileNameDAO = new FileNameDAOImpl(schemaName);
+            FileName fileName = fileNameDAO.findByBranchListAndFileId(branchesToSearch, fileId);
+            if (fileName != null) {
+                parentShortWorkfileName = fileName.getFileName();
+            }
+            return parentShortWorkfileName;
+        }
+
+        private String buildPromotedToAppendedPath(Integer fileId, Integer promotedToBranchId) {
+            Integer directoryId;
+            FunctionalQueriesDAO functionalQueriesDAO = new FunctionalQueriesDAOImpl(schemaName);
+            String branchList = functionalQueriesDAO.buildBranchesToSearchString(functionalQueriesDAO.getBranchAncestryList(promotedToBranchId));
+            FileNameDAO fileNameDAO = new FileNameDAOImpl(schemaName);
+            FileName fileName = fileNameDAO.findByBranchListAndFileId(branchList, fileId);
+            if (fileName == null) {
+                FileNameHistoryDAO fileNameHistoryDAO = new FileNameHistoryDAOImpl(schemaName);
+                FileNameHistory fileNameHistory = fileNameHistoryDAO.findByBranchListAndFileId(branchList, fileId);
+                directoryId = fileNameHistory.getDirectoryId();
+            } else {
+                directoryId = fileName.getDirectoryId();
+            }
+
+            DirectoryDAO directoryDAO = new DirectoryDAOImpl(schemaName);
+            Directory directory = directoryDAO.findById(directoryId);
+            DirectoryLocationDAO directoryLocationDAO = new DirectoryLocationDAOImpl(schemaName);
+            DirectoryLocation directoryLocation = directoryLocationDAO.findByDirectoryId(directory.getId());
+
+            Deque<String> segmentStack = new ArrayDeque<>();
+            segmentStack.push(directoryLocation.getDirectorySegmentName());
+            while (directoryLocation.getParentDirectoryLocationId() != null) {
+                DirectoryLocation parentDirectoryLocation = directoryLocationDAO.findById(directoryLocation.getParentDirectoryLocationId());
+                segmentStack.push(parentDirectoryLocation.getDirectorySegmentName());
+                directoryLocation = parentDirectoryLocation;
+            }
+
+            StringBuilder appendedPathBuilder = new StringBuilder();
+            // Pop the root directory segment...
+            segmentStack.pop();
+            while (!segmentStack.isEmpty()) {
+                appendedPathBuilder.append(segmentStack.pop());
+                if (!segmentStack.isEmpty()) {
+                    appendedPathBuilder.append(java.io.File.separator);
+                }
+            }
+            return appendedPathBuilder.toString();
+        }
+    }
+}
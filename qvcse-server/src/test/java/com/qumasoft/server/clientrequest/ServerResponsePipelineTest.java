@@ -0,0 +1,133 @@
+/*
+ * Copyright 2023 Jim Voris.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qumasoft.server.clientrequest;
+
+import com.qumasoft.qvcslib.BogusResponseObject;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Unit tests for the server response pipeline. These do not need a database.
+ *
+ * @author Jim Voris
+ */
+public class ServerResponsePipelineTest {
+    /**
+     * Create our logger object.
+     */
+    private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(ServerResponsePipelineTest.class);
+    private static final int RESPONSE_COUNT = 200;
+
+    /**
+     * A response factory that remembers what was written, and in what order.
+     */
+    static class RecordingResponseObject extends BogusResponseObject {
+        private final List<Serializable> sentList = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public void sendPreparedServerResponse(Serializable preparedResponse) {
+            sentList.add(preparedResponse);
+        }
+
+        List<Serializable> getSentList() {
+            return sentList;
+        }
+    }
+
+    /**
+     * Responses that take different amounts of time to build should still be written in the order they were submitted.
+     */
+    @Test
+    public void testResponsesAreWrittenInOrder() {
+        LOGGER.info("testResponsesAreWrittenInOrder");
+        RecordingResponseObject responseObject = new RecordingResponseObject();
+        ServerResponsePipeline pipeline = new ServerResponsePipeline(responseObject);
+        for (int i = 0; i < RESPONSE_COUNT; i++) {
+            final Integer value = i;
+            pipeline.submit(() -> {
+                Thread.sleep(ThreadLocalRandom.current().nextInt(3));
+                // Skip every tenth one, the way get directory skips a revision it cannot fetch.
+                return (value % 10 == 9) ? null : value;
+            });
+        }
+        int sentCount = pipeline.finish();
+        List<Serializable> sentList = responseObject.getSentList();
+        assertEquals(RESPONSE_COUNT - (RESPONSE_COUNT / 10), sentCount);
+        assertEquals(sentCount, sentList.size());
+        int previous = -1;
+        for (Serializable sent : sentList) {
+            int current = (Integer) sent;
+            assertTrue("Out of order response: " + current, current > previous);
+            previous = current;
+        }
+    }
+
+    /**
+     * The submitting thread should never let more than the in-flight window of responses get ahead of what has been written.
+     */
+    @Test
+    public void testInFlightWindowIsBounded() {
+        LOGGER.info("testInFlightWindowIsBounded");
+        final int window = 3;
+        AtomicInteger startedCount = new AtomicInteger(0);
+        RecordingResponseObject responseObject = new RecordingResponseObject();
+        ServerResponsePipeline pipeline = new ServerResponsePipeline(responseObject, window);
+        for (int i = 0; i < RESPONSE_COUNT; i++) {
+            assertTrue("Too many responses in flight", startedCount.get() - responseObject.getSentList().size() <= window);
+            final Integer value = i;
+            pipeline.submit(() -> {
+                startedCount.incrementAndGet();
+                return value;
+            });
+        }
+        assertEquals(RESPONSE_COUNT, pipeline.finish());
+    }
+
+    /**
+     * A failure while building a response should surface on the submitting thread, after the responses that precede it have been written.
+     */
+    @Test
+    public void testBuildFailureIsRethrown() {
+        LOGGER.info("testBuildFailureIsRethrown");
+        RecordingResponseObject responseObject = new RecordingResponseObject();
+        ServerResponsePipeline pipeline = new ServerResponsePipeline(responseObject, 2);
+        try {
+            for (int i = 0; i < 10; i++) {
+                final Integer value = i;
+                pipeline.submit(() -> {
+                    if (value == 4) {
+                        throw new IllegalStateException("Bad revision");
+                    }
+                    return value;
+                });
+            }
+            pipeline.finish();
+            fail("Expected the build failure to be rethrown.");
+        } catch (IllegalStateException e) {
+            assertEquals("Bad revision", e.getMessage());
+        }
+        assertEquals(4, responseObject.getSentList().size());
+    }
+}
@@ -613,6 +613,11 @@ public class ArchiveDirManagerForTranslucentBranchTest {
             return true;
         }
 
+        @Override
+        public boolean isOutboundQueueFull() {
+            return false;
+        }
+
         @Override
         public void clientIsAlive() {
         }
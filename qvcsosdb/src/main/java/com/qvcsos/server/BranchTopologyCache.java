@@ -0,0 +1,294 @@
+/*
+ * Copyright 2021-2023 Jim Voris.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qvcsos.server;
+
+import com.qumasoft.qvcslib.QVCSConstants;
+import com.qvcsos.server.dataaccess.impl.BranchDAOImpl;
+import com.qvcsos.server.datamodel.Branch;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An in-memory copy of the branch topology of a schema: each branch's ancestry (the branch, then its parent, and so on up to the Trunk), the
+ * comma separated list of those branch ids that we format into queries, and the map of writeable (feature) child branches. Nearly every request
+ * needs a branch's ancestry, and without this cache it costs one query per level.
+ *
+ * <p>The topology is built from the BRANCH table on first use, and is thrown away whenever {@link BranchDAOImpl} adds or deletes a branch. A
+ * branch that is added or deleted inside a transaction is not visible to other threads until that transaction commits, so until it finishes we
+ * answer from a fresh read of the table each time, and only cache the topology once the transaction is over.</p>
+ *
+ * @author Jim Voris
+ */
+public final class BranchTopologyCache {
+    // Create our logger object
+    private static final Logger LOGGER = LoggerFactory.getLogger(BranchTopologyCache.class);
+
+    private static final Map<String, BranchTopologyCache> CACHE_MAP = new ConcurrentHashMap<>();
+
+    private final Supplier<List<Branch>> loader;
+    private final Predicate<Thread> transactionInProgress;
+    private final Object syncObject = new Object();
+
+    /** Threads that have added or deleted a branch in a transaction that may not have finished. Guarded by syncObject. */
+    private final Set<Thread> changingThreadSet = new HashSet<>();
+
+    /** Bumped on every change, so that a topology built from a read that raced with a change is not cached. Guarded by syncObject. */
+    private long generation = 0L;
+    private volatile Topology topology;
+
+    /**
+     * Create a cache.
+     * @param loaderFunction reads all the branches, deleted or not.
+     * @param transactionInProgressPredicate tells whether a thread has a transaction in progress.
+     */
+    BranchTopologyCache(Supplier<List<Branch>> loaderFunction, Predicate<Thread> transactionInProgressPredicate) {
+        this.loader = loaderFunction;
+        this.transactionInProgress = transactionInProgressPredicate;
+    }
+
+    /**
+     * Get the cache for the given schema.
+     * @param schemaName the schema name.
+     * @return the branch topology cache for that schema.
+     */
+    public static BranchTopologyCache getInstance(String schemaName) {
+        return CACHE_MAP.computeIfAbsent(schemaName, schema -> new BranchTopologyCache(() -> new BranchDAOImpl(schema).findAll(),
+                thread -> DatabaseManager.getInstance().isTransactionInProgress(thread)));
+    }
+
+    /**
+     * Discard every cache. We do this when we shut down the database.
+     */
+    public static void resetAll() {
+        for (BranchTopologyCache cache : CACHE_MAP.values()) {
+            cache.reset();
+        }
+    }
+
+    /**
+     * Discard any topology that may include branch changes made by a thread whose transaction was rolled back.
+     * @param thread the thread whose transaction was rolled back.
+     */
+    public static void discardChangesForAll(Thread thread) {
+        for (BranchTopologyCache cache : CACHE_MAP.values()) {
+            cache.discardChanges(thread);
+        }
+    }
+
+    /**
+     * Get the ancestry of a branch.
+     * @param branchId the branch id.
+     * @return a list of copies of the branch and its ancestors, starting with the given branch and ending with the Trunk; or null if the branch is
+     * not known.
+     */
+    public List<Branch> getBranchAncestryList(Integer branchId) {
+        List<Branch> ancestryList = getTopology().ancestryMap.get(branchId);
+        if (ancestryList == null) {
+            return null;
+        }
+        List<Branch> branchList = new ArrayList<>(ancestryList.size());
+        for (Branch branch : ancestryList) {
+            branchList.add(copyOf(branch));
+        }
+        return branchList;
+    }
+
+    /**
+     * Get the comma separated list of the ids of a branch and its ancestors.
+     * @param branchId the branch id.
+     * @return the ids of the branch's ancestry, in ancestry order; or null if the branch is not known.
+     */
+    public String getBranchesToSearchString(Integer branchId) {
+        return getTopology().branchesToSearchMap.get(branchId);
+    }
+
+    /**
+     * Get the writeable descendants of a branch: its feature branch children that are not deleted, their feature branch children, and so on.
+     * @param branchId the branch id.
+     * @return an unmodifiable map of branch id to branch name; or null if the branch is not known.
+     */
+    public Map<Integer, String> getWriteableChildBranchMap(Integer branchId) {
+        return getTopology().writeableChildMap.get(branchId);
+    }
+
+    /**
+     * Called after a branch has been added to, or deleted from the BRANCH table.
+     */
+    public void branchChanged() {
+        Thread thread = Thread.currentThread();
+        boolean inTransactionFlag = transactionInProgress.test(thread);
+        synchronized (syncObject) {
+            if (inTransactionFlag) {
+                changingThreadSet.add(thread);
+            }
+            generation++;
+            topology = null;
+        }
+    }
+
+    /**
+     * Discard the cached topology, so it is rebuilt from the database on next use.
+     */
+    public void invalidate() {
+        synchronized (syncObject) {
+            generation++;
+            topology = null;
+        }
+    }
+
+    void reset() {
+        synchronized (syncObject) {
+            changingThreadSet.clear();
+            generation++;
+            topology = null;
+        }
+    }
+
+    void discardChanges(Thread thread) {
+        synchronized (syncObject) {
+            if (changingThreadSet.remove(thread)) {
+                LOGGER.info("Discarding branch topology after rollback on thread: [{}]", thread.getName());
+                generation++;
+                topology = null;
+            }
+        }
+    }
+
+    boolean isCached() {
+        return topology != null;
+    }
+
+    private Topology getTopology() {
+        Topology currentTopology = topology;
+        if (currentTopology == null) {
+            long startGeneration;
+            synchronized (syncObject) {
+                changingThreadSet.removeIf(thread -> !transactionInProgress.test(thread));
+                startGeneration = generation;
+            }
+            currentTopology = new Topology(loader.get());
+            synchronized (syncObject) {
+                if (changingThreadSet.isEmpty() && startGeneration == generation) {
+                    topology = currentTopology;
+                    LOGGER.info("Cached the topology of [{}] branches.", currentTopology.ancestryMap.size());
+                }
+            }
+        }
+        return currentTopology;
+    }
+
+    private static Branch copyOf(Branch branch) {
+        Branch copy = new Branch();
+        copy.setId(branch.getId());
+        copy.setParentBranchId(branch.getParentBranchId());
+        copy.setProjectId(branch.getProjectId());
+        copy.setRootDirectoryId(branch.getRootDirectoryId());
+        copy.setCommitId(branch.getCommitId());
+        copy.setBranchName(branch.getBranchName());
+        copy.setBranchTypeId(branch.getBranchTypeId());
+        copy.setTagId(branch.getTagId());
+        copy.setDeletedFlag(branch.getDeletedFlag());
+        return copy;
+    }
+
+    /**
+     * An immutable snapshot of the topology.
+     */
+    private static final class Topology {
+        private final Map<Integer, List<Branch>> ancestryMap = new HashMap<>();
+        private final Map<Integer, String> branchesToSearchMap = new HashMap<>();
+        private final Map<Integer, Map<Integer, String>> writeableChildMap = new HashMap<>();
+
+        Topology(List<Branch> branchList) {
+            Map<Integer, Branch> branchByIdMap = new HashMap<>();
+            Map<Integer, List<Branch>> featureChildListMap = new HashMap<>();
+            for (Branch branch : branchList) {
+                branchByIdMap.put(branch.getId(), copyOf(branch));
+            }
+            for (Branch branch : branchByIdMap.values()) {
+                if (branch.getParentBranchId() != null && branch.getBranchTypeId() == QVCSConstants.QVCS_FEATURE_BRANCH_TYPE
+                        && !Boolean.TRUE.equals(branch.getDeletedFlag())) {
+                    featureChildListMap.computeIfAbsent(branch.getParentBranchId(), k -> new ArrayList<>()).add(branch);
+                }
+            }
+            for (Branch branch : branchByIdMap.values()) {
+                List<Branch> ancestryList = buildAncestryList(branchByIdMap, branch);
+                if (ancestryList != null) {
+                    ancestryMap.put(branch.getId(), Collections.unmodifiableList(ancestryList));
+                    branchesToSearchMap.put(branch.getId(), buildBranchesToSearchString(ancestryList));
+                }
+                Map<Integer, String> childMap = new TreeMap<>();
+                addWriteableChildren(featureChildListMap, branch.getId(), childMap);
+                writeableChildMap.put(branch.getId(), Collections.unmodifiableMap(childMap));
+            }
+        }
+
+        /**
+         * Build the ancestry of a branch. If a parent is missing (or the parents form a loop), we return null, and leave that branch to the database.
+         * @param branchByIdMap all the branches, by id.
+         * @param branch the branch.
+         * @return the branch's ancestry; null if we could not build it.
+         */
+        private static List<Branch> buildAncestryList(Map<Integer, Branch> branchByIdMap, Branch branch) {
+            List<Branch> ancestryList = new ArrayList<>();
+            Branch ancestor = branch;
+            while (ancestor != null) {
+                if (ancestryList.size() > branchByIdMap.size()) {
+                    return null;
+                }
+                ancestryList.add(ancestor);
+                if (ancestor.getParentBranchId() == null) {
+                    return ancestryList;
+                }
+                ancestor = branchByIdMap.get(ancestor.getParentBranchId());
+            }
+            return null;
+        }
+
+        private static String buildBranchesToSearchString(List<Branch> ancestryList) {
+            StringBuilder branchesToSearch = new StringBuilder();
+            for (int i = 0; i < ancestryList.size(); i++) {
+                branchesToSearch.append(ancestryList.get(i).getId());
+                if (i < (ancestryList.size() - 1)) {
+                    branchesToSearch.append(",");
+                }
+            }
+            return branchesToSearch.toString();
+        }
+
+        private static void addWriteableChildren(Map<Integer, List<Branch>> featureChildListMap, Integer branchId, Map<Integer, String> childMap) {
+            List<Branch> childList = featureChildListMap.get(branchId);
+            if (childList != null) {
+                for (Branch child : childList) {
+                    if (childMap.put(child.getId(), child.getBranchName()) == null) {
+                        addWriteableChildren(featureChildListMap, child.getId(), childMap);
+                    }
+                }
+            }
+        }
+    }
+}
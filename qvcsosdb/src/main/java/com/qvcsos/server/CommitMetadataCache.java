@@ -0,0 +1,309 @@
+/*
+ * Copyright 2021-2023 Jim Voris.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qvcsos.server;
+
+import com.qvcsos.server.dataaccess.impl.CommitDAOImpl;
+import com.qvcsos.server.datamodel.CommitMetadata;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A bounded, least recently used cache of commit metadata (the commit row, plus the name of the committing user), keyed by commit id. Building the
+ * revision history of a file needs the metadata for the commit of every revision; with this cache, that costs one joined query for the commits we
+ * have not seen yet, instead of a commit lookup and a user lookup per revision.
+ *
+ * <p>A commit does not change once it has been created, except through {@link CommitDAOImpl#updateCommitMessage}, which tells us to forget that
+ * commit. If the update is inside a transaction, we do not cache that commit again until the transaction has finished, and we forget it again if the
+ * transaction is rolled back.</p>
+ *
+ * <p>The commits that are not cached are read outside the lock. A commit whose message changes while it is being read is not cached from that read,
+ * since the read may have seen the old message. We tell by the change generation: each change gets the next generation number, and a read notes the
+ * generation when it starts.</p>
+ *
+ * @author Jim Voris
+ */
+public final class CommitMetadataCache {
+    // Create our logger object
+    private static final Logger LOGGER = LoggerFactory.getLogger(CommitMetadataCache.class);
+
+    /** The default maximum number of commits that we cache per schema. */
+    private static final int DEFAULT_MAXIMUM_ENTRY_COUNT = 100_000;
+
+    private static final Map<String, CommitMetadataCache> CACHE_MAP = new ConcurrentHashMap<>();
+
+    private final int maximumEntryCount;
+    private final Function<List<Integer>, List<CommitMetadata>> loader;
+    private final Predicate<Thread> transactionInProgress;
+
+    /**
+     * Access-ordered, so iteration starts with the least recently used entry.
+     */
+    private final LinkedHashMap<Integer, CommitMetadata> cacheMap = new LinkedHashMap<>(16, 0.75f, true);
+
+    /** Commits changed inside a transaction that may not have finished, with the thread that changed them. Guarded by cacheMap. */
+    private final Map<Integer, Thread> pendingChangeMap = new HashMap<>();
+
+    /** The generation of the most recent commit message change. Guarded by cacheMap. */
+    private long changeGeneration = 0L;
+    /** The generation at which each commit last changed, while there are reads in progress. Guarded by cacheMap. */
+    private final Map<Integer, Long> changeGenerationMap = new HashMap<>();
+    /** The number of reads in progress. Guarded by cacheMap. */
+    private int loadsInProgressCount = 0;
+
+    private final AtomicLong hitCount = new AtomicLong(0L);
+    private final AtomicLong missCount = new AtomicLong(0L);
+    private final AtomicLong evictionCount = new AtomicLong(0L);
+
+    /**
+     * Create a commit metadata cache.
+     * @param maxEntryCount the maximum number of commits to cache.
+     * @param loaderFunction reads the metadata for a list of commit ids.
+     * @param transactionInProgressPredicate tells whether a thread has a transaction in progress.
+     */
+    CommitMetadataCache(int maxEntryCount, Function<List<Integer>, List<CommitMetadata>> loaderFunction, Predicate<Thread> transactionInProgressPredicate) {
+        this.maximumEntryCount = maxEntryCount;
+        this.loader = loaderFunction;
+        this.transactionInProgress = transactionInProgressPredicate;
+    }
+
+    /**
+     * Get the cache for the given schema.
+     * @param schemaName the schema name.
+     * @return the commit metadata cache for that schema.
+     */
+    public static CommitMetadataCache getInstance(String schemaName) {
+        return CACHE_MAP.computeIfAbsent(schemaName, schema -> new CommitMetadataCache(DEFAULT_MAXIMUM_ENTRY_COUNT,
+                commitIdList -> new CommitDAOImpl(schema).findCommitMetadataByIdList(commitIdList),
+                thread -> DatabaseManager.getInstance().isTransactionInProgress(thread)));
+    }
+
+    /**
+     * Discard every cache. We do this when we shut down the database.
+     */
+    public static void resetAll() {
+        for (Map.Entry<String, CommitMetadataCache> entry : CACHE_MAP.entrySet()) {
+            LOGGER.info("Schema: [{}] {}", entry.getKey(), entry.getValue().getStatistics());
+            entry.getValue().clear();
+        }
+    }
+
+    /**
+     * Forget the commits changed by a thread whose transaction was rolled back.
+     * @param thread the thread whose transaction was rolled back.
+     */
+    public static void discardChangesForAll(Thread thread) {
+        for (CommitMetadataCache cache : CACHE_MAP.values()) {
+            cache.discardChanges(thread);
+        }
+    }
+
+    /**
+     * Get the metadata for a single commit.
+     * @param commitId the commit id.
+     * @return the commit metadata, or null if there is no such commit.
+     */
+    public CommitMetadata getCommitMetadata(Integer commitId) {
+        List<Integer> commitIdList = new ArrayList<>(1);
+        commitIdList.add(commitId);
+        return getCommitMetadataMap(commitIdList).get(commitId);
+    }
+
+    /**
+     * Get the metadata for a collection of commits. The commits that are not in the cache are read with one query.
+     * @param commitIds the commit ids. Duplicates are fine.
+     * @return a map of commit id to commit metadata. Commits that do not exist are left out of the map.
+     */
+    public Map<Integer, CommitMetadata> getCommitMetadataMap(Collection<Integer> commitIds) {
+        Map<Integer, CommitMetadata> commitMetadataMap = new HashMap<>();
+        Set<Integer> missingCommitIdSet = new TreeSet<>();
+        long loadGeneration;
+        synchronized (cacheMap) {
+            for (Integer commitId : commitIds) {
+                CommitMetadata commitMetadata = cacheMap.get(commitId);
+                if (commitMetadata != null) {
+                    commitMetadataMap.put(commitId, commitMetadata);
+                } else {
+                    missingCommitIdSet.add(commitId);
+                }
+            }
+            loadGeneration = changeGeneration;
+            if (!missingCommitIdSet.isEmpty()) {
+                loadsInProgressCount++;
+            }
+        }
+        hitCount.addAndGet(commitMetadataMap.size());
+        missCount.addAndGet(missingCommitIdSet.size());
+        if (!missingCommitIdSet.isEmpty()) {
+            List<CommitMetadata> fetchedList = null;
+            try {
+                fetchedList = loader.apply(new ArrayList<>(missingCommitIdSet));
+            } finally {
+                synchronized (cacheMap) {
+                    if (fetchedList != null) {
+                        for (CommitMetadata commitMetadata : fetchedList) {
+                            commitMetadataMap.put(commitMetadata.getId(), commitMetadata);
+                            if (isCacheable(commitMetadata.getId()) && !changedSince(commitMetadata.getId(), loadGeneration)) {
+                                cacheMap.put(commitMetadata.getId(), commitMetadata);
+                            }
+                        }
+                        evictEldestEntries();
+                    }
+                    loadsInProgressCount--;
+                    if (loadsInProgressCount == 0) {
+                        changeGenerationMap.clear();
+                    }
+                }
+            }
+        }
+        return commitMetadataMap;
+    }
+
+    /**
+     * Called after a commit's message has been changed.
+     * @param commitId the commit id.
+     */
+    public void commitMessageChanged(Integer commitId) {
+        Thread thread = Thread.currentThread();
+        boolean inTransactionFlag = transactionInProgress.test(thread);
+        synchronized (cacheMap) {
+            cacheMap.remove(commitId);
+            changeGeneration++;
+            if (loadsInProgressCount > 0) {
+                changeGenerationMap.put(commitId, changeGeneration);
+            }
+            if (inTransactionFlag) {
+                pendingChangeMap.put(commitId, thread);
+            }
+        }
+    }
+
+    /**
+     * Discard everything in the cache.
+     */
+    public void clear() {
+        synchronized (cacheMap) {
+            cacheMap.clear();
+            pendingChangeMap.clear();
+        }
+    }
+
+    void discardChanges(Thread thread) {
+        synchronized (cacheMap) {
+            Iterator<Map.Entry<Integer, Thread>> it = pendingChangeMap.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<Integer, Thread> entry = it.next();
+                if (entry.getValue() == thread) {
+                    cacheMap.remove(entry.getKey());
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the number of commits in the cache.
+     * @return the number of commits in the cache.
+     */
+    public int getEntryCount() {
+        synchronized (cacheMap) {
+            return cacheMap.size();
+        }
+    }
+
+    /**
+     * Get the number of commits found in the cache.
+     * @return the number of cache hits.
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Get the number of commits that we had to read from the database.
+     * @return the number of cache misses.
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Get the number of entries evicted to make room for newer entries.
+     * @return the number of evictions.
+     */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * Get a one line summary of the cache statistics, suitable for logging.
+     * @return a summary of the cache statistics.
+     */
+    public String getStatistics() {
+        return String.format("Commit metadata cache entries: [%d] of [%d], hits: [%d], misses: [%d], evictions: [%d]", getEntryCount(), maximumEntryCount,
+                getHitCount(), getMissCount(), getEvictionCount());
+    }
+
+    /**
+     * A commit whose message was changed in a transaction that is still open may be read differently by different threads, so we leave it out of the
+     * cache until that transaction is over. Must be called while holding the cacheMap lock.
+     * @param commitId the commit id.
+     * @return true if the commit may be cached.
+     */
+    private boolean isCacheable(Integer commitId) {
+        Thread changingThread = pendingChangeMap.get(commitId);
+        if (changingThread == null) {
+            return true;
+        }
+        if (!transactionInProgress.test(changingThread)) {
+            pendingChangeMap.remove(commitId);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Did the commit's message change after a read that started at the given generation? Must be called while holding the cacheMap lock.
+     * @param commitId the commit id.
+     * @param loadGeneration the change generation when the read started.
+     * @return true if the read may have seen an old commit message.
+     */
+    private boolean changedSince(Integer commitId, long loadGeneration) {
+        Long commitGeneration = changeGenerationMap.get(commitId);
+        return commitGeneration != null && commitGeneration > loadGeneration;
+    }
+
+    private void evictEldestEntries() {
+        Iterator<Map.Entry<Integer, CommitMetadata>> it = cacheMap.entrySet().iterator();
+        while (cacheMap.size() > maximumEntryCount && it.hasNext()) {
+            it.next();
+            it.remove();
+            evictionCount.incrementAndGet();
+        }
+    }
+}
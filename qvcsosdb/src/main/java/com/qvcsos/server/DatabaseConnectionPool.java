@@ -0,0 +1,370 @@
+/*
+ * Copyright 2021-2023 Jim Voris.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qvcsos.server;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A bounded pool of database connections. Connections are borrowed for the duration of a single client request (or client transaction), and returned to the
+ * pool when that work is done. Idle connections are validated before they are handed out, and the pool keeps some simple statistics that we can use to tune
+ * its size.
+ *
+ * @author Jim Voris
+ */
+public final class DatabaseConnectionPool {
+
+    /**
+     * Create our logger object.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(DatabaseConnectionPool.class);
+
+    private final ConnectionFactory connectionFactory;
+    private final int maximumPoolSize;
+    private final long borrowTimeoutMillis;
+    private final int validationTimeoutSeconds;
+
+    private final ReentrantLock poolLock = new ReentrantLock();
+    private final Condition connectionAvailable = poolLock.newCondition();
+    /**
+     * The idle connections. We use the most recently returned connection first so that rarely used connections can age out on the postgres side.
+     */
+    private final Deque<Connection> idleConnections = new ArrayDeque<>();
+    /**
+     * The number of connections that we have created and not yet closed (idle + active).
+     */
+    private int totalConnectionCount;
+    private boolean shutdownFlag;
+
+    // Statistics.
+    private final AtomicLong borrowCount = new AtomicLong(0L);
+    private final AtomicLong borrowTimeoutCount = new AtomicLong(0L);
+    private final AtomicLong createdConnectionCount = new AtomicLong(0L);
+    private final AtomicLong discardedConnectionCount = new AtomicLong(0L);
+    private final AtomicLong totalWaitNanos = new AtomicLong(0L);
+    private final AtomicLong maximumWaitNanos = new AtomicLong(0L);
+
+    /**
+     * The means by which the pool creates a new physical connection.
+     */
+    interface ConnectionFactory {
+        /**
+         * Create a new database connection.
+         * @return a new database connection.
+         * @throws SQLException if we cannot create the connection.
+         */
+        Connection createConnection() throws SQLException;
+    }
+
+    /**
+     * Create a connection pool.
+     *
+     * @param factory the factory used to create new physical connections.
+     * @param maxPoolSize the maximum number of connections (idle + active) that the pool will create.
+     * @param borrowTimeout the number of milliseconds a caller will wait for a connection before we give up.
+     * @param validationTimeout the number of seconds we allow for validating an idle connection before we hand it out.
+     */
+    DatabaseConnectionPool(ConnectionFactory factory, int maxPoolSize, long borrowTimeout, int validationTimeout) {
+        if (maxPoolSize < 1) {
+            throw new IllegalArgumentException("Connection pool size must be at least 1.");
+        }
+        this.connectionFactory = factory;
+        this.maximumPoolSize = maxPoolSize;
+        this.borrowTimeoutMillis = borrowTimeout;
+        this.validationTimeoutSeconds = validationTimeout;
+    }
+
+    /**
+     * Borrow a connection from the pool. If there are no idle connections, and the pool is already at its maximum size, the caller will block until a connection
+     * is returned, or until the borrow timeout expires.
+     *
+     * @return a validated connection with auto-commit enabled.
+     * @throws SQLException if we time out waiting for a connection, or if we cannot create a new connection.
+     */
+    public Connection borrowConnection() throws SQLException {
+        long startTime = System.nanoTime();
+        long remainingNanos = TimeUnit.MILLISECONDS.toNanos(borrowTimeoutMillis);
+        Connection connection = null;
+        while (connection == null) {
+            Connection idleConnection = null;
+            boolean createFlag = false;
+            poolLock.lock();
+            try {
+                while (idleConnections.isEmpty() && totalConnectionCount >= maximumPoolSize && !shutdownFlag) {
+                    if (remainingNanos <= 0L) {
+                        borrowTimeoutCount.incrementAndGet();
+                        throw new SQLException("Timed out waiting for a database connection. " + getStatistics());
+                    }
+                    try {
+                        remainingNanos = connectionAvailable.awaitNanos(remainingNanos);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLException("Interrupted while waiting for a database connection.", e);
+                    }
+                }
+                if (shutdownFlag) {
+                    throw new SQLException("Database connection pool is shut down.");
+                }
+                if (!idleConnections.isEmpty()) {
+                    idleConnection = idleConnections.pollFirst();
+                } else {
+                    // Reserve a slot for the connection we are about to create.
+                    totalConnectionCount++;
+                    createFlag = true;
+                }
+            } finally {
+                poolLock.unlock();
+            }
+
+            // Do the (possibly slow) validation or creation outside of the lock.
+            if (createFlag) {
+                connection = createConnection();
+            } else if (isValid(idleConnection)) {
+                connection = idleConnection;
+            } else {
+                discardConnection(idleConnection);
+            }
+        }
+        recordWaitTime(System.nanoTime() - startTime);
+        borrowCount.incrementAndGet();
+        return connection;
+    }
+
+    /**
+     * Return a connection to the pool. Any uncommitted work is rolled back, and auto-commit is re-enabled so the next borrower sees a clean connection.
+     *
+     * @param connection the connection to return.
+     */
+    public void returnConnection(Connection connection) {
+        if (connection == null) {
+            return;
+        }
+        boolean reusableFlag;
+        try {
+            reusableFlag = !connection.isClosed();
+            if (reusableFlag && !connection.getAutoCommit()) {
+                LOGGER.warn("Returning a database connection with auto-commit disabled. Rolling back any uncommitted work.");
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            LOGGER.warn("Failed to reset database connection; discarding it: [{}]", e.getLocalizedMessage());
+            reusableFlag = false;
+        }
+        if (!reusableFlag) {
+            discardConnection(connection);
+            return;
+        }
+        boolean closeFlag = false;
+        poolLock.lock();
+        try {
+            if (shutdownFlag) {
+                totalConnectionCount--;
+                closeFlag = true;
+            } else {
+                idleConnections.addFirst(connection);
+            }
+            connectionAvailable.signal();
+        } finally {
+            poolLock.unlock();
+        }
+        if (closeFlag) {
+            closeQuietly(connection);
+        }
+    }
+
+    /**
+     * Throw away a connection that is broken, or that we no longer trust. This frees a slot in the pool.
+     *
+     * @param connection the connection to discard.
+     */
+    public void discardConnection(Connection connection) {
+        poolLock.lock();
+        try {
+            totalConnectionCount--;
+            connectionAvailable.signal();
+        } finally {
+            poolLock.unlock();
+        }
+        discardedConnectionCount.incrementAndGet();
+        closeQuietly(connection);
+    }
+
+    /**
+     * Close all idle connections, and refuse any further borrows. Connections that are still on loan are closed as they are returned.
+     */
+    public void shutdown() {
+        Deque<Connection> connectionsToClose;
+        poolLock.lock();
+        try {
+            shutdownFlag = true;
+            connectionsToClose = new ArrayDeque<>(idleConnections);
+            totalConnectionCount -= idleConnections.size();
+            idleConnections.clear();
+            connectionAvailable.signalAll();
+        } finally {
+            poolLock.unlock();
+        }
+        for (Connection connection : connectionsToClose) {
+            closeQuietly(connection);
+        }
+        LOGGER.info("Database connection pool shut down. {}", getStatistics());
+    }
+
+    /**
+     * Get the maximum number of connections this pool will create.
+     * @return the maximum pool size.
+     */
+    public int getMaximumPoolSize() {
+        return maximumPoolSize;
+    }
+
+    /**
+     * Get the number of connections currently on loan.
+     * @return the number of active connections.
+     */
+    public int getActiveCount() {
+        poolLock.lock();
+        try {
+            return totalConnectionCount - idleConnections.size();
+        } finally {
+            poolLock.unlock();
+        }
+    }
+
+    /**
+     * Get the number of idle connections sitting in the pool.
+     * @return the number of idle connections.
+     */
+    public int getIdleCount() {
+        poolLock.lock();
+        try {
+            return idleConnections.size();
+        } finally {
+            poolLock.unlock();
+        }
+    }
+
+    /**
+     * Get the number of successful borrows.
+     * @return the number of successful borrows.
+     */
+    public long getBorrowCount() {
+        return borrowCount.get();
+    }
+
+    /**
+     * Get the number of borrows that timed out waiting for a connection.
+     * @return the number of borrow timeouts.
+     */
+    public long getBorrowTimeoutCount() {
+        return borrowTimeoutCount.get();
+    }
+
+    /**
+     * Get the number of physical connections this pool has created.
+     * @return the number of physical connections created.
+     */
+    public long getCreatedConnectionCount() {
+        return createdConnectionCount.get();
+    }
+
+    /**
+     * Get the number of connections that were discarded because they failed validation or could not be reset.
+     * @return the number of discarded connections.
+     */
+    public long getDiscardedConnectionCount() {
+        return discardedConnectionCount.get();
+    }
+
+    /**
+     * Get the total time callers have spent waiting to borrow a connection.
+     * @return the total borrow wait time in milliseconds.
+     */
+    public long getTotalWaitTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.get());
+    }
+
+    /**
+     * Get the longest time any single caller has waited to borrow a connection.
+     * @return the maximum borrow wait time in milliseconds.
+     */
+    public long getMaximumWaitTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maximumWaitNanos.get());
+    }
+
+    /**
+     * Get a one line summary of the pool statistics, suitable for logging.
+     * @return a summary of the pool statistics.
+     */
+    public String getStatistics() {
+        return String.format("Pool size: [%d], active: [%d], idle: [%d], borrows: [%d], timeouts: [%d], created: [%d], discarded: [%d], total wait: [%d] ms,"
+                + " max wait: [%d] ms", getMaximumPoolSize(), getActiveCount(), getIdleCount(), getBorrowCount(), getBorrowTimeoutCount(),
+                getCreatedConnectionCount(), getDiscardedConnectionCount(), getTotalWaitTimeMillis(), getMaximumWaitTimeMillis());
+    }
+
+    private Connection createConnection() throws SQLException {
+        try {
+            Connection connection = connectionFactory.createConnection();
+            connection.setAutoCommit(true);
+            createdConnectionCount.incrementAndGet();
+            LOGGER.info("Thread [{}]: created database connection. Active: [{}]", Thread.currentThread().getName(), getActiveCount());
+            return connection;
+        } catch (SQLException | RuntimeException e) {
+            // Give back the slot we reserved.
+            poolLock.lock();
+            try {
+                totalConnectionCount--;
+                connectionAvailable.signal();
+            } finally {
+                poolLock.unlock();
+            }
+            throw e;
+        }
+    }
+
+    private boolean isValid(Connection connection) {
+        boolean validFlag;
+        try {
+            validFlag = connection.isValid(validationTimeoutSeconds);
+        } catch (SQLException e) {
+            LOGGER.warn("Database connection validation failed: [{}]", e.getLocalizedMessage());
+            validFlag = false;
+        }
+        return validFlag;
+    }
+
+    private void recordWaitTime(long waitNanos) {
+        totalWaitNanos.addAndGet(waitNanos);
+        maximumWaitNanos.accumulateAndGet(waitNanos, Math::max);
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            LOGGER.info("Exception closing database connection: [{}]", e.getLocalizedMessage());
+        }
+    }
+}
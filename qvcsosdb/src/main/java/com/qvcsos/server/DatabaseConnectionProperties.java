@@ -42,12 +42,22 @@ public final class DatabaseConnectionProperties extends LocalPropertiesBaseClass
     private static final String CONNECTION_USER_KEY = "USER";
     private static final String CONNECTION_PASSWORD_KEY = "PASSWORD";
     private static final String SCHEMA_KEY = "SCHEMA";
+    private static final String POOL_MAXIMUM_SIZE_KEY = "POOL_MAXIMUM_SIZE";
+    private static final String POOL_BORROW_TIMEOUT_KEY = "POOL_BORROW_TIMEOUT_MILLISECONDS";
+    private static final String POOL_VALIDATION_TIMEOUT_KEY = "POOL_VALIDATION_TIMEOUT_SECONDS";
 
     private static final String DEFAULT_CONNECTION_URL = "jdbc:postgresql://localhost:5432/qvcsos410test";
     private static final String DEFAULT_CONNECTION_USER = "qvcsos410test";
     private static final String DEFAULT_CONNECTION_PASSWORD = "qvcsos410testPG$Admin";
     private static final String DEFAULT_CONNECTION_SCHEMA = "qvcsos410test";
 
+    /** The default maximum number of pooled database connections. */
+    static final int DEFAULT_POOL_MAXIMUM_SIZE = 20;
+    /** The default number of milliseconds to wait for a pooled connection. */
+    static final int DEFAULT_POOL_BORROW_TIMEOUT = 30000;
+    /** The default number of seconds allowed to validate an idle pooled connection. */
+    static final int DEFAULT_POOL_VALIDATION_TIMEOUT = 5;
+
     /**
      * Get the Database connection properties singleton.
      * @return the database connection properties singleton.
@@ -81,6 +91,9 @@ public final class DatabaseConnectionProperties extends LocalPropertiesBaseClass
         defaultProperties.put(CONNECTION_USER_KEY, DEFAULT_CONNECTION_USER);
         defaultProperties.put(CONNECTION_PASSWORD_KEY, DEFAULT_CONNECTION_PASSWORD);
         defaultProperties.put(SCHEMA_KEY, DEFAULT_CONNECTION_SCHEMA);
+        defaultProperties.put(POOL_MAXIMUM_SIZE_KEY, Integer.toString(DEFAULT_POOL_MAXIMUM_SIZE));
+        defaultProperties.put(POOL_BORROW_TIMEOUT_KEY, Integer.toString(DEFAULT_POOL_BORROW_TIMEOUT));
+        defaultProperties.put(POOL_VALIDATION_TIMEOUT_KEY, Integer.toString(DEFAULT_POOL_VALIDATION_TIMEOUT));
 
         setActualProperties(defaultProperties);
         FileInputStream inStream = null;
@@ -134,6 +147,30 @@ public final class DatabaseConnectionProperties extends LocalPropertiesBaseClass
         return getStringValue(SCHEMA_KEY);
     }
 
+    /**
+     * Get the maximum number of pooled database connections.
+     * @return the maximum number of pooled database connections.
+     */
+    int getPoolMaximumSize() {
+        return getIntegerValue(POOL_MAXIMUM_SIZE_KEY, DEFAULT_POOL_MAXIMUM_SIZE);
+    }
+
+    /**
+     * Get the number of milliseconds a thread will wait for a pooled database connection.
+     * @return the number of milliseconds a thread will wait for a pooled database connection.
+     */
+    int getPoolBorrowTimeout() {
+        return getIntegerValue(POOL_BORROW_TIMEOUT_KEY, DEFAULT_POOL_BORROW_TIMEOUT);
+    }
+
+    /**
+     * Get the number of seconds allowed to validate an idle pooled database connection.
+     * @return the number of seconds allowed to validate an idle pooled database connection.
+     */
+    int getPoolValidationTimeout() {
+        return getIntegerValue(POOL_VALIDATION_TIMEOUT_KEY, DEFAULT_POOL_VALIDATION_TIMEOUT);
+    }
+
     /**
      * Save the property file to disk.
      */
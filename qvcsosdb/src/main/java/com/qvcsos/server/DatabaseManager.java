@@ -18,6 +18,8 @@ package com.qvcsos.server;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -42,18 +44,25 @@ public final class DatabaseManager implements DatabaseManagerInterface {
      */
     private Connection controlConnection = null;
     /**
-     * Thread local storage for database connections
+     * The pool of connections that we lease out to worker threads.
      */
-    private final ThreadLocal<Connection> threadLocalConnection = new ThreadLocal<>();
+    private volatile DatabaseConnectionPool connectionPool = null;
+    /**
+     * The connections currently leased to threads, keyed by the leasing thread.
+     */
+    private final Map<Thread, Connection> leasedConnectionMap = new ConcurrentHashMap<>();
     /**
      * Flag we use to indicate whether we are initialized
      */
-    private boolean initializedFlag;
+    private volatile boolean initializedFlag;
 
     private String databaseUrl;
     private String username;
     private String password;
     private String schemaName;
+    private int maximumPoolSize = DatabaseConnectionProperties.DEFAULT_POOL_MAXIMUM_SIZE;
+    private long poolBorrowTimeout = DatabaseConnectionProperties.DEFAULT_POOL_BORROW_TIMEOUT;
+    private int poolValidationTimeout = DatabaseConnectionProperties.DEFAULT_POOL_VALIDATION_TIMEOUT;
 
     /**
      * Private constructor, so no one else can make a PostgresDatabaseManager
@@ -98,7 +107,9 @@ public final class DatabaseManager implements DatabaseManagerInterface {
     @Override
     public String getSchemaName() {
         // Guarantee that we have initialized the schema name.
-        initializeDatabase();
+        if (!isInitializedFlag()) {
+            initializeDatabase();
+        }
         return this.schemaName;
     }
 
@@ -110,30 +121,59 @@ public final class DatabaseManager implements DatabaseManagerInterface {
         this.schemaName = name;
     }
 
+    /**
+     * Get the connection pool. We expose this so the pool statistics can be reported.
+     *
+     * @return the connection pool, or null if the database has not been initialized.
+     */
+    public DatabaseConnectionPool getConnectionPool() {
+        return connectionPool;
+    }
+
     @Override
-    public synchronized void closeConnection() throws SQLException {
-        Connection thisThreadsDbConnection = threadLocalConnection.get();
+    public void closeConnection() throws SQLException {
+        Connection thisThreadsDbConnection = leasedConnectionMap.remove(Thread.currentThread());
         if (thisThreadsDbConnection != null) {
-            thisThreadsDbConnection.close();
-            threadLocalConnection.set(null);
-            LOGGER.info("Thread [{}]: closed database connection.", Thread.currentThread().getName());
+            // The pool rolls back anything left uncommitted.
+            returnToPool(Thread.currentThread(), thisThreadsDbConnection);
+            LOGGER.debug("Thread [{}]: returned database connection.", Thread.currentThread().getName());
         }
     }
 
     @Override
-    public synchronized Connection getConnection() throws SQLException {
-        Connection connection;
+    public void releaseConnection() throws SQLException {
+        Thread currentThread = Thread.currentThread();
+        Connection thisThreadsDbConnection = leasedConnectionMap.get(currentThread);
+        if (thisThreadsDbConnection != null) {
+            if (!thisThreadsDbConnection.isClosed() && !thisThreadsDbConnection.getAutoCommit()) {
+                // There is a transaction in progress. Keep the lease until the transaction completes.
+                LOGGER.trace("Thread [{}]: transaction in progress; keep database connection.", currentThread.getName());
+            } else {
+                leasedConnectionMap.remove(currentThread);
+                returnToPool(currentThread, thisThreadsDbConnection);
+                LOGGER.trace("Thread [{}]: released database connection.", currentThread.getName());
+            }
+        }
+    }
 
-        // Make sure the database is initialized.
-        initializeDatabase();
-        connection = threadLocalConnection.get();
+    @Override
+    public Connection getConnection() throws SQLException {
+        Thread currentThread = Thread.currentThread();
+        Connection connection = leasedConnectionMap.get(currentThread);
         if (connection == null) {
-            connection = DriverManager.getConnection(databaseUrl, username, password);
-            connection.setAutoCommit(true);
-            threadLocalConnection.set(connection);
-            LOGGER.info("Thread [{}]: got database connection.", Thread.currentThread().getName());
+            // Make sure the database is initialized.
+            if (!isInitializedFlag()) {
+                initializeDatabase();
+            }
+            DatabaseConnectionPool pool = getConnectionPool();
+            if (pool.getIdleCount() == 0 && pool.getActiveCount() >= pool.getMaximumPoolSize()) {
+                reclaimAbandonedConnections();
+            }
+            connection = pool.borrowConnection();
+            leasedConnectionMap.put(currentThread, connection);
+            LOGGER.trace("Thread [{}]: leased database connection.", currentThread.getName());
         } else {
-            LOGGER.trace("Thread [{}]: reuse thread's database connection.", Thread.currentThread().getName());
+            LOGGER.trace("Thread [{}]: reuse thread's database connection.", currentThread.getName());
         }
         return connection;
     }
@@ -144,6 +184,7 @@ public final class DatabaseManager implements DatabaseManagerInterface {
             try {
                 initializeConnectionProperties();
                 controlConnection = DriverManager.getConnection(databaseUrl, username, password);
+                createConnectionPool();
                 setInitializedFlag(true);
                 LOGGER.info("Connected to Postgres!");
             } catch (SQLException e) {
@@ -157,6 +198,7 @@ public final class DatabaseManager implements DatabaseManagerInterface {
         try {
             initializeMigrationConnectionProperties();
             controlConnection = DriverManager.getConnection(databaseUrl, username, password);
+            createConnectionPool();
             setInitializedFlag(true);
             LOGGER.info("Connected to Postgres!");
         } catch (SQLException e) {
@@ -171,6 +213,7 @@ public final class DatabaseManager implements DatabaseManagerInterface {
             try {
                 // Close any connection on the current thread...
                 closeConnection();
+                shutdownConnectionPool();
                 // Close the 'control' connection.
                 controlConnection.close();
                 controlConnection = null;
@@ -178,15 +221,103 @@ public final class DatabaseManager implements DatabaseManagerInterface {
                 LOGGER.info(e.getLocalizedMessage(), e);
             }
         }
+        // The database may change before we connect again (the unit tests reset it), so start over.
+        DirectoryLocationIndex.resetAll();
+        BranchTopologyCache.resetAll();
+        CommitMetadataCache.resetAll();
         setInitializedFlag(false);
     }
 
+    private void createConnectionPool() {
+        shutdownConnectionPool();
+        final String url = databaseUrl;
+        final String user = username;
+        final String pword = password;
+        connectionPool = new DatabaseConnectionPool(() -> DriverManager.getConnection(url, user, pword), maximumPoolSize, poolBorrowTimeout,
+                poolValidationTimeout);
+        LOGGER.info("Created database connection pool with maximum size: [{}]", maximumPoolSize);
+    }
+
+    private void shutdownConnectionPool() {
+        if (connectionPool != null) {
+            // Anything still on loan belongs to the old pool, so close it here.
+            for (Connection connection : leasedConnectionMap.values()) {
+                try {
+                    connection.close();
+                } catch (SQLException e) {
+                    LOGGER.info(e.getLocalizedMessage(), e);
+                }
+            }
+            leasedConnectionMap.clear();
+            connectionPool.shutdown();
+            connectionPool = null;
+        }
+    }
+
+    private void returnToPool(Thread thread, Connection connection) {
+        if (isTransactionOpen(connection)) {
+            // The pool will roll this transaction back, so our caches must forget the changes it made.
+            DirectoryLocationIndex.discardChangesForAll(thread);
+            BranchTopologyCache.discardChangesForAll(thread);
+            CommitMetadataCache.discardChangesForAll(thread);
+        } else {
+            // Restoring auto-commit committed this thread's transaction, so everyone may now see its directory location changes.
+            DirectoryLocationIndex.publishChangesForAll(thread);
+        }
+        DatabaseConnectionPool pool = getConnectionPool();
+        if (pool != null) {
+            pool.returnConnection(connection);
+        } else {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                LOGGER.info(e.getLocalizedMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Does the given thread have a transaction in progress?
+     *
+     * @param thread the thread.
+     * @return true if the thread holds a database connection with auto-commit disabled.
+     */
+    public boolean isTransactionInProgress(Thread thread) {
+        return isTransactionOpen(leasedConnectionMap.get(thread));
+    }
+
+    private static boolean isTransactionOpen(Connection connection) {
+        boolean retFlag = false;
+        if (connection != null) {
+            try {
+                retFlag = !connection.isClosed() && !connection.getAutoCommit();
+            } catch (SQLException e) {
+                // Assume the worst.
+                retFlag = true;
+            }
+        }
+        return retFlag;
+    }
+
+    /**
+     * Return the connections leased by threads that have exited without releasing them. This can only happen for threads that use the database outside of the
+     * normal request cycle.
+     */
+    private void reclaimAbandonedConnections() {
+        for (Map.Entry<Thread, Connection> entry : leasedConnectionMap.entrySet()) {
+            if (!entry.getKey().isAlive() && leasedConnectionMap.remove(entry.getKey(), entry.getValue())) {
+                LOGGER.warn("Reclaiming database connection abandoned by thread: [{}]", entry.getKey().getName());
+                returnToPool(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
     /**
      * Get the initializedFlag value;
      *
      * @return the initializedFlag
      */
-    private synchronized boolean isInitializedFlag() {
+    private boolean isInitializedFlag() {
         return initializedFlag;
     }
 
@@ -209,6 +340,9 @@ public final class DatabaseManager implements DatabaseManagerInterface {
         setUsername(connectionProperties.getUsername());
         setPassword(connectionProperties.getPassword());
         setSchemaName(connectionProperties.getSchema());
+        maximumPoolSize = connectionProperties.getPoolMaximumSize();
+        poolBorrowTimeout = connectionProperties.getPoolBorrowTimeout();
+        poolValidationTimeout = connectionProperties.getPoolValidationTimeout();
     }
 
     private void initializeMigrationConnectionProperties() {
@@ -26,14 +26,23 @@ import java.sql.SQLException;
 public interface DatabaseManagerInterface {
 
     /**
-     * Close the connection for the calling Thread.
+     * Close the connection for the calling Thread. Any uncommitted work is rolled back, and the connection is returned to the connection pool.
      *
      * @throws SQLException if we cannot close this thread's db connection.
      */
     void closeConnection() throws SQLException;
 
     /**
-     * Get a database connection.
+     * Release the calling Thread's connection back to the connection pool once the work for a client request is complete. If the connection has a
+     * transaction in progress (i.e. auto-commit is disabled), the calling Thread keeps the connection until the transaction completes.
+     *
+     * @throws SQLException if we cannot determine the state of this thread's db connection.
+     */
+    void releaseConnection() throws SQLException;
+
+    /**
+     * Get a database connection. The connection is leased from the connection pool, and remains leased to the calling Thread until it is released or
+     * closed.
      *
      * @return a database connection for the calling Thread.
      * @throws SQLException if we cannot get a db connection.
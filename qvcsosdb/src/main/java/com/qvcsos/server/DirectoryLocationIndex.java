@@ -0,0 +1,729 @@
+/*
+ * Copyright 2021-2023 Jim Voris.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qvcsos.server;
+
+import com.qvcsos.server.dataaccess.impl.DirectoryLocationDAOImpl;
+import com.qvcsos.server.datamodel.Branch;
+import com.qvcsos.server.datamodel.DirectoryLocation;
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An in-memory index of the DIRECTORY_LOCATION table, so that we can turn an appended path into a directory location, and a directory into its appended
+ * path, without a database round trip for each path segment. Each directory location is a node in a tree of path segments; a node's children are keyed
+ * by their (interned) segment name, and there is a map from directory location id to node. Since every branch shares the directory locations of its
+ * ancestor branches, a lookup for a given branch takes that branch's ancestry, and picks among the children with the same name in the same way that
+ * {@link SourceControlBehaviorManager#findChildDirectoryLocation} always has.
+ *
+ * <p>The index is loaded from the database on first use, and is then kept up to date by {@link DirectoryLocationDAOImpl} as it adds, moves, renames,
+ * deletes, and promotes directory locations. A change made outside of a transaction goes straight into the shared index. A change made inside a
+ * transaction goes into an overlay that belongs to the thread that made it: only that thread sees it until its transaction commits, when the overlay is
+ * published to the shared index. If the transaction is rolled back instead (see {@link DatabaseManager}), the overlay is simply dropped.</p>
+ *
+ * @author Jim Voris
+ */
+public final class DirectoryLocationIndex {
+    // Create our logger object
+    private static final Logger LOGGER = LoggerFactory.getLogger(DirectoryLocationIndex.class);
+
+    private static final Map<String, DirectoryLocationIndex> INDEX_MAP = new ConcurrentHashMap<>();
+
+    private final Supplier<List<DirectoryLocation>> loader;
+    private final Predicate<Thread> transactionInProgress;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<Integer, Node> nodeByIdMap = new HashMap<>();
+    private final Map<Integer, List<Node>> nodeListByDirectoryIdMap = new HashMap<>();
+    private final Map<String, String> segmentNameMap = new HashMap<>();
+
+    /** The directory locations changed inside a transaction that has not committed yet, keyed by the thread that changed them, then by id. */
+    private final Map<Thread, Map<Integer, DirectoryLocation>> overlayMap = new ConcurrentHashMap<>();
+    private boolean loadedFlag = false;
+
+    /**
+     * Create an index.
+     * @param loaderFunction reads all the directory locations, in id order.
+     * @param transactionInProgressPredicate tells whether a thread has a transaction in progress.
+     */
+    DirectoryLocationIndex(Supplier<List<DirectoryLocation>> loaderFunction, Predicate<Thread> transactionInProgressPredicate) {
+        this.loader = loaderFunction;
+        this.transactionInProgress = transactionInProgressPredicate;
+    }
+
+    /**
+     * Get the index for the given schema.
+     * @param schemaName the schema name.
+     * @return the directory location index for that schema.
+     */
+    public static DirectoryLocationIndex getInstance(String schemaName) {
+        return INDEX_MAP.computeIfAbsent(schemaName, schema -> new DirectoryLocationIndex(() -> new DirectoryLocationDAOImpl(schema).findAll(),
+                thread -> DatabaseManager.getInstance().isTransactionInProgress(thread)));
+    }
+
+    /**
+     * Discard every index, along with any changes still pending. We do this when we shut down the database.
+     */
+    public static void resetAll() {
+        for (DirectoryLocationIndex index : INDEX_MAP.values()) {
+            index.reset();
+        }
+    }
+
+    /**
+     * Discard the changes made by a thread whose transaction was rolled back.
+     * @param thread the thread whose transaction was rolled back.
+     */
+    public static void discardChangesForAll(Thread thread) {
+        for (DirectoryLocationIndex index : INDEX_MAP.values()) {
+            index.discardChanges(thread);
+        }
+    }
+
+    /**
+     * Publish the changes made by a thread whose transaction was committed, so that every thread sees them.
+     * @param thread the thread whose transaction was committed.
+     */
+    public static void publishChangesForAll(Thread thread) {
+        for (DirectoryLocationIndex index : INDEX_MAP.values()) {
+            index.publishChanges(thread);
+        }
+    }
+
+    /**
+     * Find a directory location by its id.
+     * @param directoryLocationId the directory location id.
+     * @return a copy of the directory location, or null if not found.
+     */
+    public DirectoryLocation findById(Integer directoryLocationId) {
+        Map<Integer, DirectoryLocation> overlay = getOverlay();
+        lockForRead();
+        try {
+            return toDirectoryLocation(overlay, directoryLocationId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Find a directory location of the given directory. If a directory has more than one location (e.g. it was renamed on a branch), this finds the
+     * oldest one.
+     * @param directoryId the directory id.
+     * @return a copy of the directory location, or null if not found.
+     */
+    public DirectoryLocation findByDirectoryId(Integer directoryId) {
+        Map<Integer, DirectoryLocation> overlay = getOverlay();
+        lockForRead();
+        try {
+            return toDirectoryLocation(overlay, findFirstId(overlay, directoryId));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Find the location of a directory on a given branch.
+     * @param branchId the branch id.
+     * @param directoryId the directory id.
+     * @return a copy of the directory location, or null if not found.
+     */
+    public DirectoryLocation findByBranchIdAndDirectoryId(Integer branchId, Integer directoryId) {
+        Map<Integer, DirectoryLocation> overlay = getOverlay();
+        lockForRead();
+        try {
+            List<Integer> idList = new ArrayList<>();
+            for (Node node : nodeListByDirectoryIdMap.getOrDefault(directoryId, List.of())) {
+                idList.add(node.id);
+            }
+            for (DirectoryLocation directoryLocation : overlay.values()) {
+                if (directoryLocation.getDirectoryId().equals(directoryId) && !idList.contains(directoryLocation.getId())) {
+                    idList.add(directoryLocation.getId());
+                }
+            }
+            Collections.sort(idList);
+            for (Integer id : idList) {
+                if (branchId.equals(getBranchId(overlay, id))) {
+                    return toDirectoryLocation(overlay, id);
+                }
+            }
+            return null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Find the child directory location given the parent directory location id.
+     * @param branchAncestryList the branch, followed by its ancestors.
+     * @param parentDirectoryLocationId the parent directory location id.
+     * @param directorySegmentName the directory segment name of the child directory.
+     * @return a copy of the child directory location, or null if it does not exist.
+     */
+    public DirectoryLocation findChildDirectoryLocation(List<Branch> branchAncestryList, Integer parentDirectoryLocationId, String directorySegmentName) {
+        Map<Integer, DirectoryLocation> overlay = getOverlay();
+        lockForRead();
+        try {
+            return toDirectoryLocation(overlay, findChildId(branchAncestryList, overlay, parentDirectoryLocationId, directorySegmentName));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Find the directory location for an appended path.
+     * @param branchAncestryList the branch, followed by its ancestors.
+     * @param appendedPath the appended path.
+     * @return a copy of the directory location, or null if not found.
+     */
+    public DirectoryLocation findByAppendedPath(List<Branch> branchAncestryList, String appendedPath) {
+        Map<Integer, DirectoryLocation> overlay = getOverlay();
+        lockForRead();
+        try {
+            Integer id = findFirstId(overlay, branchAncestryList.get(0).getRootDirectoryId());
+            if (appendedPath.length() > 0) {
+                for (String segment : appendedPath.split(File.separator)) {
+                    if (id == null) {
+                        break;
+                    }
+                    id = findChildId(branchAncestryList, overlay, id, segment);
+                }
+            }
+            return toDirectoryLocation(overlay, id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Build the appended path of a directory.
+     * @param directoryId the directory id.
+     * @return the appended path of the directory, or null if the directory has no location.
+     */
+    public String buildAppendedPath(Integer directoryId) {
+        Map<Integer, DirectoryLocation> overlay = getOverlay();
+        lockForRead();
+        try {
+            Integer id = findFirstId(overlay, directoryId);
+            if (id == null) {
+                return null;
+            }
+            Deque<String> segmentStack = new ArrayDeque<>();
+            segmentStack.push(getSegmentName(overlay, id));
+            Integer parentId = getParentId(overlay, id);
+            while (parentId != null) {
+                String parentSegmentName = getSegmentName(overlay, parentId);
+                if (parentSegmentName == null) {
+                    LOGGER.warn("Missing parent directory location: [{}] for directory location: [{}]", parentId, id);
+                    break;
+                }
+                segmentStack.push(parentSegmentName);
+                id = parentId;
+                parentId = getParentId(overlay, id);
+            }
+
+            // Pop the root directory segment...
+            segmentStack.pop();
+            return String.join(File.separator, segmentStack);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * A directory location was added.
+     * @param directoryLocationId the id of the new directory location.
+     * @param directoryLocation the new directory location.
+     */
+    public void inserted(Integer directoryLocationId, DirectoryLocation directoryLocation) {
+        DirectoryLocation copy = copyOf(directoryLocation);
+        copy.setId(directoryLocationId);
+        Thread thread = Thread.currentThread();
+        if (transactionInProgress.test(thread)) {
+            overlayMap.computeIfAbsent(thread, t -> new ConcurrentHashMap<>()).put(directoryLocationId, copy);
+        } else {
+            publishChanges(thread);
+            lock.writeLock().lock();
+            try {
+                // If we are not loaded, the load will read this from the database.
+                if (loadedFlag) {
+                    putNodes(List.of(copy));
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * A directory location was deleted.
+     * @param directoryLocationId the directory location id.
+     * @param commitId the commit id.
+     */
+    public void deleted(Integer directoryLocationId, Integer commitId) {
+        record(directoryLocationId, directoryLocation -> {
+            directoryLocation.setDeletedFlag(Boolean.TRUE);
+            directoryLocation.setCommitId(commitId);
+        });
+    }
+
+    /**
+     * A directory location was moved.
+     * @param directoryLocationId the directory location id.
+     * @param commitId the commit id.
+     * @param parentDirectoryLocationId the new parent directory location id.
+     */
+    public void moved(Integer directoryLocationId, Integer commitId, Integer parentDirectoryLocationId) {
+        record(directoryLocationId, directoryLocation -> {
+            directoryLocation.setParentDirectoryLocationId(parentDirectoryLocationId);
+            directoryLocation.setCommitId(commitId);
+        });
+    }
+
+    /**
+     * A directory location was renamed.
+     * @param directoryLocationId the directory location id.
+     * @param commitId the commit id.
+     * @param directorySegmentName the new directory segment name.
+     */
+    public void renamed(Integer directoryLocationId, Integer commitId, String directorySegmentName) {
+        record(directoryLocationId, directoryLocation -> {
+            directoryLocation.setDirectorySegmentName(directorySegmentName);
+            directoryLocation.setCommitId(commitId);
+        });
+    }
+
+    /**
+     * A directory location was promoted to its parent branch.
+     * @param directoryLocationId the directory location id.
+     * @param branchId the branch it now belongs to.
+     * @param commitId the commit id.
+     */
+    public void promoted(Integer directoryLocationId, Integer branchId, Integer commitId) {
+        record(directoryLocationId, directoryLocation -> {
+            directoryLocation.setBranchId(branchId);
+            directoryLocation.setCommitId(commitId);
+        });
+    }
+
+    /**
+     * Discard the index, so it is reloaded from the database on next use. Changes that are not yet committed are kept.
+     */
+    public void invalidate() {
+        lock.writeLock().lock();
+        try {
+            clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void reset() {
+        lock.writeLock().lock();
+        try {
+            clear();
+            overlayMap.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void discardChanges(Thread thread) {
+        Map<Integer, DirectoryLocation> overlay = overlayMap.remove(thread);
+        if (overlay != null) {
+            LOGGER.info("Discarding [{}] directory location changes after rollback on thread: [{}]", overlay.size(), thread.getName());
+        }
+    }
+
+    void publishChanges(Thread thread) {
+        Map<Integer, DirectoryLocation> overlay = overlayMap.remove(thread);
+        if (overlay != null && !overlay.isEmpty()) {
+            lock.writeLock().lock();
+            try {
+                // If we are not loaded, the load will read these from the database.
+                if (loadedFlag) {
+                    putNodes(overlay.values());
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    int getPendingChangeCount() {
+        int count = 0;
+        for (Map<Integer, DirectoryLocation> overlay : overlayMap.values()) {
+            count += overlay.size();
+        }
+        return count;
+    }
+
+    private void lockForRead() {
+        lock.readLock().lock();
+        if (!loadedFlag) {
+            lock.readLock().unlock();
+            lock.writeLock().lock();
+            try {
+                if (!loadedFlag) {
+                    load();
+                }
+                // Downgrade to the read lock.
+                lock.readLock().lock();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Get the current thread's uncommitted changes. If its transaction is over, they were committed when auto-commit was restored, so we publish them.
+     * @return the current thread's uncommitted changes, keyed by directory location id.
+     */
+    private Map<Integer, DirectoryLocation> getOverlay() {
+        Thread thread = Thread.currentThread();
+        Map<Integer, DirectoryLocation> overlay = overlayMap.get(thread);
+        if (overlay == null) {
+            return Collections.emptyMap();
+        }
+        if (!transactionInProgress.test(thread)) {
+            publishChanges(thread);
+            return Collections.emptyMap();
+        }
+        return overlay;
+    }
+
+    /**
+     * Record a change to an existing directory location. Inside a transaction, the change goes into the current thread's overlay; otherwise, it goes into
+     * the shared index.
+     * @param directoryLocationId the directory location id.
+     * @param update the change.
+     */
+    private void record(Integer directoryLocationId, Consumer<DirectoryLocation> update) {
+        Thread thread = Thread.currentThread();
+        if (transactionInProgress.test(thread)) {
+            DirectoryLocation directoryLocation = findById(directoryLocationId);
+            if (directoryLocation != null) {
+                update.accept(directoryLocation);
+                overlayMap.computeIfAbsent(thread, t -> new ConcurrentHashMap<>()).put(directoryLocationId, directoryLocation);
+            }
+        } else {
+            publishChanges(thread);
+            lock.writeLock().lock();
+            try {
+                // If we are not loaded, the load will read this change from the database.
+                if (loadedFlag) {
+                    DirectoryLocation directoryLocation = toDirectoryLocation(nodeByIdMap.get(directoryLocationId));
+                    if (directoryLocation != null) {
+                        update.accept(directoryLocation);
+                        putNodes(List.of(directoryLocation));
+                    }
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    private void load() {
+        long startTime = System.currentTimeMillis();
+        List<DirectoryLocation> directoryLocationList = loader.get();
+        for (DirectoryLocation directoryLocation : directoryLocationList) {
+            Node node = new Node(directoryLocation, intern(directoryLocation.getDirectorySegmentName()));
+            nodeByIdMap.put(node.id, node);
+            addSorted(nodeListByDirectoryIdMap.computeIfAbsent(node.directoryId, k -> new ArrayList<>()), node);
+        }
+        // Link the children once every node exists, since a moved directory can have a parent that is newer than it is.
+        for (Node node : nodeByIdMap.values()) {
+            attach(node);
+        }
+        loadedFlag = true;
+        LOGGER.info("Loaded [{}] directory locations in [{}] ms.", directoryLocationList.size(), System.currentTimeMillis() - startTime);
+    }
+
+    private void clear() {
+        nodeByIdMap.clear();
+        nodeListByDirectoryIdMap.clear();
+        segmentNameMap.clear();
+        loadedFlag = false;
+    }
+
+    private String intern(String segmentName) {
+        return segmentNameMap.computeIfAbsent(segmentName, name -> name);
+    }
+
+    /**
+     * Add or replace some nodes. Putting a directory location that the index already has must leave the index as it was.
+     * @param directoryLocationCollection the directory locations.
+     */
+    private void putNodes(Collection<DirectoryLocation> directoryLocationCollection) {
+        List<Node> nodeList = new ArrayList<>(directoryLocationCollection.size());
+        for (DirectoryLocation directoryLocation : directoryLocationCollection) {
+            Node node = nodeByIdMap.get(directoryLocation.getId());
+            if (node != null) {
+                detach(node);
+                nodeListByDirectoryIdMap.get(node.directoryId).remove(node);
+                node.assign(directoryLocation, intern(directoryLocation.getDirectorySegmentName()));
+            } else {
+                node = new Node(directoryLocation, intern(directoryLocation.getDirectorySegmentName()));
+                nodeByIdMap.put(node.id, node);
+            }
+            addSorted(nodeListByDirectoryIdMap.computeIfAbsent(node.directoryId, k -> new ArrayList<>()), node);
+            nodeList.add(node);
+        }
+        // Link them once they all exist, since a moved directory can have a parent that is newer than it is.
+        for (Node node : nodeList) {
+            attach(node);
+        }
+    }
+
+    private void attach(Node node) {
+        if (node.parentId != null) {
+            Node parent = nodeByIdMap.get(node.parentId);
+            if (parent != null) {
+                addSorted(parent.childMap.computeIfAbsent(node.segmentName, k -> new ArrayList<>(1)), node);
+            }
+        }
+    }
+
+    private void detach(Node node) {
+        if (node.parentId != null) {
+            Node parent = nodeByIdMap.get(node.parentId);
+            if (parent != null) {
+                List<Node> siblingList = parent.childMap.get(node.segmentName);
+                if (siblingList != null) {
+                    siblingList.remove(node);
+                    if (siblingList.isEmpty()) {
+                        parent.childMap.remove(node.segmentName);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void addSorted(List<Node> nodeList, Node node) {
+        int index = 0;
+        while (index < nodeList.size() && nodeList.get(index).id < node.id) {
+            index++;
+        }
+        nodeList.add(index, node);
+    }
+
+    /**
+     * Find the oldest location of a directory, as seen by a thread with the given uncommitted changes.
+     * @param overlay the uncommitted changes.
+     * @param directoryId the directory id.
+     * @return the id of the directory's oldest location; null if it has none.
+     */
+    private Integer findFirstId(Map<Integer, DirectoryLocation> overlay, Integer directoryId) {
+        Integer firstId = null;
+        List<Node> nodeList = nodeListByDirectoryIdMap.get(directoryId);
+        if (nodeList != null && !nodeList.isEmpty()) {
+            firstId = nodeList.get(0).id;
+        }
+        for (DirectoryLocation directoryLocation : overlay.values()) {
+            if (directoryLocation.getDirectoryId().equals(directoryId) && (firstId == null || directoryLocation.getId() < firstId)) {
+                firstId = directoryLocation.getId();
+            }
+        }
+        return firstId;
+    }
+
+    /**
+     * Find a child, as seen by a thread with the given uncommitted changes.
+     * @param branchAncestryList the branches to try.
+     * @param overlay the uncommitted changes.
+     * @param parentId the parent directory location id.
+     * @param segmentName the child's directory name.
+     * @return the child's directory location id; null if there is none on those branches.
+     */
+    private Integer findChildId(List<Branch> branchAncestryList, Map<Integer, DirectoryLocation> overlay, Integer parentId, String segmentName) {
+        Node parent = nodeByIdMap.get(parentId);
+        if (overlay.isEmpty()) {
+            Node child = null;
+            if (parent != null) {
+                child = findChild(branchAncestryList, parent, segmentName);
+            }
+            if (child == null) {
+                return null;
+            }
+            return child.id;
+        }
+        List<Integer> childIdList = new ArrayList<>();
+        if (parent != null) {
+            for (Node child : parent.childMap.getOrDefault(segmentName, List.of())) {
+                if (!overlay.containsKey(child.id)) {
+                    childIdList.add(child.id);
+                }
+            }
+        }
+        for (DirectoryLocation directoryLocation : overlay.values()) {
+            if (parentId.equals(directoryLocation.getParentDirectoryLocationId()) && segmentName.equals(directoryLocation.getDirectorySegmentName())) {
+                childIdList.add(directoryLocation.getId());
+            }
+        }
+        Collections.sort(childIdList);
+        for (int index = branchAncestryList.size() - 1; index >= 0; index--) {
+            Integer branchId = branchAncestryList.get(index).getId();
+            for (Integer childId : childIdList) {
+                if (branchId.equals(getBranchId(overlay, childId))) {
+                    return childId;
+                }
+            }
+        }
+        return null;
+    }
+
+    private Integer getBranchId(Map<Integer, DirectoryLocation> overlay, Integer id) {
+        DirectoryLocation directoryLocation = overlay.get(id);
+        if (directoryLocation != null) {
+            return directoryLocation.getBranchId();
+        }
+        Node node = nodeByIdMap.get(id);
+        if (node == null) {
+            return null;
+        }
+        return node.branchId;
+    }
+
+    private Integer getParentId(Map<Integer, DirectoryLocation> overlay, Integer id) {
+        DirectoryLocation directoryLocation = overlay.get(id);
+        if (directoryLocation != null) {
+            return directoryLocation.getParentDirectoryLocationId();
+        }
+        Node node = nodeByIdMap.get(id);
+        if (node == null) {
+            return null;
+        }
+        return node.parentId;
+    }
+
+    private String getSegmentName(Map<Integer, DirectoryLocation> overlay, Integer id) {
+        DirectoryLocation directoryLocation = overlay.get(id);
+        if (directoryLocation != null) {
+            return directoryLocation.getDirectorySegmentName();
+        }
+        Node node = nodeByIdMap.get(id);
+        if (node == null) {
+            return null;
+        }
+        return node.segmentName;
+    }
+
+    /**
+     * Find a child, trying the branches in the same order as {@link SourceControlBehaviorManager#findChildDirectoryLocation}: from the end of the
+     * ancestry list to its start.
+     * @param branchAncestryList the branches to try.
+     * @param parent the parent node.
+     * @param segmentName the child's directory name.
+     * @return the child; null if there is none on those branches.
+     */
+    private static Node findChild(List<Branch> branchAncestryList, Node parent, String segmentName) {
+        List<Node> childList = parent.childMap.get(segmentName);
+        if (childList != null) {
+            for (int index = branchAncestryList.size() - 1; index >= 0; index--) {
+                int branchId = branchAncestryList.get(index).getId();
+                for (Node child : childList) {
+                    if (child.branchId == branchId) {
+                        return child;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private DirectoryLocation toDirectoryLocation(Map<Integer, DirectoryLocation> overlay, Integer id) {
+        if (id == null) {
+            return null;
+        }
+        DirectoryLocation directoryLocation = overlay.get(id);
+        if (directoryLocation != null) {
+            return copyOf(directoryLocation);
+        }
+        return toDirectoryLocation(nodeByIdMap.get(id));
+    }
+
+    private static DirectoryLocation toDirectoryLocation(Node node) {
+        if (node == null) {
+            return null;
+        }
+        DirectoryLocation directoryLocation = new DirectoryLocation();
+        directoryLocation.setId(node.id);
+        directoryLocation.setDirectoryId(node.directoryId);
+        directoryLocation.setBranchId(node.branchId);
+        directoryLocation.setParentDirectoryLocationId(node.parentId);
+        directoryLocation.setCreatedForReason(node.createdForReason);
+        directoryLocation.setCommitId(node.commitId);
+        directoryLocation.setDirectorySegmentName(node.segmentName);
+        directoryLocation.setDeletedFlag(node.deletedFlag);
+        return directoryLocation;
+    }
+
+    private static DirectoryLocation copyOf(DirectoryLocation directoryLocation) {
+        DirectoryLocation copy = new DirectoryLocation();
+        copy.setId(directoryLocation.getId());
+        copy.setDirectoryId(directoryLocation.getDirectoryId());
+        copy.setBranchId(directoryLocation.getBranchId());
+        copy.setParentDirectoryLocationId(directoryLocation.getParentDirectoryLocationId());
+        copy.setCreatedForReason(directoryLocation.getCreatedForReason());
+        copy.setCommitId(directoryLocation.getCommitId());
+        copy.setDirectorySegmentName(directoryLocation.getDirectorySegmentName());
+        copy.setDeletedFlag(directoryLocation.getDeletedFlag());
+        return copy;
+    }
+
+    /**
+     * A directory location. All access is under the index's lock.
+     */
+    private static final class Node {
+        private final int id;
+        private int directoryId;
+        private int branchId;
+        private Integer parentId;
+        private Integer createdForReason;
+        private Integer commitId;
+        private String segmentName;
+        private boolean deletedFlag;
+        private final Map<String, List<Node>> childMap = new HashMap<>();
+
+        Node(DirectoryLocation directoryLocation, String internedSegmentName) {
+            this.id = directoryLocation.getId();
+            assign(directoryLocation, internedSegmentName);
+        }
+
+        void assign(DirectoryLocation directoryLocation, String internedSegmentName) {
+            this.directoryId = directoryLocation.getDirectoryId();
+            this.branchId = directoryLocation.getBranchId();
+            this.parentId = directoryLocation.getParentDirectoryLocationId();
+            this.createdForReason = directoryLocation.getCreatedForReason();
+            this.commitId = directoryLocation.getCommitId();
+            this.segmentName = internedSegmentName;
+            this.deletedFlag = Boolean.TRUE.equals(directoryLocation.getDeletedFlag());
+        }
+    }
+}
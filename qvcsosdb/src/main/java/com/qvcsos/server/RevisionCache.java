@@ -0,0 +1,174 @@
+/*
+ * Copyright 2021-2023 Jim Voris.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qvcsos.server;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded, least recently used cache of hydrated file revisions, keyed by file revision id. The bound is on the total number of bytes held by the
+ * cache, not on the number of entries. A hydrated revision never changes once it has been created, so entries never need to be invalidated; they only
+ * need to be evicted when we run out of room.
+ *
+ * <p>Callers must treat the cached buffers as read-only.</p>
+ *
+ * @author Jim Voris
+ */
+public final class RevisionCache {
+
+    private final long maximumCacheSize;
+    private final long maximumEntrySize;
+    private long currentCacheSize;
+
+    /**
+     * Access-ordered, so iteration starts with the least recently used entry.
+     */
+    private final LinkedHashMap<Integer, byte[]> cacheMap = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final AtomicLong hitCount = new AtomicLong(0L);
+    private final AtomicLong missCount = new AtomicLong(0L);
+    private final AtomicLong evictionCount = new AtomicLong(0L);
+
+    /**
+     * Create a revision cache.
+     *
+     * @param maxCacheSize the maximum number of bytes the cache will hold.
+     * @param maxEntrySize the largest revision that we are willing to cache. Larger revisions are not cached at all, so that one huge binary file cannot
+     * flush everything else out of the cache.
+     */
+    public RevisionCache(long maxCacheSize, long maxEntrySize) {
+        this.maximumCacheSize = maxCacheSize;
+        this.maximumEntrySize = Math.min(maxEntrySize, maxCacheSize);
+    }
+
+    /**
+     * Look up a hydrated revision.
+     *
+     * @param fileRevisionId the file revision id.
+     * @return the hydrated revision, or null if it is not in the cache.
+     */
+    public byte[] get(Integer fileRevisionId) {
+        byte[] revisionData;
+        synchronized (cacheMap) {
+            revisionData = cacheMap.get(fileRevisionId);
+        }
+        if (revisionData != null) {
+            hitCount.incrementAndGet();
+        } else {
+            missCount.incrementAndGet();
+        }
+        return revisionData;
+    }
+
+    /**
+     * Add a hydrated revision to the cache, evicting the least recently used entries as needed to make room.
+     *
+     * @param fileRevisionId the file revision id.
+     * @param revisionData the hydrated revision. The cache keeps a reference to this buffer, so the caller must not change it after this call.
+     */
+    public void put(Integer fileRevisionId, byte[] revisionData) {
+        if (revisionData == null || revisionData.length > maximumEntrySize) {
+            return;
+        }
+        synchronized (cacheMap) {
+            byte[] previous = cacheMap.put(fileRevisionId, revisionData);
+            if (previous != null) {
+                currentCacheSize -= previous.length;
+            }
+            currentCacheSize += revisionData.length;
+            Iterator<Map.Entry<Integer, byte[]>> it = cacheMap.entrySet().iterator();
+            while (currentCacheSize > maximumCacheSize && it.hasNext()) {
+                Map.Entry<Integer, byte[]> eldest = it.next();
+                currentCacheSize -= eldest.getValue().length;
+                it.remove();
+                evictionCount.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Discard everything in the cache.
+     */
+    public void clear() {
+        synchronized (cacheMap) {
+            cacheMap.clear();
+            currentCacheSize = 0L;
+        }
+    }
+
+    /**
+     * Get the number of revisions in the cache.
+     * @return the number of revisions in the cache.
+     */
+    public int getEntryCount() {
+        synchronized (cacheMap) {
+            return cacheMap.size();
+        }
+    }
+
+    /**
+     * Get the number of bytes currently held by the cache.
+     * @return the number of bytes currently held by the cache.
+     */
+    public long getCurrentCacheSize() {
+        synchronized (cacheMap) {
+            return currentCacheSize;
+        }
+    }
+
+    /**
+     * Get the maximum number of bytes the cache will hold.
+     * @return the maximum number of bytes the cache will hold.
+     */
+    public long getMaximumCacheSize() {
+        return maximumCacheSize;
+    }
+
+    /**
+     * Get the number of cache hits.
+     * @return the number of cache hits.
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Get the number of cache misses.
+     * @return the number of cache misses.
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Get the number of entries evicted to make room for newer entries.
+     * @return the number of evictions.
+     */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * Get a one line summary of the cache statistics, suitable for logging.
+     * @return a summary of the cache statistics.
+     */
+    public String getStatistics() {
+        return String.format("Revision cache entries: [%d], bytes: [%d] of [%d], hits: [%d], misses: [%d], evictions: [%d]", getEntryCount(),
+                getCurrentCacheSize(), getMaximumCacheSize(), getHitCount(), getMissCount(), getEvictionCount());
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2021-2023 Jim Voris.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qvcsos.server;
+
+import com.qumasoft.qvcslib.RevisionHeader;
+import com.qumasoft.qvcslib.RevisionHistoryFilter;
+import com.qumasoft.qvcslib.RevisionHistoryPage;
+import com.qvcsos.server.datamodel.CommitMetadata;
+import com.qvcsos.server.datamodel.FileRevision;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Build one page of a file's revision history from its ordered list of file revisions. The file revision rows are small (they do not include the
+ * revision data), so we find the cursor and apply the commit id filters to the rows, and only look up commit metadata and build revision headers for
+ * the revisions that can still make it onto the page.
+ *
+ * @author Jim Voris
+ */
+public final class RevisionHistoryPageBuilder {
+
+    /** The most revisions we put on a single page, whatever the client asks for. */
+    public static final int MAXIMUM_PAGE_SIZE = 500;
+
+    // Hide the default constructor.
+    private RevisionHistoryPageBuilder() {
+    }
+
+    /**
+     * Build a page of revision history.
+     *
+     * @param fileRevisionList the file's revisions, newest first. A revision's position in this list is its revision index.
+     * @param startAfterFileRevisionId the page starts with the revision that follows this one; null to start with the newest revision.
+     * @param requestedPageSize the maximum number of revisions to put on the page.
+     * @param filter the filter that revisions must pass; may be null.
+     * @param commitMetadataLoader looks up the metadata for a collection of commit ids.
+     * @return the page of revision history. If the cursor revision is not in the list, the page is empty.
+     */
+    public static RevisionHistoryPage buildPage(List<FileRevision> fileRevisionList, Integer startAfterFileRevisionId, int requestedPageSize,
+            RevisionHistoryFilter filter, Function<Collection<Integer>, Map<Integer, CommitMetadata>> commitMetadataLoader) {
+        int pageSize = Math.max(1, Math.min(requestedPageSize, MAXIMUM_PAGE_SIZE));
+        int revisionCount = fileRevisionList.size();
+        RevisionHistoryPage page = new RevisionHistoryPage();
+        page.setRevisionCount(revisionCount);
+
+        int index = 0;
+        if (startAfterFileRevisionId != null) {
+            index = revisionCount;
+            for (int i = 0; i < revisionCount; i++) {
+                if (fileRevisionList.get(i).getId().equals(startAfterFileRevisionId)) {
+                    index = i + 1;
+                    break;
+                }
+            }
+        }
+
+        int pageCount = 0;
+        while (index < revisionCount && pageCount < pageSize) {
+            // Collect no more candidates than there is room for, so the cursor never skips a revision that passes.
+            List<Integer> candidateIndexList = new ArrayList<>();
+            List<Integer> commitIdList = new ArrayList<>();
+            while (index < revisionCount && candidateIndexList.size() < pageSize - pageCount) {
+                FileRevision fileRevision = fileRevisionList.get(index);
+                if (filter == null || filter.passesCommitId(fileRevision.getCommitId())) {
+                    candidateIndexList.add(index);
+                    commitIdList.add(fileRevision.getCommitId());
+                }
+                index++;
+            }
+            if (commitIdList.isEmpty()) {
+                continue;
+            }
+            Map<Integer, CommitMetadata> commitMetadataMap = commitMetadataLoader.apply(commitIdList);
+            for (Integer candidateIndex : candidateIndexList) {
+                FileRevision fileRevision = fileRevisionList.get(candidateIndex);
+                CommitMetadata commit = commitMetadataMap.get(fileRevision.getCommitId());
+                if (filter == null || filter.passesCommitDetail(commit.getUserName(), commit.getCommitMessage())) {
+                    page.addRevisionHeader(buildRevisionHeader(fileRevision, commit, candidateIndex));
+                    pageCount++;
+                }
+            }
+        }
+        if (index < revisionCount) {
+            page.setNextFileRevisionId(fileRevisionList.get(index - 1).getId());
+        }
+        return page;
+    }
+
+    private static RevisionHeader buildRevisionHeader(FileRevision fileRevision, CommitMetadata commit, int revisionIndex) {
+        RevisionHeader revisionHeader = new RevisionHeader();
+        revisionHeader.setBranchId(fileRevision.getBranchId());
+        revisionHeader.setFileRevisionId(fileRevision.getId());
+        revisionHeader.setCommitId(fileRevision.getCommitId());
+        revisionHeader.setCheckInDate(commit.getCommitDate());
+        revisionHeader.setCreator(commit.getUserName());
+        revisionHeader.setEditDate(fileRevision.getWorkfileEditDate());
+        revisionHeader.setIsTip(revisionIndex == 0);
+        revisionHeader.setRevisionDescription(commit.getCommitMessage());
+        revisionHeader.setRevisionIndex(revisionIndex);
+        revisionHeader.setRevisionSize(fileRevision.getRevisionDataSize());
+        return revisionHeader;
+    }
+}
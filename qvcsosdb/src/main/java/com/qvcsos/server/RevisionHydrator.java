@@ -0,0 +1,211 @@
+/*
+ * Copyright 2021-2023 Jim Voris.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qvcsos.server;
+
+import com.qumasoft.qvcslib.CompareFilesEditHeader;
+import com.qumasoft.qvcslib.CompareFilesEditInformation;
+import com.qumasoft.qvcslib.QVCSRuntimeException;
+import com.qvcsos.server.dbrepair.RepairCompareFilesEditHeader;
+import com.qvcsos.server.dbrepair.RepairCompareFilesEditInformation;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Apply reverse delta edit scripts to a revision entirely in memory. An instance keeps a pair of work buffers that it reuses as it walks a chain of edit
+ * scripts, so hydrating a revision that is several deltas away from its materialized ancestor allocates only the buffer that is returned to the caller.
+ *
+ * <p>Instances are not thread safe; create one per hydration.</p>
+ *
+ * @author Jim Voris
+ */
+public final class RevisionHydrator {
+
+    /**
+     * Create our logger object.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(RevisionHydrator.class);
+
+    private byte[] workBufferA = new byte[0];
+    private byte[] workBufferB = new byte[0];
+
+    /**
+     * Apply a single edit script to a revision.
+     *
+     * @param originalData the revision that will be changed by the edit script. This buffer is not modified.
+     * @param edits the edit script.
+     * @return a new buffer that is the result of applying the edits to the original buffer.
+     */
+    public byte[] applyEditScript(byte[] originalData, byte[] edits) {
+        byte[] outBuffer = ensureCapacity(true, originalData.length + edits.length);
+        int outLength = apply(originalData, originalData.length, edits, outBuffer);
+        byte[] returnedBuffer = new byte[outLength];
+        System.arraycopy(outBuffer, 0, returnedBuffer, 0, outLength);
+        return returnedBuffer;
+    }
+
+    /**
+     * Apply a chain of edit scripts to a revision, in order. The output of each edit script is the input to the next one. Intermediate results live only in
+     * this hydrator's work buffers.
+     *
+     * @param originalData the revision to which the first edit script applies. This buffer is not modified.
+     * @param editScripts the edit scripts, in the order they must be applied.
+     * @return a new buffer that is the result of applying all the edit scripts.
+     */
+    public byte[] applyEditScripts(byte[] originalData, List<byte[]> editScripts) {
+        if (editScripts.isEmpty()) {
+            return originalData;
+        }
+        byte[] inBuffer = originalData;
+        int inLength = originalData.length;
+        boolean useBufferA = true;
+        for (byte[] edits : editScripts) {
+            byte[] outBuffer = ensureCapacity(useBufferA, inLength + edits.length);
+            inLength = apply(inBuffer, inLength, edits, outBuffer);
+            inBuffer = outBuffer;
+            useBufferA = !useBufferA;
+        }
+        byte[] returnedBuffer = new byte[inLength];
+        System.arraycopy(inBuffer, 0, returnedBuffer, 0, inLength);
+        return returnedBuffer;
+    }
+
+    private byte[] ensureCapacity(boolean useBufferA, int requiredSize) {
+        if (useBufferA) {
+            if (workBufferA.length < requiredSize) {
+                workBufferA = new byte[requiredSize];
+            }
+            return workBufferA;
+        } else {
+            if (workBufferB.length < requiredSize) {
+                workBufferB = new byte[requiredSize];
+            }
+            return workBufferB;
+        }
+    }
+
+    private static int apply(byte[] originalData, int originalLength, byte[] edits, byte[] editedBuffer) {
+        int outLength;
+        try {
+            outLength = applyCurrentFormat(originalData, originalLength, edits, editedBuffer);
+        } catch (IndexOutOfBoundsException | BufferUnderflowException e) {
+            LOGGER.warn("Old format revision detected!! Hydrating using alternate hydrator.");
+            outLength = applyOldFormat(originalData, originalLength, edits, editedBuffer);
+        }
+        return outLength;
+    }
+
+    private static int applyCurrentFormat(byte[] originalData, int originalLength, byte[] edits, byte[] editedBuffer) {
+        // Edit scripts are written with a DataOutputStream, so they are big-endian.
+        ByteBuffer editBuffer = ByteBuffer.wrap(edits);
+        editBuffer.position(CompareFilesEditHeader.getEditHeaderSize());
+        int inIndex = 0;
+        int outIndex = 0;
+        while (editBuffer.hasRemaining()) {
+            int editType = editBuffer.getInt();
+            int seekPosition = (int) editBuffer.getLong();
+            int deletedBytesCount = editBuffer.getInt();
+            int insertedBytesCount = editBuffer.getInt();
+            int bytesTillChange = seekPosition - inIndex;
+            copyUnchanged(originalData, originalLength, inIndex, editedBuffer, outIndex, bytesTillChange);
+            inIndex += bytesTillChange;
+            outIndex += bytesTillChange;
+
+            switch (editType) {
+                case CompareFilesEditInformation.QVCS_EDIT_DELETE:
+                    // Just skip over deleted bytes
+                    inIndex += deletedBytesCount;
+                    break;
+                case CompareFilesEditInformation.QVCS_EDIT_INSERT:
+                    editBuffer.get(editedBuffer, outIndex, insertedBytesCount);
+                    outIndex += insertedBytesCount;
+                    break;
+                case CompareFilesEditInformation.QVCS_EDIT_REPLACE:
+                    // Skip over the bytes to be replaced, then copy the replacing bytes from the edit script to the output.
+                    inIndex += deletedBytesCount;
+                    editBuffer.get(editedBuffer, outIndex, insertedBytesCount);
+                    outIndex += insertedBytesCount;
+                    break;
+                default:
+                    break;
+            }
+        }
+        return copyRemainder(originalData, originalLength, inIndex, editedBuffer, outIndex);
+    }
+
+    private static int applyOldFormat(byte[] originalData, int originalLength, byte[] edits, byte[] editedBuffer) {
+        // The old format was written by the C++ product, so it is little-endian, with 32 bit seek positions.
+        ByteBuffer editBuffer = ByteBuffer.wrap(edits).order(ByteOrder.LITTLE_ENDIAN);
+        int inIndex = 0;
+        int outIndex = 0;
+        int seekPosition = 0;
+        try {
+            editBuffer.position(RepairCompareFilesEditHeader.getEditHeaderSize());
+            while (editBuffer.hasRemaining()) {
+                short editType = editBuffer.getShort();
+                seekPosition = editBuffer.getInt();
+                int deletedBytesCount = editBuffer.getInt();
+                int insertedBytesCount = editBuffer.getInt();
+                int bytesTillChange = seekPosition - inIndex;
+                copyUnchanged(originalData, originalLength, inIndex, editedBuffer, outIndex, bytesTillChange);
+                inIndex += bytesTillChange;
+                outIndex += bytesTillChange;
+
+                switch (editType) {
+                    case RepairCompareFilesEditInformation.QVCS_EDIT_DELETE:
+                        inIndex += deletedBytesCount;
+                        break;
+                    case RepairCompareFilesEditInformation.QVCS_EDIT_INSERT:
+                        editBuffer.get(editedBuffer, outIndex, insertedBytesCount);
+                        outIndex += insertedBytesCount;
+                        break;
+                    case RepairCompareFilesEditInformation.QVCS_EDIT_REPLACE:
+                        inIndex += deletedBytesCount;
+                        editBuffer.get(editedBuffer, outIndex, insertedBytesCount);
+                        outIndex += insertedBytesCount;
+                        break;
+                    default:
+                        break;
+                }
+            }
+            return copyRemainder(originalData, originalLength, inIndex, editedBuffer, outIndex);
+        } catch (IndexOutOfBoundsException | BufferUnderflowException e) {
+            LOGGER.warn(" editInfo.seekPosition: [{}] originalData.length: [{}] inIndex: [{}] editedBuffer.length: [{}] outIndex: [{}]", seekPosition,
+                    originalLength, inIndex, editedBuffer.length, outIndex);
+            LOGGER.warn(e.getLocalizedMessage(), e);
+            throw new QVCSRuntimeException("Unable to hydrate revision.");
+        }
+    }
+
+    private static void copyUnchanged(byte[] originalData, int originalLength, int inIndex, byte[] editedBuffer, int outIndex, int byteCount) {
+        if (inIndex + byteCount > originalLength) {
+            throw new IndexOutOfBoundsException("Edit seek position beyond end of revision.");
+        }
+        System.arraycopy(originalData, inIndex, editedBuffer, outIndex, byteCount);
+    }
+
+    private static int copyRemainder(byte[] originalData, int originalLength, int inIndex, byte[] editedBuffer, int outIndex) {
+        int remainingBytes = originalLength - inIndex;
+        if (remainingBytes > 0) {
+            System.arraycopy(originalData, inIndex, editedBuffer, outIndex, remainingBytes);
+            return outIndex + remainingBytes;
+        }
+        return outIndex;
+    }
+}
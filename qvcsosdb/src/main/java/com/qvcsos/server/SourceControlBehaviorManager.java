@@ -15,8 +15,6 @@
  */
 package com.qvcsos.server;
 
-import com.qumasoft.qvcslib.CompareFilesEditHeader;
-import com.qumasoft.qvcslib.CompareFilesEditInformation;
 import com.qumasoft.qvcslib.CompareFilesWithApacheDiff;
 import com.qumasoft.qvcslib.FilePromotionInfo;
 import com.qumasoft.qvcslib.PromotionType;
@@ -61,10 +59,6 @@ import com.qvcsos.server.datamodel.Project;
 import com.qvcsos.server.datamodel.ProvisionalDirectoryLocation;
 import com.qvcsos.server.datamodel.Tag;
 import com.qvcsos.server.datamodel.User;
-import com.qvcsos.server.dbrepair.RepairCompareFilesEditHeader;
-import com.qvcsos.server.dbrepair.RepairCompareFilesEditInformation;
-import java.io.ByteArrayInputStream;
-import java.io.DataInputStream;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -74,12 +68,18 @@ import java.security.NoSuchAlgorithmException;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -100,10 +100,31 @@ public final class SourceControlBehaviorManager implements TransactionParticipan
      */
     private static final SourceControlBehaviorManager SOURCE_CONTROL_BEHAVIOR_MANAGER = new SourceControlBehaviorManager();
 
+    /**
+     * The maximum number of bytes of hydrated revisions that we keep in memory.
+     */
+    private static final long REVISION_CACHE_MAXIMUM_SIZE = 64L * 1024L * 1024L;
+    /**
+     * The largest single hydrated revision that we keep in memory.
+     */
+    private static final long REVISION_CACHE_MAXIMUM_ENTRY_SIZE = 4L * 1024L * 1024L;
+    /**
+     * A revision is left fully materialized (a 'keyframe') instead of being replaced with a reverse delta script when replacing it would leave a
+     * revision this many reverse deltas away from a materialized revision. This caps the number of reverse deltas we must apply to hydrate any revision.
+     */
+    static final int KEYFRAME_INTERVAL = 25;
+
+    /**
+     * The threads that compute digests and reverse deltas for a batch of new revisions. These never touch the database.
+     */
+    private static final ExecutorService DELTA_COMPUTATION_POOL = Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()),
+            new DeltaThreadFactory());
+
     private final DatabaseManager databaseManager;
     private final String schemaName;
     private MessageDigest messageDigest = null;
     private final Object messageDigestSyncObject = new Object();
+    private final RevisionCache revisionCache = new RevisionCache(REVISION_CACHE_MAXIMUM_SIZE, REVISION_CACHE_MAXIMUM_ENTRY_SIZE);
 
     /**
      * Thread local storage for userIds and responses.
@@ -441,7 +462,8 @@ public final class SourceControlBehaviorManager implements TransactionParticipan
         try {
             // Find the existing DirectoryLocation record...
             DirectoryLocationDAO directoryLocationDAO = new DirectoryLocationDAOImpl(schemaName);
-            DirectoryLocation directoryLocation = directoryLocationDAO.findById(directoryLocationId);
+            DirectoryLocationIndex directoryLocationIndex = DirectoryLocationIndex.getInstance(schemaName);
+            DirectoryLocation directoryLocation = directoryLocationIndex.findById(directoryLocationId);
             String commitMessage = "Deleting directory with directoryLocationId: [" + directoryLocationId + "]";
 
             // Create a commit object.
@@ -487,11 +509,12 @@ public final class SourceControlBehaviorManager implements TransactionParticipan
         try {
             // Find the existing DirectoryLocation record...
             DirectoryLocationDAO directoryLocationDAO = new DirectoryLocationDAOImpl(schemaName);
-            DirectoryLocation directoryLocation = directoryLocationDAO.findById(directoryLocationId);
+            DirectoryLocationIndex directoryLocationIndex = DirectoryLocationIndex.getInstance(schemaName);
+            DirectoryLocation directoryLocation = directoryLocationIndex.findById(directoryLocationId);
             String directoryName = directoryLocation.getDirectorySegmentName();
 
             // Find the target parent DirectoryLocation record...
-            DirectoryLocation targetParentDirectoryLocation = directoryLocationDAO.findById(targetParentDirectoryLocationId);
+            DirectoryLocation targetParentDirectoryLocation = directoryLocationIndex.findById(targetParentDirectoryLocationId);
             String newParentDirectoryName = targetParentDirectoryLocation.getDirectorySegmentName();
             String commitMessage = "Moving directory [" + directoryName + "] to be a child of [" + newParentDirectoryName + "] on branch [" + targetParentDirectoryLocation.getBranchId() + "]";
 
@@ -539,7 +562,8 @@ public final class SourceControlBehaviorManager implements TransactionParticipan
         try {
             // Find the existing DirectoryLocation record...
             DirectoryLocationDAO directoryLocationDAO = new DirectoryLocationDAOImpl(schemaName);
-            DirectoryLocation directoryLocation = directoryLocationDAO.findById(directoryLocationId);
+            DirectoryLocationIndex directoryLocationIndex = DirectoryLocationIndex.getInstance(schemaName);
+            DirectoryLocation directoryLocation = directoryLocationIndex.findById(directoryLocationId);
             String oldDirectoryName = directoryLocation.getDirectorySegmentName();
             String commitMessage = "Renaming directory from [" + oldDirectoryName + "] to [" + newDirectoryName + "] on branch [" + branchId + "]";
 
@@ -688,20 +712,9 @@ public final class SourceControlBehaviorManager implements TransactionParticipan
             BranchDAO branchDAO = new BranchDAOImpl(schemaName);
             Branch branch = branchDAO.findByProjectIdAndBranchName(projectId, branchName);
             Integer branchId = branch.getId();
-            Integer rootDirectoryId = branch.getRootDirectoryId();
-
-            DirectoryLocationDAO directoryLocationDAO = new DirectoryLocationDAOImpl(schemaName);
-            DirectoryLocation parentDirectoryLocation = directoryLocationDAO.findByDirectoryId(rootDirectoryId);
 
             // Figure out the directoryId.
-            DirectoryLocation directoryLocation = parentDirectoryLocation;
-            if (appendedPath.length() > 0) {
-                String[] directorySegments = appendedPath.split(java.io.File.separator);
-                for (String segment : directorySegments) {
-                    directoryLocation = findChildDirectoryLocation(branchId, parentDirectoryLocation.getId(), segment);
-                    parentDirectoryLocation = directoryLocation;
-                }
-            }
+            DirectoryLocation directoryLocation = findDirectoryLocationByAppendedPath(branchId, appendedPath);
             Integer directoryId = directoryLocation.getDirectoryId();
             Timestamp workfileEditTimestamp = new Timestamp(workfileEditDate.getTime());
             fileId = addFile(branchId, projectId, directoryId, filename, ioFile, null, null, workfileEditTimestamp, commitMessage, mutableFileRevisionId);
@@ -723,20 +736,9 @@ public final class SourceControlBehaviorManager implements TransactionParticipan
         BranchDAO branchDAO = new BranchDAOImpl(schemaName);
         Branch branch = branchDAO.findByProjectIdAndBranchName(projectId, branchName);
         Integer branchId = branch.getId();
-        Integer rootDirectoryId = branch.getRootDirectoryId();
-
-        DirectoryLocationDAO directoryLocationDAO = new DirectoryLocationDAOImpl(schemaName);
-        DirectoryLocation parentDirectoryLocation = directoryLocationDAO.findByDirectoryId(rootDirectoryId);
 
         // Figure out the directoryId.
-        DirectoryLocation directoryLocation = parentDirectoryLocation;
-        if (appendedPath.length() > 0) {
-            String[] directorySegments = appendedPath.split(java.io.File.separator);
-            for (String segment : directorySegments) {
-                directoryLocation = findChildDirectoryLocation(branchId, parentDirectoryLocation.getId(), segment);
-                parentDirectoryLocation = directoryLocation;
-            }
-        }
+        DirectoryLocation directoryLocation = findDirectoryLocationByAppendedPath(branchId, appendedPath);
         Integer directoryId = directoryLocation.getDirectoryId();
 
         return directoryId;
@@ -787,7 +789,11 @@ public final class SourceControlBehaviorManager implements TransactionParticipan
             }
             fileRevisionId = fileRevisionDAO.insert(fileRevision);
             if (ancestorRevision != null) {
-                if (ancestorRevision.getReverseDeltaRevisionId() == null) {
+                if (isKeyframeRevision(ancestorRevision)) {
+                    // Leave the ancestor fully materialized so hydration never has to walk further than this revision.
+                    LOGGER.debug("-----> Keeping keyframe ancestor revision: CommitId: [{}], FileId: [{}], AncestorRevisionId: [{}]", commitId, fileId,
+                            ancestorRevision.getId());
+                } else if (ancestorRevision.getReverseDeltaRevisionId() == null) {
                     byte[] reverseDeltaScript = computeReverseDelta(ancestorRevision.getRevisionData(), fileData);
                     if (reverseDeltaScript != null) {
                         fileRevisionDAO.updateAncestorRevision(ancestorRevision.getId(), fileRevisionId, reverseDeltaScript);
@@ -802,13 +808,121 @@ public final class SourceControlBehaviorManager implements TransactionParticipan
             }
             LOGGER.debug("Added file revision with: CommitId: [{}], FileId: [{}], FileRevisionId: [{}]", commitId, fileId, fileRevisionId);
 
-        } catch (SQLException | IOException e) {
+        } catch (SQLException e) {
             LOGGER.warn("Exception: ", e);
             fileRevisionId = null;
         }
         return fileRevisionId;
     }
 
+    /**
+     * Add a new revision to each of a batch of files, all under the same commit. This does the same work as calling
+     * {@link #addRevision(Integer, Integer, byte[], Integer, Date, String)} once per file, but it looks up the ancestor revisions with a few queries
+     * instead of one per file, computes the digests and reverse deltas in parallel, and writes the new revisions and the ancestor updates as JDBC
+     * batches.
+     * @param branchId the branch id.
+     * @param newRevisionList the new revisions. Each must have its file id, workfile edit date, and revision data set. A file may appear only once.
+     * @param commitMessage the commit message.
+     * @return the fileRevisionIds for the new revisions, in list order; or null if we could not add them.
+     * @throws SQLException if we cannot rollback the transaction.
+     */
+    public List<Integer> addRevisions(Integer branchId, List<FileRevision> newRevisionList, String commitMessage) throws SQLException {
+        List<Integer> fileRevisionIdList;
+        try {
+            Integer commitId = getCommitId(null, commitMessage);
+            List<Integer> fileIdList = new ArrayList<>(newRevisionList.size());
+            for (FileRevision fileRevision : newRevisionList) {
+                fileIdList.add(fileRevision.getFileId());
+            }
+            if (new HashSet<>(fileIdList).size() != fileIdList.size()) {
+                throw new QVCSRuntimeException("A file may only appear once in a batch of new revisions.");
+            }
+
+            FileRevisionDAO fileRevisionDAO = new FileRevisionDAOImpl(schemaName);
+            Map<Integer, FileRevision> ancestorRevisionMap = fileRevisionDAO.findNewestRevisionsAllBranches(fileIdList);
+            List<Integer> ancestorRevisionIdList = new ArrayList<>(ancestorRevisionMap.size());
+            for (FileRevision ancestorRevision : ancestorRevisionMap.values()) {
+                ancestorRevisionIdList.add(ancestorRevision.getId());
+            }
+            Map<Integer, Integer> chainDepthMap = fileRevisionDAO.getReverseDeltaChainDepths(ancestorRevisionIdList, KEYFRAME_INTERVAL);
+
+            // The digests and reverse deltas depend only on revision contents, so we can compute them on other threads.
+            List<Future<byte[]>> digestFutureList = new ArrayList<>(newRevisionList.size());
+            List<Future<byte[]>> deltaFutureList = new ArrayList<>(newRevisionList.size());
+            for (FileRevision fileRevision : newRevisionList) {
+                final byte[] fileData = fileRevision.getRevisionData();
+                digestFutureList.add(DELTA_COMPUTATION_POOL.submit(() -> computeFileDigestConcurrently(fileData)));
+                FileRevision ancestorRevision = ancestorRevisionMap.get(fileRevision.getFileId());
+                Future<byte[]> deltaFuture = null;
+                if (ancestorRevision != null) {
+                    if (isKeyframeChainDepth(chainDepthMap.getOrDefault(ancestorRevision.getId(), 0))) {
+                        // Leave the ancestor fully materialized so hydration never has to walk further than this revision.
+                        LOGGER.debug("-----> Keeping keyframe ancestor revision: CommitId: [{}], FileId: [{}], AncestorRevisionId: [{}]", commitId,
+                                fileRevision.getFileId(), ancestorRevision.getId());
+                    } else if (ancestorRevision.getReverseDeltaRevisionId() == null) {
+                        final byte[] ancestorData = ancestorRevision.getRevisionData();
+                        deltaFuture = DELTA_COMPUTATION_POOL.submit(() -> computeReverseDelta(ancestorData, fileData));
+                    } else {
+                        LOGGER.warn("Non-null reverse delta rev id for file id: [{}]", ancestorRevision.getFileId());
+                        throw new QVCSRuntimeException("Non-null reverse delta rev id for file id: " + ancestorRevision.getFileId());
+                    }
+                }
+                deltaFutureList.add(deltaFuture);
+            }
+
+            // Fill in the new revisions, and insert them.
+            for (int i = 0; i < newRevisionList.size(); i++) {
+                FileRevision fileRevision = newRevisionList.get(i);
+                fileRevision.setBranchId(branchId);
+                fileRevision.setCommitId(commitId);
+                fileRevision.setRevisionDigest(waitForComputation(digestFutureList.get(i)));
+                FileRevision ancestorRevision = ancestorRevisionMap.get(fileRevision.getFileId());
+                if (ancestorRevision != null) {
+                    fileRevision.setAncestorRevisionId(ancestorRevision.getId());
+                }
+            }
+            fileRevisionIdList = fileRevisionDAO.insertBatch(newRevisionList);
+
+            // Replace the ancestors' contents with their reverse deltas.
+            List<FileRevision> ancestorUpdateList = new ArrayList<>();
+            for (int i = 0; i < newRevisionList.size(); i++) {
+                Future<byte[]> deltaFuture = deltaFutureList.get(i);
+                if (deltaFuture != null) {
+                    FileRevision fileRevision = newRevisionList.get(i);
+                    byte[] reverseDeltaScript = waitForComputation(deltaFuture);
+                    if (reverseDeltaScript != null) {
+                        FileRevision ancestorUpdate = new FileRevision();
+                        ancestorUpdate.setId(fileRevision.getAncestorRevisionId());
+                        ancestorUpdate.setReverseDeltaRevisionId(fileRevisionIdList.get(i));
+                        ancestorUpdate.setRevisionData(reverseDeltaScript);
+                        ancestorUpdateList.add(ancestorUpdate);
+                    } else {
+                        LOGGER.warn("Failed to compute delta for fileId: [{}]", fileRevision.getFileId());
+                    }
+                }
+            }
+            fileRevisionDAO.updateAncestorRevisionBatch(ancestorUpdateList);
+            LOGGER.debug("Added [{}] file revisions with CommitId: [{}]; updated [{}] ancestor revisions.", fileRevisionIdList.size(), commitId,
+                    ancestorUpdateList.size());
+        } catch (SQLException e) {
+            LOGGER.warn("Exception: ", e);
+            fileRevisionIdList = null;
+        }
+        return fileRevisionIdList;
+    }
+
+    private static byte[] waitForComputation(Future<byte[]> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new QVCSRuntimeException("Interrupted while computing revision deltas.");
+        } catch (ExecutionException e) {
+            LOGGER.warn("Revision delta computation failed.", e.getCause());
+            throw new QVCSRuntimeException("Revision delta computation failed: " + e.getCause().getLocalizedMessage());
+        }
+    }
+
     /**
      * Get the requested file revision from the database and return it in a temp file.
      * @param fileRevisionId the revisionId of the revision to get.
@@ -818,24 +932,66 @@ public final class SourceControlBehaviorManager implements TransactionParticipan
     public java.io.File getFileRevision(Integer fileRevisionId) throws SQLException {
         java.io.File fetchedRevisionFile = null;
         try {
-            FileRevisionDAO fileRevisionDAO = new FileRevisionDAOImpl(schemaName);
-            FileRevision fileRevision = fileRevisionDAO.findById(fileRevisionId);
-            if (fileRevision != null) {
-                if (fileRevision.getReverseDeltaRevisionId() != null) {
-                    // Get the file we need in order to hydrate the requested revision...
-                    java.io.File tempFile = getFileRevision(fileRevision.getReverseDeltaRevisionId());
-                    fetchedRevisionFile = hydrateRevision(tempFile, fileRevision.getRevisionData());
-                } else {
-                    fetchedRevisionFile = createTempFileFromBuffer(fileRevision.getRevisionData());
-                }
+            byte[] revisionData = getFileRevisionBuffer(fileRevisionId);
+            if (revisionData != null) {
+                fetchedRevisionFile = createTempFileFromBuffer(revisionData);
             }
-        } catch (SQLException | IOException e) {
+        } catch (IOException e) {
             LOGGER.warn("Exception: ", e);
             fetchedRevisionFile = null;
         }
         return fetchedRevisionFile;
     }
 
+    /**
+     * Get the hydrated contents of the requested file revision. We walk down the reverse delta chain until we find a revision that is either in the
+     * revision cache, or is stored fully materialized (the tip, or a keyframe), and then apply the collected reverse delta scripts in a single pass. The
+     * hydrated revision is added to the revision cache.
+     *
+     * @param fileRevisionId the revisionId of the revision to get.
+     * @return the requested file revision, or null if the revision does not exist. The returned buffer is shared with the revision cache, and must not
+     * be modified.
+     */
+    public byte[] getFileRevisionBuffer(Integer fileRevisionId) {
+        FileRevisionDAO fileRevisionDAO = new FileRevisionDAOImpl(schemaName);
+        List<byte[]> editScripts = new ArrayList<>();
+        Integer currentRevisionId = fileRevisionId;
+        byte[] revisionData = revisionCache.get(currentRevisionId);
+        while (revisionData == null) {
+            FileRevision fileRevision = fileRevisionDAO.findById(currentRevisionId);
+            if (fileRevision == null) {
+                if (!editScripts.isEmpty()) {
+                    LOGGER.warn("Broken reverse delta chain: revision id: [{}] not found while fetching revision id: [{}]", currentRevisionId, fileRevisionId);
+                }
+                return null;
+            }
+            if (fileRevision.getReverseDeltaRevisionId() != null) {
+                // We need the newer revision in order to hydrate this one...
+                editScripts.add(fileRevision.getRevisionData());
+                currentRevisionId = fileRevision.getReverseDeltaRevisionId();
+                revisionData = revisionCache.get(currentRevisionId);
+            } else {
+                revisionData = fileRevision.getRevisionData();
+                revisionCache.put(currentRevisionId, revisionData);
+            }
+        }
+        if (!editScripts.isEmpty()) {
+            // The scripts were collected newest-last; apply them starting with the one nearest the materialized revision.
+            Collections.reverse(editScripts);
+            revisionData = new RevisionHydrator().applyEditScripts(revisionData, editScripts);
+            revisionCache.put(fileRevisionId, revisionData);
+        }
+        return revisionData;
+    }
+
+    /**
+     * Get the revision cache. We expose this so the cache statistics can be reported.
+     * @return the revision cache.
+     */
+    public RevisionCache getRevisionCache() {
+        return revisionCache;
+    }
+
     /**
      * Delete a file.
      * @param projectName the project name.
@@ -859,18 +1015,9 @@ public final class SourceControlBehaviorManager implements TransactionParticipan
             BranchDAO branchDAO = new BranchDAOImpl(schemaName);
             Branch branch = branchDAO.findByProjectIdAndBranchName(projectId, branchName);
             Integer branchId = branch.getId();
-            Integer rootDirectoryId = branch.getRootDirectoryId();
-            DirectoryLocationDAO directoryLocationDAO = new DirectoryLocationDAOImpl(schemaName);
-            DirectoryLocation parentDirectoryLocation = directoryLocationDAO.findByDirectoryId(rootDirectoryId);
+
             // Figure out the directoryId.
-            DirectoryLocation directoryLocation = parentDirectoryLocation;
-            if (appendedPath.length() > 0) {
-                String[] directorySegments = appendedPath.split(java.io.File.separator);
-                for (String segment : directorySegments) {
-                    directoryLocation = findChildDirectoryLocation(branchId, parentDirectoryLocation.getId(), segment);
-                    parentDirectoryLocation = directoryLocation;
-                }
-            }
+            DirectoryLocation directoryLocation = findDirectoryLocationByAppendedPath(branchId, appendedPath);
             Integer directoryId = directoryLocation.getDirectoryId();
             FileNameDAO fileNameDAO = new FileNameDAOImpl(schemaName);
             List<FileName> fileNameList = fileNameDAO.findByDirectoryIdAndFileName(directoryId, shortFilename);
@@ -1017,7 +1164,6 @@ public final class SourceControlBehaviorManager implements TransactionParticipan
      */
     public Integer moveFile(Integer branchId, Integer fileNameId, Integer destinationDirectoryId) throws SQLException {
         Integer returnedFileNameId = null;
-        java.io.File fileRevisionFile = null;
         try {
             // Need to verify that the destination directory exists.
             DirectoryDAO directoryDAO = new DirectoryDAOImpl(schemaName);
@@ -1064,18 +1210,13 @@ public final class SourceControlBehaviorManager implements TransactionParticipan
             // Create a revision on the branch to make it easy to see things that happened (makes figuring out promotion list a lot easier).
             FunctionalQueriesDAO functionalQueriesDAO = new FunctionalQueriesDAOImpl(schemaName);
             List<FileRevision> revisionList = functionalQueriesDAO.findFileRevisionsInBranches(functionalQueriesDAO.getBranchAncestryList(branchId), fileName.getFileId());
-            fileRevisionFile = getFileRevision(revisionList.get(0).getId());
-            byte[] revisionData = getFileData(fileRevisionFile);
+            byte[] revisionData = getFileRevisionBuffer(revisionList.get(0).getId());
             Integer fileRevisionId = addRevision(branchId, fileName.getFileId(), revisionData, commitId, revisionList.get(0).getWorkfileEditDate(), commitMessage);
             LOGGER.info("Added file revision id: [{}] for moved file on branch id: [{}]", fileRevisionId, branchId);
 
-        } catch (IOException | SQLException e) {
+        } catch (SQLException e) {
             LOGGER.warn("Exception: ", e);
             returnedFileNameId = null;
-        } finally {
-            if (fileRevisionFile != null) {
-                fileRevisionFile.delete();
-            }
         }
         return returnedFileNameId;
     }
@@ -1101,7 +1242,6 @@ public final class SourceControlBehaviorManager implements TransactionParticipan
      */
     public Integer renameFile(Integer branchId, Integer fileId, String newFileName) throws SQLException {
         Integer returnedFileNameId;
-        java.io.File fileRevisionFile = null;
         try {
             // Find the existing FileName record...
             FileName fileName = null;
@@ -1145,18 +1285,13 @@ public final class SourceControlBehaviorManager implements TransactionParticipan
             // Create a revision on the branch to make it easy to see things that happened (makes figuring out promotion list a lot easier).
             FunctionalQueriesDAO functionalQueriesDAO = new FunctionalQueriesDAOImpl(schemaName);
             List<FileRevision> revisionList = functionalQueriesDAO.findFileRevisionsInBranches(functionalQueriesDAO.getBranchAncestryList(branchId), fileName.getFileId());
-            fileRevisionFile = getFileRevision(revisionList.get(0).getId());
-            byte[] revisionData = getFileData(fileRevisionFile);
+            byte[] revisionData = getFileRevisionBuffer(revisionList.get(0).getId());
             Integer fileRevisionId = addRevision(branchId, fileName.getFileId(), revisionData, commitId, revisionList.get(0).getWorkfileEditDate(), commitMessage);
             LOGGER.info("Added file revision id: [{}] for renamed file on branch id: [{}]", fileRevisionId, branchId);
 
-        } catch (IOException | SQLException e) {
+        } catch (SQLException e) {
             LOGGER.warn("Exception: ", e);
             returnedFileNameId = null;
-        } finally {
-            if (fileRevisionFile != null) {
-                fileRevisionFile.delete();
-            }
         }
         return returnedFileNameId;
     }
@@ -1233,6 +1368,27 @@ public final class SourceControlBehaviorManager implements TransactionParticipan
         return returnedFileNameId;
     }
 
+    /**
+     * Decide whether the ancestor of a new revision should be kept as a keyframe. We look at the ancestor's actual reverse delta chain, rather than
+     * counting revisions, so the chain stays bounded no matter how check-ins on different branches interleave.
+     * @param ancestorRevision the ancestor revision.
+     * @return true if the ancestor should remain fully materialized.
+     */
+    private boolean isKeyframeRevision(FileRevision ancestorRevision) {
+        FileRevisionDAO fileRevisionDAO = new FileRevisionDAOImpl(schemaName);
+        return isKeyframeChainDepth(fileRevisionDAO.getReverseDeltaChainDepth(ancestorRevision.getId(), KEYFRAME_INTERVAL));
+    }
+
+    /**
+     * Decide whether a revision should be kept as a keyframe, given the depth of the reverse delta chain that ends at it. Replacing the revision with a
+     * reverse delta would put every revision on that chain one more delta away from a materialized revision.
+     * @param chainDepth the depth of the reverse delta chain that ends at the revision.
+     * @return true if the revision should remain fully materialized.
+     */
+    static boolean isKeyframeChainDepth(int chainDepth) {
+        return chainDepth + 1 >= KEYFRAME_INTERVAL;
+    }
+
     private java.io.File createTempFileFromBuffer(byte[] revisionData) throws IOException {
         java.io.File tempFile = java.io.File.createTempFile("qvcsos-", ".tmp");
         Files.write(tempFile.toPath(), revisionData);
@@ -1252,6 +1408,20 @@ public final class SourceControlBehaviorManager implements TransactionParticipan
         return digest;
     }
 
+    /**
+     * Compute a file digest without sharing our message digest, so that several threads can compute digests at once.
+     * @param fileData the file's data.
+     * @return the digest.
+     */
+    private byte[] computeFileDigestConcurrently(byte[] fileData) {
+        try {
+            return MessageDigest.getInstance(QVCSConstants.QVCSOS_DIGEST_ALGORITHM).digest(fileData);
+        } catch (NoSuchAlgorithmException e) {
+            LOGGER.warn("Failed to create message digest:", e);
+            throw new QVCSRuntimeException("Failed to create message digest: " + e.getLocalizedMessage());
+        }
+    }
+
     private byte[] getFileData(java.io.File file) throws FileNotFoundException, IOException {
         byte[] buffer;
         try (FileInputStream inStream = new FileInputStream(file)) {
@@ -1261,212 +1431,17 @@ public final class SourceControlBehaviorManager implements TransactionParticipan
         return buffer;
     }
 
-    private byte[] computeReverseDelta(byte[] revisionData, byte[] newRevisionData) throws IOException {
+    private byte[] computeReverseDelta(byte[] revisionData, byte[] newRevisionData) {
         byte[] result = null;
         try {
-            java.io.File oldFile = createTempFileFromBuffer(revisionData);
-            java.io.File newRevisionFile = createTempFileFromBuffer(newRevisionData);
-            java.io.File outFile = java.io.File.createTempFile("qvcsos-compare-out", ".tmp");
-            String[] args = {newRevisionFile.getCanonicalPath(), oldFile.getCanonicalPath(), outFile.getCanonicalPath()};
-            CompareFilesWithApacheDiff compareFileWithApacheDiff = new CompareFilesWithApacheDiff(args);
-            if (compareFileWithApacheDiff.execute()) {
-                result = getFileData(outFile);
-            }
-            oldFile.delete();
-            outFile.delete();
+            CompareFilesWithApacheDiff compareFileWithApacheDiff = new CompareFilesWithApacheDiff();
+            result = compareFileWithApacheDiff.computeEditScript(newRevisionData, revisionData);
         } catch (QVCSOperationException e) {
             LOGGER.warn("Computing reverse delta failed", e);
         }
         return result;
     }
 
-    /**
-     * Hydrate a file given a file to which we apply an edit script.
-     * @param fileToEdit the file that will be changed by the edit script.
-     * @param edits the edit script.
-     * @return a new temporary file that is the result of applying the edits to the original file.
-     * @throws IOException if the fileToEdit cannot be opened or read.
-     */
-    private java.io.File hydrateRevision(java.io.File fileToEdit, byte[] edits) throws IOException {
-        DataInputStream editStream = new DataInputStream(new ByteArrayInputStream(edits));
-        CompareFilesEditInformation editInfo = new CompareFilesEditInformation();
-        byte[] originalData = getFileData(fileToEdit);
-        byte[] editedBuffer = new byte[edits.length + originalData.length]; // It can't be any bigger than this.
-        java.io.File returnedFile = null;
-        int inIndex = 0;
-        int outIndex = 0;
-        int deletedBytesCount;
-        int insertedBytesCount;
-        int bytesTillChange;
-
-        try {
-            // We need to first skip 8 bytes from the stream because there are 8 bytes there that we should ignore (for now).
-            byte[] eightBytes = new byte[CompareFilesEditHeader.getEditHeaderSize()];
-            editStream.read(eightBytes);
-            while (editStream.available() > 0) {
-                editInfo.read(editStream);
-                bytesTillChange = (int) editInfo.getSeekPosition() - inIndex;
-                System.arraycopy(originalData, inIndex, editedBuffer, outIndex, bytesTillChange);
-
-                inIndex += bytesTillChange;
-                outIndex += bytesTillChange;
-
-                deletedBytesCount = (int) editInfo.getDeletedBytesCount();
-                insertedBytesCount = (int) editInfo.getInsertedBytesCount();
-
-                switch (editInfo.getEditType()) {
-                    case CompareFilesEditInformation.QVCS_EDIT_DELETE:
-                        /*
-                         * Delete input
-                         */
-                        // Just skip over deleted bytes
-                        inIndex += deletedBytesCount;
-                        break;
-
-                    case CompareFilesEditInformation.QVCS_EDIT_INSERT:
-                        /*
-                         * Insert edit lines
-                         */
-                        editStream.read(editedBuffer, outIndex, insertedBytesCount);
-                        outIndex += insertedBytesCount;
-                        break;
-
-                    case CompareFilesEditInformation.QVCS_EDIT_REPLACE:
-                        /*
-                         * Replace input line with edit line.
-                         * First skip over the bytes to be replaced, then copy the replacing bytes from the edit file to the output
-                         * file.
-                         */
-                        inIndex += deletedBytesCount;
-
-                        editStream.read(editedBuffer, outIndex, insertedBytesCount);
-                        outIndex += insertedBytesCount;
-                        break;
-
-                    default:
-                        break;
-                }
-            }
-
-            // Copy the rest of the input "file" to the output "file".
-            int remainingBytes = originalData.length - inIndex;
-            if (remainingBytes > 0) {
-                System.arraycopy(originalData, inIndex, editedBuffer, outIndex, remainingBytes);
-                outIndex += remainingBytes;
-            }
-            byte[] returnedBuffer = new byte[outIndex];
-            System.arraycopy(editedBuffer, 0, returnedBuffer, 0, outIndex);
-            returnedFile = createTempFileFromBuffer(returnedBuffer);
-        } catch (ArrayIndexOutOfBoundsException | IOException e) {
-            LOGGER.warn("Old format revision detected!! Hydrating using alternate hydrator.");
-            returnedFile = hydrateOldFormatRevision(fileToEdit, edits);
-        } finally {
-            try {
-                editStream.close();
-            } catch (IOException e) {
-                LOGGER.warn(Utility.expandStackTraceToString(e));
-            }
-        }
-        return returnedFile;
-    }
-
-    /**
-     * Hydrate a file stored in old format, given a file to which we apply an
-     * edit script.
-     *
-     * @param fileToEdit the file that will be changed by the edit script.
-     * @param edits the edit script.
-     * @return a new temporary file that is the result of applying the edits to
-     * the original file.
-     * @throws IOException if the fileToEdit cannot be opened or read.
-     */
-    private java.io.File hydrateOldFormatRevision(java.io.File fileToEdit, byte[] edits) throws IOException {
-        DataInputStream editStream = new DataInputStream(new ByteArrayInputStream(edits));
-        RepairCompareFilesEditInformation editInfo = new RepairCompareFilesEditInformation();
-        byte[] originalData = getFileData(fileToEdit);
-        byte[] editedBuffer = new byte[edits.length + originalData.length]; // It can't be any bigger than this.
-        java.io.File returnedFile = null;
-        int inIndex = 0;
-        int outIndex = 0;
-        int deletedBytesCount;
-        int insertedBytesCount;
-        int bytesTillChange = 0;
-
-        try {
-            // We need to first skip 8 bytes from the stream because there are 8 bytes there that we should ignore (for now).
-            byte[] eightBytes = new byte[RepairCompareFilesEditHeader.getEditHeaderSize()];
-            editStream.read(eightBytes);
-            while (editStream.available() > 0) {
-                editInfo.read(editStream);
-                bytesTillChange = (int) editInfo.getSeekPosition() - inIndex;
-                System.arraycopy(originalData, inIndex, editedBuffer, outIndex, bytesTillChange);
-
-                inIndex += bytesTillChange;
-                outIndex += bytesTillChange;
-
-                deletedBytesCount = (int) editInfo.getDeletedBytesCount();
-                insertedBytesCount = (int) editInfo.getInsertedBytesCount();
-
-                switch (editInfo.getEditType()) {
-                    case RepairCompareFilesEditInformation.QVCS_EDIT_DELETE:
-                        /*
-                         * Delete input
-                         */
-                        // Just skip over deleted bytes
-                        inIndex += deletedBytesCount;
-                        break;
-
-                    case RepairCompareFilesEditInformation.QVCS_EDIT_INSERT:
-                        /*
-                         * Insert edit lines
-                         */
-                        editStream.read(editedBuffer, outIndex, insertedBytesCount);
-                        outIndex += insertedBytesCount;
-                        break;
-
-                    case RepairCompareFilesEditInformation.QVCS_EDIT_REPLACE:
-                        /*
-                         * Replace input line with edit line.
-                         * First skip over the bytes to be replaced, then copy the replacing bytes from the edit file to the output
-                         * file.
-                         */
-                        inIndex += deletedBytesCount;
-
-                        editStream.read(editedBuffer, outIndex, insertedBytesCount);
-                        outIndex += insertedBytesCount;
-                        break;
-
-                    default:
-                        break;
-                }
-            }
-
-            // Copy the rest of the input "file" to the output "file".
-            int remainingBytes = originalData.length - inIndex;
-            if (remainingBytes > 0) {
-                System.arraycopy(originalData, inIndex, editedBuffer, outIndex, remainingBytes);
-                outIndex += remainingBytes;
-            }
-            byte[] returnedBuffer = new byte[outIndex];
-            System.arraycopy(editedBuffer, 0, returnedBuffer, 0, outIndex);
-            returnedFile = createTempFileFromBuffer(returnedBuffer);
-        } catch (ArrayIndexOutOfBoundsException | IOException e) {
-            LOGGER.warn(Utility.expandStackTraceToString(e));
-            LOGGER.warn(" editInfo.seekPosition: " + editInfo.getSeekPosition() + " originalData.length: " + originalData.length + " inIndex: "
-                    + inIndex + " editedBuffer.length: "
-                    + editedBuffer.length + " outIndex: " + outIndex + " bytesTillChange: " + bytesTillChange);
-            LOGGER.warn(e.getLocalizedMessage());
-            throw new QVCSRuntimeException("Unable to hydrate file: [{}}");
-        } finally {
-            try {
-                editStream.close();
-            } catch (IOException e) {
-                LOGGER.warn(Utility.expandStackTraceToString(e));
-            }
-        }
-        return returnedFile;
-    }
-
     /**
      * Find the child directoryLocation given the parent directory location id.
      * This algorithm searches for the deepest matching branch. For example, if
@@ -1480,25 +1455,9 @@ public final class SourceControlBehaviorManager implements TransactionParticipan
      * @return the child directoryLocation, or null if it does not exist.
      */
     public DirectoryLocation findChildDirectoryLocation(int branchId, Integer parentDirectoryLocationId, String directorySegmentName) {
-        DirectoryLocation directoryLocation = null;
-        try {
-            databaseManager.getConnection();
-            FunctionalQueriesDAO functionalQueriesDAO = new FunctionalQueriesDAOImpl(schemaName);
-            List<Branch> branchArray = functionalQueriesDAO.getBranchAncestryList(branchId);
-
-            // Look for a directory location, deepest to shallowest branch. The deepest one found 'wins'.
-            DirectoryLocationDAO directoryLocationDAO = new DirectoryLocationDAOImpl(schemaName);
-            for (int index = branchArray.size() - 1; index >= 0; index--) {
-                directoryLocation = directoryLocationDAO.findChildDirectoryLocation(branchArray.get(index).getId(), parentDirectoryLocationId, directorySegmentName);
-                if (directoryLocation != null) {
-                    break;
-                }
-            }
-        } catch (SQLException e) {
-            LOGGER.warn(e.getLocalizedMessage(), e);
-            throw new RuntimeException(e);
-        }
-        return directoryLocation;
+        FunctionalQueriesDAO functionalQueriesDAO = new FunctionalQueriesDAOImpl(schemaName);
+        List<Branch> branchArray = functionalQueriesDAO.getBranchAncestryList(branchId);
+        return DirectoryLocationIndex.getInstance(schemaName).findChildDirectoryLocation(branchArray, parentDirectoryLocationId, directorySegmentName);
     }
 
     /**
@@ -1508,24 +1467,9 @@ public final class SourceControlBehaviorManager implements TransactionParticipan
      * @return the DirectoryLocation, or null if not found.
      */
     public DirectoryLocation findDirectoryLocationByAppendedPath(int branchId, String appendedPath) {
-        DirectoryLocation directoryLocation;
-        String[] segments = appendedPath.split(java.io.File.separator);
-        BranchDAO branchDAO = new BranchDAOImpl(schemaName);
-        Branch branch = branchDAO.findById(branchId);
-        DirectoryDAO directoryDAO = new DirectoryDAOImpl(schemaName);
-        Directory rootDirectory = directoryDAO.findById(branch.getRootDirectoryId());
-        DirectoryLocationDAO directoryLocationDAO = new DirectoryLocationDAOImpl(schemaName);
-        directoryLocation = directoryLocationDAO.findByDirectoryId(rootDirectory.getId());
-        DirectoryLocation parentDirectoryLocation = directoryLocation;
-        if (appendedPath.length() > 0) {
-            for (String segment: segments) {
-                if (parentDirectoryLocation != null) {
-                    directoryLocation = findChildDirectoryLocation(branchId, parentDirectoryLocation.getId(), segment);
-                    parentDirectoryLocation = directoryLocation;
-                }
-            }
-        }
-        return directoryLocation;
+        FunctionalQueriesDAO functionalQueriesDAO = new FunctionalQueriesDAOImpl(schemaName);
+        List<Branch> branchArray = functionalQueriesDAO.getBranchAncestryList(branchId);
+        return DirectoryLocationIndex.getInstance(schemaName).findByAppendedPath(branchArray, appendedPath);
     }
 
     /**
@@ -1701,6 +1645,7 @@ public final class SourceControlBehaviorManager implements TransactionParticipan
                 Connection connection = DatabaseManager.getInstance().getConnection();
                 threadLocalCommitId.remove();
                 connection.commit();
+                DirectoryLocationIndex.publishChangesForAll(Thread.currentThread());
                 LOGGER.debug("\tCommitted work for commit id: {}.", commitId);
             } catch (SQLException e) {
                 LOGGER.warn("SQL exception: ", e);
@@ -1786,9 +1731,10 @@ public final class SourceControlBehaviorManager implements TransactionParticipan
         Map<Integer, ProvisionalDirectoryLocation> provisionalDirectoryLocationMapForUser = getProvisionalDirectoryByUserId(getUserId());
         DirectoryLocationDAO directoryLocationDAO = new DirectoryLocationDAOImpl(schemaName);
         Integer commitId = getCommitId(null, "Updating directory location for create.");
-        DirectoryLocation directoryLocation = directoryLocationDAO.findByBranchIdAndDirectoryId(filePromotionInfo.getPromotedFromBranchId(), directoryId);
+        DirectoryLocationIndex directoryLocationIndex = DirectoryLocationIndex.getInstance(schemaName);
+        DirectoryLocation directoryLocation = directoryLocationIndex.findByBranchIdAndDirectoryId(filePromotionInfo.getPromotedFromBranchId(), directoryId);
         if (directoryLocation != null) {
-            DirectoryLocation parentDirectoryLocation = directoryLocationDAO.findById(directoryLocation.getParentDirectoryLocationId());
+            DirectoryLocation parentDirectoryLocation = directoryLocationIndex.findById(directoryLocation.getParentDirectoryLocationId());
             if (Objects.equals(parentDirectoryLocation.getBranchId(), filePromotionInfo.getPromotedFromBranchId())) {
                 pdLocation = provisionalDirectoryLocationMapForUser.get(parentDirectoryLocation.getDirectoryId());
                 promoteChildDirectoryLocation(filePromotionInfo, pdLocation, parentDirectoryLocation.getDirectoryId(), toBeNotifiedList);
@@ -1798,4 +1744,15 @@ public final class SourceControlBehaviorManager implements TransactionParticipan
             toBeNotifiedList.add(pdLocation);
         }
     }
+
+    static class DeltaThreadFactory implements java.util.concurrent.ThreadFactory {
+        private final AtomicInteger threadCounter = new AtomicInteger(0);
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "RevisionDelta-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
 }
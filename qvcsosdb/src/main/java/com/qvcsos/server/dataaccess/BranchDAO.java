@@ -66,6 +66,12 @@ public interface BranchDAO {
 
     List<Branch> findProjectBranches(Integer id);
 
+    /**
+     * Find all the branches, including the deleted ones.
+     * @return all the branches, ordered by id.
+     */
+    List<Branch> findAll();
+
     Integer getChildBranchCount(Integer projectId, Integer parentBranchId);
 
     void getWriteableChildBranchIdList(Integer branchId, Map<Integer, String> branchMap);
@@ -16,6 +16,7 @@
 package com.qvcsos.server.dataaccess;
 
 import com.qvcsos.server.datamodel.Commit;
+import com.qvcsos.server.datamodel.CommitMetadata;
 import java.sql.SQLException;
 import java.util.List;
 
@@ -32,6 +33,13 @@ public interface CommitDAO {
      */
     Commit findById(Integer id);
 
+    /**
+     * Find the commits with the given ids, along with the name of the user who made each commit, in one query.
+     * @param commitIdList the ids of the commits to find.
+     * @return the metadata for the commits that were found, ordered by commit id.
+     */
+    List<CommitMetadata> findCommitMetadataByIdList(List<Integer> commitIdList);
+
     /**
      * Insert a row in the Commit table.
      *
@@ -17,6 +17,7 @@ package com.qvcsos.server.dataaccess;
 
 import com.qvcsos.server.datamodel.DirectoryLocation;
 import java.sql.SQLException;
+import java.util.List;
 
 /**
  *
@@ -28,6 +29,19 @@ public interface DirectoryLocationDAO {
 
     DirectoryLocation findByDirectoryId(Integer rootDirectoryId);
 
+    /**
+     * Find the directory locations of each of the given directories, along with all of their ancestor directory locations, in a single query.
+     * @param directoryIdList the directory ids.
+     * @return the directory locations, ordered by id; or an empty list if none are found.
+     */
+    List<DirectoryLocation> findByDirectoryIdListWithAncestors(List<Integer> directoryIdList);
+
+    /**
+     * Find all the directory locations.
+     * @return all the directory locations, ordered by id.
+     */
+    List<DirectoryLocation> findAll();
+
     /**
      * Find the directory location where we know the parent directory location id, and the branch id.
      * @param branchId the branch id.
@@ -47,6 +47,13 @@ public interface FileNameDAO {
      */
     FileName findByBranchIdAndFileId(Integer branchId, Integer fileId);
 
+    /**
+     * Find all the FileName records for each of the given files, using as few queries as we can.
+     * @param fileIdList the fileIds for the requested FileName records.
+     * @return the matching FileName records, ordered by fileId, and by descending branchId within each fileId; or an empty list if none are found.
+     */
+    List<FileName> findByFileIdList(List<Integer> fileIdList);
+
 
     /**
      * Find by fileId.
@@ -28,6 +28,13 @@ public interface FileNameHistoryDAO {
 
     FileNameHistory findByBranchListAndFileId(String branchList, Integer fileId);
 
+    /**
+     * Find all the FileNameHistory records for each of the given files, using as few queries as we can.
+     * @param fileIdList the fileIds for the requested FileNameHistory records.
+     * @return the matching FileNameHistory records, ordered by fileId, and by descending id within each fileId; or an empty list if none are found.
+     */
+    List<FileNameHistory> findByFileIdList(List<Integer> fileIdList);
+
     List<Integer> getFileNameIdListForReadOnlyBranch(String branchesToSearchString, int directoryId, Integer tagBranchCommitId);
 
     FileNameHistory findNewestFileNameOnBranchWithFileId(Integer branchId, Integer fileId);
@@ -19,6 +19,7 @@ import com.qvcsos.server.datamodel.Branch;
 import com.qvcsos.server.datamodel.FileRevision;
 import java.sql.SQLException;
 import java.util.List;
+import java.util.Map;
 
 /**
  *
@@ -39,6 +40,13 @@ public interface FileRevisionDAO {
      */
     FileRevision findNewestRevisionAllBranches(Integer fileId);
 
+    /**
+     * Find the newest revision (across all branches) for each of the given files, using as few queries as we can.
+     * @param fileIdList the files whose newest revisions we want.
+     * @return a map of fileId to newest file revision. A file with no revisions has no entry.
+     */
+    Map<Integer, FileRevision> findNewestRevisionsAllBranches(List<Integer> fileIdList);
+
     /**
      * Find the newest revision for a given branch and file.
      * @param branchId the branch id.
@@ -81,6 +89,23 @@ public interface FileRevisionDAO {
 
     List<Integer> findFileIdListForCommitId(Integer commitId);
 
+    /**
+     * Get the depth of the reverse delta chain that ends at the given revision: the largest number of reverse deltas that must be applied to the given
+     * revision's contents to hydrate a revision whose chain leads to it. A revision that no other revision's reverse delta refers to has a depth of 0.
+     * @param fileRevisionId the file revision id.
+     * @param maximumDepth stop walking the chain at this depth.
+     * @return the depth of the chain, no more than maximumDepth.
+     */
+    Integer getReverseDeltaChainDepth(Integer fileRevisionId, int maximumDepth);
+
+    /**
+     * Get the depth of the reverse delta chain that ends at each of the given revisions.
+     * @param fileRevisionIdList the file revision ids.
+     * @param maximumDepth stop walking each chain at this depth.
+     * @return a map of fileRevisionId to chain depth, each no more than maximumDepth.
+     */
+    Map<Integer, Integer> getReverseDeltaChainDepths(List<Integer> fileRevisionIdList, int maximumDepth);
+
     /**
      * Insert a fileRevision record.
      * @param fileRevision the file to insert.
@@ -100,6 +125,22 @@ public interface FileRevisionDAO {
      */
     Integer updateAncestorRevision(Integer id, Integer reverseDeltaRevisionId, byte[] reverseDeltaScript) throws SQLException;
 
+    /**
+     * Insert a batch of fileRevision records with a single JDBC batch.
+     * @param fileRevisionList the file revisions to insert.
+     * @return the ids of the inserted file revisions, in the same order as the list.
+     * @throws SQLException thrown if there is a problem.
+     */
+    List<Integer> insertBatch(List<FileRevision> fileRevisionList) throws SQLException;
+
+    /**
+     * Update a batch of ancestor revisions with a single JDBC batch. Each element identifies the ancestor by its id, and carries its reverse delta
+     * revision id, and the reverse delta script as its revision data.
+     * @param ancestorRevisionList the ancestor revisions to update.
+     * @throws SQLException thrown if there is a problem.
+     */
+    void updateAncestorRevisionBatch(List<FileRevision> ancestorRevisionList) throws SQLException;
+
     boolean markPromoted(Integer fileFevisionId, Integer commitId) throws SQLException;
 
 }
@@ -18,6 +18,8 @@ package com.qvcsos.server.dataaccess;
 import com.qumasoft.qvcslib.DirectoryCoordinate;
 import com.qumasoft.qvcslib.DirectoryCoordinateIds;
 import com.qumasoft.qvcslib.LogfileInfo;
+import com.qumasoft.qvcslib.RevisionHistoryFilter;
+import com.qumasoft.qvcslib.RevisionHistoryPage;
 import com.qumasoft.qvcslib.SkinnyLogfileInfo;
 import com.qumasoft.qvcslib.TagInfoData;
 import com.qvcsos.server.datamodel.Branch;
@@ -25,6 +27,7 @@ import com.qvcsos.server.datamodel.Commit;
 import com.qvcsos.server.datamodel.DirectoryLocation;
 import com.qvcsos.server.datamodel.FileRevision;
 import java.util.List;
+import java.util.Map;
 
 /**
  *
@@ -84,6 +87,28 @@ public interface FunctionalQueriesDAO {
 
     List<DirectoryLocation> findChildDirectoryLocations(List<Branch> branchArray, Integer parentDirectoryLocationId);
 
+    /**
+     * Find all the directory locations beneath the given directory location. The tree is read a level at a time, so the number of queries is proportional
+     * to the depth of the tree rather than to the number of directories in it. The branch type's pruning and bounding commit rules are applied the same
+     * way they are when the children of a single directory are requested.
+     *
+     * @param branch the branch.
+     * @param branchArray the branch ancestry list for the branch.
+     * @param rootDirectoryLocationId the directory location at the top of the subtree.
+     * @param rootAppendedPath the appended path of the directory location at the top of the subtree.
+     * @return a map of appended path to directory location, in depth first order. The root directory location is not included.
+     */
+    Map<String, DirectoryLocation> findDirectoryLocationSubtree(Branch branch, List<Branch> branchArray, Integer rootDirectoryLocationId, String rootAppendedPath);
+
+    /**
+     * Get the skinny info for the files in a collection of Trunk directories, using a single query for (up to) a large batch of directories.
+     *
+     * @param branchId the Trunk branch id.
+     * @param directoryIdList the directory ids.
+     * @return a map of directory id to the list of skinny info for that directory. Directories that contain no files are not in the map.
+     */
+    Map<Integer, List<SkinnyLogfileInfo>> getSkinnyLogfileInfoForTrunkDirectories(Integer branchId, List<Integer> directoryIdList);
+
     Integer getChildBranchCount(String projectName, String branchName);
 
     /**
@@ -112,6 +137,14 @@ public interface FunctionalQueriesDAO {
      */
     String buildBranchesToSearchString(List<Branch> branchArray);
 
+    /**
+     * Get the string of branch id's for the ancestry of the given branch. This is the same as building the string from
+     * {@link #getBranchAncestryList(Integer)}, but does not need to look up the ancestry.
+     * @param branchId the branch id.
+     * @return a String suitable for use in formatting a query.
+     */
+    String getBranchesToSearchString(Integer branchId);
+
     /**
      * Build the string of file id's from the array of file ids.
      * @param fileIdArray the array of file ids.
@@ -138,6 +171,20 @@ public interface FunctionalQueriesDAO {
      */
     LogfileInfo getAllLogfileInfo(DirectoryCoordinate dc, String shortWorkfileName, Integer fileId);
 
+    /**
+     * Get one page of the revision history for the given fileId, newest revision first.
+     *
+     * @param dc the directory coordinate.
+     * @param fileId the file id.
+     * @param allBranchesFlag true to page through the revisions on all branches; false for the revisions visible on the directory coordinate's branch.
+     * @param startAfterFileRevisionId the page starts after this file revision; null for the first page.
+     * @param pageSize the maximum number of revisions on the page.
+     * @param filter the filter that revisions must pass; may be null.
+     * @return the page of revision history, or null if the directory coordinate is not found.
+     */
+    RevisionHistoryPage getRevisionHistoryPage(DirectoryCoordinate dc, Integer fileId, boolean allBranchesFlag, Integer startAfterFileRevisionId, int pageSize,
+            RevisionHistoryFilter filter);
+
     /**
      * Get the list of skinny info for a branch's cemetery.
      *
@@ -15,6 +15,7 @@
  */
 package com.qvcsos.server.dataaccess.impl;
 
+import com.qvcsos.server.BranchTopologyCache;
 import com.qvcsos.server.DatabaseManager;
 import com.qvcsos.server.dataaccess.BranchDAO;
 import com.qvcsos.server.datamodel.Branch;
@@ -52,6 +53,7 @@ public class BranchDAOImpl implements BranchDAO {
     private final String findById;
     private final String findByProjectIdAndBranchName;
     private final String findProjectBranches;
+    private final String findAll;
 
     private final String getWriteableChildBranchIdList;
     private final String getChildBranchCount;
@@ -66,6 +68,7 @@ public class BranchDAOImpl implements BranchDAO {
         this.findById = selectSegment + this.schemaName + ".BRANCH WHERE ID = ?";
         this.findByProjectIdAndBranchName = selectSegment + this.schemaName + ".BRANCH WHERE PROJECT_ID = ? AND BRANCH_NAME = ? AND DELETED_FLAG = FALSE";
         this.findProjectBranches = selectSegment + this.schemaName + ".BRANCH WHERE PROJECT_ID = ? AND DELETED_FLAG = FALSE ORDER BY BRANCH_TYPE_ID, ID";
+        this.findAll = selectSegment + this.schemaName + ".BRANCH ORDER BY ID";
 
         this.getWriteableChildBranchIdList = selectSegment + this.schemaName + ".BRANCH WHERE PARENT_BRANCH_ID = ? AND BRANCH_TYPE_ID = 2 AND DELETED_FLAG = FALSE ORDER BY ID";
         this.getChildBranchCount = "SELECT COUNT(*) FROM " + this.schemaName + ".BRANCH WHERE PROJECT_ID = ? AND PARENT_BRANCH_ID = ? AND DELETED_FLAG = FALSE";
@@ -234,6 +237,53 @@ public class BranchDAOImpl implements BranchDAO {
         return branchList;
     }
 
+    @Override
+    public List<Branch> findAll() {
+        List<Branch> branchList = new ArrayList<>();
+        ResultSet rs = null;
+        PreparedStatement preparedStatement = null;
+        try {
+            Connection connection = DatabaseManager.getInstance().getConnection();
+            preparedStatement = connection.prepareStatement(this.findAll, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+
+            rs = preparedStatement.executeQuery();
+            while (rs.next()) {
+                Integer id = rs.getInt(ID_RESULT_SET_INDEX);
+                Integer fetchedParentBranchId = null;
+                Object parentBranchIdObject = rs.getObject(PARENT_BRANCH_ID_RESULT_SET_INDEX);
+                if (parentBranchIdObject != null) {
+                    fetchedParentBranchId = rs.getInt(PARENT_BRANCH_ID_RESULT_SET_INDEX);
+                }
+                Integer fetchedTagId = null;
+                Object tagIdObject = rs.getObject(TAG_ID_RESULT_SET_INDEX);
+                if (tagIdObject != null) {
+                    fetchedTagId = rs.getInt(TAG_ID_RESULT_SET_INDEX);
+                }
+
+                Branch branch = new Branch();
+                branch.setId(id);
+                branch.setParentBranchId(fetchedParentBranchId);
+                branch.setProjectId(rs.getInt(PROJECT_ID_RESULT_SET_INDEX));
+                branch.setRootDirectoryId(rs.getInt(ROOT_DIRECTORY_ID_RESULT_SET_INDEX));
+                branch.setCommitId(rs.getInt(COMMIT_ID_RESULT_SET_INDEX));
+                branch.setBranchName(rs.getString(BRANCH_NAME_RESULT_SET_INDEX));
+                branch.setBranchTypeId(rs.getInt(BRANCH_TYPE_ID_RESULT_SET_INDEX));
+                branch.setTagId(fetchedTagId);
+                branch.setDeletedFlag(rs.getBoolean(DELETED_FLAG_RESULT_SET_INDEX));
+                branchList.add(branch);
+            }
+        } catch (SQLException e) {
+            LOGGER.error("BranchDAOImpl: SQL exception in findAll", e);
+            throw new RuntimeException(e);
+        } catch (IllegalStateException e) {
+            LOGGER.error("BranchDAOImpl: exception in findAll", e);
+            throw e;
+        } finally {
+            DAOHelper.closeDbResources(LOGGER, rs, preparedStatement);
+        }
+        return branchList;
+    }
+
     @Override
     public Integer getChildBranchCount(Integer projectId, Integer parentBranchId) {
         Integer childBranchCount = 0;
@@ -290,6 +340,7 @@ public class BranchDAOImpl implements BranchDAO {
             rs = preparedStatement.executeQuery();
             if (rs.next()) {
                 returnId = rs.getInt(1);
+                BranchTopologyCache.getInstance(schemaName).branchChanged();
             }
         } catch (IllegalStateException e) {
             LOGGER.error("BranchDAOImpl: exception in insert", e);
@@ -314,6 +365,7 @@ public class BranchDAOImpl implements BranchDAO {
             rs = preparedStatement.executeQuery();
             if (rs.next()) {
                 returnedId = rs.getInt(1);
+                BranchTopologyCache.getInstance(schemaName).branchChanged();
             }
         } catch (IllegalStateException e) {
             LOGGER.error("BranchDAOImpl: exception in delete", e);
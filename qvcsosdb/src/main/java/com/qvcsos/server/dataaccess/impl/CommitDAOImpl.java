@@ -15,9 +15,11 @@
  */
 package com.qvcsos.server.dataaccess.impl;
 
+import com.qvcsos.server.CommitMetadataCache;
 import com.qvcsos.server.DatabaseManager;
 import com.qvcsos.server.dataaccess.CommitDAO;
 import com.qvcsos.server.datamodel.Commit;
+import com.qvcsos.server.datamodel.CommitMetadata;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -42,9 +44,12 @@ public class CommitDAOImpl implements CommitDAO {
     private static final int USER_ID_RESULT_SET_INDEX = 2;
     private static final int COMMIT_DATE_RESULT_SET_INDEX = 3;
     private static final int COMMIT_MESSAGE_RESULT_SET_INDEX = 4;
+    private static final int USER_NAME_RESULT_SET_INDEX = 5;
+    private static final int MAXIMUM_IDS_PER_QUERY = 1000;
 
     private final String schemaName;
     private final String findById;
+    private final String findCommitMetadataByIdList;
     private final String getCommitList;
     private final String insertCommit;
     private final String updateCommitMessage;
@@ -54,6 +59,8 @@ public class CommitDAOImpl implements CommitDAO {
         String selectSegment = "SELECT ID, USER_ID, COMMIT_DATE, COMMIT_MESSAGE FROM ";
 
         this.findById = selectSegment + this.schemaName + ".COMIT WHERE ID = ?";
+        this.findCommitMetadataByIdList = "SELECT C.ID, C.USER_ID, C.COMMIT_DATE, C.COMMIT_MESSAGE, U.USER_NAME FROM " + this.schemaName + ".COMIT C, "
+                + this.schemaName + ".USER U WHERE C.USER_ID = U.ID AND C.ID IN (%s) ORDER BY C.ID";
         this.getCommitList = "SELECT C.ID, C.USER_ID, C.COMMIT_DATE, C.COMMIT_MESSAGE FROM " + this.schemaName + ".COMIT C WHERE C.ID IN "
                 + "(SELECT DISTINCT FR.COMMIT_ID FROM " + this.schemaName + ".FILE_REVISION FR where (FR.BRANCH_ID in (%s) AND FR.COMMIT_ID >= ?) "
                 + " OR (FR.BRANCH_ID IN (%s) AND FR.COMMIT_ID <= ?) order by FR.COMMIT_ID DESC LIMIT 200) ORDER BY C.ID";
@@ -95,6 +102,39 @@ public class CommitDAOImpl implements CommitDAO {
         return commit;
     }
 
+    @Override
+    public List<CommitMetadata> findCommitMetadataByIdList(List<Integer> commitIdList) {
+        List<CommitMetadata> commitMetadataList = new ArrayList<>();
+        for (int start = 0; start < commitIdList.size(); start += MAXIMUM_IDS_PER_QUERY) {
+            List<Integer> commitIdBatch = commitIdList.subList(start, Math.min(start + MAXIMUM_IDS_PER_QUERY, commitIdList.size()));
+            ResultSet resultSet = null;
+            PreparedStatement preparedStatement = null;
+            try {
+                Connection connection = DatabaseManager.getInstance().getConnection();
+                String queryString = String.format(this.findCommitMetadataByIdList, buildIdsToSearchString(commitIdBatch));
+                preparedStatement = connection.prepareStatement(queryString, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+
+                resultSet = preparedStatement.executeQuery();
+                while (resultSet.next()) {
+                    Integer fetchedId = resultSet.getInt(ID_RESULT_SET_INDEX);
+                    Integer fetchedUserId = resultSet.getInt(USER_ID_RESULT_SET_INDEX);
+                    Timestamp fetchedCommitDate = resultSet.getTimestamp(COMMIT_DATE_RESULT_SET_INDEX);
+                    String fetchedCommitMessage = resultSet.getString(COMMIT_MESSAGE_RESULT_SET_INDEX);
+                    String fetchedUserName = resultSet.getString(USER_NAME_RESULT_SET_INDEX);
+                    commitMetadataList.add(new CommitMetadata(fetchedId, fetchedUserId, fetchedUserName, fetchedCommitDate, fetchedCommitMessage));
+                }
+            } catch (SQLException e) {
+                LOGGER.error("CommitDAOImpl: SQL exception in findCommitMetadataByIdList", e);
+            } catch (IllegalStateException e) {
+                LOGGER.error("CommitDAOImpl: exception in findCommitMetadataByIdList", e);
+                throw e;
+            } finally {
+                DAOHelper.closeDbResources(LOGGER, resultSet, preparedStatement);
+            }
+        }
+        return commitMetadataList;
+    }
+
     @Override
     public List<Commit> getCommitList(Integer commitId, String branchesToSearch) {
         List<Commit> commitList = new ArrayList<>();
@@ -170,6 +210,7 @@ public class CommitDAOImpl implements CommitDAO {
             rs = preparedStatement.executeQuery();
             if (rs.next()) {
                 returnId = rs.getInt(1);
+                CommitMetadataCache.getInstance(schemaName).commitMessageChanged(commitId);
             }
         } catch (IllegalStateException e) {
             LOGGER.error("CommitDAOImpl: exception in updateCommitMessage", e);
@@ -180,4 +221,14 @@ public class CommitDAOImpl implements CommitDAO {
         return returnId;
     }
 
+    private String buildIdsToSearchString(List<Integer> idList) {
+        StringBuilder idsToSearch = new StringBuilder();
+        for (int i = 0; i < idList.size(); i++) {
+            idsToSearch.append(idList.get(i));
+            if (i < (idList.size() - 1)) {
+                idsToSearch.append(",");
+            }
+        }
+        return idsToSearch.toString();
+    }
 }
@@ -16,12 +16,15 @@
 package com.qvcsos.server.dataaccess.impl;
 
 import com.qvcsos.server.DatabaseManager;
+import com.qvcsos.server.DirectoryLocationIndex;
 import com.qvcsos.server.dataaccess.DirectoryLocationDAO;
 import com.qvcsos.server.datamodel.DirectoryLocation;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -45,9 +48,16 @@ public class DirectoryLocationDAOImpl implements DirectoryLocationDAO {
     private static final int DIRECTORY_SEGMENT_NAME_RESULT_SET_INDEX = 7;
     private static final int DELETED_FLAG_RESULT_SET_INDEX = 8;
 
+    /**
+     * The most ids we put in a single IN (...) clause.
+     */
+    private static final int MAXIMUM_IDS_PER_QUERY = 1000;
+
     private final String schemaName;
     private final String findById;
     private final String findByDirectoryId;
+    private final String findByDirectoryIdListWithAncestors;
+    private final String findAll;
     private final String findChildDirectoryLocation;
     private final String findByBranchIdAndDirectoryId;
     private final String promoteToParentBranch;
@@ -63,6 +73,12 @@ public class DirectoryLocationDAOImpl implements DirectoryLocationDAO {
 
         this.findById = selectSegment + this.schemaName + ".DIRECTORY_LOCATION WHERE ID = ?";
         this.findByDirectoryId = selectSegment + this.schemaName + ".DIRECTORY_LOCATION WHERE DIRECTORY_ID = ?";
+        String columnList = "ID, DIRECTORY_ID, BRANCH_ID, PARENT_DIRECTORY_LOCATION_ID, CREATED_FOR_REASON, COMMIT_ID, DIRECTORY_SEGMENT_NAME, DELETED_FLAG";
+        this.findByDirectoryIdListWithAncestors = "WITH RECURSIVE DL_TREE AS (" + selectSegment + this.schemaName + ".DIRECTORY_LOCATION WHERE DIRECTORY_ID IN (%s) "
+                + "UNION SELECT P.ID, P.DIRECTORY_ID, P.BRANCH_ID, P.PARENT_DIRECTORY_LOCATION_ID, P.CREATED_FOR_REASON, P.COMMIT_ID, P.DIRECTORY_SEGMENT_NAME, "
+                + "P.DELETED_FLAG FROM " + this.schemaName + ".DIRECTORY_LOCATION P, DL_TREE C WHERE P.ID = C.PARENT_DIRECTORY_LOCATION_ID) "
+                + "SELECT " + columnList + " FROM DL_TREE ORDER BY ID";
+        this.findAll = selectSegment + this.schemaName + ".DIRECTORY_LOCATION ORDER BY ID";
         this.findChildDirectoryLocation = selectSegment + this.schemaName + ".DIRECTORY_LOCATION WHERE BRANCH_ID = ? AND PARENT_DIRECTORY_LOCATION_ID = ? AND DIRECTORY_SEGMENT_NAME = ?";
         this.findByBranchIdAndDirectoryId = selectSegment + this.schemaName + ".DIRECTORY_LOCATION WHERE BRANCH_ID = ? AND DIRECTORY_ID = ?";
 
@@ -125,6 +141,59 @@ public class DirectoryLocationDAOImpl implements DirectoryLocationDAO {
         return directoryLocation;
     }
 
+    @Override
+    public List<DirectoryLocation> findByDirectoryIdListWithAncestors(List<Integer> directoryIdList) {
+        List<DirectoryLocation> directoryLocationList = new ArrayList<>();
+        for (int start = 0; start < directoryIdList.size(); start += MAXIMUM_IDS_PER_QUERY) {
+            List<Integer> directoryIdBatch = directoryIdList.subList(start, Math.min(start + MAXIMUM_IDS_PER_QUERY, directoryIdList.size()));
+            ResultSet resultSet = null;
+            PreparedStatement preparedStatement = null;
+            try {
+                Connection connection = DatabaseManager.getInstance().getConnection();
+                String queryString = String.format(this.findByDirectoryIdListWithAncestors, buildIdsToSearchString(directoryIdBatch));
+                preparedStatement = connection.prepareStatement(queryString, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+
+                resultSet = preparedStatement.executeQuery();
+                while (resultSet.next()) {
+                    directoryLocationList.add(getDirectoryLocationFromResultSet(resultSet));
+                }
+            } catch (SQLException e) {
+                LOGGER.error("DirectoryLocationDAOImpl: SQL exception in findByDirectoryIdListWithAncestors", e);
+            } catch (IllegalStateException e) {
+                LOGGER.error("DirectoryLocationDAOImpl: exception in findByDirectoryIdListWithAncestors", e);
+                throw e;
+            } finally {
+                DAOHelper.closeDbResources(LOGGER, resultSet, preparedStatement);
+            }
+        }
+        return directoryLocationList;
+    }
+
+    @Override
+    public List<DirectoryLocation> findAll() {
+        List<DirectoryLocation> directoryLocationList = new ArrayList<>();
+        ResultSet resultSet = null;
+        PreparedStatement preparedStatement = null;
+        try {
+            Connection connection = DatabaseManager.getInstance().getConnection();
+            preparedStatement = connection.prepareStatement(this.findAll, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+
+            resultSet = preparedStatement.executeQuery();
+            while (resultSet.next()) {
+                directoryLocationList.add(getDirectoryLocationFromResultSet(resultSet));
+            }
+        } catch (SQLException e) {
+            LOGGER.error("DirectoryLocationDAOImpl: SQL exception in findAll", e);
+            throw new RuntimeException(e);
+        } catch (IllegalStateException e) {
+            LOGGER.error("DirectoryLocationDAOImpl: exception in findAll", e);
+            throw e;
+        } finally {
+            DAOHelper.closeDbResources(LOGGER, resultSet, preparedStatement);
+        }
+        return directoryLocationList;
+    }
+
     @Override
     public DirectoryLocation findChildDirectoryLocation(Integer branchId, Integer parentDirectoryLocationId, String segment) {
         DirectoryLocation directoryLocation = null;
@@ -210,6 +279,7 @@ public class DirectoryLocationDAOImpl implements DirectoryLocationDAO {
             rs = preparedStatement.executeQuery();
             if (rs.next()) {
                 returnId = rs.getInt(1);
+                DirectoryLocationIndex.getInstance(schemaName).inserted(returnId, directoryLocation);
             }
         } catch (IllegalStateException e) {
             LOGGER.error("DirectoryLocationDAOImpl: exception in insert", e);
@@ -231,6 +301,7 @@ public class DirectoryLocationDAOImpl implements DirectoryLocationDAO {
             preparedStatement.setInt(2, id);
 
             returnFlag = preparedStatement.execute();
+            DirectoryLocationIndex.getInstance(schemaName).deleted(id, commitId);
         } catch (IllegalStateException e) {
             LOGGER.error("DirectoryLocationDAOImpl: exception in delete", e);
             throw e;
@@ -252,6 +323,7 @@ public class DirectoryLocationDAOImpl implements DirectoryLocationDAO {
             preparedStatement.setInt(3, id);
 
             returnFlag = preparedStatement.execute();
+            DirectoryLocationIndex.getInstance(schemaName).moved(id, commitId, targetParentDirectoryLocationId);
         } catch (IllegalStateException e) {
             LOGGER.error("DirectoryLocationDAOImpl: exception in move", e);
             throw e;
@@ -275,6 +347,7 @@ public class DirectoryLocationDAOImpl implements DirectoryLocationDAO {
             // </editor-fold>
 
             returnFlag = preparedStatement.execute();
+            DirectoryLocationIndex.getInstance(schemaName).renamed(id, commitId, newDirectoryName);
         } catch (IllegalStateException e) {
             LOGGER.error("DirectoryLocationDAOImpl: exception in rename", e);
             throw e;
@@ -299,6 +372,7 @@ public class DirectoryLocationDAOImpl implements DirectoryLocationDAO {
                 // </editor-fold>
 
                 preparedStatement.execute();
+                DirectoryLocationIndex.getInstance(schemaName).promoted(directoryLocationId, promotedToBranchId, commitId);
             } catch (IllegalStateException e) {
                 LOGGER.error("DirectoryLocationDAOImpl: exception in rename", e);
                 throw e;
@@ -308,6 +382,17 @@ public class DirectoryLocationDAOImpl implements DirectoryLocationDAO {
         }
     }
 
+    private String buildIdsToSearchString(List<Integer> idList) {
+        StringBuilder idsToSearch = new StringBuilder();
+        for (int i = 0; i < idList.size(); i++) {
+            idsToSearch.append(idList.get(i));
+            if (i < (idList.size() - 1)) {
+                idsToSearch.append(",");
+            }
+        }
+        return idsToSearch.toString();
+    }
+
     private DirectoryLocation getDirectoryLocationFromResultSet(ResultSet resultSet) throws SQLException {
         Integer directoryLocationId = resultSet.getInt(ID_RESULT_SET_INDEX);
         Integer directoryId = resultSet.getInt(DIRECTORY_ID_RESULT_SET_INDEX);
@@ -49,9 +49,15 @@ public class FileNameDAOImpl implements FileNameDAO {
     private static final int PROMOTED_FLAG_RESULT_SET_INDEX = 8;
     private static final int DELETED_FLAG_RESULT_SET_INDEX = 9;
 
+    /**
+     * The most ids we put in a single IN (...) clause.
+     */
+    private static final int MAXIMUM_IDS_PER_QUERY = 1000;
+
     private final String schemaName;
     private final String findById;
     private final String findByFileId;
+    private final String findByFileIdList;
     private final String findByBranchIdAndFileId;
     private final String findByBranchListAndFileId;
     private final String findByDirectoryIdAndFileName;
@@ -80,6 +86,7 @@ public class FileNameDAOImpl implements FileNameDAO {
 
         this.findById = selectSegment + this.schemaName + ".FILE_NAME WHERE ID = ?";
         this.findByFileId = selectSegment + this.schemaName + ".FILE_NAME WHERE FILE_ID = ? ORDER BY BRANCH_ID DESC";
+        this.findByFileIdList = selectSegment + this.schemaName + ".FILE_NAME WHERE FILE_ID IN (%s) ORDER BY FILE_ID, BRANCH_ID DESC, ID";
         this.findByBranchIdAndFileId = selectSegment + this.schemaName + ".FILE_NAME WHERE BRANCH_ID = ? AND FILE_ID = ?";
         this.findByBranchListAndFileId = selectSegment + this.schemaName + ".FILE_NAME WHERE BRANCH_ID IN (%s) AND FILE_ID = ? ORDER BY BRANCH_ID DESC LIMIT 1";
         this.findByDirectoryIdAndFileName = selectSegment + this.schemaName + ".FILE_NAME WHERE DIRECTORY_ID = ? AND FILE_NAME = ?";
@@ -162,6 +169,34 @@ public class FileNameDAOImpl implements FileNameDAO {
         return fileNameList;
     }
 
+    @Override
+    public List<FileName> findByFileIdList(List<Integer> fileIdList) {
+        List<FileName> fileNameList = new ArrayList<>();
+        for (int start = 0; start < fileIdList.size(); start += MAXIMUM_IDS_PER_QUERY) {
+            List<Integer> fileIdBatch = fileIdList.subList(start, Math.min(start + MAXIMUM_IDS_PER_QUERY, fileIdList.size()));
+            ResultSet resultSet = null;
+            PreparedStatement preparedStatement = null;
+            try {
+                Connection connection = DatabaseManager.getInstance().getConnection();
+                String queryString = String.format(this.findByFileIdList, buildIdsToSearchString(fileIdBatch));
+                preparedStatement = connection.prepareStatement(queryString, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+
+                resultSet = preparedStatement.executeQuery();
+                while (resultSet.next()) {
+                    fileNameList.add(getFileNameFromResultSet(resultSet));
+                }
+            } catch (SQLException e) {
+                LOGGER.error("FileNameDAOImpl: SQL exception in findByFileIdList", e);
+            } catch (IllegalStateException e) {
+                LOGGER.error("FileNameDAOImpl: exception in findByFileIdList", e);
+                throw e;
+            } finally {
+                DAOHelper.closeDbResources(LOGGER, resultSet, preparedStatement);
+            }
+        }
+        return fileNameList;
+    }
+
     @Override
     public FileName findByBranchIdAndFileId(Integer branchId, Integer fileId) {
         FileName fileName = null;
@@ -661,6 +696,17 @@ public class FileNameDAOImpl implements FileNameDAO {
         return returnFlag;
     }
 
+    private String buildIdsToSearchString(List<Integer> idList) {
+        StringBuilder idsToSearch = new StringBuilder();
+        for (int i = 0; i < idList.size(); i++) {
+            idsToSearch.append(idList.get(i));
+            if (i < (idList.size() - 1)) {
+                idsToSearch.append(",");
+            }
+        }
+        return idsToSearch.toString();
+    }
+
     private FileName getFileNameFromResultSet(ResultSet resultSet) throws SQLException {
         Integer fetchedId = resultSet.getInt(ID_RESULT_SET_INDEX);
         Integer fetchedBranchId = resultSet.getInt(BRANCH_ID_RESULT_SET_INDEX);
@@ -49,9 +49,15 @@ public class FileNameHistoryDAOImpl implements FileNameHistoryDAO {
     private static final int FILE_NAME_RESULT_SET_INDEX = 8;
     private static final int DELETED_FLAG_RESULT_SET_INDEX = 9;
 
+    /**
+     * The most ids we put in a single IN (...) clause.
+     */
+    private static final int MAXIMUM_IDS_PER_QUERY = 1000;
+
     private final String schemaName;
     private final String findByFileIdAndCommitId;
     private final String findByBranchListAndFileId;
+    private final String findByFileIdList;
     private final String findNewestFileNameOnBranchWithFileId;
 
     private final String getFileNameIdListForReadOnlyBranch;
@@ -62,6 +68,7 @@ public class FileNameHistoryDAOImpl implements FileNameHistoryDAO {
         String selectSegment = "SELECT ID, FILE_NAME_ID, BRANCH_ID, DIRECTORY_ID, FILE_ID, CREATED_FOR_REASON, COMMIT_ID, FILE_NAME, DELETED_FLAG FROM ";
         this.findByFileIdAndCommitId = selectSegment + this.schemaName + ".FILE_NAME_HISTORY WHERE FILE_ID = ? AND COMMIT_ID <= ? ORDER BY ID DESC LIMIT 1";
         this.findByBranchListAndFileId = selectSegment + this.schemaName + ".FILE_NAME_HISTORY WHERE BRANCH_ID IN (%s) AND FILE_ID = ? ORDER BY BRANCH_ID DESC, ID DESC LIMIT 1";
+        this.findByFileIdList = selectSegment + this.schemaName + ".FILE_NAME_HISTORY WHERE FILE_ID IN (%s) ORDER BY FILE_ID, ID DESC";
         this.findNewestFileNameOnBranchWithFileId = selectSegment + this.schemaName + ".FILE_NAME_HISTORY WHERE BRANCH_ID = ? AND FILE_ID = ? ORDER BY ID DESC LIMIT 1";
 
         this.getFileNameIdListForReadOnlyBranch = "SELECT FN.FILE_NAME_ID, FN.FILE_ID, FN.DIRECTORY_ID, FN.FILE_NAME FROM " + this.schemaName
@@ -166,6 +173,34 @@ public class FileNameHistoryDAOImpl implements FileNameHistoryDAO {
         return fileNameHistory;
     }
 
+    @Override
+    public List<FileNameHistory> findByFileIdList(List<Integer> fileIdList) {
+        List<FileNameHistory> fileNameHistoryList = new ArrayList<>();
+        for (int start = 0; start < fileIdList.size(); start += MAXIMUM_IDS_PER_QUERY) {
+            List<Integer> fileIdBatch = fileIdList.subList(start, Math.min(start + MAXIMUM_IDS_PER_QUERY, fileIdList.size()));
+            ResultSet resultSet = null;
+            PreparedStatement preparedStatement = null;
+            try {
+                Connection connection = DatabaseManager.getInstance().getConnection();
+                String queryString = String.format(this.findByFileIdList, buildIdsToSearchString(fileIdBatch));
+                preparedStatement = connection.prepareStatement(queryString, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+
+                resultSet = preparedStatement.executeQuery();
+                while (resultSet.next()) {
+                    fileNameHistoryList.add(getFileNameHistoryFromResultSet(resultSet));
+                }
+            } catch (SQLException e) {
+                LOGGER.error("FileNameHistoryDAOImpl: SQL exception in findByFileIdList", e);
+            } catch (IllegalStateException e) {
+                LOGGER.error("FileNameHistoryDAOImpl: exception in findByFileIdList", e);
+                throw e;
+            } finally {
+                DAOHelper.closeDbResources(LOGGER, resultSet, preparedStatement);
+            }
+        }
+        return fileNameHistoryList;
+    }
+
     @Override
     public FileNameHistory findNewestFileNameOnBranchWithFileId(Integer branchId, Integer fileId) {
         FileNameHistory fileNameHistory = null;
@@ -252,4 +287,35 @@ public class FileNameHistoryDAOImpl implements FileNameHistoryDAO {
         }
         return fileNameIdList;
     }
+
+    private String buildIdsToSearchString(List<Integer> idList) {
+        StringBuilder idsToSearch = new StringBuilder();
+        for (int i = 0; i < idList.size(); i++) {
+            idsToSearch.append(idList.get(i));
+            if (i < (idList.size() - 1)) {
+                idsToSearch.append(",");
+            }
+        }
+        return idsToSearch.toString();
+    }
+
+    private FileNameHistory getFileNameHistoryFromResultSet(ResultSet resultSet) throws SQLException {
+        Integer fetchedCreatedForReason = null;
+        Object fetchedCreatedForReasonObject = resultSet.getObject(CREATED_FOR_REASON_RESULT_SET_INDEX);
+        if (fetchedCreatedForReasonObject != null) {
+            fetchedCreatedForReason = resultSet.getInt(CREATED_FOR_REASON_RESULT_SET_INDEX);
+        }
+
+        FileNameHistory fileNameHistory = new FileNameHistory();
+        fileNameHistory.setId(resultSet.getInt(ID_RESULT_SET_INDEX));
+        fileNameHistory.setFileNameId(resultSet.getInt(FILE_NAME_ID_RESULT_SET_INDEX));
+        fileNameHistory.setBranchId(resultSet.getInt(BRANCH_ID_RESULT_SET_INDEX));
+        fileNameHistory.setDirectoryId(resultSet.getInt(DIRECTORY_ID_RESULT_SET_INDEX));
+        fileNameHistory.setFileId(resultSet.getInt(FILE_ID_RESULT_SET_INDEX));
+        fileNameHistory.setCreatedForReason(fetchedCreatedForReason);
+        fileNameHistory.setCommitId(resultSet.getInt(COMMIT_ID_RESULT_SET_INDEX));
+        fileNameHistory.setFileName(resultSet.getString(FILE_NAME_RESULT_SET_INDEX));
+        fileNameHistory.setDeletedFlag(resultSet.getBoolean(DELETED_FLAG_RESULT_SET_INDEX));
+        return fileNameHistory;
+    }
 }
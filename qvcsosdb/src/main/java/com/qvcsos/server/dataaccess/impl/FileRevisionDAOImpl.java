@@ -54,6 +54,11 @@ public class FileRevisionDAOImpl implements FileRevisionDAO {
     private static final int REVISION_SIZE_RESULT_SET_INDEX = 10;
     private static final int REVISION_DATA_RESULT_SET_INDEX = 11;
 
+    /**
+     * The most ids we put in a single IN (...) clause.
+     */
+    private static final int MAXIMUM_IDS_PER_QUERY = 1000;
+
     private final String schemaName;
 
     private final String findById;
@@ -61,15 +66,20 @@ public class FileRevisionDAOImpl implements FileRevisionDAO {
     private final String findAllFileRevisions;
     private final String findNewestRevisionOnBranch;
     private final String findNewestRevisionAllBranches;
+    private final String findNewestRevisionsAllBranches;
     private final String findNewestBranchRevision;
     private final String findPromotionCandidates;
     private final String findNewestPromotedRevision;
     private final String findByBranchIdAndAncestorRevisionAndFileId;
     private final String findCommonAncestorRevision;
     private final String findFileIdListForCommitId;
+    private final String getReverseDeltaChainDepth;
+    private final String getReverseDeltaChainDepths;
 
     private final String insertFileRevision;
+    private final String insertFileRevisionBatch;
     private final String updateAncestorRevision;
+    private final String updateAncestorRevisionBatch;
     private final String markPromoted;
 
     public FileRevisionDAOImpl(String schema) {
@@ -84,6 +94,9 @@ public class FileRevisionDAOImpl implements FileRevisionDAO {
         this.findAllFileRevisions = selectHeaderSegment + this.schemaName + ".FILE_REVISION FR WHERE FR.FILE_ID = ? ORDER BY FR.ID DESC";
         this.findNewestRevisionOnBranch = selectAllSegment + this.schemaName + ".FILE_REVISION WHERE FILE_ID = ? AND BRANCH_ID = ? ORDER BY ID DESC LIMIT 1";
         this.findNewestRevisionAllBranches = selectAllSegment + this.schemaName + ".FILE_REVISION WHERE FILE_ID = ? ORDER BY ID DESC LIMIT 1";
+        this.findNewestRevisionsAllBranches = "SELECT DISTINCT ON (FILE_ID) ID, BRANCH_ID, FILE_ID, ANCESTOR_REVISION_ID, REVERSE_DELTA_REVISION_ID, COMMIT_ID, "
+                + "PROMOTED_FLAG, WORKFILE_EDIT_DATE, REVISION_DIGEST, LENGTH(REVISION_DATA) AS REVISION_SIZE, REVISION_DATA FROM " + this.schemaName
+                + ".FILE_REVISION WHERE FILE_ID IN (%s) ORDER BY FILE_ID, ID DESC";
         this.findNewestBranchRevision = selectHeaderSegment + this.schemaName + ".FILE_REVISION FR WHERE FR.BRANCH_ID = ? ORDER BY FR.ID DESC LIMIT 1";
         this.findPromotionCandidates = selectHeaderSegment + this.schemaName + ".FILE_REVISION FR, " + this.schemaName + ".FILE_NAME FN WHERE FR.BRANCH_ID = ? "
                 + "AND FR.FILE_ID = FN.FILE_ID AND FR.PROMOTED_FLAG = FALSE AND FN.DELETED_FLAG = FALSE ORDER BY FR.FILE_ID, FR.ID DESC";
@@ -94,11 +107,22 @@ public class FileRevisionDAOImpl implements FileRevisionDAO {
         this.findCommonAncestorRevision = selectHeaderSegment + this.schemaName + ".FILE_REVISION FR WHERE FR.BRANCH_ID = ? AND FR.ID <= ? AND "
                 + "FR.ID <= ? AND FR.FILE_ID = ? ORDER BY FR.ID DESC LIMIT 1";
         this.findFileIdListForCommitId = "SELECT FILE_ID FROM " + this.schemaName + ".FILE_REVISION WHERE COMMIT_ID = ?";
+        this.getReverseDeltaChainDepth = "WITH RECURSIVE DELTA_CHAIN (ID, FILE_ID, DEPTH) AS (SELECT ID, FILE_ID, 0 FROM " + this.schemaName + ".FILE_REVISION WHERE ID = ? "
+                + "UNION ALL SELECT FR.ID, FR.FILE_ID, C.DEPTH + 1 FROM " + this.schemaName + ".FILE_REVISION FR, DELTA_CHAIN C WHERE FR.FILE_ID = C.FILE_ID "
+                + "AND FR.REVERSE_DELTA_REVISION_ID = C.ID AND C.DEPTH < ?) SELECT MAX(DEPTH) FROM DELTA_CHAIN";
+        this.getReverseDeltaChainDepths = "WITH RECURSIVE DELTA_CHAIN (ROOT_ID, ID, FILE_ID, DEPTH) AS (SELECT ID, ID, FILE_ID, 0 FROM " + this.schemaName
+                + ".FILE_REVISION WHERE ID IN (%s) UNION ALL SELECT C.ROOT_ID, FR.ID, FR.FILE_ID, C.DEPTH + 1 FROM " + this.schemaName + ".FILE_REVISION FR, "
+                + "DELTA_CHAIN C WHERE FR.FILE_ID = C.FILE_ID AND FR.REVERSE_DELTA_REVISION_ID = C.ID AND C.DEPTH < ?) "
+                + "SELECT ROOT_ID, MAX(DEPTH) FROM DELTA_CHAIN GROUP BY ROOT_ID";
 
         this.insertFileRevision = "INSERT INTO " + this.schemaName
                 + ".FILE_REVISION (BRANCH_ID, FILE_ID, ANCESTOR_REVISION_ID, REVERSE_DELTA_REVISION_ID, COMMIT_ID, PROMOTED_FLAG, WORKFILE_EDIT_DATE, REVISION_DIGEST, REVISION_DATA) "
                 + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) RETURNING ID";
+        this.insertFileRevisionBatch = "INSERT INTO " + this.schemaName
+                + ".FILE_REVISION (BRANCH_ID, FILE_ID, ANCESTOR_REVISION_ID, REVERSE_DELTA_REVISION_ID, COMMIT_ID, PROMOTED_FLAG, WORKFILE_EDIT_DATE, REVISION_DIGEST, REVISION_DATA) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
         this.updateAncestorRevision = "UPDATE " + this.schemaName + ".FILE_REVISION SET REVERSE_DELTA_REVISION_ID = ?, REVISION_DATA = ? WHERE ID = ? RETURNING ID";
+        this.updateAncestorRevisionBatch = "UPDATE " + this.schemaName + ".FILE_REVISION SET REVERSE_DELTA_REVISION_ID = ?, REVISION_DATA = ? WHERE ID = ?";
         this.markPromoted = "UPDATE " + this.schemaName + ".FILE_REVISION SET PROMOTED_FLAG = TRUE, PROMOTION_COMMIT_ID = ? WHERE BRANCH_ID = ? AND FILE_ID = ?";
     }
 
@@ -382,6 +406,35 @@ public class FileRevisionDAOImpl implements FileRevisionDAO {
         return newestRevision;
     }
 
+    @Override
+    public Map<Integer, FileRevision> findNewestRevisionsAllBranches(List<Integer> fileIdList) {
+        Map<Integer, FileRevision> newestRevisionMap = new TreeMap<>();
+        for (int start = 0; start < fileIdList.size(); start += MAXIMUM_IDS_PER_QUERY) {
+            List<Integer> fileIdBatch = fileIdList.subList(start, Math.min(start + MAXIMUM_IDS_PER_QUERY, fileIdList.size()));
+            ResultSet resultSet = null;
+            PreparedStatement preparedStatement = null;
+            try {
+                Connection connection = DatabaseManager.getInstance().getConnection();
+                String queryString = String.format(this.findNewestRevisionsAllBranches, buildIdsToSearchString(fileIdBatch));
+                preparedStatement = connection.prepareStatement(queryString, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+
+                resultSet = preparedStatement.executeQuery();
+                while (resultSet.next()) {
+                    FileRevision newestRevision = readFileRevisionWithData(resultSet);
+                    newestRevisionMap.put(newestRevision.getFileId(), newestRevision);
+                }
+            } catch (SQLException e) {
+                LOGGER.error("FileRevisionDAOImpl: SQL exception in findNewestRevisionsAllBranches", e);
+            } catch (IllegalStateException e) {
+                LOGGER.error("FileRevisionDAOImpl: exception in findNewestRevisionsAllBranches", e);
+                throw e;
+            } finally {
+                DAOHelper.closeDbResources(LOGGER, resultSet, preparedStatement);
+            }
+        }
+        return newestRevisionMap;
+    }
+
     @Override
     public FileRevision findNewestBranchRevision(int branchId) {
         FileRevision revision = null;
@@ -694,6 +747,61 @@ public class FileRevisionDAOImpl implements FileRevisionDAO {
         return fileIdList;
     }
 
+    @Override
+    public Integer getReverseDeltaChainDepth(Integer fileRevisionId, int maximumDepth) {
+        Integer chainDepth = 0;
+        ResultSet resultSet = null;
+        PreparedStatement preparedStatement = null;
+        try {
+            Connection connection = DatabaseManager.getInstance().getConnection();
+            preparedStatement = connection.prepareStatement(this.getReverseDeltaChainDepth, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            preparedStatement.setInt(1, fileRevisionId);
+            preparedStatement.setInt(2, maximumDepth);
+
+            resultSet = preparedStatement.executeQuery();
+            if (resultSet.next()) {
+                chainDepth = resultSet.getInt(1);
+            }
+        } catch (SQLException e) {
+            LOGGER.error("FileRevisionDAOImpl: SQL exception in getReverseDeltaChainDepth", e);
+        } catch (IllegalStateException e) {
+            LOGGER.error("FileRevisionDAOImpl: exception in getReverseDeltaChainDepth", e);
+            throw e;
+        } finally {
+            DAOHelper.closeDbResources(LOGGER, resultSet, preparedStatement);
+        }
+        return chainDepth;
+    }
+
+    @Override
+    public Map<Integer, Integer> getReverseDeltaChainDepths(List<Integer> fileRevisionIdList, int maximumDepth) {
+        Map<Integer, Integer> chainDepthMap = new TreeMap<>();
+        for (int start = 0; start < fileRevisionIdList.size(); start += MAXIMUM_IDS_PER_QUERY) {
+            List<Integer> fileRevisionIdBatch = fileRevisionIdList.subList(start, Math.min(start + MAXIMUM_IDS_PER_QUERY, fileRevisionIdList.size()));
+            ResultSet resultSet = null;
+            PreparedStatement preparedStatement = null;
+            try {
+                Connection connection = DatabaseManager.getInstance().getConnection();
+                String queryString = String.format(this.getReverseDeltaChainDepths, buildIdsToSearchString(fileRevisionIdBatch));
+                preparedStatement = connection.prepareStatement(queryString, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                preparedStatement.setInt(1, maximumDepth);
+
+                resultSet = preparedStatement.executeQuery();
+                while (resultSet.next()) {
+                    chainDepthMap.put(resultSet.getInt(1), resultSet.getInt(2));
+                }
+            } catch (SQLException e) {
+                LOGGER.error("FileRevisionDAOImpl: SQL exception in getReverseDeltaChainDepths", e);
+            } catch (IllegalStateException e) {
+                LOGGER.error("FileRevisionDAOImpl: exception in getReverseDeltaChainDepths", e);
+                throw e;
+            } finally {
+                DAOHelper.closeDbResources(LOGGER, resultSet, preparedStatement);
+            }
+        }
+        return chainDepthMap;
+    }
+
     @Override
     public Integer insert(FileRevision fileRevision) throws SQLException {
         PreparedStatement preparedStatement = null;
@@ -762,6 +870,84 @@ public class FileRevisionDAOImpl implements FileRevisionDAO {
         return returnId;
     }
 
+    @Override
+    public List<Integer> insertBatch(List<FileRevision> fileRevisionList) throws SQLException {
+        List<Integer> returnIdList = new ArrayList<>(fileRevisionList.size());
+        if (fileRevisionList.isEmpty()) {
+            return returnIdList;
+        }
+        PreparedStatement preparedStatement = null;
+        ResultSet rs = null;
+        try {
+            Connection connection = DatabaseManager.getInstance().getConnection();
+            preparedStatement = connection.prepareStatement(this.insertFileRevisionBatch, new String[]{"id"});
+            for (FileRevision fileRevision : fileRevisionList) {
+                // <editor-fold>
+                preparedStatement.setInt(1, fileRevision.getBranchId());
+                preparedStatement.setInt(2, fileRevision.getFileId());
+                if (fileRevision.getAncestorRevisionId() != null) {
+                    preparedStatement.setInt(3, fileRevision.getAncestorRevisionId());
+                } else {
+                    preparedStatement.setNull(3, java.sql.Types.INTEGER);
+                }
+                if (fileRevision.getReverseDeltaRevisionId() != null) {
+                    preparedStatement.setInt(4, fileRevision.getReverseDeltaRevisionId());
+                } else {
+                    preparedStatement.setNull(4, java.sql.Types.INTEGER);
+                }
+                preparedStatement.setInt(5, fileRevision.getCommitId());
+                preparedStatement.setBoolean(6, false);
+                preparedStatement.setTimestamp(7, fileRevision.getWorkfileEditDate());
+                preparedStatement.setBytes(8, fileRevision.getRevisionDigest());
+                preparedStatement.setBytes(9, fileRevision.getRevisionData());
+                // </editor-fold>
+                preparedStatement.addBatch();
+            }
+            preparedStatement.executeBatch();
+
+            // The generated keys come back in the order the rows were added to the batch.
+            rs = preparedStatement.getGeneratedKeys();
+            while (rs.next()) {
+                returnIdList.add(rs.getInt(1));
+            }
+            if (returnIdList.size() != fileRevisionList.size()) {
+                throw new SQLException("Expected [" + fileRevisionList.size() + "] generated ids; got [" + returnIdList.size() + "]");
+            }
+        } catch (IllegalStateException e) {
+            LOGGER.error("FileRevisionDAOImpl: exception in insertBatch", e);
+            throw e;
+        } finally {
+            DAOHelper.closeDbResources(LOGGER, rs, preparedStatement);
+        }
+        return returnIdList;
+    }
+
+    @Override
+    public void updateAncestorRevisionBatch(List<FileRevision> ancestorRevisionList) throws SQLException {
+        if (ancestorRevisionList.isEmpty()) {
+            return;
+        }
+        PreparedStatement preparedStatement = null;
+        try {
+            Connection connection = DatabaseManager.getInstance().getConnection();
+            preparedStatement = connection.prepareStatement(this.updateAncestorRevisionBatch);
+            for (FileRevision ancestorRevision : ancestorRevisionList) {
+                // <editor-fold>
+                preparedStatement.setInt(1, ancestorRevision.getReverseDeltaRevisionId());
+                preparedStatement.setBytes(2, ancestorRevision.getRevisionData());
+                preparedStatement.setInt(3, ancestorRevision.getId());
+                // </editor-fold>
+                preparedStatement.addBatch();
+            }
+            preparedStatement.executeBatch();
+        } catch (IllegalStateException e) {
+            LOGGER.error("FileRevisionDAOImpl: exception in updateAncestorRevisionBatch", e);
+            throw e;
+        } finally {
+            DAOHelper.closeDbResources(LOGGER, null, preparedStatement);
+        }
+    }
+
     @Override
     public boolean markPromoted(Integer fileRevisionId, Integer commitId) throws SQLException {
         PreparedStatement preparedStatement = null;
@@ -787,6 +973,44 @@ public class FileRevisionDAOImpl implements FileRevisionDAO {
         return returnFlag;
     }
 
+    private FileRevision readFileRevisionWithData(ResultSet resultSet) throws SQLException {
+        Object fetchedAncestorRevisionObject = resultSet.getObject(ANCESTOR_REVISION_ID_RESULT_SET_INDEX);
+        Integer fetchedAncestorRevisionId = null;
+        if (fetchedAncestorRevisionObject != null) {
+            fetchedAncestorRevisionId = resultSet.getInt(ANCESTOR_REVISION_ID_RESULT_SET_INDEX);
+        }
+        Object fetchedReverseDeltaRevisionObject = resultSet.getObject(REVERSE_DELTA_REVISION_ID_RESULT_SET_INDEX);
+        Integer fetchedReverseDeltaRevisionId = null;
+        if (fetchedReverseDeltaRevisionObject != null) {
+            fetchedReverseDeltaRevisionId = resultSet.getInt(REVERSE_DELTA_REVISION_ID_RESULT_SET_INDEX);
+        }
+
+        FileRevision fileRevision = new FileRevision();
+        fileRevision.setId(resultSet.getInt(ID_RESULT_SET_INDEX));
+        fileRevision.setBranchId(resultSet.getInt(BRANCH_ID_RESULT_SET_INDEX));
+        fileRevision.setFileId(resultSet.getInt(FILE_ID_RESULT_SET_INDEX));
+        fileRevision.setAncestorRevisionId(fetchedAncestorRevisionId);
+        fileRevision.setReverseDeltaRevisionId(fetchedReverseDeltaRevisionId);
+        fileRevision.setCommitId(resultSet.getInt(COMMIT_ID_RESULT_SET_INDEX));
+        fileRevision.setPromotedFlag(resultSet.getBoolean(PROMOTED_FLAG_RESULT_SET_INDEX));
+        fileRevision.setWorkfileEditDate(resultSet.getTimestamp(WORKFILE_EDIT_DATE_RESULT_SET_INDEX));
+        fileRevision.setRevisionDigest(resultSet.getBytes(REVISION_DIGEST_RESULT_SET_INDEX));
+        fileRevision.setRevisionDataSize(resultSet.getInt(REVISION_SIZE_RESULT_SET_INDEX));
+        fileRevision.setRevisionData(resultSet.getBytes(REVISION_DATA_RESULT_SET_INDEX));
+        return fileRevision;
+    }
+
+    private String buildIdsToSearchString(List<Integer> idList) {
+        StringBuilder idsToSearch = new StringBuilder();
+        for (int i = 0; i < idList.size(); i++) {
+            idsToSearch.append(idList.get(i));
+            if (i < (idList.size() - 1)) {
+                idsToSearch.append(",");
+            }
+        }
+        return idsToSearch.toString();
+    }
+
     private List<FileRevision> prunePromotedRevisions(Map<Integer, FileRevision> fileRevisionMap) {
         List<FileRevision> fileRevisionList = new ArrayList<>();
 
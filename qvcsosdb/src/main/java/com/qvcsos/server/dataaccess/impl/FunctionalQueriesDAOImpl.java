@@ -21,11 +21,17 @@ import com.qumasoft.qvcslib.DirectoryCoordinateIds;
 import com.qumasoft.qvcslib.LogFileHeaderInfo;
 import com.qumasoft.qvcslib.LogfileInfo;
 import com.qumasoft.qvcslib.QVCSConstants;
+import com.qumasoft.qvcslib.QVCSRuntimeException;
 import com.qumasoft.qvcslib.RevisionHeader;
+import com.qumasoft.qvcslib.RevisionHistoryFilter;
+import com.qumasoft.qvcslib.RevisionHistoryPage;
 import com.qumasoft.qvcslib.RevisionInformation;
 import com.qumasoft.qvcslib.SkinnyLogfileInfo;
 import com.qumasoft.qvcslib.TagInfoData;
+import com.qvcsos.server.BranchTopologyCache;
+import com.qvcsos.server.CommitMetadataCache;
 import com.qvcsos.server.DatabaseManager;
+import com.qvcsos.server.RevisionHistoryPageBuilder;
 import com.qvcsos.server.SourceControlBehaviorManager;
 import com.qvcsos.server.dataaccess.BranchDAO;
 import com.qvcsos.server.dataaccess.CommitDAO;
@@ -37,12 +43,14 @@ import com.qvcsos.server.dataaccess.TagDAO;
 import com.qvcsos.server.dataaccess.UserDAO;
 import com.qvcsos.server.datamodel.Branch;
 import com.qvcsos.server.datamodel.Commit;
+import com.qvcsos.server.datamodel.CommitMetadata;
 import com.qvcsos.server.datamodel.DirectoryLocation;
 import com.qvcsos.server.datamodel.FileRevision;
 import com.qvcsos.server.datamodel.Project;
 import com.qvcsos.server.datamodel.ProvisionalDirectoryLocation;
 import com.qvcsos.server.datamodel.Tag;
 import com.qvcsos.server.datamodel.User;
+import java.io.File;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -50,6 +58,7 @@ import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
@@ -69,6 +78,11 @@ public class FunctionalQueriesDAOImpl implements FunctionalQueriesDAO {
      */
     private static final Logger LOGGER = LoggerFactory.getLogger(FunctionalQueriesDAOImpl.class);
 
+    /**
+     * The most ids we put in a single IN (...) clause.
+     */
+    private static final int MAXIMUM_IDS_PER_QUERY = 1000;
+
     private final String schemaName;
 
     public FunctionalQueriesDAOImpl(String schema) {
@@ -463,7 +477,12 @@ public class FunctionalQueriesDAOImpl implements FunctionalQueriesDAO {
             directoryCoordinateIds = new DirectoryCoordinateIds(project.getId(), branch.getId(), -1, -1, dc, writeableBranchMap);
         } else {
             DirectoryLocation dl = sourceControlBehaviorManager.findDirectoryLocationByAppendedPath(branch.getId(), dc.getAppendedPath());
-            branchDAO.getWriteableChildBranchIdList(branch.getId(), writeableBranchMap);
+            Map<Integer, String> writeableChildBranchMap = BranchTopologyCache.getInstance(schemaName).getWriteableChildBranchMap(branch.getId());
+            if (writeableChildBranchMap != null) {
+                writeableBranchMap.putAll(writeableChildBranchMap);
+            } else {
+                branchDAO.getWriteableChildBranchIdList(branch.getId(), writeableBranchMap);
+            }
             if (dl != null) {
                 directoryCoordinateIds = new DirectoryCoordinateIds(project.getId(), branch.getId(), dl.getDirectoryId(), dl.getId(), dc, writeableBranchMap);
             } else {
@@ -510,8 +529,39 @@ public class FunctionalQueriesDAOImpl implements FunctionalQueriesDAO {
         return logfileInfo;
     }
 
+    @Override
+    public RevisionHistoryPage getRevisionHistoryPage(DirectoryCoordinate directoryCoordinate, Integer fileId, boolean allBranchesFlag,
+            Integer startAfterFileRevisionId, int pageSize, RevisionHistoryFilter filter) {
+        RevisionHistoryPage revisionHistoryPage = null;
+        DirectoryCoordinateIds dcIds = getDirectoryCoordinateIds(directoryCoordinate);
+        if (dcIds != null) {
+            List<FileRevision> fileRevisionList;
+            if (allBranchesFlag) {
+                FileRevisionDAO fileRevisionDAO = new FileRevisionDAOImpl(schemaName);
+                fileRevisionList = fileRevisionDAO.findAllFileRevisions(fileId);
+            } else {
+                fileRevisionList = findFileRevisionsInBranches(getBranchAncestryList(dcIds.getBranchId()), fileId);
+            }
+            CommitMetadataCache commitMetadataCache = CommitMetadataCache.getInstance(schemaName);
+            revisionHistoryPage = RevisionHistoryPageBuilder.buildPage(fileRevisionList, startAfterFileRevisionId, pageSize, filter,
+                    commitMetadataCache::getCommitMetadataMap);
+        }
+        return revisionHistoryPage;
+    }
+
     @Override
     public List<Branch> getBranchAncestryList(Integer branchId) {
+        List<Branch> branchArray = BranchTopologyCache.getInstance(schemaName).getBranchAncestryList(branchId);
+        if (branchArray == null) {
+            branchArray = findBranchAncestryList(branchId);
+        }
+        return branchArray;
+    }
+
+    /**
+     * Walk up the branch ancestry in the database. We only need this for a branch that the branch topology cache does not know about.
+     */
+    private List<Branch> findBranchAncestryList(Integer branchId) {
         BranchDAO branchDAO = new BranchDAOImpl(schemaName);
         Branch branch = branchDAO.findById(branchId);
         List<Branch> branchArray = new ArrayList<>();
@@ -528,14 +578,12 @@ public class FunctionalQueriesDAOImpl implements FunctionalQueriesDAO {
     private void populateLogfileInfo(DirectoryCoordinateIds dcIds, LogfileInfo logfileInfo, Integer fileId) {
         List<Branch> branchArray = getBranchAncestryList(dcIds.getBranchId());
 
-        CommitDAO commitDAO = new CommitDAOImpl(schemaName);
-        UserDAO userDAO = new UserDAOImpl(schemaName);
-
         LogFileHeaderInfo headerInfo = new LogFileHeaderInfo();
         headerInfo.setArchiveAttributes(new ArchiveAttributes());
         headerInfo.setCommentPrefix("// "); // TODO
         logfileInfo.setLogFileHeaderInfo(headerInfo);
         List<FileRevision> fileRevisionList = findFileRevisionInBranches(branchArray, fileId, headerInfo);
+        Map<Integer, CommitMetadata> commitMetadataMap = findCommitMetadata(fileRevisionList);
         RevisionInformation revisionInformation = new RevisionInformation(fileRevisionList.size());
         int index = 0;
         for (FileRevision fileRevision : fileRevisionList) {
@@ -543,15 +591,14 @@ public class FunctionalQueriesDAOImpl implements FunctionalQueriesDAO {
             revisionHeader.setBranchId(fileRevision.getBranchId());
             revisionHeader.setFileRevisionId(fileRevision.getId());
             revisionHeader.setCommitId(fileRevision.getCommitId());
-            Commit commit = commitDAO.findById(fileRevision.getCommitId());
+            CommitMetadata commit = commitMetadataMap.get(fileRevision.getCommitId());
             revisionHeader.setCheckInDate(commit.getCommitDate());
-            User user = userDAO.findById(commit.getUserId());
-            revisionHeader.setCreator(user.getUserName());
+            revisionHeader.setCreator(commit.getUserName());
             revisionHeader.setEditDate(fileRevision.getWorkfileEditDate());
             revisionHeader.setIsTip(index == 0);
             if (index == 0) {
                 revisionHeader.setParentRevisionHeader(null);
-                headerInfo.setLastModifierName(user.getUserName());
+                headerInfo.setLastModifierName(commit.getUserName());
                 headerInfo.setModuleDescription(commit.getCommitMessage());
                 headerInfo.setBranchId(fileRevision.getBranchId());
                 headerInfo.setFileID(fileId);
@@ -570,8 +617,6 @@ public class FunctionalQueriesDAOImpl implements FunctionalQueriesDAO {
     private int populateAllLogfileInfo(DirectoryCoordinateIds dcIds, LogfileInfo logfileInfo, String shortFilename, Integer fileId) {
         FileNameDAO fileNameDAO = new FileNameDAOImpl(schemaName);
         int index = 0;
-        CommitDAO commitDAO = new CommitDAOImpl(schemaName);
-        UserDAO userDAO = new UserDAOImpl(schemaName);
 
         LogFileHeaderInfo headerInfo = new LogFileHeaderInfo();
         headerInfo.setArchiveAttributes(new ArchiveAttributes());
@@ -580,21 +625,21 @@ public class FunctionalQueriesDAOImpl implements FunctionalQueriesDAO {
         FileRevisionDAO fileRevisionDAO = new FileRevisionDAOImpl(schemaName);
         List<FileRevision> fileRevisionList = fileRevisionDAO.findAllFileRevisions(fileId);
         headerInfo.setRevisionCount(fileRevisionList.size());
+        Map<Integer, CommitMetadata> commitMetadataMap = findCommitMetadata(fileRevisionList);
         RevisionInformation revisionInformation = new RevisionInformation(fileRevisionList.size());
         for (FileRevision fileRevision : fileRevisionList) {
             RevisionHeader revisionHeader = new RevisionHeader();
             revisionHeader.setBranchId(fileRevision.getBranchId());
             revisionHeader.setFileRevisionId(fileRevision.getId());
             revisionHeader.setCommitId(fileRevision.getCommitId());
-            Commit commit = commitDAO.findById(fileRevision.getCommitId());
+            CommitMetadata commit = commitMetadataMap.get(fileRevision.getCommitId());
             revisionHeader.setCheckInDate(commit.getCommitDate());
-            User user = userDAO.findById(commit.getUserId());
-            revisionHeader.setCreator(user.getUserName());
+            revisionHeader.setCreator(commit.getUserName());
             revisionHeader.setEditDate(fileRevision.getWorkfileEditDate());
             revisionHeader.setIsTip(index == 0);
             if (index == 0) {
                 revisionHeader.setParentRevisionHeader(null);
-                headerInfo.setLastModifierName(user.getUserName());
+                headerInfo.setLastModifierName(commit.getUserName());
                 headerInfo.setModuleDescription(commit.getCommitMessage());
                 headerInfo.setBranchId(fileRevision.getBranchId());
                 headerInfo.setFileID(fileId);
@@ -611,6 +656,17 @@ public class FunctionalQueriesDAOImpl implements FunctionalQueriesDAO {
         return index;
     }
 
+    /**
+     * Find the commit metadata for every revision in the list, reading any that are not already cached with a single query.
+     */
+    private Map<Integer, CommitMetadata> findCommitMetadata(List<FileRevision> fileRevisionList) {
+        List<Integer> commitIdList = new ArrayList<>(fileRevisionList.size());
+        for (FileRevision fileRevision : fileRevisionList) {
+            commitIdList.add(fileRevision.getCommitId());
+        }
+        return CommitMetadataCache.getInstance(schemaName).getCommitMetadataMap(commitIdList);
+    }
+
     private List<FileRevision> findFileRevisionInBranches(List<Branch> branchArray, Integer fileId, LogFileHeaderInfo headerInfo) {
         List<FileRevision> fileRevisionList = null;
         try {
@@ -619,14 +675,10 @@ public class FunctionalQueriesDAOImpl implements FunctionalQueriesDAO {
             if (fileRevisionList != null && !fileRevisionList.isEmpty()) {
                 FileRevision newestFileRevision = fileRevisionList.get(0);
 
-                CommitDAO commitDAO = new CommitDAOImpl(schemaName);
-                Commit commit = commitDAO.findById(newestFileRevision.getCommitId());
-
-                UserDAO userDAO = new UserDAOImpl(schemaName);
-                User user = userDAO.findById(commit.getUserId());
+                CommitMetadata commit = CommitMetadataCache.getInstance(schemaName).getCommitMetadata(newestFileRevision.getCommitId());
 
                 headerInfo.setLastArchiveUpdateDate(commit.getCommitDate());
-                headerInfo.setLastModifierName(user.getUserName());
+                headerInfo.setLastModifierName(commit.getUserName());
                 headerInfo.setLastWorkfileSize(newestFileRevision.getRevisionDataSize());
                 headerInfo.setLatestRevisionId(newestFileRevision.getId());
                 headerInfo.setRevisionCount(fileRevisionList.size());
@@ -735,7 +787,7 @@ public class FunctionalQueriesDAOImpl implements FunctionalQueriesDAO {
         ResultSet resultSet = null;
         PreparedStatement preparedStatement = null;
         try {
-            String queryString = String.format(findBranchTipRevisionByBranchIdAndFileId, buildBranchesToSearchString(getBranchAncestryList(branchId)));
+            String queryString = String.format(findBranchTipRevisionByBranchIdAndFileId, getBranchesToSearchString(branchId));
             Connection connection = DatabaseManager.getInstance().getConnection();
             preparedStatement = connection.prepareStatement(queryString, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
             preparedStatement.setInt(1, fileId);
@@ -1331,6 +1383,15 @@ public class FunctionalQueriesDAOImpl implements FunctionalQueriesDAO {
         return branchesToSearch.toString();
     }
 
+    @Override
+    public String getBranchesToSearchString(Integer branchId) {
+        String branchesToSearchString = BranchTopologyCache.getInstance(schemaName).getBranchesToSearchString(branchId);
+        if (branchesToSearchString == null) {
+            branchesToSearchString = buildBranchesToSearchString(findBranchAncestryList(branchId));
+        }
+        return branchesToSearchString;
+    }
+
     @Override
     public String buildIdsToSearchString(List<Integer> idsArray) {
         // Create the SQL query string
@@ -1345,8 +1406,7 @@ public class FunctionalQueriesDAOImpl implements FunctionalQueriesDAO {
     }
 
     private String buildSkinnyInfoQueryStringForBranch(Integer branchId, Integer directoryId) {
-        List<Branch> branchAncestryList = getBranchAncestryList(branchId);
-        String branchesToSearchString = buildBranchesToSearchString(branchAncestryList);
+        String branchesToSearchString = getBranchesToSearchString(branchId);
         FileNameDAO fileNameDAO = new FileNameDAOImpl(schemaName);
         List<Integer> deletedFilesFileIdList = new ArrayList<>();
         List<Integer> fileNameIdList = fileNameDAO.getFileNameIdList(branchesToSearchString, directoryId, deletedFilesFileIdList);
@@ -1491,4 +1551,264 @@ public class FunctionalQueriesDAOImpl implements FunctionalQueriesDAO {
         }
         return skinnyList;
     }
+
+    @Override
+    public Map<String, DirectoryLocation> findDirectoryLocationSubtree(Branch branch, List<Branch> branchArray, Integer rootDirectoryLocationId, String rootAppendedPath) {
+        String branchesToSearchString = buildBranchesToSearchString(branchArray);
+        Map<Integer, List<DirectoryLocation>> childMap = new TreeMap<>();
+
+        // Walk the tree a level at a time, so we need one query (or a few, for large levels) per level instead of one per directory.
+        List<Integer> parentIdList = new ArrayList<>();
+        parentIdList.add(rootDirectoryLocationId);
+        while (!parentIdList.isEmpty()) {
+            List<Integer> nextParentIdList = new ArrayList<>();
+            for (int start = 0; start < parentIdList.size(); start += MAXIMUM_IDS_PER_QUERY) {
+                List<Integer> parentIdBatch = parentIdList.subList(start, Math.min(start + MAXIMUM_IDS_PER_QUERY, parentIdList.size()));
+                Map<Integer, List<DirectoryLocation>> batchChildMap = findChildDirectoryLocationsForParents(branch, branchArray, branchesToSearchString, parentIdBatch);
+                for (Map.Entry<Integer, List<DirectoryLocation>> entry : batchChildMap.entrySet()) {
+                    childMap.put(entry.getKey(), entry.getValue());
+                    for (DirectoryLocation directoryLocation : entry.getValue()) {
+                        nextParentIdList.add(directoryLocation.getId());
+                    }
+                }
+            }
+            parentIdList = nextParentIdList;
+        }
+
+        // Lay the tree out depth first, the same order we would get by recursing one directory at a time.
+        Map<String, DirectoryLocation> subtreeMap = new LinkedHashMap<>();
+        addSubtreeToMap(childMap, rootDirectoryLocationId, rootAppendedPath, subtreeMap);
+        LOGGER.debug("findDirectoryLocationSubtree: branch: [{}] root directory location id: [{}] directory count: [{}]", branch.getBranchName(),
+                rootDirectoryLocationId, subtreeMap.size());
+        return subtreeMap;
+    }
+
+    private void addSubtreeToMap(Map<Integer, List<DirectoryLocation>> childMap, Integer parentDirectoryLocationId, String parentAppendedPath,
+            Map<String, DirectoryLocation> subtreeMap) {
+        List<DirectoryLocation> children = childMap.get(parentDirectoryLocationId);
+        if (children != null) {
+            for (DirectoryLocation directoryLocation : children) {
+                String appendedPath;
+                if (parentAppendedPath.length() == 0) {
+                    appendedPath = directoryLocation.getDirectorySegmentName();
+                } else {
+                    appendedPath = parentAppendedPath + File.separator + directoryLocation.getDirectorySegmentName();
+                }
+                subtreeMap.put(appendedPath, directoryLocation);
+                addSubtreeToMap(childMap, directoryLocation.getId(), appendedPath, subtreeMap);
+            }
+        }
+    }
+
+    /**
+     * Find the children of a batch of parent directory locations. The pruning rules are applied per parent, and match those used by
+     * {@link #findChildDirectoryLocations(List, Integer)} for trunk and feature branches, and those used by the read-only and release branch DAOs for the
+     * other branch types.
+     */
+    private Map<Integer, List<DirectoryLocation>> findChildDirectoryLocationsForParents(Branch branch, List<Branch> branchArray, String branchesToSearchString,
+            List<Integer> parentIdList) {
+        Map<Integer, List<DirectoryLocation>> childMap = new TreeMap<>();
+        String parentIdsToSearchString = buildIdsToSearchString(parentIdList);
+        switch (branch.getBranchTypeId()) {
+            case QVCSConstants.QVCS_TRUNK_BRANCH_TYPE, QVCSConstants.QVCS_FEATURE_BRANCH_TYPE -> {
+                Map<Integer, List<DirectoryLocation>> candidateMap = new TreeMap<>();
+                runChildDirectoryLocationBatchQuery("ID", "DIRECTORY_LOCATION", parentIdsToSearchString, branchesToSearchString, "AND DELETED_FLAG = FALSE",
+                        candidateMap);
+                Integer requestedBranchId = branchArray.get(0).getId();
+                for (Map.Entry<Integer, List<DirectoryLocation>> entry : candidateMap.entrySet()) {
+                    List<DirectoryLocation> directoryLocationList = new ArrayList<>();
+                    Map<String, DirectoryLocation> locationMap = new TreeMap<>();
+                    for (DirectoryLocation directoryLocation : entry.getValue()) {
+                        // Include all directory locations on the requested branch
+                        if (directoryLocation.getBranchId().intValue() == requestedBranchId.intValue()) {
+                            directoryLocationList.add(directoryLocation);
+                            locationMap.put(directoryLocation.getDirectorySegmentName(), directoryLocation);
+                        } else if (!locationMap.containsKey(directoryLocation.getDirectorySegmentName())) {
+                            // We have not seen this directory on the branch, so include it.
+                            directoryLocationList.add(directoryLocation);
+                        }
+                    }
+                    childMap.put(entry.getKey(), directoryLocationList);
+                }
+            }
+            case QVCSConstants.QVCS_TAG_BASED_BRANCH_TYPE, QVCSConstants.QVCS_RELEASE_BRANCH_TYPE -> {
+                String boundingCommitClause;
+                if (branch.getBranchTypeId() == QVCSConstants.QVCS_TAG_BASED_BRANCH_TYPE) {
+                    TagDAO tagDAO = new TagDAOImpl(schemaName);
+                    Tag tag = tagDAO.findById(branch.getTagId());
+                    boundingCommitClause = "AND COMMIT_ID <= " + tag.getCommitId();
+                } else {
+                    boundingCommitClause = "AND COMMIT_ID < " + branch.getCommitId();
+                }
+                // Current locations first, then history, with the last one seen for a given name winning.
+                Map<Integer, List<DirectoryLocation>> candidateMap = new TreeMap<>();
+                runChildDirectoryLocationBatchQuery("ID", "DIRECTORY_LOCATION", parentIdsToSearchString, branchesToSearchString, boundingCommitClause,
+                        candidateMap);
+                Map<Integer, List<DirectoryLocation>> historyCandidateMap = new TreeMap<>();
+                runChildDirectoryLocationBatchQuery("DIRECTORY_LOCATION_ID", "DIRECTORY_LOCATION_HISTORY", parentIdsToSearchString, branchesToSearchString,
+                        boundingCommitClause, historyCandidateMap);
+                for (Integer parentId : parentIdList) {
+                    Map<String, DirectoryLocation> directoryLocationMap = new TreeMap<>();
+                    for (Map<Integer, List<DirectoryLocation>> map : List.of(candidateMap, historyCandidateMap)) {
+                        List<DirectoryLocation> candidateList = map.get(parentId);
+                        if (candidateList != null) {
+                            for (DirectoryLocation directoryLocation : candidateList) {
+                                directoryLocationMap.put(directoryLocation.getDirectorySegmentName(), directoryLocation);
+                            }
+                        }
+                    }
+                    if (!directoryLocationMap.isEmpty()) {
+                        childMap.put(parentId, new ArrayList<>(directoryLocationMap.values()));
+                    }
+                }
+            }
+            default -> throw new QVCSRuntimeException("Unsupported branch type: " + branch.getBranchTypeId());
+        }
+        return childMap;
+    }
+
+    private void runChildDirectoryLocationBatchQuery(String idColumnName, String tableName, String parentIdsToSearchString, String branchesToSearchString,
+            String extraClause, Map<Integer, List<DirectoryLocation>> candidateMap) {
+        // <editor-fold>
+        int ID_RESULT_SET_INDEX = 1;
+        int DIRECTORY_ID_RESULT_SET_INDEX = 2;
+        int BRANCH_ID_RESULT_SET_INDEX = 3;
+        int PARENT_DIRECTORY_LOCATION_ID_RESULT_SET_INDEX = 4;
+        int COMMIT_ID_RESULT_SET_INDEX = 5;
+        int DIRECTORY_SEGMENT_NAME_RESULT_SET_INDEX = 6;
+        int DELETED_FLAG_RESULT_SET_INDEX = 7;
+        // </editor-fold>
+
+        String queryString = "SELECT " + idColumnName + ", DIRECTORY_ID, BRANCH_ID, PARENT_DIRECTORY_LOCATION_ID, COMMIT_ID, DIRECTORY_SEGMENT_NAME, DELETED_FLAG FROM "
+                + this.schemaName + "." + tableName + " WHERE PARENT_DIRECTORY_LOCATION_ID IN (" + parentIdsToSearchString + ") AND BRANCH_ID IN ("
+                + branchesToSearchString + ") " + extraClause + " ORDER BY PARENT_DIRECTORY_LOCATION_ID, DIRECTORY_SEGMENT_NAME, BRANCH_ID DESC";
+        LOGGER.debug("runChildDirectoryLocationBatchQuery query string: [{}]", queryString);
+
+        ResultSet resultSet = null;
+        PreparedStatement preparedStatement = null;
+        try {
+            Connection connection = DatabaseManager.getInstance().getConnection();
+            preparedStatement = connection.prepareStatement(queryString, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+
+            resultSet = preparedStatement.executeQuery();
+            while (resultSet.next()) {
+                Integer fetchedDirectoryLocationId = resultSet.getInt(ID_RESULT_SET_INDEX);
+                Integer fetchedDirectoryId = resultSet.getInt(DIRECTORY_ID_RESULT_SET_INDEX);
+                Integer fetchedBranchId = resultSet.getInt(BRANCH_ID_RESULT_SET_INDEX);
+                Integer fetchedParentDirectoryLocationId = resultSet.getInt(PARENT_DIRECTORY_LOCATION_ID_RESULT_SET_INDEX);
+                Integer fetchedCommitId = resultSet.getInt(COMMIT_ID_RESULT_SET_INDEX);
+                String fetchedDirectorySegmentName = resultSet.getString(DIRECTORY_SEGMENT_NAME_RESULT_SET_INDEX);
+                Boolean fetchedDeletedFlag = resultSet.getBoolean(DELETED_FLAG_RESULT_SET_INDEX);
+
+                DirectoryLocation directoryLocation = new DirectoryLocation();
+                directoryLocation.setId(fetchedDirectoryLocationId);
+                directoryLocation.setDirectoryId(fetchedDirectoryId);
+                directoryLocation.setBranchId(fetchedBranchId);
+                directoryLocation.setParentDirectoryLocationId(fetchedParentDirectoryLocationId);
+                directoryLocation.setCommitId(fetchedCommitId);
+                directoryLocation.setDirectorySegmentName(fetchedDirectorySegmentName);
+                directoryLocation.setDeletedFlag(fetchedDeletedFlag);
+                candidateMap.computeIfAbsent(fetchedParentDirectoryLocationId, k -> new ArrayList<>()).add(directoryLocation);
+            }
+        } catch (SQLException | IllegalStateException e) {
+            LOGGER.error("FunctionalQueriesDAOImpl: SQL exception in runChildDirectoryLocationBatchQuery", e);
+            throw new RuntimeException(e);
+        } finally {
+            DAOHelper.closeDbResources(LOGGER, resultSet, preparedStatement);
+        }
+    }
+
+    @Override
+    public Map<Integer, List<SkinnyLogfileInfo>> getSkinnyLogfileInfoForTrunkDirectories(Integer branchId, List<Integer> directoryIdList) {
+        Map<Integer, List<SkinnyLogfileInfo>> skinnyMap = new TreeMap<>();
+        for (int start = 0; start < directoryIdList.size(); start += MAXIMUM_IDS_PER_QUERY) {
+            List<Integer> directoryIdBatch = directoryIdList.subList(start, Math.min(start + MAXIMUM_IDS_PER_QUERY, directoryIdList.size()));
+            getSkinnyLogfileInfoForTrunkDirectoryBatch(branchId, directoryIdBatch, skinnyMap);
+        }
+        return skinnyMap;
+    }
+
+    private void getSkinnyLogfileInfoForTrunkDirectoryBatch(Integer branchId, List<Integer> directoryIdList, Map<Integer, List<SkinnyLogfileInfo>> skinnyMap) {
+        // <editor-fold>
+        int USER_NAME_SET_INDEX = 1;
+        int COMMIT_DATE_RESULT_SET_INDEX = 2;
+        int FILE_NAME_RESULT_SET_INDEX = 3;
+        int FILE_REVISION_ID_RESULT_SET_INDEX = 4;
+        int FILE_ID_RESULT_SET_INDEX = 5;
+        int REVISION_DIGEST_RESULT_SET_INDEX = 6;
+        int BRANCH_ID_RESULT_SET_INDEX = 7;
+        int COMMIT_ID_RESULT_SET_INDEX = 8;
+        int DIRECTORY_ID_RESULT_SET_INDEX = 9;
+        // </editor-fold>
+
+        String selectSegment = "SELECT UR.USER_NAME, CM.COMMIT_DATE, FN.FILE_NAME, FR.ID AS FRID, FR.FILE_ID, FR.REVISION_DIGEST, FR.BRANCH_ID, CM.ID, FN.DIRECTORY_ID FROM ";
+        String queryString = new StringBuilder(selectSegment)
+                .append(this.schemaName).append(".FILE_REVISION FR,")
+                .append(this.schemaName).append(".COMIT CM,")
+                .append(this.schemaName).append(".FILE_NAME FN,")
+                .append(this.schemaName).append(".USER UR ")
+                .append("WHERE ")
+                .append("FR.BRANCH_ID = ? AND ")
+                .append("FR.COMMIT_ID = CM.ID AND ")
+                .append("CM.USER_ID = UR.ID AND ")
+                .append("FN.FILE_ID = FR.FILE_ID AND ")
+                .append("FN.BRANCH_ID = FR.BRANCH_ID AND ")
+                .append("FN.DELETED_FLAG = FALSE AND ")
+                .append("FN.DIRECTORY_ID IN (").append(buildIdsToSearchString(directoryIdList)).append(") ")
+                .append("ORDER BY FN.DIRECTORY_ID, FILE_NAME, FR.ID DESC").toString();
+        LOGGER.debug("Trunk directories query string: [{}]", queryString);
+
+        ResultSet resultSet = null;
+        PreparedStatement preparedStatement = null;
+        try {
+            Connection connection = DatabaseManager.getInstance().getConnection();
+            preparedStatement = connection.prepareStatement(queryString, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            preparedStatement.setInt(1, branchId);
+            Map<Integer, Map<Integer, TreeMap<Integer, SkinnyLogfileInfo>>> candidateMapByDirectory = new TreeMap<>();
+
+            resultSet = preparedStatement.executeQuery();
+            while (resultSet.next()) {
+                String fetchedUserName = resultSet.getString(USER_NAME_SET_INDEX);
+                Date fetchedCommitDate = resultSet.getTimestamp(COMMIT_DATE_RESULT_SET_INDEX);
+                String fetchedFilename = resultSet.getString(FILE_NAME_RESULT_SET_INDEX);
+                Integer fetchedFileRevisionId = resultSet.getInt(FILE_REVISION_ID_RESULT_SET_INDEX);
+                Integer fetchedFileId = resultSet.getInt(FILE_ID_RESULT_SET_INDEX);
+                byte[] fetchedDigest = resultSet.getBytes(REVISION_DIGEST_RESULT_SET_INDEX);
+                Integer fetchedBranchId = resultSet.getInt(BRANCH_ID_RESULT_SET_INDEX);
+                Integer fetchedCommitId = resultSet.getInt(COMMIT_ID_RESULT_SET_INDEX);
+                Integer fetchedDirectoryId = resultSet.getInt(DIRECTORY_ID_RESULT_SET_INDEX);
+
+                TreeMap<Integer, SkinnyLogfileInfo> mapForCurrentFile = candidateMapByDirectory.computeIfAbsent(fetchedDirectoryId, k -> new TreeMap<>())
+                        .computeIfAbsent(fetchedFileId, k -> new TreeMap<>());
+
+                SkinnyLogfileInfo skinnyInfo = new SkinnyLogfileInfo();
+                skinnyInfo.setLastEditByString(fetchedUserName);
+                skinnyInfo.setLastCheckInDate(fetchedCommitDate);
+                skinnyInfo.setShortWorkfileName(fetchedFilename);
+                skinnyInfo.setDefaultRevisionString(String.format("%d.%d", fetchedBranchId, fetchedFileRevisionId));
+                skinnyInfo.setFileID(fetchedFileId);
+                skinnyInfo.setDefaultRevisionDigest(fetchedDigest);
+                skinnyInfo.setBranchId(fetchedBranchId);
+                skinnyInfo.setCommitId(fetchedCommitId);
+                skinnyInfo.setFileRevisionId(fetchedFileRevisionId);
+                mapForCurrentFile.put(fetchedFileRevisionId, skinnyInfo);
+            }
+
+            // Harvest just the newest revision of each file... and update its revision count.
+            for (Map.Entry<Integer, Map<Integer, TreeMap<Integer, SkinnyLogfileInfo>>> directoryEntry : candidateMapByDirectory.entrySet()) {
+                List<SkinnyLogfileInfo> skinnyList = new ArrayList<>();
+                for (TreeMap<Integer, SkinnyLogfileInfo> candidatesMap : directoryEntry.getValue().values()) {
+                    SkinnyLogfileInfo skinnyInfo = candidatesMap.lastEntry().getValue();
+                    skinnyInfo.setRevisionCount(candidatesMap.size());
+                    skinnyList.add(skinnyInfo);
+                }
+                skinnyMap.put(directoryEntry.getKey(), skinnyList);
+            }
+        } catch (SQLException | IllegalStateException e) {
+            LOGGER.error("FunctionalQueriesDAOImpl: SQL exception in getSkinnyLogfileInfoForTrunkDirectoryBatch", e);
+            throw new RuntimeException(e);
+        } finally {
+            DAOHelper.closeDbResources(LOGGER, resultSet, preparedStatement);
+        }
+    }
 }
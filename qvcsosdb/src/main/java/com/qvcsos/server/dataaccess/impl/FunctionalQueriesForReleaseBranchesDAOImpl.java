@@ -328,8 +328,7 @@ public class FunctionalQueriesForReleaseBranchesDAOImpl implements FunctionalQue
 
     private void runFileNameQueryForReleaseBranch(Map<Integer, Map<Integer, String>> candidateFileNamesMap, int directoryId, Branch featureBranch) {
         FunctionalQueriesDAO functionalQueriesDAO = new FunctionalQueriesDAOImpl(schemaName);
-        List<Branch> branchAncestryList = functionalQueriesDAO.getBranchAncestryList(featureBranch.getId());
-        String branchesToSearchString = functionalQueriesDAO.buildBranchesToSearchString(branchAncestryList);
+        String branchesToSearchString = functionalQueriesDAO.getBranchesToSearchString(featureBranch.getId());
 
         String selectSegment = "SELECT FN.FILE_ID, FN.BRANCH_ID, FN.COMMIT_ID, FN.FILE_NAME, FN.DELETED_FLAG FROM ";
         StringBuilder featureBranchQueryFormatStringBuilder = new StringBuilder(selectSegment);
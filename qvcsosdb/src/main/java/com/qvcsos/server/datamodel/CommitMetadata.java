@@ -0,0 +1,90 @@
+/*
+ * Copyright 2021-2023 Jim Voris.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qvcsos.server.datamodel;
+
+import java.sql.Timestamp;
+
+/**
+ * The parts of a commit that a revision header needs: the commit row, plus the name of the user who made the commit. Unlike the other data model
+ * classes, this is immutable, so that it can be shared from the commit metadata cache.
+ *
+ * @author Jim Voris
+ */
+public final class CommitMetadata {
+    private final Integer commitId;
+    private final Integer userId;
+    private final String userName;
+    private final Timestamp commitDate;
+    private final String commitMessage;
+
+    /**
+     * Create the commit metadata.
+     * @param id the commit id.
+     * @param user the id of the user who made the commit.
+     * @param name the name of the user who made the commit.
+     * @param date the commit date.
+     * @param message the commit message.
+     */
+    public CommitMetadata(Integer id, Integer user, String name, Timestamp date, String message) {
+        this.commitId = id;
+        this.userId = user;
+        this.userName = name;
+        this.commitDate = copyOf(date);
+        this.commitMessage = message;
+    }
+
+    /**
+     * @return the commit id.
+     */
+    public Integer getId() {
+        return commitId;
+    }
+
+    /**
+     * @return the id of the user who made the commit.
+     */
+    public Integer getUserId() {
+        return userId;
+    }
+
+    /**
+     * @return the name of the user who made the commit.
+     */
+    public String getUserName() {
+        return userName;
+    }
+
+    /**
+     * @return a copy of the commit date.
+     */
+    public Timestamp getCommitDate() {
+        return copyOf(commitDate);
+    }
+
+    private static Timestamp copyOf(Timestamp timestamp) {
+        if (timestamp == null) {
+            return null;
+        }
+        return (Timestamp) timestamp.clone();
+    }
+
+    /**
+     * @return the commit message.
+     */
+    public String getCommitMessage() {
+        return commitMessage;
+    }
+}
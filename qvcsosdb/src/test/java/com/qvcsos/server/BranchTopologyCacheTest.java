@@ -0,0 +1,139 @@
+/*
+ * Copyright 2021-2023 Jim Voris.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qvcsos.server;
+
+import com.qumasoft.qvcslib.QVCSConstants;
+import com.qvcsos.server.datamodel.Branch;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the branch topology cache. The cache reads from a list, instead of the database.
+ *
+ * @author Jim Voris
+ */
+public class BranchTopologyCacheTest {
+    private static final int TRUNK_ID = 1;
+    private static final int FEATURE_BRANCH_ID = 2;
+    private static final int FEATURE_OF_FEATURE_BRANCH_ID = 3;
+    private static final int RELEASE_BRANCH_ID = 4;
+    private static final int DELETED_FEATURE_BRANCH_ID = 5;
+
+    private List<Branch> database;
+    private AtomicBoolean transactionFlag;
+    private AtomicInteger loadCount;
+    private BranchTopologyCache cache;
+
+    private static Branch createBranch(int id, Integer parentBranchId, int branchTypeId, boolean deletedFlag) {
+        Branch branch = new Branch();
+        branch.setId(id);
+        branch.setParentBranchId(parentBranchId);
+        branch.setProjectId(1);
+        branch.setRootDirectoryId(1);
+        branch.setCommitId(id);
+        branch.setBranchName("Branch" + id);
+        branch.setBranchTypeId(branchTypeId);
+        branch.setDeletedFlag(deletedFlag);
+        return branch;
+    }
+
+    @Before
+    public void setUp() {
+        database = new ArrayList<>();
+        database.add(createBranch(TRUNK_ID, null, QVCSConstants.QVCS_TRUNK_BRANCH_TYPE, false));
+        database.add(createBranch(FEATURE_BRANCH_ID, TRUNK_ID, QVCSConstants.QVCS_FEATURE_BRANCH_TYPE, false));
+        database.add(createBranch(FEATURE_OF_FEATURE_BRANCH_ID, FEATURE_BRANCH_ID, QVCSConstants.QVCS_FEATURE_BRANCH_TYPE, false));
+        database.add(createBranch(RELEASE_BRANCH_ID, TRUNK_ID, QVCSConstants.QVCS_RELEASE_BRANCH_TYPE, false));
+        database.add(createBranch(DELETED_FEATURE_BRANCH_ID, TRUNK_ID, QVCSConstants.QVCS_FEATURE_BRANCH_TYPE, true));
+        transactionFlag = new AtomicBoolean(false);
+        loadCount = new AtomicInteger(0);
+        cache = new BranchTopologyCache(() -> {
+            loadCount.incrementAndGet();
+            return new ArrayList<>(database);
+        }, thread -> transactionFlag.get());
+    }
+
+    /**
+     * Ancestry, search strings, and writeable children should match what the database walk would produce, from a single load.
+     */
+    @Test
+    public void testTopology() {
+        List<Branch> ancestryList = cache.getBranchAncestryList(FEATURE_OF_FEATURE_BRANCH_ID);
+        assertEquals(3, ancestryList.size());
+        assertEquals(Integer.valueOf(FEATURE_OF_FEATURE_BRANCH_ID), ancestryList.get(0).getId());
+        assertEquals(Integer.valueOf(FEATURE_BRANCH_ID), ancestryList.get(1).getId());
+        assertEquals(Integer.valueOf(TRUNK_ID), ancestryList.get(2).getId());
+        assertEquals("3,2,1", cache.getBranchesToSearchString(FEATURE_OF_FEATURE_BRANCH_ID));
+        assertEquals("1", cache.getBranchesToSearchString(TRUNK_ID));
+        assertEquals("5,1", cache.getBranchesToSearchString(DELETED_FEATURE_BRANCH_ID));
+
+        Map<Integer, String> childMap = cache.getWriteableChildBranchMap(TRUNK_ID);
+        assertEquals(2, childMap.size());
+        assertEquals("Branch2", childMap.get(FEATURE_BRANCH_ID));
+        assertEquals("Branch3", childMap.get(FEATURE_OF_FEATURE_BRANCH_ID));
+        assertTrue(cache.getWriteableChildBranchMap(RELEASE_BRANCH_ID).isEmpty());
+        assertNull(cache.getBranchAncestryList(99));
+
+        // Callers get their own copies.
+        ancestryList.get(0).setBranchName("Changed");
+        assertEquals("Branch3", cache.getBranchAncestryList(FEATURE_OF_FEATURE_BRANCH_ID).get(0).getBranchName());
+        assertEquals(1, loadCount.get());
+    }
+
+    /**
+     * Adding a branch outside of a transaction should rebuild the topology on next use.
+     */
+    @Test
+    public void testBranchChanged() {
+        assertEquals("2,1", cache.getBranchesToSearchString(FEATURE_BRANCH_ID));
+        database.add(createBranch(6, FEATURE_OF_FEATURE_BRANCH_ID, QVCSConstants.QVCS_FEATURE_BRANCH_TYPE, false));
+        cache.branchChanged();
+        assertFalse(cache.isCached());
+        assertEquals("6,3,2,1", cache.getBranchesToSearchString(6));
+        assertEquals(3, cache.getWriteableChildBranchMap(TRUNK_ID).size());
+        assertTrue(cache.isCached());
+        assertEquals(2, loadCount.get());
+    }
+
+    /**
+     * While a branch change is in a transaction, the topology must not be cached; after a rollback, the change must be gone.
+     */
+    @Test
+    public void testBranchChangedInTransaction() {
+        cache.getBranchesToSearchString(TRUNK_ID);
+        transactionFlag.set(true);
+        database.add(createBranch(6, TRUNK_ID, QVCSConstants.QVCS_FEATURE_BRANCH_TYPE, false));
+        cache.branchChanged();
+        assertEquals("6,1", cache.getBranchesToSearchString(6));
+        assertFalse(cache.isCached());
+
+        // Roll back.
+        database.remove(database.size() - 1);
+        transactionFlag.set(false);
+        cache.discardChanges(Thread.currentThread());
+        assertNull(cache.getBranchesToSearchString(6));
+        assertTrue(cache.isCached());
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2021-2023 Jim Voris.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qvcsos.server;
+
+import com.qvcsos.server.datamodel.CommitMetadata;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the commit metadata cache. The cache reads from a map, instead of the database.
+ *
+ * @author Jim Voris
+ */
+public class CommitMetadataCacheTest {
+    private Map<Integer, CommitMetadata> database;
+    private List<List<Integer>> queryList;
+    private AtomicBoolean transactionFlag;
+
+    private static CommitMetadata createCommitMetadata(int commitId, String message) {
+        return new CommitMetadata(commitId, 1, "JimVoris", new Timestamp(1_000_000L + commitId), message);
+    }
+
+    private CommitMetadataCache createCache(int maximumEntryCount) {
+        return new CommitMetadataCache(maximumEntryCount, commitIdList -> {
+            queryList.add(new ArrayList<>(commitIdList));
+            List<CommitMetadata> fetchedList = new ArrayList<>();
+            for (Integer commitId : commitIdList) {
+                if (database.containsKey(commitId)) {
+                    fetchedList.add(database.get(commitId));
+                }
+            }
+            return fetchedList;
+        }, thread -> transactionFlag.get());
+    }
+
+    @Before
+    public void setUp() {
+        database = new TreeMap<>();
+        for (int commitId = 1; commitId <= 10; commitId++) {
+            database.put(commitId, createCommitMetadata(commitId, "Commit " + commitId));
+        }
+        queryList = new ArrayList<>();
+        transactionFlag = new AtomicBoolean(false);
+    }
+
+    /**
+     * Only the commits that are not cached should be read, and they should be read with one query.
+     */
+    @Test
+    public void testBatchedLoad() {
+        CommitMetadataCache cache = createCache(100);
+        Map<Integer, CommitMetadata> commitMetadataMap = cache.getCommitMetadataMap(Arrays.asList(3, 1, 2, 1, 99));
+        assertEquals(3, commitMetadataMap.size());
+        assertEquals("Commit 2", commitMetadataMap.get(2).getCommitMessage());
+        assertEquals("JimVoris", commitMetadataMap.get(2).getUserName());
+        assertEquals(1, queryList.size());
+        assertEquals(Arrays.asList(1, 2, 3, 99), queryList.get(0));
+
+        commitMetadataMap = cache.getCommitMetadataMap(Arrays.asList(1, 2, 3, 4));
+        assertEquals(4, commitMetadataMap.size());
+        assertEquals(2, queryList.size());
+        assertEquals(Arrays.asList(4), queryList.get(1));
+        assertEquals(3L, cache.getHitCount());
+        assertEquals(5L, cache.getMissCount());
+        assertNull(cache.getCommitMetadata(99));
+    }
+
+    /**
+     * The least recently used commits should be evicted once the cache is full.
+     */
+    @Test
+    public void testLeastRecentlyUsedEviction() {
+        CommitMetadataCache cache = createCache(3);
+        cache.getCommitMetadataMap(Arrays.asList(1, 2, 3));
+        // Touch 1 so that 2 becomes the eldest entry.
+        cache.getCommitMetadata(1);
+        cache.getCommitMetadata(4);
+        assertEquals(3, cache.getEntryCount());
+        assertEquals(1L, cache.getEvictionCount());
+        queryList.clear();
+        cache.getCommitMetadataMap(Arrays.asList(1, 3, 4));
+        assertEquals(0, queryList.size());
+        cache.getCommitMetadata(2);
+        assertEquals(1, queryList.size());
+    }
+
+    /**
+     * A commit message changed in a transaction should not be cached until the transaction is over, and should be forgotten on rollback.
+     */
+    @Test
+    public void testCommitMessageChangedInTransaction() {
+        CommitMetadataCache cache = createCache(100);
+        assertEquals("Commit 5", cache.getCommitMetadata(5).getCommitMessage());
+
+        transactionFlag.set(true);
+        database.put(5, createCommitMetadata(5, "Changed"));
+        cache.commitMessageChanged(5);
+        assertEquals("Changed", cache.getCommitMetadata(5).getCommitMessage());
+        assertEquals(0, cache.getEntryCount());
+
+        // Roll back.
+        database.put(5, createCommitMetadata(5, "Commit 5"));
+        transactionFlag.set(false);
+        cache.discardChanges(Thread.currentThread());
+        assertEquals("Commit 5", cache.getCommitMetadata(5).getCommitMessage());
+        assertEquals(1, cache.getEntryCount());
+    }
+
+    /**
+     * A commit message that changes while the commit is being read should not leave the message that was read in the cache.
+     */
+    @Test
+    public void testCommitMessageChangedDuringLoad() {
+        CommitMetadataCache[] cacheHolder = new CommitMetadataCache[1];
+        AtomicBoolean changeMessageFlag = new AtomicBoolean(true);
+        cacheHolder[0] = new CommitMetadataCache(100, commitIdList -> {
+            queryList.add(new ArrayList<>(commitIdList));
+            List<CommitMetadata> fetchedList = new ArrayList<>();
+            for (Integer commitId : commitIdList) {
+                fetchedList.add(database.get(commitId));
+            }
+            if (changeMessageFlag.getAndSet(false)) {
+                // Another thread changes the message after we read it, but before we cache it.
+                database.put(5, createCommitMetadata(5, "Changed"));
+                cacheHolder[0].commitMessageChanged(5);
+            }
+            return fetchedList;
+        }, thread -> transactionFlag.get());
+        CommitMetadataCache cache = cacheHolder[0];
+
+        Map<Integer, CommitMetadata> commitMetadataMap = cache.getCommitMetadataMap(Arrays.asList(4, 5));
+        assertEquals("Commit 5", commitMetadataMap.get(5).getCommitMessage());
+        assertEquals(1, cache.getEntryCount());
+
+        // The next read sees the new message, and caches it.
+        assertEquals("Changed", cache.getCommitMetadata(5).getCommitMessage());
+        assertEquals(2, queryList.size());
+        assertEquals("Changed", cache.getCommitMetadata(5).getCommitMessage());
+        assertEquals(2, queryList.size());
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2021-2023 Jim Voris.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qvcsos.server;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Unit tests for the database connection pool. These use stand-in connections, so they do not need a database.
+ *
+ * @author Jim Voris
+ */
+public class DatabaseConnectionPoolTest {
+
+    /**
+     * Create our logger object.
+     */
+    private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(DatabaseConnectionPoolTest.class);
+
+    private static final long SHORT_TIMEOUT = 100L;
+
+    /**
+     * A stand-in connection that only knows about the handful of methods that the pool uses.
+     */
+    private static final class FakeConnection {
+        private final AtomicBoolean autoCommit = new AtomicBoolean(true);
+        private final AtomicBoolean closed = new AtomicBoolean(false);
+        private final AtomicBoolean valid = new AtomicBoolean(true);
+        private final AtomicInteger rollbackCount = new AtomicInteger(0);
+
+        Connection asConnection() {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "setAutoCommit":
+                        autoCommit.set((Boolean) args[0]);
+                        return null;
+                    case "getAutoCommit":
+                        return autoCommit.get();
+                    case "rollback":
+                        rollbackCount.incrementAndGet();
+                        return null;
+                    case "close":
+                        closed.set(true);
+                        return null;
+                    case "isClosed":
+                        return closed.get();
+                    case "isValid":
+                        return valid.get() && !closed.get();
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "equals":
+                        return proxy == args[0];
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            });
+        }
+    }
+
+    private DatabaseConnectionPool createPool(int size, List<FakeConnection> created) {
+        return new DatabaseConnectionPool(() -> {
+            FakeConnection fake = new FakeConnection();
+            created.add(fake);
+            return fake.asConnection();
+        }, size, SHORT_TIMEOUT, 1);
+    }
+
+    /**
+     * A returned connection should be handed out again rather than creating a new one.
+     * @throws SQLException if the pool fails.
+     */
+    @Test
+    public void testBorrowAndReturnReusesConnection() throws SQLException {
+        LOGGER.info("testBorrowAndReturnReusesConnection");
+        List<FakeConnection> created = new ArrayList<>();
+        DatabaseConnectionPool pool = createPool(2, created);
+        Connection first = pool.borrowConnection();
+        assertEquals(1, pool.getActiveCount());
+        assertEquals(0, pool.getIdleCount());
+        pool.returnConnection(first);
+        assertEquals(0, pool.getActiveCount());
+        assertEquals(1, pool.getIdleCount());
+        Connection second = pool.borrowConnection();
+        assertSame(first, second);
+        assertEquals(1, created.size());
+        assertEquals(2L, pool.getBorrowCount());
+        pool.shutdown();
+
+        // A connection still on loan at shutdown is closed when it comes back.
+        assertFalse(created.get(0).closed.get());
+        pool.returnConnection(second);
+        assertTrue(created.get(0).closed.get());
+        assertEquals(0, pool.getActiveCount());
+    }
+
+    /**
+     * The pool should never grow beyond its maximum size; a borrower should time out instead.
+     * @throws SQLException if the pool fails.
+     */
+    @Test
+    public void testPoolIsBounded() throws SQLException {
+        LOGGER.info("testPoolIsBounded");
+        List<FakeConnection> created = new ArrayList<>();
+        DatabaseConnectionPool pool = createPool(1, created);
+        Connection first = pool.borrowConnection();
+        try {
+            pool.borrowConnection();
+            fail("Expected a borrow timeout.");
+        } catch (SQLException e) {
+            LOGGER.info("Expected timeout: [{}]", e.getLocalizedMessage());
+        }
+        assertEquals(1L, pool.getBorrowTimeoutCount());
+        assertEquals(1, created.size());
+        pool.returnConnection(first);
+        pool.shutdown();
+    }
+
+    /**
+     * A borrower that is waiting on a full pool should get the next connection that is returned.
+     * @throws Exception if the pool fails.
+     */
+    @Test
+    public void testWaitingBorrowerGetsReturnedConnection() throws Exception {
+        LOGGER.info("testWaitingBorrowerGetsReturnedConnection");
+        List<FakeConnection> created = new ArrayList<>();
+        DatabaseConnectionPool pool = new DatabaseConnectionPool(() -> {
+            FakeConnection fake = new FakeConnection();
+            created.add(fake);
+            return fake.asConnection();
+        }, 1, 10000L, 1);
+        Connection first = pool.borrowConnection();
+        Connection[] borrowed = new Connection[1];
+        Thread waiter = new Thread(() -> {
+            try {
+                borrowed[0] = pool.borrowConnection();
+            } catch (SQLException e) {
+                LOGGER.warn(e.getLocalizedMessage(), e);
+            }
+        });
+        waiter.start();
+        Thread.sleep(SHORT_TIMEOUT);
+        pool.returnConnection(first);
+        waiter.join();
+        assertSame(first, borrowed[0]);
+        assertEquals(1, created.size());
+        pool.returnConnection(borrowed[0]);
+        pool.shutdown();
+    }
+
+    /**
+     * Returning a connection with auto-commit disabled should roll back the uncommitted work, and re-enable auto-commit.
+     * @throws SQLException if the pool fails.
+     */
+    @Test
+    public void testReturnRollsBackOpenTransaction() throws SQLException {
+        LOGGER.info("testReturnRollsBackOpenTransaction");
+        List<FakeConnection> created = new ArrayList<>();
+        DatabaseConnectionPool pool = createPool(1, created);
+        Connection connection = pool.borrowConnection();
+        connection.setAutoCommit(false);
+        pool.returnConnection(connection);
+        assertEquals(1, created.get(0).rollbackCount.get());
+        assertTrue(created.get(0).autoCommit.get());
+        pool.shutdown();
+    }
+
+    /**
+     * An idle connection that fails validation should be discarded and replaced.
+     * @throws SQLException if the pool fails.
+     */
+    @Test
+    public void testInvalidIdleConnectionIsReplaced() throws SQLException {
+        LOGGER.info("testInvalidIdleConnectionIsReplaced");
+        List<FakeConnection> created = new ArrayList<>();
+        DatabaseConnectionPool pool = createPool(1, created);
+        Connection first = pool.borrowConnection();
+        pool.returnConnection(first);
+        created.get(0).valid.set(false);
+        Connection second = pool.borrowConnection();
+        assertNotSame(first, second);
+        assertEquals(2, created.size());
+        assertTrue(created.get(0).closed.get());
+        assertEquals(1L, pool.getDiscardedConnectionCount());
+        assertEquals(1, pool.getActiveCount());
+        pool.returnConnection(second);
+        pool.shutdown();
+    }
+}
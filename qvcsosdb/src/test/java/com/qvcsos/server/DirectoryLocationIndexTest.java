@@ -0,0 +1,210 @@
+/*
+ * Copyright 2021-2023 Jim Voris.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qvcsos.server;
+
+import com.qvcsos.server.datamodel.Branch;
+import com.qvcsos.server.datamodel.DirectoryLocation;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the directory location index. The index reads from a list, instead of the database.
+ *
+ * @author Jim Voris
+ */
+public class DirectoryLocationIndexTest {
+    private static final int TRUNK_ID = 1;
+    private static final int FEATURE_BRANCH_ID = 2;
+    private static final int ROOT_DIRECTORY_ID = 100;
+
+    private List<DirectoryLocation> database;
+    private AtomicBoolean transactionFlag;
+    private AtomicInteger loadCount;
+    private DirectoryLocationIndex index;
+    private List<Branch> trunkAncestry;
+    private List<Branch> featureBranchAncestry;
+
+    private static DirectoryLocation createDirectoryLocation(int id, int directoryId, int branchId, Integer parentId, String segmentName) {
+        DirectoryLocation directoryLocation = new DirectoryLocation();
+        directoryLocation.setId(id);
+        directoryLocation.setDirectoryId(directoryId);
+        directoryLocation.setBranchId(branchId);
+        directoryLocation.setParentDirectoryLocationId(parentId);
+        directoryLocation.setCommitId(1);
+        directoryLocation.setDirectorySegmentName(segmentName);
+        directoryLocation.setDeletedFlag(Boolean.FALSE);
+        return directoryLocation;
+    }
+
+    private static Branch createBranch(int id, Integer parentBranchId) {
+        Branch branch = new Branch();
+        branch.setId(id);
+        branch.setParentBranchId(parentBranchId);
+        branch.setRootDirectoryId(ROOT_DIRECTORY_ID);
+        return branch;
+    }
+
+    private static String path(String... segments) {
+        return String.join(File.separator, segments);
+    }
+
+    @Before
+    public void setUp() {
+        database = new ArrayList<>();
+        database.add(createDirectoryLocation(1, ROOT_DIRECTORY_ID, TRUNK_ID, null, ""));
+        database.add(createDirectoryLocation(2, 101, TRUNK_ID, 1, "src"));
+        database.add(createDirectoryLocation(3, 102, TRUNK_ID, 2, "main"));
+        database.add(createDirectoryLocation(4, 103, TRUNK_ID, 3, "java"));
+        // The feature branch renamed 'main' to 'feature'.
+        database.add(createDirectoryLocation(5, 102, FEATURE_BRANCH_ID, 2, "feature"));
+        transactionFlag = new AtomicBoolean(false);
+        loadCount = new AtomicInteger(0);
+        index = new DirectoryLocationIndex(() -> {
+            loadCount.incrementAndGet();
+            return new ArrayList<>(database);
+        }, thread -> transactionFlag.get());
+
+        Branch trunk = createBranch(TRUNK_ID, null);
+        trunkAncestry = List.of(trunk);
+        featureBranchAncestry = List.of(createBranch(FEATURE_BRANCH_ID, TRUNK_ID), trunk);
+    }
+
+    /**
+     * Paths should resolve to directory locations, and directories to paths, from a single load.
+     */
+    @Test
+    public void testResolvePaths() {
+        assertEquals(Integer.valueOf(1), index.findByAppendedPath(trunkAncestry, "").getId());
+        assertEquals(Integer.valueOf(4), index.findByAppendedPath(trunkAncestry, path("src", "main", "java")).getId());
+        assertNull(index.findByAppendedPath(trunkAncestry, path("src", "feature")));
+        assertEquals(Integer.valueOf(5), index.findByAppendedPath(featureBranchAncestry, path("src", "feature")).getId());
+        assertNull(index.findByAppendedPath(trunkAncestry, path("src", "nope", "java")));
+
+        assertEquals(path("src", "main", "java"), index.buildAppendedPath(103));
+        assertEquals("", index.buildAppendedPath(ROOT_DIRECTORY_ID));
+        assertNull(index.buildAppendedPath(999));
+
+        // The oldest location of a directory is the one we use.
+        assertEquals(Integer.valueOf(3), index.findByDirectoryId(102).getId());
+        assertEquals(Integer.valueOf(5), index.findByBranchIdAndDirectoryId(FEATURE_BRANCH_ID, 102).getId());
+        assertEquals(Integer.valueOf(3), index.findChildDirectoryLocation(featureBranchAncestry, 2, "main").getId());
+        assertEquals(1, loadCount.get());
+    }
+
+    /**
+     * Add, move, rename, and delete should be visible without reloading.
+     */
+    @Test
+    public void testChangesAreApplied() {
+        assertNotNull(index.findById(1));
+        index.inserted(6, createDirectoryLocation(0, 104, TRUNK_ID, 4, "com"));
+        assertEquals(path("src", "main", "java", "com"), index.buildAppendedPath(104));
+
+        index.moved(6, 2, 2);
+        assertEquals(path("src", "com"), index.buildAppendedPath(104));
+        assertNull(index.findByAppendedPath(trunkAncestry, path("src", "main", "java", "com")));
+
+        index.renamed(3, 3, "test");
+        assertEquals(path("src", "test", "java"), index.buildAppendedPath(103));
+        assertEquals(Integer.valueOf(4), index.findByAppendedPath(trunkAncestry, path("src", "test", "java")).getId());
+
+        index.deleted(6, 4);
+        DirectoryLocation deleted = index.findById(6);
+        assertEquals(Boolean.TRUE, deleted.getDeletedFlag());
+        assertEquals(Integer.valueOf(4), deleted.getCommitId());
+
+        index.promoted(5, TRUNK_ID, 5);
+        assertEquals(Integer.valueOf(TRUNK_ID), index.findById(5).getBranchId());
+        assertEquals(1, loadCount.get());
+    }
+
+    /**
+     * A rollback should discard the changes made in the rolled back transaction, and keep those made by other threads' open transactions.
+     * @throws InterruptedException if the other thread is interrupted.
+     */
+    @Test
+    public void testRollbackDiscardsChanges() throws InterruptedException {
+        assertNotNull(index.findById(1));
+        transactionFlag.set(true);
+
+        // A change on another thread, whose transaction is still open.
+        Thread otherThread = new Thread(() -> index.inserted(7, createDirectoryLocation(0, 105, TRUNK_ID, 1, "docs")));
+        otherThread.start();
+        otherThread.join();
+
+        // A change on this thread, which we then roll back.
+        index.renamed(2, 2, "source");
+        assertEquals(path("source", "main"), index.buildAppendedPath(102));
+        assertEquals(2, index.getPendingChangeCount());
+        index.discardChanges(Thread.currentThread());
+
+        assertEquals(path("src", "main"), index.buildAppendedPath(102));
+        assertEquals(1, index.getPendingChangeCount());
+        assertEquals(1, loadCount.get());
+
+        // Once the other transaction commits, everyone sees its changes.
+        database.add(createDirectoryLocation(7, 105, TRUNK_ID, 1, "docs"));
+        index.publishChanges(otherThread);
+        assertEquals("docs", index.buildAppendedPath(105));
+        assertEquals(0, index.getPendingChangeCount());
+        assertEquals(1, loadCount.get());
+    }
+
+    /**
+     * Changes made inside a transaction should be seen only by the thread that made them until the transaction commits.
+     * @throws InterruptedException if the other thread is interrupted.
+     */
+    @Test
+    public void testUncommittedChangesAreNotShared() throws InterruptedException {
+        assertNotNull(index.findById(1));
+        transactionFlag.set(true);
+        index.inserted(6, createDirectoryLocation(0, 104, TRUNK_ID, 4, "com"));
+        index.renamed(3, 3, "test");
+        assertEquals(path("src", "test", "java", "com"), index.buildAppendedPath(104));
+        assertEquals(Integer.valueOf(6), index.findByAppendedPath(trunkAncestry, path("src", "test", "java", "com")).getId());
+        assertEquals(Integer.valueOf(3), index.findChildDirectoryLocation(featureBranchAncestry, 2, "test").getId());
+        assertEquals("test", index.findByBranchIdAndDirectoryId(TRUNK_ID, 102).getDirectorySegmentName());
+
+        List<String> otherThreadPathList = new ArrayList<>();
+        Thread otherThread = new Thread(() -> {
+            otherThreadPathList.add(index.buildAppendedPath(103));
+            otherThreadPathList.add(index.buildAppendedPath(104));
+        });
+        otherThread.start();
+        otherThread.join();
+        assertEquals(path("src", "main", "java"), otherThreadPathList.get(0));
+        assertNull(otherThreadPathList.get(1));
+
+        // When this thread's transaction is over, its changes are published.
+        transactionFlag.set(false);
+        assertEquals(path("src", "test", "java", "com"), index.buildAppendedPath(104));
+        assertEquals(0, index.getPendingChangeCount());
+        otherThreadPathList.clear();
+        otherThread = new Thread(() -> otherThreadPathList.add(index.buildAppendedPath(104)));
+        otherThread.start();
+        otherThread.join();
+        assertEquals(path("src", "test", "java", "com"), otherThreadPathList.get(0));
+        assertEquals(1, loadCount.get());
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2021-2023 Jim Voris.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qvcsos.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import org.junit.Test;
+
+/**
+ * Unit tests for the revision cache.
+ *
+ * @author Jim Voris
+ */
+public class RevisionCacheTest {
+
+    /**
+     * A cached revision should come back unchanged, and hits and misses should be counted.
+     */
+    @Test
+    public void testGetAndPut() {
+        RevisionCache cache = new RevisionCache(100L, 50L);
+        byte[] revision = new byte[10];
+        assertNull(cache.get(1));
+        cache.put(1, revision);
+        assertSame(revision, cache.get(1));
+        assertEquals(1L, cache.getHitCount());
+        assertEquals(1L, cache.getMissCount());
+        assertEquals(10L, cache.getCurrentCacheSize());
+    }
+
+    /**
+     * The least recently used revisions should be evicted once the byte budget is exceeded.
+     */
+    @Test
+    public void testLeastRecentlyUsedEviction() {
+        RevisionCache cache = new RevisionCache(30L, 30L);
+        cache.put(1, new byte[10]);
+        cache.put(2, new byte[10]);
+        cache.put(3, new byte[10]);
+
+        // Touch 1 so that 2 becomes the eldest entry.
+        assertNotNull(cache.get(1));
+        cache.put(4, new byte[10]);
+        assertNull(cache.get(2));
+        assertNotNull(cache.get(1));
+        assertNotNull(cache.get(3));
+        assertNotNull(cache.get(4));
+        assertEquals(30L, cache.getCurrentCacheSize());
+        assertEquals(1L, cache.getEvictionCount());
+    }
+
+    /**
+     * A revision larger than the maximum entry size should not be cached.
+     */
+    @Test
+    public void testOversizeRevisionIsNotCached() {
+        RevisionCache cache = new RevisionCache(100L, 20L);
+        cache.put(1, new byte[10]);
+        cache.put(2, new byte[21]);
+        assertNull(cache.get(2));
+        assertNotNull(cache.get(1));
+        assertEquals(1, cache.getEntryCount());
+    }
+
+    /**
+     * Replacing an entry should not double count its size, and clear should empty the cache.
+     */
+    @Test
+    public void testReplaceAndClear() {
+        RevisionCache cache = new RevisionCache(100L, 100L);
+        cache.put(1, new byte[10]);
+        cache.put(1, new byte[20]);
+        assertEquals(20L, cache.getCurrentCacheSize());
+        assertEquals(1, cache.getEntryCount());
+        cache.clear();
+        assertEquals(0L, cache.getCurrentCacheSize());
+        assertEquals(0, cache.getEntryCount());
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2021-2023 Jim Voris.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qvcsos.server;
+
+import com.qumasoft.qvcslib.RevisionHeader;
+import com.qumasoft.qvcslib.RevisionHistoryFilter;
+import com.qumasoft.qvcslib.RevisionHistoryPage;
+import com.qvcsos.server.datamodel.CommitMetadata;
+import com.qvcsos.server.datamodel.FileRevision;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for building pages of revision history. The commit metadata comes from a map, instead of the database.
+ *
+ * @author Jim Voris
+ */
+public class RevisionHistoryPageBuilderTest {
+    private static final int REVISION_COUNT = 25;
+
+    private List<FileRevision> fileRevisionList;
+    private Map<Integer, CommitMetadata> database;
+    private List<Collection<Integer>> queryList;
+
+    @Before
+    public void setUp() {
+        // Newest first: file revision ids 125 down to 101, created by commits 25 down to 1.
+        fileRevisionList = new ArrayList<>();
+        database = new HashMap<>();
+        queryList = new ArrayList<>();
+        for (int i = 0; i < REVISION_COUNT; i++) {
+            int commitId = REVISION_COUNT - i;
+            FileRevision fileRevision = new FileRevision();
+            fileRevision.setId(100 + commitId);
+            fileRevision.setBranchId(1);
+            fileRevision.setFileId(7);
+            fileRevision.setCommitId(commitId);
+            fileRevision.setRevisionDataSize(commitId * 10);
+            fileRevision.setWorkfileEditDate(new Timestamp(1_000_000L + commitId));
+            fileRevisionList.add(fileRevision);
+            String userName = (commitId % 2 == 0) ? "Even" : "Odd";
+            database.put(commitId, new CommitMetadata(commitId, 1, userName, new Timestamp(2_000_000L + commitId), "Fix bug " + commitId));
+        }
+    }
+
+    private RevisionHistoryPage buildPage(Integer startAfterFileRevisionId, int pageSize, RevisionHistoryFilter filter) {
+        return RevisionHistoryPageBuilder.buildPage(fileRevisionList, startAfterFileRevisionId, pageSize, filter, commitIds -> {
+            queryList.add(new ArrayList<>(commitIds));
+            Map<Integer, CommitMetadata> fetchedMap = new HashMap<>();
+            for (Integer commitId : commitIds) {
+                fetchedMap.put(commitId, database.get(commitId));
+            }
+            return fetchedMap;
+        });
+    }
+
+    /**
+     * Paging through the history should visit every revision once, newest first, and only look up the commits for each page.
+     */
+    @Test
+    public void testPageThroughHistory() {
+        List<RevisionHeader> allHeaders = new ArrayList<>();
+        Integer cursor = null;
+        int pageCount = 0;
+        do {
+            RevisionHistoryPage page = buildPage(cursor, 10, null);
+            assertEquals(REVISION_COUNT, page.getRevisionCount());
+            assertTrue(page.getRevisionHeaderList().size() <= 10);
+            allHeaders.addAll(page.getRevisionHeaderList());
+            cursor = page.getNextFileRevisionId();
+            pageCount++;
+        } while (cursor != null);
+        assertEquals(3, pageCount);
+        assertEquals(3, queryList.size());
+        assertEquals(10, queryList.get(0).size());
+        assertEquals(REVISION_COUNT, allHeaders.size());
+        for (int i = 0; i < REVISION_COUNT; i++) {
+            RevisionHeader revisionHeader = allHeaders.get(i);
+            assertEquals(i, revisionHeader.getRevisionIndex());
+            assertEquals(fileRevisionList.get(i).getId().intValue(), revisionHeader.getFileRevisionId());
+            assertEquals("Fix bug " + revisionHeader.getCommitId(), revisionHeader.getRevisionDescription());
+            assertEquals(i == 0, revisionHeader.isTip());
+        }
+    }
+
+    /**
+     * Revisions that fail the commit id conditions are skipped without looking up their commits; the rest of the filter is applied to the commit
+     * metadata.
+     */
+    @Test
+    public void testFilterIsAppliedOnTheServer() {
+        RevisionHistoryFilter filter = new RevisionHistoryFilter();
+        filter.addCommitIdLessThan(21);
+        filter.addCommitIdGreaterThan(4);
+        filter.addCreator("Even");
+        filter.addExcludedDescriptionExpression(".*1[02]$");
+
+        RevisionHistoryPage firstPage = buildPage(null, 3, filter);
+        List<Integer> commitIdList = new ArrayList<>();
+        for (RevisionHeader revisionHeader : firstPage.getRevisionHeaderList()) {
+            commitIdList.add(revisionHeader.getCommitId());
+        }
+        assertEquals(List.of(20, 18, 16), commitIdList);
+        for (Collection<Integer> query : queryList) {
+            for (Integer commitId : query) {
+                assertTrue(commitId < 21 && commitId > 4);
+            }
+        }
+        assertEquals(5, firstPage.getRevisionHeaderList().get(0).getRevisionIndex());
+
+        RevisionHistoryPage secondPage = buildPage(firstPage.getNextFileRevisionId(), 3, filter);
+        commitIdList.clear();
+        for (RevisionHeader revisionHeader : secondPage.getRevisionHeaderList()) {
+            commitIdList.add(revisionHeader.getCommitId());
+        }
+        assertEquals(List.of(14, 8, 6), commitIdList);
+
+        RevisionHistoryPage lastPage = buildPage(secondPage.getNextFileRevisionId(), 3, filter);
+        assertTrue(lastPage.getRevisionHeaderList().isEmpty());
+        assertFalse(lastPage.hasMore());
+    }
+
+    /**
+     * An unknown cursor gives an empty page, and the revision indexes survive serialization even though they are transient in the header.
+     * @throws Exception if the test fails.
+     */
+    @Test
+    public void testUnknownCursorAndSerialization() throws Exception {
+        RevisionHistoryPage emptyPage = buildPage(99_999, 10, null);
+        assertTrue(emptyPage.getRevisionHeaderList().isEmpty());
+        assertNull(emptyPage.getNextFileRevisionId());
+
+        RevisionHistoryPage page = buildPage(fileRevisionList.get(4).getId(), 2, null);
+        ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(byteStream)) {
+            out.writeObject(page);
+        }
+        RevisionHistoryPage readPage;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(byteStream.toByteArray()))) {
+            readPage = (RevisionHistoryPage) in.readObject();
+        }
+        assertEquals(2, readPage.getRevisionHeaderList().size());
+        assertEquals(5, readPage.getRevisionHeaderList().get(0).getRevisionIndex());
+        assertEquals(6, readPage.getRevisionHeaderList().get(1).getRevisionIndex());
+        assertEquals(page.getNextFileRevisionId(), readPage.getNextFileRevisionId());
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2021-2023 Jim Voris.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qvcsos.server;
+
+import com.qumasoft.qvcslib.CompareFilesWithApacheDiff;
+import com.qumasoft.qvcslib.QVCSOperationException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertSame;
+import org.junit.Test;
+
+/**
+ * Unit tests for the in-memory revision hydrator. The edit scripts are produced the same way the server produces reverse deltas, so these do not need a
+ * database.
+ *
+ * @author Jim Voris
+ */
+public class RevisionHydratorTest {
+
+    private static final String[] REVISIONS = {
+        "line one\nline two\nline three\n",
+        "line one\nline two changed\nline three\nline four\n",
+        "line zero\nline one\nline two changed\nline four\n",
+        "line zero\nline one\nline two changed\nline four\nno trailing newline",
+        "line one\n"
+    };
+
+    private static byte[] reverseDelta(byte[] olderRevision, byte[] newerRevision) throws QVCSOperationException {
+        return new CompareFilesWithApacheDiff().computeEditScript(newerRevision, olderRevision);
+    }
+
+    /**
+     * Applying a reverse delta to the newer revision should reproduce the older revision.
+     * @throws QVCSOperationException if the compare fails.
+     */
+    @Test
+    public void testApplyEditScript() throws QVCSOperationException {
+        RevisionHydrator hydrator = new RevisionHydrator();
+        for (int i = 0; i < REVISIONS.length - 1; i++) {
+            byte[] older = REVISIONS[i].getBytes(StandardCharsets.UTF_8);
+            byte[] newer = REVISIONS[i + 1].getBytes(StandardCharsets.UTF_8);
+            assertArrayEquals(older, hydrator.applyEditScript(newer, reverseDelta(older, newer)));
+        }
+    }
+
+    /**
+     * Applying a chain of reverse deltas from the tip should reproduce each older revision, the same as applying them one at a time.
+     * @throws QVCSOperationException if the compare fails.
+     */
+    @Test
+    public void testApplyEditScriptChain() throws QVCSOperationException {
+        int tipIndex = REVISIONS.length - 1;
+        byte[] tip = REVISIONS[tipIndex].getBytes(StandardCharsets.UTF_8);
+
+        // Build the chain the way it is stored: each revision holds the delta from its successor.
+        List<byte[]> newestFirstScripts = new ArrayList<>();
+        for (int i = tipIndex - 1; i >= 0; i--) {
+            byte[] older = REVISIONS[i].getBytes(StandardCharsets.UTF_8);
+            byte[] newer = REVISIONS[i + 1].getBytes(StandardCharsets.UTF_8);
+            newestFirstScripts.add(reverseDelta(older, newer));
+        }
+        for (int depth = 1; depth <= newestFirstScripts.size(); depth++) {
+            List<byte[]> chain = new ArrayList<>(newestFirstScripts.subList(0, depth));
+            byte[] expected = REVISIONS[tipIndex - depth].getBytes(StandardCharsets.UTF_8);
+            assertArrayEquals(expected, new RevisionHydrator().applyEditScripts(tip, chain));
+        }
+    }
+
+    /**
+     * An empty chain should hand back the original revision.
+     */
+    @Test
+    public void testEmptyChain() {
+        byte[] tip = REVISIONS[0].getBytes(StandardCharsets.UTF_8);
+        assertSame(tip, new RevisionHydrator().applyEditScripts(tip, Collections.emptyList()));
+    }
+}
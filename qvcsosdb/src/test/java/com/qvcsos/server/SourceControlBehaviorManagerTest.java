@@ -21,11 +21,15 @@ import com.qvcsos.server.dataaccess.CommitDAO;
 import com.qvcsos.server.dataaccess.FileDAO;
 import com.qvcsos.server.dataaccess.FileNameDAO;
 import com.qvcsos.server.dataaccess.FileRevisionDAO;
+import com.qvcsos.server.dataaccess.FunctionalQueriesDAO;
 import com.qvcsos.server.dataaccess.impl.CommitDAOImpl;
 import com.qvcsos.server.dataaccess.impl.FileDAOImpl;
 import com.qvcsos.server.dataaccess.impl.FileNameDAOImpl;
 import com.qvcsos.server.dataaccess.impl.FileRevisionDAOImpl;
+import com.qvcsos.server.dataaccess.impl.FunctionalQueriesDAOImpl;
+import com.qvcsos.server.datamodel.Branch;
 import com.qvcsos.server.datamodel.Commit;
+import com.qvcsos.server.datamodel.DirectoryLocation;
 import com.qvcsos.server.datamodel.File;
 import com.qvcsos.server.datamodel.FileName;
 import com.qvcsos.server.datamodel.FileRevision;
@@ -37,6 +41,7 @@ import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.After;
 import org.junit.AfterClass;
@@ -134,6 +139,9 @@ public class SourceControlBehaviorManagerTest {
         testGetDirectoryId();
         testDeleteBranchDirectory();
         testAddAndGetFileRevision();
+        testFindDirectoryLocationSubtree();
+        testKeyframesWithInterleavedBranches();
+        testAddRevisions();
     }
 
     /**
@@ -436,6 +444,132 @@ public class SourceControlBehaviorManagerTest {
         }
     }
 
+    /**
+     * Check in revisions on two branches, alternating between them. No revision should ever be more than KEYFRAME_INTERVAL - 1 reverse deltas away
+     * from a materialized revision, and every revision should still hydrate to what was checked in.
+     * @throws SQLException if there is a problem.
+     */
+    public void testKeyframesWithInterleavedBranches() throws SQLException {
+        LOGGER.info("testKeyframesWithInterleavedBranches");
+        BogusResponseObject response = new BogusResponseObject();
+        DbTestHelper.beginTransaction(response);
+        SourceControlBehaviorManager instance = SourceControlBehaviorManager.getInstance();
+        FileRevisionDAO fileRevisionDAO = new FileRevisionDAOImpl(databaseManager.getSchemaName());
+        Date now = new Date();
+        Timestamp nowTimestamp = new Timestamp(now.getTime());
+        Integer fileId = instance.addFile(1, 1, 1, "InterleavedBranches.txt", testFileArray.get(6), null, null, nowTimestamp, "Add interleaved file.",
+                new AtomicInteger());
+        List<Integer> revisionIdList = new ArrayList<>();
+        List<String> revisionContentList = new ArrayList<>();
+        StringBuilder content = new StringBuilder();
+        int revisionCount = 3 * SourceControlBehaviorManager.KEYFRAME_INTERVAL;
+        for (int i = 0; i < revisionCount; i++) {
+            Integer branchId = 1 + (i % 2);
+            content.append("Revision ").append(i).append(" on branch ").append(branchId).append("\n");
+            Integer revisionId = instance.addRevision(branchId, fileId, content.toString().getBytes(), null, new Date(), "Interleaved revision: " + i);
+            assertNotNull("Expected non-null revision id", revisionId);
+            revisionIdList.add(revisionId);
+            revisionContentList.add(content.toString());
+        }
+        DbTestHelper.endTransaction(response);
+
+        for (int i = 0; i < revisionIdList.size(); i++) {
+            int deltaCount = 0;
+            FileRevision fileRevision = fileRevisionDAO.findById(revisionIdList.get(i));
+            while (fileRevision.getReverseDeltaRevisionId() != null) {
+                deltaCount++;
+                fileRevision = fileRevisionDAO.findById(fileRevision.getReverseDeltaRevisionId());
+            }
+            assertTrue("Reverse delta chain too long: " + deltaCount, deltaCount < SourceControlBehaviorManager.KEYFRAME_INTERVAL);
+            assertEquals(revisionContentList.get(i), new String(instance.getFileRevisionBuffer(revisionIdList.get(i))));
+        }
+    }
+
+    /**
+     * Test of addRevisions method, of class SourceControlBehaviorManager. Check in a batch of files, over and over, one batch per transaction. Every
+     * revision in a batch should share the batch's commit, and be linked to the file's previous revision. There are enough batches that the reverse delta
+     * chains reach the keyframe depth, and every revision should still hydrate to what was checked in.
+     * @throws SQLException if there is a problem.
+     */
+    public void testAddRevisions() throws SQLException {
+        LOGGER.info("testAddRevisions");
+        SourceControlBehaviorManager instance = SourceControlBehaviorManager.getInstance();
+        FileRevisionDAO fileRevisionDAO = new FileRevisionDAOImpl(databaseManager.getSchemaName());
+        int fileCount = 3;
+        List<Integer> fileIdList = new ArrayList<>();
+        List<StringBuilder> contentList = new ArrayList<>();
+        List<List<Integer>> revisionIdListList = new ArrayList<>();
+        List<List<String>> revisionContentListList = new ArrayList<>();
+        List<Integer> previousRevisionIdList = new ArrayList<>();
+
+        BogusResponseObject response = new BogusResponseObject();
+        DbTestHelper.beginTransaction(response);
+        for (int i = 0; i < fileCount; i++) {
+            AtomicInteger mutableFileRevisionId = new AtomicInteger();
+            Integer fileId = instance.addFile(1, 1, 1, String.format("BatchedFile%d.txt", i), testFileArray.get(7 + i), null, null,
+                    new Timestamp(new Date().getTime()), "Add batched file.", mutableFileRevisionId);
+            assertNotNull("Expected non-null file id", fileId);
+            fileIdList.add(fileId);
+            contentList.add(new StringBuilder());
+            revisionIdListList.add(new ArrayList<>());
+            revisionContentListList.add(new ArrayList<>());
+            previousRevisionIdList.add(mutableFileRevisionId.get());
+        }
+        DbTestHelper.endTransaction(response);
+
+        Integer previousCommitId = null;
+        int batchCount = SourceControlBehaviorManager.KEYFRAME_INTERVAL + 2;
+        for (int batch = 0; batch < batchCount; batch++) {
+            List<FileRevision> newRevisionList = new ArrayList<>();
+            for (int i = 0; i < fileCount; i++) {
+                contentList.get(i).append("Batch ").append(batch).append(" for file ").append(i).append("\n");
+                FileRevision newRevision = new FileRevision();
+                newRevision.setFileId(fileIdList.get(i));
+                newRevision.setWorkfileEditDate(new Timestamp(new Date().getTime()));
+                newRevision.setRevisionData(contentList.get(i).toString().getBytes());
+                newRevisionList.add(newRevision);
+            }
+            response = new BogusResponseObject();
+            DbTestHelper.beginTransaction(response);
+            List<Integer> revisionIdList = instance.addRevisions(1, newRevisionList, "Batch: " + batch);
+            DbTestHelper.endTransaction(response);
+            assertNotNull("Expected non-null revision id list", revisionIdList);
+            assertEquals(fileCount, revisionIdList.size());
+
+            Integer batchCommitId = fileRevisionDAO.findById(revisionIdList.get(0)).getCommitId();
+            assertNotEquals("Expected a new commit for each batch", previousCommitId, batchCommitId);
+            for (int i = 0; i < fileCount; i++) {
+                FileRevision fileRevision = fileRevisionDAO.findById(revisionIdList.get(i));
+                assertEquals("Expected the batch to share one commit", batchCommitId, fileRevision.getCommitId());
+                assertEquals(fileIdList.get(i), fileRevision.getFileId());
+                assertEquals("Expected a link to the previous revision", previousRevisionIdList.get(i), fileRevision.getAncestorRevisionId());
+                previousRevisionIdList.set(i, revisionIdList.get(i));
+                revisionIdListList.get(i).add(revisionIdList.get(i));
+                revisionContentListList.get(i).add(contentList.get(i).toString());
+            }
+            previousCommitId = batchCommitId;
+        }
+
+        for (int i = 0; i < fileCount; i++) {
+            List<Integer> revisionIdList = revisionIdListList.get(i);
+            int keyframeCount = 0;
+            for (int j = 0; j < revisionIdList.size(); j++) {
+                int deltaCount = 0;
+                FileRevision fileRevision = fileRevisionDAO.findById(revisionIdList.get(j));
+                if (j < revisionIdList.size() - 1 && fileRevision.getReverseDeltaRevisionId() == null) {
+                    keyframeCount++;
+                }
+                while (fileRevision.getReverseDeltaRevisionId() != null) {
+                    deltaCount++;
+                    fileRevision = fileRevisionDAO.findById(fileRevision.getReverseDeltaRevisionId());
+                }
+                assertTrue("Reverse delta chain too long: " + deltaCount, deltaCount < SourceControlBehaviorManager.KEYFRAME_INTERVAL);
+                assertEquals(revisionContentListList.get(i).get(j), new String(instance.getFileRevisionBuffer(revisionIdList.get(j))));
+            }
+            assertTrue("Expected a keyframe before the tip revision", keyframeCount > 0);
+        }
+    }
+
     private static java.io.File createTestFile(int i) {
         java.io.File tempFile = null;
         try {
@@ -448,4 +582,36 @@ public class SourceControlBehaviorManagerTest {
         }
         return tempFile;
     }
+
+    /**
+     * Test of findDirectoryLocationSubtree method, of class FunctionalQueriesDAOImpl. The one query should find the same directory locations as walking
+     * the tree one directory at a time.
+     * @throws SQLException if there is a problem.
+     */
+    public void testFindDirectoryLocationSubtree() throws SQLException {
+        LOGGER.info("testFindDirectoryLocationSubtree");
+        BogusResponseObject response = new BogusResponseObject();
+        DbTestHelper.beginTransaction(response);
+        FunctionalQueriesDAO functionalQueriesDAO = new FunctionalQueriesDAOImpl(databaseManager.getSchemaName());
+        List<Branch> branchArray = functionalQueriesDAO.getBranchAncestryList(1);
+        Map<String, DirectoryLocation> subtree = functionalQueriesDAO.findDirectoryLocationSubtree(branchArray.get(0), branchArray, 1, "");
+        List<Integer> expectedIdList = new ArrayList<>();
+        collectChildDirectoryLocationIds(functionalQueriesDAO, branchArray, 1, expectedIdList);
+        DbTestHelper.endTransaction(response);
+        List<Integer> actualIdList = new ArrayList<>();
+        for (DirectoryLocation directoryLocation : subtree.values()) {
+            actualIdList.add(directoryLocation.getId());
+        }
+        assertEquals("Expected subtree to match the directory-at-a-time walk", expectedIdList, actualIdList);
+    }
+
+    private void collectChildDirectoryLocationIds(FunctionalQueriesDAO functionalQueriesDAO, List<Branch> branchArray, Integer parentDirectoryLocationId,
+            List<Integer> idList) {
+        List<DirectoryLocation> children = functionalQueriesDAO.findChildDirectoryLocations(branchArray, parentDirectoryLocationId);
+        children.sort((a, b) -> a.getDirectorySegmentName().compareTo(b.getDirectorySegmentName()));
+        for (DirectoryLocation child : children) {
+            idList.add(child.getId());
+            collectChildDirectoryLocationIds(functionalQueriesDAO, branchArray, child.getId(), idList);
+        }
+    }
 }